@@ -20,6 +20,10 @@
 import org.apache.calcite.linq4j.QueryProvider;
 import org.apache.calcite.linq4j.tree.Expressions;
 import org.apache.calcite.linq4j.tree.ParameterExpression;
+import org.apache.calcite.rel.metadata.CardinalityFeedback;
+import org.apache.calcite.runtime.ExecutionStatistics;
+import org.apache.calcite.runtime.ResultCache;
+import org.apache.calcite.runtime.SpillBudget;
 import org.apache.calcite.schema.SchemaPlus;
 import org.apache.calcite.sql.advise.SqlAdvisor;
 
@@ -122,7 +126,33 @@ enum Variable {
      *
      * <p>Default value is "user.name" from
      * {@link System#getProperty(String)}. */
-    SYSTEM_USER("systemUser", String.class);
+    SYSTEM_USER("systemUser", String.class),
+
+    /** Limit on the number of rows that the operators of the query may hold
+     * in memory; see {@link org.apache.calcite.runtime.SpillBudget}.
+     * Absent if there is no limit. */
+    SPILL_BUDGET("spillBudget", SpillBudget.class),
+
+    /** Maximum number of rows buffered between two operators of the
+     * {@link org.apache.calcite.interpreter.Interpreter}. Absent if operators
+     * materialize their whole output. */
+    INTERPRETER_BUFFER_SIZE("interpreterBufferSize", Integer.class),
+
+    /** Cache of query results of the current connection; see
+     * {@link org.apache.calcite.runtime.ResultCache}. Absent if the
+     * connection does not cache results. */
+    RESULT_CACHE("resultCache", ResultCache.class),
+
+    /** Statistics of the operators of the current statement, gathered if the
+     * statement is {@code EXPLAIN ANALYZE PLAN}; see
+     * {@link org.apache.calcite.runtime.ExecutionStatistics}. Absent
+     * otherwise. */
+    EXECUTION_STATISTICS("executionStatistics", ExecutionStatistics.class),
+
+    /** Row counts observed by the current connection; see
+     * {@link org.apache.calcite.rel.metadata.CardinalityFeedback}. Absent if
+     * the connection does not record them. */
+    CARDINALITY_FEEDBACK("cardinalityFeedback", CardinalityFeedback.class);
 
     public final String camelName;
     public final Class clazz;
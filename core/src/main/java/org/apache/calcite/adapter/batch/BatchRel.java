@@ -0,0 +1,41 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.batch;
+
+import org.apache.calcite.adapter.enumerable.EnumerableRel;
+import org.apache.calcite.adapter.enumerable.EnumerableRelImplementor;
+import org.apache.calcite.rel.RelNode;
+
+/**
+ * Relational expression that can implement itself in batch convention.
+ *
+ * @see BatchConvention
+ */
+public interface BatchRel extends RelNode {
+  /** Generates code for this relational expression.
+   *
+   * <p>The block in the result evaluates to an
+   * {@link org.apache.calcite.linq4j.Enumerable} of
+   * {@link org.apache.calcite.runtime.ColumnBatch}; the class of each column
+   * array is given by {@link Batches#columnClass}. The physical type in the
+   * result describes the rows of the batches.
+   *
+   * @param implementor Implementor
+   * @return Plan for the expression
+   */
+  EnumerableRel.Result implement(EnumerableRelImplementor implementor);
+}
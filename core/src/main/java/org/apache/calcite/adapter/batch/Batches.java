@@ -0,0 +1,1167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.batch;
+
+import org.apache.calcite.DataContext;
+import org.apache.calcite.adapter.enumerable.EnumUtils;
+import org.apache.calcite.adapter.enumerable.EnumerableConvention;
+import org.apache.calcite.adapter.enumerable.EnumerableRel;
+import org.apache.calcite.adapter.enumerable.EnumerableRelImplementor;
+import org.apache.calcite.adapter.enumerable.JavaRowFormat;
+import org.apache.calcite.adapter.enumerable.PhysType;
+import org.apache.calcite.adapter.enumerable.PhysTypeImpl;
+import org.apache.calcite.adapter.enumerable.RexToLixTranslator;
+import org.apache.calcite.adapter.java.JavaTypeFactory;
+import org.apache.calcite.config.CalciteConnectionConfig;
+import org.apache.calcite.linq4j.function.Function1;
+import org.apache.calcite.linq4j.tree.BlockBuilder;
+import org.apache.calcite.linq4j.tree.Blocks;
+import org.apache.calcite.linq4j.tree.Expression;
+import org.apache.calcite.linq4j.tree.Expressions;
+import org.apache.calcite.linq4j.tree.ParameterExpression;
+import org.apache.calcite.linq4j.tree.Primitive;
+import org.apache.calcite.plan.Convention;
+import org.apache.calcite.plan.ConventionTraitDef;
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelOptCost;
+import org.apache.calcite.plan.RelOptPlanner;
+import org.apache.calcite.plan.RelOptPredicateList;
+import org.apache.calcite.plan.RelOptRule;
+import org.apache.calcite.plan.RelOptRuleCall;
+import org.apache.calcite.plan.RelOptTable;
+import org.apache.calcite.plan.RelOptUtil;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.RelCollationTraitDef;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.RelNodes;
+import org.apache.calcite.rel.RelWriter;
+import org.apache.calcite.rel.convert.ConverterImpl;
+import org.apache.calcite.rel.convert.ConverterRule;
+import org.apache.calcite.rel.core.Aggregate;
+import org.apache.calcite.rel.core.AggregateCall;
+import org.apache.calcite.rel.core.Calc;
+import org.apache.calcite.rel.core.Join;
+import org.apache.calcite.rel.core.JoinInfo;
+import org.apache.calcite.rel.core.JoinRelType;
+import org.apache.calcite.rel.core.RelFactories;
+import org.apache.calcite.rel.core.TableScan;
+import org.apache.calcite.rel.logical.LogicalAggregate;
+import org.apache.calcite.rel.logical.LogicalCalc;
+import org.apache.calcite.rel.logical.LogicalFilter;
+import org.apache.calcite.rel.logical.LogicalJoin;
+import org.apache.calcite.rel.logical.LogicalProject;
+import org.apache.calcite.rel.logical.LogicalTableScan;
+import org.apache.calcite.rel.metadata.RelMdCollation;
+import org.apache.calcite.rel.metadata.RelMdUtil;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeField;
+import org.apache.calcite.rex.RexBuilder;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.rex.RexProgram;
+import org.apache.calcite.rex.RexProgramBuilder;
+import org.apache.calcite.rex.RexSimplify;
+import org.apache.calcite.rex.RexUtil;
+import org.apache.calcite.runtime.ColumnBatch;
+import org.apache.calcite.runtime.ColumnBatches;
+import org.apache.calcite.schema.BatchableTable;
+import org.apache.calcite.schema.Table;
+import org.apache.calcite.sql.SqlKind;
+import org.apache.calcite.sql.type.SqlTypeName;
+import org.apache.calcite.sql.validate.SqlConformance;
+import org.apache.calcite.tools.RelBuilderFactory;
+import org.apache.calcite.util.BuiltInMethod;
+import org.apache.calcite.util.ImmutableBitSet;
+import org.apache.calcite.util.Util;
+import org.apache.calcite.util.mapping.IntPair;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Utilities pertaining to {@link BatchRel} and {@link BatchConvention}.
+ */
+public class Batches {
+  private Batches() {}
+
+  public static final RelOptRule BATCH_TABLE_SCAN_RULE =
+      new BatchTableScanRule(RelFactories.LOGICAL_BUILDER);
+
+  public static final RelOptRule BATCH_CALC_RULE =
+      new BatchCalcRule(RelFactories.LOGICAL_BUILDER);
+
+  public static final RelOptRule BATCH_FILTER_RULE =
+      new BatchFilterRule(RelFactories.LOGICAL_BUILDER);
+
+  public static final RelOptRule BATCH_PROJECT_RULE =
+      new BatchProjectRule(RelFactories.LOGICAL_BUILDER);
+
+  public static final RelOptRule BATCH_HASH_AGGREGATE_RULE =
+      new BatchHashAggregateRule(RelFactories.LOGICAL_BUILDER);
+
+  public static final RelOptRule BATCH_HASH_JOIN_RULE =
+      new BatchHashJoinRule(RelFactories.LOGICAL_BUILDER);
+
+  public static final RelOptRule BATCH_TO_ENUMERABLE_CONVERTER_RULE =
+      new BatchToEnumerableConverterRule(RelFactories.LOGICAL_BUILDER);
+
+  public static final RelOptRule ENUMERABLE_TO_BATCH_CONVERTER_RULE =
+      new EnumerableToBatchConverterRule(RelFactories.LOGICAL_BUILDER);
+
+  /** All rules that convert logical relational expressions to batch
+   * convention, and between batch convention and enumerable convention. */
+  public static final ImmutableList<RelOptRule> RULES =
+      ImmutableList.of(
+          BATCH_TABLE_SCAN_RULE,
+          BATCH_CALC_RULE,
+          BATCH_FILTER_RULE,
+          BATCH_PROJECT_RULE,
+          BATCH_HASH_AGGREGATE_RULE,
+          BATCH_HASH_JOIN_RULE,
+          BATCH_TO_ENUMERABLE_CONVERTER_RULE,
+          ENUMERABLE_TO_BATCH_CONVERTER_RULE);
+
+  /** Returns the number of rows in a batch, per the
+   * {@link org.apache.calcite.config.CalciteConnectionProperty#BATCH_SIZE}
+   * property of the connection that is using a planner. */
+  static int batchSize(RelOptPlanner planner) {
+    final CalciteConnectionConfig config =
+        planner.getContext().unwrap(CalciteConnectionConfig.class);
+    return config != null && config.batchSize() > 0
+        ? config.batchSize()
+        : BatchConvention.DEFAULT_BATCH_SIZE;
+  }
+
+  /** Returns whether a row type has a field of a collection type, which the
+   * batch convention does not support. */
+  static boolean hasCollectionField(RelDataType rowType) {
+    for (RelDataTypeField field : rowType.getFieldList()) {
+      switch (field.getType().getSqlTypeName()) {
+      case ARRAY:
+      case MULTISET:
+      case MAP:
+        return true;
+      default:
+        break;
+      }
+    }
+    return false;
+  }
+
+  /** Returns the class of the array that holds a column of a given type in a
+   * {@link ColumnBatch}.
+   *
+   * <p>A non-nullable numeric or boolean column is held in an array of the
+   * primitive type that the enumerable convention uses for its values, for
+   * example {@code int[]} for {@code INTEGER NOT NULL}; any other column is
+   * held in an {@code Object[]}. */
+  public static Class columnClass(JavaTypeFactory typeFactory,
+      RelDataType type) {
+    if (!type.isNullable()) {
+      switch (type.getSqlTypeName()) {
+      case BOOLEAN:
+      case TINYINT:
+      case SMALLINT:
+      case INTEGER:
+      case BIGINT:
+      case REAL:
+      case FLOAT:
+      case DOUBLE:
+        final Primitive primitive =
+            Primitive.of(typeFactory.getJavaClass(type));
+        if (primitive != null) {
+          return Array.newInstance(primitive.primitiveClass, 0).getClass();
+        }
+        break;
+      default:
+        break;
+      }
+    }
+    return Object[].class;
+  }
+
+  /** Returns the class of each column array of a batch of rows of a given
+   * type. */
+  private static List<Class> columnClasses(JavaTypeFactory typeFactory,
+      RelDataType rowType) {
+    final List<Class> list = new ArrayList<>();
+    for (RelDataTypeField field : rowType.getFieldList()) {
+      list.add(columnClass(typeFactory, field.getType()));
+    }
+    return list;
+  }
+
+  /** Generates an expression for an array of the class of each column array
+   * of a batch of rows of a given type. */
+  private static Expression columnClassArray(JavaTypeFactory typeFactory,
+      RelDataType rowType) {
+    final List<Expression> classes = new ArrayList<>();
+    for (Class columnClass : columnClasses(typeFactory, rowType)) {
+      classes.add(Expressions.constant(columnClass));
+    }
+    return Expressions.newArrayInit(Class.class, classes);
+  }
+
+  /** Generates an expression for an {@code int} array. */
+  private static Expression intArray(List<Integer> values) {
+    final List<Expression> list = new ArrayList<>();
+    for (int value : values) {
+      list.add(Expressions.constant(value));
+    }
+    return Expressions.newArrayInit(int.class, list);
+  }
+
+  /** Generates an expression that converts a value so that it can be stored
+   * in a column array whose element type is {@code componentType}. */
+  private static Expression toColumnValue(Expression e,
+      Class componentType) {
+    if (componentType.isPrimitive()) {
+      return EnumUtils.convert(e, componentType);
+    }
+    return Primitive.is(e.getType()) ? Expressions.box(e) : e;
+  }
+
+  /** Declares, at most once, a variable for each column array of a batch
+   * that generated code reads. */
+  private static class ColumnDeclarer {
+    private final BlockBuilder builder;
+    private final Expression columns;
+    private final List<Class> columnClasses;
+    private final Map<Integer, Expression> declared = new HashMap<>();
+
+    ColumnDeclarer(BlockBuilder builder, Expression batch,
+        List<Class> columnClasses) {
+      this.builder = builder;
+      this.columns =
+          builder.append("columns",
+              Expressions.field(batch,
+                  BuiltInMethod.COLUMN_BATCH_COLUMNS.field));
+      this.columnClasses = columnClasses;
+    }
+
+    /** Returns an expression for the value of a column in the current row,
+     * {@code column[i]}. */
+    Expression value(int ordinal, Expression i) {
+      final Expression column =
+          declared.computeIfAbsent(ordinal, k ->
+              builder.append("c" + k,
+                  Expressions.convert_(
+                      Expressions.arrayIndex(columns, Expressions.constant(k)),
+                      columnClasses.get(k)),
+                  false));
+      return Expressions.arrayIndex(column, i);
+    }
+  }
+
+  /** Rule that converts a {@link LogicalTableScan} of a
+   * {@link BatchableTable} to batch convention. */
+  public static class BatchTableScanRule extends RelOptRule {
+    /**
+     * Creates a BatchTableScanRule.
+     *
+     * @param relBuilderFactory Builder for relational expressions
+     */
+    public BatchTableScanRule(RelBuilderFactory relBuilderFactory) {
+      super(operand(LogicalTableScan.class, none()), relBuilderFactory, null);
+    }
+
+    @Override public void onMatch(RelOptRuleCall call) {
+      final LogicalTableScan scan = call.rel(0);
+      final RelOptTable table = scan.getTable();
+      if (!BatchTableScan.canHandle(table)) {
+        return;
+      }
+      call.transformTo(
+          BatchTableScan.create(scan.getCluster(), table,
+              batchSize(call.getPlanner())));
+    }
+  }
+
+  /** Scan of a table that implements {@link BatchableTable}, in batch
+   * convention. */
+  public static class BatchTableScan extends TableScan implements BatchRel {
+    public final int batchSize;
+
+    /** Creates a BatchTableScan.
+     *
+     * <p>Use {@link #create} unless you know what you are doing. */
+    BatchTableScan(RelOptCluster cluster, RelTraitSet traitSet,
+        RelOptTable table, int batchSize) {
+      super(cluster, traitSet, ImmutableList.of(), table);
+      this.batchSize = batchSize;
+      assert canHandle(table);
+    }
+
+    /** Creates a BatchTableScan. */
+    public static BatchTableScan create(RelOptCluster cluster,
+        RelOptTable relOptTable, int batchSize) {
+      final Table table = relOptTable.unwrap(Table.class);
+      final RelTraitSet traitSet =
+          cluster.traitSetOf(BatchConvention.INSTANCE)
+              .replaceIfs(RelCollationTraitDef.INSTANCE, () -> {
+                if (table != null) {
+                  return table.getStatistic().getCollations();
+                }
+                return ImmutableList.of();
+              });
+      return new BatchTableScan(cluster, traitSet, relOptTable, batchSize);
+    }
+
+    /** Returns whether a table can be scanned in batch convention. Fields of
+     * collection types are not supported. */
+    public static boolean canHandle(RelOptTable table) {
+      return table.unwrap(BatchableTable.class) != null
+          && !hasCollectionField(table.getRowType());
+    }
+
+    @Override public RelNode copy(RelTraitSet traitSet, List<RelNode> inputs) {
+      assert inputs.isEmpty();
+      return new BatchTableScan(getCluster(), traitSet, table, batchSize);
+    }
+
+    @Override public RelWriter explainTerms(RelWriter pw) {
+      return super.explainTerms(pw)
+          .item("batchSize", batchSize);
+    }
+
+    @Override public RelOptCost computeSelfCost(RelOptPlanner planner,
+        RelMetadataQuery mq) {
+      return super.computeSelfCost(planner, mq)
+          .multiplyBy(BatchConvention.COST_MULTIPLIER);
+    }
+
+    public EnumerableRel.Result implement(
+        EnumerableRelImplementor implementor) {
+      // Generate:
+      //   table.scanBatches(root, new Class[] {int[].class, ...}, 1024)
+      final JavaTypeFactory typeFactory = implementor.getTypeFactory();
+      final PhysType physType =
+          PhysTypeImpl.of(typeFactory, getRowType(), JavaRowFormat.ARRAY);
+      final Expression expression =
+          Expressions.call(
+              implementor.stash(table.unwrap(BatchableTable.class),
+                  BatchableTable.class),
+              BuiltInMethod.BATCHABLE_TABLE_SCAN.method,
+              DataContext.ROOT,
+              columnClassArray(typeFactory, getRowType()),
+              Expressions.constant(batchSize));
+      return implementor.result(physType, Blocks.toBlock(expression));
+    }
+  }
+
+  /** Rule that converts a {@link LogicalCalc} to batch convention. */
+  public static class BatchCalcRule extends ConverterRule {
+    /**
+     * Creates a BatchCalcRule.
+     *
+     * @param relBuilderFactory Builder for relational expressions
+     */
+    public BatchCalcRule(RelBuilderFactory relBuilderFactory) {
+      super(LogicalCalc.class,
+          (Predicate<Calc>) RelOptUtil::notContainsWindowedAgg,
+          Convention.NONE, BatchConvention.INSTANCE, relBuilderFactory,
+          "BatchCalcRule");
+    }
+
+    public RelNode convert(RelNode rel) {
+      final LogicalCalc calc = (LogicalCalc) rel;
+      final RelNode input = calc.getInput();
+      return BatchCalc.create(
+          convert(input,
+              input.getTraitSet().replace(BatchConvention.INSTANCE)),
+          calc.getProgram());
+    }
+  }
+
+  /** Rule that converts a {@link LogicalFilter} to a {@link BatchCalc}. */
+  public static class BatchFilterRule extends ConverterRule {
+    /**
+     * Creates a BatchFilterRule.
+     *
+     * @param relBuilderFactory Builder for relational expressions
+     */
+    public BatchFilterRule(RelBuilderFactory relBuilderFactory) {
+      super(LogicalFilter.class,
+          (Predicate<LogicalFilter>) RelOptUtil::notContainsWindowedAgg,
+          Convention.NONE, BatchConvention.INSTANCE, relBuilderFactory,
+          "BatchFilterRule");
+    }
+
+    public RelNode convert(RelNode rel) {
+      final LogicalFilter filter = (LogicalFilter) rel;
+      final RelNode input = filter.getInput();
+      final RexProgramBuilder programBuilder =
+          new RexProgramBuilder(input.getRowType(),
+              filter.getCluster().getRexBuilder());
+      programBuilder.addIdentity();
+      programBuilder.addCondition(filter.getCondition());
+      return BatchCalc.create(
+          convert(input,
+              input.getTraitSet().replace(BatchConvention.INSTANCE)),
+          programBuilder.getProgram());
+    }
+  }
+
+  /** Rule that converts a {@link LogicalProject} to a {@link BatchCalc}. */
+  public static class BatchProjectRule extends ConverterRule {
+    /**
+     * Creates a BatchProjectRule.
+     *
+     * @param relBuilderFactory Builder for relational expressions
+     */
+    public BatchProjectRule(RelBuilderFactory relBuilderFactory) {
+      super(LogicalProject.class,
+          (Predicate<LogicalProject>) RelOptUtil::notContainsWindowedAgg,
+          Convention.NONE, BatchConvention.INSTANCE, relBuilderFactory,
+          "BatchProjectRule");
+    }
+
+    public RelNode convert(RelNode rel) {
+      final LogicalProject project = (LogicalProject) rel;
+      final RelNode input = project.getInput();
+      final RexProgram program =
+          RexProgram.create(input.getRowType(), project.getProjects(), null,
+              project.getRowType(), project.getCluster().getRexBuilder());
+      return BatchCalc.create(
+          convert(input,
+              input.getTraitSet().replace(BatchConvention.INSTANCE)),
+          program);
+    }
+  }
+
+  /** Implementation of {@link Calc} in batch convention.
+   *
+   * <p>For each input batch, the generated code evaluates the condition and
+   * projections in a loop over the rows of the batch, reading values from
+   * the input column arrays and writing them to new output column arrays. */
+  public static class BatchCalc extends Calc implements BatchRel {
+    /** Creates a BatchCalc.
+     *
+     * <p>Use {@link #create} unless you know what you're doing. */
+    public BatchCalc(RelOptCluster cluster, RelTraitSet traitSet,
+        RelNode input, RexProgram program) {
+      super(cluster, traitSet, ImmutableList.of(), input, program);
+      assert getConvention() instanceof BatchConvention;
+      assert !program.containsAggs();
+    }
+
+    /** Creates a BatchCalc. */
+    public static BatchCalc create(final RelNode input,
+        final RexProgram program) {
+      final RelOptCluster cluster = input.getCluster();
+      final RelMetadataQuery mq = cluster.getMetadataQuery();
+      final RelTraitSet traitSet =
+          cluster.traitSetOf(BatchConvention.INSTANCE)
+              .replaceIfs(RelCollationTraitDef.INSTANCE,
+                  () -> RelMdCollation.calc(mq, input, program));
+      return new BatchCalc(cluster, traitSet, input, program);
+    }
+
+    @Override public BatchCalc copy(RelTraitSet traitSet, RelNode child,
+        RexProgram program) {
+      return new BatchCalc(getCluster(), traitSet, child, program);
+    }
+
+    @Override public RelOptCost computeSelfCost(RelOptPlanner planner,
+        RelMetadataQuery mq) {
+      return super.computeSelfCost(planner, mq)
+          .multiplyBy(BatchConvention.COST_MULTIPLIER);
+    }
+
+    public EnumerableRel.Result implement(
+        EnumerableRelImplementor implementor) {
+      // Generate:
+      //   inputEnumerable.select(batch -> {
+      //     final Object[] columns = batch.columns;
+      //     final int size = batch.size;
+      //     final int[] c0 = (int[]) columns[0];
+      //     final int[] o0 = new int[size];
+      //     int k = 0;
+      //     for (int i = 0; i < size; ++i) {
+      //       if (c0[i] > 10) {
+      //         o0[k] = c0[i] + 1;
+      //         ++k;
+      //       }
+      //     }
+      //     return new ColumnBatch(new Object[] {o0}, k);
+      //   })
+      final JavaTypeFactory typeFactory = implementor.getTypeFactory();
+      final BlockBuilder builder = new BlockBuilder();
+      final BatchRel child = (BatchRel) getInput();
+      final EnumerableRel.Result result = child.implement(implementor);
+      final PhysType physType =
+          PhysTypeImpl.of(typeFactory, getRowType(), JavaRowFormat.ARRAY);
+
+      final RexBuilder rexBuilder = getCluster().getRexBuilder();
+      final RelMetadataQuery mq = getCluster().getMetadataQuery();
+      final RelOptPredicateList predicates = mq.getPulledUpPredicates(child);
+      final RexSimplify simplify =
+          new RexSimplify(rexBuilder, predicates, RexUtil.EXECUTOR);
+      final RexProgram program = this.program.normalize(rexBuilder, simplify);
+      final SqlConformance conformance = implementor.getConformance();
+      final Function1<String, RexToLixTranslator.InputGetter> correlates =
+          implementor::getCorrelVariableGetter;
+
+      final Expression inputEnumerable =
+          builder.append("inputEnumerable", result.block, false);
+      final ParameterExpression batch_ =
+          Expressions.parameter(ColumnBatch.class, "batch");
+
+      // Variables are declared in a non-optimizing block, so that column
+      // arrays are not re-read inside the loop.
+      final BlockBuilder builder2 = new BlockBuilder(false);
+      final ColumnDeclarer inputColumns =
+          new ColumnDeclarer(builder2, batch_,
+              columnClasses(typeFactory, child.getRowType()));
+      final Expression size_ =
+          builder2.append("size",
+              Expressions.field(batch_, BuiltInMethod.COLUMN_BATCH_SIZE.field));
+      final List<Class> outputClasses =
+          columnClasses(typeFactory, getRowType());
+      final List<Expression> outputColumns = new ArrayList<>();
+      for (Class outputClass : outputClasses) {
+        outputColumns.add(
+            builder2.append("o",
+                Expressions.newArrayBounds(outputClass.getComponentType(), 1,
+                    size_)));
+      }
+      final ParameterExpression k_ =
+          Expressions.parameter(int.class, builder2.newName("k"));
+      builder2.add(Expressions.declare(0, k_, Expressions.constant(0)));
+      final ParameterExpression i_ =
+          Expressions.parameter(int.class, builder2.newName("i"));
+      final RexToLixTranslator.InputGetter inputGetter =
+          (list, index, storageType) -> {
+            final Expression value = inputColumns.value(index, i_);
+            return EnumUtils.convert(value, value.getType(),
+                storageType != null
+                    ? storageType
+                    : result.physType.fieldClass(index));
+          };
+
+      final BlockBuilder builder3 = new BlockBuilder(true, builder2);
+      final BlockBuilder builder4;
+      final Expression condition;
+      if (program.getCondition() == null) {
+        builder4 = builder3;
+        condition = null;
+      } else {
+        builder4 = new BlockBuilder(true, builder3);
+        condition =
+            RexToLixTranslator.translateCondition(program, typeFactory,
+                builder3, inputGetter, correlates, conformance);
+      }
+      final List<Expression> expressions =
+          RexToLixTranslator.translateProjects(program, typeFactory,
+              conformance, builder4, null, DataContext.ROOT, inputGetter,
+              correlates);
+      for (int j = 0; j < expressions.size(); j++) {
+        builder4.add(
+            Expressions.statement(
+                Expressions.assign(
+                    Expressions.arrayIndex(outputColumns.get(j), k_),
+                    toColumnValue(expressions.get(j),
+                        outputClasses.get(j).getComponentType()))));
+      }
+      builder4.add(Expressions.statement(Expressions.preIncrementAssign(k_)));
+      if (condition != null) {
+        builder3.add(Expressions.ifThen(condition, builder4.toBlock()));
+      }
+      builder2.add(
+          Expressions.for_(
+              Expressions.declare(0, i_, Expressions.constant(0)),
+              Expressions.lessThan(i_, size_),
+              Expressions.preIncrementAssign(i_),
+              builder3.toBlock()));
+      builder2.add(
+          Expressions.return_(null,
+              Expressions.new_(BuiltInMethod.COLUMN_BATCH_NEW.constructor,
+                  Expressions.newArrayInit(Object.class, outputColumns),
+                  k_)));
+      builder.add(
+          Expressions.return_(null,
+              Expressions.call(inputEnumerable,
+                  BuiltInMethod.SELECT.method,
+                  Expressions.lambda(Function1.class, builder2.toBlock(),
+                      batch_))));
+      return implementor.result(physType, builder.toBlock());
+    }
+  }
+
+  /** Rule that converts a {@link LogicalAggregate} to a
+   * {@link BatchHashAggregate}. */
+  public static class BatchHashAggregateRule extends ConverterRule {
+    /**
+     * Creates a BatchHashAggregateRule.
+     *
+     * @param relBuilderFactory Builder for relational expressions
+     */
+    public BatchHashAggregateRule(RelBuilderFactory relBuilderFactory) {
+      super(LogicalAggregate.class,
+          (Predicate<LogicalAggregate>) BatchHashAggregate::canHandle,
+          Convention.NONE, BatchConvention.INSTANCE, relBuilderFactory,
+          "BatchHashAggregateRule");
+    }
+
+    public RelNode convert(RelNode rel) {
+      final LogicalAggregate aggregate = (LogicalAggregate) rel;
+      final RelNode input = aggregate.getInput();
+      return BatchHashAggregate.create(
+          convert(input,
+              input.getTraitSet().replace(BatchConvention.INSTANCE)),
+          aggregate.getGroupSet(), aggregate.getAggCallList());
+    }
+  }
+
+  /** Implementation of {@link Aggregate} in batch convention, using a hash
+   * table.
+   *
+   * <p>Supports a single grouping set, and calls to {@code COUNT},
+   * {@code SUM}, {@code $SUM0}, {@code MIN} and {@code MAX} that are not
+   * {@code DISTINCT} and have no {@code FILTER}. For each input batch, the
+   * runtime ({@link ColumnBatches#hashAggregate}) computes the group of each
+   * row, then updates the state of each aggregate function in a loop over
+   * its argument column. */
+  public static class BatchHashAggregate extends Aggregate
+      implements BatchRel {
+    /** Creates a BatchHashAggregate.
+     *
+     * <p>Use {@link #create} unless you know what you're doing. */
+    BatchHashAggregate(RelOptCluster cluster, RelTraitSet traitSet,
+        RelNode input, ImmutableBitSet groupSet,
+        List<AggregateCall> aggCalls) {
+      super(cluster, traitSet, ImmutableList.of(), input, groupSet, null,
+          aggCalls);
+      assert getConvention() instanceof BatchConvention;
+      assert canHandle(this);
+    }
+
+    /** Creates a BatchHashAggregate. */
+    public static BatchHashAggregate create(RelNode input,
+        ImmutableBitSet groupSet, List<AggregateCall> aggCalls) {
+      final RelOptCluster cluster = input.getCluster();
+      return new BatchHashAggregate(cluster,
+          cluster.traitSetOf(BatchConvention.INSTANCE), input, groupSet,
+          aggCalls);
+    }
+
+    /** Returns whether an aggregate can be implemented in batch
+     * convention. */
+    public static boolean canHandle(Aggregate aggregate) {
+      if (aggregate.getGroupType() != Group.SIMPLE
+          || hasCollectionField(aggregate.getInput().getRowType())) {
+        return false;
+      }
+      for (AggregateCall aggCall : aggregate.getAggCallList()) {
+        if (aggCall.isDistinct()
+            || aggCall.filterArg >= 0
+            || !aggCall.collation.getFieldCollations().isEmpty()
+            || aggFunction(aggCall) == null) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /** Returns the function that computes an aggregate call at run time, or
+     * null if the call is not supported. */
+    private static ColumnBatches.AggFunction aggFunction(
+        AggregateCall aggCall) {
+      final SqlTypeName typeName = aggCall.getType().getSqlTypeName();
+      switch (aggCall.getAggregation().getKind()) {
+      case COUNT:
+        return aggCall.getArgList().size() <= 1
+            ? ColumnBatches.AggFunction.COUNT
+            : null;
+      case SUM:
+      case SUM0:
+        if (aggCall.getArgList().size() != 1) {
+          return null;
+        }
+        switch (typeName) {
+        case TINYINT:
+        case SMALLINT:
+        case INTEGER:
+        case BIGINT:
+        case DECIMAL:
+        case FLOAT:
+        case DOUBLE:
+          // REAL is not supported, because the enumerable convention sums
+          // REAL values in float precision.
+          return aggCall.getAggregation().getKind() == SqlKind.SUM
+              ? ColumnBatches.AggFunction.SUM
+              : ColumnBatches.AggFunction.SUM0;
+        default:
+          return null;
+        }
+      case MIN:
+      case MAX:
+        if (aggCall.getArgList().size() != 1
+            || !(SqlTypeName.BOOLEAN_TYPES.contains(typeName)
+                || SqlTypeName.NUMERIC_TYPES.contains(typeName)
+                || SqlTypeName.STRING_TYPES.contains(typeName)
+                || SqlTypeName.DATETIME_TYPES.contains(typeName))) {
+          return null;
+        }
+        return aggCall.getAggregation().getKind() == SqlKind.MIN
+            ? ColumnBatches.AggFunction.MIN
+            : ColumnBatches.AggFunction.MAX;
+      default:
+        return null;
+      }
+    }
+
+    @Override public BatchHashAggregate copy(RelTraitSet traitSet,
+        RelNode input, ImmutableBitSet groupSet,
+        List<ImmutableBitSet> groupSets, List<AggregateCall> aggCalls) {
+      assert groupSets == null || groupSets.equals(ImmutableList.of(groupSet))
+          : groupSets;
+      return new BatchHashAggregate(getCluster(), traitSet, input, groupSet,
+          aggCalls);
+    }
+
+    @Override public RelOptCost computeSelfCost(RelOptPlanner planner,
+        RelMetadataQuery mq) {
+      return super.computeSelfCost(planner, mq)
+          .multiplyBy(BatchConvention.COST_MULTIPLIER);
+    }
+
+    public EnumerableRel.Result implement(
+        EnumerableRelImplementor implementor) {
+      // Generate:
+      //   ColumnBatches.hashAggregate(inputEnumerable, new int[] {4},
+      //       new ColumnBatches.AggFunction[] {COUNT, SUM0},
+      //       new int[] {-1, 7},
+      //       new Class[] {int.class, long.class, BigDecimal.class},
+      //       new Class[] {int[].class, long[].class, Object[].class},
+      //       1024)
+      final JavaTypeFactory typeFactory = implementor.getTypeFactory();
+      final BlockBuilder builder = new BlockBuilder();
+      final BatchRel child = (BatchRel) getInput();
+      final EnumerableRel.Result result = child.implement(implementor);
+      final PhysType physType =
+          PhysTypeImpl.of(typeFactory, getRowType(), JavaRowFormat.ARRAY);
+
+      final Expression inputEnumerable =
+          builder.append("inputEnumerable", result.block, false);
+      final List<Expression> functions = new ArrayList<>();
+      final List<Integer> args = new ArrayList<>();
+      for (AggregateCall aggCall : aggCalls) {
+        functions.add(Expressions.constant(aggFunction(aggCall)));
+        args.add(aggCall.getArgList().isEmpty()
+            ? -1
+            : aggCall.getArgList().get(0));
+      }
+      final List<Expression> fieldClasses = new ArrayList<>();
+      for (int i = 0; i < getRowType().getFieldCount(); i++) {
+        fieldClasses.add(Expressions.constant(physType.fieldClass(i)));
+      }
+      builder.add(
+          Expressions.return_(null,
+              Expressions.call(
+                  BuiltInMethod.COLUMN_BATCHES_HASH_AGGREGATE.method,
+                  inputEnumerable,
+                  intArray(groupSet.asList()),
+                  Expressions.newArrayInit(ColumnBatches.AggFunction.class,
+                      functions),
+                  intArray(args),
+                  Expressions.newArrayInit(Class.class, fieldClasses),
+                  columnClassArray(typeFactory, getRowType()),
+                  Expressions.constant(batchSize(getCluster().getPlanner())))));
+      return implementor.result(physType, builder.toBlock());
+    }
+  }
+
+  /** Rule that converts a {@link LogicalJoin} to a {@link BatchHashJoin}. */
+  public static class BatchHashJoinRule extends ConverterRule {
+    /**
+     * Creates a BatchHashJoinRule.
+     *
+     * @param relBuilderFactory Builder for relational expressions
+     */
+    public BatchHashJoinRule(RelBuilderFactory relBuilderFactory) {
+      super(LogicalJoin.class,
+          (Predicate<LogicalJoin>) BatchHashJoin::canHandle,
+          Convention.NONE, BatchConvention.INSTANCE, relBuilderFactory,
+          "BatchHashJoinRule");
+    }
+
+    public RelNode convert(RelNode rel) {
+      final LogicalJoin join = (LogicalJoin) rel;
+      final List<RelNode> inputs = new ArrayList<>();
+      for (RelNode input : join.getInputs()) {
+        inputs.add(
+            convert(input,
+                input.getTraitSet().replace(BatchConvention.INSTANCE)));
+      }
+      return BatchHashJoin.create(inputs.get(0), inputs.get(1),
+          join.getCondition(), join.getJoinType());
+    }
+  }
+
+  /** Implementation of {@link Join} in batch convention, using a hash table.
+   *
+   * <p>Supports INNER and LEFT joins whose condition is a conjunction of
+   * equalities between keys of the same type. The runtime
+   * ({@link ColumnBatches#hashJoin}) reads the right input into a hash
+   * table, then for each batch of the left input computes the ordinals of
+   * the matching rows, and copies each output column from an input column
+   * in a single loop. */
+  public static class BatchHashJoin extends Join implements BatchRel {
+    /** Creates a BatchHashJoin.
+     *
+     * <p>Use {@link #create} unless you know what you're doing. */
+    BatchHashJoin(RelOptCluster cluster, RelTraitSet traitSet,
+        RelNode left, RelNode right, RexNode condition,
+        JoinRelType joinType) {
+      super(cluster, traitSet, ImmutableList.of(), left, right, condition,
+          ImmutableSet.of(), joinType);
+      assert getConvention() instanceof BatchConvention;
+      assert canHandle(this);
+    }
+
+    /** Creates a BatchHashJoin. */
+    public static BatchHashJoin create(RelNode left, RelNode right,
+        RexNode condition, JoinRelType joinType) {
+      final RelOptCluster cluster = left.getCluster();
+      return new BatchHashJoin(cluster,
+          cluster.traitSetOf(BatchConvention.INSTANCE), left, right,
+          condition, joinType);
+    }
+
+    /** Returns whether a join can be implemented in batch convention. */
+    public static boolean canHandle(Join join) {
+      switch (join.getJoinType()) {
+      case INNER:
+      case LEFT:
+        break;
+      default:
+        return false;
+      }
+      final JoinInfo joinInfo = join.analyzeCondition();
+      if (!join.getVariablesSet().isEmpty()
+          || !joinInfo.isEqui()
+          || joinInfo.leftKeys.isEmpty()
+          || hasCollectionField(join.getLeft().getRowType())
+          || hasCollectionField(join.getRight().getRowType())) {
+        return false;
+      }
+      final List<RelDataTypeField> leftFields =
+          join.getLeft().getRowType().getFieldList();
+      final List<RelDataTypeField> rightFields =
+          join.getRight().getRowType().getFieldList();
+      for (IntPair pair : joinInfo.pairs()) {
+        if (leftFields.get(pair.source).getType().getSqlTypeName()
+            != rightFields.get(pair.target).getType().getSqlTypeName()) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Override public BatchHashJoin copy(RelTraitSet traitSet,
+        RexNode condition, RelNode left, RelNode right, JoinRelType joinType,
+        boolean semiJoinDone) {
+      return new BatchHashJoin(getCluster(), traitSet, left, right,
+          condition, joinType);
+    }
+
+    @Override public RelOptCost computeSelfCost(RelOptPlanner planner,
+        RelMetadataQuery mq) {
+      double rowCount = mq.getRowCount(this);
+      // As EnumerableHashJoin: cheaper if the smaller input is on the right,
+      // which is the side that is read into the hash table.
+      if (joinType == JoinRelType.INNER
+          && RelNodes.COMPARATOR.compare(left, right) > 0) {
+        rowCount = RelMdUtil.addEpsilon(rowCount);
+      }
+      final double leftRowCount = left.estimateRowCount(mq);
+      final double rightRowCount = right.estimateRowCount(mq);
+      if (Double.isInfinite(leftRowCount)
+          || Double.isInfinite(rightRowCount)) {
+        return planner.getCostFactory().makeInfiniteCost();
+      }
+      rowCount += Util.nLogN(leftRowCount) + rightRowCount;
+      return planner.getCostFactory().makeCost(rowCount, 0, 0)
+          .multiplyBy(BatchConvention.COST_MULTIPLIER);
+    }
+
+    public EnumerableRel.Result implement(
+        EnumerableRelImplementor implementor) {
+      // Generate:
+      //   ColumnBatches.hashJoin(leftEnumerable, rightEnumerable,
+      //       new int[] {0}, new int[] {3}, false,
+      //       new Class[] {int[].class, Object[].class, int[].class})
+      final JavaTypeFactory typeFactory = implementor.getTypeFactory();
+      final BlockBuilder builder = new BlockBuilder();
+      final EnumerableRel.Result leftResult =
+          ((BatchRel) left).implement(implementor);
+      final Expression leftEnumerable =
+          builder.append("leftEnumerable", leftResult.block, false);
+      final EnumerableRel.Result rightResult =
+          ((BatchRel) right).implement(implementor);
+      final Expression rightEnumerable =
+          builder.append("rightEnumerable", rightResult.block, false);
+      final PhysType physType =
+          PhysTypeImpl.of(typeFactory, getRowType(), JavaRowFormat.ARRAY);
+      builder.add(
+          Expressions.return_(null,
+              Expressions.call(BuiltInMethod.COLUMN_BATCHES_HASH_JOIN.method,
+                  leftEnumerable,
+                  rightEnumerable,
+                  intArray(joinInfo.leftKeys),
+                  intArray(joinInfo.rightKeys),
+                  Expressions.constant(joinType == JoinRelType.LEFT),
+                  columnClassArray(typeFactory, getRowType()))));
+      return implementor.result(physType, builder.toBlock());
+    }
+  }
+
+  /** Rule that converts a relational expression from batch convention to
+   * {@link EnumerableConvention}. */
+  public static class BatchToEnumerableConverterRule extends ConverterRule {
+    /**
+     * Creates a BatchToEnumerableConverterRule.
+     *
+     * @param relBuilderFactory Builder for relational expressions
+     */
+    public BatchToEnumerableConverterRule(
+        RelBuilderFactory relBuilderFactory) {
+      super(RelNode.class, (Predicate<RelNode>) r -> true,
+          BatchConvention.INSTANCE, EnumerableConvention.INSTANCE,
+          relBuilderFactory, "BatchToEnumerableConverterRule");
+    }
+
+    @Override public RelNode convert(RelNode rel) {
+      final RelTraitSet newTraitSet = rel.getTraitSet().replace(getOutTrait());
+      return new BatchToEnumerableConverter(rel.getCluster(), newTraitSet,
+          rel);
+    }
+  }
+
+  /** Relational expression that converts a relational expression in batch
+   * convention into rows in enumerable convention. */
+  public static class BatchToEnumerableConverter extends ConverterImpl
+      implements EnumerableRel {
+    protected BatchToEnumerableConverter(RelOptCluster cluster,
+        RelTraitSet traits, RelNode input) {
+      super(cluster, ConventionTraitDef.INSTANCE, traits, input);
+    }
+
+    @Override public RelNode copy(RelTraitSet traitSet, List<RelNode> inputs) {
+      return new BatchToEnumerableConverter(getCluster(), traitSet,
+          sole(inputs));
+    }
+
+    @Override public RelOptCost computeSelfCost(RelOptPlanner planner,
+        RelMetadataQuery mq) {
+      return super.computeSelfCost(planner, mq).multiplyBy(.1);
+    }
+
+    public Result implement(EnumerableRelImplementor implementor,
+        Prefer pref) {
+      // Generate:
+      //   inputEnumerable.selectMany(batch -> {
+      //     final Object[] columns = batch.columns;
+      //     final int size = batch.size;
+      //     final int[] c0 = (int[]) columns[0];
+      //     final Object[] c1 = (Object[]) columns[1];
+      //     final Object[] rows = new Object[size];
+      //     for (int i = 0; i < size; ++i) {
+      //       rows[i] = new Object[] {c0[i], c1[i]};
+      //     }
+      //     return Linq4j.asEnumerable(rows);
+      //   })
+      final JavaTypeFactory typeFactory = implementor.getTypeFactory();
+      final BlockBuilder builder = new BlockBuilder();
+      final BatchRel child = (BatchRel) getInput();
+      final EnumerableRel.Result result = child.implement(implementor);
+      final PhysType physType =
+          PhysTypeImpl.of(typeFactory, getRowType(),
+              JavaRowFormat.ARRAY.optimize(getRowType()));
+
+      final Expression inputEnumerable =
+          builder.append("inputEnumerable", result.block, false);
+      final ParameterExpression batch_ =
+          Expressions.parameter(ColumnBatch.class, "batch");
+      final BlockBuilder builder2 = new BlockBuilder(false);
+      final ColumnDeclarer inputColumns =
+          new ColumnDeclarer(builder2, batch_,
+              columnClasses(typeFactory, getRowType()));
+      final Expression size_ =
+          builder2.append("size",
+              Expressions.field(batch_, BuiltInMethod.COLUMN_BATCH_SIZE.field));
+      final Expression rows_ =
+          builder2.append("rows",
+              Expressions.newArrayBounds(Object.class, 1, size_));
+      final ParameterExpression i_ =
+          Expressions.parameter(int.class, builder2.newName("i"));
+      final List<Expression> values = new ArrayList<>();
+      for (int j = 0; j < getRowType().getFieldCount(); j++) {
+        values.add(toColumnValue(inputColumns.value(j, i_), Object.class));
+      }
+      builder2.add(
+          Expressions.for_(
+              Expressions.declare(0, i_, Expressions.constant(0)),
+              Expressions.lessThan(i_, size_),
+              Expressions.preIncrementAssign(i_),
+              Expressions.statement(
+                  Expressions.assign(Expressions.arrayIndex(rows_, i_),
+                      physType.record(values)))));
+      builder2.add(
+          Expressions.return_(null,
+              Expressions.call(BuiltInMethod.AS_ENUMERABLE.method, rows_)));
+      builder.add(
+          Expressions.return_(null,
+              Expressions.call(inputEnumerable,
+                  BuiltInMethod.SELECT_MANY.method,
+                  Expressions.lambda(Function1.class, builder2.toBlock(),
+                      batch_))));
+      return implementor.result(physType, builder.toBlock());
+    }
+  }
+
+  /** Rule that converts a relational expression from
+   * {@link EnumerableConvention} to batch convention. */
+  public static class EnumerableToBatchConverterRule extends ConverterRule {
+    /**
+     * Creates an EnumerableToBatchConverterRule.
+     *
+     * @param relBuilderFactory Builder for relational expressions
+     */
+    public EnumerableToBatchConverterRule(
+        RelBuilderFactory relBuilderFactory) {
+      super(RelNode.class,
+          (Predicate<RelNode>) r -> !hasCollectionField(r.getRowType()),
+          EnumerableConvention.INSTANCE, BatchConvention.INSTANCE,
+          relBuilderFactory, "EnumerableToBatchConverterRule");
+    }
+
+    @Override public RelNode convert(RelNode rel) {
+      final RelTraitSet newTraitSet = rel.getTraitSet().replace(getOutTrait());
+      return new EnumerableToBatchConverter(rel.getCluster(), newTraitSet,
+          rel);
+    }
+  }
+
+  /** Relational expression that converts rows of a relational expression in
+   * enumerable convention into batches. */
+  public static class EnumerableToBatchConverter extends ConverterImpl
+      implements BatchRel {
+    protected EnumerableToBatchConverter(RelOptCluster cluster,
+        RelTraitSet traits, RelNode input) {
+      super(cluster, ConventionTraitDef.INSTANCE, traits, input);
+    }
+
+    @Override public RelNode copy(RelTraitSet traitSet, List<RelNode> inputs) {
+      return new EnumerableToBatchConverter(getCluster(), traitSet,
+          sole(inputs));
+    }
+
+    @Override public RelOptCost computeSelfCost(RelOptPlanner planner,
+        RelMetadataQuery mq) {
+      return super.computeSelfCost(planner, mq).multiplyBy(.1);
+    }
+
+    public EnumerableRel.Result implement(
+        EnumerableRelImplementor implementor) {
+      // Generate:
+      //   ColumnBatches.chunk(inputEnumerable, 1024).select(rows -> {
+      //     final int size = rows.size();
+      //     final int[] o0 = new int[size];
+      //     final Object[] o1 = new Object[size];
+      //     for (int i = 0; i < size; ++i) {
+      //       final Object[] row = (Object[]) rows.get(i);
+      //       o0[i] = (Integer) row[0];
+      //       o1[i] = row[1];
+      //     }
+      //     return new ColumnBatch(new Object[] {o0, o1}, size);
+      //   })
+      final JavaTypeFactory typeFactory = implementor.getTypeFactory();
+      final BlockBuilder builder = new BlockBuilder();
+      final EnumerableRel.Result result =
+          implementor.visitChild(null, 0, (EnumerableRel) getInput(),
+              EnumerableRel.Prefer.ARRAY);
+      final PhysType physType =
+          PhysTypeImpl.of(typeFactory, getRowType(), JavaRowFormat.ARRAY);
+
+      final Expression inputEnumerable =
+          builder.append("inputEnumerable", result.block, false);
+      final ParameterExpression rows_ =
+          Expressions.parameter(List.class, "rows");
+      final BlockBuilder builder2 = new BlockBuilder(false);
+      final Expression size_ =
+          builder2.append("size",
+              Expressions.call(rows_, BuiltInMethod.COLLECTION_SIZE.method));
+      final List<Class> outputClasses =
+          columnClasses(typeFactory, getRowType());
+      final List<Expression> outputColumns = new ArrayList<>();
+      for (Class outputClass : outputClasses) {
+        outputColumns.add(
+            builder2.append("o",
+                Expressions.newArrayBounds(outputClass.getComponentType(), 1,
+                    size_)));
+      }
+      final ParameterExpression i_ =
+          Expressions.parameter(int.class, builder2.newName("i"));
+      final BlockBuilder builder3 = new BlockBuilder(true, builder2);
+      final Expression row_ =
+          builder3.append("row",
+              EnumUtils.convert(
+                  Expressions.call(rows_, BuiltInMethod.LIST_GET.method, i_),
+                  Object.class, result.physType.getJavaRowType()),
+              false);
+      for (int j = 0; j < outputClasses.size(); j++) {
+        builder3.add(
+            Expressions.statement(
+                Expressions.assign(
+                    Expressions.arrayIndex(outputColumns.get(j), i_),
+                    toColumnValue(result.physType.fieldReference(row_, j),
+                        outputClasses.get(j).getComponentType()))));
+      }
+      builder2.add(
+          Expressions.for_(
+              Expressions.declare(0, i_, Expressions.constant(0)),
+              Expressions.lessThan(i_, size_),
+              Expressions.preIncrementAssign(i_),
+              builder3.toBlock()));
+      builder2.add(
+          Expressions.return_(null,
+              Expressions.new_(BuiltInMethod.COLUMN_BATCH_NEW.constructor,
+                  Expressions.newArrayInit(Object.class, outputColumns),
+                  size_)));
+      builder.add(
+          Expressions.return_(null,
+              Expressions.call(
+                  Expressions.call(BuiltInMethod.COLUMN_BATCHES_CHUNK.method,
+                      inputEnumerable,
+                      Expressions.constant(
+                          batchSize(getCluster().getPlanner()))),
+                  BuiltInMethod.SELECT.method,
+                  Expressions.lambda(Function1.class, builder2.toBlock(),
+                      rows_))));
+      return implementor.result(physType, builder.toBlock());
+    }
+  }
+}
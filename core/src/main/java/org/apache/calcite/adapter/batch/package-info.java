@@ -0,0 +1,27 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Batch (vectorized) execution of relational expressions.
+ *
+ * <p>Operators in {@link org.apache.calcite.adapter.batch.BatchConvention}
+ * exchange {@link org.apache.calcite.runtime.ColumnBatch column batches}
+ * and generate a tight loop over each batch. A converter turns the batches
+ * into rows for operators in
+ * {@link org.apache.calcite.adapter.enumerable.EnumerableConvention}.
+ */
+package org.apache.calcite.adapter.batch;
@@ -27,10 +27,13 @@
 import org.apache.calcite.linq4j.tree.Primitive;
 import org.apache.calcite.rel.RelCollation;
 import org.apache.calcite.rel.RelCollations;
+import org.apache.calcite.rel.RelFieldCollation;
 import org.apache.calcite.rel.type.RelDataType;
 import org.apache.calcite.rel.type.RelDataTypeFactory;
 import org.apache.calcite.rel.type.RelProtoDataType;
-import org.apache.calcite.schema.ScannableTable;
+import org.apache.calcite.runtime.ColumnBatch;
+import org.apache.calcite.schema.BatchableTable;
+import org.apache.calcite.schema.PartitionableTable;
 import org.apache.calcite.schema.SchemaPlus;
 import org.apache.calcite.schema.Statistic;
 import org.apache.calcite.schema.Statistics;
@@ -40,6 +43,7 @@
 
 import com.google.common.base.Supplier;
 import com.google.common.collect.ImmutableList;
+import com.google.common.primitives.Ints;
 
 import java.lang.reflect.Array;
 import java.lang.reflect.Type;
@@ -48,6 +52,9 @@
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
 
 /**
  * Implementation of table that reads rows from column stores, one per column.
@@ -55,9 +62,10 @@
  * values in the column; see {@link Representation} and
  * {@link RepresentationType}.
  */
-class ArrayTable extends AbstractQueryableTable implements ScannableTable {
+class ArrayTable extends AbstractQueryableTable
+    implements PartitionableTable, BatchableTable {
   private final RelProtoDataType protoRowType;
-  private final Supplier<Content> supplier;
+  final Supplier<Content> supplier;
 
   /** Creates an ArrayTable. */
   ArrayTable(Type elementType, RelProtoDataType protoRowType,
@@ -91,6 +99,26 @@ public Enumerator<Object[]> enumerator() {
     };
   }
 
+  public Enumerable<Object[]> scan(DataContext root, final int partition,
+      final int partitionCount) {
+    return new AbstractEnumerable<Object[]>() {
+      public Enumerator<Object[]> enumerator() {
+        final Content content = supplier.get();
+        return content.arrayEnumerator(partition, partitionCount);
+      }
+    };
+  }
+
+  public Enumerable<ColumnBatch> scanBatches(DataContext root,
+      final Class[] columnClasses, final int batchSize) {
+    return new AbstractEnumerable<ColumnBatch>() {
+      public Enumerator<ColumnBatch> enumerator() {
+        final Content content = supplier.get();
+        return content.batchEnumerator(columnClasses, batchSize);
+      }
+    };
+  }
+
   public <T> Queryable<T> asQueryable(final QueryProvider queryProvider,
       SchemaPlus schema, String tableName) {
     return new AbstractTableQueryable<T>(queryProvider, schema, this,
@@ -104,7 +132,7 @@ public Enumerator<T> enumerator() {
   }
 
   @SuppressWarnings("unchecked")
-  private static <T> Pair<Object, T> toPair(Object dataSet) {
+  static <T> Pair<Object, T> toPair(Object dataSet) {
     return (Pair<Object, T>) dataSet;
   }
 
@@ -193,6 +221,31 @@ enum RepresentationType {
      * @see ByteStringDictionary
      */
     BYTE_STRING_DICTIONARY,
+
+    /**
+     * Run-length encoding. Consecutive rows that have the same value are
+     * stored as one run. Stores the end of each run in an array of int values,
+     * and the value of each run using another representation. Finding the
+     * value of a row requires a binary search over the runs.
+     *
+     * <p>Good for columns whose values are sorted, or clustered, and have few
+     * distinct values.</p>
+     *
+     * @see RunLength
+     */
+    RUN_LENGTH,
+
+    /**
+     * Frame of reference. Stores each value as its difference from the
+     * smallest value of the column, using another representation.
+     *
+     * <p>Good for columns whose values are large but lie within a narrow
+     * range, such as the timestamps of events that occurred on the same
+     * day: the differences require far fewer bits than the values.</p>
+     *
+     * @see FrameOfReference
+     */
+    FRAME_OF_REFERENCE,
   }
 
   /** Column definition and value set. */
@@ -314,8 +367,8 @@ public String toString(Object dataSet) {
    * primitive values. */
   public static class PrimitiveArray implements Representation {
     final int ordinal;
-    private final Primitive primitive;
-    private final Primitive p;
+    final Primitive primitive;
+    final Primitive p;
 
     PrimitiveArray(int ordinal, Primitive primitive, Primitive p) {
       this.ordinal = ordinal;
@@ -645,31 +698,34 @@ public Object freeze(ColumnLoader.ValueSet valueSet, int[] sources) {
         for (i = 0; i < n; i++) {
           long v = 0;
           for (int j = 0; j < chunksPerWord; j++) {
-            v |= booleans.get(k++) ? (1 << (bitCount * j)) : 0;
+            v |= booleans.get(k++) ? (1L << (bitCount * j)) : 0;
           }
           longs[i] = v;
         }
         if (remainingChunkCount > 0) {
           long v = 0;
           for (int j = 0; j < remainingChunkCount; j++) {
-            v |= booleans.get(k++) ? (1 << (bitCount * j)) : 0;
+            v |= booleans.get(k++) ? (1L << (bitCount * j)) : 0;
           }
           longs[i] = v;
         }
       } else {
+        // Mask, so that the sign bits of a negative value do not overwrite
+        // the values to its left
+        final long mask = (1L << bitCount) - 1L;
         @SuppressWarnings("unchecked")
         final List<Number> numbers = (List) valueList;
         for (i = 0; i < n; i++) {
           long v = 0;
           for (int j = 0; j < chunksPerWord; j++) {
-            v |= numbers.get(k++).longValue() << (bitCount * j);
+            v |= (numbers.get(k++).longValue() & mask) << (bitCount * j);
           }
           longs[i] = v;
         }
         if (remainingChunkCount > 0) {
           long v = 0;
           for (int j = 0; j < remainingChunkCount; j++) {
-            v |= numbers.get(k++).longValue() << (bitCount * j);
+            v |= (numbers.get(k++).longValue() & mask) << (bitCount * j);
           }
           longs[i] = v;
         }
@@ -690,19 +746,7 @@ public Object permute(Object dataSet, int[] sources) {
     }
 
     public Object getObject(Object dataSet, int ordinal) {
-      final long[] longs = (long[]) dataSet;
-      final int chunksPerWord = 64 / bitCount;
-      final int word = ordinal / chunksPerWord;
-      final long v = longs[word];
-      final int chunk = ordinal % chunksPerWord;
-      final int mask = (1 << bitCount) - 1;
-      final int signMask = 1 << (bitCount - 1);
-      final int shift = chunk * bitCount;
-      final long w = v >> shift;
-      long x = w & mask;
-      if (signed && (x & signMask) != 0) {
-        x = -x;
-      }
+      final long x = getLong(dataSet, ordinal);
       switch (primitive) {
       case BOOLEAN:
         return x != 0;
@@ -722,20 +766,20 @@ public Object getObject(Object dataSet, int ordinal) {
     }
 
     public int getInt(Object dataSet, int ordinal) {
-      final long[] longs = (long[]) dataSet;
+      return (int) getLong(dataSet, ordinal);
+    }
+
+    /** Returns the value at a given ordinal, sign-extended if this array is
+     * signed. */
+    long getLong(Object dataSet, int ordinal) {
       final int chunksPerWord = 64 / bitCount;
-      final int word = ordinal / chunksPerWord;
-      final long v = longs[word];
-      final int chunk = ordinal % chunksPerWord;
-      final int mask = (1 << bitCount) - 1;
-      final int signMask = 1 << (bitCount - 1);
-      final int shift = chunk * bitCount;
-      final long w = v >> shift;
-      long x = w & mask;
-      if (signed && (x & signMask) != 0) {
-        x = -x;
+      final long v = word(dataSet, ordinal / chunksPerWord);
+      final int shift = (ordinal % chunksPerWord) * bitCount;
+      final long x = (v >>> shift) & ((1L << bitCount) - 1L);
+      if (signed) {
+        return x << (64 - bitCount) >> (64 - bitCount);
       }
-      return (int) x;
+      return x;
     }
 
     public static long getLong(int bitCount, long[] values, int ordinal) {
@@ -772,9 +816,366 @@ public static void orLong(
     }
 
     public int size(Object dataSet) {
-      final long[] longs = (long[]) dataSet;
       final int chunksPerWord = 64 / bitCount;
-      return longs.length * chunksPerWord; // may be slightly too high
+      return wordCount(dataSet) * chunksPerWord; // may be slightly too high
+    }
+
+    /** Returns the word of a data set that contains a given value. */
+    long word(Object dataSet, int word) {
+      return ((long[]) dataSet)[word];
+    }
+
+    /** Returns the number of words in a data set. */
+    int wordCount(Object dataSet) {
+      return ((long[]) dataSet).length;
+    }
+
+    public String toString(Object dataSet) {
+      return Column.asList(this, dataSet).toString();
+    }
+  }
+
+  /** Representation that stores column values as runs of equal values.
+   *
+   * <p>The data set is a pair: the (exclusive) end of each run, as an
+   * {@code int} array, and the value of each run, in the underlying
+   * representation. */
+  public static class RunLength implements Representation {
+    final int ordinal;
+    final Representation representation;
+
+    RunLength(int ordinal, Representation representation) {
+      this.ordinal = ordinal;
+      this.representation = representation;
+    }
+
+    public String toString() {
+      return "RunLength(ordinal=" + ordinal
+          + ", representation=" + representation
+          + ")";
+    }
+
+    public RepresentationType getType() {
+      return RepresentationType.RUN_LENGTH;
+    }
+
+    public Object freeze(ColumnLoader.ValueSet valueSet, int[] sources) {
+      final List<Comparable> list = permuteList(valueSet.values, sources);
+      final ColumnLoader.ValueSet runValueSet =
+          new ColumnLoader.ValueSet(valueSet.clazz);
+      final List<Integer> ends = new ArrayList<>();
+      for (int i = 0; i < list.size(); i++) {
+        final Comparable value = list.get(i);
+        if (i > 0 && !Objects.equals(value, list.get(i - 1))) {
+          ends.add(i);
+          runValueSet.add(list.get(i - 1));
+        }
+      }
+      if (!list.isEmpty()) {
+        ends.add(list.size());
+        runValueSet.add(list.get(list.size() - 1));
+      }
+      return Pair.of(Ints.toArray(ends),
+          representation.freeze(runValueSet, null));
+    }
+
+    public Object permute(Object dataSet, int[] sources) {
+      // Runs do not survive a permutation; encode again
+      final ColumnLoader.ValueSet valueSet =
+          new ColumnLoader.ValueSet(Object.class);
+      for (int source : sources) {
+        valueSet.add((Comparable) getObject(dataSet, source));
+      }
+      return freeze(valueSet, null);
+    }
+
+    /** Returns the run that contains a given row. */
+    static int run(int[] ends, int ordinal) {
+      final int i = Arrays.binarySearch(ends, ordinal);
+      // If the ordinal is the end of a run, the row is the first in the
+      // next run
+      return i >= 0 ? i + 1 : -(i + 1);
+    }
+
+    public Object getObject(Object dataSet, int ordinal) {
+      final Pair<Object, Object> pair = toPair(dataSet);
+      return representation.getObject(pair.right,
+          run((int[]) pair.left, ordinal));
+    }
+
+    public int getInt(Object dataSet, int ordinal) {
+      final Pair<Object, Object> pair = toPair(dataSet);
+      return representation.getInt(pair.right,
+          run((int[]) pair.left, ordinal));
+    }
+
+    public int size(Object dataSet) {
+      final int[] ends = (int[]) toPair(dataSet).left;
+      return ends.length == 0 ? 0 : ends[ends.length - 1];
+    }
+
+    public String toString(Object dataSet) {
+      return Column.asList(this, dataSet).toString();
+    }
+  }
+
+  /** Representation that stores integer column values as their difference
+   * from a base value.
+   *
+   * <p>The data set is the data set of the underlying representation, which
+   * holds the differences, all of which are non-negative. */
+  public static class FrameOfReference implements Representation {
+    final int ordinal;
+    final Primitive p;
+    final long base;
+    final Representation representation;
+
+    FrameOfReference(int ordinal, Primitive p, long base,
+        Representation representation) {
+      this.ordinal = ordinal;
+      this.p = p;
+      this.base = base;
+      this.representation = representation;
+    }
+
+    public String toString() {
+      return "FrameOfReference(ordinal=" + ordinal
+          + ", p=" + p
+          + ", base=" + base
+          + ", representation=" + representation
+          + ")";
+    }
+
+    public RepresentationType getType() {
+      return RepresentationType.FRAME_OF_REFERENCE;
+    }
+
+    public Object freeze(ColumnLoader.ValueSet valueSet, int[] sources) {
+      final List<Comparable> list = permuteList(valueSet.values, sources);
+      // The differences are not canonized, because the underlying
+      // representation does not need a map of distinct values
+      final ColumnLoader.ValueSet offsetValueSet =
+          new ColumnLoader.ValueSet(long.class);
+      for (Comparable value : list) {
+        offsetValueSet.values.add(((Number) value).longValue() - base);
+      }
+      return representation.freeze(offsetValueSet, null);
+    }
+
+    public Object permute(Object dataSet, int[] sources) {
+      return representation.permute(dataSet, sources);
+    }
+
+    /** Returns the value at a given ordinal. */
+    long getLong(Object dataSet, int ordinal) {
+      if (representation instanceof BitSlicedPrimitiveArray) {
+        return base
+            + ((BitSlicedPrimitiveArray) representation).getLong(dataSet,
+                ordinal);
+      }
+      return base
+          + ((Number) representation.getObject(dataSet, ordinal)).longValue();
+    }
+
+    public Object getObject(Object dataSet, int ordinal) {
+      return p.number(getLong(dataSet, ordinal));
+    }
+
+    public int getInt(Object dataSet, int ordinal) {
+      return (int) getLong(dataSet, ordinal);
+    }
+
+    public int size(Object dataSet) {
+      return representation.size(dataSet);
+    }
+
+    public String toString(Object dataSet) {
+      return Column.asList(this, dataSet).toString();
+    }
+  }
+
+  /** Representation that stores the values of a column of primitive values
+   * in a file that is mapped into memory.
+   *
+   * <p>The values are encoded as in {@link PrimitiveArray}. The data set is a
+   * {@link MappedBuffer}, and is read-only; see {@link ContentFile}. */
+  public static class MappedPrimitiveArray implements Representation {
+    final int ordinal;
+    final Primitive primitive;
+    final Primitive p;
+    private final int shift;
+
+    MappedPrimitiveArray(int ordinal, Primitive primitive, Primitive p) {
+      this.ordinal = ordinal;
+      this.primitive = primitive;
+      this.p = p;
+      this.shift = ContentFile.shift(primitive);
+    }
+
+    public String toString() {
+      return "MappedPrimitiveArray(ordinal=" + ordinal
+          + ", primitive=" + primitive
+          + ", p=" + p
+          + ")";
+    }
+
+    public RepresentationType getType() {
+      return RepresentationType.PRIMITIVE_ARRAY;
+    }
+
+    public Object freeze(ColumnLoader.ValueSet valueSet, int[] sources) {
+      throw new UnsupportedOperationException("read-only");
+    }
+
+    public Object permute(Object dataSet, int[] sources) {
+      throw new UnsupportedOperationException("read-only");
+    }
+
+    public Object getObject(Object dataSet, int ordinal) {
+      final MappedBuffer buffer = (MappedBuffer) dataSet;
+      final long offset = (long) ordinal << shift;
+      switch (primitive) {
+      case DOUBLE:
+        return p.number(buffer.getDouble(offset));
+      case FLOAT:
+        return p.number(buffer.getFloat(offset));
+      }
+      final long x = getLong(buffer, offset);
+      switch (p) {
+      case BOOLEAN:
+        return x != 0;
+      case CHAR:
+        return (char) x;
+      default:
+        return p.number(x);
+      }
+    }
+
+    public int getInt(Object dataSet, int ordinal) {
+      final MappedBuffer buffer = (MappedBuffer) dataSet;
+      final long offset = (long) ordinal << shift;
+      switch (primitive) {
+      case DOUBLE:
+        return (int) buffer.getDouble(offset);
+      case FLOAT:
+        return (int) buffer.getFloat(offset);
+      default:
+        return (int) getLong(buffer, offset);
+      }
+    }
+
+    private long getLong(MappedBuffer buffer, long offset) {
+      switch (primitive) {
+      case BOOLEAN:
+      case BYTE:
+        return buffer.getByte(offset);
+      case CHAR:
+        return buffer.getChar(offset);
+      case SHORT:
+        return buffer.getShort(offset);
+      case INT:
+        return buffer.getInt(offset);
+      case LONG:
+        return buffer.getLong(offset);
+      default:
+        throw new AssertionError(primitive + " unexpected");
+      }
+    }
+
+    public int size(Object dataSet) {
+      return (int) (((MappedBuffer) dataSet).length >>> shift);
+    }
+
+    public String toString(Object dataSet) {
+      return Column.asList(this, dataSet).toString();
+    }
+  }
+
+  /** Representation that stores numeric values in a bit-sliced array in a
+   * file that is mapped into memory.
+   *
+   * <p>The values are encoded as in {@link BitSlicedPrimitiveArray}. The data
+   * set is a {@link MappedBuffer} of {@code long} words, and is read-only; see
+   * {@link ContentFile}. */
+  public static class MappedBitSlicedPrimitiveArray
+      extends BitSlicedPrimitiveArray {
+    MappedBitSlicedPrimitiveArray(
+        int ordinal, int bitCount, Primitive primitive, boolean signed) {
+      super(ordinal, bitCount, primitive, signed);
+    }
+
+    @Override public String toString() {
+      return "MappedBitSlicedPrimitiveArray(ordinal=" + ordinal
+          + ", bitCount=" + bitCount
+          + ", primitive=" + primitive
+          + ", signed=" + signed + ")";
+    }
+
+    @Override public Object freeze(ColumnLoader.ValueSet valueSet,
+        int[] sources) {
+      throw new UnsupportedOperationException("read-only");
+    }
+
+    @Override public Object permute(Object dataSet, int[] sources) {
+      throw new UnsupportedOperationException("read-only");
+    }
+
+    @Override long word(Object dataSet, int word) {
+      return ((MappedBuffer) dataSet).getLong((long) word << 3);
+    }
+
+    @Override int wordCount(Object dataSet) {
+      return (int) (((MappedBuffer) dataSet).length >>> 3);
+    }
+  }
+
+  /** Representation that stores the values of a column of objects in a file
+   * that is mapped into memory.
+   *
+   * <p>Each value is serialized as a sequence of bytes. The data set is a
+   * pair of {@link MappedBuffer}s: the offsets of the values (one more than
+   * the number of values, so that the last is the end of the last value) and
+   * the values. It is read-only; see {@link ContentFile}. */
+  public static class MappedObjectArray implements Representation {
+    final int ordinal;
+
+    MappedObjectArray(int ordinal) {
+      this.ordinal = ordinal;
+    }
+
+    public String toString() {
+      return "MappedObjectArray(ordinal=" + ordinal + ")";
+    }
+
+    public RepresentationType getType() {
+      return RepresentationType.OBJECT_ARRAY;
+    }
+
+    public Object freeze(ColumnLoader.ValueSet valueSet, int[] sources) {
+      throw new UnsupportedOperationException("read-only");
+    }
+
+    public Object permute(Object dataSet, int[] sources) {
+      throw new UnsupportedOperationException("read-only");
+    }
+
+    public Object getObject(Object dataSet, int ordinal) {
+      final Pair<Object, MappedBuffer> pair = toPair(dataSet);
+      final MappedBuffer offsets = (MappedBuffer) pair.left;
+      final long start = offsets.getLong((long) ordinal << 3);
+      final long end = offsets.getLong((long) (ordinal + 1) << 3);
+      final byte[] bytes = new byte[(int) (end - start)];
+      pair.right.get(start, bytes, bytes.length);
+      return ContentFile.decode(bytes);
+    }
+
+    public int getInt(Object dataSet, int ordinal) {
+      return ((Number) getObject(dataSet, ordinal)).intValue();
+    }
+
+    public int size(Object dataSet) {
+      final Pair<Object, MappedBuffer> pair = toPair(dataSet);
+      return (int) (((MappedBuffer) pair.left).length >>> 3) - 1;
     }
 
     public String toString(Object dataSet) {
@@ -800,9 +1201,9 @@ public int size() {
 
   /** Contents of a table. */
   public static class Content {
-    private final List<Column> columns;
-    private final int size;
-    private final ImmutableList<RelCollation> collations;
+    final List<Column> columns;
+    final int size;
+    final ImmutableList<RelCollation> collations;
 
     Content(List<? extends Column> columns, int size,
         Iterable<? extends RelCollation> collations) {
@@ -824,12 +1225,179 @@ public <T> Enumerator<T> enumerator() {
       if (columns.size() == 1) {
         return (Enumerator<T>) new ObjectEnumerator(size, columns.get(0));
       } else {
-        return (Enumerator<T>) new ArrayEnumerator(size, columns);
+        return (Enumerator<T>) new ArrayEnumerator(0, size, columns);
       }
     }
 
     public Enumerator<Object[]> arrayEnumerator() {
-      return new ArrayEnumerator(size, columns);
+      return new ArrayEnumerator(0, size, columns);
+    }
+
+    /** Returns an enumerator over one of {@code partitionCount} contiguous
+     * ranges of rows. */
+    public Enumerator<Object[]> arrayEnumerator(int partition,
+        int partitionCount) {
+      final int start = (int) ((long) size * partition / partitionCount);
+      final int end = (int) ((long) size * (partition + 1) / partitionCount);
+      return new ArrayEnumerator(start, end, columns);
+    }
+
+    /** Returns an enumerator over the rows that satisfy all of a list of
+     * predicates, each row containing the values of the columns in
+     * {@code projects}, or of all columns if {@code projects} is null.
+     *
+     * <p>A range predicate on the leading column of an ascending collation
+     * narrows the rows to scan, using binary search. A predicate on a
+     * column that is stored as an {@link ObjectDictionary}, possibly inside a
+     * {@link RunLength}, is evaluated on codes, because codes are in the same
+     * order as values. Other predicates decode values of their column, one
+     * row at a time. */
+    Enumerator<Object[]> filterEnumerator(
+        List<ColumnPredicate> predicates, int[] projects) {
+      int start = 0;
+      int end = size;
+      final List<IntPredicate> tests = new ArrayList<>();
+      for (ColumnPredicate predicate : predicates) {
+        final Column column = columns.get(predicate.ordinal);
+        // Look through run-length encoding; the runs' values may be stored
+        // as a dictionary
+        final Representation representation;
+        final Object dataSet;
+        final int[] runEnds;
+        if (column.representation instanceof RunLength) {
+          final Pair<Object, Object> pair = toPair(column.dataSet);
+          representation = ((RunLength) column.representation).representation;
+          dataSet = pair.right;
+          runEnds = (int[]) pair.left;
+        } else {
+          representation = column.representation;
+          dataSet = column.dataSet;
+          runEnds = null;
+        }
+        final RelFieldCollation fieldCollation =
+            leadingCollation(predicate.ordinal);
+        if (fieldCollation != null && predicate.isRange()) {
+          // Values are sorted. Nulls are at one end, and do not satisfy a
+          // comparison.
+          final List<Comparable> values =
+              Column.asList(column.representation, column.dataSet);
+          final int nonNullStart;
+          final int nonNullEnd;
+          if (fieldCollation.nullDirection
+              == RelFieldCollation.NullDirection.FIRST) {
+            nonNullStart = firstNonNull(values, true);
+            nonNullEnd = size;
+          } else {
+            nonNullStart = 0;
+            nonNullEnd = firstNonNull(values, false);
+          }
+          final List<Comparable> nonNullValues =
+              values.subList(nonNullStart, nonNullEnd);
+          start = Math.max(start, nonNullStart + predicate.start(nonNullValues));
+          end = Math.min(end, nonNullStart + predicate.end(nonNullValues));
+        } else if (representation instanceof ObjectDictionary) {
+          final Pair<Object, Comparable[]> pair = toPair(dataSet);
+          final Representation codeRepresentation =
+              ((ObjectDictionary) representation).representation;
+          final Object codes = pair.left;
+          final Comparable[] codeValues = pair.right;
+          final IntUnaryOperator codeOfRow = runEnds == null
+              ? row -> codeRepresentation.getInt(codes, row)
+              : row -> codeRepresentation.getInt(codes,
+                  RunLength.run(runEnds, row));
+          // The null value, if present, has the last code
+          final int nullCode = codeValues.length > 0
+              && codeValues[codeValues.length - 1] == null
+              ? codeValues.length - 1
+              : codeValues.length;
+          final List<Comparable> values =
+              Arrays.asList(codeValues).subList(0, nullCode);
+          final int lo;
+          final int hi;
+          switch (predicate.kind) {
+          case IS_NULL:
+            lo = nullCode;
+            hi = nullCode + 1;
+            break;
+          case IS_NOT_NULL:
+            lo = 0;
+            hi = nullCode;
+            break;
+          case NOT_EQUALS:
+            final int code = Arrays.binarySearch(codeValues, 0, nullCode,
+                predicate.value);
+            tests.add(row -> {
+              final int c = codeOfRow.applyAsInt(row);
+              return c != code && c != nullCode;
+            });
+            continue;
+          default:
+            lo = predicate.start(values);
+            hi = predicate.end(values);
+          }
+          if (lo >= hi) {
+            end = start;
+          }
+          tests.add(row -> {
+            final int c = codeOfRow.applyAsInt(row);
+            return c >= lo && c < hi;
+          });
+        } else {
+          tests.add(row ->
+              predicate.test(
+                  (Comparable) column.representation.getObject(column.dataSet,
+                      row)));
+        }
+      }
+      if (projects == null) {
+        projects = new int[columns.size()];
+        for (int i = 0; i < projects.length; i++) {
+          projects[i] = i;
+        }
+      }
+      return new FilterEnumerator(start, Math.max(start, end), columns,
+          tests.toArray(new IntPredicate[0]), projects);
+    }
+
+    /** Returns the collation of a column if the rows are sorted on it, in
+     * ascending order, otherwise null. */
+    private RelFieldCollation leadingCollation(int ordinal) {
+      for (RelCollation collation : collations) {
+        final List<RelFieldCollation> fieldCollations =
+            collation.getFieldCollations();
+        if (!fieldCollations.isEmpty()) {
+          final RelFieldCollation fieldCollation = fieldCollations.get(0);
+          if (fieldCollation.getFieldIndex() == ordinal
+              && !fieldCollation.direction.isDescending()) {
+            return fieldCollation;
+          }
+        }
+      }
+      return null;
+    }
+
+    /** Returns the position of the first non-null value (if nulls are first)
+     * or the first null value (if nulls are last) of a list that has all of
+     * its null values at one end. */
+    private static int firstNonNull(List<Comparable> values,
+        boolean nullsFirst) {
+      int lo = 0;
+      int hi = values.size();
+      while (lo < hi) {
+        final int mid = (lo + hi) >>> 1;
+        if ((values.get(mid) == null) == nullsFirst) {
+          lo = mid + 1;
+        } else {
+          hi = mid;
+        }
+      }
+      return lo;
+    }
+
+    /** Returns an enumerator over the rows of this table in batches. */
+    public Enumerator<ColumnBatch> batchEnumerator(Class[] columnClasses,
+        int batchSize) {
+      return new BatchEnumerator(size, columns, columnClasses, batchSize);
     }
 
     /** Enumerator over a table with a single column; each element
@@ -865,13 +1433,16 @@ public void close() {
     /** Enumerator over a table with more than one column; each element
      * returned is an array. */
     private static class ArrayEnumerator implements Enumerator<Object[]> {
-      final int rowCount;
+      final int start;
+      final int end;
       final List<Column> columns;
-      int i = -1;
+      int i;
 
-      ArrayEnumerator(int rowCount, List<Column> columns) {
-        this.rowCount = rowCount;
+      ArrayEnumerator(int start, int end, List<Column> columns) {
+        this.start = start;
+        this.end = end;
         this.columns = columns;
+        this.i = start - 1;
       }
 
       public Object[] current() {
@@ -884,11 +1455,141 @@ public Object[] current() {
       }
 
       public boolean moveNext() {
-        return ++i < rowCount;
+        return ++i < end;
       }
 
       public void reset() {
-        i = -1;
+        i = start - 1;
+      }
+
+      public void close() {
+      }
+    }
+
+    /** Enumerator over a range of rows of a table that returns the rows that
+     * pass all of a list of tests; each element returned is an array
+     * containing the values of some of the columns. */
+    private static class FilterEnumerator implements Enumerator<Object[]> {
+      final int start;
+      final int end;
+      final List<Column> columns;
+      final IntPredicate[] tests;
+      final int[] projects;
+      int i;
+
+      FilterEnumerator(int start, int end, List<Column> columns,
+          IntPredicate[] tests, int[] projects) {
+        this.start = start;
+        this.end = end;
+        this.columns = columns;
+        this.tests = tests;
+        this.projects = projects;
+        this.i = start - 1;
+      }
+
+      public Object[] current() {
+        final Object[] objects = new Object[projects.length];
+        for (int j = 0; j < objects.length; j++) {
+          final Column column = columns.get(projects[j]);
+          objects[j] = column.representation.getObject(column.dataSet, i);
+        }
+        return objects;
+      }
+
+      public boolean moveNext() {
+        while (++i < end) {
+          if (accept(i)) {
+            return true;
+          }
+        }
+        i = end;
+        return false;
+      }
+
+      private boolean accept(int row) {
+        for (IntPredicate test : tests) {
+          if (!test.test(row)) {
+            return false;
+          }
+        }
+        return true;
+      }
+
+      public void reset() {
+        i = start - 1;
+      }
+
+      public void close() {
+      }
+    }
+
+    /** Enumerator over a table that returns batches of rows; each element
+     * returned is a {@link ColumnBatch}.
+     *
+     * <p>A column that is stored in an array of the required class is
+     * copied in bulk; other columns are decoded one value at a time. */
+    private static class BatchEnumerator implements Enumerator<ColumnBatch> {
+      final int rowCount;
+      final List<Column> columns;
+      final Class[] columnClasses;
+      final int batchSize;
+      int start;
+      ColumnBatch current;
+
+      BatchEnumerator(int rowCount, List<Column> columns,
+          Class[] columnClasses, int batchSize) {
+        assert columnClasses.length == columns.size();
+        assert batchSize > 0;
+        this.rowCount = rowCount;
+        this.columns = columns;
+        this.columnClasses = columnClasses;
+        this.batchSize = batchSize;
+      }
+
+      public ColumnBatch current() {
+        return current;
+      }
+
+      public boolean moveNext() {
+        if (start >= rowCount) {
+          return false;
+        }
+        final int end = Math.min(start + batchSize, rowCount);
+        final Object[] arrays = new Object[columns.size()];
+        for (int j = 0; j < arrays.length; j++) {
+          arrays[j] = copy(columns.get(j), columnClasses[j], start, end);
+        }
+        current = new ColumnBatch(arrays, end - start);
+        start = end;
+        return true;
+      }
+
+      private static Object copy(Column column, Class columnClass, int start,
+          int end) {
+        final Class componentType = columnClass.getComponentType();
+        final Object array = Array.newInstance(componentType, end - start);
+        final RepresentationType type = column.representation.getType();
+        if (type == RepresentationType.OBJECT_ARRAY
+                && componentType == Object.class
+            || type == RepresentationType.PRIMITIVE_ARRAY
+                && column.dataSet.getClass() == columnClass) {
+          System.arraycopy(column.dataSet, start, array, 0, end - start);
+          return array;
+        }
+        final Primitive primitive = Primitive.of(componentType);
+        for (int i = start; i < end; i++) {
+          Object o = column.representation.getObject(column.dataSet, i);
+          if (primitive != null && o instanceof Number) {
+            o = primitive.number((Number) o);
+          }
+          Array.set(array, i - start, o);
+        }
+        return array;
+      }
+
+      public void reset() {
+        start = 0;
+        current = null;
       }
 
       public void close() {
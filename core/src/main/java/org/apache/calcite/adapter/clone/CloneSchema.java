@@ -23,8 +23,10 @@
 import org.apache.calcite.linq4j.Enumerable;
 import org.apache.calcite.linq4j.QueryProvider;
 import org.apache.calcite.linq4j.Queryable;
+import org.apache.calcite.model.ModelHandler;
 import org.apache.calcite.rel.RelCollation;
 import org.apache.calcite.rel.RelCollations;
+import org.apache.calcite.rel.type.RelDataType;
 import org.apache.calcite.rel.type.RelProtoDataType;
 import org.apache.calcite.schema.QueryableTable;
 import org.apache.calcite.schema.Schema;
@@ -33,10 +35,14 @@
 import org.apache.calcite.schema.Schemas;
 import org.apache.calcite.schema.Table;
 import org.apache.calcite.schema.impl.AbstractSchema;
+import org.apache.calcite.util.Util;
 
+import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableList;
 
+import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Type;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -46,13 +52,32 @@
 
 /**
  * Schema that contains in-memory copies of tables from a JDBC schema.
+ *
+ * <p>If a directory is specified, the contents of each table are written to
+ * a file in that directory the first time that the table is used, and
+ * thereafter read from the file, which is mapped into memory (see
+ * {@link ContentFile}). Thus the copy survives a restart, loads instantly,
+ * does not occupy the Java heap, and can be shared by several processes.
+ * The file is not refreshed if the rows of the source table change; to reload
+ * a table, delete its file. It is reloaded if the name or type of a column
+ * changes.
+ *
+ * <p>If the schema is filterable, the planner pushes filters and projects
+ * into scans of its tables. Scans then evaluate comparisons on sorted and
+ * dictionary-encoded columns efficiently, and read only the columns they
+ * need, but do not use partitioned or batch execution.
  */
 public class CloneSchema extends AbstractSchema {
   // TODO: implement 'driver' property
   // TODO: implement 'source' property
   // TODO: test Factory
 
+  /** Suffix of the name of a file that holds the contents of a table. */
+  public static final String FILE_SUFFIX = ".contents";
+
   private final SchemaPlus sourceSchema;
+  private final File directory;
+  private final boolean filterable;
 
   /**
    * Creates a CloneSchema.
@@ -60,8 +85,35 @@ public class CloneSchema extends AbstractSchema {
    * @param sourceSchema JDBC data source
    */
   public CloneSchema(SchemaPlus sourceSchema) {
+    this(sourceSchema, null);
+  }
+
+  /**
+   * Creates a CloneSchema that persists the contents of its tables.
+   *
+   * @param sourceSchema JDBC data source
+   * @param directory Directory that holds the contents of tables, or null to
+   *                  hold them only in memory
+   */
+  public CloneSchema(SchemaPlus sourceSchema, File directory) {
+    this(sourceSchema, directory, false);
+  }
+
+  /**
+   * Creates a CloneSchema, optionally with filterable tables.
+   *
+   * @param sourceSchema JDBC data source
+   * @param directory Directory that holds the contents of tables, or null to
+   *                  hold them only in memory
+   * @param filterable Whether tables evaluate filters and projects while
+   *                   they scan
+   */
+  public CloneSchema(SchemaPlus sourceSchema, File directory,
+      boolean filterable) {
     super();
     this.sourceSchema = sourceSchema;
+    this.directory = directory;
+    this.filterable = filterable;
   }
 
   @Override protected Map<String, Table> getTableMap() {
@@ -83,8 +135,10 @@ private Table createCloneTable(QueryProvider queryProvider,
         sourceTable.asQueryable(queryProvider, sourceSchema, name);
     final JavaTypeFactory typeFactory =
         ((CalciteConnection) queryProvider).getTypeFactory();
+    final File file =
+        directory == null ? null : new File(directory, name + FILE_SUFFIX);
     return createCloneTable(typeFactory, Schemas.proto(sourceTable),
-        ImmutableList.of(), null, queryable);
+        ImmutableList.of(), null, queryable, file, filterable);
   }
 
   @Deprecated // to be removed before 2.0
@@ -99,6 +153,30 @@ public static <T> Table createCloneTable(final JavaTypeFactory typeFactory,
   public static <T> Table createCloneTable(final JavaTypeFactory typeFactory,
       final RelProtoDataType protoRowType, final List<RelCollation> collations,
       final List<ColumnMetaData.Rep> repList, final Enumerable<T> source) {
+    return createCloneTable(typeFactory, protoRowType, collations, repList,
+        source, null);
+  }
+
+  public static <T> Table createCloneTable(final JavaTypeFactory typeFactory,
+      final RelProtoDataType protoRowType, final List<RelCollation> collations,
+      final List<ColumnMetaData.Rep> repList, final Enumerable<T> source,
+      final File file) {
+    return createCloneTable(typeFactory, protoRowType, collations, repList,
+        source, file, false);
+  }
+
+  /** Creates a table that holds a copy of the rows of {@code source}.
+   *
+   * <p>If {@code file} is not null and exists, reads the copy from the file;
+   * if it does not exist, reads from {@code source} and writes the file.
+   *
+   * <p>If {@code filterable}, the table implements
+   * {@link org.apache.calcite.schema.ProjectableFilterableTable}, and the
+   * planner pushes filters and projects into scans of it. */
+  public static <T> Table createCloneTable(final JavaTypeFactory typeFactory,
+      final RelProtoDataType protoRowType, final List<RelCollation> collations,
+      final List<ColumnMetaData.Rep> repList, final Enumerable<T> source,
+      final File file, boolean filterable) {
     final Type elementType;
     if (source instanceof QueryableTable) {
       elementType = ((QueryableTable) source).getElementType();
@@ -111,21 +189,45 @@ public static <T> Table createCloneTable(final JavaTypeFactory typeFactory,
     } else {
       elementType = Object[].class;
     }
-    return new ArrayTable(
-        elementType,
-        protoRowType,
+    final Supplier<ArrayTable.Content> supplier =
         Suppliers.memoize(() -> {
-          final ColumnLoader loader =
-              new ColumnLoader<>(typeFactory, source, protoRowType,
-                  repList);
-          final List<RelCollation> collation2 =
-              collations.isEmpty()
-                  && loader.sortField >= 0
-                  ? RelCollations.createSingleton(loader.sortField)
-                  : collations;
-          return new ArrayTable.Content(loader.representationValues,
-              loader.size(), collation2);
-        }));
+          try {
+            final RelDataType rowType = protoRowType.apply(typeFactory);
+            if (file != null && file.exists()) {
+              final ArrayTable.Content content =
+                  ContentFile.read(file, rowType);
+              if (content != null) {
+                return content;
+              }
+              // The file was written when the table had different columns,
+              // or in an earlier format. Load the table again, and overwrite
+              // the file.
+            }
+            final ColumnLoader loader =
+                new ColumnLoader<>(typeFactory, source, protoRowType,
+                    repList);
+            final List<RelCollation> collation2 =
+                collations.isEmpty()
+                    && loader.sortField >= 0
+                    ? RelCollations.createSingleton(loader.sortField)
+                    : collations;
+            final ArrayTable.Content content =
+                new ArrayTable.Content(loader.representationValues,
+                    loader.size(), collation2);
+            if (file == null) {
+              return content;
+            }
+            // Write the file, then read it, so that the loaded values can be
+            // garbage-collected.
+            ContentFile.write(content, rowType, file);
+            return ContentFile.read(file, rowType);
+          } catch (IOException e) {
+            throw Util.toUnchecked(e);
+          }
+        });
+    return filterable
+        ? new FilterableArrayTable(elementType, protoRowType, supplier)
+        : new ArrayTable(elementType, protoRowType, supplier);
   }
 
   /** Schema factory that creates a
@@ -145,11 +247,21 @@ public static <T> Table createCloneTable(final JavaTypeFactory typeFactory,
    *         jdbcDriver: 'com.mysql.jdbc.Driver',
    *         jdbcUrl: 'jdbc:mysql://localhost/foodmart',
    *         jdbcUser: 'foodmart',
-   *         jdbcPassword: 'foodmart'
+   *         jdbcPassword: 'foodmart',
+   *         directory: '/var/cache/foodmart',
+   *         filterable: true
    *       }
    *     }
    *   ]
    * }</pre></blockquote>
+   *
+   * <p>The optional {@code directory} operand is the directory in which to
+   * persist the contents of tables; a relative directory is relative to the
+   * directory that contains the model file. The directory is created if it
+   * does not exist.
+   *
+   * <p>If the optional {@code filterable} operand is true, the planner pushes
+   * filters and projects into scans of the tables.
    */
   public static class Factory implements SchemaFactory {
     public Schema create(
@@ -159,7 +271,22 @@ public Schema create(
       SchemaPlus schema =
           parentSchema.add(name,
               JdbcSchema.create(parentSchema, name + "$source", operand));
-      return new CloneSchema(schema);
+      final String directoryName = (String) operand.get("directory");
+      File directory = null;
+      if (directoryName != null) {
+        directory = new File(directoryName);
+        final File baseDirectory =
+            (File) operand.get(
+                ModelHandler.ExtraOperand.BASE_DIRECTORY.camelName);
+        if (baseDirectory != null && !directory.isAbsolute()) {
+          directory = new File(baseDirectory, directoryName);
+        }
+        //noinspection ResultOfMethodCallIgnored
+        directory.mkdirs();
+      }
+      final boolean filterable =
+          Boolean.TRUE.equals(operand.get("filterable"));
+      return new CloneSchema(schema, directory, filterable);
     }
   }
 }
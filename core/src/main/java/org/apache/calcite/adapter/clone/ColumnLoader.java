@@ -305,12 +305,42 @@ void add(Comparable e) {
     /** Freezes the contents of this value set into a column, optionally
      * re-ordering if {@code sources} is specified. */
     ArrayTable.Column freeze(int ordinal, int[] sources) {
-      ArrayTable.Representation representation = chooseRep(ordinal);
+      ArrayTable.Representation representation =
+          chooseRep(ordinal, runCount(sources));
       final int cardinality = map.size() + (containsNull ? 1 : 0);
       final Object data = representation.freeze(this, sources);
       return new ArrayTable.Column(representation, data, cardinality);
     }
 
+    /** Returns the number of runs of equal values, in the order that the
+     * values will be stored. */
+    private int runCount(int[] sources) {
+      int runCount = 0;
+      Comparable previous = null;
+      for (int i = 0; i < values.size(); i++) {
+        final Comparable value = values.get(sources == null ? i : sources[i]);
+        // Values are canonized, so we can compare using ==
+        if (i == 0 || value != previous) {
+          ++runCount;
+        }
+        previous = value;
+      }
+      return runCount;
+    }
+
+    /** Chooses a representation, using run-length encoding if the values
+     * have few runs and it would at least halve the storage. */
+    ArrayTable.Representation chooseRep(int ordinal, int runCount) {
+      final ArrayTable.Representation representation = chooseRep(ordinal);
+      final int bitCount = bitCount(representation);
+      if (bitCount > 0
+          && (long) runCount * (Integer.SIZE + bitCount) * 2
+              <= (long) values.size() * bitCount) {
+        return new ArrayTable.RunLength(ordinal, representation);
+      }
+      return representation;
+    }
+
     ArrayTable.Representation chooseRep(int ordinal) {
       Primitive primitive = Primitive.of(clazz);
       Primitive boxPrimitive = Primitive.ofBox(clazz);
@@ -325,8 +355,28 @@ ArrayTable.Representation chooseRep(int ordinal) {
           throw new AssertionError("wtf?!");
         }
         if (canBeLong(min) && canBeLong(max)) {
-          return chooseFixedRep(
-              ordinal, p, toLong(min), toLong(max));
+          final ArrayTable.Representation representation =
+              chooseFixedRep(ordinal, p, toLong(min), toLong(max));
+          final long range = toLong(max) - toLong(min);
+          switch (p) {
+          case BYTE:
+          case SHORT:
+          case INT:
+          case LONG:
+            // If the range is narrow compared to the values, use frame of
+            // reference, provided that it at least halves the storage.
+            // (If the subtraction overflowed, the range is wide.)
+            if (range > 0) {
+              final ArrayTable.Representation offsetRepresentation =
+                  chooseFixedRep(-1, Primitive.LONG, 0, range);
+              if (bitCount(offsetRepresentation) * 2
+                  <= bitCount(representation)) {
+                return new ArrayTable.FrameOfReference(ordinal, p,
+                    toLong(min), offsetRepresentation);
+              }
+            }
+          }
+          return representation;
         }
       }
 
@@ -422,6 +472,31 @@ private ArrayTable.Representation chooseFixedRep(
           ordinal, bitCount, p, signed);
     }
 
+    /** Returns the approximate number of bits that a representation uses
+     * to store each value. */
+    static int bitCount(ArrayTable.Representation representation) {
+      switch (representation.getType()) {
+      case CONSTANT:
+        return 0;
+      case PRIMITIVE_ARRAY:
+        return Math.max(Byte.SIZE,
+            ((ArrayTable.PrimitiveArray) representation).primitive.size);
+      case BIT_SLICED_PRIMITIVE_ARRAY:
+        final int bitCount =
+            ((ArrayTable.BitSlicedPrimitiveArray) representation).bitCount;
+        return Long.SIZE / (Long.SIZE / bitCount);
+      case OBJECT_DICTIONARY:
+        return bitCount(
+            ((ArrayTable.ObjectDictionary) representation).representation);
+      case FRAME_OF_REFERENCE:
+        return bitCount(
+            ((ArrayTable.FrameOfReference) representation).representation);
+      default:
+        // An object reference, plus a share of the object
+        return Long.SIZE;
+      }
+    }
+
     /** Two's complement absolute on int value. */
     private static int abs2(int v) {
       // -128 becomes +127
@@ -0,0 +1,265 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.clone;
+
+import org.apache.calcite.adapter.java.JavaTypeFactory;
+import org.apache.calcite.linq4j.tree.Primitive;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rex.RexCall;
+import org.apache.calcite.rex.RexInputRef;
+import org.apache.calcite.rex.RexLiteral;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.sql.SqlKind;
+import org.apache.calcite.sql.type.SqlTypeName;
+
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Predicate on one column of an {@link ArrayTable} that the table can
+ * evaluate while it scans.
+ *
+ * <p>The predicate is of the form "column op literal", where op is one of
+ * {@code =}, {@code <>}, {@code <}, {@code <=}, {@code >}, {@code >=}, or of
+ * the form "column IS [NOT] NULL". The literal has been converted to the
+ * class of the values of the column, so that they can be compared using
+ * {@link Comparable#compareTo}.
+ */
+class ColumnPredicate {
+  final int ordinal;
+  final SqlKind kind;
+  final Comparable value;
+
+  private ColumnPredicate(int ordinal, SqlKind kind, Comparable value) {
+    this.ordinal = ordinal;
+    this.kind = kind;
+    this.value = value;
+  }
+
+  @Override public String toString() {
+    return "ColumnPredicate(ordinal=" + ordinal
+        + ", kind=" + kind
+        + ", value=" + value
+        + ")";
+  }
+
+  /** Converts a filter to a predicate, or returns null if the filter is not
+   * of a form that an {@link ArrayTable} can evaluate. */
+  static ColumnPredicate of(RexNode filter, RelDataType rowType,
+      JavaTypeFactory typeFactory) {
+    final SqlKind kind = filter.getKind();
+    switch (kind) {
+    case IS_NULL:
+    case IS_NOT_NULL:
+      final RexNode operand = ((RexCall) filter).getOperands().get(0);
+      if (operand instanceof RexInputRef) {
+        return new ColumnPredicate(((RexInputRef) operand).getIndex(), kind,
+            null);
+      }
+      return null;
+    case EQUALS:
+    case NOT_EQUALS:
+    case LESS_THAN:
+    case LESS_THAN_OR_EQUAL:
+    case GREATER_THAN:
+    case GREATER_THAN_OR_EQUAL:
+      final List<RexNode> operands = ((RexCall) filter).getOperands();
+      if (operands.get(0) instanceof RexInputRef
+          && operands.get(1) instanceof RexLiteral) {
+        return of((RexInputRef) operands.get(0), kind,
+            (RexLiteral) operands.get(1), rowType, typeFactory);
+      }
+      if (operands.get(0) instanceof RexLiteral
+          && operands.get(1) instanceof RexInputRef) {
+        return of((RexInputRef) operands.get(1), kind.reverse(),
+            (RexLiteral) operands.get(0), rowType, typeFactory);
+      }
+      return null;
+    default:
+      return null;
+    }
+  }
+
+  private static ColumnPredicate of(RexInputRef ref, SqlKind kind,
+      RexLiteral literal, RelDataType rowType, JavaTypeFactory typeFactory) {
+    final RelDataType type =
+        rowType.getFieldList().get(ref.getIndex()).getType();
+    final Type clazz = Primitive.box(typeFactory.getJavaClass(type));
+    final Comparable value = convert(literal, type, clazz);
+    if (value == null || value.getClass() != clazz) {
+      return null;
+    }
+    return new ColumnPredicate(ref.getIndex(), kind, value);
+  }
+
+  /** Converts a literal to the representation of a column's values, or
+   * returns null if the conversion would not preserve the semantics of
+   * comparing the column to the literal. */
+  private static Comparable convert(RexLiteral literal, RelDataType type,
+      Type clazz) {
+    if (RexLiteral.isNullLiteral(literal)) {
+      return null;
+    }
+    final SqlTypeName literalTypeName = literal.getType().getSqlTypeName();
+    switch (type.getSqlTypeName()) {
+    case TINYINT:
+    case SMALLINT:
+    case INTEGER:
+    case BIGINT:
+      if (!SqlTypeName.INT_TYPES.contains(literalTypeName)) {
+        return null;
+      }
+      final Primitive primitive = Primitive.ofBox(clazz);
+      if (primitive == null) {
+        return null;
+      }
+      final long v = literal.getValueAs(Long.class);
+      if (v < ((Number) primitive.min).longValue()
+          || v > ((Number) primitive.max).longValue()) {
+        return null;
+      }
+      return (Comparable) primitive.number(v);
+    case DECIMAL:
+      if (literalTypeName != SqlTypeName.DECIMAL
+          && !SqlTypeName.INT_TYPES.contains(literalTypeName)) {
+        return null;
+      }
+      return literal.getValueAs(BigDecimal.class);
+    case FLOAT:
+    case DOUBLE:
+      if (!SqlTypeName.APPROX_TYPES.contains(literalTypeName)) {
+        return null;
+      }
+      return literal.getValueAs(Double.class);
+    case VARCHAR:
+      if (!SqlTypeName.CHAR_TYPES.contains(literalTypeName)) {
+        return null;
+      }
+      return literal.getValueAs(String.class);
+    case DATE:
+    case TIME:
+      if (literalTypeName != type.getSqlTypeName()) {
+        return null;
+      }
+      return literal.getValueAs(Integer.class);
+    case TIMESTAMP:
+      if (literalTypeName != type.getSqlTypeName()) {
+        return null;
+      }
+      return literal.getValueAs(Long.class);
+    default:
+      return null;
+    }
+  }
+
+  /** Returns whether this predicate is a comparison that selects a
+   * contiguous range of a sorted list of values. */
+  boolean isRange() {
+    switch (kind) {
+    case EQUALS:
+    case LESS_THAN:
+    case LESS_THAN_OR_EQUAL:
+    case GREATER_THAN:
+    case GREATER_THAN_OR_EQUAL:
+      return true;
+    default:
+      return false;
+    }
+  }
+
+  /** Given a list of values sorted in ascending order, none of them null,
+   * returns the position of the first value that satisfies this range
+   * predicate. */
+  int start(List<? extends Comparable> values) {
+    switch (kind) {
+    case EQUALS:
+    case GREATER_THAN_OR_EQUAL:
+      return search(values, false);
+    case GREATER_THAN:
+      return search(values, true);
+    default:
+      return 0;
+    }
+  }
+
+  /** Given a list of values sorted in ascending order, none of them null,
+   * returns one more than the position of the last value that satisfies this
+   * range predicate. */
+  int end(List<? extends Comparable> values) {
+    switch (kind) {
+    case EQUALS:
+    case LESS_THAN_OR_EQUAL:
+      return search(values, true);
+    case LESS_THAN:
+      return search(values, false);
+    default:
+      return values.size();
+    }
+  }
+
+  /** Returns the position of the first value in a sorted list that is
+   * greater than (if {@code strict}) or not less than the value of this
+   * predicate, or the size of the list if there is no such value. */
+  @SuppressWarnings("unchecked")
+  private int search(List<? extends Comparable> values, boolean strict) {
+    int lo = 0;
+    int hi = values.size();
+    while (lo < hi) {
+      final int mid = (lo + hi) >>> 1;
+      final int c = values.get(mid).compareTo(value);
+      if (c < 0 || strict && c == 0) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+  /** Returns whether a value, which may be null, satisfies this
+   * predicate. */
+  @SuppressWarnings("unchecked")
+  boolean test(Comparable v) {
+    switch (kind) {
+    case IS_NULL:
+      return v == null;
+    case IS_NOT_NULL:
+      return v != null;
+    }
+    if (v == null) {
+      return false;
+    }
+    final int c = v.compareTo(value);
+    switch (kind) {
+    case EQUALS:
+      return c == 0;
+    case NOT_EQUALS:
+      return c != 0;
+    case LESS_THAN:
+      return c < 0;
+    case LESS_THAN_OR_EQUAL:
+      return c <= 0;
+    case GREATER_THAN:
+      return c > 0;
+    case GREATER_THAN_OR_EQUAL:
+      return c >= 0;
+    default:
+      throw new AssertionError(kind);
+    }
+  }
+}
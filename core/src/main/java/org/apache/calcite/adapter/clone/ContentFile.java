@@ -0,0 +1,690 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.clone;
+
+import org.apache.calcite.avatica.util.ByteString;
+import org.apache.calcite.linq4j.tree.Primitive;
+import org.apache.calcite.rel.RelCollation;
+import org.apache.calcite.rel.RelCollations;
+import org.apache.calcite.rel.RelFieldCollation;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.util.Pair;
+import org.apache.calcite.util.Util;
+
+import com.google.common.collect.ImmutableSet;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reads and writes the {@link ArrayTable.Content contents} of an
+ * {@link ArrayTable} as a file that can be mapped into memory.
+ *
+ * <p>Each column is written in the representation that {@link ColumnLoader}
+ * chose for it. When the file is read, the values of primitive, bit-sliced
+ * and object arrays, including those that underlie dictionaries and frames
+ * of reference, stay in the file and are accessed via a read-only memory
+ * mapping (see {@link ArrayTable.MappedPrimitiveArray},
+ * {@link ArrayTable.MappedBitSlicedPrimitiveArray} and
+ * {@link ArrayTable.MappedObjectArray}); only the values of dictionaries and
+ * constants, and the ends of runs, are read onto the heap. Reading is
+ * therefore fast however large the file, the data does not occupy the Java
+ * heap, and processes that read the same file share the operating system's
+ * page cache.
+ *
+ * <p>A file is written once and never modified. It is written to a temporary
+ * file that is then renamed, so that a reader never sees a partially written
+ * file. Its header records the row type of the table (the name and SQL type
+ * of each column); a file that was written for a different row type, or in
+ * an earlier format, is not read.
+ *
+ * <p>Values that are not of a built-in type are stored using Java
+ * serialization; when they are read, only a fixed set of JDK value and
+ * collection classes may be deserialized (see {@link #SERIALIZABLE_CLASSES}),
+ * because the file may have been written by someone else.
+ */
+class ContentFile {
+  /** First 8 bytes of a file: "CALCITE" followed by the format version. */
+  private static final long MAGIC = 0x43414c4349544502L;
+
+  /** Names of the classes whose instances may be deserialized from a value
+   * with tag {@link #SERIALIZABLE}, in addition to arrays of these classes
+   * and of primitives. */
+  static final Set<String> SERIALIZABLE_CLASSES = ImmutableSet.of(
+      "java.lang.Boolean", "java.lang.Byte", "java.lang.Character",
+      "java.lang.Short", "java.lang.Integer", "java.lang.Long",
+      "java.lang.Float", "java.lang.Double", "java.lang.Number",
+      "java.lang.String", "java.math.BigDecimal", "java.math.BigInteger",
+      "java.util.Date", "java.sql.Date", "java.sql.Time",
+      "java.sql.Timestamp", "java.util.ArrayList", "java.util.LinkedList",
+      "java.util.Arrays$ArrayList", "java.util.HashMap",
+      "java.util.LinkedHashMap", "java.util.HashSet",
+      "java.util.LinkedHashSet", "java.util.Collections$EmptyList",
+      "java.util.Collections$EmptyMap", "java.util.Collections$EmptySet",
+      "java.util.Collections$SingletonList",
+      "java.util.Collections$UnmodifiableCollection",
+      "java.util.Collections$UnmodifiableList",
+      "java.util.Collections$UnmodifiableRandomAccessList",
+      "java.util.Collections$UnmodifiableMap",
+      "java.util.Collections$UnmodifiableSet",
+      "org.apache.calcite.avatica.util.ByteString");
+
+  // Tags that identify the type of a serialized value
+  private static final byte NULL = 0;
+  private static final byte BOOLEAN = 1;
+  private static final byte BYTE = 2;
+  private static final byte CHAR = 3;
+  private static final byte SHORT = 4;
+  private static final byte INT = 5;
+  private static final byte LONG = 6;
+  private static final byte FLOAT = 7;
+  private static final byte DOUBLE = 8;
+  private static final byte STRING = 9;
+  private static final byte BIG_DECIMAL = 10;
+  private static final byte BYTE_STRING = 11;
+  private static final byte SERIALIZABLE = 12;
+
+  private ContentFile() {
+  }
+
+  /** Writes the contents of a table to a file, replacing the file if it
+   * exists.
+   *
+   * @param content Contents of the table
+   * @param rowType Row type of the table
+   * @param file File
+   */
+  static void write(ArrayTable.Content content, RelDataType rowType,
+      File file) throws IOException {
+    final File tempFile =
+        File.createTempFile(file.getName(), ".tmp",
+            file.getAbsoluteFile().getParentFile());
+    try {
+      try (Writer writer = new Writer(new FileOutputStream(tempFile))) {
+        writer.writeContent(content, rowTypeString(rowType));
+      }
+      Files.move(tempFile.toPath(), file.toPath(),
+          StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      // No-op if the file was moved
+      //noinspection ResultOfMethodCallIgnored
+      tempFile.delete();
+    }
+  }
+
+  /** Reads the contents of a table from a file, mapping the file into
+   * memory. Returns null if the file was written in an earlier format or for
+   * a table with a different row type.
+   *
+   * @param file File
+   * @param rowType Row type of the table
+   */
+  static ArrayTable.Content read(File file, RelDataType rowType)
+      throws IOException {
+    final MappedBuffer buffer;
+    try (FileChannel channel =
+             FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      buffer = MappedBuffer.map(channel);
+    }
+    // The last byte of the magic number is the format version
+    if (buffer.length < 8
+        || (buffer.getLong(0) & ~0xFFL) != (MAGIC & ~0xFFL)) {
+      throw new IOException("not a table contents file: " + file);
+    }
+    if (buffer.getLong(0) != MAGIC) {
+      return null;
+    }
+    return new Reader(buffer).readContent(rowTypeString(rowType));
+  }
+
+  /** Returns a string that describes the name and SQL type of each field of
+   * a row type, and that changes if any of them changes. */
+  private static String rowTypeString(RelDataType rowType) {
+    return rowType.getFullTypeString();
+  }
+
+  /** Returns the base-2 logarithm of the number of bytes that a value of a
+   * given primitive type occupies in a file. */
+  static int shift(Primitive primitive) {
+    switch (primitive) {
+    case BOOLEAN:
+    case BYTE:
+      return 0;
+    case CHAR:
+    case SHORT:
+      return 1;
+    case INT:
+    case FLOAT:
+      return 2;
+    case LONG:
+    case DOUBLE:
+      return 3;
+    default:
+      throw new AssertionError(primitive + " unexpected");
+    }
+  }
+
+  /** Serializes a value. */
+  static byte[] encode(Object value) throws IOException {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final DataOutputStream out = new DataOutputStream(bytes);
+    if (value == null) {
+      out.writeByte(NULL);
+    } else if (value instanceof String) {
+      out.writeByte(STRING);
+      out.write(((String) value).getBytes(StandardCharsets.UTF_8));
+    } else if (value instanceof Integer) {
+      out.writeByte(INT);
+      out.writeInt((Integer) value);
+    } else if (value instanceof Long) {
+      out.writeByte(LONG);
+      out.writeLong((Long) value);
+    } else if (value instanceof Double) {
+      out.writeByte(DOUBLE);
+      out.writeDouble((Double) value);
+    } else if (value instanceof BigDecimal) {
+      out.writeByte(BIG_DECIMAL);
+      out.write(value.toString().getBytes(StandardCharsets.UTF_8));
+    } else if (value instanceof Boolean) {
+      out.writeByte(BOOLEAN);
+      out.writeBoolean((Boolean) value);
+    } else if (value instanceof Byte) {
+      out.writeByte(BYTE);
+      out.writeByte((Byte) value);
+    } else if (value instanceof Character) {
+      out.writeByte(CHAR);
+      out.writeChar((Character) value);
+    } else if (value instanceof Short) {
+      out.writeByte(SHORT);
+      out.writeShort((Short) value);
+    } else if (value instanceof Float) {
+      out.writeByte(FLOAT);
+      out.writeFloat((Float) value);
+    } else if (value instanceof ByteString) {
+      out.writeByte(BYTE_STRING);
+      out.write(((ByteString) value).getBytes());
+    } else if (value instanceof Serializable) {
+      out.writeByte(SERIALIZABLE);
+      final ObjectOutputStream objectOut = new ObjectOutputStream(out);
+      objectOut.writeObject(value);
+      objectOut.flush();
+    } else {
+      throw new IllegalArgumentException("cannot serialize value of "
+          + value.getClass());
+    }
+    out.flush();
+    return bytes.toByteArray();
+  }
+
+  /** Deserializes a value that was serialized by {@link #encode(Object)}. */
+  static Comparable decode(byte[] bytes) {
+    final ByteBuffer buffer = ByteBuffer.wrap(bytes, 1, bytes.length - 1);
+    switch (bytes[0]) {
+    case NULL:
+      return null;
+    case STRING:
+      return StandardCharsets.UTF_8.decode(buffer).toString();
+    case INT:
+      return buffer.getInt();
+    case LONG:
+      return buffer.getLong();
+    case DOUBLE:
+      return buffer.getDouble();
+    case BIG_DECIMAL:
+      return new BigDecimal(
+          StandardCharsets.UTF_8.decode(buffer).toString());
+    case BOOLEAN:
+      return buffer.get() != 0;
+    case BYTE:
+      return buffer.get();
+    case CHAR:
+      return buffer.getChar();
+    case SHORT:
+      return buffer.getShort();
+    case FLOAT:
+      return buffer.getFloat();
+    case BYTE_STRING:
+      return new ByteString(Arrays.copyOfRange(bytes, 1, bytes.length));
+    case SERIALIZABLE:
+      try (ObjectInputStream in =
+               new ValueInputStream(
+                   new ByteArrayInputStream(bytes, 1, bytes.length - 1))) {
+        return (Comparable) in.readObject();
+      } catch (IOException | ClassNotFoundException e) {
+        throw Util.toUnchecked(e);
+      }
+    default:
+      throw new AssertionError("unknown tag " + bytes[0]);
+    }
+  }
+
+  /** Object input stream that only deserializes the classes in
+   * {@link #SERIALIZABLE_CLASSES}. */
+  private static class ValueInputStream extends ObjectInputStream {
+    ValueInputStream(InputStream in) throws IOException {
+      super(in);
+    }
+
+    @Override protected Class<?> resolveClass(ObjectStreamClass desc)
+        throws IOException, ClassNotFoundException {
+      // The name of an array class is "[I" or "[[Ljava.lang.String;"
+      String name = desc.getName();
+      final int i = name.lastIndexOf('[');
+      if (i >= 0) {
+        name = name.charAt(i + 1) == 'L'
+            ? name.substring(i + 2, name.length() - 1)
+            : null; // array of primitives
+      }
+      if (name != null && !SERIALIZABLE_CLASSES.contains(name)) {
+        throw new InvalidClassException(desc.getName(),
+            "not allowed in a table contents file");
+      }
+      return super.resolveClass(desc);
+    }
+
+    @Override protected Class<?> resolveProxyClass(String[] interfaces)
+        throws IOException {
+      throw new InvalidClassException("proxy",
+          "not allowed in a table contents file");
+    }
+  }
+
+  /** Writes a file. Keeps track of the position, so that the data of each
+   * column can be aligned. */
+  private static class Writer implements Closeable {
+    private final DataOutputStream out;
+    private long position;
+
+    Writer(OutputStream out) {
+      this.out = new DataOutputStream(new BufferedOutputStream(out));
+    }
+
+    public void close() throws IOException {
+      out.close();
+    }
+
+    void writeByte(int v) throws IOException {
+      out.writeByte(v);
+      position += 1;
+    }
+
+    void writeShort(int v) throws IOException {
+      out.writeShort(v);
+      position += 2;
+    }
+
+    void writeInt(int v) throws IOException {
+      out.writeInt(v);
+      position += 4;
+    }
+
+    void writeLong(long v) throws IOException {
+      out.writeLong(v);
+      position += 8;
+    }
+
+    void writeBytes(byte[] bytes) throws IOException {
+      out.write(bytes);
+      position += bytes.length;
+    }
+
+    void writeString(String s) throws IOException {
+      final byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+      writeInt(bytes.length);
+      writeBytes(bytes);
+    }
+
+    void writeValue(Object value) throws IOException {
+      final byte[] bytes = encode(value);
+      writeInt(bytes.length);
+      writeBytes(bytes);
+    }
+
+    /** Writes zeros until the position is a multiple of 8, so that the
+     * values that follow are aligned. */
+    void align() throws IOException {
+      while ((position & 7) != 0) {
+        writeByte(0);
+      }
+    }
+
+    void writeContent(ArrayTable.Content content, String rowType)
+        throws IOException {
+      writeLong(MAGIC);
+      writeString(rowType);
+      writeInt(content.size);
+      writeInt(content.collations.size());
+      for (RelCollation collation : content.collations) {
+        writeInt(collation.getFieldCollations().size());
+        for (RelFieldCollation fieldCollation
+            : collation.getFieldCollations()) {
+          writeInt(fieldCollation.getFieldIndex());
+          writeString(fieldCollation.direction.name());
+          writeString(fieldCollation.nullDirection.name());
+        }
+      }
+      writeInt(content.columns.size());
+      for (ArrayTable.Column column : content.columns) {
+        writeInt(column.cardinality);
+        writeRepresentation(column.representation, column.dataSet);
+      }
+    }
+
+    void writeRepresentation(ArrayTable.Representation representation,
+        Object dataSet) throws IOException {
+      writeString(representation.getType().name());
+      if (representation instanceof ArrayTable.Constant) {
+        final Pair<Object, Integer> pair = ArrayTable.toPair(dataSet);
+        writeInt(((ArrayTable.Constant) representation).ordinal);
+        writeValue(pair.left);
+        writeInt(pair.right);
+      } else if (representation instanceof ArrayTable.PrimitiveArray) {
+        final ArrayTable.PrimitiveArray primitiveArray =
+            (ArrayTable.PrimitiveArray) representation;
+        final Primitive primitive = primitiveArray.primitive;
+        final int count = Array.getLength(dataSet);
+        writeInt(primitiveArray.ordinal);
+        writeString(primitive.name());
+        writeString(primitiveArray.p.name());
+        writeInt(count);
+        align();
+        for (int i = 0; i < count; i++) {
+          switch (primitive) {
+          case BOOLEAN:
+            writeByte(Array.getBoolean(dataSet, i) ? 1 : 0);
+            break;
+          case CHAR:
+          case SHORT:
+            writeShort((int) Array.getLong(dataSet, i));
+            break;
+          case INT:
+            writeInt((int) Array.getLong(dataSet, i));
+            break;
+          case LONG:
+            writeLong(Array.getLong(dataSet, i));
+            break;
+          case FLOAT:
+            writeInt(Float.floatToRawIntBits(Array.getFloat(dataSet, i)));
+            break;
+          case DOUBLE:
+            writeLong(
+                Double.doubleToRawLongBits(Array.getDouble(dataSet, i)));
+            break;
+          default:
+            writeByte((int) Array.getLong(dataSet, i));
+          }
+        }
+      } else if (representation
+          instanceof ArrayTable.BitSlicedPrimitiveArray) {
+        // Works for MappedBitSlicedPrimitiveArray too
+        final ArrayTable.BitSlicedPrimitiveArray bitSlicedArray =
+            (ArrayTable.BitSlicedPrimitiveArray) representation;
+        final int wordCount = bitSlicedArray.wordCount(dataSet);
+        writeInt(bitSlicedArray.ordinal);
+        writeInt(bitSlicedArray.bitCount);
+        writeString(bitSlicedArray.primitive.name());
+        writeByte(bitSlicedArray.signed ? 1 : 0);
+        writeInt(wordCount);
+        align();
+        for (int i = 0; i < wordCount; i++) {
+          writeLong(bitSlicedArray.word(dataSet, i));
+        }
+      } else if (representation instanceof ArrayTable.ObjectArray) {
+        final Comparable[] values = (Comparable[]) dataSet;
+        writeInt(((ArrayTable.ObjectArray) representation).ordinal);
+        writeInt(values.length);
+        align();
+        // Write the offset of each value, then the values. To save memory,
+        // we serialize each value twice.
+        long offset = 0;
+        writeLong(offset);
+        for (Comparable value : values) {
+          offset += encode(value).length;
+          writeLong(offset);
+        }
+        for (Comparable value : values) {
+          writeBytes(encode(value));
+        }
+      } else if (representation instanceof ArrayTable.ObjectDictionary) {
+        final ArrayTable.ObjectDictionary dictionary =
+            (ArrayTable.ObjectDictionary) representation;
+        final Pair<Object, Comparable[]> pair = ArrayTable.toPair(dataSet);
+        writeInt(dictionary.ordinal);
+        writeRepresentation(dictionary.representation, pair.left);
+        writeInt(pair.right.length);
+        for (Comparable value : pair.right) {
+          writeValue(value);
+        }
+      } else if (representation instanceof ArrayTable.RunLength) {
+        final ArrayTable.RunLength runLength =
+            (ArrayTable.RunLength) representation;
+        final Pair<Object, Object> pair = ArrayTable.toPair(dataSet);
+        final int[] ends = (int[]) pair.left;
+        writeInt(runLength.ordinal);
+        writeInt(ends.length);
+        for (int end : ends) {
+          writeInt(end);
+        }
+        writeRepresentation(runLength.representation, pair.right);
+      } else if (representation instanceof ArrayTable.FrameOfReference) {
+        final ArrayTable.FrameOfReference frameOfReference =
+            (ArrayTable.FrameOfReference) representation;
+        writeInt(frameOfReference.ordinal);
+        writeString(frameOfReference.p.name());
+        writeLong(frameOfReference.base);
+        writeRepresentation(frameOfReference.representation, dataSet);
+      } else {
+        throw new UnsupportedOperationException("cannot write "
+            + representation);
+      }
+    }
+  }
+
+  /** Reads a file that has been mapped into memory. */
+  private static class Reader {
+    private final MappedBuffer buffer;
+    private final byte[] scratch = new byte[8];
+    private long position;
+
+    Reader(MappedBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    private ByteBuffer read(int count) {
+      buffer.get(position, scratch, count);
+      position += count;
+      return ByteBuffer.wrap(scratch);
+    }
+
+    byte readByte() {
+      return read(1).get();
+    }
+
+    int readInt() {
+      return read(4).getInt();
+    }
+
+    long readLong() {
+      return read(8).getLong();
+    }
+
+    byte[] readBytes() {
+      final byte[] bytes = new byte[readInt()];
+      buffer.get(position, bytes, bytes.length);
+      position += bytes.length;
+      return bytes;
+    }
+
+    String readString() {
+      return StandardCharsets.UTF_8.decode(ByteBuffer.wrap(readBytes()))
+          .toString();
+    }
+
+    Comparable readValue() {
+      return decode(readBytes());
+    }
+
+    void align() {
+      position = (position + 7) & ~7L;
+    }
+
+    /** Returns the region of the file that starts at the current position
+     * and has a given length, and moves to the end of the region. */
+    MappedBuffer slice(long length) {
+      final MappedBuffer slice = buffer.slice(position, length);
+      position += length;
+      return slice;
+    }
+
+    /** Reads the contents of a table, or returns null if the file was
+     * written for a different row type. */
+    ArrayTable.Content readContent(String rowType) {
+      if (readLong() != MAGIC) {
+        throw new AssertionError("bad magic number");
+      }
+      if (!readString().equals(rowType)) {
+        return null;
+      }
+      final int size = readInt();
+      final int collationCount = readInt();
+      final List<RelCollation> collations = new ArrayList<>();
+      for (int i = 0; i < collationCount; i++) {
+        final int fieldCount = readInt();
+        final List<RelFieldCollation> fieldCollations = new ArrayList<>();
+        for (int j = 0; j < fieldCount; j++) {
+          final int fieldIndex = readInt();
+          final RelFieldCollation.Direction direction =
+              RelFieldCollation.Direction.valueOf(readString());
+          final RelFieldCollation.NullDirection nullDirection =
+              RelFieldCollation.NullDirection.valueOf(readString());
+          fieldCollations.add(
+              new RelFieldCollation(fieldIndex, direction, nullDirection));
+        }
+        collations.add(RelCollations.of(fieldCollations));
+      }
+      final int columnCount = readInt();
+      final List<ArrayTable.Column> columns = new ArrayList<>();
+      for (int i = 0; i < columnCount; i++) {
+        final int cardinality = readInt();
+        final Pair<ArrayTable.Representation, Object> pair =
+            readRepresentation();
+        columns.add(new ArrayTable.Column(pair.left, pair.right, cardinality));
+      }
+      return new ArrayTable.Content(columns, size, collations);
+    }
+
+    /** Reads a representation and its data set. */
+    Pair<ArrayTable.Representation, Object> readRepresentation() {
+      final ArrayTable.RepresentationType type =
+          ArrayTable.RepresentationType.valueOf(readString());
+      final int ordinal = readInt();
+      switch (type) {
+      case CONSTANT: {
+        final Comparable value = readValue();
+        final int size = readInt();
+        return Pair.of(new ArrayTable.Constant(ordinal), Pair.of(value, size));
+      }
+      case PRIMITIVE_ARRAY: {
+        final Primitive primitive = Primitive.valueOf(readString());
+        final Primitive p = Primitive.valueOf(readString());
+        final int count = readInt();
+        align();
+        return Pair.of(
+            new ArrayTable.MappedPrimitiveArray(ordinal, primitive, p),
+            slice((long) count << shift(primitive)));
+      }
+      case BIT_SLICED_PRIMITIVE_ARRAY: {
+        final int bitCount = readInt();
+        final Primitive primitive = Primitive.valueOf(readString());
+        final boolean signed = readByte() != 0;
+        final int wordCount = readInt();
+        align();
+        return Pair.of(
+            new ArrayTable.MappedBitSlicedPrimitiveArray(ordinal, bitCount,
+                primitive, signed),
+            slice((long) wordCount << 3));
+      }
+      case OBJECT_ARRAY: {
+        final int count = readInt();
+        align();
+        final MappedBuffer offsets = slice((long) (count + 1) << 3);
+        final MappedBuffer values =
+            slice(offsets.getLong((long) count << 3));
+        return Pair.of(new ArrayTable.MappedObjectArray(ordinal),
+            Pair.of(offsets, values));
+      }
+      case OBJECT_DICTIONARY: {
+        final Pair<ArrayTable.Representation, Object> codes =
+            readRepresentation();
+        final Comparable[] values = new Comparable[readInt()];
+        for (int i = 0; i < values.length; i++) {
+          values[i] = readValue();
+        }
+        return Pair.of(new ArrayTable.ObjectDictionary(ordinal, codes.left),
+            Pair.of(codes.right, values));
+      }
+      case RUN_LENGTH: {
+        final int[] ends = new int[readInt()];
+        for (int i = 0; i < ends.length; i++) {
+          ends[i] = readInt();
+        }
+        final Pair<ArrayTable.Representation, Object> values =
+            readRepresentation();
+        return Pair.of(new ArrayTable.RunLength(ordinal, values.left),
+            Pair.of(ends, values.right));
+      }
+      case FRAME_OF_REFERENCE: {
+        final Primitive p = Primitive.valueOf(readString());
+        final long base = readLong();
+        final Pair<ArrayTable.Representation, Object> offsets =
+            readRepresentation();
+        return Pair.of(
+            new ArrayTable.FrameOfReference(ordinal, p, base, offsets.left),
+            offsets.right);
+      }
+      default:
+        throw new AssertionError("unexpected representation " + type);
+      }
+    }
+  }
+}
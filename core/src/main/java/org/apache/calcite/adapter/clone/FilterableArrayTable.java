@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.clone;
+
+import org.apache.calcite.DataContext;
+import org.apache.calcite.adapter.java.JavaTypeFactory;
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.plan.RelOptUtil;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelProtoDataType;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.schema.ProjectableFilterableTable;
+
+import com.google.common.base.Supplier;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * {@link ArrayTable} that evaluates filters and projects while it scans.
+ *
+ * <p>The planner pushes filters and projects into a scan of this table (see
+ * {@link org.apache.calcite.interpreter.Bindables.BindableTableScan}). The
+ * table evaluates filters that compare a column to a literal, or test whether
+ * it is null (see {@link ColumnPredicate}), including conjuncts of a larger
+ * filter, and leaves other filters to the caller. It reads only the columns
+ * that are projected or filtered.
+ *
+ * <p>A pushed-down scan is executed by the interpreter, and therefore does
+ * not use the partitioned or batch scans of {@link ArrayTable}.
+ */
+class FilterableArrayTable extends ArrayTable
+    implements ProjectableFilterableTable {
+  /** Creates a FilterableArrayTable. */
+  FilterableArrayTable(Type elementType, RelProtoDataType protoRowType,
+      Supplier<Content> supplier) {
+    super(elementType, protoRowType, supplier);
+  }
+
+  public Enumerable<Object[]> scan(DataContext root, List<RexNode> filters,
+      final int[] projects) {
+    final JavaTypeFactory typeFactory = root.getTypeFactory();
+    final RelDataType rowType = getRowType(typeFactory);
+    final List<ColumnPredicate> predicates = new ArrayList<>();
+    for (Iterator<RexNode> i = filters.iterator(); i.hasNext();) {
+      // If we can evaluate only some of the conjuncts of a filter, evaluate
+      // those, and leave the whole filter to the caller
+      boolean all = true;
+      for (RexNode conjunction : RelOptUtil.conjunctions(i.next())) {
+        final ColumnPredicate predicate =
+            ColumnPredicate.of(conjunction, rowType, typeFactory);
+        if (predicate != null) {
+          predicates.add(predicate);
+        } else {
+          all = false;
+        }
+      }
+      if (all) {
+        i.remove();
+      }
+    }
+    return new AbstractEnumerable<Object[]>() {
+      public Enumerator<Object[]> enumerator() {
+        final Content content = supplier.get();
+        return content.filterEnumerator(predicates, projects);
+      }
+    };
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.clone;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Read-only region of a file that is mapped into memory.
+ *
+ * <p>A {@link MappedByteBuffer} can address at most 2 GB, so a larger file is
+ * mapped in several chunks. Offsets are in bytes, relative to the start of
+ * the region. A value of a primitive type must be aligned to its size,
+ * relative to the start of the file, so that it does not straddle two chunks.
+ */
+class MappedBuffer {
+  private static final int CHUNK_BITS = 30;
+  private static final long CHUNK_SIZE = 1L << CHUNK_BITS;
+  private static final long CHUNK_MASK = CHUNK_SIZE - 1;
+
+  private final ByteBuffer[] chunks;
+  private final long start;
+  final long length;
+
+  private MappedBuffer(ByteBuffer[] chunks, long start, long length) {
+    this.chunks = chunks;
+    this.start = start;
+    this.length = length;
+  }
+
+  /** Maps the whole of a file into memory. The mapping remains valid after
+   * the channel is closed. */
+  static MappedBuffer map(FileChannel channel) throws IOException {
+    final long size = channel.size();
+    final ByteBuffer[] chunks =
+        new ByteBuffer[(int) ((size + CHUNK_MASK) >>> CHUNK_BITS)];
+    for (int i = 0; i < chunks.length; i++) {
+      final long position = (long) i << CHUNK_BITS;
+      chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, position,
+          Math.min(CHUNK_SIZE, size - position));
+    }
+    return new MappedBuffer(chunks, 0L, size);
+  }
+
+  /** Returns a region of this buffer. */
+  MappedBuffer slice(long offset, long length) {
+    if (offset < 0 || length < 0 || offset + length > this.length) {
+      throw new IndexOutOfBoundsException("offset " + offset + ", length "
+          + length + " is not within buffer of length " + this.length);
+    }
+    return new MappedBuffer(chunks, start + offset, length);
+  }
+
+  private ByteBuffer chunk(long position) {
+    return chunks[(int) (position >>> CHUNK_BITS)];
+  }
+
+  byte getByte(long offset) {
+    final long position = start + offset;
+    return chunk(position).get((int) (position & CHUNK_MASK));
+  }
+
+  char getChar(long offset) {
+    final long position = start + offset;
+    return chunk(position).getChar((int) (position & CHUNK_MASK));
+  }
+
+  short getShort(long offset) {
+    final long position = start + offset;
+    return chunk(position).getShort((int) (position & CHUNK_MASK));
+  }
+
+  int getInt(long offset) {
+    final long position = start + offset;
+    return chunk(position).getInt((int) (position & CHUNK_MASK));
+  }
+
+  long getLong(long offset) {
+    final long position = start + offset;
+    return chunk(position).getLong((int) (position & CHUNK_MASK));
+  }
+
+  float getFloat(long offset) {
+    final long position = start + offset;
+    return chunk(position).getFloat((int) (position & CHUNK_MASK));
+  }
+
+  double getDouble(long offset) {
+    final long position = start + offset;
+    return chunk(position).getDouble((int) (position & CHUNK_MASK));
+  }
+
+  /** Copies bytes into an array. Unlike the methods that read primitive
+   * values, the bytes may straddle chunks. */
+  void get(long offset, byte[] bytes, int count) {
+    long position = start + offset;
+    int done = 0;
+    while (done < count) {
+      final ByteBuffer chunk = chunk(position).duplicate();
+      final int i = (int) (position & CHUNK_MASK);
+      final int n = Math.min(count - done, chunk.limit() - i);
+      // Cast to Buffer, because ByteBuffer.position(int) does not exist
+      // before JDK 9
+      ((Buffer) chunk).position(i);
+      chunk.get(bytes, done, n);
+      done += n;
+      position += n;
+    }
+  }
+}
@@ -21,6 +21,7 @@
 import org.apache.calcite.linq4j.Ord;
 import org.apache.calcite.linq4j.function.Function1;
 import org.apache.calcite.linq4j.function.Function2;
+import org.apache.calcite.linq4j.function.LongFunction1;
 import org.apache.calcite.linq4j.function.Predicate2;
 import org.apache.calcite.linq4j.tree.BlockBuilder;
 import org.apache.calcite.linq4j.tree.BlockStatement;
@@ -42,6 +43,7 @@
 import org.apache.calcite.rex.RexBuilder;
 import org.apache.calcite.rex.RexNode;
 import org.apache.calcite.rex.RexProgramBuilder;
+import org.apache.calcite.runtime.LongKeyedEnumerables;
 import org.apache.calcite.runtime.SqlFunctions;
 import org.apache.calcite.util.BuiltInMethod;
 import org.apache.calcite.util.Pair;
@@ -744,6 +746,76 @@ static Expression generatePredicate(
     return Expressions.lambda(Predicate2.class, builder.toBlock(), left_, right_);
   }
 
+  /** Returns the classes of the given fields of a physical type. */
+  static List<Class> fieldClasses(PhysType physType, List<Integer> fields) {
+    return Util.transform(fields, physType::fieldClass);
+  }
+
+  /** Returns whether {@link #generateLongKeySelector} can pack fields of the
+   * given classes into a {@code long}: that is, whether all are primitive
+   * and their total width is at most 64 bits. */
+  static boolean isLongKey(List<Class> fieldClasses) {
+    if (fieldClasses.isEmpty()) {
+      return false;
+    }
+    int bits = 0;
+    for (Class fieldClass : fieldClasses) {
+      final int fieldBits = LongKeyedEnumerables.keyBits(fieldClass);
+      if (fieldBits < 0) {
+        return false;
+      }
+      bits += fieldBits;
+    }
+    return bits <= 64;
+  }
+
+  /** Generates a {@link org.apache.calcite.linq4j.function.LongFunction1}
+   * that packs the given fields of a row into a {@code long}.
+   *
+   * <p>The fields must satisfy {@link #isLongKey}. Two rows whose fields
+   * have the same classes have equal keys if and only if the fields are
+   * equal, by the semantics of {@link Object#equals} on the boxed values;
+   * for example, {@code float} and {@code double} values are compared by
+   * their bits. */
+  static Expression generateLongKeySelector(PhysType physType,
+      List<Integer> fields) {
+    final ParameterExpression v1 =
+        Expressions.parameter(Primitive.box(physType.getJavaRowType()), "v1");
+    Expression key = null;
+    for (int field : fields) {
+      final Class fieldClass = physType.fieldClass(field);
+      final int bits = LongKeyedEnumerables.keyBits(fieldClass);
+      final Expression value =
+          convert(physType.fieldReference(v1, field), fieldClass);
+      Expression part;
+      switch (Primitive.of(fieldClass)) {
+      case BOOLEAN:
+        part = Expressions.condition(value, Expressions.constant(1L),
+            Expressions.constant(0L));
+        break;
+      case FLOAT:
+        part = Expressions.convert_(
+            Expressions.call(Float.class, "floatToIntBits", value),
+            long.class);
+        break;
+      case DOUBLE:
+        part = Expressions.call(Double.class, "doubleToLongBits", value);
+        break;
+      default:
+        part = Expressions.convert_(value, long.class);
+      }
+      if (fields.size() > 1 && bits < 64) {
+        // Clear the bits that sign-extension would set
+        part = Expressions.and(part, Expressions.constant((1L << bits) - 1L));
+      }
+      key = key == null
+          ? part
+          : Expressions.or(
+              Expressions.leftShift(key, Expressions.constant(bits)), part);
+    }
+    return Expressions.lambda(LongFunction1.class, key, v1);
+  }
+
   /** Generates a window selector which appends attribute of the window based on
    * the parameters. */
   static Expression windowSelector(
@@ -406,7 +406,10 @@ public RexToLixTranslator rowTranslator() {
                           resultSelector)))));
     } else if (aggCalls.isEmpty()
         && groupSet.equals(
-            ImmutableBitSet.range(child.getRowType().getFieldCount()))) {
+            ImmutableBitSet.range(child.getRowType().getFieldCount()))
+        && !implementor.isSpillEnabled()) {
+      // "distinct" holds all rows in memory; if the query may spill, use
+      // the general path below, which groups using SpillingEnumerables.
       builder.add(
           Expressions.return_(
               null,
@@ -429,21 +432,66 @@ public RexToLixTranslator rowTranslator() {
                   acc_));
       builder.add(
           Expressions.return_(null,
-              Expressions.call(childExp,
-                  BuiltInMethod.GROUP_BY2.method,
-                  Expressions.list(keySelector_,
-                      Expressions.call(lambdaFactory,
-                          BuiltInMethod.AGG_LAMBDA_FACTORY_ACC_INITIALIZER.method),
-                      Expressions.call(lambdaFactory,
-                          BuiltInMethod.AGG_LAMBDA_FACTORY_ACC_ADDER.method),
-                      Expressions.call(lambdaFactory,
-                          BuiltInMethod.AGG_LAMBDA_FACTORY_ACC_RESULT_SELECTOR.method,
-                          resultSelector_))
-                      .appendIfNotNull(keyPhysType.comparer()))));
+              groupBy(implementor, builder, childExp, inputPhysType,
+                  keyPhysType, keySelector_,
+                  Expressions.call(lambdaFactory,
+                      BuiltInMethod.AGG_LAMBDA_FACTORY_ACC_INITIALIZER.method),
+                  Expressions.call(lambdaFactory,
+                      BuiltInMethod.AGG_LAMBDA_FACTORY_ACC_ADDER.method),
+                  Expressions.call(lambdaFactory,
+                      BuiltInMethod.AGG_LAMBDA_FACTORY_ACC_RESULT_SELECTOR.method,
+                      resultSelector_))));
     }
     return implementor.result(physType, builder.toBlock());
   }
 
+  /** Generates a call that groups the rows of the input and computes an
+   * accumulator for each group.
+   *
+   * <p>Uses {@link org.apache.calcite.runtime.SpillingEnumerables} if the
+   * query may spill to disk, and
+   * {@link org.apache.calcite.runtime.LongKeyedEnumerables} if the key can
+   * be packed into a {@code long}. */
+  private Expression groupBy(EnumerableRelImplementor implementor,
+      BlockBuilder builder, Expression childExp, PhysType inputPhysType,
+      PhysType keyPhysType, Expression keySelector,
+      Expression accumulatorInitializer, Expression accumulatorAdder,
+      Expression resultSelector) {
+    if (implementor.isSpillEnabled()) {
+      return Expressions.call(BuiltInMethod.SPILLING_GROUP_BY.method,
+          implementor.getRootExpression(),
+          childExp,
+          keySelector,
+          accumulatorInitializer,
+          accumulatorAdder,
+          resultSelector,
+          Util.first(keyPhysType.comparer(), Expressions.constant(null)));
+    }
+    if (keyPhysType.comparer() == null
+        && EnumUtils.isLongKey(
+            EnumUtils.fieldClasses(inputPhysType, groupSet.asList()))) {
+      // Keys are primitive and fit into a long; avoid boxing them.
+      final Expression longKeySelector =
+          builder.append("longKeySelector",
+              EnumUtils.generateLongKeySelector(inputPhysType,
+                  groupSet.asList()));
+      return Expressions.call(BuiltInMethod.LONG_KEYED_GROUP_BY.method,
+          childExp,
+          longKeySelector,
+          keySelector,
+          accumulatorInitializer,
+          accumulatorAdder,
+          resultSelector);
+    }
+    return Expressions.call(childExp,
+        BuiltInMethod.GROUP_BY2.method,
+        Expressions.list(keySelector,
+            accumulatorInitializer,
+            accumulatorAdder,
+            resultSelector)
+            .appendIfNotNull(keyPhysType.comparer()));
+  }
+
   private static boolean hasOrderedCall(List<AggImpState> aggs) {
     for (AggImpState agg : aggs) {
       if (!agg.call.collation.equals(RelCollations.EMPTY)) {
@@ -0,0 +1,283 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable;
+
+import org.apache.calcite.linq4j.tree.BlockBuilder;
+import org.apache.calcite.linq4j.tree.Expressions;
+import org.apache.calcite.linq4j.tree.ParameterExpression;
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.RelCollation;
+import org.apache.calcite.rel.RelCollationTraitDef;
+import org.apache.calcite.rel.RelCollations;
+import org.apache.calcite.rel.RelDistribution;
+import org.apache.calcite.rel.RelDistributions;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.RelWriter;
+import org.apache.calcite.rel.core.Correlate;
+import org.apache.calcite.rel.core.Exchange;
+import org.apache.calcite.rel.core.Join;
+import org.apache.calcite.rel.core.JoinRelType;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.schema.PartitionableTable;
+import org.apache.calcite.schema.Table;
+import org.apache.calcite.util.BuiltInMethod;
+
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Implementation of {@link org.apache.calcite.rel.core.Exchange} in
+ * {@link EnumerableConvention enumerable calling convention} that evaluates
+ * its input in several partitions concurrently, and gathers the results into
+ * a single stream.
+ *
+ * <p>The input must be a pipeline of operators each of which can process a
+ * partition of its driving input (the input on the left) independently of the
+ * other partitions, ending in a scan of a {@link PartitionableTable}; see
+ * {@link #partitionedScan(RelNode)}. Each partition reads a disjoint part of
+ * that table; the other inputs of the pipeline, such as the build side of a
+ * hash join, are evaluated in full by every partition.
+ *
+ * <p>The distribution is always {@link RelDistributions#SINGLETON}, and the
+ * output has no particular order.
+ *
+ * @see org.apache.calcite.config.CalciteConnectionProperty#PARALLELISM */
+public class EnumerableExchange extends Exchange implements EnumerableRel {
+  /** Minimum number of rows in each partition. Tables smaller than this are
+   * not worth the overhead of partitioning. */
+  static final int MIN_PARTITION_ROW_COUNT = 1000;
+
+  public final int partitionCount;
+
+  /** Creates an EnumerableExchange.
+   *
+   * <p>Use {@link #create} unless you know what you're doing. */
+  public EnumerableExchange(RelOptCluster cluster, RelTraitSet traitSet,
+      RelNode input, RelDistribution distribution, int partitionCount) {
+    super(cluster, traitSet, input, distribution);
+    assert getConvention() instanceof EnumerableConvention;
+    assert distribution == RelDistributions.SINGLETON
+        : "only SINGLETON distribution is supported: " + distribution;
+    assert partitionCount > 1 : partitionCount;
+    this.partitionCount = partitionCount;
+  }
+
+  /** Creates an EnumerableExchange that evaluates {@code input} in
+   * {@code partitionCount} partitions. */
+  public static EnumerableExchange create(RelNode input, int partitionCount) {
+    final RelTraitSet traitSet = input.getTraitSet()
+        .replace(EnumerableConvention.INSTANCE)
+        .replace(RelCollations.EMPTY)
+        .replace(RelDistributions.SINGLETON);
+    return new EnumerableExchange(input.getCluster(), traitSet, input,
+        RelDistributions.SINGLETON, partitionCount);
+  }
+
+  @Override public EnumerableExchange copy(RelTraitSet traitSet,
+      RelNode newInput, RelDistribution newDistribution) {
+    return new EnumerableExchange(getCluster(), traitSet, newInput,
+        newDistribution, partitionCount);
+  }
+
+  @Override public RelWriter explainTerms(RelWriter pw) {
+    return super.explainTerms(pw)
+        .item("partitions", partitionCount);
+  }
+
+  public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
+    final EnumerableTableScan scan = partitionedScan(getInput());
+    assert scan != null : "cannot partition " + getInput();
+
+    // The ordinal of the partition is the argument of a lambda; the
+    // scan reads the partition, the rest of the input processes it.
+    final ParameterExpression partition_ =
+        Expressions.parameter(Modifier.FINAL, Integer.class, "partition");
+    implementor.registerPartition(scan, Expressions.unbox(partition_),
+        partitionCount);
+    final Result result =
+        implementor.visitChild(this, 0, (EnumerableRel) getInput(), pref);
+    implementor.clearPartition(scan);
+
+    final PhysType physType =
+        PhysTypeImpl.of(
+            implementor.getTypeFactory(),
+            getRowType(),
+            result.format);
+    final BlockBuilder builder = new BlockBuilder();
+    builder.add(
+        Expressions.return_(null,
+            Expressions.call(BuiltInMethod.GATHER.method,
+                Expressions.constant(partitionCount),
+                Expressions.lambda(result.block, partition_))));
+    return implementor.result(physType, builder.toBlock());
+  }
+
+  /** Returns the input of a relational expression that may be split into
+   * partitions, each of which the relational expression can process
+   * independently of the others; or null if there is no such input. */
+  static RelNode drivingInput(RelNode rel) {
+    if (rel instanceof EnumerableCalc
+        || rel instanceof EnumerableProject
+        || rel instanceof EnumerableFilter) {
+      return rel.getInput(0);
+    }
+    final JoinRelType joinType;
+    if (rel instanceof EnumerableHashJoin
+        || rel instanceof EnumerableNestedLoopJoin) {
+      joinType = ((Join) rel).getJoinType();
+    } else if (rel instanceof EnumerableCorrelate) {
+      joinType = ((Correlate) rel).getJoinType();
+    } else {
+      return null;
+    }
+    switch (joinType) {
+    case INNER:
+    case LEFT:
+    case SEMI:
+    case ANTI:
+      // Each row on the left is joined to every row on the right, so the
+      // left can be partitioned, and the right read in full.
+      return rel.getInput(0);
+    default:
+      return null;
+    }
+  }
+
+  /** Returns the scan that an {@code EnumerableExchange} on top of
+   * {@code rel} would partition, or null if {@code rel} cannot be evaluated
+   * in partitions. */
+  public static EnumerableTableScan partitionedScan(RelNode rel) {
+    for (;;) {
+      if (rel instanceof EnumerableTableScan) {
+        final Table table = rel.getTable().unwrap(Table.class);
+        if (table instanceof PartitionableTable
+            && EnumerableTableScan.deduceElementType(table) == Object[].class) {
+          return (EnumerableTableScan) rel;
+        }
+        return null;
+      }
+      rel = drivingInput(rel);
+      if (rel == null) {
+        return null;
+      }
+    }
+  }
+
+  /** Returns a copy of a plan in which each maximal pipeline that can be
+   * evaluated in partitions, and is large enough to make it worthwhile, is
+   * wrapped in an {@code EnumerableExchange}.
+   *
+   * @param rel Root of plan
+   * @param partitionCount Number of partitions
+   * @return Plan with exchanges
+   */
+  public static RelNode parallelize(RelNode rel, int partitionCount) {
+    if (partitionCount <= 1) {
+      return rel;
+    }
+    return parallelize(rel, partitionCount, false);
+  }
+
+  private static RelNode parallelize(RelNode rel, int partitionCount,
+      boolean ignoresOrder) {
+    if (canParallelize(rel, partitionCount, ignoresOrder)) {
+      return create(rel, partitionCount);
+    }
+    // If "rel" passes the order of its input to its output, such as a hash
+    // join whose output is sorted like its left input, its inputs may only
+    // ignore order if its consumer does too
+    final boolean inputIgnoresOrder = ignoresInputOrder(rel)
+        && (ignoresOrder || !isSorted(rel) || rel instanceof EnumerableSort);
+    final List<RelNode> newInputs = new ArrayList<>();
+    boolean changed = false;
+    for (RelNode input : rel.getInputs()) {
+      final RelNode newInput =
+          parallelize(input, partitionCount, inputIgnoresOrder);
+      newInputs.add(newInput);
+      changed |= newInput != input;
+    }
+    return changed ? rel.copy(rel.getTraitSet(), newInputs) : rel;
+  }
+
+  private static boolean canParallelize(RelNode rel, int partitionCount,
+      boolean ignoresOrder) {
+    if (rel instanceof EnumerableTableScan) {
+      // A scan on its own does too little work to be worth partitioning
+      return false;
+    }
+    final EnumerableTableScan scan = partitionedScan(rel);
+    if (scan == null) {
+      return false;
+    }
+    if (!ignoresOrder && isSorted(rel)) {
+      // The rows of an exchange arrive in no particular order, so we cannot
+      // put one under a consumer that may rely on the sort order of its input
+      return false;
+    }
+    final RelMetadataQuery mq = rel.getCluster().getMetadataQuery();
+    final Double rowCount = mq.getRowCount(scan);
+    if (rowCount == null
+        || rowCount < (double) partitionCount * MIN_PARTITION_ROW_COUNT) {
+      return false;
+    }
+    // Every partition reads the other inputs in full. Don't partition if
+    // that repeated work would exceed the work that is divided.
+    double broadcastRowCount = 0d;
+    for (RelNode r = rel; r != scan;) {
+      final RelNode input = drivingInput(r);
+      for (RelNode otherInput : r.getInputs()) {
+        if (otherInput != input) {
+          final Double otherRowCount = mq.getRowCount(otherInput);
+          if (otherRowCount == null) {
+            return false;
+          }
+          broadcastRowCount += otherRowCount;
+        }
+      }
+      r = input;
+    }
+    return broadcastRowCount * partitionCount <= rowCount;
+  }
+
+  /** Returns whether a relational expression declares that its output is
+   * sorted. */
+  private static boolean isSorted(RelNode rel) {
+    final List<RelCollation> collations =
+        rel.getTraitSet().getTraits(RelCollationTraitDef.INSTANCE);
+    if (collations != null) {
+      for (RelCollation collation : collations) {
+        if (!collation.getFieldCollations().isEmpty()) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /** Returns whether a relational expression produces the same result
+   * regardless of the order of the rows of its inputs. */
+  private static boolean ignoresInputOrder(RelNode rel) {
+    return rel instanceof EnumerableAggregate
+        || rel instanceof EnumerableHashJoin
+        || rel instanceof EnumerableNestedLoopJoin
+        || rel instanceof EnumerableSort
+        || rel instanceof EnumerableUnion
+        || rel instanceof EnumerableIntersect
+        || rel instanceof EnumerableMinus;
+  }
+}
@@ -23,6 +23,7 @@
 import org.apache.calcite.plan.RelOptCost;
 import org.apache.calcite.plan.RelOptPlanner;
 import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.RelCollation;
 import org.apache.calcite.rel.RelCollationTraitDef;
 import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.RelNodes;
@@ -41,6 +42,7 @@
 import com.google.common.collect.ImmutableList;
 
 import java.lang.reflect.Method;
+import java.util.List;
 import java.util.Set;
 
 /** Implementation of {@link org.apache.calcite.rel.core.Join} in
@@ -224,6 +226,64 @@ private Result implementHashJoin(EnumerableRelImplementor implementor, Prefer pr
             left, right, leftResult.physType, rightResult.physType, nonEquiCondition);
       }
     }
+    if (implementor.isSpillEnabled()) {
+      // If the join is sorted (because its left input is sorted), ask the
+      // spilling join to restore the order of the left input.
+      final List<RelCollation> collations =
+          traitSet.getTraits(RelCollationTraitDef.INSTANCE);
+      final boolean preserveOrder = collations != null
+          && collations.stream()
+              .anyMatch(c -> !c.getFieldCollations().isEmpty());
+      return implementor.result(
+          physType,
+          builder.append(
+              Expressions.call(
+                  BuiltInMethod.SPILLING_HASH_JOIN.method,
+                  implementor.getRootExpression(),
+                  leftExpression,
+                  rightExpression,
+                  leftResult.physType.generateAccessor(joinInfo.leftKeys),
+                  rightResult.physType.generateAccessor(joinInfo.rightKeys),
+                  EnumUtils.joinSelector(joinType,
+                      physType,
+                      ImmutableList.of(
+                          leftResult.physType, rightResult.physType)),
+                  Util.first(keyPhysType.comparer(),
+                      Expressions.constant(null)),
+                  Expressions.constant(joinType.generatesNullsOnLeft()),
+                  Expressions.constant(joinType.generatesNullsOnRight()),
+                  predicate,
+                  Expressions.constant(preserveOrder)))
+              .toBlock());
+    }
+    final List<Class> keyClasses =
+        EnumUtils.fieldClasses(leftResult.physType, joinInfo.leftKeys);
+    if (keyPhysType.comparer() == null
+        && EnumUtils.isLongKey(keyClasses)
+        && keyClasses.equals(
+            EnumUtils.fieldClasses(rightResult.physType,
+                joinInfo.rightKeys))) {
+      // Keys are primitive and fit into a long; avoid boxing them.
+      return implementor.result(
+          physType,
+          builder.append(
+              Expressions.call(
+                  BuiltInMethod.LONG_KEYED_HASH_JOIN.method,
+                  leftExpression,
+                  rightExpression,
+                  EnumUtils.generateLongKeySelector(leftResult.physType,
+                      joinInfo.leftKeys),
+                  EnumUtils.generateLongKeySelector(rightResult.physType,
+                      joinInfo.rightKeys),
+                  EnumUtils.joinSelector(joinType,
+                      physType,
+                      ImmutableList.of(
+                          leftResult.physType, rightResult.physType)),
+                  Expressions.constant(joinType.generatesNullsOnLeft()),
+                  Expressions.constant(joinType.generatesNullsOnRight()),
+                  predicate))
+              .toBlock());
+    }
     return implementor.result(
         physType,
         builder.append(
@@ -0,0 +1,202 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable;
+
+import org.apache.calcite.linq4j.tree.BlockBuilder;
+import org.apache.calcite.linq4j.tree.DeclarationStatement;
+import org.apache.calcite.linq4j.tree.Expression;
+import org.apache.calcite.linq4j.tree.Expressions;
+import org.apache.calcite.linq4j.tree.ParameterExpression;
+import org.apache.calcite.linq4j.tree.Primitive;
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelOptCost;
+import org.apache.calcite.plan.RelOptPlanner;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.RelWriter;
+import org.apache.calcite.rel.core.CorrelationId;
+import org.apache.calcite.rel.core.Join;
+import org.apache.calcite.rel.core.JoinRelType;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.util.BuiltInMethod;
+
+import com.google.common.collect.ImmutableList;
+
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Set;
+
+/** Implementation of {@link org.apache.calcite.rel.core.Join} in
+ * {@link EnumerableConvention enumerable calling convention} that reads its
+ * left input, then pushes the keys of the left rows into its right input as a
+ * filter.
+ *
+ * <p>The right input is a filter on the first join key that references the
+ * correlation variables in {@link #variablesSet}: the key must equal the
+ * key of one of the first {@code inListSize} variables, or be between the
+ * keys of the last two. At run time, the variables are bound to rows of the
+ * left input (see
+ * {@link org.apache.calcite.linq4j.EnumerableDefaults#keyPushDownJoin}), so
+ * that the right input returns only rows that may match the left input. If
+ * the right input is in an adapter that can push that filter into its
+ * source (such as the JDBC adapter), only those rows are transferred.
+ *
+ * <p>This is useful when the left input is small and the right input is
+ * large and remote, such as a dimension table joined to a fact table that
+ * lives in another system.
+ *
+ * @see EnumerableKeyPushDownJoinRule */
+public class EnumerableKeyPushDownJoin extends Join implements EnumerableRel {
+  /** Maximum number of distinct keys that are pushed as a list; if the left
+   * input has more, the range of keys is pushed. */
+  public final int inListSize;
+
+  protected EnumerableKeyPushDownJoin(RelOptCluster cluster,
+      RelTraitSet traits, RelNode left, RelNode right, RexNode condition,
+      Set<CorrelationId> variablesSet, JoinRelType joinType, int inListSize) {
+    super(cluster, traits, ImmutableList.of(), left, right, condition,
+        variablesSet, joinType);
+    this.inListSize = inListSize;
+    assert joinType == JoinRelType.INNER || joinType == JoinRelType.SEMI
+        : joinType;
+    assert variablesSet.size() == inListSize + 2;
+  }
+
+  /** Creates an EnumerableKeyPushDownJoin.
+   *
+   * @param left Left input, which is read first
+   * @param right Right input, a filter on the keys of the left rows
+   * @param condition Join condition
+   * @param variablesSet Correlation variables that the right input uses, in
+   *                     order: {@code inListSize} for the list of keys, then
+   *                     the lower and upper bounds of the range
+   * @param joinType Join type; INNER or SEMI
+   * @param inListSize Maximum number of keys that are pushed as a list
+   */
+  public static EnumerableKeyPushDownJoin create(RelNode left, RelNode right,
+      RexNode condition, Set<CorrelationId> variablesSet, JoinRelType joinType,
+      int inListSize) {
+    final RelOptCluster cluster = left.getCluster();
+    final RelTraitSet traitSet =
+        cluster.traitSetOf(EnumerableConvention.INSTANCE);
+    return new EnumerableKeyPushDownJoin(cluster, traitSet, left, right,
+        condition, variablesSet, joinType, inListSize);
+  }
+
+  @Override public EnumerableKeyPushDownJoin copy(RelTraitSet traitSet,
+      RexNode condition, RelNode left, RelNode right, JoinRelType joinType,
+      boolean semiJoinDone) {
+    return new EnumerableKeyPushDownJoin(getCluster(), traitSet, left, right,
+        condition, variablesSet, joinType, inListSize);
+  }
+
+  @Override public RelOptCost computeSelfCost(RelOptPlanner planner,
+      RelMetadataQuery mq) {
+    final double rowCount = mq.getRowCount(this);
+    final double leftRowCount = left.estimateRowCount(mq);
+    final double rightRowCount = right.estimateRowCount(mq);
+    if (Double.isInfinite(leftRowCount) || Double.isInfinite(rightRowCount)) {
+      return planner.getCostFactory().makeInfiniteCost();
+    }
+    // The right input is evaluated once; its cost, which is reduced by the
+    // filter if the filter is pushed into its source, is counted separately
+    return planner.getCostFactory().makeCost(
+        rowCount + leftRowCount + rightRowCount, 0, 0);
+  }
+
+  @Override public RelWriter explainTerms(RelWriter pw) {
+    return super.explainTerms(pw)
+        .item("inListSize", inListSize);
+  }
+
+  @Override public Result implement(EnumerableRelImplementor implementor,
+      Prefer pref) {
+    final BlockBuilder builder = new BlockBuilder();
+    final Result leftResult =
+        implementor.visitChild(this, 0, (EnumerableRel) left, pref);
+    final Expression leftExpression =
+        builder.append("left", leftResult.block);
+
+    // Declare a correlation variable for each element of the list of left
+    // rows that the right input filters on
+    final BlockBuilder corrBlock = new BlockBuilder();
+    final Type corrVarType = leftResult.physType.getJavaRowType();
+    final ParameterExpression corrArgList =
+        Expressions.parameter(Modifier.FINAL, List.class, "corrList");
+    int c = 0;
+    for (CorrelationId correlationId : variablesSet) {
+      final String name = correlationId.getName();
+      final Expression get =
+          Expressions.call(corrArgList, BuiltInMethod.LIST_GET.method,
+              Expressions.constant(c++));
+      if (!Primitive.is(corrVarType)) {
+        final ParameterExpression corrArg =
+            Expressions.parameter(Modifier.FINAL, corrVarType, name);
+        final DeclarationStatement decl =
+            Expressions.declare(Modifier.FINAL, corrArg,
+                Expressions.convert_(get, corrVarType));
+        corrBlock.add(decl);
+        implementor.registerCorrelVariable(name, corrArg, corrBlock,
+            leftResult.physType);
+      } else {
+        final ParameterExpression corrArg =
+            Expressions.parameter(Modifier.FINAL, Primitive.box(corrVarType),
+                "$box" + name);
+        corrBlock.add(Expressions.declare(Modifier.FINAL, corrArg, get));
+        final ParameterExpression corrRef =
+            (ParameterExpression) corrBlock.append(name,
+                Expressions.unbox(corrArg));
+        implementor.registerCorrelVariable(name, corrRef, corrBlock,
+            leftResult.physType);
+      }
+    }
+    final Result rightResult =
+        implementor.visitChild(this, 1, (EnumerableRel) right, pref);
+    corrBlock.add(rightResult.block);
+    for (CorrelationId correlationId : variablesSet) {
+      implementor.clearCorrelVariable(correlationId.getName());
+    }
+
+    final PhysType physType;
+    final Expression selector;
+    if (joinType == JoinRelType.SEMI) {
+      physType = leftResult.physType;
+      selector = Expressions.constant(null);
+    } else {
+      physType =
+          PhysTypeImpl.of(implementor.getTypeFactory(), getRowType(),
+              pref.prefer(JavaRowFormat.CUSTOM));
+      selector =
+          EnumUtils.joinSelector(joinType, physType,
+              ImmutableList.of(leftResult.physType, rightResult.physType));
+    }
+    builder.append(
+        Expressions.call(BuiltInMethod.KEY_PUSH_DOWN_JOIN.method,
+            Expressions.constant(EnumUtils.toLinq4jJoinType(joinType)),
+            leftExpression,
+            Expressions.lambda(corrBlock.toBlock(), corrArgList),
+            leftResult.physType.generateAccessor(
+                ImmutableList.of(joinInfo.leftKeys.get(0))),
+            leftResult.physType.generateAccessor(joinInfo.leftKeys),
+            rightResult.physType.generateAccessor(joinInfo.rightKeys),
+            selector,
+            Expressions.constant(inListSize)));
+    return implementor.result(physType, builder.toBlock());
+  }
+}
@@ -0,0 +1,219 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable;
+
+import org.apache.calcite.adapter.jdbc.JdbcConvention;
+import org.apache.calcite.plan.Convention;
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelOptRule;
+import org.apache.calcite.plan.RelOptRuleCall;
+import org.apache.calcite.plan.hep.HepRelVertex;
+import org.apache.calcite.plan.volcano.RelSubset;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.Calc;
+import org.apache.calcite.rel.core.CorrelationId;
+import org.apache.calcite.rel.core.Filter;
+import org.apache.calcite.rel.core.Join;
+import org.apache.calcite.rel.core.JoinInfo;
+import org.apache.calcite.rel.core.Project;
+import org.apache.calcite.rel.logical.LogicalJoin;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rex.RexBuilder;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.sql.fun.SqlStdOperatorTable;
+import org.apache.calcite.sql.type.SqlTypeName;
+import org.apache.calcite.tools.RelBuilder;
+import org.apache.calcite.tools.RelBuilderFactory;
+
+import com.google.common.collect.ImmutableSet;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/** Planner rule that converts a
+ * {@link org.apache.calcite.rel.logical.LogicalJoin} into an
+ * {@link EnumerableKeyPushDownJoin}.
+ *
+ * <p>The rule applies to INNER and SEMI equi-joins whose first key is numeric,
+ * DATE, TIME or TIMESTAMP. (Keys of other types are not pushed down, because
+ * the source of the right input might order them differently, and pushing a
+ * range of keys would lose rows.) It pushes a filter with
+ * {@code inListSize + 2} correlation variables into the right input; the
+ * planner may then push that filter into an adapter.
+ *
+ * <p>The rule only applies if the right input, looking through projects and
+ * filters, contains a relational expression whose convention can push the
+ * filter into its source (see {@link #isPushable(Convention)}), such as a
+ * scan of a JDBC table. Otherwise the filter would be evaluated in Java on
+ * every row of the right input, which costs more than the join saves.
+ *
+ * <p>The rule is not in the default rule set; add it to the planner to use
+ * it. */
+public class EnumerableKeyPushDownJoinRule extends RelOptRule {
+  private static final int DEFAULT_IN_LIST_SIZE = 100;
+
+  private final int inListSize;
+
+  /** Creates an EnumerableKeyPushDownJoinRule. */
+  protected EnumerableKeyPushDownJoinRule(Class<? extends Join> clazz,
+      RelBuilderFactory relBuilderFactory, int inListSize) {
+    super(operand(clazz, any()),
+        relBuilderFactory, "EnumerableKeyPushDownJoinRule");
+    this.inListSize = inListSize;
+  }
+
+  /** Creates an EnumerableKeyPushDownJoinRule that pushes up to 100 keys as
+   * a list. */
+  public EnumerableKeyPushDownJoinRule(RelBuilderFactory relBuilderFactory) {
+    this(LogicalJoin.class, relBuilderFactory, DEFAULT_IN_LIST_SIZE);
+  }
+
+  /** Creates an EnumerableKeyPushDownJoinRule that pushes up to a given
+   * number of keys as a list. Each key in the list is a parameter of the
+   * generated code and of the query that the adapter sends to its source, so
+   * there can be an error if the list is much longer than 1000. */
+  public EnumerableKeyPushDownJoinRule(RelBuilderFactory relBuilderFactory,
+      int inListSize) {
+    this(LogicalJoin.class, relBuilderFactory, inListSize);
+  }
+
+  @Override public boolean matches(RelOptRuleCall call) {
+    final Join join = call.rel(0);
+    switch (join.getJoinType()) {
+    case INNER:
+    case SEMI:
+      break;
+    default:
+      return false;
+    }
+    final JoinInfo joinInfo = join.analyzeCondition();
+    if (!joinInfo.isEqui() || joinInfo.leftKeys.isEmpty()) {
+      return false;
+    }
+    for (int i = 0; i < joinInfo.leftKeys.size(); i++) {
+      final SqlTypeName leftTypeName =
+          keyType(join.getLeft(), joinInfo.leftKeys.get(i)).getSqlTypeName();
+      final SqlTypeName rightTypeName =
+          keyType(join.getRight(), joinInfo.rightKeys.get(i)).getSqlTypeName();
+      if (leftTypeName != rightTypeName) {
+        return false;
+      }
+    }
+    final SqlTypeName typeName =
+        keyType(join.getLeft(), joinInfo.leftKeys.get(0)).getSqlTypeName();
+    return (SqlTypeName.NUMERIC_TYPES.contains(typeName)
+        || SqlTypeName.DATETIME_TYPES.contains(typeName))
+        && reachesPushable(join.getRight(), new HashSet<>());
+  }
+
+  /** Returns whether a filter on top of {@code rel} can be pushed, through
+   * projects and filters, to a relational expression whose convention is
+   * {@link #isPushable(Convention) pushable}. */
+  private boolean reachesPushable(RelNode rel, Set<RelNode> visited) {
+    if (!visited.add(rel)) {
+      return false;
+    }
+    if (rel instanceof RelSubset) {
+      for (RelNode r : ((RelSubset) rel).getRelList()) {
+        if (reachesPushable(r, visited)) {
+          return true;
+        }
+      }
+      return false;
+    }
+    if (rel instanceof HepRelVertex) {
+      return reachesPushable(((HepRelVertex) rel).getCurrentRel(), visited);
+    }
+    if (isPushable(rel.getConvention())) {
+      return true;
+    }
+    if (rel instanceof Project
+        || rel instanceof Filter
+        || rel instanceof Calc) {
+      return reachesPushable(rel.getInput(0), visited);
+    }
+    return false;
+  }
+
+  /** Returns whether relational expressions of a given convention may push
+   * the filter into their source.
+   *
+   * <p>The default implementation returns true only for
+   * {@link JdbcConvention JDBC conventions}. Other conventions, including
+   * those that evaluate relational expressions in Java (such as enumerable,
+   * bindable and batch), would evaluate the filter on every row; override
+   * this method to allow the conventions of other adapters that push
+   * filters into their source. */
+  protected boolean isPushable(Convention convention) {
+    return convention instanceof JdbcConvention;
+  }
+
+  private static RelDataType keyType(RelNode input, int key) {
+    return input.getRowType().getFieldList().get(key).getType();
+  }
+
+  @Override public void onMatch(RelOptRuleCall call) {
+    final Join join = call.rel(0);
+    final JoinInfo joinInfo = join.analyzeCondition();
+    final RelOptCluster cluster = join.getCluster();
+    final RexBuilder rexBuilder = cluster.getRexBuilder();
+    final RelBuilder relBuilder = call.builder();
+    final RelDataType leftRowType = join.getLeft().getRowType();
+    final int leftKey = joinInfo.leftKeys.get(0);
+
+    final ImmutableSet.Builder<CorrelationId> correlationIds =
+        ImmutableSet.builder();
+    final List<RexNode> keys = new ArrayList<>();
+    for (int i = 0; i < inListSize + 2; i++) {
+      final CorrelationId correlationId = cluster.createCorrel();
+      correlationIds.add(correlationId);
+      keys.add(
+          rexBuilder.makeFieldAccess(
+              rexBuilder.makeCorrel(leftRowType, correlationId), leftKey));
+    }
+
+    // Push a filter "key = $cor0.k OR ... OR key = $corN.k
+    // OR key BETWEEN $corN+1.k AND $corN+2.k" into the right input
+    relBuilder.push(join.getRight());
+    final RexNode rightKey = relBuilder.field(joinInfo.rightKeys.get(0));
+    final List<RexNode> disjunctions = new ArrayList<>();
+    for (RexNode key : keys.subList(0, inListSize)) {
+      disjunctions.add(relBuilder.equals(rightKey, key));
+    }
+    disjunctions.add(
+        relBuilder.and(
+            relBuilder.call(SqlStdOperatorTable.GREATER_THAN_OR_EQUAL,
+                rightKey, keys.get(inListSize)),
+            relBuilder.call(SqlStdOperatorTable.LESS_THAN_OR_EQUAL,
+                rightKey, keys.get(inListSize + 1))));
+    final RelNode right = relBuilder.filter(relBuilder.or(disjunctions))
+        .build();
+
+    call.transformTo(
+        EnumerableKeyPushDownJoin.create(
+            convert(join.getLeft(), join.getLeft().getTraitSet()
+                .replace(EnumerableConvention.INSTANCE)),
+            convert(right, right.getTraitSet()
+                .replace(EnumerableConvention.INSTANCE)),
+            join.getCondition(),
+            correlationIds.build(),
+            join.getJoinType(),
+            inListSize));
+  }
+}
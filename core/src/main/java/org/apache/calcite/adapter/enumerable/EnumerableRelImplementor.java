@@ -30,6 +30,7 @@
 import org.apache.calcite.linq4j.tree.ExpressionType;
 import org.apache.calcite.linq4j.tree.Expressions;
 import org.apache.calcite.linq4j.tree.FunctionExpression;
+import org.apache.calcite.linq4j.tree.GotoExpressionKind;
 import org.apache.calcite.linq4j.tree.GotoStatement;
 import org.apache.calcite.linq4j.tree.MemberDeclaration;
 import org.apache.calcite.linq4j.tree.MethodCallExpression;
@@ -42,12 +43,14 @@
 import org.apache.calcite.linq4j.tree.UnaryExpression;
 import org.apache.calcite.linq4j.tree.VisitorImpl;
 import org.apache.calcite.plan.RelOptUtil;
+import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rex.RexBuilder;
 import org.apache.calcite.runtime.Bindable;
 import org.apache.calcite.sql.SqlExplainLevel;
 import org.apache.calcite.sql.validate.SqlConformance;
 import org.apache.calcite.sql.validate.SqlConformanceEnum;
 import org.apache.calcite.util.BuiltInMethod;
+import org.apache.calcite.util.Pair;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Collections2;
@@ -80,6 +83,8 @@ public class EnumerableRelImplementor extends JavaRelImplementor {
       new HashMap<>();
   private final Map<Object, ParameterExpression> stashedParameters =
       new IdentityHashMap<>();
+  private final Map<RelNode, Pair<Expression, Integer>> partitions =
+      new IdentityHashMap<>();
 
   protected final Function1<String, RexToLixTranslator.InputGetter> allCorrelateVariables =
       this::getCorrelVariableGetter;
@@ -98,14 +103,14 @@ public EnumerableRel.Result visitChild(
     if (parent != null) {
       assert child == parent.getInputs().get(ordinal);
     }
-    return child.implement(this, prefer);
+    return instrument(child, child.implement(this, prefer));
   }
 
   public ClassDeclaration implementRoot(EnumerableRel rootRel,
       EnumerableRel.Prefer prefer) {
     EnumerableRel.Result result;
     try {
-      result = rootRel.implement(this, prefer);
+      result = instrument(rootRel, rootRel.implement(this, prefer));
     } catch (RuntimeException e) {
       IllegalStateException ex = new IllegalStateException("Unable to implement "
           + RelOptUtil.toString(rootRel, SqlExplainLevel.ALL_ATTRIBUTES));
@@ -467,6 +472,29 @@ public RexToLixTranslator.InputGetter getCorrelVariableGetter(String name) {
     return corrVars.get(name);
   }
 
+  /** Registers a scan that, rather than reading the whole table, reads one
+   * of {@code partitionCount} partitions, the ordinal of which is the value
+   * of {@code partition} at run time.
+   *
+   * @see EnumerableExchange */
+  public void registerPartition(RelNode scan, Expression partition,
+      int partitionCount) {
+    partitions.put(scan, Pair.of(partition, partitionCount));
+  }
+
+  public void clearPartition(RelNode scan) {
+    assert partitions.containsKey(scan) : "Partition of " + scan
+        + " should be defined";
+    partitions.remove(scan);
+  }
+
+  /** Returns the expression for the ordinal of the partition that a scan
+   * should read, and the number of partitions; or null if the scan should
+   * read the whole table. */
+  public Pair<Expression, Integer> getPartition(RelNode scan) {
+    return partitions.get(scan);
+  }
+
   public EnumerableRel.Result result(PhysType physType, BlockStatement block) {
     return new EnumerableRel.Result(
         block, physType, ((PhysTypeImpl) physType).format);
@@ -477,6 +505,48 @@ public SqlConformance getConformance() {
         SqlConformanceEnum.DEFAULT);
   }
 
+  /** Returns whether sort, aggregate and hash join operators should generate
+   * calls to {@link org.apache.calcite.runtime.SpillingEnumerables}, which
+   * write rows to disk if the query exceeds its
+   * {@link org.apache.calcite.runtime.SpillBudget}. */
+  public boolean isSpillEnabled() {
+    return map.get("_spill") == Boolean.TRUE;
+  }
+
+  /** Returns whether the generated code should gather
+   * {@link org.apache.calcite.runtime.ExecutionStatistics}, because the
+   * statement is {@code EXPLAIN ANALYZE PLAN}. */
+  public boolean isInstrumented() {
+    return map.get("_instrument") == Boolean.TRUE;
+  }
+
+  /** If the generated code gathers statistics, changes the code of a
+   * relational expression so that it wraps the enumerable it returns in a
+   * call to {@link org.apache.calcite.runtime.ExecutionStatistics#instrument};
+   * otherwise returns the code unchanged. */
+  private EnumerableRel.Result instrument(EnumerableRel rel,
+      EnumerableRel.Result result) {
+    if (!isInstrumented() || result.block.statements.isEmpty()) {
+      return result;
+    }
+    final List<Statement> statements =
+        new ArrayList<>(result.block.statements);
+    final Statement last = statements.get(statements.size() - 1);
+    if (!(last instanceof GotoStatement)
+        || ((GotoStatement) last).kind != GotoExpressionKind.Return
+        || ((GotoStatement) last).expression == null) {
+      return result;
+    }
+    statements.set(statements.size() - 1,
+        Expressions.return_(null,
+            Expressions.call(BuiltInMethod.INSTRUMENT.method,
+                getRootExpression(),
+                Expressions.constant(rel.getId()),
+                ((GotoStatement) last).expression)));
+    return new EnumerableRel.Result(Expressions.block(statements),
+        result.physType, result.format);
+  }
+
   /** Visitor that finds types in an {@link Expression} tree. */
   @VisibleForTesting
   static class TypeFinder extends VisitorImpl<Void> {
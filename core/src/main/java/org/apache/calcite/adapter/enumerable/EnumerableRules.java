@@ -50,6 +50,9 @@ private EnumerableRules() {
   public static final RelOptRule ENUMERABLE_BATCH_NESTED_LOOP_JOIN_RULE =
       new EnumerableBatchNestedLoopJoinRule(RelFactories.LOGICAL_BUILDER);
 
+  public static final RelOptRule ENUMERABLE_KEY_PUSH_DOWN_JOIN_RULE =
+      new EnumerableKeyPushDownJoinRule(RelFactories.LOGICAL_BUILDER);
+
   public static final EnumerableProjectRule ENUMERABLE_PROJECT_RULE =
       new EnumerableProjectRule();
 
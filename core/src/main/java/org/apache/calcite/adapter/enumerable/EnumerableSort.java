@@ -27,6 +27,7 @@
 import org.apache.calcite.rex.RexNode;
 import org.apache.calcite.util.BuiltInMethod;
 import org.apache.calcite.util.Pair;
+import org.apache.calcite.util.Util;
 
 /** Implementation of {@link org.apache.calcite.rel.core.Sort} in
  * {@link org.apache.calcite.adapter.enumerable.EnumerableConvention enumerable calling convention}. */
@@ -81,6 +82,18 @@ public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
         inputPhysType.generateCollationKey(
             collation.getFieldCollations());
 
+    if (implementor.isSpillEnabled()) {
+      builder.add(
+          Expressions.return_(null,
+              Expressions.call(BuiltInMethod.SPILLING_ORDER_BY.method,
+                  implementor.getRootExpression(),
+                  childExp,
+                  builder.append("keySelector", pair.left),
+                  Util.first(
+                      builder.appendIfNotNull("comparator", pair.right),
+                      Expressions.constant(null)))));
+      return implementor.result(physType, builder.toBlock());
+    }
     builder.add(
         Expressions.return_(null,
             Expressions.call(childExp,
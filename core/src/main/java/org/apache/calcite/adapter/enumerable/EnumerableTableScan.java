@@ -16,6 +16,7 @@
  */
 package org.apache.calcite.adapter.enumerable;
 
+import org.apache.calcite.DataContext;
 import org.apache.calcite.adapter.java.JavaTypeFactory;
 import org.apache.calcite.config.CalciteSystemProperty;
 import org.apache.calcite.interpreter.Row;
@@ -39,6 +40,7 @@
 import org.apache.calcite.rel.type.RelDataType;
 import org.apache.calcite.rel.type.RelDataTypeField;
 import org.apache.calcite.schema.FilterableTable;
+import org.apache.calcite.schema.PartitionableTable;
 import org.apache.calcite.schema.ProjectableFilterableTable;
 import org.apache.calcite.schema.QueryableTable;
 import org.apache.calcite.schema.ScannableTable;
@@ -47,6 +49,7 @@
 import org.apache.calcite.schema.TransientTable;
 import org.apache.calcite.sql.SqlExplainLevel;
 import org.apache.calcite.util.BuiltInMethod;
+import org.apache.calcite.util.Pair;
 
 import com.google.common.collect.ImmutableList;
 
@@ -181,6 +184,25 @@ private Expression getExpression(PhysType physType) {
     return toRows(physType, expression2);
   }
 
+  /** Returns an expression that reads one partition of a
+   * {@link PartitionableTable}. */
+  private Expression getPartitionExpression(
+      EnumerableRelImplementor implementor, PhysType physType,
+      Expression partition, int partitionCount) {
+    final PartitionableTable partitionableTable =
+        table.unwrap(PartitionableTable.class);
+    assert partitionableTable != null && elementType == Object[].class
+        : "EnumerableTableScan can't partition " + table;
+    final Expression expression =
+        Expressions.call(
+            implementor.stash(partitionableTable, PartitionableTable.class),
+            BuiltInMethod.PARTITIONABLE_TABLE_SCAN.method,
+            DataContext.ROOT,
+            partition,
+            Expressions.constant(partitionCount));
+    return toRows(physType, expression);
+  }
+
   private Expression toEnumerable(Expression expression) {
     final Type type = expression.getType();
     if (Types.isArray(type)) {
@@ -306,7 +328,12 @@ public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
             implementor.getTypeFactory(),
             getRowType(),
             format());
-    final Expression expression = getExpression(physType);
+    final Pair<Expression, Integer> partition =
+        implementor.getPartition(this);
+    final Expression expression = partition == null
+        ? getExpression(physType)
+        : getPartitionExpression(implementor, physType, partition.left,
+            partition.right);
     return implementor.result(physType, Blocks.toBlock(expression));
   }
 }
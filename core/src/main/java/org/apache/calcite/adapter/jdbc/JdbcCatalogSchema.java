@@ -32,6 +32,7 @@
 import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableMap;
 
+import java.io.File;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -50,12 +51,22 @@
  * the first call to {@link #getSubSchemaMap()}. Then it creates a
  * {@link JdbcSchema} for each schema name. Each JdbcSchema will populate its
  * tables on demand.
+ *
+ * <p>If created using {@link #withMetadataCache}, each JdbcSchema reads the
+ * definitions of its tables through a {@link JdbcMetadataCache}, which is
+ * shared with other catalog schemas on the same data source.
  */
 public class JdbcCatalogSchema extends AbstractSchema {
   final DataSource dataSource;
   public final SqlDialect dialect;
   final JdbcConvention convention;
   final String catalog;
+  /** Time-to-live of entries in the metadata cache of each sub-schema, in
+   * milliseconds, or 0 if sub-schemas do not use a metadata cache. */
+  final long metadataCacheTtl;
+  /** Directory that holds a metadata cache file for each sub-schema, or
+   * null. */
+  final File metadataCacheDirectory;
 
   /** Sub-schemas by name, lazily initialized. */
   final Supplier<SubSchemaMap> subSchemaMapSupplier =
@@ -64,10 +75,18 @@ public class JdbcCatalogSchema extends AbstractSchema {
   /** Creates a JdbcCatalogSchema. */
   public JdbcCatalogSchema(DataSource dataSource, SqlDialect dialect,
       JdbcConvention convention, String catalog) {
+    this(dataSource, dialect, convention, catalog, 0, null);
+  }
+
+  private JdbcCatalogSchema(DataSource dataSource, SqlDialect dialect,
+      JdbcConvention convention, String catalog, long metadataCacheTtl,
+      File metadataCacheDirectory) {
     this.dataSource = Objects.requireNonNull(dataSource);
     this.dialect = Objects.requireNonNull(dialect);
     this.convention = Objects.requireNonNull(convention);
     this.catalog = catalog;
+    this.metadataCacheTtl = metadataCacheTtl;
+    this.metadataCacheDirectory = metadataCacheDirectory;
   }
 
   public static JdbcCatalogSchema create(
@@ -98,6 +117,22 @@ public static JdbcCatalogSchema create(
     return new JdbcCatalogSchema(dataSource, dialect, convention, catalog);
   }
 
+  /**
+   * Returns a copy of this schema whose sub-schemas read the definitions of
+   * tables and columns through a {@link JdbcMetadataCache}.
+   *
+   * @param ttl Number of milliseconds after which a cache entry expires, or
+   *            a negative value if entries never expire
+   * @param directory Directory in which to persist the cache of each
+   *                  sub-schema, in a file called "<i>schema</i>.json", or
+   *                  null
+   * @return A JdbcCatalogSchema
+   */
+  public JdbcCatalogSchema withMetadataCache(long ttl, File directory) {
+    return new JdbcCatalogSchema(dataSource, dialect, convention, catalog, ttl,
+        directory);
+  }
+
   private SubSchemaMap computeSubSchemaMap() {
     final ImmutableMap.Builder<String, Schema> builder =
         ImmutableMap.builder();
@@ -108,8 +143,17 @@ private SubSchemaMap computeSubSchemaMap() {
       defaultSchemaName = connection.getSchema();
       while (resultSet.next()) {
         final String schemaName = resultSet.getString(1);
-        builder.put(schemaName,
-            new JdbcSchema(dataSource, dialect, convention, catalog, schemaName));
+        JdbcSchema schema =
+            new JdbcSchema(dataSource, dialect, convention, catalog, schemaName);
+        if (metadataCacheTtl != 0) {
+          schema = schema.withMetadataCache(
+              JdbcMetadataCache.of(dataSource, catalog, schemaName,
+                  metadataCacheTtl,
+                  metadataCacheDirectory == null
+                      ? null
+                      : new File(metadataCacheDirectory, schemaName + ".json")));
+        }
+        builder.put(schemaName, schema);
       }
     } catch (SQLException e) {
       throw new RuntimeException(e);
@@ -50,11 +50,43 @@ public class JdbcConvention extends Convention.Impl {
   public final SqlDialect dialect;
   public final Expression expression;
 
+  /** Number of rows to fetch in each round trip to the database, or 0 to
+   * use the driver's default. If {@link #streaming} and no fetch size is
+   * specified, the dialect's {@link SqlDialect#getStreamingFetchSize()}. */
+  public final int fetchSize;
+
+  /** Whether to read rows incrementally, rather than allowing the driver to
+   * read the whole result into memory when the query is executed. */
+  public final boolean streaming;
+
+  /** Whether to send literals in comparisons to the database as parameters
+   * of a prepared statement, so that queries that differ only in those
+   * values have the same SQL text. */
+  public final boolean parameterize;
+
   public JdbcConvention(SqlDialect dialect, Expression expression,
       String name) {
+    this(dialect, expression, name, 0, false);
+  }
+
+  /** Creates a JdbcConvention with a fetch size and streaming mode. */
+  public JdbcConvention(SqlDialect dialect, Expression expression,
+      String name, int fetchSize, boolean streaming) {
+    this(dialect, expression, name, fetchSize, streaming, false);
+  }
+
+  /** Creates a JdbcConvention with a fetch size, streaming mode, and
+   * whether to parameterize literals. */
+  public JdbcConvention(SqlDialect dialect, Expression expression,
+      String name, int fetchSize, boolean streaming, boolean parameterize) {
     super("JDBC." + name, JdbcRel.class);
     this.dialect = dialect;
     this.expression = expression;
+    this.fetchSize = streaming && fetchSize == 0
+        ? dialect.getStreamingFetchSize()
+        : fetchSize;
+    this.streaming = streaming;
+    this.parameterize = parameterize;
   }
 
   public static JdbcConvention of(SqlDialect dialect, Expression expression,
@@ -62,6 +94,18 @@ public static JdbcConvention of(SqlDialect dialect, Expression expression,
     return new JdbcConvention(dialect, expression, name);
   }
 
+  public static JdbcConvention of(SqlDialect dialect, Expression expression,
+      String name, int fetchSize, boolean streaming) {
+    return new JdbcConvention(dialect, expression, name, fetchSize,
+        streaming);
+  }
+
+  public static JdbcConvention of(SqlDialect dialect, Expression expression,
+      String name, int fetchSize, boolean streaming, boolean parameterize) {
+    return new JdbcConvention(dialect, expression, name, fetchSize,
+        streaming, parameterize);
+  }
+
   @Override public void register(RelOptPlanner planner) {
     for (RelOptRule rule : JdbcRules.rules(this)) {
       planner.addRule(rule);
@@ -0,0 +1,475 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.jdbc;
+
+import org.apache.calcite.avatica.MetaImpl;
+import org.apache.calcite.util.ImmutableNullableList;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.sql.DataSource;
+
+/**
+ * Cache of the definitions of the tables and columns in a schema of a JDBC
+ * data source.
+ *
+ * <p>Reading the metadata of a database that has thousands of tables is
+ * slow, and without a cache, every connection to Calcite that uses a
+ * {@link JdbcSchema} repeats it. A cache is shared by all
+ * {@link JdbcSchema} instances that read the same schema of the same data
+ * source (see {@link #of}), and therefore by all connections that use the
+ * same model.
+ *
+ * <p>Each entry expires a given time after it was read from the database.
+ * The cache remembers the definition of each table and the columns of each
+ * table separately, so that a schema can resolve a table without reading the
+ * list of all tables, and the columns of a table only when a query uses it.
+ *
+ * <p>If the cache has a file, it writes its contents to the file after it
+ * reads metadata from the database, and a cache that is created later, say
+ * in another JVM, starts with the contents of the file. Entries in the file
+ * expire at the same time as they would have in the cache that wrote them.
+ * Writes happen in a background thread, outside the lock that guards the
+ * cache, and changes made while a write is in progress are combined into the
+ * next write; call {@link #flush()} to write immediately.
+ *
+ * <p>Reads from the database also happen outside the lock, so that a
+ * connection that is re-reading an expired list of tables does not hold up
+ * connections whose tables are in the cache. If several threads read the
+ * same metadata at the same time, the first to finish stores its result and
+ * the others use it.
+ */
+public class JdbcMetadataCache {
+  private static final Logger LOGGER =
+      LoggerFactory.getLogger(JdbcMetadataCache.class);
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  /** Caches, keyed by data source, catalog, schema, time-to-live and file.
+   * A cache is removed if no {@link JdbcSchema} is using it and memory runs
+   * low. */
+  private static final Cache<List<Object>, JdbcMetadataCache> INSTANCES =
+      CacheBuilder.newBuilder().softValues().build();
+
+  /** Writes caches to their files. A single daemon thread, so that writes
+   * to the same file happen in order and do not prevent the JVM from
+   * exiting. */
+  private static final ExecutorService WRITER =
+      Executors.newSingleThreadExecutor(
+          new ThreadFactoryBuilder()
+              .setNameFormat("calcite-jdbc-metadata-cache-%d")
+              .setDaemon(true)
+              .build());
+
+  final String catalog;
+  final String schema;
+  /** Number of milliseconds after which an entry expires; negative if
+   * entries never expire. */
+  final long ttl;
+  /** File that holds the contents of this cache, or null. */
+  final File file;
+
+  /** Time at which the list of all tables was read, or 0 if it has not been
+   * read. While the list is current, {@link #tables} has an entry for every
+   * table in the schema. */
+  private long tablesLoaded;
+  private final Map<String, TableEntry> tables = new LinkedHashMap<>();
+  /** Whether the contents have changed since they were last written to
+   * {@link #file}. */
+  private boolean dirty;
+  /** Whether a call to {@link #flush()} has been submitted to
+   * {@link #WRITER} but has not started. */
+  private boolean flushPending;
+  /** Held while writing {@link #file}; acquired before the lock on this
+   * cache, never after. */
+  private final Object fileLock = new Object();
+
+  private JdbcMetadataCache(String catalog, String schema, long ttl,
+      File file) {
+    this.catalog = catalog;
+    this.schema = schema;
+    this.ttl = ttl;
+    this.file = file;
+    if (ttl == 0) {
+      throw new IllegalArgumentException("time-to-live must not be 0");
+    }
+    if (file != null && file.exists()) {
+      read();
+    }
+  }
+
+  /** Returns the cache for a schema of a data source, creating it if
+   * necessary.
+   *
+   * @param dataSource Data source
+   * @param catalog Catalog name, or null
+   * @param schema Schema name pattern, or null
+   * @param ttl Number of milliseconds after which an entry expires, or a
+   *            negative value if entries never expire
+   * @param file File in which to persist the cache, or null
+   */
+  public static JdbcMetadataCache of(DataSource dataSource, String catalog,
+      String schema, long ttl, File file) {
+    final List<Object> key =
+        ImmutableNullableList.of(Objects.requireNonNull(dataSource), catalog,
+            schema, ttl, file == null ? null : file.getAbsoluteFile());
+    try {
+      return INSTANCES.get(key,
+          () -> new JdbcMetadataCache(catalog, schema, ttl, file));
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      throw new RuntimeException("Error while creating metadata cache",
+          e.getCause());
+    }
+  }
+
+  @Override public String toString() {
+    return "JdbcMetadataCache(catalog=" + catalog
+        + ", schema=" + schema
+        + ", ttl=" + ttl
+        + (file == null ? "" : ", file=" + file)
+        + ")";
+  }
+
+  /** Removes all entries, so that the next request reads from the
+   * database. */
+  public synchronized void clear() {
+    tablesLoaded = 0;
+    tables.clear();
+    modified();
+  }
+
+  /** Returns whether an entry read at a given time is still current. */
+  private boolean isCurrent(long loaded) {
+    return loaded > 0
+        && (ttl < 0 || System.currentTimeMillis() - loaded < ttl);
+  }
+
+  /** Returns the names of all tables, reading them using {@code loader} if
+   * the list is absent or has expired. */
+  Set<String> tableNames(
+      Loader<? extends Iterable<MetaImpl.MetaTable>> loader)
+      throws SQLException {
+    synchronized (this) {
+      if (isCurrent(tablesLoaded)) {
+        return tableNames();
+      }
+    }
+    final Iterable<MetaImpl.MetaTable> tableDefs = loader.load();
+    synchronized (this) {
+      if (isCurrent(tablesLoaded)) {
+        // Another thread read the list while we were reading it.
+        return tableNames();
+      }
+      final long now = System.currentTimeMillis();
+      final Map<String, TableEntry> previous = new LinkedHashMap<>(tables);
+      tables.clear();
+      for (MetaImpl.MetaTable tableDef : tableDefs) {
+        final TableEntry entry = new TableEntry(tableDef, now);
+        final TableEntry old = previous.get(tableDef.tableName);
+        if (old != null && old.table != null) {
+          entry.columns = old.columns;
+          entry.columnsLoaded = old.columnsLoaded;
+        }
+        tables.put(tableDef.tableName, entry);
+      }
+      tablesLoaded = now;
+      modified();
+      return tableNames();
+    }
+  }
+
+  /** Returns the names of the tables in this cache. Caller must hold the
+   * lock. */
+  private Set<String> tableNames() {
+    final Set<String> names = new TreeSet<>();
+    for (TableEntry entry : tables.values()) {
+      if (entry.table != null) {
+        names.add(entry.table.tableName);
+      }
+    }
+    return names;
+  }
+
+  /** Returns the definition of a table, or null if there is no such table,
+   * reading it using {@code loader} if it is absent or has expired. Columns
+   * that are still current are kept. */
+  MetaImpl.MetaTable table(String name,
+      Loader<MetaImpl.MetaTable> loader) throws SQLException {
+    synchronized (this) {
+      final TableEntry entry = tables.get(name);
+      if (entry != null && isCurrent(entry.loaded)) {
+        return entry.table;
+      }
+      if (entry == null && isCurrent(tablesLoaded)) {
+        // The list of all tables is current, and does not contain this table.
+        return null;
+      }
+    }
+    final MetaImpl.MetaTable table = loader.load();
+    synchronized (this) {
+      final TableEntry entry = tables.get(name);
+      if (entry != null && isCurrent(entry.loaded)) {
+        // Another thread read the table while we were reading it.
+        return entry.table;
+      }
+      final TableEntry newEntry =
+          new TableEntry(table, System.currentTimeMillis());
+      if (entry != null && table != null) {
+        newEntry.columns = entry.columns;
+        newEntry.columnsLoaded = entry.columnsLoaded;
+      }
+      tables.put(name, newEntry);
+      modified();
+      return table;
+    }
+  }
+
+  /** Returns the columns of a table, reading them using {@code loader} if
+   * they are absent or have expired. */
+  List<Column> columns(String tableName,
+      Loader<List<Column>> loader) throws SQLException {
+    synchronized (this) {
+      final TableEntry entry = tables.get(tableName);
+      if (entry != null && isCurrent(entry.columnsLoaded)) {
+        return entry.columns;
+      }
+    }
+    final List<Column> columns = ImmutableList.copyOf(loader.load());
+    synchronized (this) {
+      // Look up the entry again; the list of tables may have been re-read.
+      final TableEntry entry = tables.get(tableName);
+      if (entry == null) {
+        return columns;
+      }
+      if (isCurrent(entry.columnsLoaded)) {
+        // Another thread read the columns while we were reading them.
+        return entry.columns;
+      }
+      entry.columns = columns;
+      entry.columnsLoaded = System.currentTimeMillis();
+      modified();
+      return columns;
+    }
+  }
+
+  /** Writes the contents of all caches that have changed to their files.
+   * Call this before the JVM exits if recent changes must be persisted. */
+  public static void flushAll() {
+    for (JdbcMetadataCache cache : INSTANCES.asMap().values()) {
+      cache.flush();
+    }
+  }
+
+  /** Writes the contents of this cache to its file, if it has a file and its
+   * contents have changed since they were last written. */
+  public void flush() {
+    synchronized (fileLock) {
+      final Map<String, Object> map;
+      synchronized (this) {
+        flushPending = false;
+        if (!dirty) {
+          return;
+        }
+        dirty = false;
+        map = toMap();
+      }
+      write(map);
+    }
+  }
+
+  /** Records that the contents of this cache have changed, and schedules a
+   * write if one is not already pending. Caller must hold the lock on this
+   * cache. */
+  private void modified() {
+    if (file == null) {
+      return;
+    }
+    dirty = true;
+    if (!flushPending) {
+      flushPending = true;
+      WRITER.execute(this::flush);
+    }
+  }
+
+  /** Populates this cache from its file. If the file cannot be read, or
+   * describes a different schema, starts empty. */
+  @SuppressWarnings("unchecked")
+  private void read() {
+    try {
+      final Map<String, Object> map = MAPPER.readValue(file, Map.class);
+      if (!Objects.equals(map.get("catalog"), catalog)
+          || !Objects.equals(map.get("schema"), schema)) {
+        return;
+      }
+      tablesLoaded = ((Number) map.get("tablesLoaded")).longValue();
+      for (Map<String, Object> t
+          : (List<Map<String, Object>>) map.get("tables")) {
+        final String name = (String) t.get("name");
+        final MetaImpl.MetaTable table = Boolean.TRUE.equals(t.get("missing"))
+            ? null
+            : new MetaImpl.MetaTable((String) t.get("catalog"),
+                (String) t.get("schema"), name, (String) t.get("type"));
+        final TableEntry entry =
+            new TableEntry(table, ((Number) t.get("loaded")).longValue());
+        final List<Map<String, Object>> columns =
+            (List<Map<String, Object>>) t.get("columns");
+        if (columns != null) {
+          final ImmutableList.Builder<Column> builder = ImmutableList.builder();
+          for (Map<String, Object> c : columns) {
+            builder.add(
+                new Column((String) c.get("name"),
+                    ((Number) c.get("dataType")).intValue(),
+                    (String) c.get("typeString"),
+                    ((Number) c.get("precision")).intValue(),
+                    ((Number) c.get("scale")).intValue(),
+                    (Boolean) c.get("nullable")));
+          }
+          entry.columns = builder.build();
+          entry.columnsLoaded = ((Number) t.get("columnsLoaded")).longValue();
+        }
+        tables.put(name, entry);
+      }
+    } catch (IOException | RuntimeException e) {
+      LOGGER.warn("Ignoring metadata cache file {}", file, e);
+      tablesLoaded = 0;
+      tables.clear();
+    }
+  }
+
+  /** Converts the contents of this cache to a map that can be serialized
+   * after the lock on this cache is released. Caller must hold the lock. */
+  private Map<String, Object> toMap() {
+    final Map<String, Object> map = new LinkedHashMap<>();
+    map.put("catalog", catalog);
+    map.put("schema", schema);
+    map.put("tablesLoaded", tablesLoaded);
+    final List<Map<String, Object>> tableList = new ArrayList<>();
+    for (Map.Entry<String, TableEntry> e : tables.entrySet()) {
+      final TableEntry entry = e.getValue();
+      final Map<String, Object> t = new LinkedHashMap<>();
+      t.put("name", e.getKey());
+      t.put("loaded", entry.loaded);
+      if (entry.table == null) {
+        t.put("missing", true);
+      } else {
+        t.put("catalog", entry.table.tableCat);
+        t.put("schema", entry.table.tableSchem);
+        t.put("type", entry.table.tableType);
+      }
+      if (entry.columns != null) {
+        t.put("columnsLoaded", entry.columnsLoaded);
+        final List<Map<String, Object>> columns = new ArrayList<>();
+        for (Column column : entry.columns) {
+          final Map<String, Object> c = new LinkedHashMap<>();
+          c.put("name", column.name);
+          c.put("dataType", column.dataType);
+          c.put("typeString", column.typeString);
+          c.put("precision", column.precision);
+          c.put("scale", column.scale);
+          c.put("nullable", column.nullable);
+          columns.add(c);
+        }
+        t.put("columns", columns);
+      }
+      tableList.add(t);
+    }
+    map.put("tables", tableList);
+    return map;
+  }
+
+  /** Writes a map created by {@link #toMap()} to this cache's file. Writes to
+   * a temporary file first, so that a reader never sees a partial file. */
+  private void write(Map<String, Object> map) {
+    try {
+      final File dir = file.getAbsoluteFile().getParentFile();
+      final File temp = File.createTempFile(file.getName(), ".tmp", dir);
+      MAPPER.writeValue(temp, map);
+      Files.move(temp.toPath(), file.toPath(),
+          StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      LOGGER.warn("Could not write metadata cache file {}", file, e);
+    }
+  }
+
+  /** Reads metadata from the database.
+   *
+   * @param <T> Type of metadata */
+  interface Loader<T> {
+    T load() throws SQLException;
+  }
+
+  /** Definition of a table and its columns, and when they were read. */
+  private static class TableEntry {
+    /** Definition of the table, or null if there is no such table. */
+    final MetaImpl.MetaTable table;
+    final long loaded;
+    /** Columns of the table, or null if they have not been read. */
+    List<Column> columns;
+    long columnsLoaded;
+
+    TableEntry(MetaImpl.MetaTable table, long loaded) {
+      this.table = table;
+      this.loaded = loaded;
+    }
+  }
+
+  /** Definition of a column, as returned by
+   * {@link java.sql.DatabaseMetaData#getColumns}. */
+  static class Column {
+    final String name;
+    /** Type code, per {@link java.sql.Types}. */
+    final int dataType;
+    /** Database-specific type name, e.g. "INTEGER ARRAY". */
+    final String typeString;
+    final int precision;
+    final int scale;
+    final boolean nullable;
+
+    Column(String name, int dataType, String typeString, int precision,
+        int scale, boolean nullable) {
+      this.name = name;
+      this.dataType = dataType;
+      this.typeString = typeString;
+      this.precision = precision;
+      this.scale = scale;
+      this.nullable = nullable;
+    }
+  }
+}
@@ -0,0 +1,273 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.jdbc;
+
+import org.apache.calcite.sql.type.SqlTypeName;
+import org.apache.calcite.util.DateString;
+import org.apache.calcite.util.TimestampString;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Describes how to split a scan of a {@link JdbcTable} into queries over
+ * ranges of a column, which are read concurrently.
+ *
+ * <p>The partition column must be numeric, DATE or TIMESTAMP. The ranges are
+ * separated by bounds, which are either given explicitly or computed from
+ * the minimum and maximum values of the column. Given bounds
+ * b<sub>1</sub> &lt; ... &lt; b<sub>n</sub>, there are n + 1 partitions:
+ * {@code column < b1 OR column IS NULL}, {@code column >= b1 AND column < b2},
+ * ..., {@code column >= bn}. Because the first and last partitions are
+ * unbounded, every row belongs to exactly one partition, even if the bounds
+ * are out of date.
+ *
+ * @see JdbcSchema#create(org.apache.calcite.schema.SchemaPlus, String, Map)
+ */
+public class JdbcPartitioning {
+  /** Name of the partition column. */
+  public final String column;
+  /** Number of partitions. */
+  public final int count;
+  /** Bounds between partitions, in ascending order, or null if the bounds
+   * are to be computed from the minimum and maximum values of the column. */
+  public final ImmutableList<Object> bounds;
+
+  /** Creates a JdbcPartitioning that splits a table into a given number of
+   * partitions of roughly equal width. */
+  public JdbcPartitioning(String column, int count) {
+    this(column, count, null);
+  }
+
+  /** Creates a JdbcPartitioning with explicit bounds. The values are numbers
+   * or strings; for a DATE or TIMESTAMP column, strings such as
+   * "2020-01-31" or "2020-01-31 12:34:56". They must be in strictly
+   * ascending order; this is checked when they are converted to the type of
+   * the column, by {@link #toLiteralValues}. */
+  public JdbcPartitioning(String column, List<?> bounds) {
+    this(column, bounds.size() + 1, bounds);
+  }
+
+  private JdbcPartitioning(String column, int count, List<?> bounds) {
+    this.column = Objects.requireNonNull(column);
+    this.count = count;
+    this.bounds = bounds == null ? null : ImmutableList.copyOf(bounds);
+    if (count < 1) {
+      throw new IllegalArgumentException("partition count must be positive: "
+          + count);
+    }
+  }
+
+  @Override public String toString() {
+    return "JdbcPartitioning(column=" + column
+        + (bounds == null ? ", count=" + count : ", bounds=" + bounds)
+        + ")";
+  }
+
+  /** Creates a map from table names to partitionings from the
+   * "partitions" operand of a JDBC schema.
+   *
+   * <p>The operand is of the form
+   *
+   * <blockquote><pre>{
+   *   ORDERS: {column: 'ORDER_ID', count: 8},
+   *   SALES: {column: 'SALE_DATE', bounds: ['2019-01-01', '2020-01-01']}
+   * }</pre></blockquote>
+   */
+  @SuppressWarnings("unchecked")
+  public static ImmutableMap<String, JdbcPartitioning> of(Map<String, ?> operand) {
+    final ImmutableMap.Builder<String, JdbcPartitioning> builder =
+        ImmutableMap.builder();
+    if (operand != null) {
+      for (Map.Entry<String, ?> entry : operand.entrySet()) {
+        final Map<String, Object> map = (Map<String, Object>) entry.getValue();
+        final String column = (String) map.get("column");
+        final List<Object> bounds = (List<Object>) map.get("bounds");
+        final Number count = (Number) map.get("count");
+        if (column == null || (bounds == null) == (count == null)) {
+          throw new IllegalArgumentException("partitions of table '"
+              + entry.getKey() + "' must have a 'column' and either 'count' "
+              + "or 'bounds'");
+        }
+        builder.put(entry.getKey(),
+            bounds != null
+                ? new JdbcPartitioning(column, bounds)
+                : new JdbcPartitioning(column, count.intValue()));
+      }
+    }
+    return builder.build();
+  }
+
+  /** Returns whether a table can be partitioned on a column of a given
+   * type. */
+  static boolean canPartition(SqlTypeName typeName) {
+    switch (typeName) {
+    case DATE:
+    case TIMESTAMP:
+      return true;
+    default:
+      return SqlTypeName.NUMERIC_TYPES.contains(typeName);
+    }
+  }
+
+  /** Converts the explicit bounds to values for literals of the type of the
+   * partition column, and checks that they are strictly ascending.
+   *
+   * @throws IllegalArgumentException if a bound is not greater than the
+   *   previous bound */
+  ImmutableList<Comparable> toLiteralValues(SqlTypeName typeName) {
+    final ImmutableList.Builder<Comparable> builder = ImmutableList.builder();
+    Comparable previous = null;
+    for (Object bound : bounds) {
+      final Comparable value = toLiteralValue(bound, typeName);
+      //noinspection unchecked
+      if (previous != null && previous.compareTo(value) >= 0) {
+        throw new IllegalArgumentException("bounds of partitions on column '"
+            + column + "' must be in strictly ascending order: " + bounds);
+      }
+      builder.add(value);
+      previous = value;
+    }
+    return builder.build();
+  }
+
+  /** Converts a bound, or a value of the column read from JDBC, to a value
+   * that {@link org.apache.calcite.rex.RexBuilder#makeLiteral} accepts for
+   * a column of a given type: {@link BigDecimal} for numeric types,
+   * {@link DateString} and {@link TimestampString} for DATE and TIMESTAMP. */
+  static Comparable toLiteralValue(Object value, SqlTypeName typeName) {
+    switch (typeName) {
+    case DATE:
+      if (value instanceof java.sql.Date) {
+        return toLiteralValue(((java.sql.Date) value).toLocalDate(), typeName);
+      }
+      if (value instanceof LocalDate) {
+        return DateString.fromDaysSinceEpoch(
+            (int) ((LocalDate) value).toEpochDay());
+      }
+      if (value instanceof String) {
+        return new DateString((String) value);
+      }
+      break;
+    case TIMESTAMP:
+      if (value instanceof Timestamp) {
+        return toLiteralValue(((Timestamp) value).toLocalDateTime(),
+            typeName);
+      }
+      if (value instanceof LocalDateTime) {
+        return TimestampString.fromMillisSinceEpoch(
+            ((LocalDateTime) value).toInstant(ZoneOffset.UTC).toEpochMilli());
+      }
+      if (value instanceof String) {
+        return new TimestampString((String) value);
+      }
+      break;
+    default:
+      return new BigDecimal(value.toString());
+    }
+    throw new IllegalArgumentException("cannot convert " + value + " (of "
+        + value.getClass() + ") to a bound of type " + typeName);
+  }
+
+  /** Reads the minimum or maximum value of a partition column from a
+   * result set, using the getter for the column's type; the class of the
+   * value returned by {@link ResultSet#getObject} depends on the driver.
+   * Returns null if the value is null. */
+  static Comparable readValue(ResultSet resultSet, int i,
+      SqlTypeName typeName) throws SQLException {
+    switch (typeName) {
+    case DATE:
+      final java.sql.Date date = resultSet.getDate(i);
+      return date == null ? null : toLiteralValue(date, typeName);
+    case TIMESTAMP:
+      final Timestamp timestamp = resultSet.getTimestamp(i);
+      return timestamp == null ? null : toLiteralValue(timestamp, typeName);
+    case TINYINT:
+    case SMALLINT:
+    case INTEGER:
+    case BIGINT:
+      final long n = resultSet.getLong(i);
+      return resultSet.wasNull() ? null : BigDecimal.valueOf(n);
+    default:
+      return resultSet.getBigDecimal(i);
+    }
+  }
+
+  /** Returns {@code count - 1} bounds that split the range between the
+   * minimum and maximum values of a column into ranges of roughly equal
+   * width. Returns fewer bounds if the range is too narrow. */
+  static List<Comparable> split(Comparable min, Comparable max, int count,
+      SqlTypeName typeName) {
+    final BigDecimal lo = toNumber(min);
+    final BigDecimal hi = toNumber(max);
+    final BigDecimal width = hi.subtract(lo);
+    final boolean integral = typeName == SqlTypeName.DATE
+        || typeName == SqlTypeName.TIMESTAMP
+        || SqlTypeName.INT_TYPES.contains(typeName);
+    final List<Comparable> bounds = new ArrayList<>();
+    BigDecimal previous = lo;
+    for (int i = 1; i < count; i++) {
+      BigDecimal bound = lo.add(
+          width.multiply(BigDecimal.valueOf(i))
+              .divide(BigDecimal.valueOf(count), 10, RoundingMode.FLOOR));
+      if (integral) {
+        bound = bound.setScale(0, RoundingMode.FLOOR);
+      }
+      if (bound.compareTo(previous) > 0 && bound.compareTo(hi) <= 0) {
+        bounds.add(fromNumber(bound, typeName));
+        previous = bound;
+      }
+    }
+    return bounds;
+  }
+
+  private static BigDecimal toNumber(Comparable value) {
+    if (value instanceof DateString) {
+      return BigDecimal.valueOf(((DateString) value).getDaysSinceEpoch());
+    }
+    if (value instanceof TimestampString) {
+      return BigDecimal.valueOf(
+          ((TimestampString) value).getMillisSinceEpoch());
+    }
+    return (BigDecimal) value;
+  }
+
+  private static Comparable fromNumber(BigDecimal value,
+      SqlTypeName typeName) {
+    switch (typeName) {
+    case DATE:
+      return DateString.fromDaysSinceEpoch(value.intValueExact());
+    case TIMESTAMP:
+      return TimestampString.fromMillisSinceEpoch(value.longValueExact());
+    default:
+      return value;
+    }
+  }
+}
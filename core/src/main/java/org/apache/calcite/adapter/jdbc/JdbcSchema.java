@@ -48,6 +48,7 @@
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Ordering;
 
+import java.io.File;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
@@ -60,6 +61,7 @@
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiFunction;
 import javax.sql.DataSource;
 
@@ -76,7 +78,16 @@ public class JdbcSchema implements Schema {
   final String schema;
   public final SqlDialect dialect;
   final JdbcConvention convention;
+  /** How to partition scans of tables, keyed by table name. */
+  final ImmutableMap<String, JdbcPartitioning> partitionings;
+  /** Cache of table and column definitions shared with other schemas, or
+   * null. */
+  final JdbcMetadataCache metadataCache;
   private ImmutableMap<String, JdbcTable> tableMap;
+  /** Tables that have been resolved using {@link #metadataCache}, with the
+   * definitions that they were created from. A snapshot starts with the
+   * tables of the schema it was taken from, and never replaces them. */
+  private final Map<String, Pair<MetaImpl.MetaTable, JdbcTable>> lazyTables;
   private final boolean snapshot;
 
   @Experimental
@@ -96,19 +107,46 @@ public class JdbcSchema implements Schema {
    */
   public JdbcSchema(DataSource dataSource, SqlDialect dialect,
       JdbcConvention convention, String catalog, String schema) {
-    this(dataSource, dialect, convention, catalog, schema, null);
+    this(dataSource, dialect, convention, catalog, schema, ImmutableMap.of(),
+        null, null, null);
+  }
+
+  /**
+   * Creates a JDBC schema whose tables may be read in partitions.
+   *
+   * @param dataSource Data source
+   * @param dialect SQL dialect
+   * @param convention Calling convention
+   * @param catalog Catalog name, or null
+   * @param schema Schema name pattern
+   * @param partitionings How to partition scans of tables, keyed by table
+   *                      name
+   */
+  public JdbcSchema(DataSource dataSource, SqlDialect dialect,
+      JdbcConvention convention, String catalog, String schema,
+      Map<String, JdbcPartitioning> partitionings) {
+    this(dataSource, dialect, convention, catalog, schema,
+        ImmutableMap.copyOf(partitionings), null, null, null);
   }
 
   private JdbcSchema(DataSource dataSource, SqlDialect dialect,
       JdbcConvention convention, String catalog, String schema,
-      ImmutableMap<String, JdbcTable> tableMap) {
+      ImmutableMap<String, JdbcPartitioning> partitionings,
+      JdbcMetadataCache metadataCache,
+      ImmutableMap<String, JdbcTable> tableMap,
+      Map<String, Pair<MetaImpl.MetaTable, JdbcTable>> lazyTables) {
     this.dataSource = Objects.requireNonNull(dataSource);
     this.dialect = Objects.requireNonNull(dialect);
     this.convention = convention;
     this.catalog = catalog;
     this.schema = schema;
+    this.partitionings = Objects.requireNonNull(partitionings);
+    this.metadataCache = metadataCache;
     this.tableMap = tableMap;
-    this.snapshot = tableMap != null;
+    this.lazyTables = lazyTables == null
+        ? new ConcurrentHashMap<>()
+        : new ConcurrentHashMap<>(lazyTables);
+    this.snapshot = tableMap != null || lazyTables != null;
   }
 
   public static JdbcSchema create(
@@ -128,12 +166,110 @@ public static JdbcSchema create(
       SqlDialectFactory dialectFactory,
       String catalog,
       String schema) {
+    return create(parentSchema, name, dataSource, dialectFactory, catalog,
+        schema, 0, false);
+  }
+
+  /**
+   * Creates a JdbcSchema that reads rows with a given fetch size, and
+   * optionally streams them.
+   *
+   * @param parentSchema Parent schema
+   * @param name Name
+   * @param dataSource Data source
+   * @param dialectFactory Factory for the SQL dialect
+   * @param catalog Catalog name, or null
+   * @param schema Schema name pattern
+   * @param fetchSize Number of rows to fetch in each round trip to the
+   *                  database, or 0 to use the driver's default
+   * @param streaming Whether to read rows incrementally, rather than
+   *                  allowing the driver to read the whole result into
+   *                  memory when the query is executed
+   * @return A JdbcSchema
+   */
+  public static JdbcSchema create(
+      SchemaPlus parentSchema,
+      String name,
+      DataSource dataSource,
+      SqlDialectFactory dialectFactory,
+      String catalog,
+      String schema,
+      int fetchSize,
+      boolean streaming) {
+    return create(parentSchema, name, dataSource, dialectFactory, catalog,
+        schema, fetchSize, streaming, ImmutableMap.of());
+  }
+
+  /**
+   * Creates a JdbcSchema that reads rows with a given fetch size, optionally
+   * streams them, and reads some tables in partitions.
+   *
+   * @param parentSchema Parent schema
+   * @param name Name
+   * @param dataSource Data source
+   * @param dialectFactory Factory for the SQL dialect
+   * @param catalog Catalog name, or null
+   * @param schema Schema name pattern
+   * @param fetchSize Number of rows to fetch in each round trip to the
+   *                  database, or 0 to use the driver's default
+   * @param streaming Whether to read rows incrementally
+   * @param partitionings How to partition scans of tables, keyed by table
+   *                      name
+   * @return A JdbcSchema
+   */
+  public static JdbcSchema create(
+      SchemaPlus parentSchema,
+      String name,
+      DataSource dataSource,
+      SqlDialectFactory dialectFactory,
+      String catalog,
+      String schema,
+      int fetchSize,
+      boolean streaming,
+      Map<String, JdbcPartitioning> partitionings) {
+    return create(parentSchema, name, dataSource, dialectFactory, catalog,
+        schema, fetchSize, streaming, partitionings, false);
+  }
+
+  /**
+   * Creates a JdbcSchema that reads rows with a given fetch size, optionally
+   * streams them, reads some tables in partitions, and optionally
+   * parameterizes the SQL that it sends to the database.
+   *
+   * @param parentSchema Parent schema
+   * @param name Name
+   * @param dataSource Data source
+   * @param dialectFactory Factory for the SQL dialect
+   * @param catalog Catalog name, or null
+   * @param schema Schema name pattern
+   * @param fetchSize Number of rows to fetch in each round trip to the
+   *                  database, or 0 to use the driver's default
+   * @param streaming Whether to read rows incrementally
+   * @param partitionings How to partition scans of tables, keyed by table
+   *                      name
+   * @param parameterize Whether to send literals in comparisons as
+   *                     parameters of a prepared statement
+   * @return A JdbcSchema
+   */
+  public static JdbcSchema create(
+      SchemaPlus parentSchema,
+      String name,
+      DataSource dataSource,
+      SqlDialectFactory dialectFactory,
+      String catalog,
+      String schema,
+      int fetchSize,
+      boolean streaming,
+      Map<String, JdbcPartitioning> partitionings,
+      boolean parameterize) {
     final Expression expression =
         Schemas.subSchemaExpression(parentSchema, name, JdbcSchema.class);
     final SqlDialect dialect = createDialect(dialectFactory, dataSource);
     final JdbcConvention convention =
-        JdbcConvention.of(dialect, expression, name);
-    return new JdbcSchema(dataSource, dialect, convention, catalog, schema);
+        JdbcConvention.of(dialect, expression, name, fetchSize, streaming,
+            parameterize);
+    return new JdbcSchema(dataSource, dialect, convention, catalog, schema,
+        partitionings);
   }
 
   /**
@@ -159,7 +295,12 @@ public static JdbcSchema create(
         final String jdbcDriver = (String) operand.get("jdbcDriver");
         final String jdbcUser = (String) operand.get("jdbcUser");
         final String jdbcPassword = (String) operand.get("jdbcPassword");
-        dataSource = dataSource(jdbcUrl, jdbcDriver, jdbcUser, jdbcPassword);
+        final Number poolSize = (Number) operand.get("poolSize");
+        final boolean poolPreparedStatements =
+            Boolean.TRUE.equals(operand.get("poolPreparedStatements"));
+        dataSource = dataSource(jdbcUrl, jdbcDriver, jdbcUser, jdbcPassword,
+            poolSize == null ? 0 : poolSize.intValue(),
+            poolPreparedStatements);
       }
     } catch (Exception e) {
       throw new RuntimeException("Error while reading dataSource", e);
@@ -167,16 +308,52 @@ public static JdbcSchema create(
     String jdbcCatalog = (String) operand.get("jdbcCatalog");
     String jdbcSchema = (String) operand.get("jdbcSchema");
     String sqlDialectFactory = (String) operand.get("sqlDialectFactory");
-
+    final Number fetchSize = (Number) operand.get("fetchSize");
+    final boolean streaming = Boolean.TRUE.equals(operand.get("streaming"));
+    @SuppressWarnings("unchecked")
+    final Map<String, Object> partitions =
+        (Map<String, Object>) operand.get("partitions");
+    final boolean parameterize =
+        Boolean.TRUE.equals(operand.get("parameterize"));
+    final Number metadataCacheTtl = (Number) operand.get("metadataCacheTtl");
+    final String metadataCacheFile = (String) operand.get("metadataCacheFile");
+
+    final SqlDialectFactory factory;
     if (sqlDialectFactory == null || sqlDialectFactory.isEmpty()) {
-      return JdbcSchema.create(
-          parentSchema, name, dataSource, jdbcCatalog, jdbcSchema);
+      factory = SqlDialectFactoryImpl.INSTANCE;
     } else {
-      SqlDialectFactory factory = AvaticaUtils.instantiatePlugin(
+      factory = AvaticaUtils.instantiatePlugin(
           SqlDialectFactory.class, sqlDialectFactory);
-      return JdbcSchema.create(
-          parentSchema, name, dataSource, factory, jdbcCatalog, jdbcSchema);
     }
+    final JdbcSchema schema = JdbcSchema.create(parentSchema, name,
+        dataSource, factory, jdbcCatalog, jdbcSchema,
+        fetchSize == null ? 0 : fetchSize.intValue(), streaming,
+        JdbcPartitioning.of(partitions), parameterize);
+    if (metadataCacheTtl == null || metadataCacheTtl.longValue() == 0) {
+      return schema;
+    }
+    return schema.withMetadataCache(
+        JdbcMetadataCache.of(dataSource, jdbcCatalog, jdbcSchema,
+            metadataCacheTtl.longValue(),
+            metadataCacheFile == null ? null : new File(metadataCacheFile)));
+  }
+
+  /**
+   * Returns a copy of this schema that reads the definitions of tables and
+   * columns through a cache.
+   *
+   * <p>Such a schema resolves each table when it is first used, rather than
+   * reading the definitions of all tables, and does not re-read the list of
+   * tables when {@link #getTableNames()} is called until the cache entry
+   * expires.
+   *
+   * @param metadataCache Metadata cache, or null to read metadata from the
+   *                      database each time
+   * @return A JdbcSchema
+   */
+  public JdbcSchema withMetadataCache(JdbcMetadataCache metadataCache) {
+    return new JdbcSchema(dataSource, dialect, convention, catalog, schema,
+        partitionings, metadataCache, null, null);
   }
 
   /**
@@ -200,12 +377,25 @@ public static SqlDialect createDialect(SqlDialectFactory dialectFactory,
   /** Creates a JDBC data source with the given specification. */
   public static DataSource dataSource(String url, String driverClassName,
       String username, String password) {
+    return dataSource(url, driverClassName, username, password, 0, false);
+  }
+
+  /** Creates a JDBC data source with the given specification, that pools
+   * up to {@code poolSize} connections (or the default number, if 0), and
+   * optionally caches prepared statements on each connection.
+   *
+   * <p>Caching prepared statements allows the database to re-use the plan
+   * of a statement whose SQL text it has seen before; it is most useful if
+   * the schema {@link JdbcConvention#parameterize parameterizes} literals. */
+  public static DataSource dataSource(String url, String driverClassName,
+      String username, String password, int poolSize,
+      boolean poolPreparedStatements) {
     if (url.startsWith("jdbc:hsqldb:")) {
       // Prevent hsqldb from screwing up java.util.logging.
       System.setProperty("hsqldb.reconfig_logging", "false");
     }
     return JdbcUtils.DataSourcePool.INSTANCE.get(url, driverClassName, username,
-        password);
+        password, poolSize, poolPreparedStatements);
   }
 
   public boolean isMutable() {
@@ -213,8 +403,13 @@ public boolean isMutable() {
   }
 
   public Schema snapshot(SchemaVersion version) {
+    if (metadataCache != null) {
+      // Keep the tables resolved so far; resolve others when they are used
+      return new JdbcSchema(dataSource, dialect, convention, catalog, schema,
+          partitionings, metadataCache, null, lazyTables);
+    }
     return new JdbcSchema(dataSource, dialect, convention, catalog, schema,
-        tableMap);
+        partitionings, null, tableMap, null);
   }
 
   // Used by generated code.
@@ -240,6 +435,23 @@ public final Set<String> getFunctionNames() {
   }
 
   private ImmutableMap<String, JdbcTable> computeTables() {
+    try {
+      final ImmutableMap.Builder<String, JdbcTable> builder =
+          ImmutableMap.builder();
+      for (MetaImpl.MetaTable tableDef : readTables(null)) {
+        builder.put(tableDef.tableName, toTable(tableDef));
+      }
+      return builder.build();
+    } catch (SQLException e) {
+      throw new RuntimeException(
+          "Exception while reading tables", e);
+    }
+  }
+
+  /** Reads the definitions of all tables, or of the table with a given
+   * name. */
+  private List<MetaImpl.MetaTable> readTables(String tableName)
+      throws SQLException {
     Connection connection = null;
     ResultSet resultSet = null;
     try {
@@ -247,60 +459,73 @@ private ImmutableMap<String, JdbcTable> computeTables() {
       final Pair<String, String> catalogSchema = getCatalogSchema(connection);
       final String catalog = catalogSchema.left;
       final String schema = catalogSchema.right;
-      final Iterable<MetaImpl.MetaTable> tableDefs;
+      final List<MetaImpl.MetaTable> tableDefList = new ArrayList<>();
       if (THREAD_METADATA.get() != null) {
-        tableDefs = THREAD_METADATA.get().apply(catalog, schema);
-      } else {
-        final List<MetaImpl.MetaTable> tableDefList = new ArrayList<>();
-        final DatabaseMetaData metaData = connection.getMetaData();
-        resultSet = metaData.getTables(catalog, schema, null, null);
-        while (resultSet.next()) {
-          final String catalogName = resultSet.getString(1);
-          final String schemaName = resultSet.getString(2);
-          final String tableName = resultSet.getString(3);
-          final String tableTypeName = resultSet.getString(4);
-          tableDefList.add(
-              new MetaImpl.MetaTable(catalogName, schemaName, tableName,
-                  tableTypeName));
+        for (MetaImpl.MetaTable tableDef
+            : THREAD_METADATA.get().apply(catalog, schema)) {
+          if (tableName == null || tableName.equals(tableDef.tableName)) {
+            tableDefList.add(tableDef);
+          }
         }
-        tableDefs = tableDefList;
+        return tableDefList;
       }
-
-      final ImmutableMap.Builder<String, JdbcTable> builder =
-          ImmutableMap.builder();
-      for (MetaImpl.MetaTable tableDef : tableDefs) {
-        // Clean up table type. In particular, this ensures that 'SYSTEM TABLE',
-        // returned by Phoenix among others, maps to TableType.SYSTEM_TABLE.
-        // We know enum constants are upper-case without spaces, so we can't
-        // make things worse.
-        //
-        // PostgreSQL returns tableTypeName==null for pg_toast* tables
-        // This can happen if you start JdbcSchema off a "public" PG schema
-        // The tables are not designed to be queried by users, however we do
-        // not filter them as we keep all the other table types.
-        final String tableTypeName2 =
-            tableDef.tableType == null
-            ? null
-            : tableDef.tableType.toUpperCase(Locale.ROOT).replace(' ', '_');
-        final TableType tableType =
-            Util.enumVal(TableType.OTHER, tableTypeName2);
-        if (tableType == TableType.OTHER  && tableTypeName2 != null) {
-          System.out.println("Unknown table type: " + tableTypeName2);
+      final DatabaseMetaData metaData = connection.getMetaData();
+      resultSet = metaData.getTables(catalog, schema,
+          tableName == null ? null : escape(metaData, tableName), null);
+      while (resultSet.next()) {
+        final String catalogName = resultSet.getString(1);
+        final String schemaName = resultSet.getString(2);
+        final String tableName2 = resultSet.getString(3);
+        final String tableTypeName = resultSet.getString(4);
+        // The table name is a pattern, so check that the name matches exactly
+        if (tableName == null || tableName.equals(tableName2)) {
+          tableDefList.add(
+              new MetaImpl.MetaTable(catalogName, schemaName, tableName2,
+                  tableTypeName));
         }
-        final JdbcTable table =
-            new JdbcTable(this, tableDef.tableCat, tableDef.tableSchem,
-                tableDef.tableName, tableType);
-        builder.put(tableDef.tableName, table);
       }
-      return builder.build();
-    } catch (SQLException e) {
-      throw new RuntimeException(
-          "Exception while reading tables", e);
+      return tableDefList;
     } finally {
       close(connection, null, resultSet);
     }
   }
 
+  /** Escapes the wildcard characters in a name, so that it can be used as a
+   * pattern in a {@link DatabaseMetaData} method. */
+  private static String escape(DatabaseMetaData metaData, String name)
+      throws SQLException {
+    final String escape = metaData.getSearchStringEscape();
+    if (escape == null || escape.isEmpty()) {
+      return name;
+    }
+    return name.replace(escape, escape + escape)
+        .replace("_", escape + "_")
+        .replace("%", escape + "%");
+  }
+
+  private JdbcTable toTable(MetaImpl.MetaTable tableDef) {
+    // Clean up table type. In particular, this ensures that 'SYSTEM TABLE',
+    // returned by Phoenix among others, maps to TableType.SYSTEM_TABLE.
+    // We know enum constants are upper-case without spaces, so we can't
+    // make things worse.
+    //
+    // PostgreSQL returns tableTypeName==null for pg_toast* tables
+    // This can happen if you start JdbcSchema off a "public" PG schema
+    // The tables are not designed to be queried by users, however we do
+    // not filter them as we keep all the other table types.
+    final String tableTypeName2 =
+        tableDef.tableType == null
+        ? null
+        : tableDef.tableType.toUpperCase(Locale.ROOT).replace(' ', '_');
+    final TableType tableType =
+        Util.enumVal(TableType.OTHER, tableTypeName2);
+    if (tableType == TableType.OTHER  && tableTypeName2 != null) {
+      System.out.println("Unknown table type: " + tableTypeName2);
+    }
+    return new JdbcTable(this, tableDef.tableCat, tableDef.tableSchem,
+        tableDef.tableName, tableType);
+  }
+
   /** Returns [major, minor] version from a database metadata. */
   private List<Integer> version(DatabaseMetaData metaData) throws SQLException {
     return ImmutableList.of(metaData.getJDBCMajorVersion(),
@@ -342,7 +567,35 @@ private Pair<String, String> getCatalogSchema(Connection connection)
   }
 
   public Table getTable(String name) {
-    return getTableMap(false).get(name);
+    if (metadataCache == null) {
+      return getTableMap(false).get(name);
+    }
+    if (snapshot) {
+      final Pair<MetaImpl.MetaTable, JdbcTable> pair = lazyTables.get(name);
+      if (pair != null) {
+        return pair.right;
+      }
+    }
+    final MetaImpl.MetaTable tableDef;
+    try {
+      tableDef = metadataCache.table(name, () -> {
+        final List<MetaImpl.MetaTable> tableDefs = readTables(name);
+        return tableDefs.isEmpty() ? null : tableDefs.get(0);
+      });
+    } catch (SQLException e) {
+      throw new RuntimeException(
+          "Exception while reading table " + name, e);
+    }
+    if (tableDef == null) {
+      lazyTables.remove(name);
+      return null;
+    }
+    // Re-use the table while its definition is current, so that it keeps
+    // its row type and partition bounds
+    return lazyTables.compute(name, (k, pair) ->
+        pair != null && (snapshot || pair.left == tableDef)
+            ? pair
+            : Pair.of(tableDef, toTable(tableDef))).right;
   }
 
   private synchronized ImmutableMap<String, JdbcTable> getTableMap(
@@ -355,11 +608,21 @@ private synchronized ImmutableMap<String, JdbcTable> getTableMap(
 
   RelProtoDataType getRelDataType(String catalogName, String schemaName,
       String tableName) throws SQLException {
+    if (metadataCache != null) {
+      return toProtoType(
+          metadataCache.columns(tableName, () ->
+              readColumns(catalogName, schemaName, tableName)));
+    }
+    return toProtoType(readColumns(catalogName, schemaName, tableName));
+  }
+
+  private List<JdbcMetadataCache.Column> readColumns(String catalogName,
+      String schemaName, String tableName) throws SQLException {
     Connection connection = null;
     try {
       connection = dataSource.getConnection();
       DatabaseMetaData metaData = connection.getMetaData();
-      return getRelDataType(metaData, catalogName, schemaName, tableName);
+      return readColumns(metaData, catalogName, schemaName, tableName);
     } finally {
       close(connection, null, null);
     }
@@ -367,15 +630,16 @@ RelProtoDataType getRelDataType(String catalogName, String schemaName,
 
   RelProtoDataType getRelDataType(DatabaseMetaData metaData, String catalogName,
       String schemaName, String tableName) throws SQLException {
+    return toProtoType(
+        readColumns(metaData, catalogName, schemaName, tableName));
+  }
+
+  private List<JdbcMetadataCache.Column> readColumns(DatabaseMetaData metaData,
+      String catalogName, String schemaName, String tableName)
+      throws SQLException {
     final ResultSet resultSet =
         metaData.getColumns(catalogName, schemaName, tableName, null);
-
-    // Temporary type factory, just for the duration of this method. Allowable
-    // because we're creating a proto-type, not a type; before being used, the
-    // proto-type will be copied into a real type factory.
-    final RelDataTypeFactory typeFactory =
-        new SqlTypeFactoryImpl(RelDataTypeSystem.DEFAULT);
-    final RelDataTypeFactory.Builder fieldInfo = typeFactory.builder();
+    final List<JdbcMetadataCache.Column> columns = new ArrayList<>();
     while (resultSet.next()) {
       final String columnName = resultSet.getString(4);
       final int dataType = resultSet.getInt(5);
@@ -393,12 +657,28 @@ RelProtoDataType getRelDataType(DatabaseMetaData metaData, String catalogName,
         scale = resultSet.getInt(9); // SCALE
         break;
       }
-      RelDataType sqlType =
-          sqlType(typeFactory, dataType, precision, scale, typeString);
       boolean nullable = resultSet.getInt(11) != DatabaseMetaData.columnNoNulls;
-      fieldInfo.add(columnName, sqlType).nullable(nullable);
+      columns.add(
+          new JdbcMetadataCache.Column(columnName, dataType, typeString,
+              precision, scale, nullable));
     }
     resultSet.close();
+    return columns;
+  }
+
+  private RelProtoDataType toProtoType(List<JdbcMetadataCache.Column> columns) {
+    // Temporary type factory, just for the duration of this method. Allowable
+    // because we're creating a proto-type, not a type; before being used, the
+    // proto-type will be copied into a real type factory.
+    final RelDataTypeFactory typeFactory =
+        new SqlTypeFactoryImpl(RelDataTypeSystem.DEFAULT);
+    final RelDataTypeFactory.Builder fieldInfo = typeFactory.builder();
+    for (JdbcMetadataCache.Column column : columns) {
+      RelDataType sqlType =
+          sqlType(typeFactory, column.dataType, column.precision, column.scale,
+              column.typeString);
+      fieldInfo.add(column.name, sqlType).nullable(column.nullable);
+    }
     return RelDataTypeImpl.proto(fieldInfo.build());
   }
 
@@ -471,6 +751,14 @@ private RelDataType parseTypeString(RelDataTypeFactory typeFactory,
   }
 
   public Set<String> getTableNames() {
+    if (metadataCache != null) {
+      try {
+        return metadataCache.tableNames(() -> readTables(null));
+      } catch (SQLException e) {
+        throw new RuntimeException(
+            "Exception while reading tables", e);
+      }
+    }
     // This method is called during a cache refresh. We can take it as a signal
     // that we need to re-build our own cache.
     return getTableMap(!snapshot).keySet();
@@ -542,11 +830,48 @@ private static void close(
    *         "jdbcDriver": "com.mysql.jdbc.Driver",
    *         "jdbcUrl": "jdbc:mysql://localhost/foodmart",
    *         "jdbcUser": "foodmart",
-   *         "jdbcPassword": "foodmart"
+   *         "jdbcPassword": "foodmart",
+   *         "fetchSize": 10000,
+   *         "streaming": true,
+   *         "partitions": {
+   *           "sales_fact_1997": {"column": "time_id", "count": 4}
+   *         },
+   *         "poolSize": 16,
+   *         "poolPreparedStatements": true,
+   *         "parameterize": true,
+   *         "metadataCacheTtl": 3600000,
+   *         "metadataCacheFile": "/var/cache/calcite/foodmart.json"
    *       }
    *     }
    *   ]
    * }</pre></blockquote>
+   *
+   * <p>The optional {@code fetchSize} operand is the number of rows to fetch
+   * in each round trip to the database. If the optional {@code streaming}
+   * operand is true, queries read rows incrementally, so that a large result
+   * is not held in memory; if {@code fetchSize} is not specified, the
+   * dialect's {@link SqlDialect#getStreamingFetchSize() streaming fetch size}
+   * is used.
+   *
+   * <p>The optional {@code partitions} operand maps table names to
+   * partitionings; a scan of a partitioned table is split into queries over
+   * ranges of a column, which are read concurrently (see
+   * {@link JdbcPartitioning}).
+   *
+   * <p>The optional {@code poolSize} operand is the maximum number of
+   * connections in the pool that the schema creates from {@code jdbcUrl};
+   * if {@code poolPreparedStatements} is true, the pool caches prepared
+   * statements on each connection. If the optional {@code parameterize}
+   * operand is true, literals in comparisons are sent to the database as
+   * parameters, so that queries that differ only in those values share a
+   * prepared statement.
+   *
+   * <p>If the optional {@code metadataCacheTtl} operand is not 0, the schema
+   * reads the definitions of tables and columns through a
+   * {@link JdbcMetadataCache} that is shared with other schemas on the same
+   * data source, and whose entries expire after that many milliseconds (or
+   * never, if negative). If {@code metadataCacheFile} is specified, the
+   * cache is persisted in that file.
    */
   public static class Factory implements SchemaFactory {
     public static final Factory INSTANCE = new Factory();
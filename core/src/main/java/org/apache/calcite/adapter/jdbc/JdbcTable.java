@@ -48,15 +48,21 @@
 import org.apache.calcite.sql.SqlNodeList;
 import org.apache.calcite.sql.SqlSelect;
 import org.apache.calcite.sql.SqlWriterConfig;
+import org.apache.calcite.sql.fun.SqlStdOperatorTable;
 import org.apache.calcite.sql.parser.SqlParserPos;
 import org.apache.calcite.sql.pretty.SqlPrettyWriter;
+import org.apache.calcite.sql.type.SqlTypeName;
 import org.apache.calcite.sql.util.SqlString;
 import org.apache.calcite.util.Pair;
 import org.apache.calcite.util.Util;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 
+import java.sql.Connection;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -80,6 +86,8 @@ public class JdbcTable extends AbstractQueryableTable
   public final String jdbcSchemaName;
   public final String jdbcTableName;
   public final Schema.TableType jdbcTableType;
+  /** Bounds between partitions; computed on first use. */
+  private ImmutableList<Comparable> partitionBounds;
 
   JdbcTable(JdbcSchema jdbcSchema, String jdbcCatalogName,
       String jdbcSchemaName, String jdbcTableName,
@@ -141,7 +149,11 @@ private List<Pair<ColumnMetaData.Rep, Integer>> fieldClasses(
   }
 
   SqlString generateSql() {
-    final SqlNodeList selectList = SqlNodeList.SINGLETON_STAR;
+    return generateSql(SqlNodeList.SINGLETON_STAR);
+  }
+
+  /** Generates "SELECT selectList FROM table". */
+  private SqlString generateSql(SqlNodeList selectList) {
     SqlSelect node =
         new SqlSelect(SqlParserPos.ZERO, SqlNodeList.EMPTY, selectList,
             tableName(), null, null, null, null, null, null, null, null);
@@ -167,6 +179,64 @@ public SqlIdentifier tableName() {
     return new SqlIdentifier(names, SqlParserPos.ZERO);
   }
 
+  /** Returns how scans of this table are split into partitions, or null if
+   * they are not. */
+  public JdbcPartitioning partitioning() {
+    return jdbcSchema.partitionings.get(jdbcTableName);
+  }
+
+  /** Returns the bounds between the partitions of this table, as values
+   * for literals of the type of the partition column.
+   *
+   * <p>If the partitioning does not specify bounds, computes them from the
+   * minimum and maximum values of the partition column. The bounds are
+   * computed once; if the data changes, the partitions may become uneven,
+   * but every row still belongs to exactly one partition. */
+  synchronized List<Comparable> partitionBounds(SqlTypeName typeName) {
+    if (partitionBounds == null) {
+      final JdbcPartitioning partitioning = partitioning();
+      if (partitioning.bounds != null) {
+        partitionBounds = partitioning.toLiteralValues(typeName);
+      } else {
+        partitionBounds = computePartitionBounds(partitioning, typeName);
+      }
+    }
+    return partitionBounds;
+  }
+
+  private ImmutableList<Comparable> computePartitionBounds(
+      JdbcPartitioning partitioning, SqlTypeName typeName) {
+    final SqlIdentifier column =
+        new SqlIdentifier(partitioning.column, SqlParserPos.ZERO);
+    final SqlNodeList selectList =
+        new SqlNodeList(
+            ImmutableList.of(
+                SqlStdOperatorTable.MIN.createCall(SqlParserPos.ZERO, column),
+                SqlStdOperatorTable.MAX.createCall(SqlParserPos.ZERO, column)),
+            SqlParserPos.ZERO);
+    final String sql = generateSql(selectList).getSql();
+    try (Connection connection = jdbcSchema.getDataSource().getConnection();
+         Statement statement = connection.createStatement();
+         ResultSet resultSet = statement.executeQuery(sql)) {
+      if (!resultSet.next()) {
+        return ImmutableList.of();
+      }
+      final Comparable min =
+          JdbcPartitioning.readValue(resultSet, 1, typeName);
+      final Comparable max =
+          JdbcPartitioning.readValue(resultSet, 2, typeName);
+      if (min == null || max == null) {
+        return ImmutableList.of();
+      }
+      return ImmutableList.copyOf(
+          JdbcPartitioning.split(min, max, partitioning.count, typeName));
+    } catch (SQLException e) {
+      throw new RuntimeException(
+          "Exception while reading bounds of partitions of table '"
+              + jdbcTableName + "'", e);
+    }
+  }
+
   public RelNode toRel(RelOptTable.ToRelContext context,
       RelOptTable relOptTable) {
     return new JdbcTableScan(context.getCluster(), relOptTable, this,
@@ -40,21 +40,42 @@
 import org.apache.calcite.rel.convert.ConverterImpl;
 import org.apache.calcite.rel.metadata.RelMetadataQuery;
 import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeField;
+import org.apache.calcite.rex.RexBuilder;
+import org.apache.calcite.rex.RexCall;
+import org.apache.calcite.rex.RexCorrelVariable;
+import org.apache.calcite.rex.RexDynamicParam;
+import org.apache.calcite.rex.RexFieldAccess;
+import org.apache.calcite.rex.RexLiteral;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.rex.RexShuttle;
+import org.apache.calcite.rex.RexUtil;
 import org.apache.calcite.runtime.Hook;
 import org.apache.calcite.runtime.SqlFunctions;
 import org.apache.calcite.schema.Schemas;
 import org.apache.calcite.sql.SqlDialect;
+import org.apache.calcite.sql.SqlKind;
+import org.apache.calcite.sql.fun.SqlStdOperatorTable;
 import org.apache.calcite.sql.type.SqlTypeName;
 import org.apache.calcite.sql.util.SqlString;
 import org.apache.calcite.util.BuiltInMethod;
+import org.apache.calcite.util.DateString;
+import org.apache.calcite.util.TimestampString;
+
+import com.google.common.collect.ImmutableList;
 
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.TimeZone;
 import java.util.stream.Collectors;
 import javax.sql.DataSource;
@@ -93,12 +114,24 @@ public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
             pref.prefer(JavaRowFormat.CUSTOM));
     final JdbcConvention jdbcConvention =
         (JdbcConvention) child.getConvention();
-    SqlString sqlString = generateSql(jdbcConvention.dialect);
+    final Map<Integer, RexLiteral> literals = new HashMap<>();
+    final Map<Integer, RexFieldAccess> correlations = new HashMap<>();
+    final RelNode input = parameterizeCorrelations(
+        jdbcConvention.parameterize
+            ? parameterize(getInput(), literals)
+            : getInput(),
+        correlations);
+    SqlString sqlString = generateSql(jdbcConvention.dialect, input);
     String sql = sqlString.getSql();
-    if (CalciteSystemProperty.DEBUG.value()) {
-      System.out.println("[" + sql + "]");
+    final List<String> partitionSqls =
+        generatePartitionSql(jdbcConvention.dialect, input, sqlString);
+    for (String s : partitionSqls == null
+        ? ImmutableList.of(sql) : partitionSqls) {
+      if (CalciteSystemProperty.DEBUG.value()) {
+        System.out.println("[" + s + "]");
+      }
+      Hook.QUERY_PLAN.run(s);
     }
-    Hook.QUERY_PLAN.run(sql);
     final Expression sql_ =
         builder0.append("sql", Expressions.constant(sql));
     final int fieldCount = getRowType().getFieldCount();
@@ -160,14 +193,41 @@ public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
 
     final Expression enumerable;
 
-    if (sqlString.getDynamicParameters() != null
+    if (jdbcConvention.parameterize
+        || !correlations.isEmpty()
+        || sqlString.getDynamicParameters() != null
         && !sqlString.getDynamicParameters().isEmpty()) {
-      final Expression preparedStatementConsumer_ =
-          builder0.append("preparedStatementConsumer",
-              Expressions.call(BuiltInMethod.CREATE_ENRICHER.method,
-                  Expressions.newArrayInit(Integer.class, 1,
-                      toIndexesTableExpression(sqlString)),
-                  DataContext.ROOT));
+      final Expression preparedStatementConsumer_;
+      if (literals.isEmpty() && correlations.isEmpty()) {
+        preparedStatementConsumer_ =
+            builder0.append("preparedStatementConsumer",
+                Expressions.call(BuiltInMethod.CREATE_ENRICHER.method,
+                    Expressions.newArrayInit(Integer.class, 1,
+                        toIndexesTableExpression(sqlString)),
+                    DataContext.ROOT));
+      } else {
+        // Parameters that replace literals or correlation variables have
+        // values; other parameters are the query's own dynamic parameters,
+        // and get their values from the data context
+        final List<Expression> values = new ArrayList<>();
+        for (Integer index : sqlString.getDynamicParameters()) {
+          final RexLiteral literal = literals.get(index);
+          final RexFieldAccess correlation = correlations.get(index);
+          values.add(literal != null
+              ? literalValue(literal)
+              : correlation != null
+              ? correlationValue(implementor, builder0, correlation)
+              : Expressions.constant(null));
+        }
+        preparedStatementConsumer_ =
+            builder0.append("preparedStatementConsumer",
+                Expressions.call(
+                    BuiltInMethod.CREATE_ENRICHER_WITH_VALUES.method,
+                    Expressions.newArrayInit(Integer.class, 1,
+                        toIndexesTableExpression(sqlString)),
+                    Expressions.newArrayInit(Object.class, values),
+                    DataContext.ROOT));
+      }
 
       enumerable = builder0.append("enumerable",
           Expressions.call(
@@ -189,12 +249,33 @@ public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
             Expressions.call(enumerable,
                 BuiltInMethod.RESULT_SET_ENUMERABLE_SET_TIMEOUT.method,
                 DataContext.ROOT)));
+    if (jdbcConvention.fetchSize != 0 || jdbcConvention.streaming) {
+      builder0.add(
+          Expressions.statement(
+              Expressions.call(enumerable,
+                  BuiltInMethod.RESULT_SET_ENUMERABLE_SET_FETCH_OPTIONS.method,
+                  Expressions.constant(jdbcConvention.fetchSize),
+                  Expressions.constant(jdbcConvention.streaming))));
+    }
+    if (partitionSqls != null) {
+      builder0.add(
+          Expressions.statement(
+              Expressions.call(enumerable,
+                  BuiltInMethod.RESULT_SET_ENUMERABLE_SET_PARTITIONS.method,
+                  Expressions.newArrayInit(String.class,
+                      partitionSqls.stream()
+                          .map(Expressions::constant)
+                          .collect(Collectors.toList())))));
+    }
     builder0.add(
         Expressions.return_(null, enumerable));
     return implementor.result(physType, builder0.toBlock());
   }
 
   private List<ConstantExpression> toIndexesTableExpression(SqlString sqlString) {
+    if (sqlString.getDynamicParameters() == null) {
+      return ImmutableList.of();
+    }
     return sqlString.getDynamicParameters().stream()
         .map(Expressions::constant)
         .collect(Collectors.toList());
@@ -262,7 +343,8 @@ private void generateGet(EnumerableRelImplementor implementor,
       break;
     default:
       source = Expressions.call(
-          resultSet_, jdbcGetMethod(primitive), Expressions.constant(i + 1));
+          resultSet_, jdbcGetMethod(primitive, physType.fieldClass(i)),
+          Expressions.constant(i + 1));
     }
     builder.add(
         Expressions.statement(
@@ -325,12 +407,325 @@ private String jdbcGetMethod(Primitive primitive) {
         : "get" + SqlFunctions.initcap(primitive.primitiveName);
   }
 
-  private SqlString generateSql(SqlDialect dialect) {
+  /** Returns the name of the most specific {@link java.sql.ResultSet} getter
+   * for values of a given class; e.g. "getInt" for {@code int} and
+   * "getString" for {@link String}. Specific getters avoid boxing in the
+   * driver, and the cost of {@code getObject} choosing a Java type. */
+  private String jdbcGetMethod(Primitive primitive, Class fieldClass) {
+    if (primitive == null) {
+      if (fieldClass == String.class) {
+        return "getString";
+      }
+      if (fieldClass == BigDecimal.class) {
+        return "getBigDecimal";
+      }
+    }
+    return jdbcGetMethod(primitive);
+  }
+
+  private SqlString generateSql(SqlDialect dialect, RelNode input) {
     final JdbcImplementor jdbcImplementor =
         new JdbcImplementor(dialect,
             (JavaTypeFactory) getCluster().getTypeFactory());
     final JdbcImplementor.Result result =
-        jdbcImplementor.visitChild(0, getInput());
+        jdbcImplementor.visitChild(0, input);
     return result.asStatement().toSqlString(dialect);
   }
+
+  /** If the input is a scan of a partitioned table, optionally with filters
+   * and projects, returns queries that read its partitions; otherwise
+   * returns null.
+   *
+   * <p>Each query is the input with a filter on a range of the partition
+   * column added above the scan. The queries have the same dynamic
+   * parameters as the query that reads the whole input.
+   *
+   * @see JdbcPartitioning */
+  private List<String> generatePartitionSql(SqlDialect dialect,
+      RelNode input, SqlString sqlString) {
+    final JdbcTableScan scan = partitionedScan(input);
+    if (scan == null) {
+      return null;
+    }
+    final JdbcPartitioning partitioning = scan.jdbcTable.partitioning();
+    final RelDataTypeField field =
+        scan.getRowType().getField(partitioning.column, true, false);
+    if (field == null
+        || !JdbcPartitioning.canPartition(field.getType().getSqlTypeName())) {
+      throw new IllegalArgumentException("Cannot partition table '"
+          + scan.jdbcTable.jdbcTableName + "' on column '"
+          + partitioning.column + "'");
+    }
+    final List<Comparable> bounds =
+        scan.jdbcTable.partitionBounds(field.getType().getSqlTypeName());
+    if (bounds.isEmpty()) {
+      return null;
+    }
+    final RexBuilder rexBuilder = getCluster().getRexBuilder();
+    final RexNode ref = rexBuilder.makeInputRef(scan, field.getIndex());
+    final RelDataType type =
+        getCluster().getTypeFactory()
+            .createTypeWithNullability(field.getType(), false);
+    final List<String> sqls = new ArrayList<>();
+    for (int i = 0; i <= bounds.size(); i++) {
+      final List<RexNode> conditions = new ArrayList<>();
+      if (i > 0) {
+        conditions.add(
+            rexBuilder.makeCall(SqlStdOperatorTable.GREATER_THAN_OR_EQUAL, ref,
+                rexBuilder.makeLiteral(bounds.get(i - 1), type, false)));
+      }
+      if (i < bounds.size()) {
+        RexNode condition =
+            rexBuilder.makeCall(SqlStdOperatorTable.LESS_THAN, ref,
+                rexBuilder.makeLiteral(bounds.get(i), type, false));
+        if (i == 0 && field.getType().isNullable()) {
+          // Rows whose partition column is null belong to the first partition
+          condition =
+              rexBuilder.makeCall(SqlStdOperatorTable.OR, condition,
+                  rexBuilder.makeCall(SqlStdOperatorTable.IS_NULL, ref));
+        }
+        conditions.add(condition);
+      }
+      final SqlString partitionSql =
+          generateSql(dialect, addFilter(input, scan, conditions));
+      if (!Objects.equals(partitionSql.getDynamicParameters(),
+          sqlString.getDynamicParameters())) {
+        return null;
+      }
+      sqls.add(partitionSql.getSql());
+    }
+    return sqls;
+  }
+
+  /** Returns a copy of a tree of relational expressions in which literals
+   * that are compared to other expressions are replaced by dynamic
+   * parameters, and populates a map from the parameters' indexes to the
+   * literals that they replace.
+   *
+   * <p>The new parameters are numbered after the query's own dynamic
+   * parameters. Queries that differ only in the values of those literals
+   * generate the same SQL, so the database can re-use its plan. */
+  private static RelNode parameterize(RelNode rel,
+      Map<Integer, RexLiteral> literals) {
+    final int[] maxIndex = {-1};
+    apply(rel, new RexShuttle() {
+      @Override public RexNode visitDynamicParam(RexDynamicParam param) {
+        maxIndex[0] = Math.max(maxIndex[0], param.getIndex());
+        return param;
+      }
+    });
+    return apply(rel, new LiteralParameterizer(maxIndex[0] + 1, literals));
+  }
+
+  /** Returns a copy of a tree of relational expressions in which references
+   * to fields of correlation variables are replaced by dynamic parameters,
+   * and populates a map from the parameters' indexes to the references that
+   * they replace.
+   *
+   * <p>The correlation variables are defined by an enclosing relational
+   * expression, such as
+   * {@link org.apache.calcite.adapter.enumerable.EnumerableKeyPushDownJoin},
+   * which sets their values before it executes the query. */
+  private static RelNode parameterizeCorrelations(RelNode rel,
+      Map<Integer, RexFieldAccess> correlations) {
+    final int[] maxIndex = {-1};
+    final boolean[] correlated = {false};
+    apply(rel, new RexShuttle() {
+      @Override public RexNode visitDynamicParam(RexDynamicParam param) {
+        maxIndex[0] = Math.max(maxIndex[0], param.getIndex());
+        return param;
+      }
+
+      @Override public RexNode visitCorrelVariable(RexCorrelVariable variable) {
+        correlated[0] = true;
+        return variable;
+      }
+    });
+    if (!correlated[0]) {
+      return rel;
+    }
+    return apply(rel, new RexShuttle() {
+      int nextIndex = maxIndex[0] + 1;
+
+      @Override public RexNode visitFieldAccess(RexFieldAccess fieldAccess) {
+        if (!(fieldAccess.getReferenceExpr() instanceof RexCorrelVariable)) {
+          return super.visitFieldAccess(fieldAccess);
+        }
+        final int index = nextIndex++;
+        correlations.put(index, fieldAccess);
+        return new RexDynamicParam(fieldAccess.getType(), index);
+      }
+    });
+  }
+
+  /** Applies a shuttle to the expressions of every relational expression in
+   * a tree. */
+  private static RelNode apply(RelNode rel, RexShuttle shuttle) {
+    final List<RelNode> inputs = new ArrayList<>();
+    boolean changed = false;
+    for (RelNode input : rel.getInputs()) {
+      final RelNode input2 = apply(input, shuttle);
+      inputs.add(input2);
+      changed |= input2 != input;
+    }
+    if (changed) {
+      rel = rel.copy(rel.getTraitSet(), inputs);
+    }
+    return rel.accept(shuttle);
+  }
+
+  /** Returns an expression for the value to which a parameter that replaces
+   * a literal is set. */
+  private static Expression literalValue(RexLiteral literal) {
+    switch (literal.getType().getSqlTypeName()) {
+    case CHAR:
+    case VARCHAR:
+      return Expressions.constant(literal.getValueAs(String.class));
+    case BOOLEAN:
+      return Expressions.constant(literal.getValueAs(Boolean.class));
+    case REAL:
+    case FLOAT:
+    case DOUBLE:
+      return Expressions.constant(literal.getValueAs(Double.class));
+    case DATE:
+      return Expressions.call(java.sql.Date.class, "valueOf",
+          Expressions.constant(
+              literal.getValueAs(DateString.class).toString()));
+    case TIMESTAMP:
+      return Expressions.call(Timestamp.class, "valueOf",
+          Expressions.constant(
+              literal.getValueAs(TimestampString.class).toString()));
+    default:
+      return Expressions.constant(literal.getValueAs(BigDecimal.class));
+    }
+  }
+
+  /** Returns an expression for the value to which a parameter that replaces
+   * a field of a correlation variable is set. Converts values of DATE, TIME
+   * and TIMESTAMP fields from their internal representation. */
+  private static Expression correlationValue(
+      EnumerableRelImplementor implementor, BlockBuilder builder,
+      RexFieldAccess fieldAccess) {
+    final RexCorrelVariable variable =
+        (RexCorrelVariable) fieldAccess.getReferenceExpr();
+    final Expression value =
+        implementor.getCorrelVariableGetter(variable.getName())
+            .field(builder, fieldAccess.getField().getIndex(), null);
+    switch (fieldAccess.getType().getSqlTypeName()) {
+    case DATE:
+      return Expressions.call(SqlFunctions.class, "internalToDate", value);
+    case TIME:
+      return Expressions.call(SqlFunctions.class, "internalToTime", value);
+    case TIMESTAMP:
+      return Expressions.call(SqlFunctions.class, "internalToTimestamp",
+          value);
+    default:
+      return Primitive.is(value.getType()) ? Expressions.box(value) : value;
+    }
+  }
+
+  /** Shuttle that replaces literals that are compared to other expressions
+   * by dynamic parameters. */
+  private static class LiteralParameterizer extends RexShuttle {
+    private final Map<Integer, RexLiteral> literals;
+    private int nextIndex;
+
+    LiteralParameterizer(int firstIndex, Map<Integer, RexLiteral> literals) {
+      this.nextIndex = firstIndex;
+      this.literals = literals;
+    }
+
+    @Override public RexNode visitCall(RexCall call) {
+      final RexNode node = super.visitCall(call);
+      if (!node.isA(SqlKind.COMPARISON)) {
+        return node;
+      }
+      final List<RexNode> operands = ((RexCall) node).getOperands();
+      final RexNode left = operands.get(0);
+      final RexNode right = operands.get(1);
+      if (left instanceof RexLiteral && isExpression(right)) {
+        return ((RexCall) node).clone(node.getType(),
+            ImmutableList.of(param((RexLiteral) left), right));
+      }
+      if (right instanceof RexLiteral && isExpression(left)) {
+        return ((RexCall) node).clone(node.getType(),
+            ImmutableList.of(left, param((RexLiteral) right)));
+      }
+      return node;
+    }
+
+    /** Returns whether an operand is neither a literal nor a parameter, and
+     * therefore tells the database the type of a parameter that it is
+     * compared to. */
+    private static boolean isExpression(RexNode node) {
+      return !(node instanceof RexLiteral)
+          && !(node instanceof RexDynamicParam);
+    }
+
+    private RexNode param(RexLiteral literal) {
+      if (RexLiteral.isNullLiteral(literal)) {
+        return literal;
+      }
+      switch (literal.getType().getSqlTypeName()) {
+      case CHAR:
+      case VARCHAR:
+      case BOOLEAN:
+      case DATE:
+      case TIMESTAMP:
+        break;
+      default:
+        if (!SqlTypeName.NUMERIC_TYPES.contains(
+            literal.getType().getSqlTypeName())) {
+          return literal;
+        }
+      }
+      final int index = nextIndex++;
+      literals.put(index, literal);
+      return new RexDynamicParam(literal.getType(), index);
+    }
+  }
+
+  /** Returns the scan of a partitioned table at the bottom of a chain of
+   * filters and projects, or null. Other relational expressions, such as
+   * aggregates, joins and sorts, cannot be evaluated partition by
+   * partition. */
+  private static JdbcTableScan partitionedScan(RelNode rel) {
+    for (;;) {
+      if (rel instanceof JdbcTableScan) {
+        final JdbcTableScan scan = (JdbcTableScan) rel;
+        return scan.jdbcTable.partitioning() != null ? scan : null;
+      }
+      if (rel instanceof JdbcRules.JdbcFilter
+          || rel instanceof JdbcRules.JdbcProject
+          || rel instanceof JdbcRules.JdbcCalc) {
+        rel = rel.getInput(0);
+      } else {
+        return null;
+      }
+    }
+  }
+
+  /** Returns a copy of a chain of single-input relational expressions
+   * in which the rows of a scan are filtered by a list of conditions. If
+   * there is already a filter directly above the scan, adds the conditions
+   * to it. */
+  private static RelNode addFilter(RelNode rel, JdbcTableScan scan,
+      List<RexNode> conditions) {
+    final RexBuilder rexBuilder = rel.getCluster().getRexBuilder();
+    if (rel == scan) {
+      return new JdbcRules.JdbcFilter(rel.getCluster(), rel.getTraitSet(),
+          scan, RexUtil.composeConjunction(rexBuilder, conditions));
+    }
+    if (rel instanceof JdbcRules.JdbcFilter && rel.getInput(0) == scan) {
+      final JdbcRules.JdbcFilter filter = (JdbcRules.JdbcFilter) rel;
+      return filter.copy(filter.getTraitSet(), scan,
+          RexUtil.composeConjunction(rexBuilder,
+              ImmutableList.<RexNode>builder()
+                  .addAll(conditions)
+                  .add(filter.getCondition())
+                  .build()));
+    }
+    return rel.copy(rel.getTraitSet(),
+        ImmutableList.of(addFilter(rel.getInput(0), scan, conditions)));
+  }
 }
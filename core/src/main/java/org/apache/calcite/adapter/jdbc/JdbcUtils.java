@@ -220,15 +220,32 @@ static class DataSourcePool {
       dataSource.setUsername(key.get(1));
       dataSource.setPassword(key.get(2));
       dataSource.setDriverClassName(key.get(3));
+      final int poolSize = Integer.parseInt(key.get(4));
+      if (poolSize > 0) {
+        dataSource.setMaxTotal(poolSize);
+        dataSource.setMaxIdle(poolSize);
+      }
+      dataSource.setPoolPreparedStatements(Boolean.parseBoolean(key.get(5)));
       return dataSource;
     }
 
     public DataSource get(String url, String driverClassName,
         String username, String password) {
+      return get(url, driverClassName, username, password, 0, false);
+    }
+
+    /** Returns a data source that has a given maximum number of connections
+     * (or the default maximum, if {@code poolSize} is 0), and that
+     * optionally caches prepared statements on each connection. */
+    public DataSource get(String url, String driverClassName,
+        String username, String password, int poolSize,
+        boolean poolPreparedStatements) {
       // Get data source objects from a cache, so that we don't have to sniff
       // out what kind of database they are quite as often.
       final List<String> key =
-          ImmutableNullableList.of(url, username, password, driverClassName);
+          ImmutableNullableList.of(url, username, password, driverClassName,
+              Integer.toString(poolSize),
+              Boolean.toString(poolPreparedStatements));
       return cache.getUnchecked(key);
     }
   }
@@ -78,4 +78,20 @@ public interface CalciteConnectionConfig extends ConnectionConfig {
   boolean typeCoercion();
   /** @see CalciteConnectionProperty#LENIENT_OPERATOR_LOOKUP */
   boolean lenientOperatorLookup();
+  /** @see CalciteConnectionProperty#PARALLELISM */
+  int parallelism();
+  /** @see CalciteConnectionProperty#BATCH_SIZE */
+  int batchSize();
+  /** @see CalciteConnectionProperty#SPILL_THRESHOLD */
+  int spillThreshold();
+  /** @see CalciteConnectionProperty#INTERPRETER_BUFFER_SIZE */
+  int interpreterBufferSize();
+  /** @see CalciteConnectionProperty#RESULT_CACHE_SIZE */
+  int resultCacheSize();
+  /** @see CalciteConnectionProperty#RESULT_CACHE_TTL */
+  long resultCacheTtl();
+  /** @see CalciteConnectionProperty#PLAN_CACHE */
+  boolean planCache();
+  /** @see CalciteConnectionProperty#CARDINALITY_FEEDBACK */
+  boolean cardinalityFeedback();
 }
@@ -199,4 +199,42 @@ public boolean lenientOperatorLookup() {
     return CalciteConnectionProperty.LENIENT_OPERATOR_LOOKUP.wrap(properties)
         .getBoolean();
   }
+
+  public int parallelism() {
+    return CalciteConnectionProperty.PARALLELISM.wrap(properties).getInt();
+  }
+
+  public int batchSize() {
+    return CalciteConnectionProperty.BATCH_SIZE.wrap(properties).getInt();
+  }
+
+  public int spillThreshold() {
+    return CalciteConnectionProperty.SPILL_THRESHOLD.wrap(properties)
+        .getInt();
+  }
+
+  public int interpreterBufferSize() {
+    return CalciteConnectionProperty.INTERPRETER_BUFFER_SIZE.wrap(properties)
+        .getInt();
+  }
+
+  public int resultCacheSize() {
+    return CalciteConnectionProperty.RESULT_CACHE_SIZE.wrap(properties)
+        .getInt();
+  }
+
+  public long resultCacheTtl() {
+    return CalciteConnectionProperty.RESULT_CACHE_TTL.wrap(properties)
+        .getLong();
+  }
+
+  public boolean planCache() {
+    return CalciteConnectionProperty.PLAN_CACHE.wrap(properties)
+        .getBoolean();
+  }
+
+  public boolean cardinalityFeedback() {
+    return CalciteConnectionProperty.CARDINALITY_FEEDBACK.wrap(properties)
+        .getBoolean();
+  }
 }
@@ -159,7 +159,58 @@ public enum CalciteConnectionProperty implements ConnectionProperty {
 
   /** Whether to make create implicit functions if functions do not exist
    * in the operator table, default false. */
-  LENIENT_OPERATOR_LOOKUP("lenientOperatorLookup", Type.BOOLEAN, false, false);
+  LENIENT_OPERATOR_LOOKUP("lenientOperatorLookup", Type.BOOLEAN, false, false),
+
+  /** Number of partitions into which the Enumerable engine may split a scan
+   * of a {@link org.apache.calcite.schema.PartitionableTable} and evaluate
+   * concurrently. The default, 1, evaluates every query on a single
+   * thread. */
+  PARALLELISM("parallelism", Type.NUMBER, 1, false),
+
+  /** Number of rows in each column batch if the planner may use
+   * {@link org.apache.calcite.adapter.batch.BatchConvention} for scans of
+   * a {@link org.apache.calcite.schema.BatchableTable}, calculations,
+   * aggregates and joins. The default, 0, disables batch execution. */
+  BATCH_SIZE("batchSize", Type.NUMBER, 0, false),
+
+  /** Maximum number of rows that the sort, aggregate and hash join operators
+   * of a query may hold in memory, in total; beyond it, they write rows to
+   * temporary files. The default, 0, means no limit. */
+  SPILL_THRESHOLD("spillThreshold", Type.NUMBER, 0, false),
+
+  /** Maximum number of rows buffered between two operators of a plan that is
+   * executed by the {@link org.apache.calcite.interpreter.Interpreter}. If
+   * positive, operators run concurrently, each in its own thread, and stream
+   * rows to each other; a producer waits while its consumer's buffer is
+   * full. The default, 0, runs operators one after another, each
+   * materializing its whole output. */
+  INTERPRETER_BUFFER_SIZE("interpreterBufferSize", Type.NUMBER, 0, false),
+
+  /** Maximum number of rows of query results that the connection caches;
+   * see {@link org.apache.calcite.runtime.ResultCache}. The default, 0,
+   * disables the cache. */
+  RESULT_CACHE_SIZE("resultCacheSize", Type.NUMBER, 0, false),
+
+  /** Time, in milliseconds, after which a cached query result expires. The
+   * default, 0, means that results expire only when their tables change;
+   * because only a {@link org.apache.calcite.schema.VersionedTable} reports
+   * its changes, results of queries that read other tables or call table
+   * functions are then not cached. */
+  RESULT_CACHE_TTL("resultCacheTtl", Type.NUMBER, 0, false),
+
+  /** Whether statements share prepared plans, via the
+   * {@link org.apache.calcite.prepare.PlanCache}, with earlier statements of
+   * this connection and of other connections that use the same root schema
+   * instance. Default false. */
+  PLAN_CACHE("planCache", Type.BOOLEAN, false, false),
+
+  /** Whether the connection records the number of rows that scans, filters
+   * and joins actually produce, and uses those counts when estimating the
+   * cardinality of later queries; see
+   * {@link org.apache.calcite.rel.metadata.CardinalityFeedback}. If
+   * {@link #PLAN_CACHE} is also true, a cached statement is prepared again
+   * after the counts change. Default false. */
+  CARDINALITY_FEEDBACK("cardinalityFeedback", Type.BOOLEAN, false, false);
 
   private final String camelName;
   private final Type type;
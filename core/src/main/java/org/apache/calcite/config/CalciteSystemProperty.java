@@ -121,6 +121,29 @@
   public static final CalciteSystemProperty<Boolean> DUMP_SETS =
       booleanProperty("calcite.volcano.dump.sets", true);
 
+  /**
+   * Maximum number of rule matches that the Volcano planner fires
+   * concurrently. The default, 1, fires one match at a time on the thread
+   * that is planning.
+   */
+  public static final CalciteSystemProperty<Integer> VOLCANO_PARALLELISM =
+      intProperty("calcite.volcano.parallelism", 1);
+
+  /**
+   * Whether the Volcano planner optimizes top-down, pruning alternatives
+   * that cannot be cheaper than the best plan found so far.
+   */
+  public static final CalciteSystemProperty<Boolean> TOPDOWN_OPT =
+      booleanProperty("calcite.planner.topdown.opt", false);
+
+  /**
+   * Whether planners that have no profiler in their context record
+   * statistics in the global {@link org.apache.calcite.plan.RelOptProfiler},
+   * which is also registered as an MXBean.
+   */
+  public static final CalciteSystemProperty<Boolean> PLANNER_PROFILE =
+      booleanProperty("calcite.planner.profile", false);
+
   /**
    * Whether to run integration tests.
    */
@@ -332,6 +355,32 @@
       intProperty("calcite.bindable.cache.concurrencyLevel", 1,
           v -> v >= 1 && v <= Integer.MAX_VALUE);
 
+  /**
+   * The maximum number of prepared statements in the plan cache; see
+   * {@link org.apache.calcite.prepare.PlanCache}.
+   *
+   * <p>A connection uses the cache only if its {@code planCache} connection
+   * property is true. The default value is 1000.</p>
+   *
+   * <p>Setting this property to 0 disables the cache.</p>
+   */
+  public static final CalciteSystemProperty<Integer> PLAN_CACHE_MAX_SIZE =
+      intProperty("calcite.plan.cache.maxSize", 1000, v -> v >= 0 && v <= Integer.MAX_VALUE);
+
+  /**
+   * The maximum number of queries over partitions of a JDBC table that one
+   * scan runs concurrently; see
+   * {@link org.apache.calcite.adapter.jdbc.JdbcPartitioning}.
+   *
+   * <p>Partitions beyond this number wait until a running partition of the
+   * same scan finishes. The limit applies to each scan separately, so scans
+   * do not wait for each other. A scan never runs more partitions at a time
+   * than its schema's connection pool has connections. The default value is
+   * 16.</p>
+   */
+  public static final CalciteSystemProperty<Integer> JDBC_PARTITION_CONCURRENCY =
+      intProperty("calcite.jdbc.partition.concurrency", 16, v -> v >= 1 && v <= Integer.MAX_VALUE);
+
   private static CalciteSystemProperty<Boolean> booleanProperty(String key,
       boolean defaultValue) {
     // Note that "" -> true (convenient for command-lines flags like '-Dflag')
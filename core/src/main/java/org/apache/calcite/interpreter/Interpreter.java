@@ -25,6 +25,7 @@
 import org.apache.calcite.linq4j.Ord;
 import org.apache.calcite.linq4j.TransformedEnumerator;
 import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelOptCostImpl;
 import org.apache.calcite.plan.hep.HepPlanner;
 import org.apache.calcite.plan.hep.HepProgram;
 import org.apache.calcite.plan.hep.HepProgramBuilder;
@@ -40,6 +41,7 @@
 import org.apache.calcite.rex.RexInputRef;
 import org.apache.calcite.rex.RexLiteral;
 import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.runtime.ExecutionStatistics;
 import org.apache.calcite.sql.fun.SqlStdOperatorTable;
 import org.apache.calcite.util.Pair;
 import org.apache.calcite.util.ReflectUtil;
@@ -47,18 +49,22 @@
 import org.apache.calcite.util.ReflectiveVisitor;
 import org.apache.calcite.util.Util;
 
+import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.LinkedHashMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import java.math.BigDecimal;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -66,6 +72,14 @@
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Interpreter.
@@ -73,17 +87,53 @@
  * <p>Contains the context for interpreting relational expressions. In
  * particular it holds working state while the data flow graph is being
  * assembled.
+ *
+ * <p>By default, nodes run one after another, leaves first, and each writes
+ * its whole output into a list that its consumers read. If the data context
+ * contains a {@link DataContext.Variable#INTERPRETER_BUFFER_SIZE buffer size},
+ * nodes are instead pipelined: each runs in its own thread and sends rows
+ * through a bounded queue, and waits while the queue is full. The enumerator
+ * returns the first row as soon as the root node produces it; closing the
+ * enumerator stops all nodes.
  */
 public class Interpreter extends AbstractEnumerable<Object[]>
     implements AutoCloseable {
+  /** Runs the nodes of pipelined interpreters. The threads are daemons, so
+   * that an enumerator that is not closed does not prevent the JVM from
+   * exiting. */
+  private static final ExecutorService EXECUTOR =
+      Executors.newCachedThreadPool(
+          new ThreadFactoryBuilder()
+              .setNameFormat("calcite-interpreter-%d")
+              .setDaemon(true)
+              .build());
+
   private final Map<RelNode, NodeInfo> nodes;
   private final DataContext dataContext;
   private final RelNode rootRel;
+  /** Maximum number of rows buffered between two nodes, or 0 if nodes
+   * materialize their output. */
+  private final int bufferSize;
+  /** Statistics of the operators of the query, or null if the query is not
+   * gathering statistics. */
+  private final ExecutionStatistics statistics;
+  /** If the query is gathering statistics, the ids of the relational
+   * expressions in the plan before it was optimized, keyed by each
+   * expression and by the copies that the optimizer made of it; otherwise
+   * empty. */
+  private final Map<RelNode, Integer> originalIds;
 
   /** Creates an Interpreter. */
   public Interpreter(DataContext dataContext, RelNode rootRel) {
     this.dataContext = Objects.requireNonNull(dataContext);
-    final RelNode rel = optimize(rootRel);
+    final Object bufferSize = dataContext.get(
+        DataContext.Variable.INTERPRETER_BUFFER_SIZE.camelName);
+    this.bufferSize =
+        bufferSize == null ? 0 : Math.max(0, ((Number) bufferSize).intValue());
+    this.statistics = ExecutionStatistics.of(dataContext);
+    this.originalIds =
+        statistics == null ? ImmutableMap.of() : originalIds(rootRel);
+    final RelNode rel = optimize(rootRel, originalIds);
     final CompilerImpl compiler =
         new Nodes.CoreCompiler(this, rootRel.getCluster());
     Pair<RelNode, Map<RelNode, NodeInfo>> pair = compiler.visitRoot(rel);
@@ -91,7 +141,12 @@ public Interpreter(DataContext dataContext, RelNode rootRel) {
     this.nodes = ImmutableMap.copyOf(pair.right);
   }
 
-  private RelNode optimize(RelNode rootRel) {
+  /** Optimizes a plan. If {@code originalIds} is not empty, records the id
+   * of each copy that the planner makes of a relational expression, and
+   * does not merge identical expressions, so that each expression of the
+   * original plan has its own statistics. */
+  private static RelNode optimize(RelNode rootRel,
+      Map<RelNode, Integer> originalIds) {
     final HepProgram hepProgram = new HepProgramBuilder()
         .addRuleInstance(CalcSplitRule.INSTANCE)
         .addRuleInstance(FilterTableScanRule.INSTANCE)
@@ -100,21 +155,58 @@ private RelNode optimize(RelNode rootRel) {
         .addRuleInstance(ProjectTableScanRule.INTERPRETER)
         .addRuleInstance(AggregateReduceFunctionsRule.INSTANCE)
         .build();
-    final HepPlanner planner = new HepPlanner(hepProgram);
+    final HepPlanner planner = originalIds.isEmpty()
+        ? new HepPlanner(hepProgram)
+        : new HepPlanner(hepProgram, null, true, (oldRel, newRel) -> {
+          final Integer id = originalIds.get(oldRel);
+          if (id != null) {
+            originalIds.put(newRel, id);
+          }
+          return null;
+        }, RelOptCostImpl.FACTORY);
     planner.setRoot(rootRel);
     rootRel = planner.findBestExp();
     return rootRel;
   }
 
+  /** Returns the id of each relational expression in a plan. */
+  private static Map<RelNode, Integer> originalIds(RelNode rootRel) {
+    final Map<RelNode, Integer> map = new IdentityHashMap<>();
+    new RelVisitor() {
+      @Override public void visit(RelNode node, int ordinal, RelNode parent) {
+        map.put(node, node.getId());
+        super.visit(node, ordinal, parent);
+      }
+    }.go(rootRel);
+    return map;
+  }
+
+  /** Returns the statistics of a relational expression.
+   *
+   * <p>The optimizer copies relational expressions. So that the statistics
+   * appear in the plan printed by {@code EXPLAIN ANALYZE PLAN}, a copy
+   * records statistics against the expression it was copied from, if the
+   * optimizer did not change it. */
+  private ExecutionStatistics.OperatorStatistics statistics(RelNode rel) {
+    final Integer id = originalIds.get(rel);
+    return statistics.operator(id != null ? id : rel.getId());
+  }
+
   public Enumerator<Object[]> enumerator() {
-    start();
     final NodeInfo nodeInfo = nodes.get(rootRel);
     final Enumerator<Row> rows;
     if (nodeInfo.rowEnumerable != null) {
+      start();
       rows = nodeInfo.rowEnumerable.enumerator();
+    } else if (bufferSize > 0) {
+      final Source source =
+          Iterables.getOnlyElement(nodeInfo.sinks.values()).source();
+      startPipelined();
+      rows = new SourceEnumerator(source);
     } else {
+      start();
       final ArrayDeque<Row> queue =
-          Iterables.getOnlyElement(nodeInfo.sinks.values()).list;
+          ((ListSink) Iterables.getOnlyElement(nodeInfo.sinks.values())).list;
       rows = Linq4j.iterableEnumerator(queue);
     }
 
@@ -130,13 +222,26 @@ private void start() {
     for (Map.Entry<RelNode, NodeInfo> entry : nodes.entrySet()) {
       final NodeInfo nodeInfo = entry.getValue();
       try {
-        nodeInfo.node.run();
+        nodeInfo.runNode();
       } catch (InterruptedException e) {
         e.printStackTrace();
       }
     }
   }
 
+  /** Starts each node in its own thread. Nodes that are connected by an edge
+   * run concurrently, the producer blocking while the consumer's queue is
+   * full. */
+  private void startPipelined() {
+    for (NodeInfo nodeInfo : nodes.values()) {
+      if (nodeInfo.rowEnumerable != null) {
+        // The consumer reads the enumerable directly.
+        continue;
+      }
+      nodeInfo.start();
+    }
+  }
+
   public void close() {
   }
 
@@ -251,13 +356,92 @@ public Object execute(Context context) {
   /** Information about a node registered in the data flow graph. */
   private static class NodeInfo {
     final RelNode rel;
-    final Map<Edge, ListSink> sinks = new LinkedHashMap<>();
+    final Map<Edge, EdgeSink> sinks = new LinkedHashMap<>();
     final Enumerable<Row> rowEnumerable;
+    /** Statistics of the node, or null if the query is not gathering
+     * statistics or the node's consumers read its enumerable directly. */
+    final ExecutionStatistics.OperatorStatistics statistics;
+    /** Sources from which the node reads; closed when the node finishes, if
+     * pipelined. */
+    final List<Source> sources = new ArrayList<>();
     Node node;
-
-    NodeInfo(RelNode rel, Enumerable<Row> rowEnumerable) {
+    /** Number of output edges that have not been closed by their
+     * consumer. */
+    private final AtomicInteger openEdgeCount = new AtomicInteger();
+    private volatile boolean cancelled;
+    private volatile Future<?> future;
+
+    NodeInfo(RelNode rel, Enumerable<Row> rowEnumerable,
+        ExecutionStatistics.OperatorStatistics statistics) {
       this.rel = rel;
       this.rowEnumerable = rowEnumerable;
+      this.statistics = statistics;
+    }
+
+    /** Runs the node in the current thread, recording the time it takes if
+     * the query is gathering statistics. */
+    void runNode() throws InterruptedException {
+      if (statistics == null) {
+        node.run();
+        return;
+      }
+      statistics.opened();
+      final long start = System.nanoTime();
+      try {
+        node.run();
+        statistics.finished();
+      } finally {
+        statistics.addElapsedNanos(System.nanoTime() - start);
+      }
+    }
+
+    /** Runs the node in a pool thread. */
+    void start() {
+      cancelled = false;
+      openEdgeCount.set(sinks.size());
+      future = EXECUTOR.submit(this::run);
+      if (cancelled) {
+        future.cancel(true);
+      }
+    }
+
+    private void run() {
+      try {
+        if (!cancelled) {
+          runNode();
+        }
+        for (EdgeSink sink : sinks.values()) {
+          sink.end();
+        }
+      } catch (Throwable e) {
+        if (!cancelled) {
+          try {
+            for (EdgeSink sink : sinks.values()) {
+              sink.fail(e);
+            }
+          } catch (InterruptedException e2) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      } finally {
+        // Tells the producers that this node will read no more rows; they
+        // stop if no other node reads their output.
+        for (Source source : sources) {
+          source.close();
+        }
+      }
+    }
+
+    /** Called when the consumer of one of this node's output edges will read
+     * no more rows. When there are no consumers left, stops the node. */
+    void edgeClosed() {
+      if (openEdgeCount.decrementAndGet() == 0) {
+        cancelled = true;
+        final Future<?> future = this.future;
+        if (future != null) {
+          future.cancel(true);
+        }
+      }
     }
   }
 
@@ -286,14 +470,28 @@ private static class EnumeratorSource implements Source {
     }
   }
 
+  /** Sink that writes the rows of a node into one of its output edges. */
+  private abstract static class EdgeSink implements Sink {
+    /** Creates a source that reads the rows written to this edge. */
+    abstract Source source();
+
+    /** Tells the consumer that the node has failed. */
+    void fail(Throwable e) throws InterruptedException {
+    }
+  }
+
   /** Implementation of {@link Sink} using a {@link java.util.ArrayDeque}. */
-  private static class ListSink implements Sink {
+  private static class ListSink extends EdgeSink {
     final ArrayDeque<Row> list;
 
     private ListSink(ArrayDeque<Row> list) {
       this.list = list;
     }
 
+    Source source() {
+      return new ListSource(list);
+    }
+
     public void send(Row row) throws InterruptedException {
       list.add(row);
     }
@@ -339,21 +537,25 @@ public Row receive() {
     }
   }
 
-  /** Implementation of {@link Sink} using a {@link java.util.ArrayDeque}. */
+  /** Implementation of {@link Sink} that sends each row to several
+   * sinks. */
   private static class DuplicatingSink implements Sink {
-    private List<ArrayDeque<Row>> queues;
+    private List<Sink> sinks;
 
-    private DuplicatingSink(List<ArrayDeque<Row>> queues) {
-      this.queues = ImmutableList.copyOf(queues);
+    private DuplicatingSink(List<? extends Sink> sinks) {
+      this.sinks = ImmutableList.copyOf(sinks);
     }
 
     public void send(Row row) throws InterruptedException {
-      for (ArrayDeque<Row> queue : queues) {
-        queue.add(row);
+      for (Sink sink : sinks) {
+        sink.send(row);
       }
     }
 
     public void end() throws InterruptedException {
+      for (Sink sink : sinks) {
+        sink.end();
+      }
     }
 
     @SuppressWarnings("deprecation")
@@ -368,6 +570,212 @@ public void end() throws InterruptedException {
     }
   }
 
+  /** Implementation of {@link Sink} that counts the rows that a node writes
+   * before passing them to another sink. */
+  private static class CountingSink implements Sink {
+    private final Sink sink;
+    private final ExecutionStatistics.OperatorStatistics statistics;
+
+    private CountingSink(Sink sink,
+        ExecutionStatistics.OperatorStatistics statistics) {
+      this.sink = sink;
+      this.statistics = statistics;
+    }
+
+    public void send(Row row) throws InterruptedException {
+      statistics.addRows(1);
+      sink.send(row);
+    }
+
+    public void end() throws InterruptedException {
+      sink.end();
+    }
+
+    @SuppressWarnings("deprecation")
+    @Override public void setSourceEnumerable(Enumerable<Row> enumerable)
+        throws InterruptedException {
+      final Enumerator<Row> enumerator = enumerable.enumerator();
+      while (enumerator.moveNext()) {
+        this.send(enumerator.current());
+      }
+      enumerator.close();
+    }
+  }
+
+  /** Implementation of {@link Sink} that sends rows to another thread
+   * through a {@link BlockingQueue}.
+   *
+   * <p>Rows are sent in batches. The queue contains lists of rows, then
+   * {@link #END} or a {@link Throwable}. If the queue is bounded, the
+   * producer waits while it is full. After the consumer has closed its
+   * source, rows are discarded. */
+  private static class QueueSink extends EdgeSink {
+    /** Sent after the last batch. */
+    private static final Object END = new Object();
+
+    /** Maximum number of rows in a batch. */
+    private static final int MAX_BATCH_SIZE = 64;
+
+    private final NodeInfo producer;
+    private final BlockingQueue<Object> queue;
+    private final int batchSize;
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private List<Row> batch;
+    private boolean ended;
+
+    /** Creates a QueueSink.
+     *
+     * @param producer Node that writes into this sink
+     * @param bufferSize Maximum number of rows to buffer, or 0 for no limit
+     */
+    QueueSink(NodeInfo producer, int bufferSize) {
+      this.producer = producer;
+      if (bufferSize > 0) {
+        this.batchSize = Math.min(bufferSize, MAX_BATCH_SIZE);
+        this.queue = new ArrayBlockingQueue<>(bufferSize / batchSize);
+      } else {
+        this.batchSize = MAX_BATCH_SIZE;
+        this.queue = new LinkedBlockingQueue<>();
+      }
+      this.batch = new ArrayList<>(batchSize);
+    }
+
+    public void send(Row row) throws InterruptedException {
+      if (closed.get()) {
+        if (Thread.interrupted()) {
+          throw new InterruptedException();
+        }
+        return;
+      }
+      batch.add(row);
+      if (batch.size() == batchSize) {
+        put(batch);
+        batch = new ArrayList<>(batchSize);
+      }
+    }
+
+    public void end() throws InterruptedException {
+      if (!ended) {
+        ended = true;
+        if (!batch.isEmpty()) {
+          put(batch);
+          batch = ImmutableList.of();
+        }
+        put(END);
+      }
+    }
+
+    @Override void fail(Throwable e) throws InterruptedException {
+      ended = true;
+      put(e);
+    }
+
+    /** Adds an element to the queue, waiting if the queue is full. Does
+     * nothing if the consumer has closed its source; if the consumer closes
+     * while this method is waiting, {@link #close()} makes space. */
+    private void put(Object o) throws InterruptedException {
+      if (!closed.get()) {
+        queue.put(o);
+      }
+    }
+
+    /** Called by the consumer. */
+    void close() {
+      if (closed.compareAndSet(false, true)) {
+        queue.clear();
+        producer.edgeClosed();
+      }
+    }
+
+    @SuppressWarnings("deprecation")
+    @Override public void setSourceEnumerable(Enumerable<Row> enumerable)
+        throws InterruptedException {
+      try (Enumerator<Row> enumerator = enumerable.enumerator()) {
+        while (enumerator.moveNext()) {
+          this.send(enumerator.current());
+        }
+      }
+    }
+
+    Source source() {
+      return new QueueSource(this);
+    }
+  }
+
+  /** Implementation of {@link Source} that reads rows sent by another thread
+   * to a {@link QueueSink}. */
+  private static class QueueSource implements Source {
+    private final QueueSink sink;
+    private Iterator<Row> batch = Collections.emptyIterator();
+    private boolean done;
+
+    QueueSource(QueueSink sink) {
+      this.sink = sink;
+    }
+
+    public Row receive() {
+      for (;;) {
+        if (batch.hasNext()) {
+          return batch.next();
+        }
+        if (done) {
+          return null;
+        }
+        final Object o;
+        try {
+          o = sink.queue.take();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new RuntimeException(e);
+        }
+        if (o == QueueSink.END) {
+          done = true;
+        } else if (o instanceof Throwable) {
+          done = true;
+          Util.throwIfUnchecked((Throwable) o);
+          throw new RuntimeException((Throwable) o);
+        } else {
+          //noinspection unchecked
+          batch = ((List<Row>) o).iterator();
+        }
+      }
+    }
+
+    @Override public void close() {
+      done = true;
+      batch = Collections.emptyIterator();
+      sink.close();
+    }
+  }
+
+  /** Enumerator that reads rows from a {@link Source}. Closing the
+   * enumerator closes the source. */
+  private static class SourceEnumerator implements Enumerator<Row> {
+    private final Source source;
+    private Row current;
+
+    SourceEnumerator(Source source) {
+      this.source = source;
+    }
+
+    public Row current() {
+      return current;
+    }
+
+    public boolean moveNext() {
+      current = source.receive();
+      return current != null;
+    }
+
+    public void reset() {
+      throw new UnsupportedOperationException();
+    }
+
+    public void close() {
+      source.close();
+    }
+  }
+
   /**
    * Walks over a tree of {@link org.apache.calcite.rel.RelNode} and, for each,
    * creates a {@link org.apache.calcite.interpreter.Node} that can be
@@ -393,6 +801,9 @@ static class CompilerImpl extends RelVisitor
     final Map<RelNode, NodeInfo> nodes = new LinkedHashMap<>();
     final Map<RelNode, List<RelNode>> relInputs = new HashMap<>();
     final Multimap<RelNode, Edge> outEdges = LinkedHashMultimap.create();
+    /** Sources created for each relational expression's node; moved into
+     * its {@link NodeInfo} when the node has been created. */
+    final Multimap<RelNode, Source> relSources = ArrayListMultimap.create();
 
     private static final String REWRITE_METHOD_NAME = "rewrite";
     private static final String VISIT_METHOD_NAME = "visit";
@@ -466,6 +877,7 @@ Pair<RelNode, Map<RelNode, NodeInfo>> visitRoot(RelNode p) {
       final NodeInfo nodeInfo = nodes.get(p);
       assert nodeInfo != null;
       nodeInfo.node = node;
+      nodeInfo.sources.addAll(relSources.removeAll(p));
       if (inputs != null) {
         for (int i = 0; i < inputs.size(); i++) {
           final RelNode input = inputs.get(i);
@@ -508,12 +920,17 @@ public Source source(RelNode rel, int ordinal) {
         throw new AssertionError("should be registered: " + rel);
       }
       if (nodeInfo.rowEnumerable != null) {
-        return new EnumeratorSource(nodeInfo.rowEnumerable.enumerator());
+        final Source source =
+            new EnumeratorSource(nodeInfo.rowEnumerable.enumerator());
+        relSources.put(rel, source);
+        return source;
       }
       assert nodeInfo.sinks.size() == edges.size();
-      final ListSink sink = nodeInfo.sinks.get(edge);
+      final EdgeSink sink = nodeInfo.sinks.get(edge);
       if (sink != null) {
-        return new ListSource(sink.list);
+        final Source source = sink.source();
+        relSources.put(rel, source);
+        return source;
       }
       throw new IllegalStateException(
           "Got a sink " + sink + " to which there is no match source type!");
@@ -534,32 +951,51 @@ public Sink sink(RelNode rel) {
           : edges;
       NodeInfo nodeInfo = nodes.get(rel);
       if (nodeInfo == null) {
-        nodeInfo = new NodeInfo(rel, null);
+        nodeInfo = new NodeInfo(rel, null,
+            interpreter.statistics == null
+                ? null
+                : interpreter.statistics(rel));
         nodes.put(rel, nodeInfo);
-        for (Edge edge : edges2) {
-          nodeInfo.sinks.put(edge, new ListSink(new ArrayDeque<>()));
-        }
-      } else {
-        for (Edge edge : edges2) {
-          if (nodeInfo.sinks.containsKey(edge)) {
-            continue;
-          }
-          nodeInfo.sinks.put(edge, new ListSink(new ArrayDeque<>()));
+      }
+      for (Edge edge : edges2) {
+        if (nodeInfo.sinks.containsKey(edge)) {
+          continue;
         }
+        nodeInfo.sinks.put(edge, edgeSink(nodeInfo, edges2.size()));
       }
+      final Sink sink;
       if (edges.size() == 1) {
-        return Iterables.getOnlyElement(nodeInfo.sinks.values());
+        sink = Iterables.getOnlyElement(nodeInfo.sinks.values());
       } else {
-        final List<ArrayDeque<Row>> queues = new ArrayList<>();
-        for (ListSink sink : nodeInfo.sinks.values()) {
-          queues.add(sink.list);
-        }
-        return new DuplicatingSink(queues);
+        sink = new DuplicatingSink(
+            ImmutableList.copyOf(nodeInfo.sinks.values()));
+      }
+      if (nodeInfo.statistics != null) {
+        return new CountingSink(sink, nodeInfo.statistics);
+      }
+      return sink;
+    }
+
+    /** Creates a sink for one of the output edges of a node.
+     *
+     * <p>If the interpreter is pipelined and the node has several consumers,
+     * the queues are unbounded: the consumers may read at different rates
+     * (for instance a join that reads both of its inputs from the same
+     * node), and a bounded queue could cause deadlock. */
+    private EdgeSink edgeSink(NodeInfo nodeInfo, int edgeCount) {
+      final int bufferSize = interpreter.bufferSize;
+      if (bufferSize > 0) {
+        return new QueueSink(nodeInfo, edgeCount == 1 ? bufferSize : 0);
       }
+      return new ListSink(new ArrayDeque<>());
     }
 
     public void enumerable(RelNode rel, Enumerable<Row> rowEnumerable) {
-      NodeInfo nodeInfo = new NodeInfo(rel, rowEnumerable);
+      if (interpreter.statistics != null) {
+        rowEnumerable =
+            interpreter.statistics(rel).instrument(rowEnumerable);
+      }
+      NodeInfo nodeInfo = new NodeInfo(rel, rowEnumerable, null);
       nodes.put(rel, nodeInfo);
     }
 
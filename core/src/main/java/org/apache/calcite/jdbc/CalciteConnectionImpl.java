@@ -44,9 +44,13 @@
 import org.apache.calcite.materialize.Lattice;
 import org.apache.calcite.materialize.MaterializationService;
 import org.apache.calcite.prepare.CalciteCatalogReader;
+import org.apache.calcite.prepare.PlanCache;
+import org.apache.calcite.rel.metadata.CardinalityFeedback;
 import org.apache.calcite.rel.type.DelegatingTypeSystem;
 import org.apache.calcite.rel.type.RelDataTypeSystem;
 import org.apache.calcite.runtime.Hook;
+import org.apache.calcite.runtime.ResultCache;
+import org.apache.calcite.runtime.SpillBudget;
 import org.apache.calcite.schema.SchemaPlus;
 import org.apache.calcite.schema.SchemaVersion;
 import org.apache.calcite.schema.Schemas;
@@ -97,6 +101,13 @@
 
   final CalciteSchema rootSchema;
   final Function0<CalcitePrepare> prepareFactory;
+  /** Cache of query results, or null. */
+  final ResultCache resultCache;
+  /** Row counts observed by queries, or null. */
+  final CardinalityFeedback cardinalityFeedback;
+  /** Whether the connection created its root schema, rather than being
+   * given it by the caller. */
+  private final boolean ownsRootSchema;
   final CalciteServer server = new CalciteServerImpl();
 
   // must be package-protected
@@ -141,10 +152,17 @@ protected CalciteConnectionImpl(Driver driver, AvaticaFactory factory,
             ? rootSchema
             : CalciteSchema.createRootSchema(true));
     Preconditions.checkArgument(this.rootSchema.isRoot(), "must be root schema");
+    this.ownsRootSchema = rootSchema == null;
     this.properties.put(InternalProperty.CASE_SENSITIVE, cfg.caseSensitive());
     this.properties.put(InternalProperty.UNQUOTED_CASING, cfg.unquotedCasing());
     this.properties.put(InternalProperty.QUOTED_CASING, cfg.quotedCasing());
     this.properties.put(InternalProperty.QUOTING, cfg.quoting());
+    this.resultCache = cfg.resultCacheSize() > 0
+        ? new ResultCache(cfg.resultCacheSize(), cfg.resultCacheTtl())
+        : null;
+    this.cardinalityFeedback = cfg.cardinalityFeedback()
+        ? new CardinalityFeedback()
+        : null;
   }
 
   CalciteMetaImpl meta() {
@@ -184,9 +202,23 @@ void init() {
         }
       });
     }
+    if (iface == ResultCache.class && resultCache != null) {
+      return iface.cast(resultCache);
+    }
+    if (iface == CardinalityFeedback.class && cardinalityFeedback != null) {
+      return iface.cast(cardinalityFeedback);
+    }
     return super.unwrap(iface);
   }
 
+  @Override public void close() throws SQLException {
+    super.close();
+    if (ownsRootSchema) {
+      // No other connection can use this connection's statements
+      PlanCache.instance().invalidate(rootSchema);
+    }
+  }
+
   @Override public CalciteStatement createStatement(int resultSetType,
       int resultSetConcurrency, int resultSetHoldability) throws SQLException {
     return (CalciteStatement) super.createStatement(resultSetType,
@@ -228,6 +260,15 @@ <T> CalcitePrepare.CalciteSignature<T> parseQuery(
     CalcitePrepare.Dummy.push(prepareContext);
     try {
       final CalcitePrepare prepare = prepareFactory.apply();
+      if (query.sql != null && config().planCache()) {
+        final PlanCache.Key key =
+            PlanCache.key(rootSchema, cardinalityFeedback,
+                prepareContext.getDefaultSchemaPath(), info, prepareFactory,
+                maxRowCount, query.sql);
+        return PlanCache.instance().prepare(key, rootSchema, () ->
+            prepare.prepareSql(prepareContext, query, Object[].class,
+                maxRowCount));
+      }
       return prepare.prepareSql(prepareContext, query, Object[].class,
           maxRowCount);
     } finally {
@@ -435,6 +476,24 @@ static class DataContextImpl implements DataContext {
           .put(Variable.STDIN.camelName, streamHolder.get()[0])
           .put(Variable.STDOUT.camelName, streamHolder.get()[1])
           .put(Variable.STDERR.camelName, streamHolder.get()[2]);
+      final int spillThreshold = connection.config().spillThreshold();
+      if (spillThreshold > 0) {
+        builder.put(Variable.SPILL_BUDGET.camelName,
+            new SpillBudget(spillThreshold));
+      }
+      if (connection.resultCache != null) {
+        builder.put(Variable.RESULT_CACHE.camelName, connection.resultCache);
+      }
+      if (connection.cardinalityFeedback != null) {
+        builder.put(Variable.CARDINALITY_FEEDBACK.camelName,
+            connection.cardinalityFeedback);
+      }
+      final int interpreterBufferSize =
+          connection.config().interpreterBufferSize();
+      if (interpreterBufferSize > 0) {
+        builder.put(Variable.INTERPRETER_BUFFER_SIZE.camelName,
+            interpreterBufferSize);
+      }
       for (Map.Entry<String, Object> entry : parameters.entrySet()) {
         Object e = entry.getValue();
         if (e == null) {
@@ -351,6 +351,17 @@ public CalciteSignature(String sql,
       this.bindable = bindable;
     }
 
+    /** Returns a copy of this signature that executes against a given root
+     * schema, or this signature if the root schema is the same. */
+    public CalciteSignature<T> withRootSchema(CalciteSchema rootSchema) {
+      if (rootSchema == this.rootSchema) {
+        return this;
+      }
+      return new CalciteSignature<>(sql, parameters, internalParameters,
+          rowType, columns, cursorFactory, rootSchema, collationList,
+          maxRowCount, bindable, statementType);
+    }
+
     public Enumerable<T> enumerable(DataContext dataContext) {
       Enumerable<T> enumerable = bindable.bind(dataContext);
       if (maxRowCount >= 0) {
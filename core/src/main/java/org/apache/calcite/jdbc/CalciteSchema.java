@@ -49,6 +49,7 @@
 import java.util.NavigableSet;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.sql.DataSource;
 
 /**
@@ -71,6 +72,9 @@ public abstract class CalciteSchema {
   protected final NameMap<FunctionEntry> nullaryFunctionMap;
   protected final NameMap<CalciteSchema> subSchemaMap;
   private List<? extends List<String>> path;
+  /** Number of times that this tree of schemas has been modified; used only
+   * in the root schema. */
+  private final AtomicLong modificationCount = new AtomicLong();
 
   protected CalciteSchema(CalciteSchema parent, Schema schema,
       String name, NameMap<CalciteSchema> subSchemaMap,
@@ -193,6 +197,7 @@ public TableEntry add(String tableName, Table table,
     final TableEntryImpl entry =
         new TableEntryImpl(this, tableName, table, sqls);
     tableMap.put(tableName, entry);
+    modified();
     return entry;
   }
 
@@ -201,6 +206,7 @@ public TypeEntry add(String name, RelProtoDataType type) {
     final TypeEntry entry =
         new TypeEntryImpl(this, name, type);
     typeMap.put(name, entry);
+    modified();
     return entry;
   }
 
@@ -212,6 +218,7 @@ private FunctionEntry add(String name, Function function) {
     if (function.getParameters().isEmpty()) {
       nullaryFunctionMap.put(name, entry);
     }
+    modified();
     return entry;
   }
 
@@ -221,9 +228,26 @@ private LatticeEntry add(String name, Lattice lattice) {
     }
     final LatticeEntryImpl entry = new LatticeEntryImpl(this, name, lattice);
     latticeMap.put(name, entry);
+    modified();
     return entry;
   }
 
+  /** Returns the number of times that a table, sub-schema, type, function
+   * or lattice has been explicitly added to or removed from any schema in
+   * the same tree as this schema. Changes that the underlying {@link Schema}
+   * objects make to their implicit members are not counted. */
+  public long getModificationCount() {
+    return root().modificationCount.get();
+  }
+
+  /** Records that an explicit member of this schema has been added or
+   * removed, or that the statistics of one of its tables have changed, so
+   * that plans that were prepared against the schema tree are no longer
+   * used. */
+  public void modified() {
+    root().modificationCount.incrementAndGet();
+  }
+
   public CalciteSchema root() {
     for (CalciteSchema schema = this;;) {
       if (schema.parent == null) {
@@ -524,12 +548,12 @@ public static CalciteSchema createRootSchema(boolean addMetadataSchema,
 
   @Experimental
   public boolean removeSubSchema(String name) {
-    return subSchemaMap.remove(name) != null;
+    return removed(subSchemaMap.remove(name) != null);
   }
 
   @Experimental
   public boolean removeTable(String name) {
-    return tableMap.remove(name) != null;
+    return removed(tableMap.remove(name) != null);
   }
 
   @Experimental
@@ -539,12 +563,19 @@ public boolean removeFunction(String name) {
       return false;
     }
     functionMap.remove(name, remove);
-    return true;
+    return removed(true);
   }
 
   @Experimental
   public boolean removeType(String name) {
-    return typeMap.remove(name) != null;
+    return removed(typeMap.remove(name) != null);
+  }
+
+  private boolean removed(boolean removed) {
+    if (removed) {
+      modified();
+    }
+    return removed;
   }
 
   /**
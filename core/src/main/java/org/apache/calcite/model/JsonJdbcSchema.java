@@ -16,6 +16,8 @@
  */
 package org.apache.calcite.model;
 
+import java.util.Map;
+
 /**
  * JSON object representing a schema that maps to a JDBC database.
  *
@@ -69,6 +71,71 @@ public class JsonJdbcSchema extends JsonSchema {
    */
   public String jdbcSchema;
 
+  /** Number of rows to fetch in each round trip to the database.
+   *
+   * <p>Optional. If not specified, uses the JDBC driver's default.
+   */
+  public Integer fetchSize;
+
+  /** Whether to read the rows of a query incrementally.
+   *
+   * <p>Optional, default false. If true, and {@link #fetchSize} is not
+   * specified, uses a fetch size that suits the dialect of the database.
+   */
+  public Boolean streaming;
+
+  /** How to split scans of tables into partitions that are read
+   * concurrently, keyed by table name.
+   *
+   * <p>Optional. Each value is a map with a "column" entry, and either a
+   * "count" entry (the number of partitions, whose bounds are computed from
+   * the minimum and maximum values of the column) or a "bounds" entry (a
+   * list of values that separate the partitions).
+   *
+   * @see org.apache.calcite.adapter.jdbc.JdbcPartitioning
+   */
+  public Map<String, Object> partitions;
+
+  /** Maximum number of connections in the pool that the schema creates from
+   * {@link #jdbcUrl}.
+   *
+   * <p>Optional. If not specified, uses the pool's default.
+   */
+  public Integer poolSize;
+
+  /** Whether the connection pool caches prepared statements.
+   *
+   * <p>Optional, default false.
+   */
+  public Boolean poolPreparedStatements;
+
+  /** Whether to send literals in comparisons to the database as parameters
+   * of a prepared statement, so that queries that differ only in those
+   * values have the same SQL text.
+   *
+   * <p>Optional, default false.
+   */
+  public Boolean parameterize;
+
+  /** Number of milliseconds for which to cache the definitions of tables
+   * and columns, in a cache that is shared with other schemas on the same
+   * data source; negative to cache them until the JVM exits.
+   *
+   * <p>Optional. If not specified, or 0, the schema reads the definitions of
+   * all tables when it is first used, and again whenever the schema cache
+   * is refreshed.
+   *
+   * @see org.apache.calcite.adapter.jdbc.JdbcMetadataCache
+   */
+  public Long metadataCacheTtl;
+
+  /** Name of a file in which to persist the metadata cache, so that it
+   * survives restarts.
+   *
+   * <p>Optional. Ignored unless {@link #metadataCacheTtl} is specified.
+   */
+  public String metadataCacheFile;
+
   @Override public void accept(ModelHandler handler) {
     handler.visit(this);
   }
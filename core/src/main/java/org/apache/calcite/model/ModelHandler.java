@@ -16,6 +16,8 @@
  */
 package org.apache.calcite.model;
 
+import org.apache.calcite.adapter.jdbc.JdbcMetadataCache;
+import org.apache.calcite.adapter.jdbc.JdbcPartitioning;
 import org.apache.calcite.adapter.jdbc.JdbcSchema;
 import org.apache.calcite.avatica.AvaticaUtils;
 import org.apache.calcite.jdbc.CalciteConnection;
@@ -40,6 +42,7 @@
 import org.apache.calcite.schema.impl.TableMacroImpl;
 import org.apache.calcite.schema.impl.ViewTable;
 import org.apache.calcite.sql.SqlDialectFactory;
+import org.apache.calcite.sql.SqlDialectFactoryImpl;
 import org.apache.calcite.sql.type.SqlTypeName;
 import org.apache.calcite.util.Pair;
 import org.apache.calcite.util.Util;
@@ -332,18 +335,31 @@ public void visit(JsonJdbcSchema jsonSchema) {
         JdbcSchema.dataSource(jsonSchema.jdbcUrl,
             jsonSchema.jdbcDriver,
             jsonSchema.jdbcUser,
-            jsonSchema.jdbcPassword);
-    final JdbcSchema schema;
+            jsonSchema.jdbcPassword,
+            jsonSchema.poolSize == null ? 0 : jsonSchema.poolSize,
+            Boolean.TRUE.equals(jsonSchema.poolPreparedStatements));
+    final SqlDialectFactory factory;
     if (jsonSchema.sqlDialectFactory == null || jsonSchema.sqlDialectFactory.isEmpty()) {
-      schema =
-          JdbcSchema.create(parentSchema, jsonSchema.name, dataSource,
-              jsonSchema.jdbcCatalog, jsonSchema.jdbcSchema);
+      factory = SqlDialectFactoryImpl.INSTANCE;
     } else {
-      SqlDialectFactory factory = AvaticaUtils.instantiatePlugin(
+      factory = AvaticaUtils.instantiatePlugin(
           SqlDialectFactory.class, jsonSchema.sqlDialectFactory);
-      schema =
-          JdbcSchema.create(parentSchema, jsonSchema.name, dataSource,
-              factory, jsonSchema.jdbcCatalog, jsonSchema.jdbcSchema);
+    }
+    JdbcSchema schema =
+        JdbcSchema.create(parentSchema, jsonSchema.name, dataSource,
+            factory, jsonSchema.jdbcCatalog, jsonSchema.jdbcSchema,
+            jsonSchema.fetchSize == null ? 0 : jsonSchema.fetchSize,
+            Boolean.TRUE.equals(jsonSchema.streaming),
+            JdbcPartitioning.of(jsonSchema.partitions),
+            Boolean.TRUE.equals(jsonSchema.parameterize));
+    if (jsonSchema.metadataCacheTtl != null
+        && jsonSchema.metadataCacheTtl != 0) {
+      schema = schema.withMetadataCache(
+          JdbcMetadataCache.of(dataSource, jsonSchema.jdbcCatalog,
+              jsonSchema.jdbcSchema, jsonSchema.metadataCacheTtl,
+              jsonSchema.metadataCacheFile == null
+                  ? null
+                  : new File(jsonSchema.metadataCacheFile)));
     }
     final SchemaPlus schemaPlus = parentSchema.add(jsonSchema.name, schema);
     populateSchema(jsonSchema, schemaPlus);
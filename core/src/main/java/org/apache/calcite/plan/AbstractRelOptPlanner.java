@@ -74,6 +74,9 @@ public abstract class AbstractRelOptPlanner implements RelOptPlanner {
 
   private RexExecutor executor;
 
+  /** Profiler, or null if this planner is not being profiled. */
+  private final RelOptProfiler profiler;
+
   //~ Constructors -----------------------------------------------------------
 
   /**
@@ -91,6 +94,7 @@ protected AbstractRelOptPlanner(RelOptCostFactory costFactory,
     final CancelFlag cancelFlag = context.unwrap(CancelFlag.class);
     this.cancelFlag = cancelFlag != null ? cancelFlag.atomicBoolean
         : new AtomicBoolean();
+    this.profiler = RelOptProfiler.of(context);
 
     // Add abstract RelNode classes. No RelNodes will ever be registered with
     // these types, but some operands may use them.
@@ -429,6 +433,12 @@ protected MulticastRelOptListener getListener() {
     return listener;
   }
 
+  /** Returns the profiler that is recording statistics about this planner,
+   * or null. */
+  public RelOptProfiler getProfiler() {
+    return profiler;
+  }
+
   /** Returns sub-classes of relational expression. */
   public Iterable<Class<? extends RelNode>> subClasses(
       final Class<? extends RelNode> clazz) {
@@ -33,6 +33,7 @@
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
 
@@ -54,6 +55,13 @@ public class RelOptCluster {
   private HintStrategyTable hintStrategies;
   private final RelTraitSet emptyTraitSet;
   private RelMetadataQuery mq;
+  /** If not null, the {@link RelMetadataQuery} of each thread other than
+   * {@link #mqOwner}; see {@link #setMetadataQueryPerThread}. The queries
+   * are held here, not in thread-local variables, so that they are released
+   * as soon as the cluster stops using them, even if their threads live on
+   * in a pool. */
+  private volatile Map<Thread, RelMetadataQuery> threadMqs;
+  private volatile Thread mqOwner;
   private Supplier<RelMetadataQuery> mqSupplier;
 
   //~ Constructors -----------------------------------------------------------
@@ -174,6 +182,14 @@ public void setMetadataQuerySupplier(Supplier<RelMetadataQuery> mqSupplier) {
    * for example if you are in a {@link RelOptRule#onMatch(RelOptRuleCall)}
    * method, then use {@link RelOptRuleCall#getMetadataQuery()} instead. */
   public RelMetadataQuery getMetadataQuery() {
+    final Map<Thread, RelMetadataQuery> threadMqs = this.threadMqs;
+    if (threadMqs != null && Thread.currentThread() != mqOwner) {
+      return threadMqs.computeIfAbsent(Thread.currentThread(), thread -> {
+        final RelMetadataQuery threadMq = this.mqSupplier.get();
+        mq.addFollower(threadMq);
+        return threadMq;
+      });
+    }
     if (mq == null) {
       mq = this.mqSupplier.get();
     }
@@ -192,7 +208,40 @@ public Supplier<RelMetadataQuery> getMetadataQuerySupplier() {
    * invalid. Typically invoked from {@link RelOptRuleCall#transformTo}.
    */
   public void invalidateMetadataQuery() {
-    mq = null;
+    if (threadMqs != null) {
+      // Threads' queries follow the shared query; start afresh
+      mq.removeFollowers();
+      mq = this.mqSupplier.get();
+      threadMqs = new ConcurrentHashMap<>();
+    } else {
+      mq = null;
+    }
+  }
+
+  /**
+   * Sets whether threads other than the calling thread should use their own
+   * {@link RelMetadataQuery}.
+   *
+   * <p>{@code RelMetadataQuery} is not thread-safe, so a planner that fires
+   * rules on several threads enables this for the duration of planning. The
+   * calling thread keeps using the shared instance. Each other thread gets a
+   * fresh instance the first time it calls {@link #getMetadataQuery()}, and
+   * keeps it until this is disabled, when the cluster releases it; its cache
+   * is cleared whenever the shared instance's cache is cleared (see
+   * {@link RelMetadataQuery#addFollower}), so the calling thread must not
+   * clear the cache while other threads are using metadata. */
+  public void setMetadataQueryPerThread(boolean perThread) {
+    if (perThread) {
+      getMetadataQuery();
+      this.mqOwner = Thread.currentThread();
+      this.threadMqs = new ConcurrentHashMap<>();
+    } else {
+      if (mq != null) {
+        mq.removeFollowers();
+      }
+      this.threadMqs = null;
+      this.mqOwner = null;
+    }
   }
 
   /**
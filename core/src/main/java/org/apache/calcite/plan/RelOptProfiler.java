@@ -0,0 +1,384 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.plan;
+
+import org.apache.calcite.config.CalciteSystemProperty;
+
+import com.google.common.collect.ImmutableList;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Collects statistics about the work done by planners: for each rule, how
+ * many times it was attempted and fired, how many of the calls that fired
+ * produced nothing, and how long it ran; and how the planners' memos grew.
+ *
+ * <p>A planner uses the profiler in its {@link Context}, if there is one,
+ * otherwise the {@link #global() global profiler} if the
+ * {@code calcite.planner.profile} system property is set, otherwise none.
+ * When there is no profiler the overhead is a null check per rule call.
+ *
+ * <p>What counts as an attempt depends on the planner.
+ * {@link org.apache.calcite.plan.volcano.VolcanoPlanner} attempts each rule
+ * match that it takes from its queue, and fires it unless an operand has
+ * since been pruned or merged into another set.
+ * {@link org.apache.calcite.plan.hep.HepPlanner} attempts each rule on each
+ * vertex that it visits, and fires it if the rule's operands match.
+ *
+ * <p>Statistics are keyed by rule description, so the statistics of
+ * distinct instances of the same rule in different planners are combined.
+ * The profiler is thread-safe; several planners may share one.
+ */
+public class RelOptProfiler implements RelOptProfilerMXBean {
+  /** Name under which the {@link #global() global profiler} is registered
+   * with the platform MBean server. */
+  public static final String OBJECT_NAME =
+      "org.apache.calcite:type=RelOptProfiler";
+
+  /** Maximum number of memo samples that are retained. */
+  private static final int MAX_MEMO_SAMPLES = 1_000;
+
+  private static RelOptProfiler global;
+
+  private final int sampleInterval;
+  private final ConcurrentMap<String, RuleCounter> ruleCounters =
+      new ConcurrentHashMap<>();
+  private final AtomicInteger runCount = new AtomicInteger();
+  private final LongAdder runNanos = new LongAdder();
+  private final Deque<MemoSample> memoSamples = new ArrayDeque<>();
+
+  /** Creates a profiler that samples each planner's memo every 100 rule
+   * calls. */
+  public RelOptProfiler() {
+    this(100);
+  }
+
+  /** Creates a profiler.
+   *
+   * @param sampleInterval Number of rule calls between samples of a
+   *                       planner's memo
+   */
+  public RelOptProfiler(int sampleInterval) {
+    if (sampleInterval <= 0) {
+      throw new IllegalArgumentException("sample interval must be positive");
+    }
+    this.sampleInterval = sampleInterval;
+  }
+
+  /** Returns the global profiler, creating it and registering it with the
+   * platform MBean server if this is the first call. */
+  public static synchronized RelOptProfiler global() {
+    if (global == null) {
+      global = new RelOptProfiler();
+      try {
+        ManagementFactory.getPlatformMBeanServer()
+            .registerMBean(global, new ObjectName(OBJECT_NAME));
+      } catch (JMException e) {
+        // Another copy of Calcite in this JVM (say in a different class
+        // loader) has already registered; this profiler is still usable.
+      }
+    }
+    return global;
+  }
+
+  /** Returns the profiler that a planner with a given context should use,
+   * or null. */
+  static RelOptProfiler of(Context context) {
+    final RelOptProfiler profiler = context.unwrap(RelOptProfiler.class);
+    if (profiler != null) {
+      return profiler;
+    }
+    return CalciteSystemProperty.PLANNER_PROFILE.value() ? global() : null;
+  }
+
+  /** Called by a planner when it starts running. */
+  public Run startRun(RelOptPlanner planner) {
+    return new Run(planner.getClass().getSimpleName());
+  }
+
+  /** Called when a planner attempts a rule. */
+  public void ruleAttempted(RelOptRule rule) {
+    counter(rule).attempts.increment();
+  }
+
+  /** Called when a rule has fired.
+   *
+   * @param rule Rule
+   * @param nanos Time spent in {@link RelOptRule#onMatch}, in nanoseconds
+   * @param productionCount Number of expressions the rule produced
+   */
+  public void ruleFired(RelOptRule rule, long nanos, int productionCount) {
+    final RuleCounter counter = counter(rule);
+    counter.fires.increment();
+    counter.nanos.add(nanos);
+    counter.productions.add(productionCount);
+    if (productionCount == 0) {
+      counter.emptyFires.increment();
+    }
+  }
+
+  private RuleCounter counter(RelOptRule rule) {
+    return ruleCounters.computeIfAbsent(rule.toString(), RuleCounter::new);
+  }
+
+  public long getRunCount() {
+    return runCount.get();
+  }
+
+  public long getRunMillis() {
+    return runNanos.sum() / 1_000_000L;
+  }
+
+  public List<RuleStatistics> getRuleStatistics() {
+    final List<RuleStatistics> list = new ArrayList<>();
+    for (RuleCounter counter : ruleCounters.values()) {
+      list.add(counter.snapshot());
+    }
+    list.sort(
+        Comparator.comparingLong(RuleStatistics::getNanos).reversed()
+            .thenComparing(RuleStatistics::getRule));
+    return list;
+  }
+
+  public List<MemoSample> getMemoSamples() {
+    synchronized (memoSamples) {
+      return ImmutableList.copyOf(memoSamples);
+    }
+  }
+
+  public String getReport() {
+    final StringWriter sw = new StringWriter();
+    final PrintWriter pw = new PrintWriter(sw);
+    pw.printf("%d runs, %d ms%n", getRunCount(), getRunMillis());
+    pw.printf("%10s %10s %10s %12s %10s  %s%n", "Attempts", "Fires",
+        "Empty", "Productions", "Time (ms)", "Rule");
+    for (RuleStatistics s : getRuleStatistics()) {
+      pw.printf("%10d %10d %10d %12d %10.3f  %s%n", s.getAttempts(),
+          s.getFires(), s.getEmptyFires(), s.getProductions(),
+          s.getNanos() / 1_000_000d, s.getRule());
+    }
+    pw.flush();
+    return sw.toString();
+  }
+
+  public void reset() {
+    ruleCounters.clear();
+    runCount.set(0);
+    runNanos.reset();
+    synchronized (memoSamples) {
+      memoSamples.clear();
+    }
+  }
+
+  @Override public String toString() {
+    return getReport();
+  }
+
+  /** Mutable statistics for a rule. */
+  private static class RuleCounter {
+    final String rule;
+    final LongAdder attempts = new LongAdder();
+    final LongAdder fires = new LongAdder();
+    final LongAdder emptyFires = new LongAdder();
+    final LongAdder productions = new LongAdder();
+    final LongAdder nanos = new LongAdder();
+
+    RuleCounter(String rule) {
+      this.rule = rule;
+    }
+
+    RuleStatistics snapshot() {
+      return new RuleStatistics(rule, attempts.sum(), fires.sum(),
+          emptyFires.sum(), productions.sum(), nanos.sum());
+    }
+  }
+
+  /** Statistics for a rule. */
+  public static class RuleStatistics {
+    private final String rule;
+    private final long attempts;
+    private final long fires;
+    private final long emptyFires;
+    private final long productions;
+    private final long nanos;
+
+    public RuleStatistics(String rule, long attempts, long fires,
+        long emptyFires, long productions, long nanos) {
+      this.rule = Objects.requireNonNull(rule);
+      this.attempts = attempts;
+      this.fires = fires;
+      this.emptyFires = emptyFires;
+      this.productions = productions;
+      this.nanos = nanos;
+    }
+
+    /** Returns the description of the rule. */
+    public String getRule() {
+      return rule;
+    }
+
+    /** Returns the number of times a planner attempted the rule. */
+    public long getAttempts() {
+      return attempts;
+    }
+
+    /** Returns the number of times the rule fired. */
+    public long getFires() {
+      return fires;
+    }
+
+    /** Returns the number of times the rule fired but produced no
+     * expressions. */
+    public long getEmptyFires() {
+      return emptyFires;
+    }
+
+    /** Returns the number of expressions the rule produced. */
+    public long getProductions() {
+      return productions;
+    }
+
+    /** Returns the time spent firing the rule, in nanoseconds. */
+    public long getNanos() {
+      return nanos;
+    }
+
+    @Override public String toString() {
+      return rule + ": attempts=" + attempts + ", fires=" + fires
+          + ", emptyFires=" + emptyFires + ", productions=" + productions
+          + ", nanos=" + nanos;
+    }
+  }
+
+  /** Size of a planner's memo at a point during a run. */
+  public static class MemoSample {
+    private final int run;
+    private final String planner;
+    private final long nanos;
+    private final long ruleCalls;
+    private final int sets;
+    private final int subsets;
+    private final int rels;
+
+    public MemoSample(int run, String planner, long nanos, long ruleCalls,
+        int sets, int subsets, int rels) {
+      this.run = run;
+      this.planner = Objects.requireNonNull(planner);
+      this.nanos = nanos;
+      this.ruleCalls = ruleCalls;
+      this.sets = sets;
+      this.subsets = subsets;
+      this.rels = rels;
+    }
+
+    /** Returns the ordinal of the run, among the runs of this profiler. */
+    public int getRun() {
+      return run;
+    }
+
+    /** Returns the kind of planner, say "VolcanoPlanner". */
+    public String getPlanner() {
+      return planner;
+    }
+
+    /** Returns the time since the run started, in nanoseconds. */
+    public long getNanos() {
+      return nanos;
+    }
+
+    /** Returns the number of rule calls since the run started. */
+    public long getRuleCalls() {
+      return ruleCalls;
+    }
+
+    /** Returns the number of equivalence sets; for a
+     * {@link org.apache.calcite.plan.hep.HepPlanner}, the number of
+     * vertices. */
+    public int getSets() {
+      return sets;
+    }
+
+    /** Returns the number of subsets; 0 for a
+     * {@link org.apache.calcite.plan.hep.HepPlanner}. */
+    public int getSubsets() {
+      return subsets;
+    }
+
+    /** Returns the number of registered relational expressions. */
+    public int getRels() {
+      return rels;
+    }
+
+    @Override public String toString() {
+      return "run #" + run + " (" + planner + ") after " + ruleCalls
+          + " rule calls: sets=" + sets + ", subsets=" + subsets
+          + ", rels=" + rels;
+    }
+  }
+
+  /** A run of a planner. Not thread-safe; a planner calls its methods only
+   * from the thread that is planning. */
+  public class Run {
+    private final int id;
+    private final String planner;
+    private final long start = System.nanoTime();
+    private long ruleCalls;
+
+    private Run(String planner) {
+      this.id = runCount.incrementAndGet();
+      this.planner = planner;
+    }
+
+    /** Called after each rule call; returns whether the planner should
+     * call {@link #sample} now. */
+    public boolean tick() {
+      return ++ruleCalls % sampleInterval == 0;
+    }
+
+    /** Records the size of the planner's memo. */
+    public void sample(int sets, int subsets, int rels) {
+      final MemoSample sample =
+          new MemoSample(id, planner, System.nanoTime() - start, ruleCalls,
+              sets, subsets, rels);
+      synchronized (memoSamples) {
+        if (memoSamples.size() >= MAX_MEMO_SAMPLES) {
+          memoSamples.removeFirst();
+        }
+        memoSamples.addLast(sample);
+      }
+    }
+
+    /** Called when the planner has finished. */
+    public void finish() {
+      runNanos.add(System.nanoTime() - start);
+    }
+  }
+}
@@ -0,0 +1,48 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.plan;
+
+import java.util.List;
+
+/**
+ * Management interface of a {@link RelOptProfiler}.
+ *
+ * <p>If the {@code calcite.planner.profile} system property is set, the
+ * global profiler is registered with the platform MBean server under the
+ * name {@value RelOptProfiler#OBJECT_NAME}.
+ */
+public interface RelOptProfilerMXBean {
+  /** Returns the number of times a planner has been run. */
+  long getRunCount();
+
+  /** Returns the total time that planners have spent running, in
+   * milliseconds. */
+  long getRunMillis();
+
+  /** Returns statistics for each rule, most expensive first. */
+  List<RelOptProfiler.RuleStatistics> getRuleStatistics();
+
+  /** Returns the most recent samples of the size of planners' memos, oldest
+   * first. */
+  List<RelOptProfiler.MemoSample> getMemoSamples();
+
+  /** Returns a report of rule statistics, formatted as a table. */
+  String getReport();
+
+  /** Discards all statistics. */
+  void reset();
+}
@@ -84,6 +84,7 @@
 import org.apache.calcite.rex.RexUtil;
 import org.apache.calcite.rex.RexVisitorImpl;
 import org.apache.calcite.runtime.CalciteContextException;
+import org.apache.calcite.runtime.ExecutionStatistics;
 import org.apache.calcite.schema.ModifiableView;
 import org.apache.calcite.sql.SqlExplainFormat;
 import org.apache.calcite.sql.SqlExplainLevel;
@@ -2117,6 +2118,88 @@ public static String dumpPlan(
     return sw.toString();
   }
 
+  /**
+   * Dumps a plan as a string, with the statistics gathered while executing
+   * it.
+   *
+   * <p>Each relational expression has, after its usual attributes, the
+   * number of rows that the planner estimated it would produce
+   * ({@code estimatedRows}); and, if its execution was instrumented, the
+   * number of rows that it actually produced ({@code rows}), the number of
+   * times it started ({@code loops}) and the time it took
+   * ({@code millis}).
+   *
+   * @param header      Header to print before the plan. Ignored if the format
+   *                    is JSON
+   * @param rel         Relational expression to explain
+   * @param format      Output format
+   * @param detailLevel Detail level
+   * @param statistics  Statistics gathered while executing the plan
+   * @return Plan
+   */
+  public static String dumpPlan(
+      String header,
+      RelNode rel,
+      SqlExplainFormat format,
+      SqlExplainLevel detailLevel,
+      final ExecutionStatistics statistics) {
+    StringWriter sw = new StringWriter();
+    PrintWriter pw = new PrintWriter(sw);
+    if (!header.equals("")) {
+      pw.println(header);
+    }
+    RelWriter planWriter;
+    switch (format) {
+    case XML:
+      planWriter = new RelXmlWriter(pw, detailLevel) {
+        @Override protected void explain_(RelNode rel,
+            List<Pair<String, Object>> values) {
+          super.explain_(rel, withStatistics(rel, values, statistics));
+        }
+      };
+      break;
+    case JSON:
+      final RelJsonWriter jsonWriter = new RelJsonWriter() {
+        @Override protected void explain_(RelNode rel,
+            List<Pair<String, Object>> values) {
+          super.explain_(rel, withStatistics(rel, values, statistics));
+        }
+      };
+      rel.explain(jsonWriter);
+      return jsonWriter.asString();
+    default:
+      planWriter = new RelWriterImpl(pw, detailLevel, false) {
+        @Override protected void explain_(RelNode rel,
+            List<Pair<String, Object>> values) {
+          super.explain_(rel, withStatistics(rel, values, statistics));
+        }
+      };
+    }
+    rel.explain(planWriter);
+    pw.flush();
+    return sw.toString();
+  }
+
+  /** Appends a relational expression's estimated row count and execution
+   * statistics to its attributes. */
+  private static List<Pair<String, Object>> withStatistics(RelNode rel,
+      List<Pair<String, Object>> values, ExecutionStatistics statistics) {
+    final List<Pair<String, Object>> list = new ArrayList<>(values);
+    final RelMetadataQuery mq = rel.getCluster().getMetadataQuery();
+    list.add(Pair.of("estimatedRows", (Object) mq.getRowCount(rel)));
+    final ExecutionStatistics.OperatorStatistics operator =
+        statistics.get(rel.getId());
+    if (operator != null) {
+      list.add(Pair.of("rows", (Object) operator.getRowCount()));
+      list.add(Pair.of("loops", (Object) operator.getOpenCount()));
+      list.add(
+          Pair.of("millis",
+              (Object) (Math.round(operator.getElapsedMillis() * 1000d)
+                  / 1000d)));
+    }
+    return list;
+  }
+
   @Deprecated // to be removed before 2.0
   public static String dumpPlan(
       String header,
@@ -26,6 +26,7 @@
 import org.apache.calcite.plan.RelOptCostImpl;
 import org.apache.calcite.plan.RelOptMaterialization;
 import org.apache.calcite.plan.RelOptPlanner;
+import org.apache.calcite.plan.RelOptProfiler;
 import org.apache.calcite.plan.RelOptRule;
 import org.apache.calcite.plan.RelOptRuleOperand;
 import org.apache.calcite.plan.RelTrait;
@@ -99,6 +100,10 @@ public class HepPlanner extends AbstractRelOptPlanner {
 
   private final boolean noDag;
 
+  /** Current run of the profiler, or null if this planner is not being
+   * profiled or is not running. */
+  private RelOptProfiler.Run profilerRun;
+
   /**
    * Query graph, with edges directed from parent to child. This is a
    * single-rooted DAG, possibly with additional roots corresponding to
@@ -207,6 +212,21 @@ public RelNode changeTraits(RelNode rel, RelTraitSet toTraits) {
   public RelNode findBestExp() {
     assert root != null;
 
+    final RelOptProfiler profiler = getProfiler();
+    if (profiler == null) {
+      return findBestExpImpl();
+    }
+    profilerRun = profiler.startRun(this);
+    try {
+      return findBestExpImpl();
+    } finally {
+      sampleGraph();
+      profilerRun.finish();
+      profilerRun = null;
+    }
+  }
+
+  private RelNode findBestExpImpl() {
     executeProgram(mainProgram);
 
     // Get rid of everything except what's in the final plan.
@@ -507,6 +527,10 @@ private HepRelVertex applyRule(
     if (!graph.vertexSet().contains(vertex)) {
       return null;
     }
+    final RelOptProfiler profiler = getProfiler();
+    if (profiler != null) {
+      profiler.ruleAttempted(rule);
+    }
     RelTrait parentTrait = null;
     List<RelNode> parents = null;
     if (rule instanceof ConverterRule) {
@@ -559,7 +583,17 @@ private HepRelVertex applyRule(
       return null;
     }
 
-    fireRule(call);
+    if (profiler == null) {
+      fireRule(call);
+    } else {
+      final long start = System.nanoTime();
+      fireRule(call);
+      profiler.ruleFired(rule, System.nanoTime() - start,
+          call.getResults().size());
+      if (profilerRun != null && profilerRun.tick()) {
+        sampleGraph();
+      }
+    }
 
     if (!call.getResults().isEmpty()) {
       return applyTransformationResults(
@@ -571,6 +605,11 @@ private HepRelVertex applyRule(
     return null;
   }
 
+  private void sampleGraph() {
+    final int vertexCount = graph.vertexSet().size();
+    profilerRun.sample(vertexCount, 0, vertexCount);
+  }
+
   private boolean doesConverterApply(
       ConverterRule converterRule,
       HepRelVertex vertex) {
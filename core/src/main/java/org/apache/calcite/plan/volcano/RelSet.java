@@ -26,6 +26,7 @@
 import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.convert.Converter;
 import org.apache.calcite.rel.core.CorrelationId;
+import org.apache.calcite.rel.metadata.CyclicMetadataException;
 import org.apache.calcite.rel.metadata.RelMetadataQuery;
 import org.apache.calcite.util.trace.CalciteTrace;
 
@@ -168,6 +169,17 @@ public RelSubset add(RelNode rel) {
     return subset;
   }
 
+  /**
+   * Removes the cached metadata of this set's subsets, and of the relational
+   * expressions whose metadata was derived from it. Call this method when the
+   * relational expressions in this set change.
+   */
+  void clearCache(RelMetadataQuery mq) {
+    for (RelSubset subset : subsets) {
+      mq.clearCache(subset);
+    }
+  }
+
   /**
    * If the subset is required, convert derived subsets to this subset.
    * Otherwise, convert this subset to required subsets in this RelSet.
@@ -189,38 +201,43 @@ private void addAbstractConverters(
         to = subset;
       }
 
-      if (from == to || !from.getConvention()
-          .useAbstractConvertersForConversion(
-              from.getTraitSet(), to.getTraitSet())) {
-        continue;
+      if (needsConverter(cluster, from, to)) {
+        final AbstractConverter converter =
+            new AbstractConverter(cluster, from, null, to.getTraitSet());
+        cluster.getPlanner().register(converter, to);
       }
+    }
+  }
 
-      final ImmutableList<RelTrait> difference =
-          to.getTraitSet().difference(from.getTraitSet());
+  /** Returns whether the planner should convert subset {@code from} to
+   * subset {@code to}, by converting each trait that differs. */
+  static boolean needsConverter(RelOptCluster cluster, RelSubset from,
+      RelSubset to) {
+    if (from == to || !from.getConvention()
+        .useAbstractConvertersForConversion(
+            from.getTraitSet(), to.getTraitSet())) {
+      return false;
+    }
 
-      boolean needsConverter = false;
+    final ImmutableList<RelTrait> difference =
+        to.getTraitSet().difference(from.getTraitSet());
 
-      for (RelTrait fromTrait : difference) {
-        RelTraitDef traitDef = fromTrait.getTraitDef();
-        RelTrait toTrait = to.getTraitSet().getTrait(traitDef);
+    boolean needsConverter = false;
 
-        if (toTrait == null || !traitDef.canConvert(
-            cluster.getPlanner(), fromTrait, toTrait)) {
-          needsConverter = false;
-          break;
-        }
+    for (RelTrait fromTrait : difference) {
+      RelTraitDef traitDef = fromTrait.getTraitDef();
+      RelTrait toTrait = to.getTraitSet().getTrait(traitDef);
 
-        if (!fromTrait.satisfies(toTrait)) {
-          needsConverter = true;
-        }
+      if (toTrait == null || !traitDef.canConvert(
+          cluster.getPlanner(), fromTrait, toTrait)) {
+        return false;
       }
 
-      if (needsConverter) {
-        final AbstractConverter converter =
-            new AbstractConverter(cluster, from, null, to.getTraitSet());
-        cluster.getPlanner().register(converter, to);
+      if (!fromTrait.satisfies(toTrait)) {
+        needsConverter = true;
       }
     }
+    return needsConverter;
   }
 
   RelSubset getOrCreateSubset(RelOptCluster cluster, RelTraitSet traits) {
@@ -258,7 +275,10 @@ RelSubset getOrCreateSubset(
       subset.setDerived();
     }
 
-    if (needsConverter) {
+    if (needsConverter
+        && !((VolcanoPlanner) cluster.getPlanner()).topDownOpt) {
+      // Top-down optimization converts traits on demand, rather than via
+      // abstract converters; see TopDownRuleDriver.
       addAbstractConverters(cluster, subset, required);
     }
 
@@ -330,6 +350,8 @@ void mergeWith(
     otherSet.equivalentSet = this;
     RelOptCluster cluster = rel.getCluster();
     RelMetadataQuery mq = cluster.getMetadataQuery();
+    clearCache(mq);
+    otherSet.clearCache(mq);
 
     // remove from table
     boolean existed = planner.allSets.remove(otherSet);
@@ -418,9 +440,15 @@ void mergeWith(
     // Make sure the cost changes as a result of merging are propagated.
     for (RelNode parentRel : getParentRels()) {
       final RelSubset parentSubset = planner.getSubset(parentRel);
-      parentSubset.propagateCostImprovements(
-          planner, mq, parentRel,
-          activeSet);
+      try {
+        parentSubset.propagateCostImprovements(
+            planner, mq, parentRel,
+            activeSet);
+      } catch (CyclicMetadataException e) {
+        // Merging may have made a parent its own input (say a Filter whose
+        // input was an identical Filter); its cost cannot be known until the
+        // set has a best expression. Ignore it, as registerImpl does.
+      }
     }
     assert activeSet.isEmpty();
     assert equivalentSet == null;
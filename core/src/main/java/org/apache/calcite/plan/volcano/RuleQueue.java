@@ -33,6 +33,7 @@
 import java.util.ArrayDeque;
 import java.util.Deque;
 import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.Map;
@@ -143,6 +144,13 @@ void addMatch(VolcanoRuleMatch match) {
 
       LOGGER.trace("{} Rule-match queued: {}", matchList.phase.toString(), matchName);
 
+      if (planner.topDownOpt) {
+        final RelSet set =
+            VolcanoPlanner.equivRoot(planner.getSubset(match.rels[0]).set);
+        matchList.offer(set, match);
+        continue;
+      }
+
       matchList.offer(match);
 
       matchList.matchMap.put(
@@ -150,6 +158,49 @@ void addMatch(VolcanoRuleMatch match) {
     }
   }
 
+  /**
+   * Removes a match whose first operand belongs to a given set, and returns
+   * it. Used by {@link TopDownRuleDriver} to explore one set at a time.
+   *
+   * <p>Returns {@code null} if there are no more matches for the set.
+   */
+  VolcanoRuleMatch popMatch(VolcanoPlannerPhase phase, RelSet set) {
+    final PhaseMatchList phaseMatchList = matchListMap.get(phase);
+    if (phaseMatchList == null) {
+      throw new AssertionError("Used match list for phase " + phase
+          + " after phase complete");
+    }
+    final Deque<VolcanoRuleMatch> matches =
+        phaseMatchList.setMatches.get(VolcanoPlanner.equivRoot(set));
+    while (matches != null && !matches.isEmpty()) {
+      final VolcanoRuleMatch match = matches.poll();
+      if (skipMatch(match)) {
+        LOGGER.debug("Skip match: {}", match);
+      } else {
+        LOGGER.debug("Pop match: {}", match);
+        return match;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Called when {@code set2} has been merged into {@code set}; moves the
+   * matches of {@code set2} to {@code set}.
+   */
+  void setsMerged(RelSet set, RelSet set2) {
+    final RelSet root = VolcanoPlanner.equivRoot(set);
+    for (PhaseMatchList matchList : matchListMap.values()) {
+      final Deque<VolcanoRuleMatch> matches =
+          matchList.setMatches.remove(set2);
+      if (matches != null) {
+        matchList.setMatches
+            .computeIfAbsent(root, s -> new ArrayDeque<>())
+            .addAll(matches);
+      }
+    }
+  }
+
   /**
    * Removes the rule match from the head of match list, and returns it.
    *
@@ -330,6 +381,13 @@ private static class PhaseMatchList {
     final Multimap<RelSubset, VolcanoRuleMatch> matchMap =
         HashMultimap.create();
 
+    /**
+     * Rule matches by the set of their first operand, used instead of
+     * {@link #queue} if the planner is optimizing top-down. Matches of
+     * substitution rules are at the front of each list.
+     */
+    final Map<RelSet, Deque<VolcanoRuleMatch>> setMatches = new HashMap<>();
+
     PhaseMatchList(VolcanoPlannerPhase phase) {
       this.phase = phase;
     }
@@ -354,11 +412,22 @@ void offer(VolcanoRuleMatch match) {
       }
     }
 
+    void offer(RelSet set, VolcanoRuleMatch match) {
+      final Deque<VolcanoRuleMatch> matches =
+          setMatches.computeIfAbsent(set, s -> new ArrayDeque<>());
+      if (match.getRule() instanceof SubstitutionRule) {
+        matches.addFirst(match);
+      } else {
+        matches.addLast(match);
+      }
+    }
+
     void clear() {
       preQueue.clear();
       queue.clear();
       names.clear();
       matchMap.clear();
+      setMatches.clear();
     }
   }
 }
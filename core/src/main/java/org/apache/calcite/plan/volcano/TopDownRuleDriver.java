@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.plan.volcano;
+
+import org.apache.calcite.plan.Convention;
+import org.apache.calcite.plan.RelOptCost;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.util.Pair;
+import org.apache.calcite.util.trace.CalciteTrace;
+
+import com.google.common.collect.ImmutableList;
+
+import org.slf4j.Logger;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Drives a {@link VolcanoPlanner} top-down, as in the Cascades optimizer,
+ * rather than firing rule matches in the order they were queued.
+ *
+ * <p>A goal is a {@link RelSubset}, that is, an equivalence set plus the
+ * traits required by the consumer, and an upper bound on its cost. To
+ * optimize a goal, the driver:
+ *
+ * <ol>
+ * <li>explores the goal's set, by firing all of the rule matches whose first
+ * operand belongs to the set;
+ * <li>if the goal's traits are required by a consumer, converts the other
+ * subsets of the set to those traits (this replaces the
+ * {@link AbstractConverter}s that the planner does not create when
+ * optimizing top-down, and happens only if the planner has
+ * {@link AbstractConverter.ExpandConversionRule}, the rule that would have
+ * expanded them);
+ * <li>for each physical expression in the subset, optimizes each input
+ * subset as a goal whose upper bound is what remains of the bound after
+ * the expression's own cost and the cost of its other inputs. If the
+ * expression's own cost is not below the bound, it cannot be part of a
+ * cheaper plan, and its inputs are not explored at all.
+ * </ol>
+ *
+ * <p>The bound of a goal is the lesser of the bound that its consumer
+ * passes down and the cost of the best expression found for the subset so
+ * far. Exploring a set may produce rule matches for sets that have already
+ * been explored (say a match whose root operand is in a parent set but
+ * which needed an expression in the set just explored), so the driver
+ * repeats the descent from the root until a descent fires no rule matches.
+ *
+ * <p>Matches for sets that are never reached (because every consumer of
+ * those sets is too expensive) are never fired. Since costs are additive,
+ * skipping them cannot lose a plan cheaper than the one found.
+ */
+class TopDownRuleDriver {
+  private static final Logger LOGGER = CalciteTrace.getPlannerTracer();
+
+  private final VolcanoPlanner planner;
+  private final VolcanoPlannerPhase phase;
+  private final RelOptCost infiniteCost;
+
+  /** Whether the planner converts between traits, that is, whether it has
+   * the rule that would expand {@link AbstractConverter}s if it were not
+   * optimizing top-down. */
+  private final boolean convertTraits;
+
+  /** Goals optimized during the current descent, and the bound each was
+   * optimized with. */
+  private final Map<RelSubset, RelOptCost> optimized = new HashMap<>();
+
+  /** Pairs of subsets (from, to) that have been converted. */
+  private final Set<Pair<RelSubset, RelSubset>> converted = new HashSet<>();
+
+  /** Number of rule matches fired during the current descent. */
+  private int fireCount;
+
+  TopDownRuleDriver(VolcanoPlanner planner, VolcanoPlannerPhase phase) {
+    this.planner = planner;
+    this.phase = phase;
+    this.infiniteCost = planner.getCostFactory().makeInfiniteCost();
+    this.convertTraits = planner.ruleSet.stream()
+        .anyMatch(rule -> rule instanceof AbstractConverter.ExpandConversionRule);
+  }
+
+  /** Optimizes the planner's root until no more rule matches fire. */
+  void drive() {
+    int descentCount = 0;
+    do {
+      fireCount = 0;
+      optimized.clear();
+      optimize(planner.getRoot(), infiniteCost);
+      ++descentCount;
+      LOGGER.debug("Top-down descent #{} fired {} rule matches; cost {}",
+          descentCount, fireCount, ((RelSubset) planner.getRoot()).bestCost);
+    } while (fireCount > 0);
+  }
+
+  private void optimize(RelNode node, RelOptCost upperBound) {
+    RelSubset subset = planner.canonize((RelSubset) node);
+    final RelOptCost previousBound = optimized.get(subset);
+    if (previousBound != null && upperBound.isLe(previousBound)) {
+      return;
+    }
+    optimized.put(subset, upperBound);
+
+    explore(subset.set);
+    subset = planner.canonize(subset);
+    if (subset.isRequired() && convert(subset)) {
+      explore(subset.set);
+      subset = planner.canonize(subset);
+    }
+
+    final RelMetadataQuery mq = subset.getCluster().getMetadataQuery();
+    RelOptCost bound = min(upperBound, subset.bestCost);
+    for (RelNode rel : subset.getRelList()) {
+      if (rel instanceof AbstractConverter
+          || planner.prunedNodes.contains(rel)) {
+        continue;
+      }
+      RelOptCost cost = planner.getSelfCost(rel, mq);
+      if (cost.isInfinite()) {
+        // Some expressions (say Correlate) cannot be costed until their
+        // inputs have been implemented. Assume the best.
+        cost = planner.getCostFactory().makeZeroCost();
+      } else if (!cost.isLt(bound)) {
+        // Even if its inputs were free, rel would be no cheaper than the
+        // best expression we already have.
+        continue;
+      }
+      for (RelNode input : rel.getInputs()) {
+        optimize(input, bound.minus(cost));
+        cost = cost.plus(planner.canonize((RelSubset) input).bestCost);
+        if (!cost.isLt(bound)) {
+          break;
+        }
+      }
+      bound = min(bound, planner.canonize(subset).bestCost);
+    }
+  }
+
+  /** Fires the rule matches of a set, including those created by firing
+   * them, until there are none left. */
+  private void explore(RelSet set) {
+    for (;;) {
+      final VolcanoRuleMatch match = planner.ruleQueue.popMatch(phase, set);
+      if (match == null) {
+        return;
+      }
+      assert match.getRule().matches(match);
+      match.onMatch();
+      planner.sampleMemoIfDue();
+      ++fireCount;
+      set = VolcanoPlanner.equivRoot(set);
+    }
+  }
+
+  /** Converts the other subsets of a required subset's set to the subset's
+   * traits. Returns whether any conversion was attempted. */
+  private boolean convert(RelSubset subset) {
+    if (!convertTraits || subset.getConvention() == Convention.NONE) {
+      return false;
+    }
+    boolean attempted = false;
+    for (RelSubset from : ImmutableList.copyOf(subset.set.subsets)) {
+      if (!from.isDerived()
+          || !converted.add(Pair.of(from, subset))
+          || !RelSet.needsConverter(subset.getCluster(), from, subset)) {
+        continue;
+      }
+      planner.changeTraitsUsingConverters(from, subset.getTraitSet());
+      attempted = true;
+    }
+    return attempted;
+  }
+
+  private static RelOptCost min(RelOptCost cost0, RelOptCost cost1) {
+    return cost1.isLt(cost0) ? cost1 : cost0;
+  }
+}
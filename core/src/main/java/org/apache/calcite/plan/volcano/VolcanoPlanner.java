@@ -19,10 +19,12 @@
 import org.apache.calcite.avatica.util.Spaces;
 import org.apache.calcite.config.CalciteConnectionConfig;
 import org.apache.calcite.config.CalciteSystemProperty;
+import org.apache.calcite.linq4j.Ord;
 import org.apache.calcite.plan.AbstractRelOptPlanner;
 import org.apache.calcite.plan.Context;
 import org.apache.calcite.plan.Convention;
 import org.apache.calcite.plan.ConventionTraitDef;
+import org.apache.calcite.plan.RelOptCluster;
 import org.apache.calcite.plan.RelOptCost;
 import org.apache.calcite.plan.RelOptCostFactory;
 import org.apache.calcite.plan.RelOptLattice;
@@ -30,6 +32,7 @@
 import org.apache.calcite.plan.RelOptMaterialization;
 import org.apache.calcite.plan.RelOptMaterializations;
 import org.apache.calcite.plan.RelOptPlanner;
+import org.apache.calcite.plan.RelOptProfiler;
 import org.apache.calcite.plan.RelOptRule;
 import org.apache.calcite.plan.RelOptRuleCall;
 import org.apache.calcite.plan.RelOptRuleOperand;
@@ -52,15 +55,19 @@
 import org.apache.calcite.rel.type.RelDataType;
 import org.apache.calcite.runtime.Hook;
 import org.apache.calcite.sql.SqlExplainLevel;
+import org.apache.calcite.util.ControlFlowException;
 import org.apache.calcite.util.Litmus;
 import org.apache.calcite.util.Pair;
 import org.apache.calcite.util.PartiallyOrderedSet;
 import org.apache.calcite.util.Util;
 
+import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.LinkedListMultimap;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Ordering;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
@@ -77,6 +84,11 @@
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -194,6 +206,49 @@ public class VolcanoPlanner extends AbstractRelOptPlanner {
 
   final Deque<VolcanoRuleCall> ruleCallStack = new ArrayDeque<>();
 
+  /** Fires rule matches when {@link #parallelism} is greater than 1, unless
+   * the context provides an {@link java.util.concurrent.Executor}. It has
+   * one thread per processor; the threads are daemons, so that an idle
+   * planner does not prevent the JVM from exiting. */
+  private static final ExecutorService EXECUTOR =
+      Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+          new ThreadFactoryBuilder()
+              .setNameFormat("calcite-planner-%d")
+              .setDaemon(true)
+              .build());
+
+  /** Maximum number of rule matches to fire concurrently. If 1, matches are
+   * fired one at a time, on the thread that calls {@link #findBestExp()}. */
+  private int parallelism = CalciteSystemProperty.VOLCANO_PARALLELISM.value();
+
+  /** Whether rule matches are firing concurrently. While frozen, rules may
+   * read the state of the planner but not change it. */
+  private volatile boolean frozen;
+
+  /** Current run of the profiler, or null if this planner is not being
+   * profiled or is not running. */
+  private RelOptProfiler.Run profilerRun;
+
+  /** Whether to optimize top-down, using {@link TopDownRuleDriver}, rather
+   * than firing rule matches in the order they were queued. */
+  boolean topDownOpt = CalciteSystemProperty.TOPDOWN_OPT.value();
+
+  /** Rules that have tried to change the state of the planner while it was
+   * frozen. Their matches are not fired concurrently again. */
+  private final Set<RelOptRule> serialRules = new HashSet<>();
+
+  /** Rule call that is firing on the current thread while the planner is
+   * frozen. */
+  final ThreadLocal<VolcanoRuleCall> deferringCall = new ThreadLocal<>();
+
+  /** Whether the current thread is firing a rule match concurrently with
+   * other matches, for any planner. A planner that is invoked on such a
+   * thread, say by a rule that plans a sub-query, fires its matches one at a
+   * time on that thread; if it waited for other threads of the same bounded
+   * pool, the pool could run out of threads and deadlock. */
+  private static final ThreadLocal<Boolean> FIRING_CONCURRENTLY =
+      new ThreadLocal<>();
+
   /** Zero cost, according to {@link #costFactory}. Not necessarily a
    * {@link org.apache.calcite.plan.volcano.VolcanoCost}. */
   private final RelOptCost zeroCost;
@@ -487,6 +542,7 @@ public boolean removeRule(RelOptRule rule) {
   }
 
   public RelNode changeTraits(final RelNode rel, RelTraitSet toTraits) {
+    checkNotFrozen();
     assert !rel.getTraitSet().equals(toTraits);
     assert toTraits.allSimple();
 
@@ -518,11 +574,60 @@ public RelOptPlanner chooseDelegate() {
    * query
    */
   public RelNode findBestExp() {
+    final RelOptProfiler profiler = getProfiler();
+    if (profiler == null) {
+      return findBestExpImpl();
+    }
+    profilerRun = profiler.startRun(this);
+    try {
+      return findBestExpImpl();
+    } finally {
+      sampleMemo();
+      profilerRun.finish();
+      profilerRun = null;
+    }
+  }
+
+  private RelNode findBestExpImpl() {
+    if (parallelism == 1
+        || listener != null
+        || FIRING_CONCURRENTLY.get() != null) {
+      return explore(false);
+    }
+    // Threads that fire rule matches concurrently keep their own
+    // RelMetadataQuery for the whole run; see fireConcurrently
+    final RelOptCluster cluster = root.getCluster();
+    cluster.setMetadataQueryPerThread(true);
+    try {
+      return explore(true);
+    } finally {
+      cluster.setMetadataQueryPerThread(false);
+    }
+  }
+
+  /** Fires rule matches until there are none left, and returns the cheapest
+   * plan.
+   *
+   * @param concurrent Whether to fire rule matches concurrently
+   */
+  private RelNode explore(boolean concurrent) {
     ensureRootConverters();
     registerMaterializations();
 
     PLANNING:
     for (VolcanoPlannerPhase phase : VolcanoPlannerPhase.values()) {
+      if (topDownOpt) {
+        try {
+          new TopDownRuleDriver(this, phase).drive();
+        } catch (VolcanoTimeoutException e) {
+          root = canonize(root);
+          ruleQueue.phaseCompleted(phase);
+          break;
+        }
+        root = canonize(root);
+        ruleQueue.phaseCompleted(phase);
+        continue;
+      }
       while (true) {
         LOGGER.debug("PLANNER = {}; PHASE = {}; COST = {}",
             this, phase.toString(), root.bestCost);
@@ -534,7 +639,12 @@ public RelNode findBestExp() {
 
         assert match.getRule().matches(match);
         try {
-          match.onMatch();
+          if (concurrent) {
+            fireConcurrently(phase, match);
+          } else {
+            match.onMatch();
+            sampleMemoIfDue();
+          }
         } catch (VolcanoTimeoutException e) {
           root = canonize(root);
           ruleQueue.phaseCompleted(phase);
@@ -567,6 +677,198 @@ public RelNode findBestExp() {
     return cheapest;
   }
 
+  /**
+   * Fires {@code match} and up to {@link #parallelism} - 1 further matches
+   * from the queue concurrently, then registers the expressions that they
+   * produced, in the order that the matches were popped.
+   *
+   * <p>While the rules fire, the planner is frozen. Rules may read its state
+   * (sets, subsets, metadata) but not change it. A rule that tries to (say by
+   * calling {@link #changeTraits}) is stopped, its results are discarded,
+   * and it is fired again, alone, after the other matches are registered;
+   * subsequent matches of the same rule (typically a converter rule, which
+   * calls {@link #changeTraits}) are not fired concurrently. Each thread uses
+   * its own {@link RelMetadataQuery}, which it keeps for the whole planning
+   * run; when the planner clears cached metadata of the shared query, for
+   * instance because a set has a new member, the threads' caches are cleared
+   * too.
+   *
+   * <p>Matches run on the {@link java.util.concurrent.Executor} in the
+   * planner's context, if there is one, otherwise on a pool with one thread
+   * per processor.
+   */
+  private void fireConcurrently(VolcanoPlannerPhase phase,
+      VolcanoRuleMatch match) {
+    final List<VolcanoRuleMatch> matches = new ArrayList<>();
+    matches.add(match);
+    while (matches.size() < parallelism) {
+      final VolcanoRuleMatch match2 = ruleQueue.popMatch(phase);
+      if (match2 == null) {
+        break;
+      }
+      matches.add(match2);
+    }
+    if (matches.size() == 1) {
+      match.onMatch();
+      sampleMemoIfDue();
+      return;
+    }
+
+    final JaninoRelMetadataProvider metadataProvider =
+        RelMetadataQuery.THREAD_PROVIDERS.get();
+    final java.util.concurrent.Executor executor =
+        Util.first(context.unwrap(java.util.concurrent.Executor.class),
+            EXECUTOR);
+    final List<Future<Boolean>> futures = new ArrayList<>();
+    final List<Boolean> fired = new ArrayList<>();
+    frozen = true;
+    try {
+      for (VolcanoRuleMatch m : matches) {
+        if (serialRules.contains(m.getRule())) {
+          futures.add(null);
+          continue;
+        }
+        futures.add(
+            CompletableFuture.supplyAsync(() -> {
+              RelMetadataQuery.THREAD_PROVIDERS.set(metadataProvider);
+              FIRING_CONCURRENTLY.set(true);
+              try {
+                return m.onMatchDeferred();
+              } finally {
+                FIRING_CONCURRENTLY.remove();
+                RelMetadataQuery.THREAD_PROVIDERS.remove();
+              }
+            }, executor));
+      }
+      for (Future<Boolean> future : futures) {
+        if (future == null) {
+          fired.add(false);
+          continue;
+        }
+        try {
+          fired.add(future.get());
+        } catch (ExecutionException e) {
+          Util.throwIfUnchecked(e.getCause());
+          throw new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new VolcanoTimeoutException();
+        }
+      }
+    } catch (RuntimeException | Error e) {
+      // Wait for the other rules to finish before unfreezing the planner.
+      waitFor(futures);
+      throw e;
+    } finally {
+      frozen = false;
+    }
+
+    for (Ord<VolcanoRuleMatch> m : Ord.zip(matches)) {
+      if (fired.get(m.i)) {
+        m.e.registerDeferred();
+      } else {
+        if (m.e.blocked) {
+          serialRules.add(m.e.getRule());
+        }
+        m.e.clearDeferred();
+        m.e.onMatch();
+      }
+      root = canonize(root);
+      sampleMemoIfDue();
+    }
+  }
+
+  /** Called after each rule call; samples the size of the memo if the
+   * profiler is due a sample. */
+  void sampleMemoIfDue() {
+    if (profilerRun != null && profilerRun.tick()) {
+      sampleMemo();
+    }
+  }
+
+  private void sampleMemo() {
+    int setCount = 0;
+    int subsetCount = 0;
+    for (RelSet set : allSets) {
+      if (set.equivalentSet == null) {
+        ++setCount;
+        subsetCount += set.subsets.size();
+      }
+    }
+    profilerRun.sample(setCount, subsetCount, mapRel2Subset.size());
+  }
+
+  /** Waits for a list of tasks to finish, ignoring their results. */
+  private static void waitFor(List<? extends Future<?>> futures) {
+    for (Future<?> future : futures) {
+      if (future == null) {
+        continue;
+      }
+      try {
+        Uninterruptibles.getUninterruptibly(future);
+      } catch (ExecutionException e) {
+        // ignore
+      }
+    }
+  }
+
+  /** Throws if rule matches are firing concurrently; see
+   * {@link #fireConcurrently}. */
+  private void checkNotFrozen() {
+    if (frozen) {
+      final VolcanoRuleCall call = deferringCall.get();
+      if (call != null) {
+        call.blocked = true;
+      }
+      throw new FrozenException();
+    }
+  }
+
+  /**
+   * Sets whether this planner optimizes top-down. The default is the value
+   * of {@link CalciteSystemProperty#TOPDOWN_OPT}, usually false.
+   *
+   * <p>When optimizing top-down, the planner starts with the root subset as
+   * the goal and fires only the rule matches of sets that are inputs to
+   * physical expressions that could still be part of a plan cheaper than the
+   * best found so far; see {@link TopDownRuleDriver}. It does not create
+   * {@link AbstractConverter}s; it converts between traits only when a
+   * physical expression requires its input to have them. Rule matches are
+   * fired one at a time, regardless of {@link #setParallelism(int)}.
+   *
+   * <p>Call this method before registering any relational expressions.
+   *
+   * @param topDownOpt Whether to optimize top-down
+   */
+  public void setTopDownOpt(boolean topDownOpt) {
+    Preconditions.checkState(allSets.isEmpty(),
+        "cannot change search strategy after registering expressions");
+    this.topDownOpt = topDownOpt;
+  }
+
+  /**
+   * Sets the maximum number of rule matches that this planner may fire
+   * concurrently. The default is the value of
+   * {@link CalciteSystemProperty#VOLCANO_PARALLELISM}, usually 1.
+   *
+   * <p>With a value greater than 1, the planner pops several matches from
+   * the queue at once and fires them on the
+   * {@link java.util.concurrent.Executor} in its context, or by default on a
+   * pool with one thread per processor; see
+   * {@link #fireConcurrently}. Matches do not see each other's results, so
+   * the planner may explore in a different order than when it fires matches
+   * one at a time. It is disabled if there is a listener, and for a planner
+   * that is invoked by a rule that is itself firing concurrently; such a
+   * planner fires its matches one at a time, on the rule's thread.
+   *
+   * @param parallelism Maximum number of concurrent rule matches
+   */
+  public void setParallelism(int parallelism) {
+    Preconditions.checkArgument(parallelism >= 1,
+        "parallelism must be positive");
+    this.parallelism = parallelism;
+  }
+
   @Override public void checkCancel() {
     if (cancelFlag.get()) {
       throw new VolcanoTimeoutException();
@@ -678,6 +980,7 @@ private void provenanceRecurse(
   public RelSubset register(
       RelNode rel,
       RelNode equivRel) {
+    checkNotFrozen();
     assert !isRegistered(rel) : "pre: isRegistered(rel)";
     final RelSet set;
     if (equivRel == null) {
@@ -695,6 +998,7 @@ public RelSubset register(
   }
 
   public RelSubset ensureRegistered(RelNode rel, RelNode equivRel) {
+    checkNotFrozen();
     RelSubset result;
     final RelSubset subset = getSubset(rel);
     if (subset != null) {
@@ -803,6 +1107,19 @@ public RelOptCost getCost(RelNode rel, RelMetadataQuery mq) {
     if (rel instanceof RelSubset) {
       return ((RelSubset) rel).bestCost;
     }
+    RelOptCost cost = getSelfCost(rel, mq);
+    if (cost.isInfinite()) {
+      return cost;
+    }
+    for (RelNode input : rel.getInputs()) {
+      cost = cost.plus(getCost(input, mq));
+    }
+    return cost;
+  }
+
+  /** Returns the cost of a relational expression, not including the cost of
+   * its inputs. */
+  RelOptCost getSelfCost(RelNode rel, RelMetadataQuery mq) {
     if (noneConventionHasInfiniteCost
         && rel.getTraitSet().getTrait(ConventionTraitDef.INSTANCE) == Convention.NONE) {
       return costFactory.makeInfiniteCost();
@@ -812,9 +1129,6 @@ public RelOptCost getCost(RelNode rel, RelMetadataQuery mq) {
       // cost must be positive, so nudge it
       cost = costFactory.makeTinyCost();
     }
-    for (RelNode input : rel.getInputs()) {
-      cost = cost.plus(getCost(input, mq));
-    }
     return cost;
   }
 
@@ -913,6 +1227,7 @@ RelNode changeTraitsUsingConverters(
 
   @Deprecated // to be removed before 1.24
   public void setImportance(RelNode rel, double importance) {
+    checkNotFrozen();
     assert rel != null;
     if (importance == 0d) {
       prunedNodes.add(rel);
@@ -920,6 +1235,7 @@ public void setImportance(RelNode rel, double importance) {
   }
 
   @Override public void prune(RelNode rel) {
+    checkNotFrozen();
     prunedNodes.add(rel);
   }
 
@@ -1226,6 +1542,7 @@ void rename(RelNode rel) {
         assert subset != null;
         boolean existed = subset.set.rels.remove(rel);
         assert existed : "rel was not known to its set";
+        subset.set.clearCache(rel.getCluster().getMetadataQuery());
         final RelSubset equivSubset = getSubset(equivRel);
         for (RelSubset s : subset.set.subsets) {
           if (s.best == rel) {
@@ -1285,7 +1602,7 @@ void reregister(
    * @param subset Subset
    * @return Leader of subset's equivalence class
    */
-  private RelSubset canonize(final RelSubset subset) {
+  RelSubset canonize(final RelSubset subset) {
     if (subset.set.equivalentSet == null) {
       return subset;
     }
@@ -1362,6 +1679,9 @@ private RelSet merge(RelSet set, RelSet set2) {
 
     // Merge.
     set.mergeWith(this, set2);
+    if (topDownOpt) {
+      ruleQueue.setsMerged(set, set2);
+    }
 
     // Was the set we merged with the root? If so, the result is the new
     // root.
@@ -1573,13 +1893,16 @@ private RelSubset addRelToSet(RelNode rel, RelSet set) {
     RelSubset subset = set.add(rel);
     mapRel2Subset.put(rel, subset);
 
+    // The new rel may change the metadata of every subset of the set.
+    final RelMetadataQuery mq = rel.getCluster().getMetadataQuery();
+    set.clearCache(mq);
+
     // While a tree of RelNodes is being registered, sometimes nodes' costs
     // improve and the subset doesn't hear about it. You can end up with
     // a subset with a single rel of cost 99 which thinks its best cost is
     // 100. We think this happens because the back-links to parents are
     // not established. So, give the subset another chance to figure out
     // its cost.
-    final RelMetadataQuery mq = rel.getCluster().getMetadataQuery();
     try {
       subset.propagateCostImprovements(this, mq, rel, new HashSet<>());
     } catch (CyclicMetadataException e) {
@@ -1692,6 +2015,11 @@ public void setLocked(boolean locked) {
 
   //~ Inner Classes ----------------------------------------------------------
 
+  /** Thrown when a rule tries to change the state of the planner while
+   * rule matches are firing concurrently. */
+  static class FrozenException extends ControlFlowException {
+  }
+
   /**
    * A rule call which defers its actions. Whereas {@link RelOptRuleCall}
    * invokes the rule when it finds a match, a <code>DeferringRuleCall</code>
@@ -18,11 +18,13 @@
 
 import org.apache.calcite.plan.RelHintsPropagator;
 import org.apache.calcite.plan.RelOptListener;
+import org.apache.calcite.plan.RelOptProfiler;
 import org.apache.calcite.plan.RelOptRuleCall;
 import org.apache.calcite.plan.RelOptRuleOperand;
 import org.apache.calcite.plan.RelOptRuleOperandChildPolicy;
 import org.apache.calcite.plan.SubstitutionRule;
 import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.util.Pair;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
@@ -51,6 +53,21 @@ public class VolcanoRuleCall extends RelOptRuleCall {
    */
   private List<RelNode> generatedRelList;
 
+  /**
+   * If not null, {@link #transformTo} adds the expressions and equivalences
+   * that it is given to this list, and {@link #registerDeferred()} registers
+   * them later; see {@link #onMatchDeferred()}.
+   */
+  private List<Pair<RelNode, Map<RelNode, RelNode>>> deferred;
+
+  /** Whether the rule tried to change the planner's state while firing in
+   * {@link #onMatchDeferred()}. */
+  boolean blocked;
+
+  /** Number of expressions produced by the current firing of the rule, for
+   * the profiler. */
+  private int productionCount;
+
   //~ Constructors -----------------------------------------------------------
 
   /**
@@ -93,6 +110,17 @@ protected VolcanoRuleCall(
   public void transformTo(RelNode rel, Map<RelNode, RelNode> equiv,
       RelHintsPropagator handler) {
     rel = handler.propagate(rels[0], rel);
+    ++productionCount;
+    if (deferred != null) {
+      deferred.add(Pair.of(rel, equiv));
+      return;
+    }
+    register(rel, equiv);
+  }
+
+  /** Registers an expression that a rule has produced, and its
+   * equivalences. */
+  private void register(RelNode rel, Map<RelNode, RelNode> equiv) {
     if (LOGGER.isDebugEnabled()) {
       LOGGER.debug("Transform to: rel#{} via {}{}", rel.getId(), getRule(),
           equiv.isEmpty() ? "" : " with equivalences " + equiv);
@@ -142,7 +170,6 @@ public void transformTo(RelNode rel, Map<RelNode, RelNode> equiv,
             entry.getKey(), entry.getValue());
       }
       volcanoPlanner.ensureRegistered(rel, rels[0]);
-      rels[0].getCluster().invalidateMetadataQuery();
 
       if (volcanoPlanner.listener != null) {
         RelOptListener.RuleProductionEvent event =
@@ -165,7 +192,14 @@ public void transformTo(RelNode rel, Map<RelNode, RelNode> equiv,
   protected void onMatch() {
     assert getRule().matches(this);
     volcanoPlanner.checkCancel();
+    final RelOptProfiler profiler = volcanoPlanner.getProfiler();
     try {
+      // If the call was blocked while firing concurrently, this is its second
+      // attempt; the profiler has counted the first
+      if (profiler != null && !blocked) {
+        profiler.ruleAttempted(getRule());
+      }
+
       if (volcanoPlanner.isRuleExcluded(getRule())) {
         LOGGER.debug("Rule [{}] not fired due to exclusion filter", getRule());
         return;
@@ -221,11 +255,25 @@ protected void onMatch() {
         this.generatedRelList = new ArrayList<>();
       }
 
-      volcanoPlanner.ruleCallStack.push(this);
-      try {
+      final long start = profiler == null ? 0L : System.nanoTime();
+      productionCount = 0;
+      if (deferred != null) {
+        // Firing concurrently with other calls; the planner will push this
+        // call on its stack when it registers the deferred results.
         getRule().onMatch(this);
-      } finally {
-        volcanoPlanner.ruleCallStack.pop();
+      } else {
+        volcanoPlanner.ruleCallStack.push(this);
+        try {
+          getRule().onMatch(this);
+        } finally {
+          volcanoPlanner.ruleCallStack.pop();
+        }
+      }
+      if (profiler != null && !(deferred != null && blocked)) {
+        // A rule that was blocked, but caught the exception and carried on,
+        // will fire again; count only that firing
+        profiler.ruleFired(getRule(), System.nanoTime() - start,
+            productionCount);
       }
 
       if (LOGGER.isDebugEnabled()) {
@@ -254,6 +302,60 @@ protected void onMatch() {
     }
   }
 
+  /**
+   * Fires this rule call without changing the state of the planner. The
+   * expressions produced by {@link #transformTo} are held until
+   * {@link #registerDeferred()} is called.
+   *
+   * <p>The planner calls this method on several threads at once while its
+   * state is frozen. If the rule tries to change the planner's state (say by
+   * calling {@link VolcanoPlanner#changeTraits}), the planner throws
+   * {@link VolcanoPlanner.FrozenException}; the call's results are discarded
+   * and the planner must fire the call again, using {@link #onMatch()}.
+   *
+   * @return Whether the rule fired without trying to change the planner's
+   * state
+   */
+  boolean onMatchDeferred() {
+    deferred = new ArrayList<>();
+    blocked = false;
+    volcanoPlanner.deferringCall.set(this);
+    try {
+      onMatch();
+    } catch (RuntimeException e) {
+      // The rule may have wrapped the exception, or even caught it and
+      // carried on, so rely on the flag rather than the exception.
+      if (!blocked) {
+        throw e;
+      }
+    } finally {
+      volcanoPlanner.deferringCall.remove();
+    }
+    return !blocked;
+  }
+
+  /**
+   * Registers the expressions produced by {@link #onMatchDeferred()}, in the
+   * order the rule produced them.
+   */
+  void registerDeferred() {
+    final List<Pair<RelNode, Map<RelNode, RelNode>>> list = deferred;
+    deferred = null;
+    volcanoPlanner.ruleCallStack.push(this);
+    try {
+      for (Pair<RelNode, Map<RelNode, RelNode>> pair : list) {
+        register(pair.left, pair.right);
+      }
+    } finally {
+      volcanoPlanner.ruleCallStack.pop();
+    }
+  }
+
+  /** Discards the results of {@link #onMatchDeferred()}. */
+  void clearDeferred() {
+    deferred = null;
+  }
+
   /**
    * Applies this rule, with a given relational expression in the first slot.
    */
@@ -16,6 +16,7 @@
  */
 package org.apache.calcite.prepare;
 
+import org.apache.calcite.adapter.batch.Batches;
 import org.apache.calcite.adapter.enumerable.EnumerableCalc;
 import org.apache.calcite.adapter.enumerable.EnumerableConvention;
 import org.apache.calcite.adapter.enumerable.EnumerableInterpretable;
@@ -33,6 +34,10 @@
 import org.apache.calcite.jdbc.CalcitePrepare;
 import org.apache.calcite.jdbc.CalciteSchema;
 import org.apache.calcite.jdbc.CalciteSchema.LatticeEntry;
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.DelegatingEnumerator;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Enumerator;
 import org.apache.calcite.linq4j.Linq4j;
 import org.apache.calcite.linq4j.Ord;
 import org.apache.calcite.linq4j.Queryable;
@@ -63,19 +68,29 @@
 import org.apache.calcite.rel.RelCollations;
 import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.RelRoot;
+import org.apache.calcite.rel.RelVisitor;
 import org.apache.calcite.rel.core.Filter;
 import org.apache.calcite.rel.core.Project;
 import org.apache.calcite.rel.core.Sort;
+import org.apache.calcite.rel.core.TableFunctionScan;
+import org.apache.calcite.rel.core.TableModify;
 import org.apache.calcite.rel.core.TableScan;
+import org.apache.calcite.rel.metadata.CardinalityFeedback;
 import org.apache.calcite.rel.type.RelDataType;
 import org.apache.calcite.rel.type.RelDataTypeFactory;
 import org.apache.calcite.rel.type.RelDataTypeField;
 import org.apache.calcite.rex.RexBuilder;
+import org.apache.calcite.rex.RexCall;
 import org.apache.calcite.rex.RexInputRef;
 import org.apache.calcite.rex.RexNode;
 import org.apache.calcite.rex.RexProgram;
+import org.apache.calcite.rex.RexShuttle;
+import org.apache.calcite.rex.RexVisitor;
+import org.apache.calcite.rex.RexVisitorImpl;
 import org.apache.calcite.runtime.Bindable;
+import org.apache.calcite.runtime.ExecutionStatistics;
 import org.apache.calcite.runtime.Hook;
+import org.apache.calcite.runtime.ResultCache;
 import org.apache.calcite.runtime.Typed;
 import org.apache.calcite.schema.Schemas;
 import org.apache.calcite.schema.Table;
@@ -120,6 +135,7 @@
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -423,7 +439,13 @@ protected RelOptPlanner createPlanner(
       org.apache.calcite.plan.Context externalContext,
       RelOptCostFactory costFactory) {
     if (externalContext == null) {
-      externalContext = Contexts.of(prepareContext.config());
+      final CardinalityFeedback feedback =
+          prepareContext.config().cardinalityFeedback()
+              ? CardinalityFeedback.of(prepareContext.getDataContext())
+              : null;
+      externalContext = feedback == null
+          ? Contexts.of(prepareContext.config())
+          : Contexts.of(prepareContext.config(), feedback);
     }
     final VolcanoPlanner planner =
         new VolcanoPlanner(costFactory, externalContext);
@@ -434,6 +456,9 @@ protected RelOptPlanner createPlanner(
     RelOptUtil.registerDefaultRules(planner,
         prepareContext.config().materializationsEnabled(),
         enableBindable);
+    if (prepareContext.config().batchSize() > 0) {
+      Batches.RULES.forEach(planner::addRule);
+    }
 
     final CalcitePrepare.SparkHandler spark = prepareContext.spark();
     if (spark.enabled()) {
@@ -682,7 +707,19 @@ <T> CalciteSignature<T> prepare2_(
             ? Meta.CursorFactory.ARRAY
             : Meta.CursorFactory.deduce(columns, resultClazz);
     //noinspection unchecked
-    final Bindable<T> bindable = preparedResult.getBindable(cursorFactory);
+    Bindable<T> bindable = preparedResult.getBindable(cursorFactory);
+    if (context.config().cardinalityFeedback()
+        && preparedResult instanceof Prepare.PreparedResultImpl) {
+      bindable = cardinalityFeedbackBindable(
+          ((Prepare.PreparedResultImpl) preparedResult).getRootRel(),
+          bindable);
+    }
+    if (context.config().resultCacheSize() > 0
+        && preparedResult instanceof Prepare.PreparedResultImpl) {
+      bindable = resultCacheBindable(
+          ((Prepare.PreparedResultImpl) preparedResult).getRootRel(),
+          parameters.size(), bindable);
+    }
     return new CalciteSignature<>(
         query.sql,
         parameters,
@@ -699,6 +736,90 @@ <T> CalciteSignature<T> prepare2_(
         statementType);
   }
 
+  /** Wraps a bindable so that it uses the connection's
+   * {@link ResultCache}: a query returns a cached result if possible, and a
+   * DML statement discards the results that read the tables it modifies.
+   * Returns the bindable unchanged if the plan's results may not be cached;
+   * for example, if it calls a non-deterministic function such as
+   * {@code RAND} or {@code CURRENT_TIMESTAMP}. */
+  private static <T> Bindable<T> resultCacheBindable(RelNode rootRel,
+      int parameterCount, Bindable<T> bindable) {
+    final Map<List<String>, Table> tables = new LinkedHashMap<>();
+    final Set<List<String>> modifiedTables = new LinkedHashSet<>();
+    final boolean[] deterministic = {true};
+    final boolean[] tableFunctions = {false};
+    final RexVisitor<Void> rexVisitor = new RexVisitorImpl<Void>(true) {
+      @Override public Void visitCall(RexCall call) {
+        if (!call.getOperator().isDeterministic()
+            || call.getOperator().isDynamicFunction()) {
+          deterministic[0] = false;
+        }
+        return super.visitCall(call);
+      }
+    };
+    new RelVisitor() {
+      @Override public void visit(RelNode node, int ordinal, RelNode parent) {
+        if (node instanceof TableScan) {
+          final RelOptTable table = node.getTable();
+          tables.put(table.getQualifiedName(), table.unwrap(Table.class));
+        } else if (node instanceof TableModify) {
+          modifiedTables.add(node.getTable().getQualifiedName());
+        } else if (node instanceof TableFunctionScan) {
+          // The function's result is not versioned, but the tables that
+          // its inputs (cursor arguments) read are visited below
+          tableFunctions[0] = true;
+        }
+        node.accept(new RexShuttle() {
+          @Override public RexNode visitCall(RexCall call) {
+            call.accept(rexVisitor);
+            return call;
+          }
+        });
+        super.visit(node, ordinal, parent);
+      }
+    }.go(rootRel);
+    if (!modifiedTables.isEmpty()) {
+      return ResultCache.invalidate(bindable, modifiedTables);
+    }
+    if (!deterministic[0] || tables.containsValue(null)) {
+      return bindable;
+    }
+    final String digest =
+        RelOptUtil.toString(rootRel, SqlExplainLevel.DIGEST_ATTRIBUTES);
+    return ResultCache.cache(bindable, digest, parameterCount, tables,
+        tableFunctions[0]);
+  }
+
+  /** Wraps a bindable so that, each time it is executed, it records in the
+   * connection's {@link CardinalityFeedback} how many rows each operator of
+   * the plan produced. Counts are recorded when the result is closed, for
+   * those operators that read all of their input. */
+  private static <T> Bindable<T> cardinalityFeedbackBindable(
+      final RelNode rootRel, final Bindable<T> bindable) {
+    return dataContext -> {
+      final CardinalityFeedback feedback = CardinalityFeedback.of(dataContext);
+      if (feedback == null) {
+        return bindable.bind(dataContext);
+      }
+      final ExecutionStatistics statistics = new ExecutionStatistics();
+      final Enumerable<T> enumerable =
+          bindable.bind(statistics.wrap(dataContext));
+      return new AbstractEnumerable<T>() {
+        public Enumerator<T> enumerator() {
+          return new DelegatingEnumerator<T>(enumerable.enumerator()) {
+            @Override public void close() {
+              try {
+                super.close();
+              } finally {
+                feedback.record(rootRel, statistics);
+              }
+            }
+          };
+        }
+      };
+    };
+  }
+
   private SqlValidator createSqlValidator(Context context,
       CalciteCatalogReader catalogReader) {
     final SqlOperatorTable opTab0 =
@@ -1084,6 +1205,17 @@ protected SqlValidator createSqlValidator(CatalogReader catalogReader) {
           format, detailLevel);
     }
 
+    @Override protected PreparedResult createPreparedAnalysis(
+        RelDataType parameterRowType,
+        RelRoot root,
+        SqlExplainFormat format,
+        SqlExplainLevel detailLevel) {
+      internalParameters.put("_instrument", true);
+      final PreparedResult preparedResult = implement(root);
+      return new CalcitePreparedAnalysis(parameterRowType, root, format,
+          detailLevel, preparedResult);
+    }
+
     @Override protected PreparedResult implement(RelRoot root) {
       Hook.PLAN_BEFORE_IMPLEMENTATION.run(root);
       RelDataType resultType = root.rel.getRowType();
@@ -1108,6 +1240,12 @@ protected SqlValidator createSqlValidator(CatalogReader catalogReader) {
           CatalogReader.THREAD_LOCAL.set(catalogReader);
           final SqlConformance conformance = context.config().conformance();
           internalParameters.put("_conformance", conformance);
+          if (context.config().spillThreshold() > 0) {
+            internalParameters.put("_spill", true);
+          }
+          if (context.config().cardinalityFeedback()) {
+            internalParameters.put("_instrument", true);
+          }
           bindable = EnumerableInterpretable.toBindable(internalParameters,
               context.spark(), enumerable, prefer);
         } finally {
@@ -1188,6 +1326,52 @@ public Bindable getBindable(final Meta.CursorFactory cursorFactory) {
     }
   }
 
+  /** An {@code EXPLAIN ANALYZE PLAN} statement, prepared and ready to
+   * execute. */
+  private static class CalcitePreparedAnalysis
+      extends Prepare.PreparedExplain {
+    private final RelNode rootRel;
+    private final Prepare.PreparedResult preparedResult;
+
+    CalcitePreparedAnalysis(
+        RelDataType parameterRowType,
+        RelRoot root,
+        SqlExplainFormat format,
+        SqlExplainLevel detailLevel,
+        Prepare.PreparedResult preparedResult) {
+      super(null, parameterRowType, root, format, detailLevel);
+      this.rootRel = root.rel;
+      this.preparedResult = preparedResult;
+    }
+
+    public Bindable getBindable(final Meta.CursorFactory cursorFactory) {
+      final Bindable<Object> bindable =
+          preparedResult.getBindable(cursorFactory);
+      return dataContext -> {
+        final ExecutionStatistics statistics = new ExecutionStatistics();
+        try (Enumerator<Object> enumerator =
+                 bindable.bind(statistics.wrap(dataContext)).enumerator()) {
+          while (enumerator.moveNext()) {
+            // discard the row
+          }
+        }
+        final CardinalityFeedback feedback =
+            CardinalityFeedback.of(dataContext);
+        if (feedback != null) {
+          feedback.record(rootRel, statistics);
+        }
+        final String explanation = getCode(statistics);
+        switch (cursorFactory.style) {
+        case ARRAY:
+          return Linq4j.singletonEnumerable(new String[] {explanation});
+        case OBJECT:
+        default:
+          return Linq4j.singletonEnumerable(explanation);
+        }
+      };
+    }
+  }
+
   /** Translator from Java AST to {@link RexNode}. */
   interface ScalarTranslator {
     RexNode toRex(BlockStatement statement);
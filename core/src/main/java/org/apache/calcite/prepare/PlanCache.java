@@ -0,0 +1,303 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.prepare;
+
+import org.apache.calcite.avatica.Meta;
+import org.apache.calcite.config.CalciteSystemProperty;
+import org.apache.calcite.jdbc.CalcitePrepare;
+import org.apache.calcite.jdbc.CalciteSchema;
+import org.apache.calcite.rel.metadata.CardinalityFeedback;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Cache of prepared statements, shared by the connections that use the same
+ * root schema.
+ *
+ * <p>If a connection prepares a SQL statement that it, or another connection
+ * with the same root schema instance and properties, has prepared before, it
+ * re-uses the {@link CalcitePrepare.CalciteSignature signature} (including
+ * the physical plan and the compiled
+ * {@link org.apache.calcite.runtime.Bindable}) and skips the parser,
+ * validator, planner and code generator.
+ *
+ * <p>Statements are keyed by their SQL text, with runs of white space
+ * outside literals and quoted identifiers collapsed to a single space, the
+ * identity of the root schema, its
+ * {@link CalciteSchema#getModificationCount() modification count}, the
+ * default schema path, the connection properties, and the maximum row
+ * count. Adding or removing a table, sub-schema, type, function
+ * or lattice therefore invalidates the cached statements of the schema tree.
+ *
+ * <p>Connections share statements only if they share a root schema instance,
+ * because a compiled plan may hold objects of the schema it was prepared
+ * against (for example, tables, or relational expressions that an
+ * interpreter executes). A connection that creates its own root schema, for
+ * example from a model, therefore shares statements only with itself; to
+ * share statements between connections, create them with the same
+ * {@link CalciteSchema}. Keys
+ * identify a root schema by an id that the cache holds weakly, but a cached
+ * signature may keep its schema alive until it is evicted. The statements of
+ * a root schema that a connection created are removed when that connection
+ * is closed; call {@link #invalidate(CalciteSchema)} when a schema that was
+ * given to connections is no longer used.
+ *
+ * <p>If a connection records {@link CardinalityFeedback cardinality
+ * feedback}, the key also contains the identity of the connection's
+ * feedback and its {@link CardinalityFeedback#getVersion() version}. Such a
+ * connection therefore shares statements only with itself, and prepares a
+ * statement again, using the new counts, after the counts have changed.
+ *
+ * <p>Changes that a {@link org.apache.calcite.schema.Schema} makes to its
+ * implicit members (for example, a table created in a JDBC database) are not
+ * detected; call {@link #invalidateAll()} after such changes.
+ *
+ * <p>DDL statements, which take effect while they are being prepared, are
+ * never cached.
+ *
+ * <p>A connection uses the cache only if its
+ * {@link org.apache.calcite.config.CalciteConnectionProperty#PLAN_CACHE}
+ * property is true. The size of the cache is set by
+ * {@link CalciteSystemProperty#PLAN_CACHE_MAX_SIZE}.
+ */
+public class PlanCache {
+  private static final PlanCache INSTANCE =
+      new PlanCache(CalciteSystemProperty.PLAN_CACHE_MAX_SIZE.value());
+
+  /** Ids of root schemas and of cardinality feedback. Guarded by
+   * {@code IDS}. */
+  private static final Map<Object, Long> IDS = new WeakHashMap<>();
+  private static final AtomicLong NEXT_ID = new AtomicLong();
+
+  private final Cache<Key, CalcitePrepare.CalciteSignature<?>> cache;
+
+  /** Creates a PlanCache that holds up to {@code maxSize} statements. */
+  public PlanCache(int maxSize) {
+    this.cache = CacheBuilder.newBuilder()
+        .maximumSize(maxSize)
+        .recordStats()
+        .build();
+  }
+
+  /** Returns the cache that is shared by all connections. */
+  public static PlanCache instance() {
+    return INSTANCE;
+  }
+
+  /** Returns the signature of a statement, from the cache if possible,
+   * otherwise by calling {@code prepare} and caching its result.
+   *
+   * <p>The cache stores signatures without their root schema; a cached
+   * signature is returned with {@code rootSchema}, the root schema of the
+   * connection that is preparing the statement. */
+  public <T> CalcitePrepare.CalciteSignature<T> prepare(Key key,
+      CalciteSchema rootSchema,
+      Supplier<CalcitePrepare.CalciteSignature<T>> prepare) {
+    @SuppressWarnings("unchecked")
+    final CalcitePrepare.CalciteSignature<T> cached =
+        (CalcitePrepare.CalciteSignature<T>) cache.getIfPresent(key);
+    if (cached != null) {
+      return cached.withRootSchema(rootSchema);
+    }
+    final CalcitePrepare.CalciteSignature<T> signature = prepare.get();
+    if (signature.statementType == Meta.StatementType.SELECT
+        || signature.statementType == Meta.StatementType.IS_DML) {
+      cache.put(key, signature.withRootSchema(null));
+    }
+    return signature;
+  }
+
+  /** Removes the statements of a root schema from the cache. */
+  public void invalidate(CalciteSchema rootSchema) {
+    final long schemaId = id(rootSchema);
+    cache.asMap().keySet().removeIf(key -> key.schemaId == schemaId);
+  }
+
+  /** Removes all statements from the cache. */
+  public void invalidateAll() {
+    cache.invalidateAll();
+  }
+
+  /** Returns the number of statements in the cache. */
+  public long size() {
+    return cache.size();
+  }
+
+  /** Returns the number of times that a statement was found in the
+   * cache. */
+  public long getHitCount() {
+    return cache.stats().hitCount();
+  }
+
+  /** Returns the number of times that a statement was not found in the
+   * cache, and had to be prepared. */
+  public long getMissCount() {
+    return cache.stats().missCount();
+  }
+
+  /** Creates a key.
+   *
+   * @param rootSchema Mutable root schema of the connection
+   * @param defaultSchemaPath Default schema path
+   * @param properties Connection properties
+   * @param prepareFactory Factory of the connection's
+   *   {@link CalcitePrepare} objects
+   * @param maxRowCount Maximum number of rows to return, or -1
+   * @param sql SQL text */
+  public static Key key(CalciteSchema rootSchema,
+      List<String> defaultSchemaPath, Map<Object, Object> properties,
+      Object prepareFactory, long maxRowCount, String sql) {
+    return key(rootSchema, null, defaultSchemaPath, properties,
+        prepareFactory, maxRowCount, sql);
+  }
+
+  /** Creates a key for a connection that may record cardinality feedback.
+   *
+   * @param rootSchema Mutable root schema of the connection
+   * @param feedback Cardinality feedback of the connection, or null
+   * @param defaultSchemaPath Default schema path
+   * @param properties Connection properties
+   * @param prepareFactory Factory of the connection's
+   *   {@link CalcitePrepare} objects
+   * @param maxRowCount Maximum number of rows to return, or -1
+   * @param sql SQL text */
+  public static Key key(CalciteSchema rootSchema,
+      CardinalityFeedback feedback, List<String> defaultSchemaPath,
+      Map<Object, Object> properties, Object prepareFactory,
+      long maxRowCount, String sql) {
+    return new Key(id(rootSchema), rootSchema.getModificationCount(),
+        feedback == null ? -1L : id(feedback),
+        feedback == null ? 0L : feedback.getVersion(),
+        defaultSchemaPath == null
+            ? ImmutableList.of()
+            : ImmutableList.copyOf(defaultSchemaPath),
+        ImmutableMap.copyOf(properties), prepareFactory, maxRowCount,
+        normalize(sql));
+  }
+
+  /** Returns the id of a root schema or feedback, allocating one if
+   * necessary. */
+  private static long id(Object o) {
+    synchronized (IDS) {
+      return IDS.computeIfAbsent(o, k -> NEXT_ID.getAndIncrement());
+    }
+  }
+
+  /** Collapses each run of white space outside literals and quoted
+   * identifiers to a single space, and removes leading and trailing white
+   * space.
+   *
+   * <p>If the text contains a comment or a bracket, which could make it
+   * unsafe to decide what is inside a literal, it is only trimmed. */
+  static String normalize(String sql) {
+    final String trimmed = sql.trim();
+    if (trimmed.contains("--")
+        || trimmed.contains("/*")
+        || trimmed.indexOf('[') >= 0) {
+      return trimmed;
+    }
+    final StringBuilder b = new StringBuilder(trimmed.length());
+    char quote = 0;
+    boolean space = false;
+    for (int i = 0; i < trimmed.length(); i++) {
+      final char c = trimmed.charAt(i);
+      if (quote == 0 && Character.isWhitespace(c)) {
+        space = true;
+        continue;
+      }
+      if (space) {
+        b.append(' ');
+        space = false;
+      }
+      if (quote == 0) {
+        if (c == '\'' || c == '"' || c == '`') {
+          quote = c;
+        }
+      } else if (c == quote) {
+        // A doubled quote ends the literal and immediately starts another,
+        // so it is handled correctly.
+        quote = 0;
+      }
+      b.append(c);
+    }
+    return b.toString();
+  }
+
+  /** Key of a statement in a {@link PlanCache}. */
+  public static class Key {
+    /** Id of the root schema. */
+    private final long schemaId;
+    private final long modificationCount;
+    /** Id of the cardinality feedback, or -1. */
+    private final long feedbackId;
+    private final long feedbackVersion;
+    private final ImmutableList<String> defaultSchemaPath;
+    private final ImmutableMap<Object, Object> properties;
+    private final Object prepareFactory;
+    private final long maxRowCount;
+    private final String sql;
+
+    private Key(long schemaId, long modificationCount, long feedbackId,
+        long feedbackVersion, ImmutableList<String> defaultSchemaPath,
+        ImmutableMap<Object, Object> properties, Object prepareFactory,
+        long maxRowCount, String sql) {
+      this.schemaId = schemaId;
+      this.modificationCount = modificationCount;
+      this.feedbackId = feedbackId;
+      this.feedbackVersion = feedbackVersion;
+      this.defaultSchemaPath = defaultSchemaPath;
+      this.properties = properties;
+      this.prepareFactory = prepareFactory;
+      this.maxRowCount = maxRowCount;
+      this.sql = Objects.requireNonNull(sql);
+    }
+
+    @Override public int hashCode() {
+      return Objects.hash(schemaId, modificationCount, feedbackId,
+          feedbackVersion, defaultSchemaPath, properties,
+          System.identityHashCode(prepareFactory), maxRowCount, sql);
+    }
+
+    @Override public boolean equals(Object obj) {
+      return this == obj
+          || obj instanceof Key
+          && schemaId == ((Key) obj).schemaId
+          && modificationCount == ((Key) obj).modificationCount
+          && feedbackId == ((Key) obj).feedbackId
+          && feedbackVersion == ((Key) obj).feedbackVersion
+          && defaultSchemaPath.equals(((Key) obj).defaultSchemaPath)
+          && properties.equals(((Key) obj).properties)
+          && prepareFactory == ((Key) obj).prepareFactory
+          && maxRowCount == ((Key) obj).maxRowCount
+          && sql.equals(((Key) obj).sql);
+    }
+
+    @Override public String toString() {
+      return sql;
+    }
+  }
+}
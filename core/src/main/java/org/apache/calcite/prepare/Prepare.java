@@ -38,6 +38,7 @@
 import org.apache.calcite.rel.type.RelDataTypeField;
 import org.apache.calcite.rex.RexExecutorImpl;
 import org.apache.calcite.runtime.Bindable;
+import org.apache.calcite.runtime.ExecutionStatistics;
 import org.apache.calcite.runtime.Hook;
 import org.apache.calcite.runtime.Typed;
 import org.apache.calcite.schema.ColumnStrategy;
@@ -52,6 +53,8 @@
 import org.apache.calcite.sql.SqlKind;
 import org.apache.calcite.sql.SqlNode;
 import org.apache.calcite.sql.SqlOperatorTable;
+import org.apache.calcite.sql.SqlUtil;
+import org.apache.calcite.sql.parser.SqlParserPos;
 import org.apache.calcite.sql.type.SqlTypeName;
 import org.apache.calcite.sql.validate.SqlValidator;
 import org.apache.calcite.sql.validate.SqlValidatorCatalogReader;
@@ -76,6 +79,8 @@
 import java.util.List;
 import java.util.Objects;
 
+import static org.apache.calcite.util.Static.RESOURCE;
+
 /**
  * Abstract base for classes that implement
  * the process of preparing and executing SQL expressions.
@@ -122,6 +127,29 @@ protected abstract PreparedResult createPreparedExplanation(
       SqlExplainFormat format,
       SqlExplainLevel detailLevel);
 
+  /**
+   * Creates the result of an {@code EXPLAIN ANALYZE PLAN} statement. When
+   * executed, it executes the query, discarding its rows, and returns the
+   * plan annotated with the statistics gathered while executing it.
+   *
+   * <p>The default implementation throws a validation error; sub-classes
+   * that can execute plans should override.
+   *
+   * @param parameterRowType Row type of the statement's parameters
+   * @param root Optimized plan
+   * @param format Output format
+   * @param detailLevel Detail level
+   * @return Prepared result
+   */
+  protected PreparedResult createPreparedAnalysis(
+      RelDataType parameterRowType,
+      RelRoot root,
+      SqlExplainFormat format,
+      SqlExplainLevel detailLevel) {
+    throw SqlUtil.newContextException(SqlParserPos.ZERO,
+        RESOURCE.explainAnalyzeNotSupported());
+  }
+
   /**
    * Optimizes a query plan.
    *
@@ -285,6 +313,10 @@ public PreparedResult prepareSql(
     // Display physical plan after decorrelation.
     if (sqlExplain != null) {
       switch (sqlExplain.getDepth()) {
+      case ANALYZE:
+        root = optimize(root, getMaterializations(), getLattices());
+        return createPreparedAnalysis(parameterRowType, root,
+            sqlExplain.getFormat(), sqlExplain.getDetailLevel());
       case PHYSICAL:
       default:
         root = optimize(root, getMaterializations(), getLattices());
@@ -490,6 +522,13 @@ public String getCode() {
       }
     }
 
+    /** Returns the plan, annotated with statistics gathered while executing
+     * it. */
+    public String getCode(ExecutionStatistics statistics) {
+      return RelOptUtil.dumpPlan("", root.rel, format, detailLevel,
+          statistics);
+    }
+
     public RelDataType getParameterRowType() {
       return parameterRowType;
     }
@@ -17,6 +17,8 @@
 package org.apache.calcite.profile;
 
 import org.apache.calcite.materialize.Lattice;
+import org.apache.calcite.schema.ColumnStatistic;
+import org.apache.calcite.schema.Statistics;
 import org.apache.calcite.util.ImmutableBitSet;
 import org.apache.calcite.util.JsonBuilder;
 import org.apache.calcite.util.Util;
@@ -275,6 +277,51 @@ public List<Statistic> statistics() {
           .build();
     }
 
+    /** Returns the statistics of the profiled data set in the form that a
+     * {@link org.apache.calcite.schema.Table} returns to the planner: the
+     * row count, the unique keys, and for each column the number of
+     * distinct values (estimated using a HyperLogLog sketch if there were
+     * many), the number of nulls, and, if there were few distinct values,
+     * the smallest and largest value. */
+    public org.apache.calcite.schema.Statistic toStatistic() {
+      final List<ImmutableBitSet> keys = new ArrayList<>();
+      for (Unique unique : uniqueList) {
+        keys.add(Column.toOrdinals(unique.columns));
+      }
+      final List<ColumnStatistic> columnStatistics = new ArrayList<>();
+      for (Distribution distribution : singletonDistributionList) {
+        if (distribution == null) {
+          columnStatistics.add(null);
+          continue;
+        }
+        // Cardinality counts null as a value
+        final double distinctCount =
+            Math.max(0D,
+                distribution.cardinality
+                    - (distribution.nullCount > 0 ? 1D : 0D));
+        Comparable min = null;
+        Comparable max = null;
+        if (distribution.values != null && !distribution.values.isEmpty()) {
+          min = singleton(distribution.values.first());
+          max = singleton(distribution.values.last());
+        }
+        columnStatistics.add(
+            Statistics.ofColumn(distinctCount,
+                (double) distribution.nullCount, min, max, null));
+      }
+      return Statistics.of((double) rowCount.rowCount, keys,
+          ImmutableList.of(), ImmutableList.of(), columnStatistics);
+    }
+
+    /** Returns the value of a single column, which some profilers represent
+     * as a list with one element. */
+    private static Comparable singleton(Comparable value) {
+      if (value instanceof List && ((List) value).size() == 1) {
+        return (Comparable) ((List) value).get(0);
+      }
+      return value;
+    }
+
     public double cardinality(ImmutableBitSet columnOrdinals) {
       final ImmutableBitSet originalOrdinals = columnOrdinals;
       for (;;) {
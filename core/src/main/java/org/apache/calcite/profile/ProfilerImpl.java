@@ -182,9 +182,11 @@ class Run {
         }
       }
       // The surprise queue must have enough room for all singleton groups
-      // plus all initial groups.
-      surprises = new SurpriseQueue(1 + columns.size() + initialGroups.size(),
-          interestingCount);
+      // plus all initial groups, and its warm-up period must be at least 4.
+      surprises =
+          new SurpriseQueue(
+              Math.max(4, 1 + columns.size() + initialGroups.size()),
+              interestingCount);
     }
 
     Profile profile(Iterable<List<Comparable>> rows) {
@@ -0,0 +1,366 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.rel.metadata;
+
+import org.apache.calcite.DataContext;
+import org.apache.calcite.linq4j.Ord;
+import org.apache.calcite.plan.RelOptUtil;
+import org.apache.calcite.plan.hep.HepRelVertex;
+import org.apache.calcite.plan.volcano.RelSubset;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.convert.Converter;
+import org.apache.calcite.rel.core.Calc;
+import org.apache.calcite.rel.core.Exchange;
+import org.apache.calcite.rel.core.Filter;
+import org.apache.calcite.rel.core.Join;
+import org.apache.calcite.rel.core.JoinRelType;
+import org.apache.calcite.rel.core.Project;
+import org.apache.calcite.rel.core.Sort;
+import org.apache.calcite.rel.core.TableScan;
+import org.apache.calcite.rel.externalize.RelWriterImpl;
+import org.apache.calcite.rex.RexCall;
+import org.apache.calcite.rex.RexInputRef;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.rex.RexProgram;
+import org.apache.calcite.rex.RexShuttle;
+import org.apache.calcite.runtime.ExecutionStatistics;
+import org.apache.calcite.sql.SqlExplainLevel;
+import org.apache.calcite.util.Pair;
+import org.apache.calcite.util.Util;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Numbers of rows that relational expressions produced when they were
+ * executed, used in place of estimates when planning later queries.
+ *
+ * <p>Counts are recorded for scans, and for filters and joins on top of
+ * them, and are keyed by the qualified name of each table, the join types
+ * and conditions, and the conjuncts of the filter conditions. Projects,
+ * sorts without a limit, exchanges and converters do not change the number
+ * of rows, so a filter is matched even if it has been pushed through a
+ * project, or merged with another filter, or into a {@link Calc}.
+ *
+ * <p>A count is the number of rows that an operator produced each time it
+ * was started, and is recorded only if the operator read all of its input.
+ * An operator on the path to the driving input of an {@link Exchange}
+ * processes one partition each time it is started, so its count is the
+ * number of rows it produced, over all partitions, each time the exchange
+ * was started. The latest count replaces any earlier one. If a condition contains a
+ * dynamic parameter or a correlation variable, the count is that observed
+ * for the values in the latest execution.
+ *
+ * <p>{@link RelMdRowCount} and {@link RelMdSelectivity} find counts via the
+ * {@link org.apache.calcite.plan.Context} of the planner.
+ *
+ * @see org.apache.calcite.config.CalciteConnectionProperty#CARDINALITY_FEEDBACK
+ */
+public class CardinalityFeedback {
+  /** Maximum number of counts that are kept; when it is exceeded, the least
+   * recently used count is discarded. */
+  public static final int MAX_SIZE = 10_000;
+
+  /** Row counts, least recently used first. Guarded by {@code this}. */
+  private final Map<String, Double> rowCounts =
+      new LinkedHashMap<String, Double>(16, 0.75f, true) {
+        @Override protected boolean removeEldestEntry(
+            Map.Entry<String, Double> eldest) {
+          return size() > MAX_SIZE;
+        }
+      };
+
+  /** Number of times that {@link #record} has changed a count. Guarded by
+   * {@code this}. */
+  private long version;
+
+  /** Returns the feedback of the connection that is executing a query, or
+   * null if the connection does not record feedback. */
+  public static CardinalityFeedback of(DataContext root) {
+    if (root == null) {
+      return null;
+    }
+    return (CardinalityFeedback) root.get(
+        DataContext.Variable.CARDINALITY_FEEDBACK.camelName);
+  }
+
+  /** Returns the feedback that is available to the planner of a relational
+   * expression, or null. */
+  public static CardinalityFeedback of(RelNode rel) {
+    return rel.getCluster().getPlanner().getContext()
+        .unwrap(CardinalityFeedback.class);
+  }
+
+  /** Returns the number of rows that a relational expression produced when
+   * it was last executed, or null if it has not been observed. */
+  public Double getRowCount(RelNode rel) {
+    final String key = key(rel, new ArrayList<>());
+    return key == null ? null : get(key);
+  }
+
+  /** Returns the observed fraction of the rows of a relational expression
+   * that satisfy a predicate, or null if either the expression or the
+   * expression filtered by the predicate has not been observed. */
+  public Double getSelectivity(RelNode rel, RexNode predicate) {
+    if (predicate == null || predicate.isAlwaysTrue()) {
+      return null;
+    }
+    final String key = key(rel, new ArrayList<>());
+    final List<RexNode> conditions = new ArrayList<>();
+    conditions.add(predicate);
+    final String filteredKey = key(rel, conditions);
+    if (key == null || filteredKey == null) {
+      return null;
+    }
+    final Double rowCount = get(key);
+    final Double filteredRowCount = get(filteredKey);
+    if (rowCount == null || filteredRowCount == null || rowCount <= 0D) {
+      return null;
+    }
+    return Math.min(1D, filteredRowCount / rowCount);
+  }
+
+  /** Returns the number of observed row counts. */
+  public synchronized int size() {
+    return rowCounts.size();
+  }
+
+  /** Returns the number of times that a count has been added or changed. A
+   * plan that was prepared when the version was different may have been
+   * based on different counts. */
+  public synchronized long getVersion() {
+    return version;
+  }
+
+  private synchronized Double get(String key) {
+    return rowCounts.get(key);
+  }
+
+  /** Records the number of rows that the operators of an executed plan
+   * produced. Operators that have no statistics, or that were not read to
+   * the end each time they were started, are ignored. */
+  public void record(RelNode root, ExecutionStatistics statistics) {
+    final Map<String, Double> counts = new LinkedHashMap<>();
+    record(root, -1, statistics, counts);
+    synchronized (this) {
+      for (Map.Entry<String, Double> entry : counts.entrySet()) {
+        if (!entry.getValue().equals(
+            rowCounts.put(entry.getKey(), entry.getValue()))) {
+          ++version;
+        }
+      }
+    }
+  }
+
+  /** Computes the counts of a relational expression and its inputs.
+   *
+   * @param rel Relational expression
+   * @param startCount Number of times that the nearest {@link Exchange}
+   *                   above {@code rel} was started, if {@code rel} is on
+   *                   the path to the exchange's driving input; 0 if the
+   *                   exchange has no statistics; -1 if {@code rel} is not
+   *                   on such a path
+   * @param statistics Execution statistics
+   * @param counts Map to which to add counts
+   */
+  private static void record(RelNode rel, long startCount,
+      ExecutionStatistics statistics, Map<String, Double> counts) {
+    final ExecutionStatistics.OperatorStatistics operator =
+        statistics.get(rel.getId());
+    if (operator != null
+        && operator.getOpenCount() > 0
+        && operator.getFinishedCount() == operator.getOpenCount()
+        && startCount != 0) {
+      final String key = key(rel, new ArrayList<>());
+      if (key != null) {
+        counts.put(key,
+            (double) operator.getRowCount()
+                / (startCount > 0 ? startCount : operator.getOpenCount()));
+      }
+    }
+    for (Ord<RelNode> input : Ord.zip(rel.getInputs())) {
+      final long inputStartCount;
+      if (rel instanceof Exchange) {
+        // The input is started once per partition
+        inputStartCount = operator == null ? 0 : operator.getOpenCount();
+      } else if (input.i == 0) {
+        inputStartCount = startCount;
+      } else {
+        // Other inputs, such as the build side of a hash join, are read in
+        // full by every partition
+        inputStartCount = -1;
+      }
+      record(input.e, inputStartCount, statistics, counts);
+    }
+  }
+
+  /** Returns the key of the rows produced by a relational expression and
+   * then filtered by some conditions, or null if the expression is not a
+   * scan, join, or a filter on top of one.
+   *
+   * @param rel Relational expression
+   * @param conditions Conditions in terms of the fields of {@code rel};
+   *                   modified by this method
+   */
+  static String key(RelNode rel, List<RexNode> conditions) {
+    for (;;) {
+      if (rel instanceof RelSubset) {
+        final RelSubset subset = (RelSubset) rel;
+        rel = Util.first(subset.getBest(), subset.getOriginal());
+      } else if (rel instanceof HepRelVertex) {
+        rel = ((HepRelVertex) rel).getCurrentRel();
+      } else if (rel instanceof Filter) {
+        conditions.add(((Filter) rel).getCondition());
+        rel = ((Filter) rel).getInput();
+      } else if (rel instanceof Project) {
+        replace(conditions, ((Project) rel).getProjects());
+        rel = ((Project) rel).getInput();
+      } else if (rel instanceof Calc) {
+        final RexProgram program = ((Calc) rel).getProgram();
+        final List<RexNode> projects = new ArrayList<>();
+        program.getProjectList().forEach(ref ->
+            projects.add(program.expandLocalRef(ref)));
+        replace(conditions, projects);
+        if (program.getCondition() != null) {
+          conditions.add(program.expandLocalRef(program.getCondition()));
+        }
+        rel = ((Calc) rel).getInput();
+      } else if (rel instanceof Sort
+          && ((Sort) rel).offset == null
+          && ((Sort) rel).fetch == null
+          || rel instanceof Exchange
+          || rel instanceof Converter) {
+        rel = rel.getInput(0);
+      } else {
+        break;
+      }
+    }
+    final StringBuilder buf = new StringBuilder();
+    if (rel instanceof TableScan) {
+      buf.append("scan").append(terms(rel));
+    } else if (rel instanceof Join) {
+      final Join join = (Join) rel;
+      String leftKey = key(join.getLeft(), new ArrayList<>());
+      String rightKey = key(join.getRight(), new ArrayList<>());
+      if (leftKey == null || rightKey == null) {
+        return null;
+      }
+      RexNode condition = join.getCondition();
+      if (join.getJoinType() == JoinRelType.INNER
+          && leftKey.compareTo(rightKey) > 0) {
+        // Inner join is commutative; give "a join b" and "b join a" the
+        // same key. Conditions above the join reference its fields too, so
+        // shift them in the same way.
+        final int leftCount = join.getLeft().getRowType().getFieldCount();
+        final int rightCount = join.getRight().getRowType().getFieldCount();
+        final RexShuttle shuttle = new RexShuttle() {
+          @Override public RexNode visitInputRef(RexInputRef ref) {
+            final int i = ref.getIndex();
+            return new RexInputRef(
+                i < leftCount ? i + rightCount : i - leftCount,
+                ref.getType());
+          }
+        };
+        condition = condition.accept(shuttle);
+        conditions.replaceAll(c -> c.accept(shuttle));
+        final String key = leftKey;
+        leftKey = rightKey;
+        rightKey = key;
+      }
+      final TreeSet<String> conjunctions = new TreeSet<>();
+      for (RexNode conjunction : RelOptUtil.conjunctions(condition)) {
+        conjunctions.add(canonize(conjunction));
+      }
+      buf.append("join ").append(join.getJoinType())
+          .append(" on ").append(conjunctions)
+          .append(" (").append(leftKey)
+          .append(") (").append(rightKey).append(")");
+    } else {
+      return null;
+    }
+    final TreeSet<String> conjunctions = new TreeSet<>();
+    for (RexNode condition : conditions) {
+      for (RexNode conjunction : RelOptUtil.conjunctions(condition)) {
+        if (!conjunction.isAlwaysTrue()) {
+          conjunctions.add(canonize(conjunction));
+        }
+      }
+    }
+    for (String conjunction : conjunctions) {
+      buf.append(" | filter ").append(conjunction);
+    }
+    return buf.toString();
+  }
+
+  /** Returns the same string for a comparison and its inverse; for
+   * example, {@code =($1, 10)} and {@code =(10, $1)}. */
+  private static String canonize(RexNode node) {
+    switch (node.getKind()) {
+    case EQUALS:
+    case NOT_EQUALS:
+    case LESS_THAN:
+    case GREATER_THAN:
+    case LESS_THAN_OR_EQUAL:
+    case GREATER_THAN_OR_EQUAL:
+      final List<RexNode> operands = ((RexCall) node).getOperands();
+      final String left = operands.get(0).toString();
+      final String right = operands.get(1).toString();
+      return left.compareTo(right) <= 0
+          ? node.getKind() + "(" + left + ", " + right + ")"
+          : node.getKind().reverse() + "(" + right + ", " + left + ")";
+    default:
+      return node.toString();
+    }
+  }
+
+  /** Rewrites conditions on the output of a project so that they are in
+   * terms of its input. */
+  private static void replace(List<RexNode> conditions,
+      final List<RexNode> projects) {
+    final RexShuttle shuttle = new RexShuttle() {
+      @Override public RexNode visitInputRef(RexInputRef ref) {
+        return projects.get(ref.getIndex());
+      }
+    };
+    conditions.replaceAll(condition -> condition.accept(shuttle));
+  }
+
+  /** Returns the attributes of a relational expression, other than its
+   * inputs, as they would appear in its digest. */
+  private static String terms(RelNode rel) {
+    final StringBuilder buf = new StringBuilder();
+    rel.explain(
+        new RelWriterImpl(new PrintWriter(new StringWriter()),
+            SqlExplainLevel.DIGEST_ATTRIBUTES, false) {
+          @Override protected void explain_(RelNode rel,
+              List<Pair<String, Object>> values) {
+            for (Pair<String, Object> value : values) {
+              if (!(value.right instanceof RelNode)) {
+                buf.append(' ').append(value.left).append('=')
+                    .append(value.right);
+              }
+            }
+          }
+        });
+    return buf.toString();
+  }
+}
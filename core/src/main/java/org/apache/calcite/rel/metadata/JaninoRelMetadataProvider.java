@@ -267,6 +267,7 @@ private static <M extends Metadata> MetadataHandler<M> load3(
       }
       safeArgList(buff, method.e)
           .append(");\n")
+          .append("    mq.addDependency(r);\n")
           .append("    final Object v = mq.map.get(r, key);\n")
           .append("    if (v != null) {\n")
           .append("      if (v == ")
@@ -288,6 +289,7 @@ private static <M extends Metadata> MetadataHandler<M> load3(
           .append("    mq.map.put(r, key,")
           .append(NullSentinel.class.getName())
           .append(".ACTIVE);\n")
+          .append("    mq.pushActive(r);\n")
           .append("    try {\n")
           .append("      final ")
           .append(method.e.getReturnType().getName())
@@ -305,6 +307,8 @@ private static <M extends Metadata> MetadataHandler<M> load3(
           .append(" e) {\n")
           .append("      mq.map.row(r).clear();\n")
           .append("      throw e;\n")
+          .append("    } finally {\n")
+          .append("      mq.popActive();\n")
           .append("    }\n")
           .append("  }\n")
           .append("\n")
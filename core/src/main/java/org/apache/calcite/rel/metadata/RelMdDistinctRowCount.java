@@ -31,10 +31,12 @@
 import org.apache.calcite.rex.RexBuilder;
 import org.apache.calcite.rex.RexNode;
 import org.apache.calcite.rex.RexUtil;
+import org.apache.calcite.schema.ColumnStatistic;
 import org.apache.calcite.util.Bug;
 import org.apache.calcite.util.BuiltInMethod;
 import org.apache.calcite.util.ImmutableBitSet;
 import org.apache.calcite.util.NumberUtil;
+import org.apache.calcite.util.Pair;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -76,7 +78,40 @@ public Double getDistinctRowCount(RelNode rel, RelMetadataQuery mq,
       return NumberUtil.multiply(mq.getRowCount(rel),
           mq.getSelectivity(rel, predicate));
     }
-    return null;
+    return getDistinctRowCountFromStatistics(rel, mq, groupKey, predicate);
+  }
+
+  /** Estimates the number of distinct values of columns that come directly
+   * from a table whose {@link ColumnStatistic}
+   * records the number of distinct values of each column; returns null if
+   * the statistics are not known. */
+  private static Double getDistinctRowCountFromStatistics(RelNode rel,
+      RelMetadataQuery mq, ImmutableBitSet groupKey, RexNode predicate) {
+    if (groupKey.isEmpty()) {
+      return null;
+    }
+    double distinctCount = 1D;
+    for (int column : groupKey) {
+      final Pair<ColumnStatistic, Double> stat =
+          RelMdUtil.getColumnStatistic(rel, column);
+      if (stat == null || stat.left.getDistinctCount() == null) {
+        return null;
+      }
+      // Null is a distinct value
+      final Double nullCount = stat.left.getNullCount();
+      distinctCount *= stat.left.getDistinctCount()
+          + (nullCount != null && nullCount > 0D ? 1D : 0D);
+    }
+    final Double rowCount = mq.getRowCount(rel);
+    if (rowCount == null) {
+      return distinctCount;
+    }
+    distinctCount = Math.min(distinctCount, rowCount);
+    if (predicate == null || predicate.isAlwaysTrue()) {
+      return distinctCount;
+    }
+    return RelMdUtil.numDistinctVals(distinctCount,
+        NumberUtil.multiply(rowCount, mq.getSelectivity(rel, predicate)));
   }
 
   public Double getDistinctRowCount(Union rel, RelMetadataQuery mq,
@@ -124,11 +124,19 @@ public Double getRowCount(Minus rel, RelMetadataQuery mq) {
   }
 
   public Double getRowCount(Filter rel, RelMetadataQuery mq) {
+    final Double observed = observedRowCount(rel);
+    if (observed != null) {
+      return observed;
+    }
     return RelMdUtil.estimateFilteredRows(rel.getInput(), rel.getCondition(),
         mq);
   }
 
   public Double getRowCount(Calc rel, RelMetadataQuery mq) {
+    final Double observed = observedRowCount(rel);
+    if (observed != null) {
+      return observed;
+    }
     return RelMdUtil.estimateFilteredRows(rel.getInput(), rel.getProgram(), mq);
   }
 
@@ -188,6 +196,10 @@ public Double getRowCount(SingleRel rel, RelMetadataQuery mq) {
   }
 
   public Double getRowCount(Join rel, RelMetadataQuery mq) {
+    final Double observed = observedRowCount(rel);
+    if (observed != null) {
+      return observed;
+    }
     return RelMdUtil.getJoinRowCount(mq, rel, rel.getCondition());
   }
 
@@ -208,6 +220,10 @@ public Double getRowCount(Aggregate rel, RelMetadataQuery mq) {
   }
 
   public Double getRowCount(TableScan rel, RelMetadataQuery mq) {
+    final Double observed = observedRowCount(rel);
+    if (observed != null) {
+      return observed;
+    }
     return rel.estimateRowCount(mq);
   }
 
@@ -222,4 +238,12 @@ public Double getRowCount(Exchange rel, RelMetadataQuery mq) {
   public Double getRowCount(TableModify rel, RelMetadataQuery mq) {
     return mq.getRowCount(rel.getInput());
   }
+
+  /** Returns the number of rows that a relational expression produced when
+   * a plan containing it was executed, or null if the planner has no
+   * {@link CardinalityFeedback} or the expression has not been observed. */
+  private static Double observedRowCount(RelNode rel) {
+    final CardinalityFeedback feedback = CardinalityFeedback.of(rel);
+    return feedback == null ? null : feedback.getRowCount(rel);
+  }
 }
@@ -210,6 +210,13 @@ public Double getSelectivity(Project rel, RelMetadataQuery mq,
   // Catch-all rule when none of the others apply.
   public Double getSelectivity(RelNode rel, RelMetadataQuery mq,
       RexNode predicate) {
-    return RelMdUtil.guessSelectivity(predicate);
+    final CardinalityFeedback feedback = CardinalityFeedback.of(rel);
+    if (feedback != null) {
+      final Double selectivity = feedback.getSelectivity(rel, predicate);
+      if (selectivity != null) {
+        return selectivity;
+      }
+    }
+    return RelMdUtil.estimateSelectivity(rel, predicate);
   }
 }
@@ -16,15 +16,21 @@
  */
 package org.apache.calcite.rel.metadata;
 
+import org.apache.calcite.plan.RelOptTable;
 import org.apache.calcite.plan.RelOptUtil;
+import org.apache.calcite.plan.hep.HepRelVertex;
+import org.apache.calcite.plan.volcano.RelSubset;
 import org.apache.calcite.rel.RelCollation;
 import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.core.Aggregate;
 import org.apache.calcite.rel.core.AggregateCall;
+import org.apache.calcite.rel.core.Exchange;
 import org.apache.calcite.rel.core.Join;
 import org.apache.calcite.rel.core.JoinRelType;
 import org.apache.calcite.rel.core.Minus;
 import org.apache.calcite.rel.core.Project;
+import org.apache.calcite.rel.core.Sort;
+import org.apache.calcite.rel.core.TableScan;
 import org.apache.calcite.rel.core.Union;
 import org.apache.calcite.rex.RexBuilder;
 import org.apache.calcite.rex.RexCall;
@@ -35,14 +41,21 @@
 import org.apache.calcite.rex.RexProgram;
 import org.apache.calcite.rex.RexUtil;
 import org.apache.calcite.rex.RexVisitorImpl;
+import org.apache.calcite.schema.ColumnStatistic;
+import org.apache.calcite.schema.Histogram;
+import org.apache.calcite.schema.Statistic;
+import org.apache.calcite.schema.Table;
 import org.apache.calcite.sql.SqlFunction;
 import org.apache.calcite.sql.SqlFunctionCategory;
 import org.apache.calcite.sql.SqlKind;
 import org.apache.calcite.sql.fun.SqlStdOperatorTable;
 import org.apache.calcite.sql.type.OperandTypes;
 import org.apache.calcite.sql.type.ReturnTypes;
+import org.apache.calcite.sql.type.SqlTypeUtil;
 import org.apache.calcite.util.ImmutableBitSet;
 import org.apache.calcite.util.NumberUtil;
+import org.apache.calcite.util.Pair;
+import org.apache.calcite.util.Util;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
@@ -404,6 +417,287 @@ public static double guessSelectivity(
     }
   }
 
+  /**
+   * Returns an estimate of the selectivity of a predicate on a relational
+   * expression. Uses the {@link ColumnStatistic} of the columns of the
+   * underlying table, if known, for conjuncts that compare a column with a
+   * literal or test whether it is null; uses
+   * {@link #guessSelectivity(RexNode)} for other conjuncts.
+   *
+   * @param rel       relational expression
+   * @param predicate predicate on the output of {@code rel}; null means
+   *                  true, so gives selectivity of 1.0
+   * @return estimated selectivity
+   */
+  public static double estimateSelectivity(RelNode rel, RexNode predicate) {
+    double sel = 1.0;
+    if ((predicate == null) || predicate.isAlwaysTrue()) {
+      return sel;
+    }
+    boolean known = false;
+    for (RexNode pred : RelOptUtil.conjunctions(predicate)) {
+      final Double columnSel = columnSelectivity(rel, pred);
+      if (columnSel != null) {
+        known = true;
+      }
+      sel *= columnSel != null ? columnSel : guessSelectivity(pred);
+    }
+    return known ? sel : guessSelectivity(predicate);
+  }
+
+  /** Returns the selectivity of a predicate on one column, computed from
+   * the column's statistics, or null if the predicate is not of a simple
+   * form or the statistics are not known. */
+  private static Double columnSelectivity(RelNode rel, RexNode pred) {
+    switch (pred.getKind()) {
+    case OR:
+      double sel = 0D;
+      for (RexNode operand : ((RexCall) pred).getOperands()) {
+        final Double operandSel = columnSelectivity(rel, operand);
+        if (operandSel == null) {
+          return null;
+        }
+        sel += operandSel;
+      }
+      return Math.min(1D, sel);
+
+    case IS_NULL:
+    case IS_NOT_NULL:
+      final RexNode operand = stripCast(((RexCall) pred).getOperands().get(0));
+      if (!(operand instanceof RexInputRef)) {
+        return null;
+      }
+      final Pair<ColumnStatistic, Double> stat =
+          getColumnStatistic(rel, ((RexInputRef) operand).getIndex());
+      final Double nullFraction = stat == null ? null : nullFraction(stat);
+      if (nullFraction == null) {
+        return null;
+      }
+      return pred.getKind() == SqlKind.IS_NULL
+          ? nullFraction
+          : 1D - nullFraction;
+
+    case EQUALS:
+    case NOT_EQUALS:
+    case LESS_THAN:
+    case LESS_THAN_OR_EQUAL:
+    case GREATER_THAN:
+    case GREATER_THAN_OR_EQUAL:
+      final List<RexNode> operands = ((RexCall) pred).getOperands();
+      RexNode op0 = stripCast(operands.get(0));
+      RexNode op1 = stripCast(operands.get(1));
+      SqlKind kind = pred.getKind();
+      if (op0 instanceof RexLiteral && op1 instanceof RexInputRef) {
+        final RexNode op = op0;
+        op0 = op1;
+        op1 = op;
+        kind = kind.reverse();
+      }
+      if (!(op0 instanceof RexInputRef) || !(op1 instanceof RexLiteral)) {
+        return null;
+      }
+      final Comparable value = comparableValue((RexLiteral) op1);
+      if (value == null) {
+        return null;
+      }
+      final Pair<ColumnStatistic, Double> columnStat =
+          getColumnStatistic(rel, ((RexInputRef) op0).getIndex());
+      if (columnStat == null) {
+        return null;
+      }
+      final Double f = nullFraction(columnStat);
+      final double nonNull = 1D - (f == null ? 0D : f);
+      final Double equalSel = equalSelectivity(columnStat.left, value);
+      switch (kind) {
+      case EQUALS:
+        return equalSel == null ? null : nonNull * equalSel;
+      case NOT_EQUALS:
+        return equalSel == null ? null : nonNull * (1D - equalSel);
+      default:
+        final Double below = fractionBelow(columnStat.left, value,
+            kind == SqlKind.LESS_THAN_OR_EQUAL
+                || kind == SqlKind.GREATER_THAN);
+        if (below == null) {
+          return null;
+        }
+        return nonNull
+            * (kind == SqlKind.LESS_THAN || kind == SqlKind.LESS_THAN_OR_EQUAL
+                ? below
+                : 1D - below);
+      }
+
+    default:
+      return null;
+    }
+  }
+
+  /** Returns the fraction of the non-null values of a column that are equal
+   * to a given value, or null if not known. */
+  private static Double equalSelectivity(ColumnStatistic stat,
+      Comparable value) {
+    final Comparable min = stat.getMin();
+    final Comparable max = stat.getMax();
+    if (Histogram.isComparable(min, value) && Histogram.compare(value, min) < 0
+        || Histogram.isComparable(max, value)
+            && Histogram.compare(value, max) > 0) {
+      return 0D;
+    }
+    final Histogram histogram = stat.getHistogram();
+    if (histogram != null
+        && !histogram.getBounds().isEmpty()
+        && Histogram.isComparable(histogram.getBounds().get(0), value)) {
+      final Double frequency = histogram.frequency(value);
+      if (frequency != null) {
+        return frequency;
+      }
+    }
+    final Double distinctCount = stat.getDistinctCount();
+    if (distinctCount == null || distinctCount < 1D) {
+      return null;
+    }
+    return 1D / distinctCount;
+  }
+
+  /** Returns the fraction of the non-null values of a column that are less
+   * than, or if {@code inclusive} less than or equal to, a given value, or
+   * null if not known. */
+  private static Double fractionBelow(ColumnStatistic stat, Comparable value,
+      boolean inclusive) {
+    final Histogram histogram = stat.getHistogram();
+    if (histogram != null
+        && !histogram.getBounds().isEmpty()
+        && Histogram.isComparable(histogram.getBounds().get(0), value)) {
+      return histogram.fractionBelow(value, inclusive);
+    }
+    final Comparable min = stat.getMin();
+    final Comparable max = stat.getMax();
+    if (!Histogram.isComparable(min, value)
+        || !Histogram.isComparable(max, value)) {
+      return null;
+    }
+    if (Histogram.compare(value, min) < 0) {
+      return 0D;
+    }
+    if (Histogram.compare(value, max) > 0) {
+      return 1D;
+    }
+    if (min instanceof Number && max instanceof Number
+        && value instanceof Number) {
+      // Assume that values are uniformly distributed between min and max
+      final double lo = ((Number) min).doubleValue();
+      final double hi = ((Number) max).doubleValue();
+      final double v = ((Number) value).doubleValue();
+      return hi > lo ? (v - lo) / (hi - lo) : 0.5D;
+    }
+    return null;
+  }
+
+  /** Returns the fraction of the rows of a table in which a column is null,
+   * or null if not known. */
+  private static Double nullFraction(Pair<ColumnStatistic, Double> stat) {
+    final Double nullCount = stat.left.getNullCount();
+    if (nullCount == null) {
+      return null;
+    }
+    if (nullCount == 0D) {
+      return 0D;
+    }
+    if (stat.right == null || stat.right <= 0D) {
+      return null;
+    }
+    return Math.min(1D, nullCount / stat.right);
+  }
+
+  /** Removes casts that do not change the order of values: numeric to
+   * numeric, and character to character. */
+  private static RexNode stripCast(RexNode node) {
+    while (node.getKind() == SqlKind.CAST) {
+      final RexNode operand = ((RexCall) node).getOperands().get(0);
+      if (SqlTypeUtil.isNumeric(operand.getType())
+          && SqlTypeUtil.isNumeric(node.getType())
+          || SqlTypeUtil.inCharFamily(operand.getType())
+          && SqlTypeUtil.inCharFamily(node.getType())) {
+        node = operand;
+      } else {
+        break;
+      }
+    }
+    return node;
+  }
+
+  /** Returns the value of a literal in the representation used by
+   * {@link ColumnStatistic}, or null. */
+  private static Comparable comparableValue(RexLiteral literal) {
+    if (literal.isNull()) {
+      return null;
+    }
+    switch (literal.getTypeName().getFamily()) {
+    case NUMERIC:
+      return literal.getValueAs(BigDecimal.class);
+    case CHARACTER:
+      return literal.getValueAs(String.class);
+    case BOOLEAN:
+      return literal.getValueAs(Boolean.class);
+    case DATE:
+    case TIME:
+      return literal.getValueAs(Integer.class);
+    case TIMESTAMP:
+      return literal.getValueAs(Long.class);
+    default:
+      return null;
+    }
+  }
+
+  /**
+   * Returns the statistics of a column of a relational expression that is a
+   * scan of a table, possibly beneath projects, sorts and exchanges, and the
+   * number of rows in the table; or null if the column does not come
+   * directly from a table or its statistics are not known.
+   *
+   * @param rel    relational expression
+   * @param column ordinal of a field of {@code rel}
+   * @return column statistics and the row count of the table, or null
+   */
+  public static Pair<ColumnStatistic, Double> getColumnStatistic(RelNode rel,
+      int column) {
+    for (;;) {
+      if (rel instanceof RelSubset) {
+        final RelSubset subset = (RelSubset) rel;
+        rel = Util.first(subset.getBest(), subset.getOriginal());
+      } else if (rel instanceof HepRelVertex) {
+        rel = ((HepRelVertex) rel).getCurrentRel();
+      } else if (rel instanceof Project) {
+        final RexNode e = ((Project) rel).getProjects().get(column);
+        if (!(e instanceof RexInputRef)) {
+          return null;
+        }
+        column = ((RexInputRef) e).getIndex();
+        rel = ((Project) rel).getInput();
+      } else if (rel instanceof Sort || rel instanceof Exchange) {
+        rel = rel.getInput(0);
+      } else {
+        break;
+      }
+    }
+    if (!(rel instanceof TableScan)) {
+      return null;
+    }
+    final RelOptTable relOptTable = rel.getTable();
+    if (rel.getRowType().getFieldCount()
+        != relOptTable.getRowType().getFieldCount()) {
+      // For example, a scan that projects some of the table's columns
+      return null;
+    }
+    final Table table = relOptTable.unwrap(Table.class);
+    final Statistic statistic = table == null ? null : table.getStatistic();
+    final ColumnStatistic columnStatistic =
+        statistic == null ? null : statistic.getColumnStatistic(column);
+    if (columnStatistic == null) {
+      return null;
+    }
+    return Pair.of(columnStatistic, statistic.getRowCount());
+  }
+
   /**
    * AND's two predicates together, either of which may be null, removing
    * redundant filters.
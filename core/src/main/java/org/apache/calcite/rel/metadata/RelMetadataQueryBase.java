@@ -19,9 +19,14 @@
 import org.apache.calcite.rel.RelNode;
 
 import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.SetMultimap;
 import com.google.common.collect.Table;
 
 import java.lang.reflect.Proxy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Supplier;
@@ -64,6 +69,20 @@ public class RelMetadataQueryBase {
   /** Set of active metadata queries, and cache of previous results. */
   public final Table<RelNode, List, Object> map = HashBasedTable.create();
 
+  /** Relational expressions whose metadata is being computed; the innermost
+   * computation is at the head. */
+  private final Deque<RelNode> active = new ArrayDeque<>();
+
+  /** For each relational expression, the relational expressions whose cached
+   * metadata was computed from its metadata, and must therefore be removed
+   * from the cache when its metadata is removed. */
+  private final SetMultimap<RelNode, RelNode> dependents =
+      HashMultimap.create();
+
+  /** Queries whose caches are cleared whenever this query's cache is; see
+   * {@link #addFollower}. Guarded by itself. */
+  private final List<RelMetadataQueryBase> followers = new ArrayList<>();
+
   public final JaninoRelMetadataProvider metadataProvider;
 
   //~ Static fields/initializers ---------------------------------------------
@@ -95,19 +114,74 @@ protected static <H> H initialHandler(Class<H> handlerClass) {
     return metadataProvider.revise(class_, def);
   }
 
+  /** Records that the metadata being computed, if any, depends on the
+   * metadata of {@code rel}. Called by generated handlers on each request. */
+  public void addDependency(RelNode rel) {
+    final RelNode dependent = active.peek();
+    if (dependent != null && dependent != rel) {
+      dependents.put(rel, dependent);
+    }
+  }
+
+  /** Records that the handler has started computing metadata of
+   * {@code rel}. Called by generated handlers on a cache miss; must be
+   * followed by a call to {@link #popActive()}. */
+  public void pushActive(RelNode rel) {
+    active.push(rel);
+  }
+
+  /** Records that the handler has finished computing metadata. */
+  public void popActive() {
+    active.pop();
+  }
+
+  /** Registers a query that caches metadata of the same relational
+   * expressions, typically for another thread. From now on,
+   * {@link #clearCache(RelNode)} also clears {@code follower}'s cache, so
+   * that {@code follower} can be kept for as long as this query. The caller
+   * must ensure that {@code follower} is not in use while this query's
+   * cache is being cleared. */
+  public void addFollower(RelMetadataQueryBase follower) {
+    synchronized (followers) {
+      followers.add(follower);
+    }
+  }
+
+  /** Unregisters all queries registered by {@link #addFollower}. */
+  public void removeFollowers() {
+    synchronized (followers) {
+      followers.clear();
+    }
+  }
+
   /**
    * Removes cached metadata values for specified RelNode.
    *
+   * <p>Also removes, transitively, the cached metadata of relational
+   * expressions whose metadata was computed from the metadata of
+   * {@code rel}; for example, if {@code rel} is the input to a
+   * {@link org.apache.calcite.rel.core.Filter}, the row count of the filter.
+   * Metadata that did not depend on {@code rel} remains in the cache.
+   * The same metadata is removed from the caches of followers.
+   *
    * @param rel RelNode whose cached metadata should be removed
    * @return true if cache for the provided RelNode was not empty
    */
   public boolean clearCache(RelNode rel) {
-    Map<List, Object> row = map.row(rel);
-    if (row.isEmpty()) {
-      return false;
+    synchronized (followers) {
+      for (RelMetadataQueryBase follower : followers) {
+        follower.clearCache(rel);
+      }
     }
-
+    final Map<List, Object> row = map.row(rel);
+    final boolean cleared = !row.isEmpty();
     row.clear();
-    return true;
+    final Deque<RelNode> queue = new ArrayDeque<>(dependents.removeAll(rel));
+    while (!queue.isEmpty()) {
+      final RelNode dependent = queue.remove();
+      map.row(dependent).clear();
+      queue.addAll(dependents.removeAll(dependent));
+    }
+    return cleared;
   }
 }
@@ -121,10 +121,12 @@ protected void apply(RelOptRuleCall call, Filter filter, TableScan scan) {
       projects = scan.identity();
     }
 
+    // The filter references fields of the scan's output; the scan's filters
+    // reference fields of the table.
     final Mapping mapping = Mappings.target(projects,
         scan.getTable().getRowType().getFieldCount());
     filters.add(
-        RexUtil.apply(mapping, filter.getCondition()));
+        RexUtil.apply(mapping.inverse(), filter.getCondition()));
 
     call.transformTo(
         Bindables.BindableTableScan.create(scan.getCluster(), scan.getTable(),
@@ -797,6 +797,12 @@ ExInst<CalciteException> illegalArgumentForTableFunctionCall(String a0,
   @BaseMessage("Function ''{0}'' not found")
   ExInst<SqlValidatorException> functionNotFound(String name);
 
+  @BaseMessage("Table ''{0}'' cannot be analyzed")
+  ExInst<SqlValidatorException> tableNotAnalyzable(String name);
+
+  @BaseMessage("EXPLAIN ANALYZE is not supported")
+  ExInst<SqlValidatorException> explainAnalyzeNotSupported();
+
   @BaseMessage("Dialect does not support feature: ''{0}''")
   ExInst<SqlValidatorException> dialectDoesNotSupportFeature(String featureName);
 
@@ -0,0 +1,48 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.runtime;
+
+import java.util.Objects;
+
+/**
+ * Set of rows stored by column.
+ *
+ * <p>Each element of {@link #columns} holds the values of one column. A
+ * column whose SQL type is a non-nullable number or boolean is an array of
+ * the corresponding primitive type, for example {@code int[]}; any other
+ * column is an {@code Object[]}, in which {@code null} represents SQL NULL.
+ * The arrays may be longer than {@link #size}; values beyond {@code size}
+ * are ignored.
+ *
+ * @see org.apache.calcite.adapter.batch.BatchConvention
+ */
+public class ColumnBatch {
+  /** Column arrays. */
+  public final Object[] columns;
+  /** Number of rows. */
+  public final int size;
+
+  /** Creates a ColumnBatch. */
+  public ColumnBatch(Object[] columns, int size) {
+    this.columns = Objects.requireNonNull(columns);
+    this.size = size;
+  }
+
+  @Override public String toString() {
+    return "ColumnBatch(columns=" + columns.length + ", size=" + size + ")";
+  }
+}
@@ -0,0 +1,1148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.runtime;
+
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.linq4j.tree.Primitive;
+
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Implementations of aggregate and join over sequences of
+ * {@link ColumnBatch}, for the batch convention.
+ *
+ * <p>Each batch is processed a column at a time. For each row of a batch,
+ * the methods first compute the ordinal of its group (or of its matching
+ * rows), then run a loop over each column that is specialized to the class
+ * of the column array, so that values of primitive columns are not boxed.
+ * If the key columns are primitive and their total width is at most 64 bits,
+ * the key of each row is packed into a {@code long}, as
+ * {@link LongKeyedEnumerables} does for the enumerable convention, and rows
+ * are looked up without allocating an object per row.
+ */
+public class ColumnBatches {
+  private ColumnBatches() {}
+
+  /** Aggregate function that {@link #hashAggregate} can compute. */
+  public enum AggFunction {
+    COUNT, SUM, SUM0, MIN, MAX
+  }
+
+  /** Splits a sequence into lists of at most {@code batchSize} elements.
+   *
+   * @param source Sequence
+   * @param batchSize Maximum number of elements in each list
+   * @param <E> Element type
+   */
+  public static <E> Enumerable<List<E>> chunk(final Enumerable<E> source,
+      final int batchSize) {
+    assert batchSize > 0;
+    return new AbstractEnumerable<List<E>>() {
+      public Enumerator<List<E>> enumerator() {
+        final Enumerator<E> enumerator = source.enumerator();
+        return new Enumerator<List<E>>() {
+          List<E> current;
+          boolean done;
+
+          public List<E> current() {
+            return current;
+          }
+
+          public boolean moveNext() {
+            final List<E> list = new ArrayList<>();
+            while (!done && list.size() < batchSize) {
+              if (enumerator.moveNext()) {
+                list.add(enumerator.current());
+              } else {
+                done = true;
+              }
+            }
+            current = list.isEmpty() ? null : list;
+            return current != null;
+          }
+
+          public void reset() {
+            enumerator.reset();
+            current = null;
+            done = false;
+          }
+
+          public void close() {
+            enumerator.close();
+          }
+        };
+      }
+    };
+  }
+
+  /** Groups the rows of a sequence of batches and computes aggregate
+   * functions for each group.
+   *
+   * <p>Each output row consists of the values of the group keys followed by
+   * the value of each aggregate function. If there are no group keys, there
+   * is precisely one output row, even if the input is empty.
+   *
+   * @param input Input batches
+   * @param groupKeys Ordinals of the group key columns
+   * @param functions Aggregate functions
+   * @param args Ordinal of the argument column of each aggregate function,
+   *             or -1 for {@code COUNT(*)}
+   * @param fieldClasses Java class of each output field, for example
+   *                     {@code int.class} or {@code Integer.class}
+   * @param columnClasses Class of each output column array
+   * @param batchSize Maximum number of rows in each output batch
+   */
+  public static Enumerable<ColumnBatch> hashAggregate(
+      final Enumerable<ColumnBatch> input, final int[] groupKeys,
+      final AggFunction[] functions, final int[] args,
+      final Class[] fieldClasses, final Class[] columnClasses,
+      final int batchSize) {
+    assert functions.length == args.length;
+    assert fieldClasses.length == groupKeys.length + functions.length;
+    return new AbstractEnumerable<ColumnBatch>() {
+      public Enumerator<ColumnBatch> enumerator() {
+        final GroupTable groupTable = new GroupTable(groupKeys);
+        final Accumulator[] accumulators = new Accumulator[functions.length];
+        for (int i = 0; i < functions.length; i++) {
+          accumulators[i] =
+              accumulator(functions[i], args[i],
+                  fieldClasses[groupKeys.length + i]);
+        }
+        try (Enumerator<ColumnBatch> enumerator = input.enumerator()) {
+          while (enumerator.moveNext()) {
+            final ColumnBatch batch = enumerator.current();
+            final int[] groups = groupTable.groups(batch);
+            for (Accumulator accumulator : accumulators) {
+              accumulator.ensureCapacity(groupTable.groupCount);
+              accumulator.add(batch.columns, groups, batch.size);
+            }
+          }
+        }
+        for (Accumulator accumulator : accumulators) {
+          accumulator.ensureCapacity(groupTable.groupCount);
+        }
+        final List<ColumnBatch> batches = new ArrayList<>();
+        for (int start = 0; start < groupTable.groupCount;
+             start += batchSize) {
+          final int size = Math.min(batchSize, groupTable.groupCount - start);
+          final Object[] columns = new Object[columnClasses.length];
+          for (int j = 0; j < columns.length; j++) {
+            columns[j] =
+                Array.newInstance(columnClasses[j].getComponentType(), size);
+          }
+          for (int j = 0; j < groupKeys.length; j++) {
+            groupTable.writeKeys(j, start, size, columns[j]);
+          }
+          for (int j = 0; j < accumulators.length; j++) {
+            accumulators[j].write(start, size, columns[groupKeys.length + j]);
+          }
+          batches.add(new ColumnBatch(columns, size));
+        }
+        return Linq4j.enumerator(batches);
+      }
+    };
+  }
+
+  /** Joins two sequences of batches on matching keys.
+   *
+   * <p>Reads all batches of the inner sequence into a hash table, then for
+   * each batch of the outer sequence returns a batch of the joined rows.
+   * Rows whose key contains a null value do not match any row. Each output
+   * row consists of the columns of the outer row followed by the columns of
+   * the inner row.
+   *
+   * @param outer Outer (left) batches
+   * @param inner Inner (right) batches, which are read into a hash table
+   * @param outerKeys Ordinals of the key columns in the outer batches
+   * @param innerKeys Ordinals of the key columns in the inner batches
+   * @param generateNullsOnInner Whether to return an outer row that matches
+   *                             no inner row, with null inner columns
+   *                             (as in a LEFT join)
+   * @param columnClasses Class of each output column array
+   */
+  public static Enumerable<ColumnBatch> hashJoin(
+      final Enumerable<ColumnBatch> outer, final Enumerable<ColumnBatch> inner,
+      final int[] outerKeys, final int[] innerKeys,
+      final boolean generateNullsOnInner, final Class[] columnClasses) {
+    assert outerKeys.length == innerKeys.length;
+    return new AbstractEnumerable<ColumnBatch>() {
+      public Enumerator<ColumnBatch> enumerator() {
+        final JoinIndex index =
+            new JoinIndex(inner, innerKeys, columnClasses.length);
+        return outer
+            .select(batch ->
+                index.probe(batch, outerKeys, generateNullsOnInner,
+                    columnClasses))
+            .where(batch -> batch.size > 0)
+            .enumerator();
+      }
+    };
+  }
+
+  /** Returns the value of row {@code i} of a column array, boxing it if the
+   * column is primitive. */
+  static Object get(Object column, int i) {
+    if (column instanceof Object[]) {
+      return ((Object[]) column)[i];
+    } else if (column instanceof int[]) {
+      return ((int[]) column)[i];
+    } else if (column instanceof long[]) {
+      return ((long[]) column)[i];
+    } else if (column instanceof double[]) {
+      return ((double[]) column)[i];
+    } else {
+      return Array.get(column, i);
+    }
+  }
+
+  /** Returns whether a column array holds primitive values that can be
+   * widened to {@code long} without loss. */
+  static boolean isIntegral(Object column) {
+    return column instanceof int[]
+        || column instanceof long[]
+        || column instanceof short[]
+        || column instanceof byte[]
+        || column instanceof char[];
+  }
+
+  /** Returns the value of row {@code i} of a column array for which
+   * {@link #isIntegral} is true, widened to {@code long}. */
+  static long getLong(Object column, int i) {
+    if (column instanceof int[]) {
+      return ((int[]) column)[i];
+    } else if (column instanceof long[]) {
+      return ((long[]) column)[i];
+    } else if (column instanceof short[]) {
+      return ((short[]) column)[i];
+    } else if (column instanceof byte[]) {
+      return ((byte[]) column)[i];
+    } else {
+      return ((char[]) column)[i];
+    }
+  }
+
+  /** Returns the bits of row {@code i} of a primitive column array, widened
+   * to {@code long}; a {@code float} or {@code double} value is converted to
+   * its bits, and a {@code boolean} value to 0 or 1. */
+  static long getBits(Object column, int i) {
+    if (column instanceof double[]) {
+      return Double.doubleToLongBits(((double[]) column)[i]);
+    } else if (column instanceof float[]) {
+      return Float.floatToIntBits(((float[]) column)[i]);
+    } else if (column instanceof boolean[]) {
+      return ((boolean[]) column)[i] ? 1L : 0L;
+    } else {
+      return getLong(column, i);
+    }
+  }
+
+  /** Copies the values of rows {@code start} to {@code start + size - 1} of
+   * a column array into a column array of a given class. */
+  private static void copy(Object from, int start, int size, Object to) {
+    if (from.getClass() == to.getClass()) {
+      System.arraycopy(from, start, to, 0, size);
+    } else {
+      for (int i = 0; i < size; i++) {
+        Array.set(to, i, get(from, start + i));
+      }
+    }
+  }
+
+  /** Returns the key of row {@code i}: the value of its key column, or a list
+   * of the values of its key columns if there is more than one. */
+  private static Object key(Object[] columns, int[] keys, int i) {
+    if (keys.length == 1) {
+      return get(columns[keys[0]], i);
+    }
+    final Object[] values = new Object[keys.length];
+    for (int k = 0; k < keys.length; k++) {
+      values[k] = get(columns[keys[k]], i);
+    }
+    return Arrays.asList(values);
+  }
+
+  /** Returns whether a key contains a null value. */
+  private static boolean containsNull(Object key, int keyCount) {
+    return key == null
+        || keyCount > 1 && ((List) key).contains(null);
+  }
+
+  /** Returns the rows of a column array whose ordinals are given by
+   * {@code indexes}, as an array of class {@code columnClass}; a negative
+   * index gives a null value. */
+  static Object gather(Object column, int[] indexes, int size,
+      Class columnClass) {
+    if (columnClass == int[].class && column instanceof int[]) {
+      final int[] c = (int[]) column;
+      final int[] out = new int[size];
+      for (int i = 0; i < size; i++) {
+        out[i] = c[indexes[i]];
+      }
+      return out;
+    } else if (columnClass == long[].class && column instanceof long[]) {
+      final long[] c = (long[]) column;
+      final long[] out = new long[size];
+      for (int i = 0; i < size; i++) {
+        out[i] = c[indexes[i]];
+      }
+      return out;
+    } else if (columnClass == double[].class && column instanceof double[]) {
+      final double[] c = (double[]) column;
+      final double[] out = new double[size];
+      for (int i = 0; i < size; i++) {
+        out[i] = c[indexes[i]];
+      }
+      return out;
+    } else if (columnClass == Object[].class && column instanceof Object[]) {
+      final Object[] c = (Object[]) column;
+      final Object[] out = new Object[size];
+      for (int i = 0; i < size; i++) {
+        final int index = indexes[i];
+        out[i] = index < 0 ? null : c[index];
+      }
+      return out;
+    } else {
+      final Object out =
+          Array.newInstance(columnClass.getComponentType(), size);
+      for (int i = 0; i < size; i++) {
+        final int index = indexes[i];
+        if (index >= 0) {
+          Array.set(out, i, get(column, index));
+        }
+      }
+      return out;
+    }
+  }
+
+  /** Packs the values of the key columns of a row into a {@code long}, in
+   * the same way as the key selectors that the enumerable convention
+   * generates for {@link LongKeyedEnumerables}: each value occupies
+   * {@link LongKeyedEnumerables#keyBits} bits, and if there is more than one
+   * key, the bits that sign-extension would set are cleared. */
+  private static class KeyPacker {
+    /** Class of each key column array. */
+    private final Class[] classes;
+    /** Number of bits that each key occupies. */
+    private final int[] bits;
+
+    private KeyPacker(Class[] classes, int[] bits) {
+      this.classes = classes;
+      this.bits = bits;
+    }
+
+    /** Returns a packer for the key columns of a batch, or null if any of
+     * them is not primitive or they do not fit into 64 bits. */
+    static KeyPacker of(Object[] columns, int[] keys) {
+      final Class[] classes = new Class[keys.length];
+      final int[] bits = new int[keys.length];
+      int totalBits = 0;
+      for (int k = 0; k < keys.length; k++) {
+        classes[k] = columns[keys[k]].getClass();
+        bits[k] = LongKeyedEnumerables.keyBits(classes[k].getComponentType());
+        if (bits[k] < 0) {
+          return null;
+        }
+        totalBits += bits[k];
+      }
+      return totalBits <= 64 ? new KeyPacker(classes, bits) : null;
+    }
+
+    /** Returns whether the key columns of a batch have the same classes as
+     * the columns that this packer was created for. */
+    boolean accepts(int[] keys, Object[] columns) {
+      for (int k = 0; k < keys.length; k++) {
+        if (columns[keys[k]].getClass() != classes[k]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /** Returns the mask to apply to the bits of the {@code k}th key. */
+    private long mask(int k) {
+      return bits.length > 1 && bits[k] < 64 ? (1L << bits[k]) - 1L : -1L;
+    }
+
+    /** Packs the key of each row of a batch whose key columns this packer
+     * {@link #accepts}, returning {@code packed} or, if it is too small, a
+     * new array. */
+    long[] pack(int[] keys, Object[] columns, int size, long[] packed) {
+      if (packed.length < size) {
+        packed = new long[size];
+      }
+      Arrays.fill(packed, 0, size, 0L);
+      for (int k = 0; k < keys.length; k++) {
+        final Object column = columns[keys[k]];
+        final int shift = bits[k];
+        final long mask = mask(k);
+        if (column instanceof int[]) {
+          final int[] c = (int[]) column;
+          for (int i = 0; i < size; i++) {
+            packed[i] = packed[i] << shift | c[i] & mask;
+          }
+        } else if (column instanceof long[]) {
+          final long[] c = (long[]) column;
+          for (int i = 0; i < size; i++) {
+            packed[i] = packed[i] << shift | c[i] & mask;
+          }
+        } else if (column instanceof double[]) {
+          final double[] c = (double[]) column;
+          for (int i = 0; i < size; i++) {
+            packed[i] = packed[i] << shift | Double.doubleToLongBits(c[i]);
+          }
+        } else {
+          for (int i = 0; i < size; i++) {
+            packed[i] = packed[i] << shift | getBits(column, i) & mask;
+          }
+        }
+      }
+      return packed;
+    }
+
+    /** Packs the key of row {@code i} of a batch whose key columns this
+     * packer does not {@link #accepts}, for example because a key column is
+     * nullable. Returns false if no row of the columns that this packer was
+     * created for has an equal key: if a value is null, is not of the same
+     * kind, or is out of range. */
+    boolean packRow(int[] keys, Object[] columns, int i, long[] packed) {
+      long key = 0;
+      for (int k = 0; k < keys.length; k++) {
+        final Object column = columns[keys[k]];
+        final Class componentType = classes[k].getComponentType();
+        long part;
+        if (column.getClass() == classes[k]) {
+          part = getBits(column, i);
+        } else if (componentType == double.class
+            || componentType == float.class
+            || componentType == boolean.class) {
+          final Object value = get(column, i);
+          if (componentType == double.class && value instanceof Double) {
+            part = Double.doubleToLongBits((Double) value);
+          } else if (componentType == float.class && value instanceof Float) {
+            part = Float.floatToIntBits((Float) value);
+          } else if (componentType == boolean.class
+              && value instanceof Boolean) {
+            part = (Boolean) value ? 1L : 0L;
+          } else {
+            return false;
+          }
+        } else {
+          if (isIntegral(column)) {
+            part = getLong(column, i);
+          } else {
+            final Object value = get(column, i);
+            if (!(value instanceof Long || value instanceof Integer
+                || value instanceof Short || value instanceof Byte)) {
+              return false;
+            }
+            part = ((Number) value).longValue();
+          }
+          final int unused = 64 - bits[k];
+          if (part << unused >> unused != part) {
+            return false;
+          }
+        }
+        key = key << bits[k] | part & mask(k);
+      }
+      packed[i] = key;
+      return true;
+    }
+  }
+
+  /** Assigns each row of a batch to a group, and remembers the key values of
+   * each group. */
+  private static class GroupTable {
+    private final int[] groupKeys;
+    /** Packs the keys of rows, if they can be packed into a {@code long};
+     * created when the first batch arrives. */
+    private KeyPacker packer;
+    /** Hash table from packed key to group ordinal, used if
+     * {@link #packer} is not null. */
+    private LongKeyedEnumerables.LongHashTable longTable;
+    /** Map from key to group ordinal, used otherwise. */
+    private Map<Object, Integer> map;
+    /** For each group key, a column array that holds its value in each
+     * group. */
+    private Object[] keyColumns;
+    private long[] packed = new long[0];
+    private int[] groups = new int[0];
+    int groupCount;
+
+    GroupTable(int[] groupKeys) {
+      this.groupKeys = groupKeys;
+      if (groupKeys.length == 0) {
+        // There is always precisely one group, even if the input is empty.
+        groupCount = 1;
+      }
+    }
+
+    /** Returns the ordinal of the group of each row of a batch, creating
+     * groups as necessary. */
+    int[] groups(ColumnBatch batch) {
+      final int size = batch.size;
+      if (groups.length < size) {
+        groups = new int[size];
+      }
+      if (groupKeys.length == 0) {
+        Arrays.fill(groups, 0, size, 0);
+        return groups;
+      }
+      if (keyColumns == null) {
+        keyColumns = new Object[groupKeys.length];
+        for (int j = 0; j < groupKeys.length; j++) {
+          keyColumns[j] =
+              Array.newInstance(
+                  batch.columns[groupKeys[j]].getClass().getComponentType(),
+                  16);
+        }
+        packer = KeyPacker.of(batch.columns, groupKeys);
+        if (packer != null) {
+          longTable = new LongKeyedEnumerables.LongHashTable();
+        } else {
+          map = new HashMap<>();
+        }
+      }
+      if (packer != null) {
+        assert packer.accepts(groupKeys, batch.columns);
+        packed = packer.pack(groupKeys, batch.columns, size, packed);
+        for (int i = 0; i < size; i++) {
+          int group = longTable.get(packed[i]);
+          if (group < 0) {
+            group = newGroup(batch.columns, i);
+            longTable.put(packed[i], group);
+          }
+          groups[i] = group;
+        }
+        return groups;
+      }
+      for (int i = 0; i < size; i++) {
+        final Object key = ColumnBatches.key(batch.columns, groupKeys, i);
+        Integer group = map.get(key);
+        if (group == null) {
+          group = newGroup(batch.columns, i);
+          map.put(key, group);
+        }
+        groups[i] = group;
+      }
+      return groups;
+    }
+
+    /** Creates a group whose keys are the values of row {@code i}, and
+     * returns its ordinal. */
+    private int newGroup(Object[] columns, int i) {
+      final int group = groupCount++;
+      for (int j = 0; j < groupKeys.length; j++) {
+        Object keyColumn = keyColumns[j];
+        final int length = Array.getLength(keyColumn);
+        if (group == length) {
+          final Object newKeyColumn =
+              Array.newInstance(keyColumn.getClass().getComponentType(),
+                  length * 2);
+          System.arraycopy(keyColumn, 0, newKeyColumn, 0, length);
+          keyColumns[j] = keyColumn = newKeyColumn;
+        }
+        System.arraycopy(columns[groupKeys[j]], i, keyColumn, group, 1);
+      }
+      return group;
+    }
+
+    /** Writes the values of the {@code j}th group key of groups
+     * {@code start} to {@code start + size - 1} into a column array. */
+    void writeKeys(int j, int start, int size, Object column) {
+      copy(keyColumns[j], start, size, column);
+    }
+  }
+
+  /** Creates an accumulator for an aggregate function. */
+  private static Accumulator accumulator(AggFunction function, int arg,
+      Class fieldClass) {
+    switch (function) {
+    case COUNT:
+      return new CountAccumulator(arg);
+    case SUM:
+    case SUM0:
+      return new SumAccumulator(arg, fieldClass, function == AggFunction.SUM);
+    case MIN:
+    case MAX:
+      return new MinMaxAccumulator(arg, fieldClass,
+          function == AggFunction.MIN);
+    default:
+      throw new AssertionError(function);
+    }
+  }
+
+  /** Computes the value of an aggregate function for each group. */
+  private abstract static class Accumulator {
+    final int arg;
+
+    Accumulator(int arg) {
+      this.arg = arg;
+    }
+
+    /** Makes sure that there is room for the state of a given number of
+     * groups. */
+    abstract void ensureCapacity(int groupCount);
+
+    /** Adds the rows of a batch, given the group of each row. */
+    abstract void add(Object[] columns, int[] groups, int size);
+
+    /** Returns the value of the aggregate function for a group. */
+    abstract Object result(int group);
+
+    /** Writes the value of the aggregate function for groups {@code start}
+     * to {@code start + size - 1} into a column array. Subclasses write
+     * primitive column arrays without boxing. */
+    void write(int start, int size, Object column) {
+      if (column instanceof Object[]) {
+        final Object[] c = (Object[]) column;
+        for (int i = 0; i < size; i++) {
+          c[i] = result(start + i);
+        }
+      } else {
+        for (int i = 0; i < size; i++) {
+          Array.set(column, i, result(start + i));
+        }
+      }
+    }
+  }
+
+  /** Writes values held as {@code long} into a primitive integral column
+   * array, and returns whether the column is such an array. */
+  private static boolean writeLongs(long[] values, int start, int size,
+      Object column) {
+    if (column instanceof long[]) {
+      System.arraycopy(values, start, column, 0, size);
+    } else if (column instanceof int[]) {
+      final int[] c = (int[]) column;
+      for (int i = 0; i < size; i++) {
+        c[i] = (int) values[start + i];
+      }
+    } else if (column instanceof short[]) {
+      final short[] c = (short[]) column;
+      for (int i = 0; i < size; i++) {
+        c[i] = (short) values[start + i];
+      }
+    } else if (column instanceof byte[]) {
+      final byte[] c = (byte[]) column;
+      for (int i = 0; i < size; i++) {
+        c[i] = (byte) values[start + i];
+      }
+    } else {
+      return false;
+    }
+    return true;
+  }
+
+  /** Writes values held as {@code double} into a primitive floating-point
+   * column array, and returns whether the column is such an array. */
+  private static boolean writeDoubles(double[] values, int start, int size,
+      Object column) {
+    if (column instanceof double[]) {
+      System.arraycopy(values, start, column, 0, size);
+    } else if (column instanceof float[]) {
+      final float[] c = (float[]) column;
+      for (int i = 0; i < size; i++) {
+        c[i] = (float) values[start + i];
+      }
+    } else {
+      return false;
+    }
+    return true;
+  }
+
+  /** Accumulator for {@code COUNT}. */
+  private static class CountAccumulator extends Accumulator {
+    private long[] counts = new long[0];
+
+    CountAccumulator(int arg) {
+      super(arg);
+    }
+
+    void ensureCapacity(int groupCount) {
+      if (counts.length < groupCount) {
+        counts = Arrays.copyOf(counts, Math.max(groupCount, counts.length * 2));
+      }
+    }
+
+    void add(Object[] columns, int[] groups, int size) {
+      if (arg >= 0 && columns[arg] instanceof Object[]) {
+        final Object[] c = (Object[]) columns[arg];
+        for (int i = 0; i < size; i++) {
+          if (c[i] != null) {
+            ++counts[groups[i]];
+          }
+        }
+      } else {
+        for (int i = 0; i < size; i++) {
+          ++counts[groups[i]];
+        }
+      }
+    }
+
+    Object result(int group) {
+      return counts[group];
+    }
+
+    @Override void write(int start, int size, Object column) {
+      if (!writeLongs(counts, start, size, column)) {
+        super.write(start, size, column);
+      }
+    }
+  }
+
+  /** How a {@link SumAccumulator} or {@link MinMaxAccumulator} holds its
+   * state. */
+  private enum Mode {
+    LONG, DOUBLE, DECIMAL, OBJECT
+  }
+
+  /** Returns the mode for an aggregate function whose result has a given
+   * class. */
+  private static Mode mode(Class fieldClass) {
+    final Primitive primitive = Primitive.ofBoxOr(fieldClass);
+    if (primitive != null) {
+      switch (primitive) {
+      case BYTE:
+      case SHORT:
+      case INT:
+      case LONG:
+        return Mode.LONG;
+      case FLOAT:
+      case DOUBLE:
+        return Mode.DOUBLE;
+      default:
+        break;
+      }
+    }
+    return fieldClass == BigDecimal.class ? Mode.DECIMAL : Mode.OBJECT;
+  }
+
+  /** Converts the value of an aggregate function to a given class. */
+  private static Object convert(Object value, Class fieldClass) {
+    final Primitive primitive = Primitive.ofBoxOr(fieldClass);
+    if (value instanceof Number && primitive != null) {
+      return primitive.number((Number) value);
+    }
+    return value;
+  }
+
+  /** Accumulator for {@code SUM} and {@code $SUM0}. */
+  private static class SumAccumulator extends Accumulator {
+    private final Class fieldClass;
+    /** Whether the result is null for a group with no non-null values
+     * ({@code SUM}), rather than zero ({@code $SUM0}). */
+    private final boolean nullIfEmpty;
+    private final Mode mode;
+    private long[] longs = new long[0];
+    private double[] doubles = new double[0];
+    private BigDecimal[] decimals = new BigDecimal[0];
+    private boolean[] seen = new boolean[0];
+
+    SumAccumulator(int arg, Class fieldClass, boolean nullIfEmpty) {
+      super(arg);
+      this.fieldClass = fieldClass;
+      this.nullIfEmpty = nullIfEmpty;
+      this.mode = mode(fieldClass);
+      assert mode != Mode.OBJECT : fieldClass;
+    }
+
+    void ensureCapacity(int groupCount) {
+      if (seen.length < groupCount) {
+        final int n = Math.max(groupCount, seen.length * 2);
+        seen = Arrays.copyOf(seen, n);
+        switch (mode) {
+        case LONG:
+          longs = Arrays.copyOf(longs, n);
+          break;
+        case DOUBLE:
+          doubles = Arrays.copyOf(doubles, n);
+          break;
+        default:
+          decimals = Arrays.copyOf(decimals, n);
+        }
+      }
+    }
+
+    void add(Object[] columns, int[] groups, int size) {
+      final Object column = columns[arg];
+      if (mode == Mode.LONG && column instanceof int[]) {
+        final int[] c = (int[]) column;
+        for (int i = 0; i < size; i++) {
+          final int g = groups[i];
+          longs[g] += c[i];
+          seen[g] = true;
+        }
+      } else if (mode == Mode.LONG && column instanceof long[]) {
+        final long[] c = (long[]) column;
+        for (int i = 0; i < size; i++) {
+          final int g = groups[i];
+          longs[g] += c[i];
+          seen[g] = true;
+        }
+      } else if (mode == Mode.DOUBLE && column instanceof double[]) {
+        final double[] c = (double[]) column;
+        for (int i = 0; i < size; i++) {
+          final int g = groups[i];
+          doubles[g] += c[i];
+          seen[g] = true;
+        }
+      } else {
+        for (int i = 0; i < size; i++) {
+          final Number value = (Number) get(column, i);
+          if (value == null) {
+            continue;
+          }
+          final int g = groups[i];
+          switch (mode) {
+          case LONG:
+            longs[g] += value.longValue();
+            break;
+          case DOUBLE:
+            doubles[g] += value.doubleValue();
+            break;
+          default:
+            final BigDecimal decimal = value instanceof BigDecimal
+                ? (BigDecimal) value
+                : new BigDecimal(value.toString());
+            decimals[g] = decimals[g] == null
+                ? decimal
+                : decimals[g].add(decimal);
+          }
+          seen[g] = true;
+        }
+      }
+    }
+
+    Object result(int group) {
+      if (!seen[group] && nullIfEmpty) {
+        return null;
+      }
+      switch (mode) {
+      case LONG:
+        return convert(longs[group], fieldClass);
+      case DOUBLE:
+        return convert(doubles[group], fieldClass);
+      default:
+        return seen[group] ? decimals[group] : BigDecimal.ZERO;
+      }
+    }
+
+    @Override void write(int start, int size, Object column) {
+      // A primitive column is NOT NULL, so no group is empty (SUM) or an
+      // empty group's value is zero ($SUM0).
+      if (!(mode == Mode.LONG && writeLongs(longs, start, size, column))
+          && !(mode == Mode.DOUBLE
+              && writeDoubles(doubles, start, size, column))) {
+        super.write(start, size, column);
+      }
+    }
+  }
+
+  /** Accumulator for {@code MIN} and {@code MAX}. */
+  private static class MinMaxAccumulator extends Accumulator {
+    private final Class fieldClass;
+    private final boolean min;
+    private final Mode mode;
+    private long[] longs = new long[0];
+    private double[] doubles = new double[0];
+    private Comparable[] objects = new Comparable[0];
+    private boolean[] seen = new boolean[0];
+
+    MinMaxAccumulator(int arg, Class fieldClass, boolean min) {
+      super(arg);
+      this.fieldClass = fieldClass;
+      this.min = min;
+      final Mode mode = mode(fieldClass);
+      this.mode = mode == Mode.DECIMAL ? Mode.OBJECT : mode;
+    }
+
+    void ensureCapacity(int groupCount) {
+      if (seen.length < groupCount) {
+        final int n = Math.max(groupCount, seen.length * 2);
+        seen = Arrays.copyOf(seen, n);
+        switch (mode) {
+        case LONG:
+          longs = Arrays.copyOf(longs, n);
+          break;
+        case DOUBLE:
+          doubles = Arrays.copyOf(doubles, n);
+          break;
+        default:
+          objects = Arrays.copyOf(objects, n);
+        }
+      }
+    }
+
+    void add(Object[] columns, int[] groups, int size) {
+      final Object column = columns[arg];
+      if (mode == Mode.LONG && isIntegral(column)) {
+        for (int i = 0; i < size; i++) {
+          addLong(groups[i], getLong(column, i));
+        }
+      } else if (mode == Mode.DOUBLE && column instanceof double[]) {
+        final double[] c = (double[]) column;
+        for (int i = 0; i < size; i++) {
+          addDouble(groups[i], c[i]);
+        }
+      } else {
+        for (int i = 0; i < size; i++) {
+          final Object value = get(column, i);
+          if (value == null) {
+            continue;
+          }
+          final int g = groups[i];
+          switch (mode) {
+          case LONG:
+            addLong(g, ((Number) value).longValue());
+            break;
+          case DOUBLE:
+            addDouble(g, ((Number) value).doubleValue());
+            break;
+          default:
+            //noinspection unchecked
+            final Comparable c = (Comparable) value;
+            if (!seen[g]
+                || (min
+                    ? c.compareTo(objects[g]) < 0
+                    : c.compareTo(objects[g]) > 0)) {
+              objects[g] = c;
+            }
+            seen[g] = true;
+          }
+        }
+      }
+    }
+
+    private void addLong(int g, long value) {
+      if (!seen[g] || (min ? value < longs[g] : value > longs[g])) {
+        longs[g] = value;
+      }
+      seen[g] = true;
+    }
+
+    private void addDouble(int g, double value) {
+      if (!seen[g] || (min ? value < doubles[g] : value > doubles[g])) {
+        doubles[g] = value;
+      }
+      seen[g] = true;
+    }
+
+    Object result(int group) {
+      if (!seen[group]) {
+        return null;
+      }
+      switch (mode) {
+      case LONG:
+        return convert(longs[group], fieldClass);
+      case DOUBLE:
+        return convert(doubles[group], fieldClass);
+      default:
+        return objects[group];
+      }
+    }
+
+    @Override void write(int start, int size, Object column) {
+      // A primitive column is NOT NULL, so no group is empty.
+      if (!(mode == Mode.LONG && writeLongs(longs, start, size, column))
+          && !(mode == Mode.DOUBLE
+              && writeDoubles(doubles, start, size, column))) {
+        super.write(start, size, column);
+      }
+    }
+  }
+
+  /** Rows of the inner input of a join, indexed by key. */
+  private static class JoinIndex {
+    private final int[] innerKeys;
+    /** Each column of the inner input, concatenated over all batches. */
+    private final Object[] columns;
+    /** Packs the keys of rows, if they can be packed into a {@code long}. */
+    private KeyPacker packer;
+    /** Hash table from packed key to key ordinal, used if {@link #packer} is
+     * not null. */
+    private LongKeyedEnumerables.LongHashTable longTable;
+    /** Map from key to key ordinal, used otherwise. */
+    private Map<Object, Integer> map;
+    /** For each key, its first row. */
+    private int[] first = new int[16];
+    /** For each key, its last row. */
+    private int[] last = new int[16];
+    /** For each row, the next row with the same key, or -1. */
+    private final int[] next;
+    private int keyCount;
+    /** Packed key of each row of the batch being probed. */
+    private long[] packed = new long[0];
+
+    JoinIndex(Enumerable<ColumnBatch> inner, int[] innerKeys,
+        int outputColumnCount) {
+      this.innerKeys = innerKeys;
+      final List<ColumnBatch> batches = inner.toList();
+      int size = 0;
+      for (ColumnBatch batch : batches) {
+        size += batch.size;
+      }
+      this.columns = batches.isEmpty()
+          ? new Object[0]
+          : concat(batches, size);
+      this.next = new int[size];
+      if (batches.isEmpty()) {
+        return;
+      }
+      packer = KeyPacker.of(columns, innerKeys);
+      if (packer != null) {
+        longTable = new LongKeyedEnumerables.LongHashTable();
+        final long[] keys =
+            packer.pack(innerKeys, columns, size, new long[size]);
+        for (int r = 0; r < size; r++) {
+          int k = longTable.get(keys[r]);
+          if (k < 0) {
+            k = keyCount;
+            longTable.put(keys[r], k);
+          }
+          add(k, r);
+        }
+      } else {
+        map = new HashMap<>();
+        for (int r = 0; r < size; r++) {
+          final Object key = key(columns, innerKeys, r);
+          if (containsNull(key, innerKeys.length)) {
+            next[r] = -1;
+            continue;
+          }
+          Integer k = map.get(key);
+          if (k == null) {
+            k = keyCount;
+            map.put(key, k);
+          }
+          add(k, r);
+        }
+      }
+    }
+
+    /** Concatenates each column of a list of batches. */
+    private static Object[] concat(List<ColumnBatch> batches, int size) {
+      final Object[] columns = new Object[batches.get(0).columns.length];
+      for (int j = 0; j < columns.length; j++) {
+        final Object column =
+            Array.newInstance(
+                batches.get(0).columns[j].getClass().getComponentType(),
+                size);
+        int offset = 0;
+        for (ColumnBatch batch : batches) {
+          System.arraycopy(batch.columns[j], 0, column, offset, batch.size);
+          offset += batch.size;
+        }
+        columns[j] = column;
+      }
+      return columns;
+    }
+
+    private void add(int k, int r) {
+      next[r] = -1;
+      if (k == keyCount) {
+        if (keyCount == first.length) {
+          first = Arrays.copyOf(first, keyCount * 2);
+          last = Arrays.copyOf(last, keyCount * 2);
+        }
+        first[k] = r;
+        ++keyCount;
+      } else {
+        next[last[k]] = r;
+      }
+      last[k] = r;
+    }
+
+    /** Returns the first inner row whose key matches row {@code i} of an
+     * outer batch, or -1. If the keys are packed, {@code packedOuter} says
+     * whether {@link #packed} holds the packed key of each row of the
+     * batch. */
+    private int first(Object[] outerColumns, int[] outerKeys, int i,
+        boolean packedOuter) {
+      final int k;
+      if (longTable != null) {
+        k = packedOuter || packer.packRow(outerKeys, outerColumns, i, packed)
+            ? longTable.get(packed[i])
+            : -1;
+      } else if (map != null) {
+        final Object key = key(outerColumns, outerKeys, i);
+        final Integer k2 =
+            containsNull(key, outerKeys.length) ? null : map.get(key);
+        k = k2 == null ? -1 : k2;
+      } else {
+        k = -1;
+      }
+      return k < 0 ? -1 : first[k];
+    }
+
+    /** Returns a batch of the rows that join a batch of the outer input to
+     * the inner input. */
+    ColumnBatch probe(ColumnBatch batch, int[] outerKeys,
+        boolean generateNullsOnInner, Class[] columnClasses) {
+      int[] outerIndexes = new int[batch.size];
+      int[] innerIndexes = new int[batch.size];
+      int n = 0;
+      boolean packedOuter = false;
+      if (packer != null) {
+        // The outer key columns usually have the same classes as the inner
+        // key columns, and their keys can be packed a column at a time;
+        // otherwise "first" packs the key of each row.
+        packedOuter = packer.accepts(outerKeys, batch.columns);
+        if (packedOuter) {
+          packed = packer.pack(outerKeys, batch.columns, batch.size, packed);
+        } else if (packed.length < batch.size) {
+          packed = new long[batch.size];
+        }
+      }
+      for (int i = 0; i < batch.size; i++) {
+        int r = first(batch.columns, outerKeys, i, packedOuter);
+        if (r < 0 && !generateNullsOnInner) {
+          continue;
+        }
+        do {
+          if (n == outerIndexes.length) {
+            outerIndexes = Arrays.copyOf(outerIndexes, n * 2 + 1);
+            innerIndexes = Arrays.copyOf(innerIndexes, n * 2 + 1);
+          }
+          outerIndexes[n] = i;
+          innerIndexes[n] = r;
+          ++n;
+          r = r < 0 ? -1 : next[r];
+        } while (r >= 0);
+      }
+      final Object[] outputColumns = new Object[columnClasses.length];
+      final int outerCount = batch.columns.length;
+      for (int j = 0; j < columnClasses.length; j++) {
+        outputColumns[j] = j < outerCount
+            ? gather(batch.columns[j], outerIndexes, n, columnClasses[j])
+            : columns.length == 0
+            ? Array.newInstance(columnClasses[j].getComponentType(), n)
+            : gather(columns[j - outerCount], innerIndexes, n,
+                columnClasses[j]);
+      }
+      return new ColumnBatch(outputColumns, n);
+    }
+  }
+}
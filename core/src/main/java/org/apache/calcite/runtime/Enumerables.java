@@ -21,13 +21,26 @@
 import org.apache.calcite.linq4j.Enumerable;
 import org.apache.calcite.linq4j.Enumerator;
 import org.apache.calcite.linq4j.function.Function1;
+import org.apache.calcite.util.Util;
 
+import com.google.common.base.Preconditions;
+
+import java.lang.ref.WeakReference;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Deque;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
@@ -182,6 +195,320 @@ public void close() {
     };
   }
 
+  /** Evaluates the partitions of a relational expression concurrently, and
+   * returns the union of their rows, in no particular order.
+   *
+   * <p>Each partition is evaluated by a task in the common
+   * {@link ForkJoinPool}. Tasks send rows to the consumer in batches via a
+   * bounded queue, so a slow consumer holds back the tasks rather than
+   * letting rows accumulate in memory. Close the enumerator to stop the
+   * tasks early; if the consumer abandons it without closing it, the tasks
+   * stop after it has been garbage-collected.
+   *
+   * @param partitionCount Number of partitions
+   * @param partitionFactory Given the ordinal of a partition, returns the
+   *                         rows of that partition
+   * @param <E> element type
+   */
+  public static <E> Enumerable<E> gather(final int partitionCount,
+      final Function1<Integer, Enumerable<E>> partitionFactory) {
+    return gather(partitionCount, partitionFactory,
+        ForkJoinPool.commonPool());
+  }
+
+  /** Evaluates the partitions of a relational expression concurrently, using
+   * a given executor, and returns the union of their rows, in no particular
+   * order.
+   *
+   * <p>Use this method rather than {@link #gather(int, Function1)} if the
+   * partitions spend most of their time blocked, for example waiting for
+   * rows from a remote database, and would otherwise occupy the threads of
+   * the common pool.
+   *
+   * @param partitionCount Number of partitions
+   * @param partitionFactory Given the ordinal of a partition, returns the
+   *                         rows of that partition
+   * @param executor Executor that runs one task per partition
+   * @param <E> element type
+   */
+  public static <E> Enumerable<E> gather(final int partitionCount,
+      final Function1<Integer, Enumerable<E>> partitionFactory,
+      final Executor executor) {
+    return gather(partitionCount, partitionFactory, executor,
+        partitionCount);
+  }
+
+  /** Evaluates the partitions of a relational expression, at most
+   * {@code maxConcurrency} at a time, using a given executor, and returns the
+   * union of their rows, in no particular order.
+   *
+   * <p>The enumerator submits at most {@code maxConcurrency} tasks to the
+   * executor; each task evaluates partitions until none remain. The limit
+   * therefore applies to each enumerator separately, and enumerators never
+   * compete for the threads of a bounded executor. A task that is waiting
+   * for the consumer to read its rows holds its thread, so the executor
+   * should not have fewer threads than the sum of the limits of the
+   * enumerators that may be open at a time; an unbounded executor is
+   * safest.
+   *
+   * @param partitionCount Number of partitions
+   * @param partitionFactory Given the ordinal of a partition, returns the
+   *                         rows of that partition
+   * @param executor Executor that runs the tasks
+   * @param maxConcurrency Maximum number of partitions to evaluate at a time
+   * @param <E> element type
+   */
+  public static <E> Enumerable<E> gather(final int partitionCount,
+      final Function1<Integer, Enumerable<E>> partitionFactory,
+      final Executor executor, final int maxConcurrency) {
+    return gather(partitionCount, partitionFactory, executor, maxConcurrency,
+        false);
+  }
+
+  /** Evaluates the partitions of a relational expression, at most
+   * {@code maxConcurrency} at a time, using a given executor, and returns the
+   * union of their rows, in no particular order; optionally buffers the rows
+   * of a partition rather than waiting for the consumer.
+   *
+   * <p>If {@code bufferWhenBlocked} is true, a task that finds the queue
+   * full reads the rest of its partition into memory, and closes the
+   * partition's enumerator, before it waits for the consumer. Use this if a
+   * partition holds a scarce resource while it is open, such as a connection
+   * from a bounded pool; otherwise a consumer that does not read its rows
+   * would prevent other queries from getting the resource. The cost is that
+   * up to {@code maxConcurrency} partitions may be held in memory.
+   *
+   * @param partitionCount Number of partitions
+   * @param partitionFactory Given the ordinal of a partition, returns the
+   *                         rows of that partition
+   * @param executor Executor that runs the tasks
+   * @param maxConcurrency Maximum number of partitions to evaluate at a time
+   * @param bufferWhenBlocked Whether to read the rest of a partition into
+   *                          memory, and close it, rather than wait for the
+   *                          consumer
+   * @param <E> element type
+   */
+  public static <E> Enumerable<E> gather(final int partitionCount,
+      final Function1<Integer, Enumerable<E>> partitionFactory,
+      final Executor executor, final int maxConcurrency,
+      final boolean bufferWhenBlocked) {
+    Preconditions.checkArgument(maxConcurrency > 0,
+        "maxConcurrency must be positive");
+    return new AbstractEnumerable<E>() {
+      public Enumerator<E> enumerator() {
+        return new GatherEnumerator<>(partitionCount, partitionFactory,
+            executor, maxConcurrency, bufferWhenBlocked);
+      }
+    };
+  }
+
+  /** Enumerator that reads rows produced concurrently by the partitions of
+   * a {@link #gather} call.
+   *
+   * @param <E> element type */
+  private static class GatherEnumerator<E> implements Enumerator<E> {
+    /** Sent by a partition after its last batch. */
+    private static final Object END = new Object();
+
+    private final int partitionCount;
+    private final Executor executor;
+    private final int maxConcurrency;
+    private final GatherProducer<E> producer;
+    private boolean started;
+    private int runningCount;
+    private Iterator<E> batch = Collections.emptyIterator();
+    private E current;
+
+    GatherEnumerator(int partitionCount,
+        Function1<Integer, Enumerable<E>> partitionFactory,
+        Executor executor, int maxConcurrency, boolean bufferWhenBlocked) {
+      this.partitionCount = partitionCount;
+      this.executor = executor;
+      this.maxConcurrency = maxConcurrency;
+      this.producer =
+          new GatherProducer<>(this, partitionCount, partitionFactory,
+              bufferWhenBlocked);
+    }
+
+    public E current() {
+      return current;
+    }
+
+    public boolean moveNext() {
+      if (!started) {
+        started = true;
+        runningCount = partitionCount;
+        final int taskCount = Math.min(partitionCount, maxConcurrency);
+        for (int i = 0; i < taskCount; i++) {
+          executor.execute(producer::produceAll);
+        }
+      }
+      for (;;) {
+        if (batch.hasNext()) {
+          current = batch.next();
+          return true;
+        }
+        if (runningCount == 0) {
+          return false;
+        }
+        final Object o;
+        try {
+          o = producer.queue.take();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          close();
+          throw new RuntimeException(e);
+        }
+        if (o == END) {
+          --runningCount;
+        } else if (o instanceof Throwable) {
+          close();
+          Util.throwIfUnchecked((Throwable) o);
+          throw new RuntimeException((Throwable) o);
+        } else {
+          //noinspection unchecked
+          batch = ((List<E>) o).iterator();
+        }
+      }
+    }
+
+    public void reset() {
+      throw new UnsupportedOperationException();
+    }
+
+    public void close() {
+      producer.cancelled.set(true);
+      producer.queue.clear();
+      batch = Collections.emptyIterator();
+      runningCount = 0;
+    }
+  }
+
+  /** Tasks of a {@link GatherEnumerator}, which evaluate its partitions and
+   * send their rows to it.
+   *
+   * <p>The tasks hold only a weak reference to the enumerator. If the
+   * consumer abandons the enumerator without closing it, the enumerator is
+   * eventually garbage-collected; a task that is waiting for the consumer
+   * notices within 100 milliseconds, stops, and closes its partition,
+   * releasing any resources, such as a JDBC connection, that the partition
+   * holds.
+   *
+   * @param <E> element type */
+  private static class GatherProducer<E> {
+    /** Number of rows that a partition sends to the consumer at a time. */
+    private static final int BATCH_SIZE = 1024;
+
+    private final WeakReference<GatherEnumerator<E>> consumer;
+    private final int partitionCount;
+    private final Function1<Integer, Enumerable<E>> partitionFactory;
+    private final boolean bufferWhenBlocked;
+    final BlockingQueue<Object> queue;
+    /** Ordinal of the next partition that a task should evaluate. */
+    private final AtomicInteger nextPartition = new AtomicInteger();
+    final AtomicBoolean cancelled = new AtomicBoolean();
+
+    GatherProducer(GatherEnumerator<E> consumer, int partitionCount,
+        Function1<Integer, Enumerable<E>> partitionFactory,
+        boolean bufferWhenBlocked) {
+      this.consumer = new WeakReference<>(consumer);
+      this.partitionCount = partitionCount;
+      this.partitionFactory = partitionFactory;
+      this.bufferWhenBlocked = bufferWhenBlocked;
+      this.queue = new ArrayBlockingQueue<>(partitionCount * 2);
+    }
+
+    /** Returns whether the consumer has closed or abandoned the
+     * enumerator. */
+    private boolean isCancelled() {
+      if (consumer.get() == null) {
+        cancelled.set(true);
+      }
+      return cancelled.get();
+    }
+
+    /** Evaluates partitions that no other task has started, until none
+     * remain or the consumer closes the enumerator. Runs in a pool thread. */
+    void produceAll() {
+      for (;;) {
+        final int partition = nextPartition.getAndIncrement();
+        if (partition >= partitionCount || isCancelled()) {
+          return;
+        }
+        produce(partition);
+      }
+    }
+
+    /** Reads the rows of a partition and sends them to the consumer. */
+    private void produce(int partition) {
+      try {
+        final List<List<E>> pending = new ArrayList<>();
+        try (Enumerator<E> enumerator =
+                 partitionFactory.apply(partition).enumerator()) {
+          List<E> rows = new ArrayList<>(BATCH_SIZE);
+          while (!cancelled.get() && enumerator.moveNext()) {
+            rows.add(enumerator.current());
+            if (rows.size() == BATCH_SIZE) {
+              send(rows, pending);
+              rows = new ArrayList<>(BATCH_SIZE);
+            }
+          }
+          if (!rows.isEmpty()) {
+            send(rows, pending);
+          }
+        }
+        // The partition is closed; wait until the consumer takes the
+        // batches that did not fit in the queue
+        for (List<E> rows : pending) {
+          put(rows);
+        }
+        put(GatherEnumerator.END);
+      } catch (Throwable e) {
+        try {
+          put(e);
+        } catch (InterruptedException e2) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+
+    /** Sends a batch of rows to the consumer. If {@link #bufferWhenBlocked}
+     * and the queue is full, or earlier batches of the partition are already
+     * pending, adds the batch to {@code pending} rather than waiting. */
+    private void send(List<E> rows, List<List<E>> pending)
+        throws InterruptedException {
+      if (!bufferWhenBlocked) {
+        put(rows);
+      } else if (!pending.isEmpty() || !queue.offer(rows)) {
+        pending.add(rows);
+      }
+    }
+
+    /** Adds an element to the queue, waiting for space if necessary. Gives
+     * up if the consumer has closed or abandoned the enumerator. If the
+     * thread belongs to a {@link ForkJoinPool}, tells the pool that the
+     * thread is blocked, so that the pool can compensate. */
+    private void put(Object o) throws InterruptedException {
+      ForkJoinPool.managedBlock(
+          new ForkJoinPool.ManagedBlocker() {
+            boolean done;
+
+            public boolean block() throws InterruptedException {
+              done = isCancelled()
+                  || queue.offer(o, 100, TimeUnit.MILLISECONDS);
+              return done;
+            }
+
+            public boolean isReleasable() {
+              if (!done) {
+                done = isCancelled() || queue.offer(o);
+              }
+              return done;
+            }
+          });
+    }
+  }
+
   /** Given a match (a list of rows, and their states) produces a list
    * of rows to be output.
    *
@@ -0,0 +1,231 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.runtime;
+
+import org.apache.calcite.DataContext;
+import org.apache.calcite.adapter.java.JavaTypeFactory;
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.linq4j.QueryProvider;
+import org.apache.calcite.schema.SchemaPlus;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics gathered while executing a query: for each relational
+ * operator, the number of rows it produced, the number of times it was
+ * started, and the time it took.
+ *
+ * <p>Statistics are gathered when executing an {@code EXPLAIN ANALYZE PLAN}
+ * statement, or a query whose connection records
+ * {@link org.apache.calcite.rel.metadata.CardinalityFeedback}, and are keyed
+ * by the id of each
+ * {@link org.apache.calcite.rel.RelNode}. Code generated for the enumerable
+ * convention wraps the output of each operator using {@link #instrument};
+ * the {@link org.apache.calcite.interpreter.Interpreter} counts the rows that
+ * each node writes and times each node's run.
+ *
+ * <p>In the enumerable convention, operators produce rows on demand, so the
+ * time of an operator includes the time its inputs took to produce the rows
+ * that it read. The interpreter, unless pipelined, runs a node after its
+ * inputs have finished, so the time of a node excludes its inputs. If an
+ * operator runs in several threads, the times are summed.
+ */
+public class ExecutionStatistics {
+  private final Map<Integer, OperatorStatistics> operators =
+      new ConcurrentHashMap<>();
+
+  /** Returns the statistics of the query executing in a given data context,
+   * or null if the query is not gathering statistics. */
+  public static ExecutionStatistics of(DataContext root) {
+    if (root == null) {
+      return null;
+    }
+    return (ExecutionStatistics) root.get(
+        DataContext.Variable.EXECUTION_STATISTICS.camelName);
+  }
+
+  /** Wraps the output of an operator so that it records statistics, if the
+   * query executing in a given data context is gathering statistics;
+   * otherwise returns the enumerable unchanged. */
+  public static <T> Enumerable<T> instrument(DataContext root, int id,
+      Enumerable<T> enumerable) {
+    final ExecutionStatistics statistics = of(root);
+    if (statistics == null) {
+      return enumerable;
+    }
+    return statistics.operator(id).instrument(enumerable);
+  }
+
+  /** Returns a data context that is the same as a given data context but
+   * gathers statistics into this object. */
+  public DataContext wrap(final DataContext root) {
+    return new DataContext() {
+      public SchemaPlus getRootSchema() {
+        return root.getRootSchema();
+      }
+
+      public JavaTypeFactory getTypeFactory() {
+        return root.getTypeFactory();
+      }
+
+      public QueryProvider getQueryProvider() {
+        return root.getQueryProvider();
+      }
+
+      public Object get(String name) {
+        if (name.equals(Variable.EXECUTION_STATISTICS.camelName)) {
+          return ExecutionStatistics.this;
+        }
+        return root.get(name);
+      }
+    };
+  }
+
+  /** Returns the statistics of an operator, creating them if this is the
+   * first time that the operator has executed. */
+  public OperatorStatistics operator(int id) {
+    return operators.computeIfAbsent(id, id_ -> new OperatorStatistics());
+  }
+
+  /** Returns the statistics of an operator, or null if the operator has not
+   * executed or its execution was not instrumented. */
+  public OperatorStatistics get(int id) {
+    return operators.get(id);
+  }
+
+  /** Statistics of one relational operator. */
+  public static class OperatorStatistics {
+    private final LongAdder rowCount = new LongAdder();
+    private final LongAdder openCount = new LongAdder();
+    private final LongAdder finishedCount = new LongAdder();
+    private final LongAdder elapsedNanos = new LongAdder();
+
+    /** Returns the number of rows that the operator has produced. */
+    public long getRowCount() {
+      return rowCount.sum();
+    }
+
+    /** Returns the number of times that the operator has started; for
+     * example, the inner input of a nested-loop join starts once per outer
+     * row. */
+    public long getOpenCount() {
+      return openCount.sum();
+    }
+
+    /** Returns the number of times that the operator has produced all of
+     * its rows; less than the number of times that it started if a consumer
+     * stopped reading early or the operator failed. */
+    public long getFinishedCount() {
+      return finishedCount.sum();
+    }
+
+    /** Returns the time, in milliseconds, that the operator took. */
+    public double getElapsedMillis() {
+      return (double) elapsedNanos.sum() / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /** Records that the operator has started. */
+    public void opened() {
+      openCount.increment();
+    }
+
+    /** Records that the operator has produced all of its rows. */
+    public void finished() {
+      finishedCount.increment();
+    }
+
+    /** Records that the operator has produced rows. */
+    public void addRows(long count) {
+      rowCount.add(count);
+    }
+
+    /** Records time that the operator has taken. */
+    public void addElapsedNanos(long nanos) {
+      elapsedNanos.add(nanos);
+    }
+
+    /** Wraps an enumerable so that its enumerators record their rows and the
+     * time that they take in this operator's statistics. */
+    public <T> Enumerable<T> instrument(Enumerable<T> enumerable) {
+      return new AbstractEnumerable<T>() {
+        public Enumerator<T> enumerator() {
+          opened();
+          final long start = System.nanoTime();
+          try {
+            return new InstrumentedEnumerator<>(enumerable.enumerator(),
+                OperatorStatistics.this);
+          } finally {
+            addElapsedNanos(System.nanoTime() - start);
+          }
+        }
+      };
+    }
+  }
+
+  /** Enumerator that records its rows and the time it takes.
+   *
+   * @param <T> element type */
+  private static class InstrumentedEnumerator<T> implements Enumerator<T> {
+    private final Enumerator<T> enumerator;
+    private final OperatorStatistics statistics;
+    private boolean finished;
+
+    InstrumentedEnumerator(Enumerator<T> enumerator,
+        OperatorStatistics statistics) {
+      this.enumerator = enumerator;
+      this.statistics = statistics;
+    }
+
+    public T current() {
+      return enumerator.current();
+    }
+
+    public boolean moveNext() {
+      final long start = System.nanoTime();
+      try {
+        final boolean hasNext = enumerator.moveNext();
+        if (hasNext) {
+          statistics.addRows(1);
+        } else if (!finished) {
+          finished = true;
+          statistics.finished();
+        }
+        return hasNext;
+      } finally {
+        statistics.addElapsedNanos(System.nanoTime() - start);
+      }
+    }
+
+    public void reset() {
+      enumerator.reset();
+    }
+
+    public void close() {
+      final long start = System.nanoTime();
+      try {
+        enumerator.close();
+      } finally {
+        statistics.addElapsedNanos(System.nanoTime() - start);
+      }
+    }
+  }
+}
@@ -0,0 +1,391 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.runtime;
+
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.EnumerableDefaults;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.linq4j.function.Function0;
+import org.apache.calcite.linq4j.function.Function1;
+import org.apache.calcite.linq4j.function.Function2;
+import org.apache.calcite.linq4j.function.LongFunction1;
+import org.apache.calcite.linq4j.function.Predicate2;
+import org.apache.calcite.linq4j.tree.Primitive;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Implementations of hash join and aggregate for keys that can be packed
+ * into a {@code long}.
+ *
+ * <p>The methods have the same semantics as the methods of the same name in
+ * {@link EnumerableDefaults}, but the key selectors return a primitive
+ * {@code long}, and rows are looked up in an open-addressing hash table that
+ * does not allocate an object per row. The generated code uses them when
+ * keys are of primitive, non-nullable types (for example {@code BIGINT NOT
+ * NULL}, or two {@code INTEGER NOT NULL} columns packed into one
+ * {@code long}).
+ */
+public class LongKeyedEnumerables {
+  private LongKeyedEnumerables() {}
+
+  /** Returns the number of bits that a value of a given class occupies in a
+   * packed {@code long} key, or -1 if it cannot be part of such a key.
+   *
+   * <p>Only primitive classes can be part of a key. When several values are
+   * packed into a key, each occupies this many bits, and the key is equal
+   * for two rows if and only if the values are equal by the semantics of
+   * {@link Object#equals} on the boxed values. */
+  public static int keyBits(Class clazz) {
+    final Primitive primitive = Primitive.of(clazz);
+    if (primitive == null) {
+      return -1;
+    }
+    switch (primitive) {
+    case BOOLEAN:
+      return 1;
+    case BYTE:
+      return 8;
+    case CHAR:
+    case SHORT:
+      return 16;
+    case INT:
+    case FLOAT:
+      return 32;
+    case LONG:
+    case DOUBLE:
+      return 64;
+    default:
+      return -1;
+    }
+  }
+
+  /** Joins two sequences on matching {@code long} keys; specialized version
+   * of
+   * {@link EnumerableDefaults#hashJoin(Enumerable, Enumerable, Function1, Function1, Function2, org.apache.calcite.linq4j.function.EqualityComparer, boolean, boolean, Predicate2)}.
+   *
+   * <p>Output rows for an outer row are in the order of the inner input.
+   * If {@code generateNullsOnLeft}, inner rows that matched no outer row are
+   * returned last, in the order of the inner input. {@code predicate} may be
+   * null. */
+  public static <TSource, TInner, TResult> Enumerable<TResult> hashJoin(
+      final Enumerable<TSource> outer, final Enumerable<TInner> inner,
+      final LongFunction1<TSource> outerKeySelector,
+      final LongFunction1<TInner> innerKeySelector,
+      final Function2<TSource, TInner, TResult> resultSelector,
+      final boolean generateNullsOnLeft, final boolean generateNullsOnRight,
+      final Predicate2<TSource, TInner> predicate) {
+    return new AbstractEnumerable<TResult>() {
+      public Enumerator<TResult> enumerator() {
+        final Index<TInner> index = new Index<>();
+        try (Enumerator<TInner> inners = inner.enumerator()) {
+          while (inners.moveNext()) {
+            final TInner row = inners.current();
+            index.add(innerKeySelector.apply(row), row);
+          }
+        }
+        return new JoinEnumerator<>(outer.enumerator(), index,
+            outerKeySelector, resultSelector, generateNullsOnLeft,
+            generateNullsOnRight, predicate);
+      }
+    };
+  }
+
+  /** Groups the elements of a sequence by a {@code long} key and computes an
+   * accumulator for each group; specialized version of
+   * {@link EnumerableDefaults#groupBy(Enumerable, Function1, Function0, Function2, Function2)}.
+   *
+   * <p>{@code keySelector} is called only for the first row of each group,
+   * to create the key that is passed to {@code resultSelector}. Groups are
+   * returned in the order that they first occur. */
+  public static <TSource, TKey, TAccumulate, TResult> Enumerable<TResult>
+      groupBy(final Enumerable<TSource> enumerable,
+      final LongFunction1<TSource> longKeySelector,
+      final Function1<TSource, TKey> keySelector,
+      final Function0<TAccumulate> accumulatorInitializer,
+      final Function2<TAccumulate, TSource, TAccumulate> accumulatorAdder,
+      final Function2<TKey, TAccumulate, TResult> resultSelector) {
+    return new AbstractEnumerable<TResult>() {
+      public Enumerator<TResult> enumerator() {
+        final LongHashTable table = new LongHashTable();
+        final List<TKey> keys = new ArrayList<>();
+        final List<TAccumulate> accumulators = new ArrayList<>();
+        try (Enumerator<TSource> os = enumerable.enumerator()) {
+          while (os.moveNext()) {
+            final TSource o = os.current();
+            final long key = longKeySelector.apply(o);
+            final int group = table.get(key);
+            if (group < 0) {
+              table.put(key, keys.size());
+              keys.add(keySelector.apply(o));
+              accumulators.add(
+                  accumulatorAdder.apply(accumulatorInitializer.apply(), o));
+            } else {
+              final TAccumulate accumulator = accumulators.get(group);
+              final TAccumulate accumulator2 =
+                  accumulatorAdder.apply(accumulator, o);
+              if (accumulator2 != accumulator) {
+                accumulators.set(group, accumulator2);
+              }
+            }
+          }
+        }
+        return new Enumerator<TResult>() {
+          int i = -1;
+
+          public TResult current() {
+            return resultSelector.apply(keys.get(i), accumulators.get(i));
+          }
+
+          public boolean moveNext() {
+            return ++i < keys.size();
+          }
+
+          public void reset() {
+            i = -1;
+          }
+
+          public void close() {
+          }
+        };
+      }
+    };
+  }
+
+  /** Enumerator that probes an {@link Index} with each row of the outer
+   * input.
+   *
+   * @param <TSource> Outer row type
+   * @param <TInner> Inner row type
+   * @param <TResult> Result row type */
+  private static class JoinEnumerator<TSource, TInner, TResult>
+      implements Enumerator<TResult> {
+    private final Enumerator<TSource> outers;
+    private final Index<TInner> index;
+    private final LongFunction1<TSource> outerKeySelector;
+    private final Function2<TSource, TInner, TResult> resultSelector;
+    private final boolean generateNullsOnRight;
+    private final Predicate2<TSource, TInner> predicate;
+    /** Whether each inner row has matched an outer row; null if the join
+     * does not generate nulls on the left. */
+    private final boolean[] matched;
+
+    private TSource outer;
+    /** Next inner row to try for the current outer row, or -1. */
+    private int row = -1;
+    /** Whether the current outer row has not yet produced a result. */
+    private boolean unmatched;
+    /** Next inner row to examine for the "leftovers" phase, or -1 if the
+     * outer input is not yet exhausted. */
+    private int leftover = -1;
+    private TResult current;
+
+    JoinEnumerator(Enumerator<TSource> outers, Index<TInner> index,
+        LongFunction1<TSource> outerKeySelector,
+        Function2<TSource, TInner, TResult> resultSelector,
+        boolean generateNullsOnLeft, boolean generateNullsOnRight,
+        Predicate2<TSource, TInner> predicate) {
+      this.outers = outers;
+      this.index = index;
+      this.outerKeySelector = outerKeySelector;
+      this.resultSelector = resultSelector;
+      this.generateNullsOnRight = generateNullsOnRight;
+      this.predicate = predicate;
+      this.matched = generateNullsOnLeft ? new boolean[index.size()] : null;
+    }
+
+    public TResult current() {
+      return current;
+    }
+
+    public boolean moveNext() {
+      if (leftover >= 0) {
+        return nextLeftover();
+      }
+      for (;;) {
+        while (row >= 0) {
+          final int r = row;
+          final TInner inner = index.row(r);
+          row = index.next(r);
+          if (predicate == null || predicate.apply(outer, inner)) {
+            unmatched = false;
+            if (matched != null) {
+              matched[r] = true;
+            }
+            current = resultSelector.apply(outer, inner);
+            return true;
+          }
+        }
+        if (unmatched && generateNullsOnRight) {
+          unmatched = false;
+          current = resultSelector.apply(outer, null);
+          return true;
+        }
+        if (!outers.moveNext()) {
+          break;
+        }
+        outer = outers.current();
+        row = outer == null ? -1 : index.first(outerKeySelector.apply(outer));
+        unmatched = true;
+      }
+      if (matched == null) {
+        return false;
+      }
+      leftover = 0;
+      return nextLeftover();
+    }
+
+    private boolean nextLeftover() {
+      while (leftover < matched.length) {
+        final int r = leftover++;
+        if (!matched[r]) {
+          current = resultSelector.apply(null, index.row(r));
+          return true;
+        }
+      }
+      return false;
+    }
+
+    public void reset() {
+      throw new UnsupportedOperationException();
+    }
+
+    public void close() {
+      outers.close();
+    }
+  }
+
+  /** Rows indexed by a {@code long} key. Rows with the same key are chained,
+   * in the order that they were added.
+   *
+   * @param <E> Row type */
+  private static class Index<E> {
+    private final LongHashTable table = new LongHashTable();
+    private final List<E> rows = new ArrayList<>();
+    /** For each row, the next row with the same key, or -1. */
+    private int[] next = new int[16];
+    /** For each key (in the order that keys were added), its last row. */
+    private int[] last = new int[16];
+    /** For each key, its first row. */
+    private int[] first = new int[16];
+    private int keyCount;
+
+    void add(long key, E row) {
+      final int r = rows.size();
+      rows.add(row);
+      if (r == next.length) {
+        next = Arrays.copyOf(next, r * 2);
+      }
+      next[r] = -1;
+      final int k = table.get(key);
+      if (k < 0) {
+        if (keyCount == first.length) {
+          first = Arrays.copyOf(first, keyCount * 2);
+          last = Arrays.copyOf(last, keyCount * 2);
+        }
+        table.put(key, keyCount);
+        first[keyCount] = r;
+        last[keyCount] = r;
+        ++keyCount;
+      } else {
+        next[last[k]] = r;
+        last[k] = r;
+      }
+    }
+
+    int size() {
+      return rows.size();
+    }
+
+    E row(int r) {
+      return rows.get(r);
+    }
+
+    /** Returns the first row with a given key, or -1. */
+    int first(long key) {
+      final int k = table.get(key);
+      return k < 0 ? -1 : first[k];
+    }
+
+    /** Returns the next row with the same key as a given row, or -1. */
+    int next(int r) {
+      return next[r];
+    }
+  }
+
+  /** Hash table from {@code long} keys to non-negative {@code int} values,
+   * using open addressing with linear probing. */
+  static class LongHashTable {
+    private long[] keys = new long[16];
+    /** Value plus one for each slot; 0 means the slot is empty. */
+    private int[] values = new int[16];
+    private int size;
+
+    /** Returns the value for a key, or -1 if the key is not present. */
+    int get(long key) {
+      final int mask = keys.length - 1;
+      for (int i = slot(key, mask);; i = (i + 1) & mask) {
+        final int value = values[i];
+        if (value == 0) {
+          return -1;
+        }
+        if (keys[i] == key) {
+          return value - 1;
+        }
+      }
+    }
+
+    /** Adds a key that is not present. */
+    void put(long key, int value) {
+      if (2 * (size + 1) > keys.length) {
+        resize();
+      }
+      insert(key, value + 1);
+      ++size;
+    }
+
+    private void insert(long key, int valuePlusOne) {
+      final int mask = keys.length - 1;
+      int i = slot(key, mask);
+      while (values[i] != 0) {
+        i = (i + 1) & mask;
+      }
+      keys[i] = key;
+      values[i] = valuePlusOne;
+    }
+
+    private void resize() {
+      final long[] oldKeys = keys;
+      final int[] oldValues = values;
+      keys = new long[oldKeys.length * 2];
+      values = new int[oldValues.length * 2];
+      for (int i = 0; i < oldKeys.length; i++) {
+        if (oldValues[i] != 0) {
+          insert(oldKeys[i], oldValues[i]);
+        }
+      }
+    }
+
+    private static int slot(long key, int mask) {
+      final long h = key * 0x9E3779B97F4A7C15L;
+      return (int) (h ^ (h >>> 32)) & mask;
+    }
+  }
+}
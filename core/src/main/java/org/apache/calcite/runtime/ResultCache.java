@@ -0,0 +1,428 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.runtime;
+
+import org.apache.calcite.DataContext;
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.schema.Table;
+import org.apache.calcite.schema.VersionedTable;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of the results of queries.
+ *
+ * <p>A result is keyed by the digest of the query's optimized plan and the
+ * values of its parameters, so statements whose SQL differs only in
+ * formatting share a result. A result is discarded when:
+ *
+ * <ul>
+ *   <li>it is older than the time-to-live;
+ *   <li>a table that it read is now a different object (for instance,
+ *   because the table was dropped and re-created);
+ *   <li>a table that it read is a {@link VersionedTable} whose modification
+ *   count has changed;
+ *   <li>a DML statement on one of its tables was executed through a
+ *   connection that uses this cache;
+ *   <li>the total number of rows in the cache exceeds its limit, and the
+ *   result is the least recently used.
+ * </ul>
+ *
+ * <p>A result is only stored if the query read all of its rows; and it is
+ * not stored if it has more rows than the whole cache may hold.
+ *
+ * <p>Tables that are not {@link VersionedTable}, and table functions, may
+ * change without the cache noticing; only the time-to-live limits how stale
+ * their results may be. Therefore if the time-to-live is 0, the results of
+ * queries that read such tables or call table functions are not cached.
+ *
+ * @see org.apache.calcite.config.CalciteConnectionProperty#RESULT_CACHE_SIZE
+ * @see org.apache.calcite.config.CalciteConnectionProperty#RESULT_CACHE_TTL
+ */
+public class ResultCache {
+  private final long maxRows;
+  private final long ttlNanos;
+
+  /** Entries, least recently used first. Guarded by {@code this}. */
+  private final LinkedHashMap<Key, Entry> map =
+      new LinkedHashMap<>(16, 0.75f, true);
+  /** Total weight of the entries. Guarded by {@code this}. */
+  private long rowCount;
+
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final AtomicLong evictionCount = new AtomicLong();
+  private final AtomicLong invalidationCount = new AtomicLong();
+
+  /** Creates a ResultCache.
+   *
+   * @param maxRows Maximum number of rows, over all results
+   * @param ttlMillis Time, in milliseconds, after which a result expires,
+   *                  or 0 if results do not expire
+   */
+  public ResultCache(long maxRows, long ttlMillis) {
+    if (maxRows <= 0) {
+      throw new IllegalArgumentException("maxRows must be positive");
+    }
+    if (ttlMillis < 0) {
+      throw new IllegalArgumentException("ttlMillis must not be negative");
+    }
+    this.maxRows = maxRows;
+    this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+  }
+
+  /** Returns the cache of the connection that is executing a query, or
+   * null if the connection does not cache results. */
+  public static ResultCache of(DataContext root) {
+    if (root == null) {
+      return null;
+    }
+    return (ResultCache) root.get(DataContext.Variable.RESULT_CACHE.camelName);
+  }
+
+  /** Returns a bindable that returns a cached result, if the data context
+   * has a cache that holds a valid result for the same plan and parameter
+   * values, and otherwise executes {@code bindable} and stores its result.
+   *
+   * @param bindable Executable plan
+   * @param digest Digest of the plan
+   * @param parameterCount Number of dynamic parameters
+   * @param tables Tables that the plan reads, keyed by qualified name
+   * @param tableFunctions Whether the plan calls table functions, whose
+   *                       results may change at any time
+   */
+  public static <T> Bindable<T> cache(final Bindable<T> bindable,
+      String digest, final int parameterCount,
+      Map<List<String>, Table> tables, boolean tableFunctions) {
+    Objects.requireNonNull(bindable);
+    Objects.requireNonNull(digest);
+    final ImmutableMap<List<String>, Table> tables2 =
+        ImmutableMap.copyOf(tables);
+    final boolean versioned = !tableFunctions
+        && tables2.values().stream()
+            .allMatch(table -> table instanceof VersionedTable);
+    return dataContext -> {
+      final ResultCache cache = of(dataContext);
+      if (cache == null) {
+        return bindable.bind(dataContext);
+      }
+      if (!versioned && cache.ttlNanos == 0) {
+        // Nothing would ever tell us that the result is stale
+        return bindable.bind(dataContext);
+      }
+      final List<Object> parameters = new ArrayList<>(parameterCount);
+      for (int i = 0; i < parameterCount; i++) {
+        parameters.add(dataContext.get("?" + i));
+      }
+      final Key key = new Key(digest, parameters);
+      // Read versions before executing the query. If a table changes while
+      // the query is running, the result will be stale the next time.
+      final long[] versions = versions(tables2);
+      final List<T> rows = cache.get(key, tables2, versions);
+      if (rows != null) {
+        return Linq4j.asEnumerable(rows);
+      }
+      final Enumerable<T> enumerable = bindable.bind(dataContext);
+      return new AbstractEnumerable<T>() {
+        public Enumerator<T> enumerator() {
+          return cache.new PopulatingEnumerator<>(enumerable.enumerator(), key,
+              tables2, versions);
+        }
+      };
+    };
+  }
+
+  /** Returns a bindable that executes a DML statement and then discards
+   * cached results that read any of the modified tables.
+   *
+   * @param bindable Executable plan
+   * @param tableNames Qualified names of the tables that the plan modifies
+   */
+  public static <T> Bindable<T> invalidate(final Bindable<T> bindable,
+      Collection<List<String>> tableNames) {
+    final List<List<String>> tableNames2 = ImmutableList.copyOf(tableNames);
+    return dataContext -> {
+      final ResultCache cache = of(dataContext);
+      if (cache == null) {
+        return bindable.bind(dataContext);
+      }
+      tableNames2.forEach(cache::invalidate);
+      final Enumerable<T> enumerable = bindable.bind(dataContext);
+      return new AbstractEnumerable<T>() {
+        public Enumerator<T> enumerator() {
+          final Enumerator<T> enumerator = enumerable.enumerator();
+          return new Enumerator<T>() {
+            public T current() {
+              return enumerator.current();
+            }
+
+            public boolean moveNext() {
+              return enumerator.moveNext();
+            }
+
+            public void reset() {
+              enumerator.reset();
+            }
+
+            public void close() {
+              try {
+                enumerator.close();
+              } finally {
+                // Results computed while the statement was executing may
+                // have seen some of its changes.
+                tableNames2.forEach(cache::invalidate);
+              }
+            }
+          };
+        }
+      };
+    };
+  }
+
+  private static long[] versions(Map<List<String>, Table> tables) {
+    final long[] versions = new long[tables.size()];
+    int i = 0;
+    for (Table table : tables.values()) {
+      versions[i++] = table instanceof VersionedTable
+          ? ((VersionedTable) table).getModificationCount()
+          : 0L;
+    }
+    return versions;
+  }
+
+  /** Returns the number of times that a valid result was found. */
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  /** Returns the number of times that no valid result was found. */
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  /** Returns the number of results discarded because the cache was
+   * full. */
+  public long getEvictionCount() {
+    return evictionCount.get();
+  }
+
+  /** Returns the number of results discarded because they had expired or
+   * their tables had changed. */
+  public long getInvalidationCount() {
+    return invalidationCount.get();
+  }
+
+  /** Returns the number of results in the cache. */
+  public synchronized int size() {
+    return map.size();
+  }
+
+  /** Returns the number of rows in the cache. */
+  public synchronized long getRowCount() {
+    return rowCount;
+  }
+
+  /** Discards all results. */
+  public synchronized void invalidateAll() {
+    invalidationCount.addAndGet(map.size());
+    map.clear();
+    rowCount = 0;
+  }
+
+  /** Discards all results that read a given table. */
+  public synchronized void invalidate(List<String> tableName) {
+    for (Iterator<Entry> iterator = map.values().iterator();
+         iterator.hasNext();) {
+      final Entry entry = iterator.next();
+      if (entry.tables.containsKey(tableName)) {
+        iterator.remove();
+        rowCount -= entry.weight();
+        invalidationCount.incrementAndGet();
+      }
+    }
+  }
+
+  /** Returns a valid result, or null. */
+  private synchronized <T> List<T> get(Key key,
+      Map<List<String>, Table> tables, long[] versions) {
+    final Entry entry = map.get(key);
+    if (entry != null) {
+      if (entry.isValid(tables, versions, System.nanoTime(), ttlNanos)) {
+        hitCount.incrementAndGet();
+        //noinspection unchecked
+        return (List<T>) entry.rows;
+      }
+      map.remove(key);
+      rowCount -= entry.weight();
+      invalidationCount.incrementAndGet();
+    }
+    missCount.incrementAndGet();
+    return null;
+  }
+
+  private synchronized void put(Key key, Entry entry) {
+    final Entry previous = map.put(key, entry);
+    if (previous != null) {
+      rowCount -= previous.weight();
+    }
+    rowCount += entry.weight();
+    for (Iterator<Entry> iterator = map.values().iterator();
+         rowCount > maxRows && iterator.hasNext();) {
+      final Entry eldest = iterator.next();
+      iterator.remove();
+      rowCount -= eldest.weight();
+      evictionCount.incrementAndGet();
+    }
+  }
+
+  /** Key of a result: a plan and the values of its parameters. */
+  private static class Key {
+    final String digest;
+    final List<Object> parameters;
+
+    Key(String digest, List<Object> parameters) {
+      this.digest = digest;
+      this.parameters = parameters;
+    }
+
+    @Override public int hashCode() {
+      return Objects.hash(digest, parameters);
+    }
+
+    @Override public boolean equals(Object obj) {
+      return obj == this
+          || obj instanceof Key
+          && digest.equals(((Key) obj).digest)
+          && parameters.equals(((Key) obj).parameters);
+    }
+  }
+
+  /** Cached result, and the state of the tables it was computed from. */
+  private static class Entry {
+    final List<Object> rows;
+    final Map<List<String>, Table> tables;
+    final long[] versions;
+    final long createdNanos;
+
+    Entry(List<Object> rows, Map<List<String>, Table> tables, long[] versions,
+        long createdNanos) {
+      this.rows = rows;
+      this.tables = tables;
+      this.versions = versions;
+      this.createdNanos = createdNanos;
+    }
+
+    /** Returns the number of rows charged to this entry. An empty result
+     * counts as one row, so that the number of entries is bounded. */
+    long weight() {
+      return Math.max(rows.size(), 1);
+    }
+
+    boolean isValid(Map<List<String>, Table> tables, long[] versions,
+        long nowNanos, long ttlNanos) {
+      if (ttlNanos > 0 && nowNanos - createdNanos > ttlNanos) {
+        return false;
+      }
+      if (!Arrays.equals(this.versions, versions)) {
+        return false;
+      }
+      if (this.tables.size() != tables.size()) {
+        return false;
+      }
+      final Iterator<Table> iterator = this.tables.values().iterator();
+      for (Map.Entry<List<String>, Table> e : tables.entrySet()) {
+        if (!iterator.hasNext() || iterator.next() != e.getValue()) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  /** Enumerator that returns the rows of a query and, if the query reads all
+   * of them, stores them in the cache.
+   *
+   * @param <T> Element type */
+  private class PopulatingEnumerator<T> implements Enumerator<T> {
+    private final Enumerator<T> enumerator;
+    private final Key key;
+    private final Map<List<String>, Table> tables;
+    private final long[] versions;
+    private final long createdNanos = System.nanoTime();
+    /** Rows read so far, or null if the result is too large to cache. */
+    private List<Object> rows = new ArrayList<>();
+
+    PopulatingEnumerator(Enumerator<T> enumerator, Key key,
+        Map<List<String>, Table> tables, long[] versions) {
+      this.enumerator = enumerator;
+      this.key = key;
+      this.tables = tables;
+      this.versions = versions;
+    }
+
+    public T current() {
+      return enumerator.current();
+    }
+
+    public boolean moveNext() {
+      if (enumerator.moveNext()) {
+        if (rows != null) {
+          if (rows.size() < maxRows) {
+            rows.add(enumerator.current());
+          } else {
+            rows = null;
+          }
+        }
+        return true;
+      }
+      if (rows != null) {
+        // Rows may be null, so do not use ImmutableList
+        put(key,
+            new Entry(Collections.unmodifiableList(rows), tables, versions,
+                createdNanos));
+        rows = null;
+      }
+      return false;
+    }
+
+    public void reset() {
+      enumerator.reset();
+      rows = new ArrayList<>();
+    }
+
+    public void close() {
+      rows = null;
+      enumerator.close();
+    }
+  }
+}
@@ -18,6 +18,7 @@
 
 import org.apache.calcite.DataContext;
 import org.apache.calcite.avatica.SqlType;
+import org.apache.calcite.config.CalciteSystemProperty;
 import org.apache.calcite.linq4j.AbstractEnumerable;
 import org.apache.calcite.linq4j.Enumerable;
 import org.apache.calcite.linq4j.Enumerator;
@@ -27,6 +28,10 @@
 import org.apache.calcite.linq4j.tree.Primitive;
 import org.apache.calcite.util.Static;
 
+import org.apache.commons.dbcp2.BasicDataSource;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -52,6 +57,8 @@
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import javax.sql.DataSource;
 
 /**
@@ -68,9 +75,27 @@
   private static final Logger LOGGER = LoggerFactory.getLogger(
       ResultSetEnumerable.class);
 
+  /** Runs the queries that read the partitions of a partitioned query. The
+   * threads spend most of their time waiting for the database, so the pool
+   * is not related to the number of processors. A thread may wait for the
+   * consumer to read its rows, so the pool is unbounded; each enumerator
+   * limits how many of its partitions run at a time, to
+   * {@link CalciteSystemProperty#JDBC_PARTITION_CONCURRENCY} and the size
+   * of the connection pool. Idle threads exit. The threads are daemons, so that an enumerator that is not
+   * closed does not prevent the JVM from exiting. */
+  private static final ExecutorService EXECUTOR =
+      Executors.newCachedThreadPool(
+          new ThreadFactoryBuilder()
+              .setNameFormat("calcite-jdbc-%d")
+              .setDaemon(true)
+              .build());
+
   private Long queryStart;
   private long timeout;
   private boolean timeoutSetFailed;
+  private int fetchSize;
+  private boolean streaming;
+  private String[] partitionSqls;
 
   private static final Function1<ResultSet, Function0<Object>> AUTO_ROW_BUILDER_FACTORY =
       resultSet -> {
@@ -180,6 +205,31 @@ public void setTimeout(DataContext context) {
     }
   }
 
+  /** Sets how rows are fetched from the database.
+   *
+   * <p>If {@code fetchSize} is not 0, it is passed to
+   * {@link Statement#setFetchSize(int)} as a hint for the number of rows to
+   * fetch in each round trip. If {@code streaming}, the statement is
+   * forward-only and read-only, and runs with auto-commit disabled; most
+   * drivers require these conditions in order to fetch rows incrementally
+   * rather than read the whole result into memory when the query is
+   * executed. */
+  public void setFetchOptions(int fetchSize, boolean streaming) {
+    this.fetchSize = fetchSize;
+    this.streaming = streaming;
+  }
+
+  /** Sets the queries that read the partitions of this query.
+   *
+   * <p>The union of the rows of the partition queries must be the rows of
+   * this query. The enumerator runs the partition queries concurrently, each
+   * on its own connection, and returns their rows in no particular order.
+   * Each partition query uses the same parameters, timeout and fetch options
+   * as this query. */
+  public void setPartitions(String[] partitionSqls) {
+    this.partitionSqls = partitionSqls;
+  }
+
   /** Called from generated code that proposes to create a
    * {@code ResultSetEnumerable} over a prepared statement. */
   public static PreparedStatementEnricher createEnricher(Integer[] indexes,
@@ -193,6 +243,23 @@ public static PreparedStatementEnricher createEnricher(Integer[] indexes,
     };
   }
 
+  /** Called from generated code that proposes to create a
+   * {@code ResultSetEnumerable} over a prepared statement some of whose
+   * parameters are literals.
+   *
+   * <p>If {@code values[i]} is not null, it is the value of the
+   * {@code i}th parameter; otherwise the value is the dynamic parameter
+   * {@code indexes[i]} of the query. */
+  public static PreparedStatementEnricher createEnricher(Integer[] indexes,
+      Object[] values, DataContext context) {
+    return preparedStatement -> {
+      for (int i = 0; i < indexes.length; i++) {
+        setDynamicParam(preparedStatement, i + 1,
+            values[i] != null ? values[i] : context.get("?" + indexes[i]));
+      }
+    };
+  }
+
   /** Assigns a value to a dynamic parameter in a prepared statement, calling
    * the appropriate {@code setXxx} method based on the type of the value. */
   private static void setDynamicParam(PreparedStatement preparedStatement,
@@ -247,6 +314,18 @@ private static void setDynamicParam(PreparedStatement preparedStatement,
   }
 
   public Enumerator<T> enumerator() {
+    if (partitionSqls != null) {
+      // A partition that cannot send its rows to the consumer reads them
+      // into memory and closes its connection, so that a result set that is
+      // not being read does not keep connections from other queries,
+      // including the metadata queries of the planner.
+      final int maxConcurrency =
+          Math.min(CalciteSystemProperty.JDBC_PARTITION_CONCURRENCY.value(),
+              maxConnections(dataSource));
+      return Enumerables.gather(partitionSqls.length, this::partition,
+          EXECUTOR, maxConcurrency, true)
+          .enumerator();
+    }
     if (preparedStatementEnricher == null) {
       return enumeratorBasedOnStatement();
     } else {
@@ -254,18 +333,48 @@ public Enumerator<T> enumerator() {
     }
   }
 
+  /** Returns the maximum number of connections that a data source provides
+   * at a time, or {@link Integer#MAX_VALUE} if unknown. */
+  private static int maxConnections(DataSource dataSource) {
+    if (dataSource instanceof BasicDataSource) {
+      final int maxTotal = ((BasicDataSource) dataSource).getMaxTotal();
+      if (maxTotal > 0) {
+        return maxTotal;
+      }
+    }
+    return Integer.MAX_VALUE;
+  }
+
+  /** Returns an enumerable that reads the {@code i}th partition. */
+  private ResultSetEnumerable<T> partition(int i) {
+    final ResultSetEnumerable<T> partition =
+        new ResultSetEnumerable<>(dataSource, partitionSqls[i],
+            rowBuilderFactory, preparedStatementEnricher);
+    partition.queryStart = queryStart;
+    partition.timeout = timeout;
+    partition.fetchSize = fetchSize;
+    partition.streaming = streaming;
+    return partition;
+  }
+
   private Enumerator<T> enumeratorBasedOnStatement() {
     Connection connection = null;
     Statement statement = null;
+    boolean autoCommitDisabled = false;
     try {
       connection = dataSource.getConnection();
-      statement = connection.createStatement();
+      statement = streaming
+          ? connection.createStatement(ResultSet.TYPE_FORWARD_ONLY,
+              ResultSet.CONCUR_READ_ONLY)
+          : connection.createStatement();
       setTimeoutIfPossible(statement);
+      autoCommitDisabled = setFetchOptions(connection, statement);
       if (statement.execute(sql)) {
         final ResultSet resultSet = statement.getResultSet();
         statement = null;
         connection = null;
-        return new ResultSetEnumerator<>(resultSet, rowBuilderFactory);
+        return new ResultSetEnumerator<>(resultSet, rowBuilderFactory,
+            autoCommitDisabled);
       } else {
         Integer updateCount = statement.getUpdateCount();
         return Linq4j.singletonEnumerator((T) updateCount);
@@ -274,23 +383,29 @@ private Enumerator<T> enumeratorBasedOnStatement() {
       throw Static.RESOURCE.exceptionWhilePerformingQueryOnJdbcSubSchema(sql)
           .ex(e);
     } finally {
-      closeIfPossible(connection, statement);
+      closeIfPossible(connection, statement, autoCommitDisabled);
     }
   }
 
   private Enumerator<T> enumeratorBasedOnPreparedStatement() {
     Connection connection = null;
     PreparedStatement preparedStatement = null;
+    boolean autoCommitDisabled = false;
     try {
       connection = dataSource.getConnection();
-      preparedStatement = connection.prepareStatement(sql);
+      preparedStatement = streaming
+          ? connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+              ResultSet.CONCUR_READ_ONLY)
+          : connection.prepareStatement(sql);
       setTimeoutIfPossible(preparedStatement);
+      autoCommitDisabled = setFetchOptions(connection, preparedStatement);
       preparedStatementEnricher.enrich(preparedStatement);
       if (preparedStatement.execute()) {
         final ResultSet resultSet = preparedStatement.getResultSet();
         preparedStatement = null;
         connection = null;
-        return new ResultSetEnumerator<>(resultSet, rowBuilderFactory);
+        return new ResultSetEnumerator<>(resultSet, rowBuilderFactory,
+            autoCommitDisabled);
       } else {
         Integer updateCount = preparedStatement.getUpdateCount();
         return Linq4j.singletonEnumerator((T) updateCount);
@@ -299,7 +414,7 @@ private Enumerator<T> enumeratorBasedOnPreparedStatement() {
       throw Static.RESOURCE.exceptionWhilePerformingQueryOnJdbcSubSchema(sql)
           .ex(e);
     } finally {
-      closeIfPossible(connection, preparedStatement);
+      closeIfPossible(connection, preparedStatement, autoCommitDisabled);
     }
   }
 
@@ -329,7 +444,35 @@ private void setTimeoutIfPossible(Statement statement) throws SQLException {
     }
   }
 
-  private void closeIfPossible(Connection connection, Statement statement) {
+  /** Applies the fetch size and streaming mode to a statement. Returns
+   * whether auto-commit was disabled, and therefore needs to be re-enabled
+   * when the connection is released. */
+  private boolean setFetchOptions(Connection connection, Statement statement)
+      throws SQLException {
+    if (fetchSize != 0) {
+      statement.setFetchSize(fetchSize);
+    }
+    if (streaming && connection.getAutoCommit()) {
+      connection.setAutoCommit(false);
+      return true;
+    }
+    return false;
+  }
+
+  /** Ends the transaction that was started to stream rows, and re-enables
+   * auto-commit, so that a pooled connection is returned to the pool in the
+   * state in which it was obtained. */
+  private static void restoreAutoCommit(Connection connection) {
+    try {
+      connection.rollback();
+      connection.setAutoCommit(true);
+    } catch (SQLException e) {
+      // ignore
+    }
+  }
+
+  private void closeIfPossible(Connection connection, Statement statement,
+      boolean autoCommitDisabled) {
     if (statement != null) {
       try {
         statement.close();
@@ -339,6 +482,9 @@ private void closeIfPossible(Connection connection, Statement statement) {
     }
     if (connection != null) {
       try {
+        if (autoCommitDisabled) {
+          restoreAutoCommit(connection);
+        }
         connection.close();
       } catch (SQLException e) {
         // ignore
@@ -352,13 +498,16 @@ private void closeIfPossible(Connection connection, Statement statement) {
    * @param <T> element type */
   private static class ResultSetEnumerator<T> implements Enumerator<T> {
     private final Function0<T> rowBuilder;
+    private final boolean autoCommitDisabled;
     private ResultSet resultSet;
 
     ResultSetEnumerator(
         ResultSet resultSet,
-        Function1<ResultSet, Function0<T>> rowBuilderFactory) {
+        Function1<ResultSet, Function0<T>> rowBuilderFactory,
+        boolean autoCommitDisabled) {
       this.resultSet = resultSet;
       this.rowBuilder = rowBuilderFactory.apply(resultSet);
+      this.autoCommitDisabled = autoCommitDisabled;
     }
 
     public T current() {
@@ -392,6 +541,9 @@ public void close() {
             final Connection connection = statement.getConnection();
             statement.close();
             if (connection != null) {
+              if (autoCommitDisabled) {
+                restoreAutoCommit(connection);
+              }
               connection.close();
             }
           }
@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.runtime;
+
+import org.apache.calcite.DataContext;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limit on the number of rows that the operators of a query may hold in
+ * memory.
+ *
+ * <p>An operator reserves rows from the budget as it buffers them. If a
+ * reservation fails, the operator writes rows to temporary files (it
+ * "spills") and releases its reservation.
+ *
+ * @see SpillingEnumerables
+ * @see org.apache.calcite.config.CalciteConnectionProperty#SPILL_THRESHOLD
+ */
+public class SpillBudget {
+  private final long maxRows;
+  private final AtomicLong reservedRows = new AtomicLong();
+  private final AtomicInteger spillFileCount = new AtomicInteger();
+
+  /** Creates a SpillBudget. */
+  public SpillBudget(long maxRows) {
+    if (maxRows <= 0) {
+      throw new IllegalArgumentException("maxRows must be positive");
+    }
+    this.maxRows = maxRows;
+  }
+
+  /** Returns the budget of the query executing in a given data context, or
+   * null if the query may hold an unlimited number of rows in memory. */
+  public static SpillBudget of(DataContext root) {
+    if (root == null) {
+      return null;
+    }
+    return (SpillBudget) root.get(DataContext.Variable.SPILL_BUDGET.camelName);
+  }
+
+  /** Returns the maximum number of rows. */
+  public long getMaxRows() {
+    return maxRows;
+  }
+
+  /** Returns the number of rows currently reserved. */
+  public long getReservedRows() {
+    return reservedRows.get();
+  }
+
+  /** Returns the number of temporary files that operators have written. */
+  public int getSpillFileCount() {
+    return spillFileCount.get();
+  }
+
+  /** Reserves a number of rows; returns false, reserving nothing, if that
+   * would exceed the budget. */
+  public boolean tryReserve(long rows) {
+    for (;;) {
+      final long current = reservedRows.get();
+      if (current + rows > maxRows) {
+        return false;
+      }
+      if (reservedRows.compareAndSet(current, current + rows)) {
+        return true;
+      }
+    }
+  }
+
+  /** Releases rows that were previously reserved. */
+  public void release(long rows) {
+    reservedRows.addAndGet(-rows);
+  }
+
+  /** Records that an operator has created a temporary file. */
+  void spilled() {
+    spillFileCount.incrementAndGet();
+  }
+}
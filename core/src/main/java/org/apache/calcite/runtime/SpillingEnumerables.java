@@ -0,0 +1,833 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.runtime;
+
+import org.apache.calcite.DataContext;
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.EnumerableDefaults;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.linq4j.function.EqualityComparer;
+import org.apache.calcite.linq4j.function.Function0;
+import org.apache.calcite.linq4j.function.Function1;
+import org.apache.calcite.linq4j.function.Function2;
+import org.apache.calcite.linq4j.function.Predicate2;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Implementations of sort, aggregate and hash join that hold a limited
+ * number of rows in memory and write the rest to temporary files.
+ *
+ * <p>Each method has the same semantics as the method of the same name in
+ * {@link EnumerableDefaults}, and an extra {@link DataContext} argument from
+ * which it obtains the {@link SpillBudget} of the query. If the query has no
+ * budget, the method calls {@link EnumerableDefaults}.
+ *
+ * <p>Rows (and, for hash join, the rows of both inputs) must be
+ * {@link Serializable} if they are to be written to a file.
+ */
+public class SpillingEnumerables {
+  /** Number of files into which aggregate and hash join partition the rows
+   * that do not fit in memory. */
+  private static final int PARTITION_COUNT = 16;
+
+  /** Depth of partitioning after which aggregate and hash join process a
+   * partition in memory, whatever its size. */
+  private static final int MAX_LEVEL = 6;
+
+  /** Maximum number of sorted runs that sort merges in one pass. */
+  private static final int MERGE_FAN_IN = 64;
+
+  /** Number of objects after which a temporary file's
+   * {@link ObjectOutputStream} is reset, so that it does not keep a reference
+   * to every object it has written. */
+  private static final int RESET_INTERVAL = 1024;
+
+  private SpillingEnumerables() {}
+
+  /** Sorts the elements of a sequence; spilling version of
+   * {@link EnumerableDefaults#orderBy(Enumerable, Function1, Comparator)}.
+   *
+   * <p>If the rows do not fit in memory, writes sorted runs to temporary
+   * files and merges them. Like the in-memory version, the sort is stable.
+   * If {@code comparator} is null, keys must be {@link Comparable}. */
+  public static <TSource, TKey> Enumerable<TSource> orderBy(DataContext root,
+      final Enumerable<TSource> source,
+      final Function1<TSource, TKey> keySelector,
+      final Comparator<TKey> comparator) {
+    final SpillBudget budget = SpillBudget.of(root);
+    if (budget == null) {
+      return EnumerableDefaults.orderBy(source, keySelector, comparator);
+    }
+    return new AbstractEnumerable<TSource>() {
+      public Enumerator<TSource> enumerator() {
+        return sort(budget, source, keySelector, comparator);
+      }
+    };
+  }
+
+  /** Groups the elements of a sequence and computes an accumulator for each
+   * group; spilling version of
+   * {@link EnumerableDefaults#groupBy(Enumerable, Function1, Function0, Function2, Function2, EqualityComparer)}.
+   *
+   * <p>Rows whose key is already in memory are aggregated there. When memory
+   * is full, rows with new keys are written to temporary files, partitioned
+   * by hash of key, and each file is aggregated after the in-memory groups
+   * have been emitted. {@code comparer} may be null. */
+  public static <TSource, TKey, TAccumulate, TResult> Enumerable<TResult>
+      groupBy(DataContext root, final Enumerable<TSource> enumerable,
+      final Function1<TSource, TKey> keySelector,
+      final Function0<TAccumulate> accumulatorInitializer,
+      final Function2<TAccumulate, TSource, TAccumulate> accumulatorAdder,
+      final Function2<TKey, TAccumulate, TResult> resultSelector,
+      final EqualityComparer<TKey> comparer) {
+    final SpillBudget budget = SpillBudget.of(root);
+    if (budget == null) {
+      return comparer == null
+          ? EnumerableDefaults.groupBy(enumerable, keySelector,
+              accumulatorInitializer, accumulatorAdder, resultSelector)
+          : EnumerableDefaults.groupBy(enumerable, keySelector,
+              accumulatorInitializer, accumulatorAdder, resultSelector,
+              comparer);
+    }
+    return new AbstractEnumerable<TResult>() {
+      public Enumerator<TResult> enumerator() {
+        return group(budget, enumerable, keySelector, accumulatorInitializer,
+            accumulatorAdder, resultSelector, comparer, 0);
+      }
+    };
+  }
+
+  /** Joins two sequences on matching keys; spilling version of
+   * {@link EnumerableDefaults#hashJoin(Enumerable, Enumerable, Function1, Function1, Function2, EqualityComparer, boolean, boolean, Predicate2)}.
+   *
+   * <p>If the inner (build) input does not fit in memory, writes both inputs
+   * to temporary files, partitioned by hash of key, and joins each pair of
+   * partitions in turn ("grace hash join"). Rows of the output are then in a
+   * different order than the outer input, unless {@code preserveOrder} is
+   * true, in which case this method sorts them back into that order.
+   * {@code comparer} and {@code predicate} may be null. */
+  public static <TSource, TInner, TKey, TResult> Enumerable<TResult> hashJoin(
+      DataContext root, final Enumerable<TSource> outer,
+      final Enumerable<TInner> inner,
+      final Function1<TSource, TKey> outerKeySelector,
+      final Function1<TInner, TKey> innerKeySelector,
+      final Function2<TSource, TInner, TResult> resultSelector,
+      final EqualityComparer<TKey> comparer,
+      final boolean generateNullsOnLeft, final boolean generateNullsOnRight,
+      final Predicate2<TSource, TInner> predicate,
+      final boolean preserveOrder) {
+    final SpillBudget budget = SpillBudget.of(root);
+    if (budget == null) {
+      return EnumerableDefaults.hashJoin(outer, inner, outerKeySelector,
+          innerKeySelector, resultSelector, comparer, generateNullsOnLeft,
+          generateNullsOnRight, predicate);
+    }
+    return new AbstractEnumerable<TResult>() {
+      public Enumerator<TResult> enumerator() {
+        return join(budget, outer, inner, outerKeySelector, innerKeySelector,
+            resultSelector, comparer, generateNullsOnLeft,
+            generateNullsOnRight, predicate, preserveOrder, 0);
+      }
+    };
+  }
+
+  private static <E, K> Enumerator<E> sort(SpillBudget budget,
+      Enumerable<E> source, Function1<E, K> keySelector,
+      Comparator<K> comparator) {
+    @SuppressWarnings("unchecked")
+    final Comparator<K> keyComparator = comparator != null
+        ? comparator
+        : (Comparator<K>) Comparator.naturalOrder();
+    final Comparator<Keyed<K, E>> rowComparator =
+        (r0, r1) -> keyComparator.compare(r0.key, r1.key);
+    final Allowance allowance = new Allowance(budget);
+    final SpillFiles files = new SpillFiles(budget);
+    try {
+      final List<Keyed<K, E>> buffer = new ArrayList<>();
+      final List<SpillFile<E>> runs = new ArrayList<>();
+      try (Enumerator<E> enumerator = source.enumerator()) {
+        while (enumerator.moveNext()) {
+          if (!allowance.add()) {
+            runs.add(writeRun(files, buffer, rowComparator));
+            allowance.clear();
+            allowance.add();
+          }
+          final E row = enumerator.current();
+          buffer.add(new Keyed<>(keySelector.apply(row), row));
+        }
+      }
+      buffer.sort(rowComparator);
+      final List<E> rows = new ArrayList<>(buffer.size());
+      for (Keyed<K, E> keyed : buffer) {
+        rows.add(keyed.row);
+      }
+      buffer.clear();
+      if (runs.isEmpty()) {
+        return onClose(Linq4j.enumerator(rows), allowance::clear);
+      }
+
+      // Merge runs until few enough remain to merge while returning rows.
+      // Each pass merges groups of consecutive runs, so that runs remain in
+      // input order.
+      while (runs.size() >= MERGE_FAN_IN) {
+        final List<SpillFile<E>> mergedRuns = new ArrayList<>();
+        for (int i = 0; i < runs.size(); i += MERGE_FAN_IN) {
+          final List<Enumerator<E>> inputs = new ArrayList<>();
+          for (SpillFile<E> run
+              : runs.subList(i, Math.min(i + MERGE_FAN_IN, runs.size()))) {
+            inputs.add(run.enumerator());
+          }
+          final SpillFile<E> merged = files.create();
+          try (Enumerator<E> enumerator =
+                   new MergeEnumerator<>(inputs, keySelector, keyComparator)) {
+            while (enumerator.moveNext()) {
+              merged.add(enumerator.current());
+            }
+          }
+          mergedRuns.add(merged);
+        }
+        runs.clear();
+        runs.addAll(mergedRuns);
+      }
+      // The in-memory rows came last, so they are the last input. Rows with
+      // equal keys are returned in input order, which keeps the sort stable.
+      final List<Enumerator<E>> inputs = new ArrayList<>();
+      for (SpillFile<E> run : runs) {
+        inputs.add(run.enumerator());
+      }
+      inputs.add(Linq4j.enumerator(rows));
+      return onClose(new MergeEnumerator<>(inputs, keySelector, keyComparator),
+          () -> {
+            allowance.clear();
+            files.delete();
+          });
+    } catch (RuntimeException | Error e) {
+      allowance.clear();
+      files.delete();
+      throw e;
+    }
+  }
+
+  /** Sorts rows, writes them to a temporary file, and clears the list. */
+  private static <E, K> SpillFile<E> writeRun(SpillFiles files,
+      List<Keyed<K, E>> buffer, Comparator<Keyed<K, E>> rowComparator) {
+    buffer.sort(rowComparator);
+    final SpillFile<E> run = files.create();
+    for (Keyed<K, E> keyed : buffer) {
+      run.add(keyed.row);
+    }
+    buffer.clear();
+    return run;
+  }
+
+  private static <TSource, TKey, TAccumulate, TResult> Enumerator<TResult>
+      group(final SpillBudget budget, Enumerable<TSource> enumerable,
+      final Function1<TSource, TKey> keySelector,
+      final Function0<TAccumulate> accumulatorInitializer,
+      final Function2<TAccumulate, TSource, TAccumulate> accumulatorAdder,
+      final Function2<TKey, TAccumulate, TResult> resultSelector,
+      final EqualityComparer<TKey> comparer, final int level) {
+    final Map<Object, TAccumulate> map = new HashMap<>();
+    final Allowance allowance = new Allowance(budget);
+    final SpillFiles files = new SpillFiles(budget);
+    SpillFile<TSource>[] partitions = null;
+    try (Enumerator<TSource> enumerator = enumerable.enumerator()) {
+      while (enumerator.moveNext()) {
+        final TSource row = enumerator.current();
+        final TKey key = keySelector.apply(row);
+        final Object mapKey =
+            comparer == null ? key : new ComparerKey<>(key, comparer);
+        TAccumulate accumulator = map.get(mapKey);
+        if (accumulator != null) {
+          final TAccumulate accumulator2 =
+              accumulatorAdder.apply(accumulator, row);
+          if (accumulator2 != accumulator) {
+            map.put(mapKey, accumulator2);
+          }
+        } else if (partitions == null
+            && (level >= MAX_LEVEL || allowance.add())) {
+          accumulator = accumulatorInitializer.apply();
+          map.put(mapKey, accumulatorAdder.apply(accumulator, row));
+        } else {
+          if (partitions == null) {
+            partitions = files.partitions();
+          }
+          partitions[partition(key, comparer, level)].add(row);
+        }
+      }
+    } catch (RuntimeException | Error e) {
+      allowance.clear();
+      files.delete();
+      throw e;
+    }
+    final List<TResult> results = new ArrayList<>(map.size());
+    for (Map.Entry<Object, TAccumulate> entry : map.entrySet()) {
+      @SuppressWarnings("unchecked")
+      final TKey key = comparer == null
+          ? (TKey) entry.getKey()
+          : ((ComparerKey<TKey>) entry.getKey()).key;
+      results.add(resultSelector.apply(key, entry.getValue()));
+    }
+    map.clear();
+    allowance.clear();
+    if (partitions == null) {
+      return Linq4j.enumerator(results);
+    }
+    final List<Enumerable<TResult>> enumerables = new ArrayList<>();
+    enumerables.add(Linq4j.asEnumerable(results));
+    for (final SpillFile<TSource> partition : partitions) {
+      if (partition.isEmpty()) {
+        continue;
+      }
+      enumerables.add(
+          new AbstractEnumerable<TResult>() {
+            public Enumerator<TResult> enumerator() {
+              return group(budget, partition.asEnumerable(), keySelector,
+                  accumulatorInitializer, accumulatorAdder, resultSelector,
+                  comparer, level + 1);
+            }
+          });
+    }
+    // Partitions that the consumer does not read, because it closes the
+    // enumerator early, are deleted when it closes.
+    return onClose(Linq4j.concat(enumerables).enumerator(), files::delete);
+  }
+
+  private static <TSource, TInner, TKey, TResult> Enumerator<TResult> join(
+      final SpillBudget budget, Enumerable<TSource> outer,
+      Enumerable<TInner> inner,
+      final Function1<TSource, TKey> outerKeySelector,
+      final Function1<TInner, TKey> innerKeySelector,
+      final Function2<TSource, TInner, TResult> resultSelector,
+      final EqualityComparer<TKey> comparer,
+      final boolean generateNullsOnLeft, final boolean generateNullsOnRight,
+      final Predicate2<TSource, TInner> predicate, boolean preserveOrder,
+      final int level) {
+    // Read the inner input into memory. If it fits, use the regular
+    // algorithm.
+    final Allowance allowance = new Allowance(budget);
+    final SpillFiles files = new SpillFiles(budget);
+    final List<TInner> innerRows = new ArrayList<>();
+    final SpillFile<TInner>[] innerPartitions;
+    final SpillFile<Tagged<TSource>>[] outerPartitions;
+    try (Enumerator<TInner> inners = inner.enumerator()) {
+      boolean fits = true;
+      while (inners.moveNext()) {
+        if (level < MAX_LEVEL && !allowance.add()) {
+          fits = false;
+          break;
+        }
+        innerRows.add(inners.current());
+      }
+      if (fits) {
+        return onClose(
+            EnumerableDefaults.hashJoin(outer, Linq4j.asEnumerable(innerRows),
+                outerKeySelector, innerKeySelector, resultSelector, comparer,
+                generateNullsOnLeft, generateNullsOnRight, predicate)
+                .enumerator(),
+            allowance::clear);
+      }
+      innerPartitions = files.partitions();
+      for (TInner row : innerRows) {
+        innerPartitions[partition(innerKeySelector.apply(row), comparer, level)]
+            .add(row);
+      }
+      innerRows.clear();
+      allowance.clear();
+      do {
+        final TInner row = inners.current();
+        innerPartitions[partition(innerKeySelector.apply(row), comparer, level)]
+            .add(row);
+      } while (inners.moveNext());
+
+      // Partition the outer input, tagging each row with its position.
+      outerPartitions = files.partitions();
+      try (Enumerator<TSource> outers = outer.enumerator()) {
+        long index = 0;
+        while (outers.moveNext()) {
+          final TSource row = outers.current();
+          final TKey key = row == null ? null : outerKeySelector.apply(row);
+          outerPartitions[partition(key, comparer, level)]
+              .add(new Tagged<>(index++, row));
+        }
+      }
+    } catch (RuntimeException | Error e) {
+      allowance.clear();
+      files.delete();
+      throw e;
+    }
+
+    // Join each pair of partitions. A result that has no outer row (in a
+    // RIGHT or FULL join) sorts after all results that have one.
+    final List<Enumerable<Tagged<TResult>>> enumerables = new ArrayList<>();
+    for (int i = 0; i < PARTITION_COUNT; i++) {
+      final SpillFile<Tagged<TSource>> outerPartition = outerPartitions[i];
+      final SpillFile<TInner> innerPartition = innerPartitions[i];
+      if (outerPartition.isEmpty() && !generateNullsOnLeft
+          || innerPartition.isEmpty() && !generateNullsOnRight) {
+        outerPartition.delete();
+        innerPartition.delete();
+        continue;
+      }
+      enumerables.add(
+          new AbstractEnumerable<Tagged<TResult>>() {
+            public Enumerator<Tagged<TResult>> enumerator() {
+              return join(budget, outerPartition.asEnumerable(),
+                  innerPartition.asEnumerable(),
+                  t -> t.row == null ? null : outerKeySelector.apply(t.row),
+                  innerKeySelector,
+                  (t, row) -> t == null
+                      ? new Tagged<>(Long.MAX_VALUE,
+                          resultSelector.apply(null, row))
+                      : new Tagged<>(t.index,
+                          resultSelector.apply(t.row, row)),
+                  comparer, generateNullsOnLeft, generateNullsOnRight,
+                  predicate == null
+                      ? null
+                      : (t, row) -> predicate.apply(t.row, row),
+                  false, level + 1);
+            }
+          });
+    }
+    Enumerable<Tagged<TResult>> results = Linq4j.concat(enumerables);
+    if (preserveOrder) {
+      final Enumerable<Tagged<TResult>> unsorted = results;
+      results = new AbstractEnumerable<Tagged<TResult>>() {
+        public Enumerator<Tagged<TResult>> enumerator() {
+          return sort(budget, unsorted, t -> t.index, null);
+        }
+      };
+    }
+    // Partitions that the consumer does not read, because it closes the
+    // enumerator early, are deleted when it closes.
+    return onClose(results.select(t -> t.row).enumerator(), files::delete);
+  }
+
+  /** Returns the partition that a key belongs to. Each level of partitioning
+   * uses different bits of the hash code. */
+  private static <K> int partition(K key, EqualityComparer<K> comparer,
+      int level) {
+    if (key == null) {
+      return 0;
+    }
+    final int h = comparer == null ? key.hashCode() : comparer.hashCode(key);
+    return (Integer.rotateLeft(h * 0x9E3779B9, level * 4) >>> 28)
+        % PARTITION_COUNT;
+  }
+
+  /** Returns an enumerator that calls an action after closing another
+   * enumerator. */
+  private static <E> Enumerator<E> onClose(final Enumerator<E> enumerator,
+      final Runnable action) {
+    return new Enumerator<E>() {
+      public E current() {
+        return enumerator.current();
+      }
+
+      public boolean moveNext() {
+        return enumerator.moveNext();
+      }
+
+      public void reset() {
+        enumerator.reset();
+      }
+
+      public void close() {
+        try {
+          enumerator.close();
+        } finally {
+          action.run();
+        }
+      }
+    };
+  }
+
+  /** Rows that an operator has reserved from a {@link SpillBudget}.
+   *
+   * <p>Reserves rows in chunks, to reduce contention on the budget. An
+   * operator may always hold one chunk, so that it makes progress however
+   * many rows other operators hold. */
+  private static class Allowance {
+    private final SpillBudget budget;
+    private final int chunk;
+    private long reserved;
+    private long used;
+
+    Allowance(SpillBudget budget) {
+      this.budget = budget;
+      this.chunk = (int) Math.max(1, Math.min(1024, budget.getMaxRows() / 8));
+    }
+
+    /** Accounts for one more row; returns false if the operator should
+     * spill instead. */
+    boolean add() {
+      if (used >= reserved) {
+        if (budget.tryReserve(chunk)) {
+          reserved += chunk;
+        } else if (used >= chunk) {
+          return false;
+        }
+      }
+      ++used;
+      return true;
+    }
+
+    /** Releases all rows. */
+    void clear() {
+      budget.release(reserved);
+      reserved = 0;
+      used = 0;
+    }
+  }
+
+  /** Temporary files that an operator has created.
+   *
+   * <p>The operator deletes them all when its enumerator is closed, or if it
+   * fails, whether or not they have been read. */
+  private static class SpillFiles {
+    private final SpillBudget budget;
+    private final List<SpillFile<?>> files = new ArrayList<>();
+
+    SpillFiles(SpillBudget budget) {
+      this.budget = budget;
+    }
+
+    /** Creates a file. */
+    <E> SpillFile<E> create() {
+      final SpillFile<E> file = new SpillFile<>(budget);
+      files.add(file);
+      return file;
+    }
+
+    /** Creates a file for each partition. */
+    @SuppressWarnings("unchecked")
+    <E> SpillFile<E>[] partitions() {
+      final SpillFile<E>[] partitions = new SpillFile[PARTITION_COUNT];
+      for (int i = 0; i < partitions.length; i++) {
+        partitions[i] = create();
+      }
+      return partitions;
+    }
+
+    /** Deletes all files. */
+    void delete() {
+      for (SpillFile<?> file : files) {
+        file.delete();
+      }
+      files.clear();
+    }
+  }
+
+  /** Temporary file of serialized rows.
+   *
+   * <p>Rows are written, then read once; the file is deleted when the reader
+   * is closed, or when {@link #delete()} is called.
+   *
+   * @param <E> Row type */
+  private static class SpillFile<E> {
+    private final SpillBudget budget;
+    private File file;
+    private ObjectOutputStream out;
+    private ObjectInputStream in;
+    private ClassLoader classLoader;
+    private int count;
+    private boolean read;
+
+    SpillFile(SpillBudget budget) {
+      this.budget = budget;
+    }
+
+    boolean isEmpty() {
+      return count == 0;
+    }
+
+    void add(E row) {
+      try {
+        if (out == null) {
+          file = File.createTempFile("calcite-spill", ".ser");
+          out = new ObjectOutputStream(
+              new BufferedOutputStream(new FileOutputStream(file)));
+          budget.spilled();
+        }
+        if (classLoader == null && row != null) {
+          // Rows may be instances of generated classes, which the class
+          // loader of this class cannot see.
+          classLoader = row.getClass().getClassLoader();
+        }
+        out.writeObject(row);
+        if (++count % RESET_INTERVAL == 0) {
+          out.reset();
+        }
+      } catch (IOException e) {
+        throw new RuntimeException("while writing to " + file, e);
+      }
+    }
+
+    /** Returns an enumerator over the rows, which deletes the file when it is
+     * closed. May be called only once. */
+    Enumerator<E> enumerator() {
+      if (read) {
+        throw new IllegalStateException("already read");
+      }
+      read = true;
+      if (out == null) {
+        return Linq4j.emptyEnumerator();
+      }
+      try {
+        out.close();
+        in = new LoaderObjectInputStream(
+            new BufferedInputStream(new FileInputStream(file)), classLoader);
+      } catch (IOException e) {
+        delete();
+        throw new RuntimeException("while reading " + file, e);
+      }
+      return new Enumerator<E>() {
+        int remaining = count;
+        E current;
+
+        public E current() {
+          return current;
+        }
+
+        @SuppressWarnings("unchecked")
+        public boolean moveNext() {
+          if (remaining == 0) {
+            return false;
+          }
+          try {
+            current = (E) in.readObject();
+          } catch (IOException | ClassNotFoundException e) {
+            throw new RuntimeException("while reading " + file, e);
+          }
+          --remaining;
+          return true;
+        }
+
+        public void reset() {
+          throw new UnsupportedOperationException();
+        }
+
+        public void close() {
+          delete();
+        }
+      };
+    }
+
+    Enumerable<E> asEnumerable() {
+      return new AbstractEnumerable<E>() {
+        public Enumerator<E> enumerator() {
+          return SpillFile.this.enumerator();
+        }
+      };
+    }
+
+    /** Closes the file, whether or not it has been read, and deletes it.
+     * Subsequent calls have no effect. */
+    void delete() {
+      read = true;
+      closeQuietly(out);
+      out = null;
+      closeQuietly(in);
+      in = null;
+      if (file != null) {
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+        file = null;
+      }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+      if (closeable != null) {
+        try {
+          closeable.close();
+        } catch (IOException e) {
+          // ignore
+        }
+      }
+    }
+  }
+
+  /** Object input stream that resolves classes using a given class loader
+   * before the default one. */
+  private static class LoaderObjectInputStream extends ObjectInputStream {
+    private final ClassLoader classLoader;
+
+    LoaderObjectInputStream(InputStream in, ClassLoader classLoader)
+        throws IOException {
+      super(in);
+      this.classLoader = classLoader;
+    }
+
+    @Override protected Class<?> resolveClass(ObjectStreamClass desc)
+        throws IOException, ClassNotFoundException {
+      if (classLoader != null) {
+        try {
+          return Class.forName(desc.getName(), false, classLoader);
+        } catch (ClassNotFoundException e) {
+          // fall through
+        }
+      }
+      return super.resolveClass(desc);
+    }
+  }
+
+  /** Enumerator that merges sorted enumerators. If several inputs have rows
+   * with equal keys, returns the row of the first input first.
+   *
+   * @param <E> Row type
+   * @param <K> Key type */
+  private static class MergeEnumerator<E, K> implements Enumerator<E> {
+    private final List<Enumerator<E>> inputs;
+    private final Function1<E, K> keySelector;
+    private final PriorityQueue<Head<K, E>> queue;
+    private Head<K, E> current;
+    private boolean started;
+
+    MergeEnumerator(List<Enumerator<E>> inputs, Function1<E, K> keySelector,
+        Comparator<K> keyComparator) {
+      this.inputs = inputs;
+      this.keySelector = keySelector;
+      this.queue = new PriorityQueue<>(Math.max(1, inputs.size()),
+          (h0, h1) -> {
+            final int c = keyComparator.compare(h0.key, h1.key);
+            return c != 0 ? c : Integer.compare(h0.input, h1.input);
+          });
+    }
+
+    public E current() {
+      return current.row;
+    }
+
+    public boolean moveNext() {
+      if (!started) {
+        started = true;
+        for (int i = 0; i < inputs.size(); i++) {
+          advance(i);
+        }
+      } else if (current != null) {
+        advance(current.input);
+      }
+      current = queue.poll();
+      return current != null;
+    }
+
+    private void advance(int input) {
+      final Enumerator<E> enumerator = inputs.get(input);
+      if (enumerator.moveNext()) {
+        final E row = enumerator.current();
+        queue.add(new Head<>(keySelector.apply(row), row, input));
+      }
+    }
+
+    public void reset() {
+      throw new UnsupportedOperationException();
+    }
+
+    public void close() {
+      for (Enumerator<E> input : inputs) {
+        input.close();
+      }
+    }
+  }
+
+  /** Current row of an input to {@link MergeEnumerator}.
+   *
+   * @param <K> Key type
+   * @param <E> Row type */
+  private static class Head<K, E> {
+    final K key;
+    final E row;
+    final int input;
+
+    Head(K key, E row, int input) {
+      this.key = key;
+      this.row = row;
+      this.input = input;
+    }
+  }
+
+  /** Row and its sort key.
+   *
+   * @param <K> Key type
+   * @param <E> Row type */
+  private static class Keyed<K, E> {
+    final K key;
+    final E row;
+
+    Keyed(K key, E row) {
+      this.key = key;
+      this.row = row;
+    }
+  }
+
+  /** Row and its position in the input of a join.
+   *
+   * @param <E> Row type */
+  private static class Tagged<E> implements Serializable {
+    final long index;
+    final E row;
+
+    Tagged(long index, E row) {
+      this.index = index;
+      this.row = row;
+    }
+  }
+
+  /** Key that uses an {@link EqualityComparer} for equality and hashing.
+   *
+   * @param <K> Key type */
+  private static class ComparerKey<K> {
+    final K key;
+    final EqualityComparer<K> comparer;
+
+    ComparerKey(K key, EqualityComparer<K> comparer) {
+      this.key = key;
+      this.comparer = comparer;
+    }
+
+    @Override public int hashCode() {
+      return key == null ? 0 : comparer.hashCode(key);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override public boolean equals(Object obj) {
+      return obj == this
+          || obj instanceof ComparerKey
+          && comparer.equal(key, ((ComparerKey<K>) obj).key);
+    }
+  }
+}
@@ -0,0 +1,45 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.schema;
+
+import org.apache.calcite.DataContext;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.runtime.ColumnBatch;
+
+/**
+ * Table that can return its rows in column batches, so that operators in
+ * {@link org.apache.calcite.adapter.batch.BatchConvention} can process many
+ * rows per call without boxing each value.
+ *
+ * @see org.apache.calcite.config.CalciteConnectionProperty#BATCH_SIZE
+ */
+public interface BatchableTable extends ScannableTable {
+  /** Returns the rows of this table as a sequence of column batches.
+   *
+   * <p>Column {@code i} of each batch must be an array of class
+   * {@code columnClasses[i]}, which is either an array of a primitive type
+   * (for example {@code int[]}) or {@code Object[]}. Values in an
+   * {@code Object[]} column have the same representation as in the rows
+   * returned by {@link #scan(DataContext)}.
+   *
+   * @param root Data context
+   * @param columnClasses Array class of each column
+   * @param batchSize Maximum number of rows in each batch
+   */
+  Enumerable<ColumnBatch> scanBatches(DataContext root,
+      Class[] columnClasses, int batchSize);
+}
@@ -0,0 +1,45 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.schema;
+
+/**
+ * Statistics about the values of a column of a {@link Table}.
+ *
+ * <p>Each of the methods may return {@code null} meaning "not known".
+ * Values are in their Java representation; for example, a column of type
+ * {@code INTEGER} has {@link Integer} or {@link Long} values, and a column of
+ * type {@code VARCHAR} has {@link String} values.
+ *
+ * @see Statistic#getColumnStatistic(int)
+ * @see Statistics#ofColumn
+ */
+public interface ColumnStatistic {
+  /** Returns the approximate number of distinct non-null values. */
+  Double getDistinctCount();
+
+  /** Returns the approximate number of rows whose value is null. */
+  Double getNullCount();
+
+  /** Returns the smallest non-null value. */
+  Comparable getMin();
+
+  /** Returns the largest non-null value. */
+  Comparable getMax();
+
+  /** Returns a histogram of the non-null values. */
+  Histogram getHistogram();
+}
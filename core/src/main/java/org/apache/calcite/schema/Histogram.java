@@ -0,0 +1,233 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.schema;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Histogram of the non-null values of a column.
+ *
+ * <p>The values are divided into buckets by a list of {@code n + 1}
+ * ascending bounds. Bucket {@code i} contains the values that are greater
+ * than bound {@code i} and less than or equal to bound {@code i + 1}; the
+ * first bucket also contains the values equal to the first bound, which is
+ * therefore the smallest value.
+ *
+ * <p>Within a bucket, numeric values are assumed to be uniformly
+ * distributed. A value that occurs in so many rows that it fills one or more
+ * whole buckets (whose lower and upper bounds are both equal to the value)
+ * is a "frequent value", and its row count is known more precisely.
+ *
+ * @see ColumnStatistic#getHistogram()
+ */
+public class Histogram {
+  private final ImmutableList<Comparable> bounds;
+  private final ImmutableList<Double> counts;
+  private final double rowCount;
+
+  private Histogram(ImmutableList<Comparable> bounds,
+      ImmutableList<Double> counts) {
+    this.bounds = bounds;
+    this.counts = counts;
+    double rowCount = 0D;
+    for (Double count : counts) {
+      rowCount += count;
+    }
+    this.rowCount = rowCount;
+  }
+
+  /** Creates a histogram with given bucket bounds and the number of rows in
+   * each bucket.
+   *
+   * @param bounds Ascending bucket bounds, one more than the number of
+   *               buckets, or empty if there are no buckets
+   * @param counts Number of rows in each bucket
+   */
+  public static Histogram of(List<? extends Comparable> bounds,
+      List<Double> counts) {
+    if (bounds.isEmpty() ? !counts.isEmpty()
+        : bounds.size() != counts.size() + 1) {
+      throw new IllegalArgumentException("expected one more bound than "
+          + "count; bounds=" + bounds + ", counts=" + counts);
+    }
+    for (int i = 1; i < bounds.size(); i++) {
+      if (compare(bounds.get(i - 1), bounds.get(i)) > 0) {
+        throw new IllegalArgumentException("bounds must be ascending: "
+            + bounds);
+      }
+    }
+    for (Double count : counts) {
+      if (count < 0D) {
+        throw new IllegalArgumentException("count must not be negative: "
+            + counts);
+      }
+    }
+    return new Histogram(ImmutableList.copyOf(bounds),
+        ImmutableList.copyOf(counts));
+  }
+
+  /** Creates an equi-depth histogram of some values: each bucket contains
+   * approximately the same number of values. Null values are ignored.
+   *
+   * @param values Values, in any order
+   * @param bucketCount Maximum number of buckets
+   */
+  public static Histogram equiDepth(Iterable<? extends Comparable> values,
+      int bucketCount) {
+    if (bucketCount <= 0) {
+      throw new IllegalArgumentException("bucketCount must be positive");
+    }
+    final List<Comparable> sortedValues = new ArrayList<>();
+    for (Comparable value : values) {
+      if (value != null) {
+        sortedValues.add(value);
+      }
+    }
+    sortedValues.sort(Histogram::compare);
+    final int n = sortedValues.size();
+    if (n == 0) {
+      return new Histogram(ImmutableList.of(), ImmutableList.of());
+    }
+    final int buckets = Math.min(bucketCount, n);
+    final ImmutableList.Builder<Comparable> bounds = ImmutableList.builder();
+    final ImmutableList.Builder<Double> counts = ImmutableList.builder();
+    bounds.add(sortedValues.get(0));
+    int previous = -1;
+    for (int i = 1; i <= buckets; i++) {
+      final int index = (int) ((long) i * n / buckets) - 1;
+      bounds.add(sortedValues.get(index));
+      counts.add((double) (index - previous));
+      previous = index;
+    }
+    return new Histogram(bounds.build(), counts.build());
+  }
+
+  /** Returns the bucket bounds. */
+  public List<Comparable> getBounds() {
+    return bounds;
+  }
+
+  /** Returns the number of rows in each bucket. */
+  public List<Double> getCounts() {
+    return counts;
+  }
+
+  /** Returns the total number of rows in the buckets. */
+  public double getRowCount() {
+    return rowCount;
+  }
+
+  /** Returns the fraction of values that are less than, or, if
+   * {@code inclusive}, less than or equal to, a given value. */
+  public double fractionBelow(Comparable value, boolean inclusive) {
+    if (counts.isEmpty() || rowCount == 0D) {
+      return 0D;
+    }
+    double below = 0D;
+    for (int i = 0; i < counts.size(); i++) {
+      final Comparable low = bounds.get(i);
+      final Comparable high = bounds.get(i + 1);
+      final int c = compare(value, high);
+      if (c > 0 || c == 0 && inclusive) {
+        // The whole bucket is below the value.
+        below += counts.get(i);
+        continue;
+      }
+      final int c0 = compare(value, low);
+      if (c0 > 0) {
+        // The value is within the bucket.
+        below += counts.get(i) * interpolate(low, high, value);
+      }
+      break;
+    }
+    return Math.min(1D, below / rowCount);
+  }
+
+  /** Returns the fraction of values that are equal to a given value, if it
+   * is a frequent value, otherwise null. */
+  public Double frequency(Comparable value) {
+    if (rowCount == 0D) {
+      return null;
+    }
+    double count = 0D;
+    for (int i = 0; i < counts.size(); i++) {
+      if (compare(bounds.get(i), value) == 0
+          && compare(bounds.get(i + 1), value) == 0) {
+        count += counts.get(i);
+      }
+    }
+    return count == 0D ? null : count / rowCount;
+  }
+
+  /** Returns where a value lies between two bounds, between 0 and 1; 0.5 if
+   * the values are not numeric. */
+  private static double interpolate(Comparable low, Comparable high,
+      Comparable value) {
+    if (low instanceof Number
+        && high instanceof Number
+        && value instanceof Number) {
+      final double lo = ((Number) low).doubleValue();
+      final double hi = ((Number) high).doubleValue();
+      final double v = ((Number) value).doubleValue();
+      if (hi > lo) {
+        return Math.max(0D, Math.min(1D, (v - lo) / (hi - lo)));
+      }
+    }
+    return 0.5D;
+  }
+
+  /** Returns whether two values can be compared using
+   * {@link #compare(Comparable, Comparable)}. */
+  public static boolean isComparable(Comparable v0, Comparable v1) {
+    return v0 != null
+        && v1 != null
+        && (v0 instanceof Number && v1 instanceof Number
+            || v0.getClass() == v1.getClass());
+  }
+
+  /** Compares two values. Numbers of different types are compared by
+   * value. */
+  @SuppressWarnings("unchecked")
+  public static int compare(Comparable v0, Comparable v1) {
+    if (v0 instanceof Number
+        && v1 instanceof Number
+        && v0.getClass() != v1.getClass()) {
+      return Double.compare(((Number) v0).doubleValue(),
+          ((Number) v1).doubleValue());
+    }
+    return v0.compareTo(v1);
+  }
+
+  @Override public String toString() {
+    return "Histogram{bounds=" + bounds + ", counts=" + counts + "}";
+  }
+
+  @Override public boolean equals(Object obj) {
+    return obj == this
+        || obj instanceof Histogram
+        && bounds.equals(((Histogram) obj).bounds)
+        && counts.equals(((Histogram) obj).counts);
+  }
+
+  @Override public int hashCode() {
+    return Objects.hash(bounds, counts);
+  }
+}
@@ -0,0 +1,44 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.schema;
+
+import org.apache.calcite.DataContext;
+import org.apache.calcite.linq4j.Enumerable;
+
+/**
+ * Table that can be scanned in disjoint partitions, so that the partitions
+ * can be read and processed concurrently.
+ *
+ * @see org.apache.calcite.adapter.enumerable.EnumerableExchange
+ * @see org.apache.calcite.config.CalciteConnectionProperty#PARALLELISM
+ */
+public interface PartitionableTable extends ScannableTable {
+  /** Returns an enumerator over the rows in one partition of this Table.
+   * Each row is represented as an array of its column values.
+   *
+   * <p>For a given {@code partitionCount}, the partitions
+   * {@code 0 .. partitionCount - 1} must be disjoint and together contain
+   * every row of the table.
+   *
+   * @param root Data context
+   * @param partition Ordinal of the partition, between 0 and
+   *                  {@code partitionCount - 1}
+   * @param partitionCount Number of partitions
+   */
+  Enumerable<Object[]> scan(DataContext root, int partition,
+      int partitionCount);
+}
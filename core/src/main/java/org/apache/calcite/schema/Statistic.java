@@ -51,4 +51,13 @@ public interface Statistic {
 
   /** Returns the distribution of the data in this table. */
   RelDistribution getDistribution();
+
+  /** Returns statistics about the values of a column, or null if not
+   * known.
+   *
+   * @param ordinal Ordinal of the column in the table's row type
+   */
+  default ColumnStatistic getColumnStatistic(int ordinal) {
+    return null;
+  }
 }
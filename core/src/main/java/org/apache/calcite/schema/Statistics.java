@@ -21,9 +21,12 @@
 import org.apache.calcite.rel.RelDistributionTraitDef;
 import org.apache.calcite.rel.RelReferentialConstraint;
 import org.apache.calcite.util.ImmutableBitSet;
+import org.apache.calcite.util.Util;
 
 import com.google.common.collect.ImmutableList;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -88,6 +91,24 @@ public static Statistic of(final Double rowCount,
       final List<ImmutableBitSet> keys,
       final List<RelReferentialConstraint> referentialConstraints,
       final List<RelCollation> collations) {
+    return of(rowCount, keys, referentialConstraints, collations,
+        ImmutableList.of());
+  }
+
+  /** Returns a statistic with a given row count, set of unique keys,
+   * referential constraints, collations, and statistics of each column.
+   *
+   * @param columnStatistics Statistics of each column, by ordinal; an
+   *                         element may be null, and the list may be shorter
+   *                         than the number of columns
+   */
+  public static Statistic of(final Double rowCount,
+      final List<ImmutableBitSet> keys,
+      final List<RelReferentialConstraint> referentialConstraints,
+      final List<RelCollation> collations,
+      List<ColumnStatistic> columnStatistics) {
+    final List<ColumnStatistic> columnStatisticList =
+        Collections.unmodifiableList(new ArrayList<>(columnStatistics));
     return new Statistic() {
       public Double getRowCount() {
         return rowCount;
@@ -117,6 +138,85 @@ public List<RelCollation> getCollations() {
       public RelDistribution getDistribution() {
         return RelDistributionTraitDef.INSTANCE.getDefault();
       }
+
+      public ColumnStatistic getColumnStatistic(int ordinal) {
+        return ordinal < columnStatisticList.size()
+            ? columnStatisticList.get(ordinal)
+            : null;
+      }
     };
   }
+
+  /** Returns statistics of a column.
+   *
+   * @param distinctCount Number of distinct non-null values, or null
+   * @param nullCount Number of null values, or null
+   * @param min Smallest non-null value, or null
+   * @param max Largest non-null value, or null
+   * @param histogram Histogram of the non-null values, or null
+   */
+  public static ColumnStatistic ofColumn(final Double distinctCount,
+      final Double nullCount, final Comparable min, final Comparable max,
+      final Histogram histogram) {
+    return new ColumnStatistic() {
+      public Double getDistinctCount() {
+        return distinctCount;
+      }
+
+      public Double getNullCount() {
+        return nullCount;
+      }
+
+      public Comparable getMin() {
+        return min;
+      }
+
+      public Comparable getMax() {
+        return max;
+      }
+
+      public Histogram getHistogram() {
+        return histogram;
+      }
+
+      @Override public String toString() {
+        return "{distinctCount=" + distinctCount + ", nullCount=" + nullCount
+            + ", min=" + min + ", max=" + max + ", histogram=" + histogram
+            + "}";
+      }
+    };
+  }
+
+  /** Returns statistics of a column, computed from all of its values.
+   *
+   * @param values Values of the column, including nulls
+   * @param bucketCount Maximum number of buckets in the histogram, or 0 for
+   *                    no histogram
+   */
+  public static ColumnStatistic ofColumn(Iterable<? extends Comparable> values,
+      int bucketCount) {
+    final List<Comparable> sortedValues = new ArrayList<>();
+    int nullCount = 0;
+    for (Comparable value : values) {
+      if (value == null) {
+        ++nullCount;
+      } else {
+        sortedValues.add(value);
+      }
+    }
+    sortedValues.sort(Histogram::compare);
+    int distinctCount = 0;
+    for (int i = 0; i < sortedValues.size(); i++) {
+      if (i == 0
+          || Histogram.compare(sortedValues.get(i - 1), sortedValues.get(i))
+              != 0) {
+        ++distinctCount;
+      }
+    }
+    return ofColumn((double) distinctCount, (double) nullCount,
+        sortedValues.isEmpty() ? null : sortedValues.get(0),
+        sortedValues.isEmpty() ? null : Util.last(sortedValues),
+        bucketCount > 0 ? Histogram.equiDepth(sortedValues, bucketCount)
+            : null);
+  }
 }
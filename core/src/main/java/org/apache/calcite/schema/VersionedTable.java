@@ -0,0 +1,35 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.schema;
+
+/**
+ * Table that knows when its contents change.
+ *
+ * <p>Query results that were computed from a table are valid as long as the
+ * table's modification count does not change.
+ *
+ * <p>Tables created by {@code CREATE TABLE} and {@code CREATE MATERIALIZED
+ * VIEW} in the server module implement this interface.
+ *
+ * @see org.apache.calcite.runtime.ResultCache
+ */
+public interface VersionedTable extends Table {
+  /** Returns the number of times that the contents of this table have been
+   * modified. The value must change (usually, increase) whenever rows are
+   * added, removed or updated. */
+  long getModificationCount();
+}
@@ -767,6 +767,16 @@ public CalendarPolicy getCalendarPolicy() {
     return CalendarPolicy.NULL;
   }
 
+  /** Returns the fetch size that causes this database's JDBC driver to read
+   * the rows of a query incrementally, rather than reading all rows into
+   * memory when the query is executed.
+   *
+   * <p>Most drivers stream if the fetch size is positive (and the statement
+   * is forward-only and not in auto-commit mode). */
+  public int getStreamingFetchSize() {
+    return 1_000;
+  }
+
   /** Returns whether this dialect supports a given type. */
   public boolean supportsDataType(RelDataType type) {
     return true;
@@ -41,7 +41,11 @@ public class SqlExplain extends SqlCall {
    * The level of abstraction with which to display the plan.
    */
   public enum Depth {
-    TYPE, LOGICAL, PHYSICAL;
+    TYPE, LOGICAL, PHYSICAL,
+
+    /** Physical plan, annotated with statistics gathered by executing the
+     * statement. */
+    ANALYZE;
 
     /**
      * Creates a parse-tree node representing an occurrence of this symbol
@@ -141,7 +145,7 @@ public int getDynamicParamCount() {
    * @return whether physical plan implementation should be returned
    */
   public boolean withImplementation() {
-    return getDepth() == Depth.PHYSICAL;
+    return getDepth() == Depth.PHYSICAL || getDepth() == Depth.ANALYZE;
   }
 
   /**
@@ -176,7 +180,11 @@ public boolean isJson() {
   }
 
   @Override public void unparse(SqlWriter writer, int leftPrec, int rightPrec) {
-    writer.keyword("EXPLAIN PLAN");
+    if (getDepth() == Depth.ANALYZE) {
+      writer.keyword("EXPLAIN ANALYZE PLAN");
+    } else {
+      writer.keyword("EXPLAIN PLAN");
+    }
     switch (getDetailLevel()) {
     case NO_ATTRIBUTES:
       writer.keyword("EXCLUDING ATTRIBUTES");
@@ -198,6 +206,8 @@ public boolean isJson() {
     case PHYSICAL:
       writer.keyword("WITH IMPLEMENTATION");
       break;
+    case ANALYZE:
+      break;
     default:
       throw new UnsupportedOperationException();
     }
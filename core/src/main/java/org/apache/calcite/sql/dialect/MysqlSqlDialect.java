@@ -145,6 +145,11 @@ public boolean supportsAliasedValues() {
     return CalendarPolicy.SHIFT;
   }
 
+  @Override public int getStreamingFetchSize() {
+    // MySQL Connector/J streams only if the fetch size is Integer.MIN_VALUE
+    return Integer.MIN_VALUE;
+  }
+
   @Override public SqlNode getCastSpec(RelDataType type) {
     switch (type.getSqlTypeName()) {
     case VARCHAR:
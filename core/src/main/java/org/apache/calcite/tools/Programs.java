@@ -16,6 +16,7 @@
  */
 package org.apache.calcite.tools;
 
+import org.apache.calcite.adapter.enumerable.EnumerableExchange;
 import org.apache.calcite.adapter.enumerable.EnumerableRules;
 import org.apache.calcite.config.CalciteConnectionConfig;
 import org.apache.calcite.config.CalciteSystemProperty;
@@ -295,7 +296,8 @@ public static Program standard(RelMetadataProvider metadataProvider) {
 
         // Second planner pass to do physical "tweaks". This the first time
         // that EnumerableCalcRel is introduced.
-        calc(metadataProvider));
+        calc(metadataProvider),
+        new ParallelizeProgram());
   }
 
   /** Program backed by a {@link RuleSet}. */
@@ -373,6 +375,25 @@ public RelNode run(RelOptPlanner planner, RelNode rel,
     }
   }
 
+  /** Program that, if the {@link CalciteConnectionConfig#parallelism()}
+   * property is greater than 1, splits large scans into partitions that are
+   * evaluated concurrently.
+   *
+   * @see EnumerableExchange */
+  private static class ParallelizeProgram implements Program {
+    public RelNode run(RelOptPlanner planner, RelNode rel,
+        RelTraitSet requiredOutputTraits,
+        List<RelOptMaterialization> materializations,
+        List<RelOptLattice> lattices) {
+      final CalciteConnectionConfig config =
+          planner.getContext().unwrap(CalciteConnectionConfig.class);
+      if (config != null && config.parallelism() > 1) {
+        return EnumerableExchange.parallelize(rel, config.parallelism());
+      }
+      return rel;
+    }
+  }
+
   /** Program that trims fields. */
   private static class TrimFieldsProgram implements Program {
     public RelNode run(RelOptPlanner planner, RelNode rel,
@@ -45,6 +45,7 @@
 import org.apache.calcite.linq4j.function.Function1;
 import org.apache.calcite.linq4j.function.Function2;
 import org.apache.calcite.linq4j.function.Functions;
+import org.apache.calcite.linq4j.function.LongFunction1;
 import org.apache.calcite.linq4j.function.Predicate1;
 import org.apache.calcite.linq4j.function.Predicate2;
 import org.apache.calcite.linq4j.tree.FunctionExpression;
@@ -79,21 +80,28 @@
 import org.apache.calcite.runtime.Automaton;
 import org.apache.calcite.runtime.BinarySearch;
 import org.apache.calcite.runtime.Bindable;
+import org.apache.calcite.runtime.ColumnBatch;
+import org.apache.calcite.runtime.ColumnBatches;
 import org.apache.calcite.runtime.CompressionFunctions;
 import org.apache.calcite.runtime.Enumerables;
+import org.apache.calcite.runtime.ExecutionStatistics;
 import org.apache.calcite.runtime.FlatLists;
 import org.apache.calcite.runtime.JsonFunctions;
+import org.apache.calcite.runtime.LongKeyedEnumerables;
 import org.apache.calcite.runtime.Matcher;
 import org.apache.calcite.runtime.Pattern;
 import org.apache.calcite.runtime.RandomFunction;
 import org.apache.calcite.runtime.ResultSetEnumerable;
 import org.apache.calcite.runtime.SortedMultiMap;
+import org.apache.calcite.runtime.SpillingEnumerables;
 import org.apache.calcite.runtime.SqlFunctions;
 import org.apache.calcite.runtime.SqlFunctions.FlatProductInputType;
 import org.apache.calcite.runtime.Utilities;
 import org.apache.calcite.runtime.XmlFunctions;
+import org.apache.calcite.schema.BatchableTable;
 import org.apache.calcite.schema.FilterableTable;
 import org.apache.calcite.schema.ModifiableTable;
+import org.apache.calcite.schema.PartitionableTable;
 import org.apache.calcite.schema.ProjectableFilterableTable;
 import org.apache.calcite.schema.QueryableTable;
 import org.apache.calcite.schema.ScannableTable;
@@ -151,6 +159,21 @@ public enum BuiltInMethod {
       FilterableTable.class, DataContext.class),
   SCHEMAS_ENUMERABLE_PROJECTABLE_FILTERABLE(Schemas.class, "enumerable",
       ProjectableFilterableTable.class, DataContext.class),
+  PARTITIONABLE_TABLE_SCAN(PartitionableTable.class, "scan",
+      DataContext.class, int.class, int.class),
+  BATCHABLE_TABLE_SCAN(BatchableTable.class, "scanBatches",
+      DataContext.class, Class[].class, int.class),
+  COLUMN_BATCH_NEW(ColumnBatch.class, Object[].class, int.class),
+  COLUMN_BATCH_COLUMNS(ColumnBatch.class, "columns", true),
+  COLUMN_BATCH_SIZE(ColumnBatch.class, "size", true),
+  COLUMN_BATCHES_CHUNK(ColumnBatches.class, "chunk", Enumerable.class,
+      int.class),
+  COLUMN_BATCHES_HASH_AGGREGATE(ColumnBatches.class, "hashAggregate",
+      Enumerable.class, int[].class, ColumnBatches.AggFunction[].class,
+      int[].class, Class[].class, Class[].class, int.class),
+  COLUMN_BATCHES_HASH_JOIN(ColumnBatches.class, "hashJoin", Enumerable.class,
+      Enumerable.class, int[].class, int[].class, boolean.class,
+      Class[].class),
   SCHEMAS_QUERYABLE(Schemas.class, "queryable", DataContext.class,
       SchemaPlus.class, Class.class, String.class),
   REFLECTIVE_SCHEMA_GET_TARGET(ReflectiveSchema.class, "getTarget"),
@@ -161,6 +184,10 @@ public enum BuiltInMethod {
   ROW_AS_COPY(Row.class, "asCopy", Object[].class),
   RESULT_SET_ENUMERABLE_SET_TIMEOUT(ResultSetEnumerable.class, "setTimeout",
       DataContext.class),
+  RESULT_SET_ENUMERABLE_SET_FETCH_OPTIONS(ResultSetEnumerable.class,
+      "setFetchOptions", int.class, boolean.class),
+  RESULT_SET_ENUMERABLE_SET_PARTITIONS(ResultSetEnumerable.class,
+      "setPartitions", String[].class),
   RESULT_SET_ENUMERABLE_OF(ResultSetEnumerable.class, "of", DataSource.class,
       String.class, Function1.class),
   RESULT_SET_ENUMERABLE_OF_PREPARED(ResultSetEnumerable.class, "of",
@@ -168,6 +195,8 @@ public enum BuiltInMethod {
       ResultSetEnumerable.PreparedStatementEnricher.class),
   CREATE_ENRICHER(ResultSetEnumerable.class, "createEnricher", Integer[].class,
       DataContext.class),
+  CREATE_ENRICHER_WITH_VALUES(ResultSetEnumerable.class, "createEnricher",
+      Integer[].class, Object[].class, DataContext.class),
   HASH_JOIN(ExtendedEnumerable.class, "hashJoin", Enumerable.class,
       Function1.class,
       Function1.class, Function2.class, EqualityComparer.class,
@@ -191,6 +220,7 @@ public enum BuiltInMethod {
       Enumerable.class, Function1.class, Function1.class, Predicate2.class, Function2.class,
       JoinType.class, Comparator.class),
   SLICE0(Enumerables.class, "slice0", Enumerable.class),
+  GATHER(Enumerables.class, "gather", int.class, Function1.class),
   SEMI_JOIN(EnumerableDefaults.class, "semiJoin", Enumerable.class,
       Enumerable.class, Function1.class, Function1.class,
       EqualityComparer.class, Predicate2.class),
@@ -204,6 +234,9 @@ public enum BuiltInMethod {
   CORRELATE_BATCH_JOIN(EnumerableDefaults.class, "correlateBatchJoin",
       JoinType.class, Enumerable.class, Function1.class, Function2.class,
       Predicate2.class, int.class),
+  KEY_PUSH_DOWN_JOIN(EnumerableDefaults.class, "keyPushDownJoin",
+      JoinType.class, Enumerable.class, Function1.class, Function1.class,
+      Function1.class, Function1.class, Function2.class, int.class),
   SELECT(ExtendedEnumerable.class, "select", Function1.class),
   SELECT2(ExtendedEnumerable.class, "select", Function2.class),
   SELECT_MANY(ExtendedEnumerable.class, "selectMany", Function1.class),
@@ -221,6 +254,24 @@ public enum BuiltInMethod {
       Function2.class, Function1.class),
   ORDER_BY(ExtendedEnumerable.class, "orderBy", Function1.class,
       Comparator.class),
+  LONG_KEYED_HASH_JOIN(LongKeyedEnumerables.class, "hashJoin",
+      Enumerable.class, Enumerable.class, LongFunction1.class,
+      LongFunction1.class, Function2.class, boolean.class, boolean.class,
+      Predicate2.class),
+  LONG_KEYED_GROUP_BY(LongKeyedEnumerables.class, "groupBy", Enumerable.class,
+      LongFunction1.class, Function1.class, Function0.class, Function2.class,
+      Function2.class),
+  SPILLING_ORDER_BY(SpillingEnumerables.class, "orderBy", DataContext.class,
+      Enumerable.class, Function1.class, Comparator.class),
+  SPILLING_GROUP_BY(SpillingEnumerables.class, "groupBy", DataContext.class,
+      Enumerable.class, Function1.class, Function0.class, Function2.class,
+      Function2.class, EqualityComparer.class),
+  SPILLING_HASH_JOIN(SpillingEnumerables.class, "hashJoin", DataContext.class,
+      Enumerable.class, Enumerable.class, Function1.class, Function1.class,
+      Function2.class, EqualityComparer.class, boolean.class, boolean.class,
+      Predicate2.class, boolean.class),
+  INSTRUMENT(ExecutionStatistics.class, "instrument", DataContext.class,
+      int.class, Enumerable.class),
   UNION(ExtendedEnumerable.class, "union", Enumerable.class),
   CONCAT(ExtendedEnumerable.class, "concat", Enumerable.class),
   REPEAT_UNION(EnumerableDefaults.class, "repeatUnion", Enumerable.class,
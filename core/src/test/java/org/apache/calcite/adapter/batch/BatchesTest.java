@@ -0,0 +1,237 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.batch;
+
+import org.apache.calcite.config.CalciteConnectionProperty;
+import org.apache.calcite.test.CalciteAssert;
+import org.apache.calcite.util.TestUtil;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Unit tests for {@link BatchConvention} and {@link Batches}.
+ */
+class BatchesTest {
+  private static final String AGGREGATE_SQL = "select \"store_id\",\n"
+      + "  count(*) as c, sum(\"unit_sales\") as s\n"
+      + "from \"foodmart2\".\"sales_fact_1997\"\n"
+      + "where \"store_id\" < 4\n"
+      + "group by \"store_id\"";
+
+  private static final String CALC_SQL = "select count(*) as c,\n"
+      + "  sum(\"unit_sales\" * 2) as u, sum(\"customer_id\" + 1) as c1\n"
+      + "from \"foodmart2\".\"sales_fact_1997\"\n"
+      + "where \"store_id\" < 4 and \"customer_id\" < 100";
+
+  private static CalciteAssert.AssertThat foodmart(int batchSize) {
+    return CalciteAssert.that()
+        .with(CalciteAssert.Config.FOODMART_CLONE)
+        .with(CalciteConnectionProperty.BATCH_SIZE, batchSize);
+  }
+
+  @Test void testDisabledByDefault() {
+    foodmart(0)
+        .query(AGGREGATE_SQL)
+        .explainMatches("", CalciteAssert.checkResultContains("Batch", 0))
+        .returnsUnordered("store_id=2; C=1380; S=2237.0000",
+            "store_id=3; C=7876; S=24576.0000");
+  }
+
+  @Test void testAggregate() {
+    foodmart(100)
+        .query(AGGREGATE_SQL)
+        .explainContains("PLAN=BatchToEnumerableConverter\n"
+            + "  BatchHashAggregate(group=[{4}], C=[COUNT()], "
+            + "S=[$SUM0($7)])\n"
+            + "    BatchCalc(")
+        .explainContains("BatchTableScan(table=[[foodmart2, sales_fact_1997]], "
+            + "batchSize=[100])")
+        .returnsUnordered("store_id=2; C=1380; S=2237.0000",
+            "store_id=3; C=7876; S=24576.0000");
+  }
+
+  /** Tests that a filter and a project are evaluated in a single
+   * {@code BatchCalc}, and give the same result as in enumerable
+   * convention. */
+  @Test void testCalc() {
+    final String expected = "C=94; U=608.0000; C1=8296\n";
+    foodmart(0)
+        .query(CALC_SQL)
+        .returns(expected);
+    foodmart(1000)
+        .query(CALC_SQL)
+        .explainMatches("", CalciteAssert.checkResultContains("BatchCalc", 1))
+        .returns(expected);
+  }
+
+  /** Tests nullable and non-numeric columns, which are held in
+   * {@code Object[]} columns, and batches smaller than the result. */
+  @Test void testObjectColumns() {
+    foodmart(2)
+        .query("select \"store_name\", \"store_city\", \"store_sqft\",\n"
+            + "  \"store_id\" * 2 as x\n"
+            + "from \"foodmart2\".\"store\"\n"
+            + "where \"store_id\" between 3 and 7")
+        .explainContains("BatchTableScan(table=[[foodmart2, store]], "
+            + "batchSize=[2])")
+        .returnsUnordered(
+            "store_name=Store 3; store_city=Bremerton; store_sqft=39696; X=6",
+            "store_name=Store 4; store_city=Camacho; store_sqft=23759; X=8",
+            "store_name=Store 5; store_city=Guadalajara; store_sqft=24597; X=10",
+            "store_name=Store 6; store_city=Beverly Hills; store_sqft=23688; X=12",
+            "store_name=Store 7; store_city=Los Angeles; store_sqft=23598; X=14");
+  }
+
+  /** Tests an aggregate with no group keys over an empty input, which
+   * returns one row, and aggregate functions over nullable and string
+   * columns. */
+  @Test void testAggregateEmpty() {
+    checkBothConventions("select count(*) as c, count(\"store_sqft\") as c2,\n"
+            + "  sum(\"store_sqft\") as s, min(\"store_name\") as mn,\n"
+            + "  max(\"store_id\") as mx\n"
+            + "from \"foodmart2\".\"store\"\n"
+            + "where \"store_id\" < 0",
+        "BatchHashAggregate",
+        "C=0; C2=0; S=null; MN=null; MX=null");
+  }
+
+  @Test void testAggregateNullable() {
+    checkBothConventions("select \"store_state\", count(\"store_sqft\") as c,\n"
+            + "  sum(\"store_sqft\") as s, min(\"store_name\") as mn,\n"
+            + "  max(\"grocery_sqft\") as mx\n"
+            + "from \"foodmart2\".\"store\"\n"
+            + "group by \"store_state\"",
+        "BatchHashAggregate",
+        "store_state=BC; C=2; S=57564; MN=Store 19; MX=27463",
+        "store_state=CA; C=3; S=69764; MN=HQ; MX=15337",
+        "store_state=DF; C=1; S=36509; MN=Store 21; MX=22450",
+        "store_state=Guerrero; C=1; S=23593; MN=Store 1; MX=17475",
+        "store_state=Jalisco; C=1; S=24597; MN=Store 5; MX=15012",
+        "store_state=OR; C=2; S=48013; MN=Store 11; MX=18670",
+        "store_state=Veracruz; C=1; S=34791; MN=Store 10; MX=26354",
+        "store_state=WA; C=5; S=153243; MN=Store 15; MX=24390",
+        "store_state=Yucatan; C=1; S=30797; MN=Store 8; MX=20141",
+        "store_state=Zacatecas; C=3; S=92725; MN=Store 12; MX=30351");
+  }
+
+  @Test void testJoin() {
+    checkBothConventions("select s.\"store_name\", count(*) as c,\n"
+            + "  sum(f.\"unit_sales\") as u\n"
+            + "from \"foodmart2\".\"sales_fact_1997\" as f\n"
+            + "join \"foodmart2\".\"store\" as s\n"
+            + "on f.\"store_id\" = s.\"store_id\"\n"
+            + "where s.\"store_id\" < 4\n"
+            + "group by s.\"store_name\"",
+        "BatchHashJoin(condition=[=(",
+        "store_name=Store 2; C=1380; U=2237.0000",
+        "store_name=Store 3; C=7876; U=24576.0000");
+  }
+
+  /** Tests a LEFT join; stores that have no sales have null sales
+   * columns. */
+  @Test void testLeftJoin() {
+    checkBothConventions("select s.\"store_id\", count(f.\"customer_id\") as c\n"
+            + "from \"foodmart2\".\"store\" as s\n"
+            + "left join \"foodmart2\".\"sales_fact_1997\" as f\n"
+            + "on s.\"store_id\" = f.\"store_id\"\n"
+            + "where s.\"store_id\" < 5\n"
+            + "group by s.\"store_id\"",
+        "BatchHashJoin(condition=[=(",
+        "store_id=0; C=0",
+        "store_id=1; C=0",
+        "store_id=2; C=1380",
+        "store_id=3; C=7876",
+        "store_id=4; C=0");
+  }
+
+  /** Tests an aggregate with two group keys, which are packed into a
+   * {@code long}. */
+  @Test void testAggregateCompositeKey() {
+    checkSameResult("select \"store_id\", \"promotion_id\", count(*) as c,\n"
+            + "  min(\"customer_id\") as mn, max(\"product_id\") as mx,\n"
+            + "  sum(\"customer_id\") as s\n"
+            + "from \"foodmart2\".\"sales_fact_1997\"\n"
+            + "where \"store_id\" < 4\n"
+            + "group by \"store_id\", \"promotion_id\"",
+        "BatchHashAggregate(group=[{");
+  }
+
+  /** Tests a join on two keys, which are packed into a {@code long}. */
+  @Test void testJoinCompositeKey() {
+    checkSameResult("select s1.\"store_name\", s2.\"store_city\"\n"
+            + "from \"foodmart2\".\"store\" as s1\n"
+            + "join \"foodmart2\".\"store\" as s2\n"
+            + "on s1.\"store_id\" = s2.\"store_id\"\n"
+            + "and s1.\"region_id\" = s2.\"region_id\"",
+        "BatchHashJoin(condition=[AND(");
+  }
+
+  /** Tests that rows from an input that is not in batch convention are
+   * converted to batches. */
+  @Test void testEnumerableToBatch() {
+    checkBothConventions("select s.\"store_name\", t.x\n"
+            + "from \"foodmart2\".\"store\" as s\n"
+            + "join (values (2, 'a'), (3, 'b'), (3, 'c'), (99, 'd')) as t (id, x)\n"
+            + "on s.\"store_id\" = t.id",
+        "EnumerableToBatchConverter",
+        "store_name=Store 2; X=a",
+        "store_name=Store 3; X=b",
+        "store_name=Store 3; X=c");
+  }
+
+  /** Checks that a query, using a plan that contains a given string, returns
+   * the same rows in batch convention as in enumerable convention. */
+  private static void checkSameResult(String sql, String plan) {
+    final List<String> lines = new ArrayList<>();
+    foodmart(0)
+        .query(sql)
+        .returns(resultSet -> {
+          try {
+            lines.addAll(
+                Arrays.asList(CalciteAssert.toString(resultSet).split("\n")));
+          } catch (SQLException e) {
+            throw TestUtil.rethrow(e);
+          }
+        });
+    assertThat(lines.size() > 1, is(true));
+    foodmart(1000)
+        .query(sql)
+        .explainContains(plan)
+        .returnsUnordered(lines.toArray(new String[0]));
+  }
+
+  /** Checks that a query returns the given rows in enumerable convention and,
+   * using a plan that contains a given string, in batch convention. */
+  private static void checkBothConventions(String sql, String plan,
+      String... lines) {
+    foodmart(0)
+        .query(sql)
+        .returnsUnordered(lines);
+    foodmart(1000)
+        .query(sql)
+        .explainContains(plan)
+        .returnsUnordered(lines);
+  }
+}
@@ -18,18 +18,37 @@
 
 import org.apache.calcite.jdbc.JavaTypeFactoryImpl;
 import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Enumerator;
 import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.rel.RelCollations;
 import org.apache.calcite.rel.type.RelDataType;
 import org.apache.calcite.rel.type.RelDataTypeImpl;
 import org.apache.calcite.rel.type.RelDataTypeSystem;
+import org.apache.calcite.rex.RexBuilder;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.sql.SqlOperator;
+import org.apache.calcite.sql.fun.SqlStdOperatorTable;
 
-import org.junit.jupiter.api.Test;
+import com.google.common.collect.ImmutableList;
 
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -208,12 +227,15 @@ class ArrayTableTest {
     assertEquals("foo", representation2.getObject(pair.dataSet, 1000));
     assertEquals(1, pair.cardinality);
 
-    // One different string. ObjectDictionary backed by 1-bit
+    // One different string. There are only two runs, so RunLength, with the
+    // value of each run in an ObjectDictionary backed by 1-bit
     // BitSlicedPrimitiveArray
     valueSet.add("bar");
     pair = valueSet.freeze(0, null);
+    final ArrayTable.RunLength runLength =
+        (ArrayTable.RunLength) pair.representation;
     final ArrayTable.ObjectDictionary representation3 =
-        (ArrayTable.ObjectDictionary) pair.representation;
+        (ArrayTable.ObjectDictionary) runLength.representation;
     assertTrue(
         representation3.representation
             instanceof ArrayTable.BitSlicedPrimitiveArray);
@@ -221,9 +243,11 @@ class ArrayTableTest {
         (ArrayTable.BitSlicedPrimitiveArray) representation3.representation;
     assertEquals(1, representation4.bitCount);
     assertFalse(representation4.signed);
-    assertEquals("foo", representation3.getObject(pair.dataSet, 0));
-    assertEquals("foo", representation3.getObject(pair.dataSet, 1000));
-    assertEquals("bar", representation3.getObject(pair.dataSet, 2003));
+    assertEquals("foo", runLength.getObject(pair.dataSet, 0));
+    assertEquals("foo", runLength.getObject(pair.dataSet, 1000));
+    assertEquals("foo", runLength.getObject(pair.dataSet, 2001));
+    assertEquals("bar", runLength.getObject(pair.dataSet, 2002));
+    assertEquals(2003, runLength.size(pair.dataSet));
     assertEquals(2, pair.cardinality);
   }
 
@@ -271,14 +295,17 @@ class ArrayTableTest {
       valueSet.add(null);
     }
     pair = valueSet.freeze(0, null);
+    final ArrayTable.RunLength runLength =
+        (ArrayTable.RunLength) pair.representation;
     final ArrayTable.ObjectDictionary representation2 =
-        (ArrayTable.ObjectDictionary) pair.representation;
+        (ArrayTable.ObjectDictionary) runLength.representation;
     assertEquals(
         1,
         ((ArrayTable.BitSlicedPrimitiveArray)
             representation2.representation).bitCount);
-    assertEquals("foo", representation2.getObject(pair.dataSet, 1));
-    assertNull(representation2.getObject(pair.dataSet, 10));
+    assertNull(runLength.getObject(pair.dataSet, 0));
+    assertEquals("foo", runLength.getObject(pair.dataSet, 1));
+    assertNull(runLength.getObject(pair.dataSet, 10));
     assertEquals(2, pair.cardinality);
   }
 
@@ -353,6 +380,440 @@ class ArrayTableTest {
         "Column(representation=ObjectArray(ordinal=2), value=[Bill, Sebastian, Theodore, Eric])");
   }
 
+  /** Tests that the contents of a table can be written to a file and mapped
+   * back into memory, with the same representation of each column. */
+  @Test void testContentFile(@TempDir File directory) throws IOException {
+    final JavaTypeFactoryImpl typeFactory =
+        new JavaTypeFactoryImpl(RelDataTypeSystem.DEFAULT);
+    final RelDataType rowType =
+        typeFactory.builder()
+            .add("id", typeFactory.createType(int.class))
+            .add("big", typeFactory.createType(long.class))
+            .add("small", typeFactory.createType(int.class))
+            .add("ratio", typeFactory.createType(double.class))
+            .add("seven", typeFactory.createType(int.class))
+            .add("dept", typeFactory.createType(String.class))
+            .add("name", typeFactory.createType(String.class))
+            .add("bonus", typeFactory.createType(BigDecimal.class))
+            .build();
+    final List<Object[]> rows = new ArrayList<>();
+    for (int i = 0; i < 3000; i++) {
+      rows.add(
+          new Object[]{i, i * 1_000_000_000_000L - 5L, i % 201 - 100,
+              i / 7D, 7, "dept" + i % 5, i % 10 == 0 ? null : "name" + i,
+              i % 3 == 0 ? null : BigDecimal.valueOf(i, 2)});
+    }
+    final ColumnLoader<Object[]> loader =
+        new ColumnLoader<>(typeFactory, Linq4j.asEnumerable(rows),
+            RelDataTypeImpl.proto(rowType), null);
+    final ArrayTable.Content content =
+        new ArrayTable.Content(loader.representationValues, loader.size(),
+            RelCollations.createSingleton(loader.sortField));
+
+    final File file = new File(directory, "t" + CloneSchema.FILE_SUFFIX);
+    ContentFile.write(content, rowType, file);
+    final ArrayTable.Content content2 = ContentFile.read(file, rowType);
+
+    assertEquals(content.size, content2.size);
+    assertEquals(content.collations, content2.collations);
+    final String[] representations = {
+        "MappedBitSlicedPrimitiveArray(ordinal=0, bitCount=12, "
+            + "primitive=INT, signed=false)",
+        "MappedPrimitiveArray(ordinal=1, primitive=LONG, p=LONG)",
+        "MappedPrimitiveArray(ordinal=2, primitive=BYTE, p=INT)",
+        "MappedPrimitiveArray(ordinal=3, primitive=DOUBLE, p=DOUBLE)",
+        "Constant(ordinal=4)",
+        "ObjectDictionary(ordinal=5, representation="
+            + "MappedBitSlicedPrimitiveArray(ordinal=-1, bitCount=3, "
+            + "primitive=INT, signed=false))",
+        "MappedObjectArray(ordinal=6)",
+        "MappedObjectArray(ordinal=7)",
+    };
+    for (int i = 0; i < content.columns.size(); i++) {
+      final ArrayTable.Column column = content.columns.get(i);
+      final ArrayTable.Column column2 = content2.columns.get(i);
+      assertEquals(representations[i], column2.representation.toString());
+      assertEquals(column.representation.getType(),
+          column2.representation.getType());
+      assertEquals(column.cardinality, column2.cardinality);
+    }
+
+    final Enumerator<Object[]> enumerator = content.arrayEnumerator();
+    final Enumerator<Object[]> enumerator2 = content2.arrayEnumerator();
+    int rowCount = 0;
+    while (enumerator.moveNext()) {
+      assertTrue(enumerator2.moveNext());
+      assertEquals(Arrays.asList(enumerator.current()),
+          Arrays.asList(enumerator2.current()));
+      ++rowCount;
+    }
+    assertFalse(enumerator2.moveNext());
+    assertEquals(3000, rowCount);
+  }
+
+  /** Tests that negative values in a signed bit-sliced array do not
+   * overwrite their neighbors. */
+  @Test void testValueSetSigned() {
+    final ColumnLoader.ValueSet valueSet =
+        new ColumnLoader.ValueSet(int.class);
+    final int[] values = {-3, 2, -1, 0, 3, -2, 1};
+    for (int value : values) {
+      valueSet.add(value);
+    }
+    final ArrayTable.Column pair = valueSet.freeze(0, null);
+    final ArrayTable.BitSlicedPrimitiveArray representation =
+        (ArrayTable.BitSlicedPrimitiveArray) pair.representation;
+    assertEquals(3, representation.bitCount);
+    assertTrue(representation.signed);
+    for (int i = 0; i < values.length; i++) {
+      assertEquals(values[i], representation.getInt(pair.dataSet, i));
+      assertEquals(values[i], representation.getObject(pair.dataSet, i));
+    }
+  }
+
+  /** Tests that a column whose values are large but within a narrow range,
+   * such as timestamps, uses frame-of-reference encoding. */
+  @Test void testFrameOfReference() {
+    final ColumnLoader.ValueSet valueSet =
+        new ColumnLoader.ValueSet(long.class);
+    final long base = 1_600_000_000_000L;
+    for (int i = 0; i < 100; i++) {
+      valueSet.add(base + i * 1_000L);
+    }
+    final ArrayTable.Column pair = valueSet.freeze(0, null);
+    assertEquals("FrameOfReference(ordinal=0, p=LONG, base=1600000000000, "
+            + "representation=BitSlicedPrimitiveArray(ordinal=-1, "
+            + "bitCount=17, primitive=LONG, signed=false))",
+        pair.representation.toString());
+    assertEquals(ArrayTable.RepresentationType.FRAME_OF_REFERENCE,
+        pair.representation.getType());
+    assertEquals(base, pair.representation.getObject(pair.dataSet, 0));
+    assertEquals(base + 99_000L,
+        pair.representation.getObject(pair.dataSet, 99));
+    assertEquals(100, pair.cardinality);
+
+    // The range of these values is not narrow enough to halve the storage
+    final ColumnLoader.ValueSet valueSet2 =
+        new ColumnLoader.ValueSet(int.class);
+    valueSet2.add(1_000);
+    valueSet2.add(1_100);
+    final ArrayTable.Column pair2 = valueSet2.freeze(0, null);
+    assertEquals("BitSlicedPrimitiveArray(ordinal=0, bitCount=11, "
+            + "primitive=INT, signed=false)",
+        pair2.representation.toString());
+  }
+
+  /** Tests that a sorted column with few distinct values uses run-length
+   * encoding, including after it has been permuted because a column to its
+   * right is unique. */
+  @Test void testRunLength() throws IOException {
+    final JavaTypeFactoryImpl typeFactory =
+        new JavaTypeFactoryImpl(RelDataTypeSystem.DEFAULT);
+    final RelDataType rowType =
+        typeFactory.builder()
+            .add("deptno", typeFactory.createType(int.class))
+            .add("empid", typeFactory.createType(int.class))
+            .add("ts", typeFactory.createType(long.class))
+            .build();
+    final List<Object[]> rows = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      // Rows are in descending order of empid, and therefore of deptno
+      final int empid = 1000 - i;
+      rows.add(new Object[]{empid / 100, empid, 1_500_000_000_000L + i});
+    }
+    final ColumnLoader<Object[]> loader =
+        new ColumnLoader<>(typeFactory, Linq4j.asEnumerable(rows),
+            RelDataTypeImpl.proto(rowType), null);
+    assertEquals(1, loader.sortField);
+    final List<ArrayTable.Column> columns = loader.representationValues;
+    assertEquals("RunLength(ordinal=0, representation="
+            + "BitSlicedPrimitiveArray(ordinal=0, bitCount=4, primitive=INT, "
+            + "signed=false))",
+        columns.get(0).representation.toString());
+    assertEquals(ArrayTable.RepresentationType.FRAME_OF_REFERENCE,
+        columns.get(2).representation.getType());
+    final ArrayTable.Content content =
+        new ArrayTable.Content(columns, loader.size(),
+            RelCollations.createSingleton(loader.sortField));
+    checkRows(content, 1000);
+  }
+
+  /** Tests that run-length and frame-of-reference encoded columns can be
+   * written to a file and mapped back into memory. */
+  @Test void testContentFileEncoded(@TempDir File directory)
+      throws IOException {
+    final JavaTypeFactoryImpl typeFactory =
+        new JavaTypeFactoryImpl(RelDataTypeSystem.DEFAULT);
+    final RelDataType rowType =
+        typeFactory.builder()
+            .add("id", typeFactory.createType(int.class))
+            .add("grade", typeFactory.createType(String.class))
+            .add("ts", typeFactory.createType(long.class))
+            .build();
+    final List<Object[]> rows = new ArrayList<>();
+    for (int i = 0; i < 3000; i++) {
+      rows.add(new Object[]{i, "grade" + i / 1000, 1_500_000_000_000L - i});
+    }
+    final ColumnLoader<Object[]> loader =
+        new ColumnLoader<>(typeFactory, Linq4j.asEnumerable(rows),
+            RelDataTypeImpl.proto(rowType), null);
+    final ArrayTable.Content content =
+        new ArrayTable.Content(loader.representationValues, loader.size(),
+            RelCollations.createSingleton(loader.sortField));
+    final File file = new File(directory, "t" + CloneSchema.FILE_SUFFIX);
+    ContentFile.write(content, rowType, file);
+    final ArrayTable.Content content2 = ContentFile.read(file, rowType);
+    assertEquals("RunLength(ordinal=1, representation="
+            + "ObjectDictionary(ordinal=1, representation="
+            + "MappedBitSlicedPrimitiveArray(ordinal=-1, bitCount=2, "
+            + "primitive=INT, signed=false)))",
+        content2.columns.get(1).representation.toString());
+    assertEquals("FrameOfReference(ordinal=2, p=LONG, base=1499999997001, "
+            + "representation=MappedBitSlicedPrimitiveArray(ordinal=-1, "
+            + "bitCount=12, primitive=LONG, signed=false))",
+        content2.columns.get(2).representation.toString());
+    assertEquals(checkRows(content, 3000), checkRows(content2, 3000));
+  }
+
+  /** Tests that a file is not read for a table whose row type differs from
+   * the one that the file was written for, even if it has the same number of
+   * columns. */
+  @Test void testContentFileRowType(@TempDir File directory)
+      throws IOException {
+    final JavaTypeFactoryImpl typeFactory =
+        new JavaTypeFactoryImpl(RelDataTypeSystem.DEFAULT);
+    final RelDataType rowType =
+        typeFactory.builder()
+            .add("id", typeFactory.createType(int.class))
+            .add("grade", typeFactory.createType(String.class))
+            .build();
+    final List<Object[]> rows = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      rows.add(new Object[]{i, "grade" + i / 5});
+    }
+    final ColumnLoader<Object[]> loader =
+        new ColumnLoader<>(typeFactory, Linq4j.asEnumerable(rows),
+            RelDataTypeImpl.proto(rowType), null);
+    final ArrayTable.Content content =
+        new ArrayTable.Content(loader.representationValues, loader.size(),
+            RelCollations.createSingleton(loader.sortField));
+    final File file = new File(directory, "t" + CloneSchema.FILE_SUFFIX);
+    ContentFile.write(content, rowType, file);
+    assertNotNull(ContentFile.read(file, rowType));
+
+    final RelDataType rowType2 =
+        typeFactory.builder()
+            .add("id", typeFactory.createType(int.class))
+            .add("grade", typeFactory.createType(int.class))
+            .build();
+    assertNull(ContentFile.read(file, rowType2));
+    final RelDataType rowType3 =
+        typeFactory.builder()
+            .add("id", typeFactory.createType(int.class))
+            .add("level", typeFactory.createType(String.class))
+            .build();
+    assertNull(ContentFile.read(file, rowType3));
+  }
+
+  /** Tests that a value that is stored using Java serialization can be read
+   * only if its class is one of a few value and collection classes. */
+  @Test void testContentFileSerializable() throws IOException {
+    final Timestamp timestamp = new Timestamp(1_500_000_000_000L);
+    assertEquals(timestamp, ContentFile.decode(ContentFile.encode(timestamp)));
+    final byte[] bytes = ContentFile.encode(new UUID(1L, 2L));
+    final RuntimeException e =
+        assertThrows(RuntimeException.class, () -> ContentFile.decode(bytes));
+    assertTrue(e.getCause() instanceof InvalidClassException,
+        () -> "unexpected cause " + e.getCause());
+  }
+
+  /** Tests that a scan evaluates comparisons using binary search on the
+   * sorted column and codes of a dictionary column, and returns the same
+   * rows as a scan that evaluates them one row at a time. */
+  @Test void testFilterEnumerator() {
+    final JavaTypeFactoryImpl typeFactory =
+        new JavaTypeFactoryImpl(RelDataTypeSystem.DEFAULT);
+    final RelDataType rowType =
+        typeFactory.builder()
+            .add("id", typeFactory.createType(int.class))
+            .add("grade", typeFactory.createType(String.class))
+            .add("score", typeFactory.createType(Integer.class))
+            .build();
+    final List<Object[]> rows = new ArrayList<>();
+    for (int i = 0; i < 3000; i++) {
+      rows.add(
+          new Object[]{3000 - i, i % 7 == 0 ? null : "grade" + i % 5,
+              i % 11 == 0 ? null : i % 50});
+    }
+    final ColumnLoader<Object[]> loader =
+        new ColumnLoader<>(typeFactory, Linq4j.asEnumerable(rows),
+            RelDataTypeImpl.proto(rowType), null);
+    assertEquals(0, loader.sortField);
+    assertEquals(ArrayTable.RepresentationType.OBJECT_DICTIONARY,
+        loader.representationValues.get(1).representation.getType());
+    final ArrayTable.Content content =
+        new ArrayTable.Content(loader.representationValues, loader.size(),
+            RelCollations.createSingleton(loader.sortField));
+    final List<List<Object>> allRows = checkRows(content, 3000);
+
+    final RexBuilder rexBuilder = new RexBuilder(typeFactory);
+    final RexNode id = rexBuilder.makeInputRef(rowType, 0);
+    final RexNode grade = rexBuilder.makeInputRef(rowType, 1);
+    final RexNode score = rexBuilder.makeInputRef(rowType, 2);
+    final List<SqlOperator> operators =
+        Arrays.asList(SqlStdOperatorTable.EQUALS,
+            SqlStdOperatorTable.NOT_EQUALS, SqlStdOperatorTable.LESS_THAN,
+            SqlStdOperatorTable.LESS_THAN_OR_EQUAL,
+            SqlStdOperatorTable.GREATER_THAN,
+            SqlStdOperatorTable.GREATER_THAN_OR_EQUAL);
+    final List<RexNode> filters = new ArrayList<>();
+    for (SqlOperator operator : operators) {
+      for (int v : new int[] {-5, 0, 1, 500, 3000, 3001}) {
+        filters.add(
+            rexBuilder.makeCall(operator, id,
+                rexBuilder.makeExactLiteral(BigDecimal.valueOf(v))));
+      }
+      for (String v : new String[] {"grade", "grade0", "grade3", "grade9"}) {
+        filters.add(
+            rexBuilder.makeCall(operator, grade, rexBuilder.makeLiteral(v)));
+        filters.add(
+            rexBuilder.makeCall(operator, rexBuilder.makeLiteral(v), grade));
+      }
+      filters.add(
+          rexBuilder.makeCall(operator, score,
+              rexBuilder.makeExactLiteral(BigDecimal.valueOf(25))));
+    }
+    for (RexNode ref : Arrays.asList(grade, score)) {
+      filters.add(rexBuilder.makeCall(SqlStdOperatorTable.IS_NULL, ref));
+      filters.add(rexBuilder.makeCall(SqlStdOperatorTable.IS_NOT_NULL, ref));
+    }
+
+    final int[] projects = {2, 0};
+    for (RexNode filter : filters) {
+      final ColumnPredicate predicate =
+          ColumnPredicate.of(filter, rowType, typeFactory);
+      final List<List<Object>> expected = new ArrayList<>();
+      for (List<Object> row : allRows) {
+        if (predicate.test((Comparable) row.get(predicate.ordinal))) {
+          expected.add(Arrays.asList(row.get(2), row.get(0)));
+        }
+      }
+      final List<List<Object>> actual = new ArrayList<>();
+      final Enumerator<Object[]> enumerator =
+          content.filterEnumerator(ImmutableList.of(predicate), projects);
+      while (enumerator.moveNext()) {
+        actual.add(Arrays.asList(enumerator.current()));
+      }
+      assertEquals(expected, actual, filter.toString());
+    }
+
+    // A range on the sorted column, and a predicate on codes
+    final List<ColumnPredicate> predicates =
+        Arrays.asList(
+            ColumnPredicate.of(
+                rexBuilder.makeCall(SqlStdOperatorTable.GREATER_THAN, id,
+                    rexBuilder.makeExactLiteral(BigDecimal.valueOf(100))),
+                rowType, typeFactory),
+            ColumnPredicate.of(
+                rexBuilder.makeCall(SqlStdOperatorTable.LESS_THAN_OR_EQUAL,
+                    id, rexBuilder.makeExactLiteral(BigDecimal.valueOf(120))),
+                rowType, typeFactory),
+            ColumnPredicate.of(
+                rexBuilder.makeCall(SqlStdOperatorTable.EQUALS, grade,
+                    rexBuilder.makeLiteral("grade2")),
+                rowType, typeFactory));
+    final Enumerator<Object[]> enumerator =
+        content.filterEnumerator(predicates, null);
+    final List<Object> ids = new ArrayList<>();
+    while (enumerator.moveNext()) {
+      ids.add(enumerator.current()[0]);
+    }
+    assertEquals("[103, 108, 113, 118]", ids.toString());
+
+    // A comparison to a value that would overflow the column's type is left
+    // to the caller
+    assertNull(
+        ColumnPredicate.of(
+            rexBuilder.makeCall(SqlStdOperatorTable.LESS_THAN, id,
+                rexBuilder.makeBigintLiteral(BigDecimal.valueOf(1L << 40))),
+            rowType, typeFactory));
+  }
+
+  /** Tests that a scan evaluates comparisons on the codes of a dictionary
+   * column that is run-length encoded, and returns the same rows as a scan
+   * that evaluates them one row at a time. */
+  @Test void testFilterEnumeratorRunLength() {
+    final JavaTypeFactoryImpl typeFactory =
+        new JavaTypeFactoryImpl(RelDataTypeSystem.DEFAULT);
+    final RelDataType rowType =
+        typeFactory.builder()
+            .add("id", typeFactory.createType(int.class))
+            .add("grade", typeFactory.createType(String.class))
+            .build();
+    final List<Object[]> rows = new ArrayList<>();
+    for (int i = 0; i < 3000; i++) {
+      rows.add(new Object[]{i, i < 500 ? null : "grade" + i / 1000});
+    }
+    final ColumnLoader<Object[]> loader =
+        new ColumnLoader<>(typeFactory, Linq4j.asEnumerable(rows),
+            RelDataTypeImpl.proto(rowType), null);
+    final ArrayTable.Representation representation =
+        loader.representationValues.get(1).representation;
+    assertEquals(ArrayTable.RepresentationType.RUN_LENGTH,
+        representation.getType());
+    assertEquals(ArrayTable.RepresentationType.OBJECT_DICTIONARY,
+        ((ArrayTable.RunLength) representation).representation.getType());
+    final ArrayTable.Content content =
+        new ArrayTable.Content(loader.representationValues, loader.size(),
+            RelCollations.createSingleton(loader.sortField));
+    final List<List<Object>> allRows = checkRows(content, 3000);
+
+    final RexBuilder rexBuilder = new RexBuilder(typeFactory);
+    final RexNode grade = rexBuilder.makeInputRef(rowType, 1);
+    final List<RexNode> filters = new ArrayList<>();
+    for (SqlOperator operator
+        : Arrays.asList(SqlStdOperatorTable.EQUALS,
+            SqlStdOperatorTable.NOT_EQUALS, SqlStdOperatorTable.LESS_THAN,
+            SqlStdOperatorTable.GREATER_THAN_OR_EQUAL)) {
+      for (String v : new String[] {"grade", "grade0", "grade1", "grade9"}) {
+        filters.add(
+            rexBuilder.makeCall(operator, grade, rexBuilder.makeLiteral(v)));
+      }
+    }
+    filters.add(rexBuilder.makeCall(SqlStdOperatorTable.IS_NULL, grade));
+    filters.add(rexBuilder.makeCall(SqlStdOperatorTable.IS_NOT_NULL, grade));
+
+    for (RexNode filter : filters) {
+      final ColumnPredicate predicate =
+          ColumnPredicate.of(filter, rowType, typeFactory);
+      final List<List<Object>> expected = new ArrayList<>();
+      for (List<Object> row : allRows) {
+        if (predicate.test((Comparable) row.get(1))) {
+          expected.add(row);
+        }
+      }
+      final List<List<Object>> actual = new ArrayList<>();
+      final Enumerator<Object[]> enumerator =
+          content.filterEnumerator(ImmutableList.of(predicate), null);
+      while (enumerator.moveNext()) {
+        actual.add(Arrays.asList(enumerator.current()));
+      }
+      assertEquals(expected, actual, filter.toString());
+    }
+  }
+
+  /** Checks the number of rows in a table, and returns them as a list. */
+  private static List<List<Object>> checkRows(ArrayTable.Content content,
+      int expectedRowCount) {
+    final List<List<Object>> list = new ArrayList<>();
+    final Enumerator<Object[]> enumerator = content.arrayEnumerator();
+    while (enumerator.moveNext()) {
+      list.add(Arrays.asList(enumerator.current()));
+    }
+    assertEquals(expectedRowCount, list.size());
+    return list;
+  }
+
   private void checkColumn(ArrayTable.Column x,
       ArrayTable.RepresentationType expectedRepresentationType,
       String expectedString) {
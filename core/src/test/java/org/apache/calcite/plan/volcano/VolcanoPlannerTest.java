@@ -19,10 +19,13 @@
 import org.apache.calcite.adapter.enumerable.EnumerableConvention;
 import org.apache.calcite.adapter.enumerable.EnumerableRules;
 import org.apache.calcite.adapter.enumerable.EnumerableUnion;
+import org.apache.calcite.plan.Contexts;
 import org.apache.calcite.plan.Convention;
 import org.apache.calcite.plan.ConventionTraitDef;
 import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelOptCost;
 import org.apache.calcite.plan.RelOptListener;
+import org.apache.calcite.plan.RelOptProfiler;
 import org.apache.calcite.plan.RelOptRule;
 import org.apache.calcite.plan.RelOptRuleCall;
 import org.apache.calcite.plan.RelOptUtil;
@@ -35,16 +38,32 @@
 import org.apache.calcite.rel.core.JoinRelType;
 import org.apache.calcite.rel.core.RelFactories;
 import org.apache.calcite.rel.logical.LogicalProject;
+import org.apache.calcite.rel.rules.FilterJoinRule;
+import org.apache.calcite.rel.rules.JoinAssociateRule;
+import org.apache.calcite.rel.rules.JoinCommuteRule;
+import org.apache.calcite.rel.rules.ProjectMergeRule;
 import org.apache.calcite.rel.rules.ProjectRemoveRule;
+import org.apache.calcite.sql.fun.SqlStdOperatorTable;
 import org.apache.calcite.tools.RelBuilder;
+import org.apache.calcite.util.Litmus;
+import org.apache.calcite.util.Util;
 
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
 
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
 
 import static org.apache.calcite.plan.volcano.PlannerTests.AssertOperandsDifferentRule;
 import static org.apache.calcite.plan.volcano.PlannerTests.GoodSingleRule;
@@ -479,6 +498,200 @@ public RelNode convert(RelNode rel) {
     }
   }
 
+  /** Tests that the global profiler records the rules that a planner fires,
+   * and that its statistics are visible via JMX. */
+  @Test void testProfiler() throws Exception {
+    final RelOptProfiler profiler = RelOptProfiler.global();
+    profiler.reset();
+    VolcanoPlanner planner = new VolcanoPlanner(Contexts.of(profiler));
+    planner.addRelTraitDef(ConventionTraitDef.INSTANCE);
+    planner.addRule(new PhysLeafRule());
+    planner.addRule(new GoodSingleRule());
+
+    RelOptCluster cluster = newCluster(planner);
+    NoneLeafRel leafRel = new NoneLeafRel(cluster, "a");
+    NoneSingleRel singleRel = new NoneSingleRel(cluster, leafRel);
+    planner.setRoot(
+        planner.changeTraits(singleRel,
+            cluster.traitSetOf(PHYS_CALLING_CONVENTION)));
+    planner.findBestExp();
+
+    assertThat(profiler.getRunCount(), equalTo(1L));
+    final List<RelOptProfiler.RuleStatistics> statistics =
+        profiler.getRuleStatistics();
+    final RelOptProfiler.RuleStatistics leafStatistics = statistics.stream()
+        .filter(s -> s.getRule().equals("PhysLeafRule"))
+        .findFirst().get();
+    assertThat(leafStatistics.getAttempts(), equalTo(1L));
+    assertThat(leafStatistics.getFires(), equalTo(1L));
+    assertThat(leafStatistics.getEmptyFires(), equalTo(0L));
+    assertThat(leafStatistics.getProductions(), equalTo(1L));
+    final RelOptProfiler.MemoSample sample =
+        Util.last(profiler.getMemoSamples());
+    assertThat(sample.getPlanner(), equalTo("VolcanoPlanner"));
+    assertThat(sample.getSets(), equalTo(2));
+
+    final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    final ObjectName name = new ObjectName(RelOptProfiler.OBJECT_NAME);
+    assertThat(server.getAttribute(name, "RunCount"), equalTo(1L));
+    final CompositeData[] data =
+        (CompositeData[]) server.getAttribute(name, "RuleStatistics");
+    assertThat(data.length, equalTo(statistics.size()));
+    server.invoke(name, "reset", new Object[0], new String[0]);
+    assertThat(profiler.getRunCount(), equalTo(0L));
+  }
+
+  /** Tests that the profiler counts a rule once if it is blocked while firing
+   * concurrently with other rules, and then fired again. */
+  @Test void testProfilerParallelism() {
+    final RelOptProfiler profiler = RelOptProfiler.global();
+    profiler.reset();
+    VolcanoPlanner planner = new VolcanoPlanner(Contexts.of(profiler));
+    planner.setParallelism(2);
+    planner.addRelTraitDef(ConventionTraitDef.INSTANCE);
+    planner.addRule(new PhysLeafRule());
+    // Blocked, because it converts its input, which changes the planner
+    planner.addRule(new GoodSingleRule());
+
+    RelOptCluster cluster = newCluster(planner);
+    NoneLeafRel leafRel = new NoneLeafRel(cluster, "a");
+    NoneSingleRel singleRel = new NoneSingleRel(cluster, leafRel);
+    planner.setRoot(
+        planner.changeTraits(singleRel,
+            cluster.traitSetOf(PHYS_CALLING_CONVENTION)));
+    planner.findBestExp();
+
+    final RelOptProfiler.RuleStatistics singleStatistics =
+        profiler.getRuleStatistics().stream()
+            .filter(s -> s.getRule().equals("GoodSingleRule"))
+            .findFirst().get();
+    assertThat(singleStatistics.getAttempts(), equalTo(1L));
+    assertThat(singleStatistics.getFires(), equalTo(1L));
+    assertThat(singleStatistics.getProductions(), equalTo(1L));
+    profiler.reset();
+  }
+
+  /** Tests that a planner that fires rule matches concurrently finds a valid
+   * plan that is as cheap as the plan found by firing them one at a time.
+   * Because matches fire in a different order, the plans may differ if
+   * several have the same cost. */
+  @Test void testParallelism() {
+    final RelNode plan = planJoins(new VolcanoPlanner(), 1, false);
+    final RelOptCost cost = cumulativeCost(plan);
+    checkParallelPlan(planJoins(new VolcanoPlanner(), 4, false), plan, cost);
+
+    // Rule matches run on the executor in the context, if there is one
+    final AtomicInteger taskCount = new AtomicInteger();
+    final ExecutorService pool = Executors.newFixedThreadPool(2);
+    try {
+      final Executor executor = task -> {
+        taskCount.incrementAndGet();
+        pool.execute(task);
+      };
+      final VolcanoPlanner planner =
+          new VolcanoPlanner(Contexts.of(executor));
+      checkParallelPlan(planJoins(planner, 4, false), plan, cost);
+    } finally {
+      pool.shutdown();
+    }
+    assertTrue(taskCount.get() > 0);
+  }
+
+  /** Tests that a rule that is firing concurrently can invoke a planner that
+   * uses the same pool. The nested planner fires its matches on the rule's
+   * thread; if it waited for the pool, whose only thread is running the rule,
+   * it would never finish. */
+  @Timeout(60)
+  @Test void testParallelismNested() {
+    final RelNode plan = planJoins(new VolcanoPlanner(), 1, false);
+    final RelOptCost cost = cumulativeCost(plan);
+    final ExecutorService pool = Executors.newFixedThreadPool(1);
+    try {
+      final List<RelNode> nestedPlans =
+          Collections.synchronizedList(new ArrayList<>());
+      final RelOptRule nestedRule =
+          new RelOptRule(
+              RelOptRule.operand(LogicalProject.class, RelOptRule.any())) {
+            public void onMatch(RelOptRuleCall call) {
+              final VolcanoPlanner nestedPlanner =
+                  new VolcanoPlanner(Contexts.of(pool));
+              nestedPlans.add(planJoins(nestedPlanner, 4, false));
+            }
+          };
+      final VolcanoPlanner planner = new VolcanoPlanner(Contexts.of(pool));
+      planner.addRule(nestedRule);
+      checkParallelPlan(planJoins(planner, 4, false), plan, cost);
+      assertFalse(nestedPlans.isEmpty());
+      for (RelNode nestedPlan : nestedPlans) {
+        checkParallelPlan(nestedPlan, plan, cost);
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  private static void checkParallelPlan(RelNode plan, RelNode serialPlan,
+      RelOptCost serialCost) {
+    assertTrue(plan.isValid(Litmus.THROW, null));
+    assertThat(plan.getConvention(), equalTo(EnumerableConvention.INSTANCE));
+    assertThat(plan.getRowType(), equalTo(serialPlan.getRowType()));
+    final RelOptCost cost = cumulativeCost(plan);
+    assertTrue(cost.isEqWithEpsilon(serialCost),
+        () -> "cost " + cost + " differs from " + serialCost + "; plan:\n"
+            + RelOptUtil.toString(plan));
+  }
+
+  private static RelOptCost cumulativeCost(RelNode rel) {
+    return rel.getCluster().getMetadataQuery().getCumulativeCost(rel);
+  }
+
+  /** Tests that a planner that searches top-down, pruning expressions whose
+   * cost exceeds the best plan found so far, finds the same plan as one that
+   * fires every rule match. */
+  @Test void testTopDownOpt() {
+    final RelNode plan = planJoins(new VolcanoPlanner(), 1, false);
+    assertThat(RelOptUtil.toString(planJoins(new VolcanoPlanner(), 1, true)),
+        equalTo(RelOptUtil.toString(plan)));
+  }
+
+  private static RelNode planJoins(VolcanoPlanner planner, int parallelism,
+      boolean topDownOpt) {
+    planner.setParallelism(parallelism);
+    planner.setTopDownOpt(topDownOpt);
+    planner.addRelTraitDef(ConventionTraitDef.INSTANCE);
+    planner.addRule(FilterJoinRule.FILTER_ON_JOIN);
+    planner.addRule(JoinCommuteRule.INSTANCE);
+    planner.addRule(JoinAssociateRule.INSTANCE);
+    planner.addRule(ProjectMergeRule.INSTANCE);
+    planner.addRule(EnumerableRules.ENUMERABLE_JOIN_RULE);
+    planner.addRule(EnumerableRules.ENUMERABLE_PROJECT_RULE);
+    planner.addRule(EnumerableRules.ENUMERABLE_FILTER_RULE);
+    planner.addRule(EnumerableRules.ENUMERABLE_VALUES_RULE);
+
+    RelOptCluster cluster = newCluster(planner);
+    RelBuilder relBuilder = RelFactories.LOGICAL_BUILDER.create(cluster, null);
+    RelNode logicalPlan = relBuilder
+        .values(new String[]{"a", "b"}, 1, 2, 3, 4, 5, 6, 7, 8)
+        .values(new String[]{"c", "d"}, 1, 2, 3, 4)
+        .join(JoinRelType.INNER,
+            relBuilder.equals(relBuilder.field(2, 0, "a"),
+                relBuilder.field(2, 1, "c")))
+        .values(new String[]{"e", "f"}, 1, 2)
+        .join(JoinRelType.INNER,
+            relBuilder.equals(relBuilder.field(2, 0, "b"),
+                relBuilder.field(2, 1, "f")))
+        .filter(
+            relBuilder.call(SqlStdOperatorTable.GREATER_THAN,
+                relBuilder.field("d"), relBuilder.literal(2)))
+        .project(relBuilder.field("a"), relBuilder.field("e"))
+        .build();
+
+    RelTraitSet desiredTraits =
+        cluster.traitSet().replace(EnumerableConvention.INSTANCE);
+    planner.setRoot(planner.changeTraits(logicalPlan, desiredTraits));
+    return planner.findBestExp();
+  }
+
   /**
    * Tests whether planner correctly notifies listeners of events.
    */
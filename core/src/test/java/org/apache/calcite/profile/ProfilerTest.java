@@ -20,6 +20,7 @@
 import org.apache.calcite.linq4j.Enumerable;
 import org.apache.calcite.linq4j.Enumerator;
 import org.apache.calcite.rel.metadata.NullSentinel;
+import org.apache.calcite.schema.ColumnStatistic;
 import org.apache.calcite.test.CalciteAssert;
 import org.apache.calcite.test.Matchers;
 import org.apache.calcite.util.ImmutableBitSet;
@@ -53,6 +54,9 @@
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
+import static org.apache.calcite.test.Matchers.within;
+
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.Is.is;
 
@@ -369,6 +373,43 @@ class ProfilerTest {
     assertThat(q.isValid(), is(true));
   }
 
+  /** Tests {@link Profiler.Profile#toStatistic()}, which converts a profile
+   * into statistics that a table can give to the planner. */
+  @Test void testProfileToStatistic() {
+    final List<List<Comparable>> rows = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      rows.add(
+          ImmutableList.of(i, NullSentinel.mask(i % 10 == 0 ? null : i % 4)));
+    }
+    final List<Profiler.Column> columns =
+        ImmutableList.of(new Profiler.Column(0, "ID"),
+            new Profiler.Column(1, "X"));
+    for (Profiler profiler
+        : ImmutableList.of(new SimpleProfiler(),
+            new ProfilerImpl(600, 200, p -> true))) {
+      final Profiler.Profile profile =
+          profiler.profile(rows, columns,
+              ImmutableList.of(ImmutableBitSet.of(0, 1)));
+      final org.apache.calcite.schema.Statistic statistic =
+          profile.toStatistic();
+      assertThat(statistic.getRowCount(), is(100D));
+      assertThat(statistic.isKey(ImmutableBitSet.of(0)), is(true));
+      assertThat(statistic.isKey(ImmutableBitSet.of(1)), is(false));
+
+      // Column "ID" has too many values to record the smallest and largest
+      final ColumnStatistic id = statistic.getColumnStatistic(0);
+      assertThat(id.getDistinctCount(), within(100D, 5D));
+      assertThat(id.getNullCount(), is(0D));
+
+      final ColumnStatistic x = statistic.getColumnStatistic(1);
+      assertThat(x.getDistinctCount(), is(4D));
+      assertThat(x.getNullCount(), is(10D));
+      assertThat(x.getMin(), is(0));
+      assertThat(x.getMax(), is(3));
+      assertThat(statistic.getColumnStatistic(2), nullValue());
+    }
+  }
+
   private Fluid scott() throws Exception {
     final String sql = "select * from \"scott\".emp\n"
         + "join \"scott\".dept on emp.deptno = dept.deptno";
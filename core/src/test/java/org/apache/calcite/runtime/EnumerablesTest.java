@@ -16,8 +16,11 @@
  */
 package org.apache.calcite.runtime;
 
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.DelegatingEnumerator;
 import org.apache.calcite.linq4j.Enumerable;
 import org.apache.calcite.linq4j.EnumerableDefaults;
+import org.apache.calcite.linq4j.Enumerator;
 import org.apache.calcite.linq4j.JoinType;
 import org.apache.calcite.linq4j.Linq4j;
 import org.apache.calcite.linq4j.function.Function2;
@@ -33,11 +36,20 @@
 import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static com.google.common.collect.Lists.newArrayList;
 
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * Unit tests for {@link org.apache.calcite.runtime.Enumerables}.
@@ -647,6 +659,147 @@ public void testMatch() {
             + " null, Dept(30, Development)]"));
   }
 
+  @Test void testGather() {
+    // Partition p contains the numbers [p * 10000, p * 10000 + 2500)
+    final List<Integer> list =
+        Enumerables.gather(3,
+            p -> integers(p * 10000, p * 10000 + 2500))
+            .orderBy(Functions.identitySelector())
+            .toList();
+    assertThat(list.size(), equalTo(7500));
+    assertThat(list.get(0), equalTo(0));
+    assertThat(list.get(2499), equalTo(2499));
+    assertThat(list.get(2500), equalTo(10000));
+    assertThat(list.get(7499), equalTo(22499));
+  }
+
+  @Test void testGatherClosedEarly() {
+    assertThat(
+        Enumerables.gather(4, p -> integers(0, 100000))
+            .take(3)
+            .count(),
+        equalTo(3));
+  }
+
+  /** Tests that a gather with a concurrency limit evaluates every partition
+   * but submits only as many tasks as the limit, each task evaluating
+   * several partitions in turn. */
+  @Test void testGatherMaxConcurrency() {
+    final AtomicInteger taskCount = new AtomicInteger();
+    final ExecutorService executor = Executors.newCachedThreadPool();
+    try {
+      final List<Integer> list =
+          Enumerables.gather(10,
+              p -> integers(p * 100, p * 100 + 50),
+              task -> {
+                taskCount.incrementAndGet();
+                executor.execute(task);
+              },
+              3)
+              .orderBy(Functions.identitySelector())
+              .toList();
+      assertThat(list.size(), equalTo(500));
+      assertThat(list.get(0), equalTo(0));
+      assertThat(list.get(499), equalTo(949));
+      assertThat(taskCount.get(), equalTo(3));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /** Tests that a gather that buffers when blocked closes each partition
+   * after reading it, even if the consumer has not read the rows. */
+  @Test void testGatherBufferWhenBlocked() throws InterruptedException {
+    final CountDownLatch closeLatch = new CountDownLatch(4);
+    final ExecutorService executor = Executors.newCachedThreadPool();
+    try (Enumerator<Integer> enumerator =
+             Enumerables.gather(4,
+                 p -> new AbstractEnumerable<Integer>() {
+                   public Enumerator<Integer> enumerator() {
+                     return new DelegatingEnumerator<Integer>(
+                         integers(0, 100000).enumerator()) {
+                       @Override public void close() {
+                         super.close();
+                         closeLatch.countDown();
+                       }
+                     };
+                   }
+                 },
+                 executor, 4, true)
+                 .enumerator()) {
+      // The queue holds far fewer than 400,000 rows, so each partition must
+      // buffer its rows before it can close
+      assertTrue(enumerator.moveNext());
+      assertTrue(closeLatch.await(30, TimeUnit.SECONDS));
+      int count = 1;
+      while (enumerator.moveNext()) {
+        ++count;
+      }
+      assertThat(count, equalTo(400000));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /** Tests that if the consumer abandons a gather's enumerator without
+   * closing it, the tasks stop, and close their partitions, once the
+   * enumerator has been garbage-collected. */
+  @Test void testGatherAbandoned() throws InterruptedException {
+    final CountDownLatch closeLatch = new CountDownLatch(4);
+    final ExecutorService executor = Executors.newCachedThreadPool();
+    try {
+      startAndAbandon(
+          Enumerables.gather(4,
+              p -> new AbstractEnumerable<Integer>() {
+                public Enumerator<Integer> enumerator() {
+                  return new DelegatingEnumerator<Integer>(
+                      integers(0, 100000).enumerator()) {
+                    @Override public void close() {
+                      super.close();
+                      closeLatch.countDown();
+                    }
+                  };
+                }
+              },
+              executor, 4));
+      boolean closed = false;
+      for (int i = 0; i < 300 && !closed; i++) {
+        System.gc();
+        closed = closeLatch.await(100, TimeUnit.MILLISECONDS);
+      }
+      assertTrue(closed);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /** Reads one row from an enumerable, and drops the enumerator without
+   * closing it. */
+  private static void startAndAbandon(Enumerable<Integer> enumerable) {
+    final Enumerator<Integer> enumerator = enumerable.enumerator();
+    assertTrue(enumerator.moveNext());
+  }
+
+  @Test void testGatherFailure() {
+    final Enumerable<Integer> enumerable =
+        Enumerables.gather(2, p -> {
+          if (p == 1) {
+            throw new IllegalStateException("partition 1 failed");
+          }
+          return integers(0, 10);
+        });
+    final IllegalStateException e =
+        assertThrows(IllegalStateException.class, enumerable::toList);
+    assertThat(e.getMessage(), equalTo("partition 1 failed"));
+  }
+
+  /** Returns the integers between {@code start} (inclusive) and
+   * {@code end} (exclusive). */
+  private static Enumerable<Integer> integers(int start, int end) {
+    return Linq4j.asEnumerable(
+        IntStream.range(start, end).boxed().collect(Collectors.toList()));
+  }
+
   /** Employee record. */
   private static class Emp {
     final int deptno;
@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.runtime;
+
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.EnumerableDefaults;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.linq4j.function.Function2;
+import org.apache.calcite.linq4j.function.Predicate2;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Unit tests for {@link LongKeyedEnumerables}.
+ */
+class LongKeyedEnumerablesTest {
+  /** Keys that are likely to expose mistakes in hashing: zero, extreme
+   * values, and values that differ only in their high bits. */
+  private static final long[] KEYS = {
+      0L, -1L, 1L, Long.MIN_VALUE, Long.MAX_VALUE, 1L << 32, 2L << 32,
+      3L << 32, 1L << 63 | 1L, 17L, 4096L, -4096L
+  };
+
+  /** Returns {@code n} rows {@code [key, i]}, cycling through {@link #KEYS}
+   * and then {@code extraKeys} distinct keys. */
+  private static Enumerable<List<Long>> rows(int n, int extraKeys) {
+    final List<List<Long>> list = new ArrayList<>();
+    for (int i = 0; i < n; i++) {
+      final int k = (i * 7919) % (KEYS.length + extraKeys);
+      final long key = k < KEYS.length ? KEYS[k] : (long) k << 40;
+      list.add(Arrays.asList(key, (long) i));
+    }
+    return Linq4j.asEnumerable(list);
+  }
+
+  @Test void testLongHashTable() {
+    final LongKeyedEnumerables.LongHashTable table =
+        new LongKeyedEnumerables.LongHashTable();
+    for (int i = 0; i < KEYS.length; i++) {
+      assertThat(table.get(KEYS[i]), is(-1));
+      table.put(KEYS[i], i);
+    }
+    for (int i = 0; i < 10_000; i++) {
+      table.put(1_000_000L + i * 31L, KEYS.length + i);
+    }
+    for (int i = 0; i < KEYS.length; i++) {
+      assertThat(table.get(KEYS[i]), is(i));
+    }
+    for (int i = 0; i < 10_000; i++) {
+      assertThat(table.get(1_000_000L + i * 31L), is(KEYS.length + i));
+    }
+    assertThat(table.get(1_000_001L), is(-1));
+  }
+
+  @Test void testGroupBy() {
+    final Enumerable<List<Long>> rows = rows(5_000, 300);
+    final Function2<Long, Long, String> resultSelector =
+        (key, sum) -> key + ":" + sum;
+    final List<String> expected =
+        EnumerableDefaults.groupBy(rows, r -> r.get(0), () -> 0L,
+            (sum, r) -> sum + r.get(1), resultSelector).toList();
+    final List<String> actual =
+        LongKeyedEnumerables.groupBy(rows, r -> r.get(0), r -> r.get(0),
+            () -> 0L, (sum, r) -> sum + r.get(1), resultSelector).toList();
+    assertThat(sorted(actual), equalTo(sorted(expected)));
+  }
+
+  @Test void testInnerJoin() {
+    checkHashJoin(false, false, null);
+  }
+
+  @Test void testLeftJoin() {
+    checkHashJoin(false, true, null);
+  }
+
+  @Test void testRightJoin() {
+    checkHashJoin(true, false, null);
+  }
+
+  @Test void testFullJoin() {
+    checkHashJoin(true, true, null);
+  }
+
+  @Test void testFullJoinWithPredicate() {
+    checkHashJoin(true, true, (r0, r1) -> (r0.get(1) + r1.get(1)) % 3 != 0);
+  }
+
+  private void checkHashJoin(boolean generateNullsOnLeft,
+      boolean generateNullsOnRight,
+      Predicate2<List<Long>, List<Long>> predicate) {
+    final Enumerable<List<Long>> outer = rows(1_000, 200);
+    final Enumerable<List<Long>> inner = rows(300, 400);
+    final Function2<List<Long>, List<Long>, String> resultSelector =
+        (r0, r1) -> (r0 == null ? null : r0.get(1)) + "-"
+            + (r1 == null ? null : r1.get(1));
+    final List<String> expected =
+        EnumerableDefaults.hashJoin(outer, inner, r -> r.get(0),
+            r -> r.get(0), resultSelector, null, generateNullsOnLeft,
+            generateNullsOnRight, predicate).toList();
+    final List<String> actual =
+        LongKeyedEnumerables.hashJoin(outer, inner, r -> r.get(0),
+            r -> r.get(0), resultSelector, generateNullsOnLeft,
+            generateNullsOnRight, predicate).toList();
+    // Rows that have an outer row are in the same order as the generic
+    // join; the rest come last, in some order.
+    final int n = withOuter(expected);
+    assertThat(withOuter(actual), is(n));
+    assertThat(actual.subList(0, n), equalTo(expected.subList(0, n)));
+    assertThat(sorted(actual), equalTo(sorted(expected)));
+  }
+
+  /** Returns the number of rows that have an outer row. */
+  private static int withOuter(List<String> list) {
+    return (int) list.stream().filter(s -> !s.startsWith("null-")).count();
+  }
+
+  private static List<String> sorted(List<String> list) {
+    final List<String> sorted = new ArrayList<>(list);
+    sorted.sort(null);
+    return sorted;
+  }
+}
@@ -0,0 +1,247 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.runtime;
+
+import org.apache.calcite.DataContext;
+import org.apache.calcite.adapter.java.JavaTypeFactory;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.EnumerableDefaults;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.linq4j.QueryProvider;
+import org.apache.calcite.linq4j.function.Function2;
+import org.apache.calcite.linq4j.function.Predicate2;
+import org.apache.calcite.schema.SchemaPlus;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+
+/**
+ * Unit tests for {@link SpillingEnumerables}.
+ */
+class SpillingEnumerablesTest {
+  /** Returns a list of {@code n} rows {@code [key, i]}, where {@code key} is
+   * {@code i} scrambled into the range {@code [0, keyCount)}, or null for
+   * every {@code nullEvery}th row. */
+  private static Enumerable<List<Integer>> rows(int n, int keyCount,
+      int nullEvery) {
+    final List<List<Integer>> list = new ArrayList<>();
+    for (int i = 0; i < n; i++) {
+      final Integer key = nullEvery > 0 && i % nullEvery == 0
+          ? null
+          : (i * 7919) % keyCount;
+      list.add(Arrays.asList(key, i));
+    }
+    return Linq4j.asEnumerable(list);
+  }
+
+  @Test void testOrderBy() {
+    final SpillBudget budget = new SpillBudget(100);
+    final Enumerable<List<Integer>> rows = rows(5_000, 97, 0);
+    final List<List<Integer>> expected =
+        EnumerableDefaults.orderBy(rows, r -> r.get(0), null).toList();
+    final List<List<Integer>> actual =
+        SpillingEnumerables.orderBy(new BudgetDataContext(budget), rows,
+            r -> r.get(0), null).toList();
+    // Rows with equal keys are in input order, as in the in-memory sort
+    assertThat(actual, equalTo(expected));
+    assertThat(budget.getSpillFileCount(), greaterThan(0));
+    assertThat(budget.getReservedRows(), is(0L));
+  }
+
+  /** Tests a sort that writes so many runs that it must merge them in
+   * several passes. */
+  @Test void testOrderByDescendingManyRuns() {
+    final SpillBudget budget = new SpillBudget(10);
+    final Enumerable<List<Integer>> rows = rows(2_000, 1_000, 0);
+    final Comparator<Integer> comparator = Comparator.reverseOrder();
+    final List<List<Integer>> expected =
+        EnumerableDefaults.orderBy(rows, r -> r.get(0), comparator).toList();
+    final List<List<Integer>> actual =
+        SpillingEnumerables.orderBy(new BudgetDataContext(budget), rows,
+            r -> r.get(0), comparator).toList();
+    assertThat(actual, equalTo(expected));
+    assertThat(budget.getSpillFileCount(), greaterThan(100));
+    assertThat(budget.getReservedRows(), is(0L));
+  }
+
+  /** Tests that if the data context has no budget, operators do not
+   * spill. */
+  @Test void testNoBudget() {
+    final Enumerable<List<Integer>> rows = rows(100, 7, 0);
+    assertThat(
+        SpillingEnumerables.orderBy(new BudgetDataContext(null), rows,
+            r -> r.get(0), null).toList(),
+        equalTo(
+            EnumerableDefaults.orderBy(rows, r -> r.get(0), null).toList()));
+  }
+
+  @Test void testGroupBy() {
+    final SpillBudget budget = new SpillBudget(50);
+    final Enumerable<List<Integer>> rows = rows(10_000, 1_000, 13);
+    final Function2<Integer, Integer, String> resultSelector =
+        (key, sum) -> key + ":" + sum;
+    final List<String> expected =
+        EnumerableDefaults.groupBy(rows, r -> r.get(0), () -> 0,
+            (sum, r) -> sum + r.get(1), resultSelector).toList();
+    final List<String> actual =
+        SpillingEnumerables.groupBy(new BudgetDataContext(budget), rows,
+            r -> r.get(0), () -> 0, (sum, r) -> sum + r.get(1),
+            resultSelector, null).toList();
+    assertThat(sorted(actual), equalTo(sorted(expected)));
+    assertThat(actual.size(), is(1_001));
+    assertThat(budget.getSpillFileCount(), greaterThan(0));
+    assertThat(budget.getReservedRows(), is(0L));
+  }
+
+  @Test void testInnerJoin() {
+    checkHashJoin(false, false, null);
+  }
+
+  @Test void testLeftJoin() {
+    checkHashJoin(false, true, null);
+  }
+
+  @Test void testRightJoin() {
+    checkHashJoin(true, false, null);
+  }
+
+  @Test void testFullJoin() {
+    checkHashJoin(true, true, null);
+  }
+
+  @Test void testFullJoinWithPredicate() {
+    checkHashJoin(true, true, (r0, r1) -> (r0.get(1) + r1.get(1)) % 3 != 0);
+  }
+
+  private void checkHashJoin(boolean generateNullsOnLeft,
+      boolean generateNullsOnRight,
+      Predicate2<List<Integer>, List<Integer>> predicate) {
+    final SpillBudget budget = new SpillBudget(40);
+    final Enumerable<List<Integer>> outer = rows(1_000, 300, 17);
+    final Enumerable<List<Integer>> inner = rows(600, 400, 19);
+    final Function2<List<Integer>, List<Integer>, String> resultSelector =
+        (r0, r1) -> (r0 == null ? null : r0.get(1)) + "-"
+            + (r1 == null ? null : r1.get(1));
+    final List<String> expected =
+        EnumerableDefaults.hashJoin(outer, inner, r -> r.get(0),
+            r -> r.get(0), resultSelector, null, generateNullsOnLeft,
+            generateNullsOnRight, predicate).toList();
+    final List<String> actual =
+        SpillingEnumerables.hashJoin(new BudgetDataContext(budget), outer,
+            inner, r -> r.get(0), r -> r.get(0), resultSelector, null,
+            generateNullsOnLeft, generateNullsOnRight, predicate, true)
+            .toList();
+    // Rows that have an outer row are in the same order as the in-memory
+    // join; the rest come last, in some order.
+    assertThat(withOuter(actual), equalTo(withOuter(expected)));
+    assertThat(sorted(actual), equalTo(sorted(expected)));
+    assertThat(budget.getSpillFileCount(), greaterThan(0));
+    assertThat(budget.getReservedRows(), is(0L));
+
+    final List<String> unordered =
+        SpillingEnumerables.hashJoin(new BudgetDataContext(budget), outer,
+            inner, r -> r.get(0), r -> r.get(0), resultSelector, null,
+            generateNullsOnLeft, generateNullsOnRight, predicate, false)
+            .toList();
+    assertThat(sorted(unordered), equalTo(sorted(expected)));
+    assertThat(budget.getReservedRows(), is(0L));
+  }
+
+  /** Tests that operators delete their temporary files, including those
+   * that they have not read, when the consumer closes them early. */
+  @Test void testCloseEarlyDeletesFiles() {
+    final Set<String> before = spillFiles();
+    final SpillBudget budget = new SpillBudget(40);
+    final DataContext root = new BudgetDataContext(budget);
+    final Enumerable<List<Integer>> rows = rows(1_000, 300, 0);
+    final List<Enumerable<?>> enumerables =
+        Arrays.asList(
+            SpillingEnumerables.orderBy(root, rows, r -> r.get(0), null),
+            SpillingEnumerables.groupBy(root, rows, r -> r.get(0), () -> 0,
+                (sum, r) -> sum + r.get(1), (key, sum) -> key + ":" + sum,
+                null),
+            SpillingEnumerables.hashJoin(root, rows, rows(600, 400, 19),
+                r -> r.get(0), r -> r.get(0), (r0, r1) -> r0.get(1),
+                null, false, false, null, false));
+    for (Enumerable<?> enumerable : enumerables) {
+      try (Enumerator<?> enumerator = enumerable.enumerator()) {
+        assertThat(enumerator.moveNext(), is(true));
+      }
+      assertThat(spillFiles(), equalTo(before));
+    }
+    assertThat(budget.getSpillFileCount(), greaterThan(0));
+    assertThat(budget.getReservedRows(), is(0L));
+  }
+
+  /** Returns the names of the spill files in the temporary directory. */
+  private static Set<String> spillFiles() {
+    final String[] names =
+        new File(System.getProperty("java.io.tmpdir"))
+            .list((dir, name) -> name.startsWith("calcite-spill"));
+    return names == null ? new HashSet<>() : new HashSet<>(Arrays.asList(names));
+  }
+
+  private static List<String> withOuter(List<String> list) {
+    return list.stream().filter(s -> !s.startsWith("null-"))
+        .collect(Collectors.toList());
+  }
+
+  private static <E extends Comparable<E>> List<E> sorted(List<E> list) {
+    final List<E> sorted = new ArrayList<>(list);
+    sorted.sort(Comparator.nullsFirst(Comparator.naturalOrder()));
+    return sorted;
+  }
+
+  /** Data context that contains only a spill budget. */
+  private static class BudgetDataContext implements DataContext {
+    private final SpillBudget budget;
+
+    BudgetDataContext(SpillBudget budget) {
+      this.budget = budget;
+    }
+
+    public SchemaPlus getRootSchema() {
+      return null;
+    }
+
+    public JavaTypeFactory getTypeFactory() {
+      return null;
+    }
+
+    public QueryProvider getQueryProvider() {
+      return null;
+    }
+
+    public Object get(String name) {
+      return name.equals(Variable.SPILL_BUDGET.camelName) ? budget : null;
+    }
+  }
+}
@@ -3607,6 +3607,24 @@ void checkPeriodPredicate(Checker checker) {
             + "(VALUES (ROW(TRUE)))");
   }
 
+  @Test void testExplainAnalyze() {
+    sql("explain analyze plan for select * from emps")
+        .ok("EXPLAIN ANALYZE PLAN INCLUDING ATTRIBUTES FOR\n"
+            + "SELECT *\n"
+            + "FROM `EMPS`");
+    sql("explain analyze plan excluding attributes as json for\n"
+        + "select * from emps")
+        .ok("EXPLAIN ANALYZE PLAN EXCLUDING ATTRIBUTES AS JSON FOR\n"
+            + "SELECT *\n"
+            + "FROM `EMPS`");
+    sql("explain analyze plan ^with^ type for select * from emps")
+        .fails("(?s).*Encountered \"with\" at .*");
+    // ANALYZE is not reserved
+    sql("select analyze from emps")
+        .ok("SELECT `ANALYZE`\n"
+            + "FROM `EMPS`");
+  }
+
   @Test void testExplainJsonFormat() {
     final String sql = "explain plan as json for select * from emps";
     TesterImpl tester = (TesterImpl) getTester();
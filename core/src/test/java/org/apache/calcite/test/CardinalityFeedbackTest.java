@@ -0,0 +1,274 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.test;
+
+import org.apache.calcite.config.CalciteConnectionProperty;
+import org.apache.calcite.jdbc.CalciteConnection;
+import org.apache.calcite.rel.RelDistributions;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.JoinRelType;
+import org.apache.calcite.rel.metadata.CardinalityFeedback;
+import org.apache.calcite.runtime.ExecutionStatistics;
+import org.apache.calcite.schema.SchemaPlus;
+import org.apache.calcite.tools.RelBuilder;
+import org.apache.calcite.util.TestUtil;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for {@link CardinalityFeedback}.
+ */
+class CardinalityFeedbackTest {
+  /** Creates a connection that records cardinality feedback, with the "hr"
+   * schema. */
+  private static Connection connect(boolean feedback) throws SQLException {
+    final Properties info = new Properties();
+    info.setProperty(
+        CalciteConnectionProperty.CARDINALITY_FEEDBACK.camelName(),
+        Boolean.toString(feedback));
+    final Connection connection =
+        DriverManager.getConnection("jdbc:calcite:", info);
+    final SchemaPlus rootSchema =
+        connection.unwrap(CalciteConnection.class).getRootSchema();
+    CalciteAssert.addSchema(rootSchema, CalciteAssert.SchemaSpec.HR);
+    return connection;
+  }
+
+  private static String query(Connection connection, String sql)
+      throws SQLException {
+    try (Statement statement = connection.createStatement();
+         ResultSet resultSet = statement.executeQuery(sql)) {
+      return CalciteAssert.toString(resultSet);
+    }
+  }
+
+  private static String explain(Connection connection, String sql)
+      throws SQLException {
+    return query(connection,
+        "explain plan including all attributes for " + sql);
+  }
+
+  @Test void testFilter() throws SQLException {
+    final String sql = "select \"name\" from \"hr\".\"emps\"\n"
+        + "where \"deptno\" = 10";
+    try (Connection connection = connect(true)) {
+      final CardinalityFeedback feedback =
+          connection.unwrap(CardinalityFeedback.class);
+      assertThat(feedback.size(), is(0));
+      assertThat(explain(connection, sql),
+          containsString("EnumerableTableScan(table=[[hr, emps]]): "
+              + "rowcount = 100.0"));
+
+      // After the query has run, the planner knows how many rows the scan
+      // and the filter return
+      query(connection, sql);
+      assertThat(feedback.size(), is(2));
+      final String plan = explain(connection, sql);
+      assertThat(plan, containsString("$condition=[$t7]): rowcount = 3.0"));
+      assertThat(plan,
+          containsString("EnumerableTableScan(table=[[hr, emps]]): "
+              + "rowcount = 4.0"));
+    }
+  }
+
+  /** Tests that a filter is matched after it has been written differently,
+   * and combined with another filter. */
+  @Test void testEquivalentFilter() throws SQLException {
+    try (Connection connection = connect(true)) {
+      query(connection, "select * from \"hr\".\"emps\"\n"
+          + "where \"salary\" > 8000 and \"deptno\" = 10");
+      final String plan = explain(connection,
+          "select \"empid\" from (\n"
+              + "  select * from \"hr\".\"emps\" where \"deptno\" = 10)\n"
+              + "where \"salary\" > 8000");
+      assertThat(plan, containsString("$condition=[$t10]): rowcount = 2.0"));
+    }
+  }
+
+  /** Tests that a join is matched after its inputs have been swapped. */
+  @Test void testJoin() throws SQLException {
+    final String sql = "select e.\"name\", d.\"name\"\n"
+        + "from \"hr\".\"emps\" as e\n"
+        + "join \"hr\".\"depts\" as d on e.\"deptno\" = d.\"deptno\"";
+    try (Connection connection = connect(true)) {
+      query(connection, sql);
+      final String plan = explain(connection, sql);
+      assertThat(plan,
+          containsString("EnumerableHashJoin(condition=[=($0, $2)], "
+              + "joinType=[inner]): rowcount = 3.0"));
+    }
+  }
+
+  /** Tests that a filter on top of a join is matched after the inputs of
+   * the join have been swapped, and only if it filters the same column. */
+  @Test void testFilterOnSwappedJoin() {
+    final RelBuilder builder =
+        RelBuilder.create(RelBuilderTest.config().build());
+    final RelNode empDept = builder.scan("EMP")
+        .scan("DEPT")
+        .join(JoinRelType.INNER, "DEPTNO")
+        .filter(builder.equals(builder.field(0), builder.literal(7369)))
+        .build();
+    final ExecutionStatistics statistics = new ExecutionStatistics();
+    final ExecutionStatistics.OperatorStatistics operator =
+        statistics.operator(empDept.getId());
+    operator.opened();
+    operator.addRows(1);
+    operator.finished();
+    final CardinalityFeedback feedback = new CardinalityFeedback();
+    feedback.record(empDept, statistics);
+    assertThat(feedback.getRowCount(empDept), is(1D));
+
+    // In "DEPT join EMP", EMP.EMPNO is field 3
+    final RelNode deptEmp = builder.scan("DEPT")
+        .scan("EMP")
+        .join(JoinRelType.INNER, "DEPTNO")
+        .filter(builder.equals(builder.field(3), builder.literal(7369)))
+        .build();
+    assertThat(feedback.getRowCount(deptEmp), is(1D));
+
+    // Field 0 is DEPT.DEPTNO, a different column
+    final RelNode deptEmp0 = builder.scan("DEPT")
+        .scan("EMP")
+        .join(JoinRelType.INNER, "DEPTNO")
+        .filter(builder.equals(builder.field(0), builder.literal(7369)))
+        .build();
+    assertThat(feedback.getRowCount(deptEmp0), nullValue());
+  }
+
+  /** Tests that the operators below an exchange, which start once per
+   * partition, record the rows of all partitions, and that the other input
+   * of a join, which every partition reads in full, records the rows of one
+   * partition. */
+  @Test void testExchange() {
+    final RelBuilder builder =
+        RelBuilder.create(RelBuilderTest.config().build());
+    final RelNode emp = builder.scan("EMP").build();
+    final RelNode dept = builder.scan("DEPT").build();
+    final RelNode exchange = builder.push(emp)
+        .push(dept)
+        .join(JoinRelType.INNER, "DEPTNO")
+        .exchange(RelDistributions.SINGLETON)
+        .build();
+    final RelNode join = exchange.getInput(0);
+
+    // The exchange starts once and runs 4 partitions. Each partition reads
+    // part of EMP, and all 4 rows of DEPT.
+    final ExecutionStatistics statistics = new ExecutionStatistics();
+    addStatistics(statistics, exchange, 1, 14);
+    addStatistics(statistics, join, 4, 14);
+    addStatistics(statistics, emp, 4, 14);
+    addStatistics(statistics, dept, 4, 16);
+    final CardinalityFeedback feedback = new CardinalityFeedback();
+    feedback.record(exchange, statistics);
+    assertThat(feedback.getRowCount(exchange), is(14D));
+    assertThat(feedback.getRowCount(join), is(14D));
+    assertThat(feedback.getRowCount(emp), is(14D));
+    assertThat(feedback.getRowCount(dept), is(4D));
+  }
+
+  /** Records that a relational expression started {@code openCount} times,
+   * read all of its input each time, and produced {@code rowCount} rows in
+   * total. */
+  private static void addStatistics(ExecutionStatistics statistics,
+      RelNode rel, int openCount, long rowCount) {
+    final ExecutionStatistics.OperatorStatistics operator =
+        statistics.operator(rel.getId());
+    for (int i = 0; i < openCount; i++) {
+      operator.opened();
+      operator.finished();
+    }
+    operator.addRows(rowCount);
+  }
+
+  /** Tests that a filter that runs in several partitions records the rows
+   * of all partitions. */
+  @Test void testPartitioned() {
+    final String sql = "select \"store_id\", count(*) as c\n"
+        + "from \"foodmart2\".\"sales_fact_1997\"\n"
+        + "where \"store_id\" < 4\n"
+        + "group by \"store_id\"";
+    CalciteAssert.that()
+        .with(CalciteAssert.Config.FOODMART_CLONE)
+        .with(CalciteConnectionProperty.PARALLELISM, 4)
+        .with(CalciteConnectionProperty.CARDINALITY_FEEDBACK, true)
+        .doWithConnection(connection -> {
+          try {
+            assertThat(explain(connection, sql),
+                containsString("EnumerableExchange"));
+            query(connection, sql);
+            // 1,380 rows for store 2 and 7,876 rows for store 3
+            assertThat(explain(connection, sql),
+                containsString("rowcount = 9256.0"));
+          } catch (SQLException e) {
+            throw TestUtil.rethrow(e);
+          }
+        });
+  }
+
+  /** Tests that {@code EXPLAIN ANALYZE PLAN} records counts. */
+  @Test void testExplainAnalyze() throws SQLException {
+    final String sql = "select \"name\" from \"hr\".\"emps\"\n"
+        + "where \"deptno\" = 10";
+    try (Connection connection = connect(true)) {
+      query(connection, "explain analyze plan for " + sql);
+      assertThat(explain(connection, sql),
+          containsString("$condition=[$t7]): rowcount = 3.0"));
+    }
+  }
+
+  /** Tests that an operator that did not read all of its input does not
+   * record its count. */
+  @Test void testPartialRead() throws SQLException {
+    try (Connection connection = connect(true)) {
+      try (Statement statement = connection.createStatement();
+           ResultSet resultSet = statement.executeQuery(
+               "select * from \"hr\".\"emps\" where \"deptno\" = 10")) {
+        assertThat(resultSet.next(), is(true));
+      }
+      final CardinalityFeedback feedback =
+          connection.unwrap(CardinalityFeedback.class);
+      assertThat(feedback.size(), is(0));
+    }
+  }
+
+  @Test void testDisabled() throws SQLException {
+    try (Connection connection = connect(false)) {
+      final String sql = "select \"name\" from \"hr\".\"emps\"\n"
+          + "where \"deptno\" = 10";
+      query(connection, sql);
+      assertThat(explain(connection, sql),
+          containsString("EnumerableTableScan(table=[[hr, emps]]): "
+              + "rowcount = 100.0"));
+      assertThrows(SQLException.class,
+          () -> connection.unwrap(CardinalityFeedback.class));
+    }
+  }
+}
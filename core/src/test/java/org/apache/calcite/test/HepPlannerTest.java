@@ -16,8 +16,10 @@
  */
 package org.apache.calcite.test;
 
+import org.apache.calcite.plan.Contexts;
 import org.apache.calcite.plan.RelOptListener;
 import org.apache.calcite.plan.RelOptMaterialization;
+import org.apache.calcite.plan.RelOptProfiler;
 import org.apache.calcite.plan.hep.HepMatchOrder;
 import org.apache.calcite.plan.hep.HepPlanner;
 import org.apache.calcite.plan.hep.HepProgram;
@@ -324,6 +326,35 @@ private void assertIncludesExactlyOnce(String message, String digest, String sub
     assertEquals(planner.getMaterializations().size(), 0);
   }
 
+  /** Tests that a profiler counts the same rule calls as a listener, and
+   * samples the graph every few rule calls. */
+  @Test void testProfiler() {
+    final HepProgramBuilder programBuilder = HepProgram.builder();
+    programBuilder.addMatchOrder(HepMatchOrder.DEPTH_FIRST);
+    programBuilder.addRuleInstance(ReduceExpressionsRule.FILTER_INSTANCE);
+    programBuilder.addRuleInstance(ReduceExpressionsRule.PROJECT_INSTANCE);
+
+    final RelOptProfiler profiler = new RelOptProfiler(10);
+    final HepTestListener listener = new HepTestListener(0);
+    HepPlanner planner =
+        new HepPlanner(programBuilder.build(), Contexts.of(profiler));
+    planner.addListener(listener);
+    planner.setRoot(tester.convertSqlToRel(COMPLEX_UNION_TREE).rel);
+    planner.findBestExp();
+
+    assertThat(profiler.getRunCount(), is(1L));
+    long fires = 0;
+    for (RelOptProfiler.RuleStatistics statistics
+        : profiler.getRuleStatistics()) {
+      assertThat(statistics.getAttempts() >= statistics.getFires(), is(true));
+      assertThat(statistics.getFires() >= statistics.getEmptyFires(),
+          is(true));
+      fires += statistics.getFires();
+    }
+    assertThat(fires, is(listener.getApplyTimes()));
+    assertThat((long) profiler.getMemoSamples().size(), is(fires / 10 + 1));
+  }
+
   private long checkRuleApplyCount(HepMatchOrder matchOrder) {
     final HepProgramBuilder programBuilder = HepProgram.builder();
     programBuilder.addMatchOrder(matchOrder);
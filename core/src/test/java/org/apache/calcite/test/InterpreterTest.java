@@ -19,16 +19,27 @@
 import org.apache.calcite.DataContext;
 import org.apache.calcite.adapter.java.JavaTypeFactory;
 import org.apache.calcite.interpreter.Interpreter;
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Enumerator;
 import org.apache.calcite.linq4j.QueryProvider;
 import org.apache.calcite.plan.hep.HepPlanner;
 import org.apache.calcite.plan.hep.HepProgram;
 import org.apache.calcite.plan.hep.HepProgramBuilder;
 import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.RelRoot;
+import org.apache.calcite.rel.RelVisitor;
+import org.apache.calcite.rel.core.Filter;
 import org.apache.calcite.rel.rules.SemiJoinRule;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeFactory;
+import org.apache.calcite.runtime.ExecutionStatistics;
+import org.apache.calcite.schema.ScannableTable;
 import org.apache.calcite.schema.SchemaPlus;
+import org.apache.calcite.schema.impl.AbstractTable;
 import org.apache.calcite.sql.SqlNode;
 import org.apache.calcite.sql.parser.SqlParser;
+import org.apache.calcite.sql.type.SqlTypeName;
 import org.apache.calcite.tools.FrameworkConfig;
 import org.apache.calcite.tools.Frameworks;
 import org.apache.calcite.tools.Planner;
@@ -41,9 +52,11 @@
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.fail;
 
 /**
  * Unit tests for {@link org.apache.calcite.interpreter.Interpreter}.
@@ -52,6 +65,9 @@ class InterpreterTest {
   private SchemaPlus rootSchema;
   private Planner planner;
   private MyDataContext dataContext;
+  /** Value of {@link DataContext.Variable#INTERPRETER_BUFFER_SIZE}, or
+   * null. */
+  private Integer bufferSize;
 
   /** Implementation of {@link DataContext} for executing queries without a
    * connection. */
@@ -75,6 +91,9 @@ public QueryProvider getQueryProvider() {
     }
 
     public Object get(String name) {
+      if (name.equals(DataContext.Variable.INTERPRETER_BUFFER_SIZE.camelName)) {
+        return bufferSize;
+      }
       return null;
     }
   }
@@ -148,6 +167,7 @@ private void reset() {
     rootSchema = null;
     planner = null;
     dataContext = null;
+    bufferSize = null;
   }
 
   /** Tests executing a simple plan using an interpreter. */
@@ -185,6 +205,37 @@ private static void assertRows(Interpreter interpreter,
     assertThat(list, equalTo(expected));
   }
 
+  /** Tests that when an interpreter gathers statistics, identical subtrees
+   * of the plan each record their own statistics. */
+  @Test void testStatisticsOfIdenticalSubtrees() throws Exception {
+    final String sql = "select x from (values (1), (2), (3)) as t(x)\n"
+        + "where x > 1\n"
+        + "union all\n"
+        + "select x from (values (1), (2), (3)) as t(x)\n"
+        + "where x > 1";
+    final RelNode rel =
+        planner.rel(planner.validate(planner.parse(sql))).rel;
+    final List<Filter> filters = new ArrayList<>();
+    new RelVisitor() {
+      @Override public void visit(RelNode node, int ordinal,
+          RelNode parent) {
+        if (node instanceof Filter) {
+          filters.add((Filter) node);
+        }
+        super.visit(node, ordinal, parent);
+      }
+    }.go(rel);
+    assertThat(filters.size(), equalTo(2));
+
+    final ExecutionStatistics statistics = new ExecutionStatistics();
+    final Interpreter interpreter =
+        new Interpreter(statistics.wrap(dataContext), rel);
+    assertRows(interpreter, true, "[2]", "[2]", "[3]", "[3]");
+    for (Filter filter : filters) {
+      assertThat(statistics.get(filter.getId()).getRowCount(), equalTo(2L));
+    }
+  }
+
   /** Tests executing a simple plan using an interpreter. */
   @Test void testInterpretTable() throws Exception {
     sql("select * from \"hr\".\"emps\" order by \"empid\"")
@@ -489,4 +540,97 @@ private static void assertRows(Interpreter interpreter,
       assertThat(e.getMessage(), equalTo("NULL value for unnest."));
     }
   }
+
+  /** Tests a pipelined interpreter, whose nodes run concurrently and are
+   * connected by bounded queues. */
+  @Test void testInterpretPipelined() throws Exception {
+    bufferSize = 1;
+    rootSchema.add("beatles", new ScannableTableTest.BeatlesTable());
+    sql("select \"j\", count(*) from \"beatles\"\n"
+        + "where \"i\" < 6 group by \"j\" order by \"j\"")
+        .returnsRows("[John, 1]", "[Paul, 1]", "[Ringo, 1]");
+
+    reset();
+    final String sql = "select * from\n"
+        + "(select x, y from (values (1, 'a'), (2, 'b'), (3, 'c')) as t(x, y)) t\n"
+        + "full join\n"
+        + "(select x, y from (values (1, 'd'), (2, 'c'), (4, 'x')) as t2(x, y)) t2\n"
+        + "on t.x = t2.x\n"
+        + "union all\n"
+        + "select 5, 'e', 6, 'f' from (values 1)";
+    sql(sql).returnsRowsUnordered(
+        "[1, a, 1, d]",
+        "[2, b, 2, c]",
+        "[3, c, null, null]",
+        "[null, null, 4, x]",
+        "[5, e, 6, f]");
+  }
+
+  /** Tests that a pipelined interpreter returns rows before its input is
+   * exhausted, and that closing the enumerator stops reading the input. If
+   * nodes materialized their output, this query would not finish. */
+  @Test void testInterpretPipelinedInfinite() throws Exception {
+    bufferSize = 10;
+    final InfiniteTable table = new InfiniteTable();
+    rootSchema.add("infinite", table);
+    sql("select \"i\" * 2 from \"infinite\" where \"i\" > 5 limit 3")
+        .returnsRows("[12]", "[14]", "[16]");
+    for (int i = 0; !table.closed.get(); i++) {
+      assertThat("scan was not closed", i < 1000);
+      Thread.sleep(10);
+    }
+  }
+
+  /** Tests that an error in a pipelined node is thrown to the consumer. */
+  @Test void testInterpretPipelinedError() throws Exception {
+    bufferSize = 2;
+    final String sql = "select 10 / x from (values 2, 1, 0) as t(x)\n"
+        + "union all\n"
+        + "select 1 from (values 1)";
+    try {
+      sql(sql).returnsRows();
+      fail("expected error");
+    } catch (ArithmeticException e) {
+      assertThat(e.getMessage(), equalTo("/ by zero"));
+    }
+  }
+
+  /** Table that has an infinite number of rows. */
+  private static class InfiniteTable extends AbstractTable
+      implements ScannableTable {
+    final AtomicBoolean closed = new AtomicBoolean();
+
+    public RelDataType getRowType(RelDataTypeFactory typeFactory) {
+      return typeFactory.builder()
+          .add("i", SqlTypeName.INTEGER)
+          .build();
+    }
+
+    public Enumerable<Object[]> scan(DataContext root) {
+      return new AbstractEnumerable<Object[]>() {
+        public Enumerator<Object[]> enumerator() {
+          return new Enumerator<Object[]>() {
+            int i = -1;
+
+            public Object[] current() {
+              return new Object[] {i};
+            }
+
+            public boolean moveNext() {
+              ++i;
+              return true;
+            }
+
+            public void reset() {
+              i = -1;
+            }
+
+            public void close() {
+              closed.set(true);
+            }
+          };
+        }
+      };
+    }
+  }
 }
@@ -16,27 +16,63 @@
  */
 package org.apache.calcite.test;
 
+import org.apache.calcite.adapter.enumerable.EnumerableKeyPushDownJoinRule;
+import org.apache.calcite.adapter.java.JavaTypeFactory;
+import org.apache.calcite.adapter.jdbc.JdbcMetadataCache;
+import org.apache.calcite.adapter.jdbc.JdbcSchema;
 import org.apache.calcite.config.Lex;
+import org.apache.calcite.jdbc.JavaTypeFactoryImpl;
+import org.apache.calcite.plan.RelOptPlanner;
+import org.apache.calcite.rel.core.RelFactories;
+import org.apache.calcite.runtime.Hook;
+import org.apache.calcite.schema.Schema;
+import org.apache.calcite.schema.Table;
+import org.apache.calcite.sql.SqlDialect;
+import org.apache.calcite.sql.SqlDialectFactoryImpl;
 import org.apache.calcite.test.CalciteAssert.AssertThat;
 import org.apache.calcite.test.CalciteAssert.DatabaseInstance;
+import org.apache.calcite.test.enumerable.EnumerableKeyPushDownJoinTest;
 import org.apache.calcite.util.TestUtil;
 
+import org.apache.commons.dbcp2.BasicDataSource;
 import org.hsqldb.jdbcDriver;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.File;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import javax.sql.DataSource;
 
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.hasItems;
+import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * Tests for the {@code org.apache.calcite.adapter.jdbc} package.
@@ -193,6 +229,523 @@ class JdbcAdapterTest {
             + "ORDER BY \"EMPNO\" NULLS LAST");
   }
 
+  /** Tests a JDBC schema that has a fetch size and streams its results. */
+  @Test void testFetchSizeStreaming() {
+    final String model = JdbcTest.SCOTT_MODEL
+        .replace("jdbcSchema: ",
+            "fetchSize: 2,\n"
+                + "       streaming: true,\n"
+                + "       jdbcSchema: ");
+    CalciteAssert.model(model)
+        .query("select empno, ename, sal\n"
+            + "from scott.emp\n"
+            + "where deptno = 10")
+        .planContains("setFetchOptions(2, true)")
+        .planContains("getString(2)")
+        .planContains("getBigDecimal(3)")
+        .returnsUnordered("EMPNO=7782; ENAME=CLARK; SAL=2450.00",
+            "EMPNO=7839; ENAME=KING; SAL=5000.00",
+            "EMPNO=7934; ENAME=MILLER; SAL=1300.00");
+  }
+
+  /** Tests a JDBC table whose scans are split into partitions, whose bounds
+   * are computed from the minimum and maximum values of a column. */
+  @Test void testPartitionedScan() {
+    final String model = JdbcTest.SCOTT_MODEL
+        .replace("jdbcSchema: ",
+            "partitions: {EMP: {column: 'EMPNO', count: 3}},\n"
+                + "       jdbcSchema: ");
+    final List<String> sqls = new ArrayList<>();
+    CalciteAssert.model(model)
+        .query("select empno, ename\n"
+            + "from scott.emp\n"
+            + "where deptno = 20")
+        .withHook(Hook.QUERY_PLAN, (Consumer<String>) sqls::add)
+        .returnsUnordered("EMPNO=7369; ENAME=SMITH",
+            "EMPNO=7566; ENAME=JONES",
+            "EMPNO=7788; ENAME=SCOTT",
+            "EMPNO=7876; ENAME=ADAMS",
+            "EMPNO=7902; ENAME=FORD");
+    assertThat(sqls,
+        is(
+            Arrays.asList("SELECT \"EMPNO\", \"ENAME\"\n"
+                    + "FROM \"SCOTT\".\"EMP\"\n"
+                    + "WHERE \"EMPNO\" < 7557 "
+                    + "AND CAST(\"DEPTNO\" AS INTEGER) = 20",
+                "SELECT \"EMPNO\", \"ENAME\"\n"
+                    + "FROM \"SCOTT\".\"EMP\"\n"
+                    + "WHERE \"EMPNO\" >= 7557 "
+                    + "AND (\"EMPNO\" < 7745 "
+                    + "AND CAST(\"DEPTNO\" AS INTEGER) = 20)",
+                "SELECT \"EMPNO\", \"ENAME\"\n"
+                    + "FROM \"SCOTT\".\"EMP\"\n"
+                    + "WHERE \"EMPNO\" >= 7745 "
+                    + "AND CAST(\"DEPTNO\" AS INTEGER) = 20")));
+  }
+
+  /** Tests a JDBC table whose scans are split into partitions by explicit
+   * bounds on a DATE column. Rows whose partition column is null belong to
+   * the first partition. */
+  @Test void testPartitionedScanDateBounds() {
+    final String model = JdbcTest.SCOTT_MODEL
+        .replace("jdbcSchema: ",
+            "partitions: {\n"
+                + "         EMP: {\n"
+                + "           column: 'HIREDATE',\n"
+                + "           bounds: ['1981-06-01', '1982-01-01']\n"
+                + "         }\n"
+                + "       },\n"
+                + "       jdbcSchema: ");
+    final List<String> sqls = new ArrayList<>();
+    CalciteAssert.model(model)
+        .query("select ename, hiredate\n"
+            + "from scott.emp\n"
+            + "where deptno = 10")
+        .withHook(Hook.QUERY_PLAN, (Consumer<String>) sqls::add)
+        .returnsUnordered("ENAME=CLARK; HIREDATE=1981-06-09",
+            "ENAME=KING; HIREDATE=1981-11-17",
+            "ENAME=MILLER; HIREDATE=1982-01-23");
+    assertThat(sqls.size(), is(3));
+    assertThat(sqls.get(0),
+        is("SELECT \"ENAME\", \"HIREDATE\"\n"
+            + "FROM \"SCOTT\".\"EMP\"\n"
+            + "WHERE (\"HIREDATE\" < DATE '1981-06-01' "
+            + "OR \"HIREDATE\" IS NULL) "
+            + "AND CAST(\"DEPTNO\" AS INTEGER) = 10"));
+  }
+
+  /** Tests a JDBC table whose scans are split into partitions on a DATE
+   * column, whose bounds are computed from the minimum and maximum values
+   * of the column. The values are read as dates whatever class the driver
+   * uses for DATE values. */
+  @Test void testPartitionedScanDateComputedBounds() {
+    final String model = JdbcTest.SCOTT_MODEL
+        .replace("jdbcSchema: ",
+            "partitions: {EMP: {column: 'HIREDATE', count: 2}},\n"
+                + "       jdbcSchema: ");
+    final List<String> sqls = new ArrayList<>();
+    CalciteAssert.model(model)
+        .query("select ename, hiredate\n"
+            + "from scott.emp\n"
+            + "where deptno = 20")
+        .withHook(Hook.QUERY_PLAN, (Consumer<String>) sqls::add)
+        .returnsUnordered("ENAME=SMITH; HIREDATE=1980-12-17",
+            "ENAME=JONES; HIREDATE=1981-02-04",
+            "ENAME=SCOTT; HIREDATE=1987-04-19",
+            "ENAME=ADAMS; HIREDATE=1987-05-23",
+            "ENAME=FORD; HIREDATE=1981-12-03");
+    assertThat(sqls,
+        is(
+            Arrays.asList("SELECT \"ENAME\", \"HIREDATE\"\n"
+                    + "FROM \"SCOTT\".\"EMP\"\n"
+                    + "WHERE (\"HIREDATE\" < DATE '1984-03-05' "
+                    + "OR \"HIREDATE\" IS NULL) "
+                    + "AND CAST(\"DEPTNO\" AS INTEGER) = 20",
+                "SELECT \"ENAME\", \"HIREDATE\"\n"
+                    + "FROM \"SCOTT\".\"EMP\"\n"
+                    + "WHERE \"HIREDATE\" >= DATE '1984-03-05' "
+                    + "AND CAST(\"DEPTNO\" AS INTEGER) = 20")));
+  }
+
+  /** Tests that explicit partition bounds must be in strictly ascending
+   * order. */
+  @Test void testPartitionedScanBoundsNotAscending() {
+    final String model = JdbcTest.SCOTT_MODEL
+        .replace("jdbcSchema: ",
+            "partitions: {\n"
+                + "         EMP: {\n"
+                + "           column: 'HIREDATE',\n"
+                + "           bounds: ['1982-01-01', '1981-06-01']\n"
+                + "         }\n"
+                + "       },\n"
+                + "       jdbcSchema: ");
+    CalciteAssert.model(model)
+        .query("select ename from scott.emp")
+        .throws_("bounds of partitions on column 'HIREDATE' must be in "
+            + "strictly ascending order: [1982-01-01, 1981-06-01]");
+  }
+
+  /** Tests that a partitioned query can be read in full while the partitions
+   * of another partitioned query are waiting for their rows to be read.
+   * There are more partitions between the two queries than
+   * {@link org.apache.calcite.config.CalciteSystemProperty#JDBC_PARTITION_CONCURRENCY},
+   * and more than the schema's pool has connections, and each query has more
+   * rows than its enumerator buffers. If the tasks of the first query held
+   * their threads in a bounded pool, or their connections, while waiting for
+   * the first query's rows to be read, the second query would never get
+   * them. */
+  @Test @Timeout(60) void testPartitionedScansInterleaved() {
+    final String model = JdbcTest.FOODMART_MODEL
+        .replace("jdbcSchema: ",
+            "poolSize: 2,\n"
+                + "       partitions: {\n"
+                + "         sales_fact_1997: {column: 'product_id', count: 20}\n"
+                + "       },\n"
+                + "       jdbcSchema: ");
+    final String sql = "select \"product_id\", \"unit_sales\"\n"
+        + "from \"sales_fact_1997\"";
+    CalciteAssert.model(model)
+        .doWithConnection(connection -> {
+          try (Statement statement1 = connection.createStatement();
+               Statement statement2 = connection.createStatement();
+               ResultSet resultSet1 = statement1.executeQuery(sql)) {
+            assertTrue(resultSet1.next());
+            int rowCount = 0;
+            try (ResultSet resultSet2 = statement2.executeQuery(sql)) {
+              while (resultSet2.next()) {
+                ++rowCount;
+              }
+            }
+            assertThat(rowCount, is(86837));
+            // A query that the planner has not seen needs connections to
+            // read metadata, as well as to execute
+            try (ResultSet resultSet3 = statement2.executeQuery(
+                "select count(*) from \"product\"")) {
+              assertTrue(resultSet3.next());
+              assertThat(resultSet3.getLong(1), is(1560L));
+            }
+            rowCount = 1;
+            while (resultSet1.next()) {
+              ++rowCount;
+            }
+            assertThat(rowCount, is(86837));
+          } catch (SQLException e) {
+            throw TestUtil.rethrow(e);
+          }
+        });
+  }
+
+  /** Tests a JDBC schema that sends literals in comparisons to the database
+   * as parameters. */
+  @Test void testParameterize() {
+    final String model = JdbcTest.SCOTT_MODEL
+        .replace("jdbcSchema: ",
+            "parameterize: true,\n"
+                + "       poolPreparedStatements: true,\n"
+                + "       jdbcSchema: ");
+    CalciteAssert.model(model)
+        .query("select empno, ename\n"
+            + "from scott.emp\n"
+            + "where deptno = 20 and ename <> 'SMITH'")
+        .planHasSql("SELECT \"EMPNO\", \"ENAME\"\n"
+            + "FROM \"SCOTT\".\"EMP\"\n"
+            + "WHERE CAST(\"DEPTNO\" AS INTEGER) = ? AND \"ENAME\" <> ?")
+        .returnsUnordered("EMPNO=7566; ENAME=JONES",
+            "EMPNO=7788; ENAME=SCOTT",
+            "EMPNO=7876; ENAME=ADAMS",
+            "EMPNO=7902; ENAME=FORD");
+  }
+
+  /** Tests a JDBC schema that parameterizes literals, executing a query
+   * that also has its own dynamic parameters. */
+  @Test void testParameterizeWithDynamicParam() throws Exception {
+    final String model = JdbcTest.SCOTT_MODEL
+        .replace("jdbcSchema: ", "parameterize: true,\n"
+            + "       jdbcSchema: ");
+    CalciteAssert.model(model)
+        .doWithConnection(connection -> {
+          final String sql = "select ename\n"
+              + "from scott.emp\n"
+              + "where deptno = ? and sal > 2000 and job <> ?";
+          try (PreparedStatement statement =
+                   connection.prepareStatement(sql)) {
+            statement.setInt(1, 20);
+            statement.setString(2, "CLERK");
+            final ResultSet resultSet = statement.executeQuery();
+            assertThat(CalciteAssert.toString(resultSet),
+                is("ENAME=JONES\n"
+                    + "ENAME=SCOTT\n"
+                    + "ENAME=FORD\n"));
+          } catch (SQLException e) {
+            throw TestUtil.rethrow(e);
+          }
+        });
+  }
+
+  /** Tests that a data source can be created with a given pool size and
+   * prepared statement pooling, and that it is distinct from a data source
+   * with the default options. */
+  @Test void testPooledDataSource() {
+    final ConnectionSpec scott = JdbcTest.SCOTT;
+    final DataSource dataSource =
+        JdbcSchema.dataSource(scott.url, scott.driver, scott.username,
+            scott.password, 3, true);
+    assertThat(dataSource, instanceOf(BasicDataSource.class));
+    final BasicDataSource basicDataSource = (BasicDataSource) dataSource;
+    assertThat(basicDataSource.getMaxTotal(), is(3));
+    assertThat(basicDataSource.isPoolPreparedStatements(), is(true));
+    assertThat(
+        JdbcSchema.dataSource(scott.url, scott.driver, scott.username,
+            scott.password, 3, true),
+        sameInstance(dataSource));
+    assertThat(
+        JdbcSchema.dataSource(scott.url, scott.driver, scott.username,
+            scott.password),
+        not(sameInstance(dataSource)));
+  }
+
+  /** Tests that a JDBC schema with a metadata cache resolves tables one at a
+   * time, shares metadata with other schemas on the same data source, and
+   * persists it to a file. */
+  @Test void testMetadataCache(@TempDir File directory) throws Exception {
+    final AtomicInteger connectionCount = new AtomicInteger();
+    final DataSource dataSource = countingDataSource(connectionCount);
+    final SqlDialect dialect =
+        JdbcSchema.createDialect(SqlDialectFactoryImpl.INSTANCE, dataSource);
+    final File file = new File(directory, "scott.json");
+    final JdbcMetadataCache cache =
+        JdbcMetadataCache.of(dataSource, null, "SCOTT", 60_000, file);
+    assertThat(JdbcMetadataCache.of(dataSource, null, "SCOTT", 60_000, file),
+        sameInstance(cache));
+    final JavaTypeFactory typeFactory = new JavaTypeFactoryImpl();
+
+    // Resolving a table reads the definition of that table only
+    connectionCount.set(0);
+    final JdbcSchema schema =
+        new JdbcSchema(dataSource, dialect, null, null, "SCOTT")
+            .withMetadataCache(cache);
+    final Table emp = schema.getTable("EMP");
+    assertThat(emp.getRowType(typeFactory).getFieldCount(), is(8));
+    assertThat(connectionCount.get(), is(2));
+    assertThat(schema.getTable("NO_SUCH_TABLE"), nullValue());
+    assertThat(schema.getTable("NO_SUCH_TABLE"), nullValue());
+    assertThat(connectionCount.get(), is(3));
+    assertThat(schema.getTableNames(), hasItems("DEPT", "EMP"));
+    assertThat(schema.getTableNames(), hasItems("DEPT", "EMP"));
+    assertThat(connectionCount.get(), is(4));
+
+    // Another schema on the same data source re-uses the metadata
+    final JdbcSchema schema2 =
+        new JdbcSchema(dataSource, dialect, null, null, "SCOTT")
+            .withMetadataCache(
+                JdbcMetadataCache.of(dataSource, null, "SCOTT", 60_000, file));
+    assertThat(schema2.getTable("EMP").getRowType(typeFactory).toString(),
+        is(emp.getRowType(typeFactory).toString()));
+    assertThat(schema2.getTable("DEPT"), notNullValue());
+    assertThat(connectionCount.get(), is(4));
+
+    // A new cache starts with the contents of the file
+    cache.flush();
+    assertThat(file.exists(), is(true));
+    final JdbcSchema schema3 =
+        new JdbcSchema(dataSource, dialect, null, null, "SCOTT")
+            .withMetadataCache(
+                JdbcMetadataCache.of(dataSource, null, "SCOTT", 120_000,
+                    file));
+    assertThat(schema3.getTable("EMP").getRowType(typeFactory).toString(),
+        is(emp.getRowType(typeFactory).toString()));
+    assertThat(schema3.getTableNames(), hasItems("DEPT", "EMP"));
+    assertThat(connectionCount.get(), is(4));
+  }
+
+  /** Tests that entries in a metadata cache expire. */
+  @Test void testMetadataCacheExpiry() throws Exception {
+    final AtomicInteger connectionCount = new AtomicInteger();
+    final DataSource dataSource = countingDataSource(connectionCount);
+    final SqlDialect dialect =
+        JdbcSchema.createDialect(SqlDialectFactoryImpl.INSTANCE, dataSource);
+    final JdbcSchema schema =
+        new JdbcSchema(dataSource, dialect, null, null, "SCOTT")
+            .withMetadataCache(
+                JdbcMetadataCache.of(dataSource, null, "SCOTT", 1, null));
+    connectionCount.set(0);
+    assertThat(schema.getTable("DEPT"), notNullValue());
+    Thread.sleep(10);
+    assertThat(schema.getTable("DEPT"), notNullValue());
+    assertThat(connectionCount.get(), is(2));
+  }
+
+  /** Tests that re-reading the definition of a table that has expired keeps
+   * its columns if they are still current. */
+  @Test void testMetadataCacheExpiryKeepsColumns() throws Exception {
+    final AtomicInteger connectionCount = new AtomicInteger();
+    final DataSource dataSource = countingDataSource(connectionCount);
+    final SqlDialect dialect =
+        JdbcSchema.createDialect(SqlDialectFactoryImpl.INSTANCE, dataSource);
+    final JdbcSchema schema =
+        new JdbcSchema(dataSource, dialect, null, null, "SCOTT")
+            .withMetadataCache(
+                JdbcMetadataCache.of(dataSource, null, "SCOTT", 2_000, null));
+    final JavaTypeFactory typeFactory = new JavaTypeFactoryImpl();
+    connectionCount.set(0);
+    final Table dept = schema.getTable("DEPT");
+    Thread.sleep(1_000);
+    // Columns are read a second after the table, so expire a second later
+    final String rowType = dept.getRowType(typeFactory).toString();
+    assertThat(connectionCount.get(), is(2));
+    Thread.sleep(1_200);
+    final Table dept2 = schema.getTable("DEPT");
+    assertThat(dept2, not(sameInstance(dept)));
+    assertThat(dept2.getRowType(typeFactory).toString(), is(rowType));
+    assertThat(connectionCount.get(), is(3));
+  }
+
+  /** Tests that a snapshot of a JDBC schema that has a metadata cache does
+   * not read metadata until a table is used, and keeps the tables that the
+   * schema had already resolved. */
+  @Test void testMetadataCacheSnapshot() throws Exception {
+    final AtomicInteger connectionCount = new AtomicInteger();
+    final DataSource dataSource = countingDataSource(connectionCount);
+    final SqlDialect dialect =
+        JdbcSchema.createDialect(SqlDialectFactoryImpl.INSTANCE, dataSource);
+    final JdbcSchema schema =
+        new JdbcSchema(dataSource, dialect, null, null, "SCOTT")
+            .withMetadataCache(
+                JdbcMetadataCache.of(dataSource, null, "SCOTT", 60_000, null));
+    final Table emp = schema.getTable("EMP");
+    connectionCount.set(0);
+    final Schema snapshot = schema.snapshot(null);
+    assertThat(snapshot.getTable("EMP"), sameInstance(emp));
+    assertThat(connectionCount.get(), is(0));
+    final Table dept = snapshot.getTable("DEPT");
+    assertThat(dept, notNullValue());
+    assertThat(snapshot.getTable("DEPT"), sameInstance(dept));
+    assertThat(connectionCount.get(), is(1));
+  }
+
+  /** Tests that while one schema is reading the list of tables from the
+   * database, which may be slow, another schema that shares the metadata
+   * cache can resolve a table that is already in the cache. */
+  @Test @Timeout(60) void testMetadataCacheSlowLoad() throws Exception {
+    final AtomicInteger connectionCount = new AtomicInteger();
+    final DataSource countingDataSource = countingDataSource(connectionCount);
+    final AtomicBoolean slow = new AtomicBoolean();
+    final CountDownLatch loading = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final DataSource dataSource = (DataSource) Proxy.newProxyInstance(
+        DataSource.class.getClassLoader(), new Class[] {DataSource.class},
+        (proxy, method, args) -> {
+          switch (method.getName()) {
+          case "equals":
+            return proxy == args[0];
+          case "hashCode":
+            return System.identityHashCode(proxy);
+          case "getConnection":
+            if (slow.get()) {
+              loading.countDown();
+              release.await();
+            }
+            // fall through
+          default:
+            return method.invoke(countingDataSource, args);
+          }
+        });
+    final SqlDialect dialect =
+        JdbcSchema.createDialect(SqlDialectFactoryImpl.INSTANCE, dataSource);
+    final JdbcMetadataCache cache =
+        JdbcMetadataCache.of(dataSource, null, "SCOTT", 60_000, null);
+    final JavaTypeFactory typeFactory = new JavaTypeFactoryImpl();
+    final JdbcSchema schema =
+        new JdbcSchema(dataSource, dialect, null, null, "SCOTT")
+            .withMetadataCache(cache);
+    final String empRowType =
+        schema.getTable("EMP").getRowType(typeFactory).toString();
+
+    // Start reading the list of tables; the read blocks in the database
+    slow.set(true);
+    final CompletableFuture<Set<String>> tableNames =
+        CompletableFuture.supplyAsync(schema::getTableNames);
+    loading.await();
+
+    // Meanwhile, another schema resolves EMP from the cache
+    connectionCount.set(0);
+    final JdbcSchema schema2 =
+        new JdbcSchema(dataSource, dialect, null, null, "SCOTT")
+            .withMetadataCache(cache);
+    assertThat(schema2.getTable("EMP").getRowType(typeFactory).toString(),
+        is(empRowType));
+    assertThat(connectionCount.get(), is(0));
+
+    release.countDown();
+    assertThat(tableNames.get(), hasItems("DEPT", "EMP"));
+  }
+
+  /** Returns a data source for the SCOTT database that counts the
+   * connections that it opens. */
+  private static DataSource countingDataSource(AtomicInteger connectionCount) {
+    final ConnectionSpec scott = JdbcTest.SCOTT;
+    final DataSource dataSource =
+        JdbcSchema.dataSource(scott.url, scott.driver, scott.username,
+            scott.password);
+    return (DataSource) Proxy.newProxyInstance(
+        DataSource.class.getClassLoader(), new Class[] {DataSource.class},
+        (proxy, method, args) -> {
+          switch (method.getName()) {
+          case "equals":
+            return proxy == args[0];
+          case "hashCode":
+            return System.identityHashCode(proxy);
+          case "getConnection":
+            connectionCount.incrementAndGet();
+            // fall through
+          default:
+            return method.invoke(dataSource, args);
+          }
+        });
+  }
+
+  /** Tests a JDBC schema whose model specifies a metadata cache. */
+  @Test void testMetadataCacheModel(@TempDir File directory) {
+    final File file = new File(directory, "scott.json");
+    final String model = JdbcTest.SCOTT_MODEL
+        .replace("jdbcSchema: ", "metadataCacheTtl: 60000,\n"
+            + "       metadataCacheFile: '"
+            + file.getAbsolutePath().replace("\\", "\\\\") + "',\n"
+            + "       jdbcSchema: ");
+    for (int i = 0; i < 2; i++) {
+      CalciteAssert.model(model)
+          .query("select count(*) as c from scott.emp")
+          .returns("C=14\n");
+    }
+    JdbcMetadataCache.flushAll();
+    assertThat(file.exists(), is(true));
+  }
+
+  /** Tests a join between tables in two JDBC schemas that pushes the keys of
+   * the smaller input into the query that reads the larger input. */
+  @Test void testKeyPushDownJoin() {
+    final String model = "{\n"
+        + "  version: '1.0',\n"
+        + "  schemas: [\n"
+        + JdbcTest.SCOTT_SCHEMA + ",\n"
+        + JdbcTest.SCOTT_SCHEMA.replace("name: 'SCOTT'", "name: 'SCOTT2'")
+        + "  ]\n"
+        + "}";
+    final String sql = "select d.dname, e.ename\n"
+        + "from scott.dept as d\n"
+        + "join scott2.emp as e on d.deptno = e.deptno\n";
+    final Consumer<RelOptPlanner> usingRule =
+        EnumerableKeyPushDownJoinTest.usingRule(
+            new EnumerableKeyPushDownJoinRule(RelFactories.LOGICAL_BUILDER, 2));
+    final String empSql = "SELECT *\n"
+        + "FROM (SELECT \"ENAME\", \"DEPTNO\"\n"
+        + "FROM \"SCOTT\".\"EMP\") AS \"t\"\n"
+        + "WHERE \"DEPTNO\" = ? OR (\"DEPTNO\" = ? "
+        + "OR \"DEPTNO\" >= ? AND \"DEPTNO\" <= ?)";
+
+    // Two departments; their keys are pushed as a list
+    final List<String> sqls = new ArrayList<>();
+    CalciteAssert.model(model)
+        .query(sql + "where d.dname in ('SALES', 'OPERATIONS')")
+        .withHook(Hook.PLANNER, usingRule)
+        .withHook(Hook.QUERY_PLAN, (Consumer<String>) sqls::add)
+        .explainContains("EnumerableKeyPushDownJoin")
+        .returnsUnordered("DNAME=SALES; ENAME=ALLEN",
+            "DNAME=SALES; ENAME=BLAKE",
+            "DNAME=SALES; ENAME=JAMES",
+            "DNAME=SALES; ENAME=MARTIN",
+            "DNAME=SALES; ENAME=TURNER",
+            "DNAME=SALES; ENAME=WARD");
+    assertThat(sqls, hasItems(empSql));
+
+    // Four departments; their range of keys is pushed
+    CalciteAssert.model(model)
+        .query("select count(*) as c from (" + sql + ")")
+        .withHook(Hook.PLANNER, usingRule)
+        .explainContains("EnumerableKeyPushDownJoin")
+        .returns("C=14\n");
+  }
+
   /** Test case for
    * <a href="https://issues.apache.org/jira/browse/CALCITE-3751">[CALCITE-3751]
    * JDBC adapter wrongly pushes ORDER BY into sub-query</a>. */
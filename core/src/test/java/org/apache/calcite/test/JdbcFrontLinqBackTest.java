@@ -92,8 +92,8 @@ public class JdbcFrontLinqBackTest {
         .query("select \"deptno\", sum(\"empid\") as s, count(*) as c\n"
             + "from \"hr\".\"emps\" as e\n"
             + "group by \"deptno\"")
-        .returns("deptno=20; S=200; C=1\n"
-            + "deptno=10; S=360; C=3\n");
+        .returnsUnordered("deptno=10; S=360; C=3",
+            "deptno=20; S=200; C=1");
   }
 
   /**
@@ -104,6 +104,7 @@
 import org.hsqldb.jdbcDriver;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.File;
 import java.io.IOException;
@@ -5882,6 +5883,85 @@ public CalciteConnection createConnection() throws SQLException {
             + "EXPR$1 CHAR(2) NOT NULL\n");
   }
 
+  /** Tests {@code EXPLAIN ANALYZE PLAN}, which executes a query and returns
+   * its plan, with the number of rows that each operator produced. */
+  @Test void testExplainAnalyze() {
+    final String sql = "explain analyze plan for\n"
+        + "select \"deptno\", count(*) as c\n"
+        + "from \"hr\".\"emps\"\n"
+        + "where \"salary\" > 8000\n"
+        + "group by \"deptno\"";
+    final String expected = "PLAN="
+        + "EnumerableAggregate(group=[{1}], C=[COUNT()], estimatedRows=[5.0], "
+        + "rows=[1], loops=[1], millis=[*])\n"
+        + "  EnumerableCalc(expr#0..4=[{inputs}], expr#5=[8000], "
+        + "expr#6=[>($t3, $t5)], proj#0..4=[{exprs}], $condition=[$t6], "
+        + "estimatedRows=[50.0], rows=[2], loops=[1], millis=[*])\n"
+        + "    EnumerableTableScan(table=[[hr, emps]], estimatedRows=[100.0], "
+        + "rows=[4], loops=[1], millis=[*])\n"
+        + "\n";
+    CalciteAssert.hr()
+        .query(sql)
+        .returns(checkAnalyze(expected));
+
+    // The interpreter gathers the same statistics.
+    final String expectedBindable = "PLAN="
+        + "BindableAggregate(group=[{1}], C=[COUNT()], estimatedRows=[5.0], "
+        + "rows=[1], loops=[1], millis=[*])\n"
+        + "  BindableFilter(condition=[>($3, 8000)], estimatedRows=[50.0], "
+        + "rows=[2], loops=[1], millis=[*])\n"
+        + "    BindableTableScan(table=[[hr, emps]], estimatedRows=[100.0], "
+        + "rows=[4], loops=[1], millis=[*])\n"
+        + "\n";
+    try (Hook.Closeable ignored =
+             Hook.ENABLE_BINDABLE.addThread(Hook.propertyJ(true))) {
+      CalciteAssert.hr()
+          .query(sql)
+          .returns(checkAnalyze(expectedBindable));
+    }
+  }
+
+  /** Tests {@code EXPLAIN ANALYZE PLAN} on a nested-loop join; the inner input
+   * starts once per row of the outer input. */
+  @Test void testExplainAnalyzeNestedLoopJoin() {
+    final String sql = "explain analyze plan for\n"
+        + "select d.\"name\",\n"
+        + "  (select max(\"empid\") from \"hr\".\"emps\" as e\n"
+        + "    where e.\"deptno\" < d.\"deptno\")\n"
+        + "from \"hr\".\"depts\" as d";
+    CalciteAssert.hr()
+        .query(sql)
+        .returns(resultSet -> {
+          try {
+            final String s = CalciteAssert.toString(resultSet);
+            assertThat(s,
+                containsString("EnumerableNestedLoopJoin(condition=[<($1, $2)], "
+                    + "joinType=[inner], estimatedRows=[500.0], rows=[8], "
+                    + "loops=[1], "));
+            assertThat(s,
+                containsString("EnumerableAggregate(group=[{0}], "
+                    + "estimatedRows=[10.0], rows=[12], loops=[4], "));
+          } catch (SQLException e) {
+            throw TestUtil.rethrow(e);
+          }
+        });
+  }
+
+  /** Returns a checker that compares the result of an
+   * {@code EXPLAIN ANALYZE PLAN} statement, ignoring times. */
+  private static Consumer<ResultSet> checkAnalyze(String expected) {
+    return resultSet -> {
+      try {
+        assertThat(
+            CalciteAssert.toString(resultSet)
+                .replaceAll("millis=\\[[0-9.E]+\\]", "millis=[*]"),
+            is(expected));
+      } catch (SQLException e) {
+        throw TestUtil.rethrow(e);
+      }
+    };
+  }
+
   /** Test case for bug where if two tables have different element classes
    * but those classes have identical fields, Calcite would generate code to use
    * the wrong element class; a {@link ClassCastException} would ensue. */
@@ -7019,6 +7099,86 @@ private void checkGetTimestamp(Connection con) throws SQLException {
         });
   }
 
+  /** Tests a clone schema that persists the contents of its tables in a
+   * directory, and maps them into memory when it is next used. */
+  @Test void testCloneSchemaDirectory(@TempDir File directory) {
+    final String model = "{\n"
+        + "  version: '1.0',\n"
+        + "  defaultSchema: 'SCOTT_CLONE',\n"
+        + "  schemas: [ {\n"
+        + "    name: 'SCOTT_CLONE',\n"
+        + "    type: 'custom',\n"
+        + "    factory: 'org.apache.calcite.adapter.clone.CloneSchema$Factory',\n"
+        + "    operand: {\n"
+        + "      jdbcDriver: '" + JdbcTest.SCOTT.driver + "',\n"
+        + "      jdbcUser: '" + JdbcTest.SCOTT.username + "',\n"
+        + "      jdbcPassword: '" + JdbcTest.SCOTT.password + "',\n"
+        + "      jdbcUrl: '" + JdbcTest.SCOTT.url + "',\n"
+        + "      jdbcSchema: 'SCOTT',\n"
+        + "      directory: '"
+        + directory.getAbsolutePath().replace('\\', '/') + "'\n"
+        + "   } } ]\n"
+        + "}";
+    final String sql = "select count(*) as c, sum(sal) as s,\n"
+        + "  count(comm) as cc, min(ename) as m\n"
+        + "from emp";
+    final String expected = "C=14; S=29025.00; CC=4; M=ADAMS\n";
+    final File file = new File(directory, "EMP" + CloneSchema.FILE_SUFFIX);
+    assertFalse(file.exists());
+    CalciteAssert.model(model).query(sql).returns(expected);
+    assertTrue(file.exists());
+
+    // The second time, the table is read from the file
+    final long lastModified = file.lastModified();
+    CalciteAssert.model(model).query(sql).returns(expected);
+    assertEquals(lastModified, file.lastModified());
+  }
+
+  /** Tests a clone schema whose tables evaluate filters and projects while
+   * they scan. The filters on EMPNO (the sorted column) and JOB are evaluated
+   * by the table; the filter on SAL is evaluated by the interpreter. */
+  @Test void testCloneSchemaFilterable() {
+    final String model = "{\n"
+        + "  version: '1.0',\n"
+        + "  defaultSchema: 'SCOTT_CLONE',\n"
+        + "  schemas: [ {\n"
+        + "    name: 'SCOTT_CLONE',\n"
+        + "    type: 'custom',\n"
+        + "    factory: 'org.apache.calcite.adapter.clone.CloneSchema$Factory',\n"
+        + "    operand: {\n"
+        + "      jdbcDriver: '" + JdbcTest.SCOTT.driver + "',\n"
+        + "      jdbcUser: '" + JdbcTest.SCOTT.username + "',\n"
+        + "      jdbcPassword: '" + JdbcTest.SCOTT.password + "',\n"
+        + "      jdbcUrl: '" + JdbcTest.SCOTT.url + "',\n"
+        + "      jdbcSchema: 'SCOTT',\n"
+        + "      filterable: true\n"
+        + "   } } ]\n"
+        + "}";
+    final String sql = "select ename, sal from emp\n"
+        + "where empno > 7700 and empno <= 7900 and job = 'CLERK'\n"
+        + "and sal * 2 > 2000";
+    CalciteAssert.model(model)
+        .query(sql)
+        .explainContains("PLAN=EnumerableInterpreter\n"
+            + "  BindableTableScan(table=[[SCOTT_CLONE, EMP]], "
+            + "filters=[[AND(>($0, 7700), <=($0, 7900), =($2, 'CLERK'), "
+            + ">(*($5, 2), 2000))]], projects=[[1, 5]])")
+        .returnsUnordered("ENAME=ADAMS; SAL=1100.00");
+
+    // The planner pushes the HAVING filter into a scan that already has
+    // projects; the filter must reference the table's columns, not the
+    // scan's.
+    final String sql2 = "select ename from emp\n"
+        + "group by ename, job, sal, comm\n"
+        + "having not (sum(sal) - sum(comm) < 1000)";
+    CalciteAssert.model(model)
+        .query(sql2)
+        .explainContains("PLAN=EnumerableInterpreter\n"
+            + "  BindableTableScan(table=[[SCOTT_CLONE, EMP]], "
+            + "filters=[[>=(-($5, $6), 1000)]], projects=[[1]])")
+        .returnsUnordered("ENAME=ALLEN", "ENAME=TURNER");
+  }
+
   /** Test case for
    * <a href="https://issues.apache.org/jira/browse/CALCITE-1097">[CALCITE-1097]
    * Exception when executing query with too many aggregation columns</a>. */
@@ -0,0 +1,281 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.test;
+
+import org.apache.calcite.config.CalciteConnectionProperty;
+import org.apache.calcite.jdbc.CalciteConnection;
+import org.apache.calcite.jdbc.CalciteJdbc41Factory;
+import org.apache.calcite.jdbc.CalciteSchema;
+import org.apache.calcite.jdbc.Driver;
+import org.apache.calcite.prepare.PlanCache;
+import org.apache.calcite.runtime.Hook;
+import org.apache.calcite.schema.SchemaPlus;
+import org.apache.calcite.schema.impl.ViewTable;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.ref.WeakReference;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Tests for {@link PlanCache}.
+ */
+class PlanCacheTest {
+  private static final String SQL = "select \"deptno\", count(*) as c\n"
+      + "from \"hr\".\"emps\"\n"
+      + "group by \"deptno\"\n"
+      + "order by \"deptno\"";
+
+  private static final String EXPECTED = "deptno=10; C=3\n"
+      + "deptno=20; C=1\n";
+
+  /** Creates a root schema that contains the "hr" schema. */
+  private static CalciteSchema createRootSchema() {
+    final CalciteSchema rootSchema = CalciteSchema.createRootSchema(false);
+    CalciteAssert.addSchema(rootSchema.plus(), CalciteAssert.SchemaSpec.HR);
+    return rootSchema;
+  }
+
+  /** Creates a connection to a given root schema. */
+  private static Connection connect(CalciteSchema rootSchema,
+      boolean planCache, String... properties) throws SQLException {
+    final Properties info = new Properties();
+    info.setProperty(CalciteConnectionProperty.PLAN_CACHE.camelName(),
+        Boolean.toString(planCache));
+    for (int i = 0; i < properties.length; i += 2) {
+      info.setProperty(properties[i], properties[i + 1]);
+    }
+    final CalciteJdbc41Factory factory = new CalciteJdbc41Factory();
+    return factory.newConnection(new Driver(), factory, "jdbc:calcite:", info,
+        rootSchema, null);
+  }
+
+  /** Executes a query, and returns its result and whether it was parsed. */
+  private static String query(Connection connection, String sql)
+      throws SQLException {
+    final AtomicInteger parseCount = new AtomicInteger();
+    try (Hook.Closeable ignored =
+             Hook.PARSE_TREE.<Object[]>addThread(o -> {
+               parseCount.incrementAndGet();
+             });
+         Statement statement = connection.createStatement();
+         ResultSet resultSet = statement.executeQuery(sql)) {
+      return CalciteAssert.toString(resultSet)
+          + (parseCount.get() > 0 ? "parsed" : "cached");
+    }
+  }
+
+  @Test void testSharedAcrossConnections() throws SQLException {
+    final CalciteSchema rootSchema = createRootSchema();
+    final PlanCache cache = PlanCache.instance();
+    final long hitCount = cache.getHitCount();
+    try (Connection connection1 = connect(rootSchema, true);
+         Connection connection2 = connect(rootSchema, true)) {
+      assertThat(query(connection1, SQL), is(EXPECTED + "parsed"));
+      assertThat(query(connection1, SQL), is(EXPECTED + "cached"));
+      // Another connection, and different white space
+      assertThat(query(connection2, "  " + SQL.replace("\n", " \n\t") + "\n"),
+          is(EXPECTED + "cached"));
+      assertThat(cache.getHitCount() - hitCount, is(2L));
+    }
+  }
+
+  /** Creates a connection that builds its own root schema from the HR
+   * model. */
+  private static Connection connectModel(String... properties)
+      throws SQLException {
+    final Properties info = new Properties();
+    info.setProperty(CalciteConnectionProperty.PLAN_CACHE.camelName(), "true");
+    info.setProperty(CalciteConnectionProperty.MODEL.camelName(),
+        "inline:" + JdbcTest.HR_MODEL);
+    for (int i = 0; i < properties.length; i += 2) {
+      info.setProperty(properties[i], properties[i + 1]);
+    }
+    return DriverManager.getConnection("jdbc:calcite:", info);
+  }
+
+  /** Tests that connections that are created from the same model do not
+   * share statements, because each has its own root schema, and a compiled
+   * plan may hold objects of the schema it was prepared against. */
+  @Test void testModelNotShared() throws SQLException {
+    try (Connection connection1 = connectModel();
+         Connection connection2 = connectModel()) {
+      assertThat(query(connection1, SQL), is(EXPECTED + "parsed"));
+      assertThat(query(connection1, SQL), is(EXPECTED + "cached"));
+      assertThat(query(connection2, SQL), is(EXPECTED + "parsed"));
+      assertThat(query(connection2, SQL), is(EXPECTED + "cached"));
+    }
+  }
+
+  @Test void testNotShared() throws SQLException {
+    final CalciteSchema rootSchema = createRootSchema();
+    try (Connection connection = connect(rootSchema, true)) {
+      assertThat(query(connection, SQL), is(EXPECTED + "parsed"));
+    }
+    // Connection that does not use the cache
+    try (Connection connection = connect(rootSchema, false)) {
+      assertThat(query(connection, SQL), is(EXPECTED + "parsed"));
+      assertThat(query(connection, SQL), is(EXPECTED + "parsed"));
+    }
+    // Connection with different properties
+    try (Connection connection = connect(rootSchema, true,
+        CalciteConnectionProperty.FORCE_DECORRELATE.camelName(), "false")) {
+      assertThat(query(connection, SQL), is(EXPECTED + "parsed"));
+      assertThat(query(connection, SQL), is(EXPECTED + "cached"));
+    }
+    // Connection to a different root schema, with the same contents
+    try (Connection connection = connect(createRootSchema(), true)) {
+      assertThat(query(connection, SQL), is(EXPECTED + "parsed"));
+    }
+  }
+
+  /** Tests that adding or removing a table invalidates cached plans. */
+  @Test void testSchemaChange() throws SQLException {
+    final CalciteSchema rootSchema = createRootSchema();
+    final SchemaPlus hr = rootSchema.plus().getSubSchema("hr");
+    try (Connection connection = connect(rootSchema, true)) {
+      assertThat(query(connection, SQL), is(EXPECTED + "parsed"));
+      assertThat(query(connection, SQL), is(EXPECTED + "cached"));
+
+      final long modificationCount = rootSchema.getModificationCount();
+      hr.add("v",
+          ViewTable.viewMacro(hr, "values 1", ImmutableList.of(), null, false));
+      assertThat(rootSchema.getModificationCount(),
+          is(modificationCount + 1));
+      assertThat(query(connection, SQL), is(EXPECTED + "parsed"));
+      assertThat(query(connection, SQL), is(EXPECTED + "cached"));
+      assertThat(query(connection, "select * from \"hr\".\"v\""),
+          is("EXPR$0=1\nparsed"));
+
+      // Removing a table that does not exist is not a modification
+      assertThat(rootSchema.removeTable("nonexistent"), is(false));
+      assertThat(query(connection, SQL), is(EXPECTED + "cached"));
+    }
+  }
+
+  /** Tests that the cache does not keep a root schema alive. */
+  @Test void testSchemaNotRetained() throws Exception {
+    CalciteSchema rootSchema = createRootSchema();
+    final WeakReference<CalciteSchema> ref = new WeakReference<>(rootSchema);
+    try (Connection connection = connect(rootSchema, true)) {
+      assertThat(query(connection, SQL), is(EXPECTED + "parsed"));
+    }
+    rootSchema = null;
+    for (int i = 0; i < 100 && ref.get() != null; i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+    assertThat(ref.get() == null, is(true));
+  }
+
+  /** Tests that closing a connection removes the statements of the root
+   * schema that it created, even if their plans hold the schema's
+   * objects. */
+  @Test void testOwnSchemaNotRetained() throws Exception {
+    final WeakReference<CalciteSchema> ref;
+    // With cardinality feedback, the compiled plan holds the relational
+    // expression, and therefore the tables of the schema
+    try (Connection connection = connectModel(
+        CalciteConnectionProperty.CARDINALITY_FEEDBACK.camelName(), "true")) {
+      ref = new WeakReference<>(
+          connection.unwrap(CalciteConnection.class).getRootSchema()
+              .unwrap(CalciteSchema.class));
+      assertThat(query(connection, SQL), is(EXPECTED + "parsed"));
+      assertThat(query(connection, SQL), is(EXPECTED + "cached"));
+    }
+    for (int i = 0; i < 100 && ref.get() != null; i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+    assertThat(ref.get() == null, is(true));
+  }
+
+  /** Tests that a connection that records cardinality feedback prepares a
+   * statement again after its counts change, and does not share statements
+   * with other connections. */
+  @Test void testCardinalityFeedback() throws SQLException {
+    final CalciteSchema rootSchema = createRootSchema();
+    final String feedback =
+        CalciteConnectionProperty.CARDINALITY_FEEDBACK.camelName();
+    try (Connection connection1 = connect(rootSchema, true, feedback, "true");
+         Connection connection2 = connect(rootSchema, true, feedback, "true")) {
+      // The first execution records counts, so the second prepares the
+      // statement again; the counts do not change after that
+      assertThat(query(connection1, SQL), is(EXPECTED + "parsed"));
+      assertThat(query(connection1, SQL), is(EXPECTED + "parsed"));
+      assertThat(query(connection1, SQL), is(EXPECTED + "cached"));
+      assertThat(query(connection2, SQL), is(EXPECTED + "parsed"));
+    }
+  }
+
+  @Test void testInvalidate() throws SQLException {
+    final CalciteSchema rootSchema = createRootSchema();
+    try (Connection connection = connect(rootSchema, true)) {
+      assertThat(query(connection, SQL), is(EXPECTED + "parsed"));
+      assertThat(query(connection, SQL), is(EXPECTED + "cached"));
+      PlanCache.instance().invalidate(createRootSchema());
+      assertThat(query(connection, SQL), is(EXPECTED + "cached"));
+      PlanCache.instance().invalidate(rootSchema);
+      assertThat(query(connection, SQL), is(EXPECTED + "parsed"));
+    }
+  }
+
+  @Test void testKey() {
+    final CalciteSchema rootSchema = createRootSchema();
+    final Map<Object, Object> properties = ImmutableMap.of();
+    final PlanCache.Key key =
+        PlanCache.key(rootSchema, null, properties, null, -1,
+            "select 'a  b'  from\n\"x  y\"");
+    assertThat(key.toString(), is("select 'a  b' from \"x  y\""));
+    assertThat(
+        PlanCache.key(rootSchema, null, properties, null, -1,
+            " select 'a  b' from \"x  y\"\n"),
+        is(key));
+    assertThat(
+        PlanCache.key(rootSchema, null, properties, null, -1,
+            "select 'a b' from \"x  y\""),
+        not(key));
+    assertThat(
+        PlanCache.key(rootSchema, null, properties, null, 10,
+            "select 'a  b' from \"x  y\""),
+        not(key));
+    // Doubled quotes are part of the literal
+    assertThat(
+        PlanCache.key(rootSchema, null, properties, null, -1,
+            "select 'it''s  x'   from t").toString(),
+        is("select 'it''s  x' from t"));
+    // Text that contains a comment is only trimmed
+    assertThat(
+        PlanCache.key(rootSchema, null, properties, null, -1,
+            " select a -- comment\n,  b from t ").toString(),
+        is("select a -- comment\n,  b from t"));
+  }
+}
@@ -86,6 +86,12 @@
 import org.apache.calcite.rex.RexTableInputRef;
 import org.apache.calcite.rex.RexTableInputRef.RelTableRef;
 import org.apache.calcite.runtime.SqlFunctions;
+import org.apache.calcite.schema.ColumnStatistic;
+import org.apache.calcite.schema.Histogram;
+import org.apache.calcite.schema.SchemaPlus;
+import org.apache.calcite.schema.Statistic;
+import org.apache.calcite.schema.Statistics;
+import org.apache.calcite.schema.impl.AbstractTable;
 import org.apache.calcite.sql.SqlKind;
 import org.apache.calcite.sql.SqlOperator;
 import org.apache.calcite.sql.SqlSpecialOperator;
@@ -855,6 +861,183 @@ private void checkRelSelectivity(
         within(DEFAULT_COMP_SELECTIVITY * DEFAULT_EQUAL_SELECTIVITY, EPSILON));
   }
 
+  /** Creates a builder whose default schema contains a table "T" with 1,000
+   * rows whose columns have statistics. Column "ID" has 1,000 distinct
+   * values between 1 and 1,000; "DEPTNO" has 20 distinct values between 10
+   * and 200, and 100 nulls; "SAL" has a histogram in which a quarter of the
+   * values are 100. */
+  private static RelBuilder columnStatisticsBuilder() {
+    final ColumnStatistic id =
+        Statistics.ofColumn(1000D, 0D, 1, 1000, null);
+    final ColumnStatistic deptno =
+        Statistics.ofColumn(20D, 100D, 10, 200, null);
+    final ColumnStatistic sal =
+        Statistics.ofColumn(50D, 0D, 0, 1000,
+            Histogram.of(ImmutableList.of(0, 100, 100, 1000),
+                ImmutableList.of(500D, 250D, 250D)));
+    final Statistic statistic =
+        Statistics.of(1000D, ImmutableList.of(ImmutableBitSet.of(0)),
+            ImmutableList.of(), ImmutableList.of(),
+            ImmutableList.of(id, deptno, sal));
+    final SchemaPlus rootSchema = Frameworks.createRootSchema(true);
+    rootSchema.add("T",
+        new AbstractTable() {
+          public RelDataType getRowType(RelDataTypeFactory typeFactory) {
+            return typeFactory.builder()
+                .add("ID", SqlTypeName.INTEGER)
+                .add("DEPTNO", SqlTypeName.INTEGER).nullable(true)
+                .add("SAL", SqlTypeName.INTEGER)
+                .add("NAME", SqlTypeName.VARCHAR, 10)
+                .build();
+          }
+
+          @Override public Statistic getStatistic() {
+            return statistic;
+          }
+        });
+    return RelBuilder.create(
+        Frameworks.newConfigBuilder().defaultSchema(rootSchema).build());
+  }
+
+  private static void checkColumnSelectivity(
+      Function<RelBuilder, RexNode> predicateFn, double expected) {
+    final RelBuilder builder = columnStatisticsBuilder();
+    final RelNode scan = builder.scan("T").build();
+    final RexNode predicate = predicateFn.apply(builder.push(scan));
+    final RelMetadataQuery mq = scan.getCluster().getMetadataQuery();
+    assertThat(mq.getSelectivity(scan, predicate), within(expected, EPSILON));
+  }
+
+  @Test void testSelectivityColumnStatisticsEquals() {
+    checkColumnSelectivity(b -> b.equals(b.field("ID"), b.literal(5)),
+        0.001D);
+    checkColumnSelectivity(b -> b.equals(b.literal(5), b.field("ID")),
+        0.001D);
+    // Outside the range of values
+    checkColumnSelectivity(b -> b.equals(b.field("ID"), b.literal(5000)),
+        0D);
+    checkColumnSelectivity(b -> b.notEquals(b.field("ID"), b.literal(5)),
+        0.999D);
+    // Nulls do not satisfy the predicate
+    checkColumnSelectivity(b -> b.equals(b.field("DEPTNO"), b.literal(20)),
+        0.9D / 20D);
+    // A frequent value in the histogram
+    checkColumnSelectivity(b -> b.equals(b.field("SAL"), b.literal(100)),
+        0.25D);
+    checkColumnSelectivity(b -> b.equals(b.field("SAL"), b.literal(500)),
+        1D / 50D);
+  }
+
+  @Test void testSelectivityColumnStatisticsRange() {
+    // Values are assumed to be uniformly distributed between min and max
+    checkColumnSelectivity(
+        b -> b.call(SqlStdOperatorTable.LESS_THAN, b.field("ID"),
+            b.literal(251)),
+        250D / 999D);
+    checkColumnSelectivity(
+        b -> b.call(SqlStdOperatorTable.GREATER_THAN_OR_EQUAL, b.field("ID"),
+            b.literal(2000)),
+        0D);
+    checkColumnSelectivity(
+        b -> b.call(SqlStdOperatorTable.LESS_THAN, b.literal(10),
+            b.field("DEPTNO")),
+        0.9D);
+    // Half of the first bucket
+    checkColumnSelectivity(
+        b -> b.call(SqlStdOperatorTable.LESS_THAN, b.field("SAL"),
+            b.literal(50)),
+        0.25D);
+    checkColumnSelectivity(
+        b -> b.call(SqlStdOperatorTable.LESS_THAN_OR_EQUAL, b.field("SAL"),
+            b.literal(100)),
+        0.75D);
+    checkColumnSelectivity(
+        b -> b.call(SqlStdOperatorTable.GREATER_THAN, b.field("SAL"),
+            b.literal(100)),
+        0.25D);
+  }
+
+  @Test void testSelectivityColumnStatisticsNull() {
+    checkColumnSelectivity(b -> b.isNull(b.field("DEPTNO")), 0.1D);
+    checkColumnSelectivity(b -> b.isNotNull(b.field("DEPTNO")), 0.9D);
+    checkColumnSelectivity(b -> b.isNull(b.field("ID")), 0D);
+  }
+
+  @Test void testSelectivityColumnStatisticsCombined() {
+    checkColumnSelectivity(
+        b -> b.and(b.equals(b.field("ID"), b.literal(5)),
+            b.isNull(b.field("DEPTNO"))),
+        0.001D * 0.1D);
+    checkColumnSelectivity(
+        b -> b.or(b.equals(b.field("SAL"), b.literal(100)),
+            b.call(SqlStdOperatorTable.LESS_THAN, b.field("SAL"),
+                b.literal(50))),
+        0.5D);
+    // Column "NAME" has no statistics, so the selectivity of its conjunct
+    // is guessed
+    checkColumnSelectivity(
+        b -> b.and(b.equals(b.field("ID"), b.literal(5)),
+            b.equals(b.field("NAME"), b.literal("Fred"))),
+        0.001D * DEFAULT_EQUAL_SELECTIVITY);
+    checkColumnSelectivity(
+        b -> b.equals(b.field("NAME"), b.literal("Fred")),
+        DEFAULT_EQUAL_SELECTIVITY);
+  }
+
+  @Test void testRowCountColumnStatistics() {
+    final RelBuilder builder = columnStatisticsBuilder();
+    final RelNode rel = builder.scan("T")
+        .filter(builder.equals(builder.field("DEPTNO"), builder.literal(20)))
+        .project(builder.field("NAME"), builder.field("DEPTNO"))
+        .build();
+    final RelMetadataQuery mq = rel.getCluster().getMetadataQuery();
+    assertThat(mq.getRowCount(rel), within(45D, EPSILON));
+  }
+
+  @Test void testDistinctRowCountColumnStatistics() {
+    final RelBuilder builder = columnStatisticsBuilder();
+    final RelNode rel = builder.scan("T")
+        .project(builder.field("DEPTNO"), builder.field("SAL"),
+            builder.field("NAME"))
+        .build();
+    final RelMetadataQuery mq = rel.getCluster().getMetadataQuery();
+    // Null is one of the distinct values of "DEPTNO"
+    assertThat(mq.getDistinctRowCount(rel, ImmutableBitSet.of(0), null),
+        within(21D, EPSILON));
+    assertThat(mq.getDistinctRowCount(rel, ImmutableBitSet.of(1), null),
+        within(50D, EPSILON));
+    // Cannot exceed the number of rows
+    assertThat(mq.getDistinctRowCount(rel, ImmutableBitSet.of(0, 1), null),
+        within(1000D, EPSILON));
+    // Column "NAME" has no statistics
+    assertThat(mq.getDistinctRowCount(rel, ImmutableBitSet.of(2), null),
+        nullValue());
+  }
+
+  /** Tests {@link Statistics#ofColumn(Iterable, int)}, which computes the
+   * statistics of a column from its values. */
+  @Test void testColumnStatisticFromValues() {
+    final ColumnStatistic stat =
+        Statistics.ofColumn(Arrays.asList(5, 1, 2, null, 2, 3, 5, 5, 5), 2);
+    assertThat(stat.getDistinctCount(), is(4D));
+    assertThat(stat.getNullCount(), is(1D));
+    assertThat(stat.getMin(), is(1));
+    assertThat(stat.getMax(), is(5));
+    final Histogram histogram = stat.getHistogram();
+    assertThat(histogram.toString(),
+        is("Histogram{bounds=[1, 3, 5], counts=[4.0, 4.0]}"));
+    assertThat(histogram.fractionBelow(3, true), is(0.5D));
+    assertThat(histogram.fractionBelow(4, false), is(0.75D));
+    assertThat(histogram.fractionBelow(0, true), is(0D));
+    assertThat(histogram.frequency(5), nullValue());
+
+    final Histogram histogram2 =
+        Histogram.equiDepth(Arrays.asList(1, 7, 7, 7, 7, 7, 7, 9), 4);
+    assertThat(histogram2.toString(),
+        is("Histogram{bounds=[1, 7, 7, 7, 9], counts=[2.0, 2.0, 2.0, 2.0]}"));
+    assertThat(histogram2.frequency(7), is(0.5D));
+  }
+
   /** Test case for
    * <a href="https://issues.apache.org/jira/browse/CALCITE-1808">[CALCITE-1808]
    * JaninoRelMetadataProvider loading cache might cause
@@ -880,6 +1063,40 @@ private void checkRelSelectivity(
     }
   }
 
+  /** Tests that {@link RelMetadataQuery#clearCache(RelNode)} removes the
+   * cached metadata of a relational expression and of the relational
+   * expressions whose metadata was computed from it, and keeps the rest. */
+  @Test void testClearCacheRemovesDependents() {
+    final RelNode rel = convertSql("select * from emp where deptno = 10\n"
+        + "union all\n"
+        + "select * from emp where sal > 100");
+    final RelMetadataQuery mq = rel.getCluster().getMetadataQuery();
+    assertThat(mq.getRowCount(rel), within(9.1d, 0.1d));
+    final RelNode project0 = rel.getInput(0);
+    final RelNode filter0 = project0.getInput(0);
+    final RelNode scan0 = filter0.getInput(0);
+    final RelNode project1 = rel.getInput(1);
+    final RelNode filter1 = project1.getInput(0);
+    for (RelNode r : Arrays.asList(rel, project0, filter0, project1, filter1)) {
+      assertThat(mq.map.row(r).isEmpty(), is(false));
+    }
+
+    assertThat(mq.clearCache(filter0), is(true));
+    assertThat(mq.map.row(filter0).isEmpty(), is(true));
+    assertThat(mq.map.row(project0).isEmpty(), is(true));
+    assertThat(mq.map.row(rel).isEmpty(), is(true));
+    assertThat(mq.map.row(scan0).isEmpty(), is(false));
+    assertThat(mq.map.row(project1).isEmpty(), is(false));
+    assertThat(mq.map.row(filter1).isEmpty(), is(false));
+    assertThat(mq.clearCache(filter0), is(false));
+
+    // Cached values are used again, and dependencies are recorded again.
+    assertThat(mq.getRowCount(rel), within(9.1d, 0.1d));
+    assertThat(mq.clearCache(scan0), is(true));
+    assertThat(mq.map.row(rel).isEmpty(), is(true));
+    assertThat(mq.map.row(project1).isEmpty(), is(false));
+  }
+
   @Test void testDistinctRowCountTable() {
     // no unique key information is available so return null
     RelNode rel = convertSql("select * from emp where deptno = 10");
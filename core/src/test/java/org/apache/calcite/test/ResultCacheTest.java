@@ -0,0 +1,302 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.test;
+
+import org.apache.calcite.DataContext;
+import org.apache.calcite.config.CalciteConnectionProperty;
+import org.apache.calcite.jdbc.CalciteConnection;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeFactory;
+import org.apache.calcite.runtime.ResultCache;
+import org.apache.calcite.schema.ScannableTable;
+import org.apache.calcite.schema.SchemaPlus;
+import org.apache.calcite.schema.VersionedTable;
+import org.apache.calcite.schema.impl.AbstractSchema;
+import org.apache.calcite.schema.impl.AbstractTable;
+import org.apache.calcite.schema.impl.TableFunctionImpl;
+import org.apache.calcite.sql.type.SqlTypeName;
+import org.apache.calcite.util.Smalls;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for {@link ResultCache}.
+ */
+class ResultCacheTest {
+  /** Time-to-live long enough that results of queries on tables that are not
+   * {@link VersionedTable} are cached but do not expire during a test. */
+  private static final long TTL = 60_000;
+
+  /** Creates a connection with a result cache and the "hr" schema. */
+  private static Connection connect(int resultCacheSize, long ttl)
+      throws SQLException {
+    final Properties info = new Properties();
+    info.setProperty(CalciteConnectionProperty.RESULT_CACHE_SIZE.camelName(),
+        Integer.toString(resultCacheSize));
+    info.setProperty(CalciteConnectionProperty.RESULT_CACHE_TTL.camelName(),
+        Long.toString(ttl));
+    final Connection connection =
+        DriverManager.getConnection("jdbc:calcite:", info);
+    final SchemaPlus rootSchema =
+        connection.unwrap(CalciteConnection.class).getRootSchema();
+    CalciteAssert.addSchema(rootSchema, CalciteAssert.SchemaSpec.HR);
+    return connection;
+  }
+
+  private static String query(Connection connection, String sql)
+      throws SQLException {
+    try (Statement statement = connection.createStatement();
+         ResultSet resultSet = statement.executeQuery(sql)) {
+      return CalciteAssert.toString(resultSet);
+    }
+  }
+
+  @Test void testHit() throws SQLException {
+    try (Connection connection = connect(100, TTL)) {
+      final ResultCache cache = connection.unwrap(ResultCache.class);
+      final String expected = "empid=100; name=Bill\n"
+          + "empid=150; name=Sebastian\n"
+          + "empid=110; name=Theodore\n";
+      assertThat(
+          query(connection, "select \"empid\", \"name\"\n"
+              + "from \"hr\".\"emps\" where \"deptno\" = 10"),
+          is(expected));
+      assertThat(cache.getMissCount(), is(1L));
+      assertThat(cache.getHitCount(), is(0L));
+      assertThat(cache.getRowCount(), is(3L));
+
+      // Different text, same plan
+      assertThat(
+          query(connection, "SELECT e.\"empid\", e.\"name\"\n"
+              + "FROM \"hr\".\"emps\" AS e WHERE e.\"deptno\" = 10"),
+          is(expected));
+      assertThat(cache.getHitCount(), is(1L));
+      assertThat(cache.size(), is(1));
+
+      // A query that reads only some of the rows does not populate the cache
+      try (Statement statement = connection.createStatement();
+           ResultSet resultSet =
+               statement.executeQuery("select * from \"hr\".\"depts\"")) {
+        assertThat(resultSet.next(), is(true));
+      }
+      assertThat(cache.size(), is(1));
+    }
+  }
+
+  @Test void testParameters() throws SQLException {
+    try (Connection connection = connect(100, TTL);
+         PreparedStatement statement = connection.prepareStatement(
+             "select count(*) as c from \"hr\".\"emps\" where \"deptno\" = ?")) {
+      final ResultCache cache = connection.unwrap(ResultCache.class);
+      for (int deptno : new int[] {10, 20, 10, 30, 20}) {
+        statement.setInt(1, deptno);
+        try (ResultSet resultSet = statement.executeQuery()) {
+          assertThat(resultSet.next(), is(true));
+          assertThat(resultSet.getInt(1),
+              is(deptno == 10 ? 3 : deptno == 20 ? 1 : 0));
+        }
+      }
+      assertThat(cache.getMissCount(), is(3L));
+      assertThat(cache.getHitCount(), is(2L));
+    }
+  }
+
+  /** Tests that results of non-deterministic queries are not cached. */
+  @Test void testNonDeterministic() throws SQLException {
+    try (Connection connection = connect(100, 0)) {
+      final ResultCache cache = connection.unwrap(ResultCache.class);
+      query(connection, "select rand() from \"hr\".\"emps\"");
+      query(connection, "select current_timestamp from \"hr\".\"depts\"");
+      assertThat(cache.getMissCount(), is(0L));
+      assertThat(cache.size(), is(0));
+    }
+  }
+
+  @Test void testVersionedTable() throws SQLException {
+    try (Connection connection = connect(100, 0)) {
+      final ResultCache cache = connection.unwrap(ResultCache.class);
+      final CounterTable table = new CounterTable();
+      connection.unwrap(CalciteConnection.class).getRootSchema()
+          .add("counter", table);
+      final String sql = "select sum(\"i\") as s from \"counter\"";
+      assertThat(query(connection, sql), is("S=3\n"));
+      assertThat(query(connection, sql), is("S=3\n"));
+      assertThat(table.scanCount.get(), is(1));
+      table.rows.add(10);
+      table.modificationCount++;
+      assertThat(query(connection, sql), is("S=13\n"));
+      assertThat(table.scanCount.get(), is(2));
+      assertThat(cache.getInvalidationCount(), is(1L));
+    }
+  }
+
+  /** Tests that executing a DML statement discards the results that read the
+   * table. */
+  @Test void testInsertInvalidates() throws SQLException {
+    try (Connection connection = connect(100, TTL)) {
+      final ResultCache cache = connection.unwrap(ResultCache.class);
+      final SchemaPlus schema =
+          connection.unwrap(CalciteConnection.class).getRootSchema()
+              .add("foo", new AbstractSchema());
+      final List<JdbcTest.Employee> employees = new ArrayList<>();
+      schema.add("bar", JdbcFrontLinqBackTest.mutable("bar", employees));
+      final String sql = "select count(*) as c from \"foo\".\"bar\"";
+      assertThat(query(connection, sql), is("C=0\n"));
+      query(connection, "select * from \"hr\".\"depts\"");
+      assertThat(cache.size(), is(2));
+      try (Statement statement = connection.createStatement()) {
+        assertThat(
+            statement.executeUpdate("insert into \"foo\".\"bar\"\n"
+                + "select * from \"hr\".\"emps\""),
+            is(4));
+      }
+      assertThat(cache.size(), is(1));
+      assertThat(query(connection, sql), is("C=4\n"));
+    }
+  }
+
+  /** Tests that if there is no time-to-live, results of queries on tables
+   * that do not report their changes are not cached. */
+  @Test void testUnversionedTable() throws SQLException {
+    try (Connection connection = connect(100, 0)) {
+      final ResultCache cache = connection.unwrap(ResultCache.class);
+      final String sql = "select count(*) as c from \"hr\".\"emps\"";
+      assertThat(query(connection, sql), is("C=4\n"));
+      assertThat(query(connection, sql), is("C=4\n"));
+      assertThat(cache.getMissCount(), is(0L));
+      assertThat(cache.getHitCount(), is(0L));
+      assertThat(cache.size(), is(0));
+    }
+  }
+
+  /** Tests that if there is no time-to-live, results of queries that call
+   * a table function are not cached, even if all of the tables they read are
+   * versioned. */
+  @Test void testTableFunction() throws SQLException {
+    try (Connection connection = connect(100, 0)) {
+      final ResultCache cache = connection.unwrap(ResultCache.class);
+      final SchemaPlus rootSchema =
+          connection.unwrap(CalciteConnection.class).getRootSchema();
+      rootSchema.add("counter", new CounterTable());
+      rootSchema.add("GenerateStrings",
+          TableFunctionImpl.create(Smalls.GENERATE_STRINGS_METHOD));
+      final String sql = "select count(*) as c\n"
+          + "from \"counter\",\n"
+          + "  table(\"GenerateStrings\"(3)) as t(n, s)\n"
+          + "where n = \"i\"";
+      assertThat(query(connection, sql), is("C=2\n"));
+      assertThat(cache.size(), is(0));
+    }
+    try (Connection connection = connect(100, TTL)) {
+      final ResultCache cache = connection.unwrap(ResultCache.class);
+      final SchemaPlus rootSchema =
+          connection.unwrap(CalciteConnection.class).getRootSchema();
+      rootSchema.add("GenerateStrings",
+          TableFunctionImpl.create(Smalls.GENERATE_STRINGS_METHOD));
+      final String sql = "select count(*) as c\n"
+          + "from table(\"GenerateStrings\"(3))";
+      assertThat(query(connection, sql), is("C=3\n"));
+      assertThat(query(connection, sql), is("C=3\n"));
+      assertThat(cache.getHitCount(), is(1L));
+    }
+  }
+
+  @Test void testEviction() throws SQLException {
+    try (Connection connection = connect(5, TTL)) {
+      final ResultCache cache = connection.unwrap(ResultCache.class);
+      query(connection, "select * from \"hr\".\"depts\"");
+      query(connection, "select * from \"hr\".\"depts\" where \"deptno\" > 10");
+      assertThat(cache.getRowCount(), is(5L));
+      assertThat(cache.getEvictionCount(), is(0L));
+      query(connection, "select * from \"hr\".\"emps\" where \"deptno\" = 20");
+      assertThat(cache.getEvictionCount(), is(1L));
+      assertThat(cache.getRowCount(), is(3L));
+      assertThat(cache.size(), is(2));
+
+      // Too large to cache
+      query(connection, "select * from \"hr\".\"emps\", \"hr\".\"depts\"");
+      assertThat(cache.getRowCount(), is(3L));
+      assertThat(cache.size(), is(2));
+    }
+  }
+
+  @Test void testTtl() throws Exception {
+    try (Connection connection = connect(100, 1)) {
+      final ResultCache cache = connection.unwrap(ResultCache.class);
+      query(connection, "select * from \"hr\".\"depts\"");
+      Thread.sleep(10);
+      query(connection, "select * from \"hr\".\"depts\"");
+      assertThat(cache.getHitCount(), is(0L));
+      assertThat(cache.getInvalidationCount(), is(1L));
+    }
+  }
+
+  @Test void testDisabled() throws SQLException {
+    try (Connection connection = connect(0, 0)) {
+      assertThrows(SQLException.class,
+          () -> connection.unwrap(ResultCache.class));
+      assertThat(query(connection, "select count(*) as c from \"hr\".\"emps\""),
+          is("C=4\n"));
+    }
+  }
+
+  /** Table whose rows can be changed, and which counts its modifications and
+   * scans. */
+  private static class CounterTable extends AbstractTable
+      implements ScannableTable, VersionedTable {
+    final List<Integer> rows = new ArrayList<>(Arrays.asList(1, 2));
+    final AtomicInteger scanCount = new AtomicInteger();
+    long modificationCount;
+
+    public RelDataType getRowType(RelDataTypeFactory typeFactory) {
+      return typeFactory.builder()
+          .add("i", SqlTypeName.INTEGER)
+          .build();
+    }
+
+    public Enumerable<Object[]> scan(DataContext root) {
+      scanCount.incrementAndGet();
+      final List<Object[]> list = new ArrayList<>();
+      for (Integer row : rows) {
+        list.add(new Object[] {row});
+      }
+      return Linq4j.asEnumerable(list);
+    }
+
+    public long getModificationCount() {
+      return modificationCount;
+    }
+  }
+}
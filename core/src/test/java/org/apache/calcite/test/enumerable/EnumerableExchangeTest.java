@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.test.enumerable;
+
+import org.apache.calcite.adapter.enumerable.EnumerableExchange;
+import org.apache.calcite.config.CalciteConnectionProperty;
+import org.apache.calcite.test.CalciteAssert;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for {@link EnumerableExchange}.
+ */
+class EnumerableExchangeTest {
+  private static final String AGGREGATE_SQL = "select \"store_id\",\n"
+      + "  count(*) as c, sum(\"unit_sales\") as s\n"
+      + "from \"foodmart2\".\"sales_fact_1997\"\n"
+      + "where \"store_id\" < 4\n"
+      + "group by \"store_id\"";
+
+  private static final String JOIN_SQL = "select s.\"store_state\",\n"
+      + "  count(*) as c, sum(f.\"store_sales\") as s\n"
+      + "from \"foodmart2\".\"sales_fact_1997\" as f\n"
+      + "join \"foodmart2\".\"store\" as s using (\"store_id\")\n"
+      + "group by s.\"store_state\"";
+
+  private static CalciteAssert.AssertThat foodmart(int parallelism) {
+    return CalciteAssert.that()
+        .with(CalciteAssert.Config.FOODMART_CLONE)
+        .with(CalciteConnectionProperty.PARALLELISM, parallelism);
+  }
+
+  @Test void testSerialByDefault() {
+    foodmart(1)
+        .query(AGGREGATE_SQL)
+        .explainMatches("", CalciteAssert.checkResultContains("Exchange", 0))
+        .returnsUnordered("store_id=2; C=1380; S=2237.0000",
+            "store_id=3; C=7876; S=24576.0000");
+  }
+
+  @Test void testPartitionedAggregate() {
+    foodmart(4)
+        .query(AGGREGATE_SQL)
+        .explainContains("EnumerableExchange(distribution=[single], "
+            + "partitions=[4])")
+        .returnsUnordered("store_id=2; C=1380; S=2237.0000",
+            "store_id=3; C=7876; S=24576.0000");
+  }
+
+  /** Tests that the dimension table, the build side of the hash join, is
+   * read in full by each partition of the fact table. */
+  @Test void testPartitionedJoin() {
+    final String[] expected = {
+        "store_state=CA; C=24442; S=159167.8400",
+        "store_state=OR; C=21611; S=142277.0700",
+        "store_state=WA; C=40784; S=263793.2200",
+    };
+    foodmart(1)
+        .query(JOIN_SQL)
+        .returnsUnordered(expected);
+    foodmart(3)
+        .query(JOIN_SQL)
+        .explainContains("EnumerableExchange(distribution=[single], "
+            + "partitions=[3])")
+        .returnsUnordered(expected);
+  }
+
+  /** Tests that a query is not partitioned if the table is too small to make
+   * it worthwhile. */
+  @Test void testSmallTableNotPartitioned() {
+    foodmart(4)
+        .query("select count(*) as c from \"foodmart2\".\"store\"\n"
+            + "where \"store_id\" > 10")
+        .explainMatches("", CalciteAssert.checkResultContains("Exchange", 0))
+        .returns("C=14\n");
+  }
+}
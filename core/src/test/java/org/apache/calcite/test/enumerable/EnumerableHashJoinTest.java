@@ -198,6 +198,55 @@ class EnumerableHashJoinTest {
             "name=Sebastian; salary=7000.0");
   }
 
+  /** Tests that a join on a primitive, non-nullable key packs the key into
+   * a {@code long}. */
+  @Test void innerJoinLongKey() {
+    tester(false, new JdbcTest.HrSchema())
+        .query(
+            "select e.empid, e.name, d.name as dept from emps e join depts "
+                + "d on e.deptno=d.deptno")
+        .withHook(Hook.PLANNER, (Consumer<RelOptPlanner>) planner ->
+            planner.removeRule(EnumerableRules.ENUMERABLE_MERGE_JOIN_RULE))
+        .planContains("LongKeyedEnumerables.hashJoin(")
+        .returnsUnordered(
+            "empid=100; name=Bill; dept=Sales",
+            "empid=110; name=Theodore; dept=Sales",
+            "empid=150; name=Sebastian; dept=Sales");
+  }
+
+  /** Tests a join whose key, an {@code int} and a {@code float} column, is
+   * packed into a {@code long}. */
+  @Test void innerJoinPackedKey() {
+    tester(false, new JdbcTest.HrSchema())
+        .query(
+            "select e.empid, e2.empid as empid2 from emps e join emps e2 "
+                + "on e.deptno=e2.deptno and e.salary=e2.salary")
+        .withHook(Hook.PLANNER, (Consumer<RelOptPlanner>) planner ->
+            planner.removeRule(EnumerableRules.ENUMERABLE_MERGE_JOIN_RULE))
+        .planContains("LongKeyedEnumerables.hashJoin(")
+        .returnsUnordered(
+            "empid=100; empid2=100",
+            "empid=110; empid2=110",
+            "empid=150; empid2=150",
+            "empid=200; empid2=200");
+  }
+
+  /** Tests that a join on a nullable key does not use a {@code long}
+   * key. */
+  @Test void innerJoinNullableKey() {
+    tester(false, new JdbcTest.HrSchema())
+        .query(
+            "select e.empid, e2.empid as empid2 from emps e join emps e2 "
+                + "on e.commission=e2.commission")
+        .withHook(Hook.PLANNER, (Consumer<RelOptPlanner>) planner ->
+            planner.removeRule(EnumerableRules.ENUMERABLE_MERGE_JOIN_RULE))
+        .planContains("left.hashJoin(right,")
+        .returnsUnordered(
+            "empid=100; empid2=100",
+            "empid=110; empid2=110",
+            "empid=200; empid2=200");
+  }
+
   private CalciteAssert.AssertThat tester(boolean forceDecorrelate,
       Object schema) {
     return CalciteAssert.that()
@@ -0,0 +1,182 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.test.enumerable;
+
+import org.apache.calcite.adapter.enumerable.EnumerableKeyPushDownJoinRule;
+import org.apache.calcite.adapter.enumerable.EnumerableRules;
+import org.apache.calcite.adapter.java.ReflectiveSchema;
+import org.apache.calcite.config.CalciteConnectionProperty;
+import org.apache.calcite.config.Lex;
+import org.apache.calcite.plan.Convention;
+import org.apache.calcite.plan.RelOptPlanner;
+import org.apache.calcite.plan.RelOptRule;
+import org.apache.calcite.rel.core.JoinRelType;
+import org.apache.calcite.rel.core.RelFactories;
+import org.apache.calcite.runtime.Hook;
+import org.apache.calcite.test.CalciteAssert;
+import org.apache.calcite.test.JdbcTest;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.function.Consumer;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.not;
+
+/**
+ * Unit test for
+ * {@link org.apache.calcite.adapter.enumerable.EnumerableKeyPushDownJoin}.
+ */
+public class EnumerableKeyPushDownJoinTest {
+
+  @Test void simpleInnerJoin() {
+    tester(new JdbcTest.HrSchema())
+        .query("select e.name from depts d join emps e on d.deptno = e.deptno")
+        .withHook(Hook.PLANNER,
+            usingRule(anyConventionRule(100)))
+        .explainContains("EnumerableKeyPushDownJoin(condition=[=($0, $1)], "
+            + "joinType=[inner], inListSize=[100])")
+        .returnsUnordered("name=Bill",
+            "name=Sebastian",
+            "name=Theodore");
+  }
+
+  @Test void simpleSemiJoin() {
+    tester(new JdbcTest.HrSchema())
+        .query("?")
+        .withHook(Hook.PLANNER,
+            usingRule(anyConventionRule(100)))
+        .withRel(
+            builder -> builder
+                .scan("s", "depts").as("d")
+                .scan("s", "emps").as("e")
+                .join(JoinRelType.SEMI,
+                    builder.equals(
+                        builder.field(2, "d", "deptno"),
+                        builder.field(2, "e", "deptno")))
+                .project(builder.field("name"))
+                .build())
+        .returnsUnordered("name=Sales");
+  }
+
+  /** Tests a join where the left input has more distinct keys than the
+   * size of the list, so the range of keys is pushed. */
+  @Test void innerJoinRange() {
+    tester(new JdbcTest.HrSchemaBig())
+        .query("select count(e.name)\n"
+            + "from depts d join emps e on d.deptno = e.deptno")
+        .withHook(Hook.PLANNER,
+            usingRule(anyConventionRule(3)))
+        .explainContains("inListSize=[3]")
+        .returnsUnordered("EXPR$0=46");
+  }
+
+  @Test void innerJoinList() {
+    tester(new JdbcTest.HrSchemaBig())
+        .query("select count(e.name)\n"
+            + "from depts d join emps e on d.deptno = e.deptno")
+        .withHook(Hook.PLANNER,
+            usingRule(anyConventionRule(100)))
+        .returnsUnordered("EXPR$0=46");
+  }
+
+  @Test void innerJoinTwoKeys() {
+    tester(new JdbcTest.HrSchemaBig())
+        .query("select count(e.name)\n"
+            + "from depts d join emps e\n"
+            + "on d.deptno = e.empid and d.deptno = e.deptno")
+        .withHook(Hook.PLANNER,
+            usingRule(anyConventionRule(3)))
+        .explainContains("EnumerableKeyPushDownJoin")
+        .returnsUnordered("EXPR$0=1");
+  }
+
+  /** Tests a join whose left input has no rows; the right input is not
+   * evaluated. */
+  @Test void emptyLeft() {
+    tester(new JdbcTest.HrSchema())
+        .query("select e.name from depts d join emps e on d.deptno = e.deptno\n"
+            + "where d.deptno < 0")
+        .withHook(Hook.PLANNER,
+            usingRule(anyConventionRule(100)))
+        .returnsCount(0);
+  }
+
+  /** Tests that the rule does not apply if the right input cannot push the
+   * filter on its keys into its source; here, a table in a reflective
+   * schema. */
+  @Test void rightNotPushable() {
+    tester(new JdbcTest.HrSchema())
+        .query("select e.name from depts d join emps e on d.deptno = e.deptno")
+        .withHook(Hook.PLANNER,
+            (Consumer<RelOptPlanner>) planner ->
+                planner.addRule(
+                    EnumerableRules.ENUMERABLE_KEY_PUSH_DOWN_JOIN_RULE))
+        .explainHookMatches(not(containsString("EnumerableKeyPushDownJoin")))
+        .returnsUnordered("name=Bill",
+            "name=Sebastian",
+            "name=Theodore");
+  }
+
+  /** Tests that the rule does not push keys into a right input that is
+   * evaluated in batch convention, which would evaluate the filter in Java
+   * like the enumerable convention. */
+  @Test void rightBatchNotPushable() {
+    CalciteAssert.that()
+        .with(CalciteAssert.Config.FOODMART_CLONE)
+        .with(CalciteConnectionProperty.BATCH_SIZE, 100)
+        .query("select count(*) as c\n"
+            + "from \"foodmart2\".\"store\" as s\n"
+            + "join \"foodmart2\".\"store\" as s2\n"
+            + "on s.\"store_id\" = s2.\"store_id\"")
+        .withHook(Hook.PLANNER,
+            (Consumer<RelOptPlanner>) planner ->
+                planner.addRule(
+                    EnumerableRules.ENUMERABLE_KEY_PUSH_DOWN_JOIN_RULE))
+        .explainHookMatches(not(containsString("EnumerableKeyPushDownJoin")))
+        .returns("C=25\n");
+  }
+
+  /** Returns a planner hook that makes the planner implement joins using a
+   * given rule. */
+  public static Consumer<RelOptPlanner> usingRule(RelOptRule rule) {
+    return planner -> {
+      planner.removeRule(EnumerableRules.ENUMERABLE_JOIN_RULE);
+      planner.removeRule(EnumerableRules.ENUMERABLE_MERGE_JOIN_RULE);
+      planner.removeRule(EnumerableRules.ENUMERABLE_CORRELATE_RULE);
+      planner.addRule(rule);
+    };
+  }
+
+  /** Returns a rule that pushes keys into the right input whatever its
+   * convention, so that tables in a reflective schema, which evaluate the
+   * filter in Java, can test the join. */
+  private static RelOptRule anyConventionRule(int inListSize) {
+    return new EnumerableKeyPushDownJoinRule(RelFactories.LOGICAL_BUILDER,
+        inListSize) {
+      @Override protected boolean isPushable(Convention convention) {
+        return true;
+      }
+    };
+  }
+
+  private CalciteAssert.AssertThat tester(Object schema) {
+    return CalciteAssert.that()
+        .with(CalciteConnectionProperty.LEX, Lex.JAVA)
+        .withSchema("s", new ReflectiveSchema(schema));
+  }
+}
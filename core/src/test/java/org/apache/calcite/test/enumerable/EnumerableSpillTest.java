@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.test.enumerable;
+
+import org.apache.calcite.config.CalciteConnectionProperty;
+import org.apache.calcite.runtime.SpillingEnumerables;
+import org.apache.calcite.test.CalciteAssert;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests queries whose sort, aggregate and hash join operators spill to disk
+ * via {@link SpillingEnumerables}.
+ */
+class EnumerableSpillTest {
+  private static CalciteAssert.AssertThat foodmart(int spillThreshold) {
+    return CalciteAssert.that()
+        .with(CalciteAssert.Config.FOODMART_CLONE)
+        .with(CalciteConnectionProperty.SPILL_THRESHOLD, spillThreshold);
+  }
+
+  @Test void testSortAggregate() {
+    final String sql = "select \"customer_id\", count(*) as c\n"
+        + "from \"foodmart2\".\"sales_fact_1997\"\n"
+        + "group by \"customer_id\"\n"
+        + "order by c desc, \"customer_id\"\n"
+        + "limit 3";
+    final String expected = "customer_id=4021; C=146\n"
+        + "customer_id=4727; C=127\n"
+        + "customer_id=1850; C=126\n";
+    foodmart(0)
+        .query(sql)
+        .planContains(".orderBy(")
+        .returns(expected);
+    foodmart(500)
+        .query(sql)
+        .planContains("SpillingEnumerables.groupBy(")
+        .planContains("SpillingEnumerables.orderBy(")
+        .returns(expected);
+  }
+
+  /** Tests a join whose build side, the customer table, does not fit in
+   * memory. */
+  @Test void testJoin() {
+    final String sql = "select c.\"state_province\", count(*) as c,\n"
+        + "  sum(f.\"unit_sales\") as s\n"
+        + "from \"foodmart2\".\"sales_fact_1997\" as f\n"
+        + "join \"foodmart2\".\"customer\" as c using (\"customer_id\")\n"
+        + "group by c.\"state_province\"";
+    foodmart(1_000)
+        .query(sql)
+        .planContains("SpillingEnumerables.hashJoin(")
+        .returnsUnordered("state_province=CA; C=24442; S=74748.0000",
+            "state_province=OR; C=21611; S=67659.0000",
+            "state_province=WA; C=40784; S=124366.0000");
+  }
+
+  /** Tests that {@code SELECT DISTINCT}, which in memory uses
+   * {@code Enumerable.distinct}, spills when it may. */
+  @Test void testDistinct() {
+    final String sql = "select count(*) as c from (\n"
+        + "  select distinct * from \"foodmart2\".\"sales_fact_1997\")";
+    foodmart(0)
+        .query(sql)
+        .planContains(".distinct(")
+        .returns("C=86837\n");
+    foodmart(1_000)
+        .query(sql)
+        .planContains("SpillingEnumerables.groupBy(")
+        .returns("C=86837\n");
+  }
+}
@@ -1638,6 +1638,119 @@ private boolean innerHasNext() {
     };
   }
 
+  /**
+   * Joins two inputs by reading all of the outer input, then evaluating the
+   * inner input just once, restricted to rows whose key could match.
+   *
+   * <p>The {@code inner} function receives a list of {@code inListSize + 2}
+   * outer rows, whose values of the filter key (per
+   * {@code filterKeySelector}) the inner input uses to filter its rows: it
+   * returns the rows whose key is equal to the key of one of the first
+   * {@code inListSize} rows, or is between the keys of the last two rows.
+   * If the outer input has at most {@code inListSize} distinct non-null
+   * keys, the list contains a row for each key, padded with the first row,
+   * and the range contains only the first key; otherwise the range is from
+   * the minimum key to the maximum key. If all keys are null, no row can
+   * match, and the inner input is not evaluated.
+   *
+   * <p>Then joins the outer rows to the inner rows by hashing the outer rows,
+   * which are assumed to be fewer.
+   *
+   * @param joinType Join type; INNER or SEMI
+   * @param outer Outer input
+   * @param inner Function that evaluates the inner input, given the rows
+   *              whose keys it is to filter on
+   * @param filterKeySelector Selects the key that the inner input filters on
+   * @param outerKeySelector Selects the join key of an outer row
+   * @param innerKeySelector Selects the join key of an inner row
+   * @param resultSelector Creates a result row, or null for a SEMI join,
+   *                       which returns outer rows
+   * @param inListSize Maximum number of distinct keys for which the inner
+   *                   input filters on a list of keys rather than a range
+   */
+  @SuppressWarnings("unchecked")
+  public static <TSource, TInner, TKey, TResult> Enumerable<TResult> keyPushDownJoin(
+      final JoinType joinType,
+      final Enumerable<TSource> outer,
+      final Function1<List<TSource>, Enumerable<TInner>> inner,
+      final Function1<TSource, Comparable> filterKeySelector,
+      final Function1<TSource, TKey> outerKeySelector,
+      final Function1<TInner, TKey> innerKeySelector,
+      final Function2<TSource, TInner, TResult> resultSelector,
+      final int inListSize) {
+    return new AbstractEnumerable<TResult>() {
+      @Override public Enumerator<TResult> enumerator() {
+        final List<TSource> outerValues = outer.toList();
+        final List<TSource> filterValues =
+            keyFilterValues(outerValues, filterKeySelector, inListSize);
+        if (filterValues == null) {
+          return Linq4j.emptyEnumerator();
+        }
+        final Enumerable<TInner> inners = inner.apply(filterValues);
+        switch (joinType) {
+        case SEMI:
+          return (Enumerator<TResult>) EnumerableDefaults.semiJoin(
+              Linq4j.asEnumerable(outerValues), inners, outerKeySelector,
+              innerKeySelector).enumerator();
+        case INNER:
+          return EnumerableDefaults.hashJoin(inners,
+              Linq4j.asEnumerable(outerValues),
+              innerKeySelector, outerKeySelector,
+              (TInner innerValue, TSource outerValue) ->
+                  resultSelector.apply(outerValue, innerValue)).enumerator();
+        default:
+          throw new AssertionError(joinType);
+        }
+      }
+    };
+  }
+
+  /** Returns the outer rows whose keys the inner input of
+   * {@link #keyPushDownJoin} filters on, or null if all keys are null. */
+  @SuppressWarnings("unchecked")
+  private static <TSource> List<TSource> keyFilterValues(
+      List<TSource> outerValues, Function1<TSource, Comparable> keySelector,
+      int inListSize) {
+    final Map<Comparable, TSource> distinctValues = new LinkedHashMap<>();
+    Comparable minKey = null;
+    Comparable maxKey = null;
+    TSource min = null;
+    TSource max = null;
+    for (TSource outerValue : outerValues) {
+      final Comparable key = keySelector.apply(outerValue);
+      if (key == null) {
+        continue;
+      }
+      if (distinctValues.size() <= inListSize) {
+        distinctValues.putIfAbsent(key, outerValue);
+      }
+      if (minKey == null || key.compareTo(minKey) < 0) {
+        minKey = key;
+        min = outerValue;
+      }
+      if (maxKey == null || key.compareTo(maxKey) > 0) {
+        maxKey = key;
+        max = outerValue;
+      }
+    }
+    if (distinctValues.isEmpty()) {
+      return null;
+    }
+    final List<TSource> values = new ArrayList<>(inListSize + 2);
+    if (distinctValues.size() <= inListSize) {
+      values.addAll(distinctValues.values());
+      while (values.size() < inListSize + 2) {
+        values.add(values.get(0));
+      }
+    } else {
+      while (values.size() < inListSize + 1) {
+        values.add(min);
+      }
+      values.add(max);
+    }
+    return values;
+  }
+
   /**
    * Returns elements of {@code outer} for which there is a member of
    * {@code inner} with a matching key.
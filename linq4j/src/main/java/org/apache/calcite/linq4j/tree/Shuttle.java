@@ -134,9 +134,13 @@ public Shuttle preVisit(FunctionExpression functionExpression) {
 
   public Expression visit(FunctionExpression functionExpression,
       BlockStatement body) {
+    // Keep the function type; for example, do not convert a LongFunction1
+    // to a Function1.
+    //noinspection unchecked
     return functionExpression.body.equals(body)
         ? functionExpression
-        : Expressions.lambda(body, functionExpression.parameterList);
+        : Expressions.lambda((Class) functionExpression.getType(), body,
+            functionExpression.parameterList);
   }
 
   public Shuttle preVisit(BinaryExpression binaryExpression) {
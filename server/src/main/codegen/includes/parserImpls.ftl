@@ -410,3 +410,14 @@ SqlDrop SqlDropFunction(Span s, boolean replace) :
         return SqlDdlNodes.dropFunction(s.end(this), ifExists, id);
     }
 }
+
+SqlNode SqlAnalyzeTable() :
+{
+    final Span s;
+    final SqlIdentifier id;
+}
+{
+    <ANALYZE> { s = span(); } <TABLE> id = CompoundIdentifier() {
+        return SqlDdlNodes.analyzeTable(s.end(this), id);
+    }
+}
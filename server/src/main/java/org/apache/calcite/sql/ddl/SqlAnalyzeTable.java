@@ -0,0 +1,240 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.sql.ddl;
+
+import org.apache.calcite.jdbc.CalcitePrepare;
+import org.apache.calcite.jdbc.CalciteSchema;
+import org.apache.calcite.profile.Profiler;
+import org.apache.calcite.profile.ProfilerImpl;
+import org.apache.calcite.rel.metadata.NullSentinel;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeFactory;
+import org.apache.calcite.rel.type.RelDataTypeField;
+import org.apache.calcite.schema.ColumnStatistic;
+import org.apache.calcite.schema.Histogram;
+import org.apache.calcite.schema.Statistic;
+import org.apache.calcite.schema.Statistics;
+import org.apache.calcite.schema.Table;
+import org.apache.calcite.sql.SqlDdl;
+import org.apache.calcite.sql.SqlExecutableStatement;
+import org.apache.calcite.sql.SqlIdentifier;
+import org.apache.calcite.sql.SqlKind;
+import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.sql.SqlOperator;
+import org.apache.calcite.sql.SqlSpecialOperator;
+import org.apache.calcite.sql.SqlUtil;
+import org.apache.calcite.sql.SqlWriter;
+import org.apache.calcite.sql.parser.SqlParserPos;
+import org.apache.calcite.sql.type.SqlTypeUtil;
+import org.apache.calcite.util.Pair;
+import org.apache.calcite.util.Util;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+
+import static org.apache.calcite.util.Static.RESOURCE;
+
+/**
+ * Parse tree for {@code ANALYZE TABLE} statement.
+ *
+ * <p>Computes statistics of a table that was created by {@code CREATE TABLE}
+ * or {@code CREATE MATERIALIZED VIEW}, and stores them in the table so that
+ * the planner can use them: the number of rows, and for each column the
+ * number of distinct values, the number of nulls, the smallest and largest
+ * values and an equi-depth histogram.
+ *
+ * <p>The number of distinct values is estimated by a {@link ProfilerImpl},
+ * which switches to a HyperLogLog sketch if a column has many values. The
+ * histograms are built from a random sample of at most
+ * {@link #SAMPLE_SIZE} rows.
+ *
+ * <p>The statistics are not updated when rows are later inserted or
+ * deleted; run {@code ANALYZE TABLE} again to refresh them.
+ */
+public class SqlAnalyzeTable extends SqlDdl
+    implements SqlExecutableStatement {
+  /** Maximum number of rows that are sampled to build histograms. */
+  static final int SAMPLE_SIZE = 10_000;
+
+  /** Maximum number of buckets in each histogram. */
+  static final int BUCKET_COUNT = 100;
+
+  private final SqlIdentifier name;
+
+  private static final SqlOperator OPERATOR =
+      new SqlSpecialOperator("ANALYZE TABLE", SqlKind.OTHER_DDL);
+
+  /** Creates a SqlAnalyzeTable. */
+  SqlAnalyzeTable(SqlParserPos pos, SqlIdentifier name) {
+    super(OPERATOR, pos);
+    this.name = Objects.requireNonNull(name);
+  }
+
+  public List<SqlNode> getOperandList() {
+    return ImmutableList.of(name);
+  }
+
+  @Override public void unparse(SqlWriter writer, int leftPrec, int rightPrec) {
+    writer.keyword("ANALYZE");
+    writer.keyword("TABLE");
+    name.unparse(writer, leftPrec, rightPrec);
+  }
+
+  public void execute(CalcitePrepare.Context context) {
+    final Pair<CalciteSchema, String> pair =
+        SqlDdlNodes.schema(context, true, name);
+    final Table table = pair.left.plus().getTable(pair.right);
+    if (table == null) {
+      throw SqlUtil.newContextException(name.getParserPosition(),
+          RESOURCE.tableNotFound(pair.right));
+    }
+    if (!(table instanceof SqlCreateTable.MutableArrayTable)) {
+      throw SqlUtil.newContextException(name.getParserPosition(),
+          RESOURCE.tableNotAnalyzable(pair.right));
+    }
+    final SqlCreateTable.MutableArrayTable arrayTable =
+        (SqlCreateTable.MutableArrayTable) table;
+    arrayTable.statistic = analyze(arrayTable, context.getTypeFactory());
+    // Plans prepared with the old statistics may no longer be the best
+    pair.left.modified();
+  }
+
+  /** Computes the statistics of a table. */
+  static Statistic analyze(SqlCreateTable.MutableArrayTable table,
+      RelDataTypeFactory typeFactory) {
+    final RelDataType rowType = table.getRowType(typeFactory);
+    final RelDataType storedRowType =
+        table.protoStoredRowType.apply(typeFactory);
+
+    // Values of atomic types are comparable; values of collection and
+    // structured types are not, so we do not profile those columns. The
+    // ordinal of a profiled column is its position in this list, not in the
+    // stored row.
+    final List<Profiler.Column> columns = new ArrayList<>();
+    final List<Integer> storedOrdinals = new ArrayList<>();
+    for (RelDataTypeField field : storedRowType.getFieldList()) {
+      if (SqlTypeUtil.isAtomic(field.getType())) {
+        columns.add(new Profiler.Column(columns.size(), field.getName()));
+        storedOrdinals.add(field.getIndex());
+      }
+    }
+    final int fieldCount = storedRowType.getFieldCount();
+    final List<Object[]> rows =
+        Util.transform(table.rows,
+            row -> fieldCount == 1 && !(row instanceof Object[])
+                ? new Object[] {row}
+                : (Object[]) row);
+
+    // In one pass, compute the smallest and largest value of each column and
+    // sample rows. The sample is a reservoir; the seed is fixed so that the
+    // statistics of a given table are always the same.
+    final Comparable[] mins = new Comparable[fieldCount];
+    final Comparable[] maxes = new Comparable[fieldCount];
+    final int[] nullCounts = new int[fieldCount];
+    final List<Object[]> sample = new ArrayList<>();
+    final Random random = new Random(0);
+    int rowCount = 0;
+    for (Object[] row : rows) {
+      for (int i : storedOrdinals) {
+        final Comparable value = (Comparable) row[i];
+        if (value == null) {
+          ++nullCounts[i];
+        } else {
+          if (mins[i] == null || Histogram.compare(value, mins[i]) < 0) {
+            mins[i] = value;
+          }
+          if (maxes[i] == null || Histogram.compare(value, maxes[i]) > 0) {
+            maxes[i] = value;
+          }
+        }
+      }
+      if (sample.size() < SAMPLE_SIZE) {
+        sample.add(row);
+      } else {
+        final int i = random.nextInt(rowCount + 1);
+        if (i < SAMPLE_SIZE) {
+          sample.set(i, row);
+        }
+      }
+      ++rowCount;
+    }
+
+    if (columns.isEmpty()) {
+      return Statistics.of((double) rowCount, ImmutableList.of());
+    }
+
+    // Estimate the number of distinct values of each column. We are not
+    // interested in combinations of columns.
+    final Profiler profiler =
+        ProfilerImpl.builder().withMinimumSurprise(1D).build();
+    final Profiler.Profile profile =
+        profiler.profile(
+            Util.transform(rows,
+                row -> {
+                  final List<Comparable> list =
+                      new ArrayList<>(storedOrdinals.size());
+                  for (int i : storedOrdinals) {
+                    list.add(NullSentinel.mask((Comparable) row[i]));
+                  }
+                  return list;
+                }),
+            columns, ImmutableList.of());
+    final Statistic profileStatistic = profile.toStatistic();
+
+    final ColumnStatistic[] columnStatistics =
+        new ColumnStatistic[rowType.getFieldCount()];
+    for (Profiler.Column column : columns) {
+      final int i = storedOrdinals.get(column.ordinal);
+      final List<Comparable> values = new ArrayList<>();
+      for (Object[] row : sample) {
+        if (row[i] != null) {
+          values.add((Comparable) row[i]);
+        }
+      }
+      final Histogram histogram;
+      if (values.isEmpty()) {
+        histogram = null;
+      } else {
+        // Scale the histogram of the sample to the whole table
+        final Histogram sampleHistogram =
+            Histogram.equiDepth(values, BUCKET_COUNT);
+        final double scale =
+            (double) (rowCount - nullCounts[i]) / values.size();
+        final List<Double> counts = new ArrayList<>();
+        for (Double count : sampleHistogram.getCounts()) {
+          counts.add(count * scale);
+        }
+        histogram = Histogram.of(sampleHistogram.getBounds(), counts);
+      }
+      final ColumnStatistic profileColumnStatistic =
+          profileStatistic.getColumnStatistic(column.ordinal);
+      final RelDataTypeField field =
+          rowType.getField(column.name, true, false);
+      columnStatistics[field.getIndex()] =
+          Statistics.ofColumn(profileColumnStatistic.getDistinctCount(),
+              (double) nullCounts[i], mins[i], maxes[i], histogram);
+    }
+    return Statistics.of((double) rowCount, ImmutableList.of(),
+        ImmutableList.of(), ImmutableList.of(),
+        Arrays.asList(columnStatistics));
+  }
+}
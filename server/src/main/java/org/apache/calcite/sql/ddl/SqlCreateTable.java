@@ -41,7 +41,10 @@
 import org.apache.calcite.schema.ModifiableTable;
 import org.apache.calcite.schema.SchemaPlus;
 import org.apache.calcite.schema.Schemas;
+import org.apache.calcite.schema.Statistic;
+import org.apache.calcite.schema.Statistics;
 import org.apache.calcite.schema.TranslatableTable;
+import org.apache.calcite.schema.VersionedTable;
 import org.apache.calcite.schema.Wrapper;
 import org.apache.calcite.schema.impl.AbstractTable;
 import org.apache.calcite.schema.impl.AbstractTableQueryable;
@@ -70,10 +73,13 @@
 import com.google.common.collect.ImmutableList;
 
 import java.lang.reflect.Type;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.apache.calcite.util.Static.RESOURCE;
 
@@ -280,11 +286,17 @@ public TableModify toModificationRel(
     }
   }
 
-  /** Table backed by a Java list. */
+  /** Table backed by a Java list.
+   *
+   * <p>It is a {@link VersionedTable}: every row that is added, removed or
+   * replaced increments its modification count, so that cached results of
+   * queries on it become invalid. */
   static class MutableArrayTable extends AbstractModifiableTable
-      implements Wrapper {
-    final List rows = new ArrayList();
-    private final RelProtoDataType protoStoredRowType;
+      implements Wrapper, VersionedTable {
+    final ModificationCountingList rows = new ModificationCountingList();
+    /** Statistics computed by the latest {@code ANALYZE TABLE}. */
+    volatile Statistic statistic = Statistics.UNKNOWN;
+    final RelProtoDataType protoStoredRowType;
     private final RelProtoDataType protoRowType;
     private final InitializerExpressionFactory initializerExpressionFactory;
 
@@ -310,6 +322,10 @@ public Collection getModifiableCollection() {
       return rows;
     }
 
+    public long getModificationCount() {
+      return rows.modificationCount.get();
+    }
+
     public <T> Queryable<T> asQueryable(QueryProvider queryProvider,
         SchemaPlus schema, String tableName) {
       return new AbstractTableQueryable<T>(queryProvider, schema, this,
@@ -335,6 +351,10 @@ public RelDataType getRowType(RelDataTypeFactory typeFactory) {
       return protoRowType.apply(typeFactory);
     }
 
+    @Override public Statistic getStatistic() {
+      return statistic;
+    }
+
     @Override public <C> C unwrap(Class<C> aClass) {
       if (aClass.isInstance(initializerExpressionFactory)) {
         return aClass.cast(initializerExpressionFactory);
@@ -342,4 +362,40 @@ public RelDataType getRowType(RelDataTypeFactory typeFactory) {
       return super.unwrap(aClass);
     }
   }
+
+  /** List that counts the changes to its contents. The count is incremented
+   * after each change, so a reader that sees the previous count cannot see
+   * contents that are older than it. */
+  static class ModificationCountingList extends AbstractList<Object>
+      implements RandomAccess {
+    private final List<Object> list = new ArrayList<>();
+    final AtomicLong modificationCount = new AtomicLong();
+
+    public Object get(int index) {
+      return list.get(index);
+    }
+
+    public int size() {
+      return list.size();
+    }
+
+    @Override public Object set(int index, Object element) {
+      final Object previous = list.set(index, element);
+      modificationCount.incrementAndGet();
+      return previous;
+    }
+
+    @Override public void add(int index, Object element) {
+      list.add(index, element);
+      ++modCount;
+      modificationCount.incrementAndGet();
+    }
+
+    @Override public Object remove(int index) {
+      final Object previous = list.remove(index);
+      ++modCount;
+      modificationCount.incrementAndGet();
+      return previous;
+    }
+  }
 }
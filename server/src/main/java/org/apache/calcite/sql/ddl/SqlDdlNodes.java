@@ -143,6 +143,12 @@ public static SqlDrop dropFunction(SqlParserPos pos,
     return new SqlDropFunction(pos, ifExists, name);
   }
 
+  /** Creates an ANALYZE TABLE. */
+  public static SqlAnalyzeTable analyzeTable(SqlParserPos pos,
+      SqlIdentifier name) {
+    return new SqlAnalyzeTable(pos, name);
+  }
+
   /** Creates a column declaration. */
   public static SqlNode column(SqlParserPos pos, SqlIdentifier name,
       SqlDataTypeSpec dataType, SqlNode expression, ColumnStrategy strategy) {
@@ -301,6 +301,13 @@ class ServerParserTest extends SqlParserTest {
         .ok("DROP MATERIALIZED VIEW IF EXISTS `X`");
   }
 
+  @Test void testAnalyzeTable() {
+    sql("analyze table x")
+        .ok("ANALYZE TABLE `X`");
+    sql("analyze table x.y")
+        .ok("ANALYZE TABLE `X`.`Y`");
+  }
+
   @Test void testDropFunction() {
     final String sql = "drop function x.udf";
     final String expected = "DROP FUNCTION `X`.`UDF`";
@@ -18,8 +18,12 @@
 
 import org.apache.calcite.config.CalciteConnectionProperty;
 import org.apache.calcite.jdbc.CalciteConnection;
+import org.apache.calcite.jdbc.CalciteSchema;
+import org.apache.calcite.runtime.ResultCache;
+import org.apache.calcite.schema.ColumnStatistic;
 import org.apache.calcite.schema.Function;
 import org.apache.calcite.schema.FunctionParameter;
+import org.apache.calcite.schema.Statistic;
 import org.apache.calcite.sql.parser.ddl.SqlDdlParserImpl;
 
 import org.junit.jupiter.api.Disabled;
@@ -38,6 +42,7 @@
 
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.Is.is;
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
@@ -477,4 +482,162 @@ static Connection connect() throws SQLException {
       }
     }
   }
+
+  @Test void testAnalyzeTable() throws Exception {
+    try (Connection c = connect();
+         Statement s = c.createStatement()) {
+      s.execute("create table t (i int not null, j varchar(3),\n"
+          + " k int not null as (i * 2) virtual)");
+      final StringBuilder buf = new StringBuilder("insert into t (i, j) values ");
+      for (int i = 0; i < 200; i++) {
+        buf.append(i == 0 ? "" : ", ")
+            .append("(").append(i).append(", ")
+            .append(i % 10 == 0 ? "null" : "'v" + i % 4 + "'")
+            .append(")");
+      }
+      assertThat(s.executeUpdate(buf.toString()), is(200));
+
+      // Before ANALYZE, the planner uses default estimates
+      final String sql = "explain plan including all attributes for\n"
+          + "select * from t where j is null and i < 50";
+      try (ResultSet r = s.executeQuery(sql)) {
+        assertThat(r.next(), is(true));
+        assertThat(r.getString(1),
+            containsString("EnumerableTableScan(table=[[T]]): "
+                + "rowcount = 100.0"));
+      }
+
+      assertThat(s.execute("analyze table t"), is(false));
+
+      final Statistic statistic =
+          c.unwrap(CalciteConnection.class).getRootSchema().getTable("T")
+              .getStatistic();
+      assertThat(statistic.getRowCount(), is(200D));
+      final ColumnStatistic i = statistic.getColumnStatistic(0);
+      assertThat(i.getDistinctCount(), is(200D));
+      assertThat(i.getNullCount(), is(0D));
+      assertThat(i.getMin(), is(0));
+      assertThat(i.getMax(), is(199));
+      assertThat(i.getHistogram().getCounts().size(), is(100));
+      assertThat(i.getHistogram().getRowCount(), is(200D));
+      final ColumnStatistic j = statistic.getColumnStatistic(1);
+      assertThat(j.getDistinctCount(), is(4D));
+      assertThat(j.getNullCount(), is(20D));
+      assertThat(j.getMin(), is("v0"));
+      assertThat(j.getMax(), is("v3"));
+      assertThat(j.getHistogram().getRowCount(), is(180D));
+      // Virtual column has no statistics
+      assertThat(statistic.getColumnStatistic(2), nullValue());
+
+      // After ANALYZE, 20 rows have a null "j", and a quarter of the rows
+      // have "i" less than 50
+      try (ResultSet r = s.executeQuery(sql)) {
+        assertThat(r.next(), is(true));
+        final String plan = r.getString(1);
+        assertThat(plan,
+            containsString("EnumerableTableScan(table=[[T]]): "
+                + "rowcount = 200.0"));
+        assertThat(plan, containsString("]): rowcount = 5.1"));
+      }
+    }
+  }
+
+  /** Tests that ANALYZE TABLE causes plans that the connection has cached
+   * to be prepared again, using the new statistics. */
+  @Test void testAnalyzeTablePlanCache() throws Exception {
+    try (Connection c = DriverManager.getConnection(URL,
+             CalciteAssert.propBuilder()
+                 .set(CalciteConnectionProperty.PARSER_FACTORY,
+                     SqlDdlParserImpl.class.getName() + "#FACTORY")
+                 .set(CalciteConnectionProperty.PLAN_CACHE, "true")
+                 .build());
+         Statement s = c.createStatement()) {
+      s.execute("create table t (i int not null)");
+      assertThat(s.executeUpdate("insert into t values 1, 2, 3"), is(3));
+      final String sql = "explain plan including all attributes for\n"
+          + "select * from t";
+      for (int i = 0; i < 2; i++) {
+        try (ResultSet r = s.executeQuery(sql)) {
+          assertThat(r.next(), is(true));
+          assertThat(r.getString(1), containsString("rowcount = 100.0"));
+        }
+      }
+      final long modificationCount =
+          c.unwrap(CalciteConnection.class).getRootSchema()
+              .unwrap(CalciteSchema.class).getModificationCount();
+      assertThat(s.execute("analyze table t"), is(false));
+      assertThat(
+          c.unwrap(CalciteConnection.class).getRootSchema()
+              .unwrap(CalciteSchema.class).getModificationCount(),
+          is(modificationCount + 1));
+      try (ResultSet r = s.executeQuery(sql)) {
+        assertThat(r.next(), is(true));
+        assertThat(r.getString(1), containsString("rowcount = 3.0"));
+      }
+    }
+  }
+
+  /** Tests that the results of queries on a table created by
+   * {@code CREATE TABLE} are cached even if the result cache has no
+   * time-to-live, and that an INSERT invalidates them even if it is executed
+   * through a connection that does not use the cache. */
+  @Test void testResultCacheInsert() throws Exception {
+    try (Connection c = DriverManager.getConnection(URL,
+             CalciteAssert.propBuilder()
+                 .set(CalciteConnectionProperty.PARSER_FACTORY,
+                     SqlDdlParserImpl.class.getName() + "#FACTORY")
+                 .set(CalciteConnectionProperty.RESULT_CACHE_SIZE, "100")
+                 .build());
+         Statement s = c.createStatement();
+         Connection c2 = connect();
+         Statement s2 = c2.createStatement()) {
+      s.execute("create table t (i int not null)");
+      assertThat(s.executeUpdate("insert into t values 1, 2, 3"), is(3));
+      final ResultCache cache = c.unwrap(ResultCache.class);
+      final String sql = "select count(*) as c from t";
+      for (int i = 0; i < 2; i++) {
+        try (ResultSet r = s.executeQuery(sql)) {
+          assertThat(r.next(), is(true));
+          assertThat(r.getInt(1), is(3));
+        }
+      }
+      assertThat(cache.getHitCount(), is(1L));
+
+      // The second connection modifies the same table
+      c2.unwrap(CalciteConnection.class).getRootSchema()
+          .add("T",
+              c.unwrap(CalciteConnection.class).getRootSchema()
+                  .getTable("T"));
+      assertThat(s2.executeUpdate("insert into t values 4"), is(1));
+      try (ResultSet r = s.executeQuery(sql)) {
+        assertThat(r.next(), is(true));
+        assertThat(r.getInt(1), is(4));
+      }
+      assertThat(cache.getHitCount(), is(1L));
+      assertThat(cache.getInvalidationCount(), is(1L));
+    }
+  }
+
+  @Test void testAnalyzeTableInvalid() throws Exception {
+    try (Connection c = connect();
+         Statement s = c.createStatement()) {
+      // Only tables created by CREATE TABLE can be analyzed
+      CalciteAssert.addSchema(
+          c.unwrap(CalciteConnection.class).getRootSchema(),
+          CalciteAssert.SchemaSpec.HR);
+      try {
+        s.execute("analyze table \"hr\".\"emps\"");
+        fail("expected error");
+      } catch (SQLException e) {
+        assertThat(e.getMessage(),
+            containsString("Table 'emps' cannot be analyzed"));
+      }
+      try {
+        s.execute("analyze table t2");
+        fail("expected error");
+      } catch (SQLException e) {
+        assertThat(e.getMessage(), containsString("Table 'T2' not found"));
+      }
+    }
+  }
 }
@@ -0,0 +1,235 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.benchmarks;
+
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.EnumerableDefaults;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.linq4j.JoinType;
+import org.apache.calcite.linq4j.Linq4j;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the operators in {@link EnumerableDefaults} that implement
+ * joins, aggregation, sorting and duplicate elimination in Enumerable plans.
+ *
+ * <p>The outer input has {@code rowCount} rows {@code [key, value]}, whose
+ * keys are drawn from {@code cardinality} distinct values, either uniformly
+ * or, if {@code skew} is positive, from a Zipf distribution with that
+ * exponent. The inner input of joins has one row per key, as if joining to
+ * a dimension table.
+ *
+ * <p>Run with {@link GCProfiler} (as {@link #main} does) to see the
+ * allocation rate of each operator.
+ */
+@Fork(value = 1, jvmArgsPrepend = "-Xmx2g")
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Threads(1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class EnumerableDefaultsBenchmark {
+  @Param({"10000", "1000000"})
+  int rowCount;
+
+  @Param({"100", "100000"})
+  int cardinality;
+
+  /** Exponent of the Zipf distribution of keys; 0 means uniform. */
+  @Param({"0", "1"})
+  double skew;
+
+  /** Number of inner rows that {@link #nestedLoopJoin} reads; it is
+   * quadratic, so it uses only part of the inner input. */
+  private static final int NESTED_LOOP_INNER_COUNT = 100;
+
+  private static final int BATCH_SIZE = 100;
+
+  private Enumerable<Object[]> outer;
+  private Enumerable<Object[]> inner;
+  private Enumerable<Object[]> sortedOuter;
+  private Enumerable<Object[]> nestedLoopInner;
+  private Enumerable<Integer> keys;
+  private Object[][] innerByKey;
+
+  @Setup
+  public void setup() {
+    final Random random = new Random(0);
+    final int[] generated = skew > 0
+        ? zipf(random, rowCount, cardinality, skew)
+        : random.ints(rowCount, 0, cardinality).toArray();
+    final List<Object[]> outerList = new ArrayList<>(rowCount);
+    final List<Integer> keyList = new ArrayList<>(rowCount);
+    for (int i = 0; i < rowCount; i++) {
+      outerList.add(new Object[] {generated[i], i});
+      keyList.add(generated[i]);
+    }
+    final List<Object[]> innerList = new ArrayList<>(cardinality);
+    innerByKey = new Object[cardinality][];
+    for (int k = 0; k < cardinality; k++) {
+      final Object[] row = {k, "v" + k};
+      innerList.add(row);
+      innerByKey[k] = row;
+    }
+    final List<Object[]> sortedList = new ArrayList<>(outerList);
+    sortedList.sort(Comparator.comparing(row -> (Integer) row[0]));
+    outer = Linq4j.asEnumerable(outerList);
+    inner = Linq4j.asEnumerable(innerList);
+    sortedOuter = Linq4j.asEnumerable(sortedList);
+    nestedLoopInner = Linq4j.asEnumerable(
+        innerList.subList(0, Math.min(cardinality, NESTED_LOOP_INNER_COUNT)));
+    keys = Linq4j.asEnumerable(keyList);
+  }
+
+  /** Generates {@code n} values in the range {@code [0, cardinality)} with a
+   * Zipf distribution. */
+  private static int[] zipf(Random random, int n, int cardinality,
+      double exponent) {
+    final double[] cumulative = new double[cardinality];
+    double sum = 0;
+    for (int k = 0; k < cardinality; k++) {
+      sum += 1d / Math.pow(k + 1, exponent);
+      cumulative[k] = sum;
+    }
+    final int[] values = new int[n];
+    for (int i = 0; i < n; i++) {
+      final int k =
+          Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+      values[i] = Math.min(k < 0 ? -(k + 1) : k, cardinality - 1);
+    }
+    return values;
+  }
+
+  private static void consume(Enumerable<?> enumerable, Blackhole bh) {
+    try (Enumerator<?> enumerator = enumerable.enumerator()) {
+      while (enumerator.moveNext()) {
+        bh.consume(enumerator.current());
+      }
+    }
+  }
+
+  @Benchmark
+  public void hashJoin(Blackhole bh) {
+    consume(
+        EnumerableDefaults.hashJoin(outer, inner, row -> row[0],
+            row -> row[0], (o, i) -> new Object[] {o[0], o[1], i[1]}),
+        bh);
+  }
+
+  @Benchmark
+  public void mergeJoin(Blackhole bh) {
+    consume(
+        EnumerableDefaults.mergeJoin(sortedOuter, inner,
+            row -> (Integer) row[0], row -> (Integer) row[0],
+            (o, i) -> new Object[] {o[0], o[1], i[1]}, JoinType.INNER,
+            null),
+        bh);
+  }
+
+  @Benchmark
+  public void nestedLoopJoin(Blackhole bh) {
+    consume(
+        EnumerableDefaults.nestedLoopJoin(outer, nestedLoopInner,
+            (o, i) -> o[0].equals(i[0]),
+            (o, i) -> new Object[] {o[0], o[1], i[1]}, JoinType.INNER),
+        bh);
+  }
+
+  @Benchmark
+  public void semiJoin(Blackhole bh) {
+    consume(
+        EnumerableDefaults.semiJoin(outer, inner, row -> row[0],
+            row -> row[0]),
+        bh);
+  }
+
+  @Benchmark
+  public void correlateBatchJoin(Blackhole bh) {
+    consume(
+        EnumerableDefaults.correlateBatchJoin(JoinType.INNER, outer,
+            batch -> {
+              final Set<Integer> batchKeys = new HashSet<>();
+              final List<Object[]> rows = new ArrayList<>();
+              for (Object[] row : batch) {
+                if (batchKeys.add((Integer) row[0])) {
+                  rows.add(innerByKey[(Integer) row[0]]);
+                }
+              }
+              return Linq4j.asEnumerable(rows);
+            },
+            (o, i) -> new Object[] {o[0], o[1], i[1]},
+            (o, i) -> o[0].equals(i[0]), BATCH_SIZE),
+        bh);
+  }
+
+  @Benchmark
+  public void groupBy(Blackhole bh) {
+    consume(
+        EnumerableDefaults.groupBy(outer, row -> row[0], () -> 0L,
+            (sum, row) -> sum + (Integer) row[1],
+            (key, sum) -> new Object[] {key, sum}),
+        bh);
+  }
+
+  @Benchmark
+  public void orderBy(Blackhole bh) {
+    consume(EnumerableDefaults.orderBy(outer, row -> (Integer) row[0]), bh);
+  }
+
+  @Benchmark
+  public void distinct(Blackhole bh) {
+    consume(EnumerableDefaults.distinct(keys), bh);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(EnumerableDefaultsBenchmark.class.getSimpleName())
+        .addProfiler(GCProfiler.class)
+        .detectJvmArgs()
+        .build();
+
+    new Runner(opt).run();
+  }
+}
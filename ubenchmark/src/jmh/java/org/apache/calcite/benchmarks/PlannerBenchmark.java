@@ -0,0 +1,376 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.benchmarks;
+
+import org.apache.calcite.DataContext;
+import org.apache.calcite.adapter.enumerable.EnumerableConvention;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.plan.hep.HepMatchOrder;
+import org.apache.calcite.plan.hep.HepProgram;
+import org.apache.calcite.plan.hep.HepProgramBuilder;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.metadata.DefaultRelMetadataProvider;
+import org.apache.calcite.rel.rules.AggregateProjectMergeRule;
+import org.apache.calcite.rel.rules.FilterJoinRule;
+import org.apache.calcite.rel.rules.FilterProjectTransposeRule;
+import org.apache.calcite.rel.rules.JoinPushExpressionsRule;
+import org.apache.calcite.rel.rules.JoinToMultiJoinRule;
+import org.apache.calcite.rel.rules.LoptOptimizeJoinRule;
+import org.apache.calcite.rel.rules.ProjectMergeRule;
+import org.apache.calcite.rel.rules.ProjectRemoveRule;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeFactory;
+import org.apache.calcite.schema.ScannableTable;
+import org.apache.calcite.schema.SchemaPlus;
+import org.apache.calcite.schema.Statistic;
+import org.apache.calcite.schema.Statistics;
+import org.apache.calcite.schema.Table;
+import org.apache.calcite.schema.impl.AbstractSchema;
+import org.apache.calcite.schema.impl.AbstractTable;
+import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.sql.type.SqlTypeName;
+import org.apache.calcite.tools.FrameworkConfig;
+import org.apache.calcite.tools.Frameworks;
+import org.apache.calcite.tools.Planner;
+import org.apache.calcite.tools.Program;
+import org.apache.calcite.tools.Programs;
+import org.apache.calcite.util.ImmutableBitSet;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the Volcano and Hep planners on generated queries: joins of
+ * 5 to 30 tables in chain and star shapes, deeply nested sub-queries, and
+ * wide projections.
+ *
+ * <p>Each invocation parses, validates and converts the query to relational
+ * algebra outside the measured region, then measures only the optimization.
+ * See {@link TpcPlannerBenchmark} for the same measurement on TPC-H and
+ * TPC-DS queries.
+ */
+@Fork(value = 1, jvmArgsPrepend = "-Xmx2g")
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Threads(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PlannerBenchmark {
+  /** Number of tables to join; or, for {@link Shape#SUBQUERY}, the depth of
+   * nesting; or, for {@link Shape#WIDE}, the number of projected expressions
+   * divided by 10. */
+  @Param({"5", "10", "20", "30"})
+  int size;
+
+  @Param({"CHAIN", "STAR", "SUBQUERY", "WIDE"})
+  Shape shape;
+
+  @Param({"VOLCANO", "HEP"})
+  PlannerKind planner;
+
+  /** Number of tables in the generated schema; also the maximum size. */
+  private static final int TABLE_COUNT = 30;
+
+  /** Number of integer value columns in each table. */
+  private static final int VALUE_COUNT = 10;
+
+  private FrameworkConfig config;
+  private String sql;
+  private Planner p;
+  private RelNode rel;
+  private RelTraitSet traitSet;
+
+  @Setup
+  public void setup() {
+    final SchemaPlus rootSchema = Frameworks.createRootSchema(false);
+    rootSchema.add("S", new GeneratedSchema());
+    config = Frameworks.newConfigBuilder()
+        .defaultSchema(rootSchema.getSubSchema("S"))
+        .programs(planner.program())
+        .build();
+    sql = shape.sql(size);
+  }
+
+  @Setup(Level.Invocation)
+  public void convert() throws Exception {
+    p = Frameworks.getPlanner(config);
+    final SqlNode parse = p.parse(sql);
+    final SqlNode validate = p.validate(parse);
+    rel = p.rel(validate).project();
+    traitSet = planner.traitSet(rel);
+  }
+
+  @TearDown(Level.Invocation)
+  public void close() {
+    p.close();
+  }
+
+  @Benchmark
+  public RelNode optimize() throws Exception {
+    return p.transform(0, traitSet, rel);
+  }
+
+  /** Shape of generated query. */
+  public enum Shape {
+    /** Joins tables T0, T1, ... in a chain, each to the next by a foreign
+     * key. */
+    CHAIN {
+      String sql(int size) {
+        final StringBuilder b = new StringBuilder("select t0.name");
+        for (int i = 1; i < size; i++) {
+          b.append(", t").append(i).append(".v").append(i % VALUE_COUNT);
+        }
+        b.append("\nfrom t0");
+        for (int i = 1; i < size; i++) {
+          b.append("\njoin t").append(i)
+              .append(" on t").append(i - 1).append(".next_id = t")
+              .append(i).append(".id");
+        }
+        b.append("\nwhere t0.v0 > 10 and t").append(size - 1)
+            .append(".name <> 'x'");
+        return b.toString();
+      }
+    },
+
+    /** Joins the fact table F to dimension tables T0, T1, ... */
+    STAR {
+      String sql(int size) {
+        final StringBuilder b = new StringBuilder("select f.m0, f.m1");
+        for (int i = 0; i < size - 1; i++) {
+          b.append(", t").append(i).append(".name");
+        }
+        b.append("\nfrom f");
+        for (int i = 0; i < size - 1; i++) {
+          b.append("\njoin t").append(i)
+              .append(" on f.k").append(i).append(" = t").append(i)
+              .append(".id");
+        }
+        b.append("\nwhere f.m0 > 0");
+        for (int i = 0; i < size - 1; i += 3) {
+          b.append(" and t").append(i).append(".v").append(i % VALUE_COUNT)
+              .append(" < ").append(100 + i);
+        }
+        return b.toString();
+      }
+    },
+
+    /** Nests {@code IN} sub-queries; every other level also has a
+     * correlated scalar sub-query. */
+    SUBQUERY {
+      String sql(int size) {
+        return level(0, size);
+      }
+
+      private String level(int i, int size) {
+        final String t = "t" + i;
+        final StringBuilder b = new StringBuilder()
+            .append("select ").append(t).append(".id from ").append(t)
+            .append(" where ").append(t).append(".v0 > ").append(i);
+        if (i + 1 < size) {
+          b.append(" and ").append(t).append(".next_id in (")
+              .append(level(i + 1, size)).append(")");
+        }
+        if (i % 2 == 0) {
+          final String u = "u" + i;
+          b.append(" and ").append(t).append(".v1 < (select max(").append(u)
+              .append(".v1) from t").append(TABLE_COUNT - 1 - i)
+              .append(" as ").append(u).append(" where ").append(u)
+              .append(".id = ").append(t).append(".next_id)");
+        }
+        return b.toString();
+      }
+    },
+
+    /** Projects {@code size * 10} expressions from a three-way join. */
+    WIDE {
+      String sql(int size) {
+        final StringBuilder b = new StringBuilder("select ");
+        for (int i = 0; i < size * 10; i++) {
+          if (i > 0) {
+            b.append(",\n  ");
+          }
+          b.append("case when t0.v").append(i % VALUE_COUNT).append(" > ")
+              .append(i).append(" then t1.v").append((i + 1) % VALUE_COUNT)
+              .append(" * ").append(i).append(" else t2.v")
+              .append((i + 2) % VALUE_COUNT).append(" + t0.v")
+              .append((i + 3) % VALUE_COUNT).append(" end as e").append(i);
+        }
+        b.append("\nfrom t0\n"
+            + "join t1 on t0.next_id = t1.id\n"
+            + "join t2 on t1.next_id = t2.id\n"
+            + "where t0.v0 + t1.v1 > t2.v2");
+        return b.toString();
+      }
+    };
+
+    abstract String sql(int size);
+  }
+
+  /** Which planner to use. */
+  public enum PlannerKind {
+    /** {@link org.apache.calcite.plan.volcano.VolcanoPlanner} with the
+     * default rules, finding the best physical (enumerable) plan. Joins are
+     * first ordered heuristically, because with the default rules the
+     * planner would enumerate all join orders, and that does not finish
+     * for more than a few tables. */
+    VOLCANO {
+      Program program() {
+        return (planner, rel, requiredOutputTraits, materializations,
+            lattices) ->
+            Programs.sequence(
+                Programs.subQuery(DefaultRelMetadataProvider.INSTANCE),
+                Programs.heuristicJoinOrder(planner.getRules(), false, 2),
+                Programs.calc(DefaultRelMetadataProvider.INSTANCE))
+                .run(planner, rel, requiredOutputTraits, materializations,
+                    lattices);
+      }
+
+      RelTraitSet traitSet(RelNode rel) {
+        return rel.getTraitSet().replace(EnumerableConvention.INSTANCE);
+      }
+    },
+
+    /** A {@link org.apache.calcite.plan.hep.HepPlanner} program that
+     * pushes down filters and merges projects, then orders joins
+     * heuristically; the result is a logical plan. */
+    HEP {
+      Program program() {
+        final HepProgram program = new HepProgramBuilder()
+            .addRuleCollection(
+                ImmutableList.of(FilterJoinRule.FILTER_ON_JOIN,
+                    FilterJoinRule.JOIN,
+                    FilterProjectTransposeRule.INSTANCE,
+                    JoinPushExpressionsRule.INSTANCE,
+                    AggregateProjectMergeRule.INSTANCE,
+                    ProjectMergeRule.INSTANCE,
+                    ProjectRemoveRule.INSTANCE))
+            .addMatchOrder(HepMatchOrder.BOTTOM_UP)
+            .addRuleInstance(JoinToMultiJoinRule.INSTANCE)
+            .addRuleInstance(LoptOptimizeJoinRule.INSTANCE)
+            .build();
+        return Programs.sequence(
+            Programs.subQuery(DefaultRelMetadataProvider.INSTANCE),
+            Programs.of(program, true, DefaultRelMetadataProvider.INSTANCE));
+      }
+
+      RelTraitSet traitSet(RelNode rel) {
+        return rel.getTraitSet();
+      }
+    };
+
+    abstract Program program();
+
+    abstract RelTraitSet traitSet(RelNode rel);
+  }
+
+  /** Schema that contains a fact table F and tables T0 ... T29.
+   *
+   * <p>Each table T<i>i</i> has columns {@code ID} (a unique key),
+   * {@code NEXT_ID}, {@code NAME} and {@code V0} ... {@code V9}, and
+   * {@code 1000 * (i + 1)} rows. F has columns {@code K0} ... {@code K29}
+   * and {@code M0} ... {@code M9}, and 1,000,000 rows. */
+  private static class GeneratedSchema extends AbstractSchema {
+    @Override protected Map<String, Table> getTableMap() {
+      final ImmutableMap.Builder<String, Table> builder =
+          ImmutableMap.builder();
+      builder.put("F", new GeneratedTable(-1, 1_000_000d));
+      for (int i = 0; i < TABLE_COUNT; i++) {
+        builder.put("T" + i, new GeneratedTable(i, 1000d * (i + 1)));
+      }
+      return builder.build();
+    }
+  }
+
+  /** Empty table with a row count. If {@code i} is negative, it is the fact
+   * table, otherwise a dimension table. */
+  private static class GeneratedTable extends AbstractTable
+      implements ScannableTable {
+    private final int i;
+    private final double rowCount;
+
+    GeneratedTable(int i, double rowCount) {
+      this.i = i;
+      this.rowCount = rowCount;
+    }
+
+    public RelDataType getRowType(RelDataTypeFactory typeFactory) {
+      final RelDataTypeFactory.Builder builder = typeFactory.builder();
+      if (i < 0) {
+        for (int k = 0; k < TABLE_COUNT; k++) {
+          builder.add("K" + k, SqlTypeName.INTEGER);
+        }
+        for (int m = 0; m < VALUE_COUNT; m++) {
+          builder.add("M" + m, SqlTypeName.INTEGER);
+        }
+      } else {
+        builder.add("ID", SqlTypeName.INTEGER)
+            .add("NEXT_ID", SqlTypeName.INTEGER)
+            .add("NAME", SqlTypeName.VARCHAR, 20);
+        for (int v = 0; v < VALUE_COUNT; v++) {
+          builder.add("V" + v, SqlTypeName.INTEGER);
+        }
+      }
+      return builder.build();
+    }
+
+    @Override public Statistic getStatistic() {
+      return i < 0
+          ? Statistics.of(rowCount, ImmutableList.of())
+          : Statistics.of(rowCount, ImmutableList.of(ImmutableBitSet.of(0)));
+    }
+
+    public Enumerable<Object[]> scan(DataContext root) {
+      return Linq4j.emptyEnumerable();
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(PlannerBenchmark.class.getSimpleName())
+        .addProfiler(GCProfiler.class)
+        .detectJvmArgs()
+        .build();
+
+    new Runner(opt).run();
+  }
+}
@@ -0,0 +1,287 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.benchmarks;
+
+import org.apache.calcite.adapter.tpcds.TpcdsSchema;
+import org.apache.calcite.adapter.tpch.TpchSchema;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.schema.SchemaPlus;
+import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.tools.FrameworkConfig;
+import org.apache.calcite.tools.Frameworks;
+import org.apache.calcite.tools.Planner;
+
+import net.hydromatic.tpcds.query.Query;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the Volcano and Hep planners on multi-way join queries from
+ * TPC-H and TPC-DS, using the schemas in the "plus" module.
+ *
+ * <p>Each invocation parses, validates and converts the query to relational
+ * algebra outside the measured region, then measures only the optimization.
+ * See {@link PlannerBenchmark} for generated queries.
+ */
+@Fork(value = 1, jvmArgsPrepend = "-Xmx2g")
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Threads(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TpcPlannerBenchmark {
+  @Param({"TPCH_03", "TPCH_05", "TPCH_08", "TPCH_09", "TPCH_10", "TPCDS_01",
+      "TPCDS_17", "TPCDS_27"})
+  TpcQuery query;
+
+  @Param({"VOLCANO", "HEP"})
+  PlannerBenchmark.PlannerKind planner;
+
+  private FrameworkConfig config;
+  private Planner p;
+  private RelNode rel;
+  private RelTraitSet traitSet;
+
+  @Setup
+  public void setup() {
+    final SchemaPlus rootSchema = Frameworks.createRootSchema(false);
+    rootSchema.add("TPCH", new TpchSchema(1d, 1, 1, true));
+    rootSchema.add("TPCDS", new TpcdsSchema(1d));
+    config = Frameworks.newConfigBuilder()
+        .defaultSchema(rootSchema)
+        .programs(planner.program())
+        .build();
+  }
+
+  @Setup(Level.Invocation)
+  public void convert() throws Exception {
+    p = Frameworks.getPlanner(config);
+    final SqlNode parse = p.parse(query.sql);
+    final SqlNode validate = p.validate(parse);
+    rel = p.rel(validate).project();
+    traitSet = planner.traitSet(rel);
+  }
+
+  @TearDown(Level.Invocation)
+  public void close() {
+    p.close();
+  }
+
+  @Benchmark
+  public RelNode optimize() throws Exception {
+    return p.transform(0, traitSet, rel);
+  }
+
+  /** TPC-H and TPC-DS queries that have several joins. The TPC-H queries are
+   * as in {@code TpchTest}, and the TPC-DS queries are generated with a
+   * fixed seed, as in {@code TpcdsTest}. */
+  public enum TpcQuery {
+    TPCH_03("select\n"
+        + "  l.l_orderkey,\n"
+        + "  sum(l.l_extendedprice * (1 - l.l_discount)) as revenue,\n"
+        + "  o.o_orderdate,\n"
+        + "  o.o_shippriority\n"
+        + "from\n"
+        + "  tpch.customer c,\n"
+        + "  tpch.orders o,\n"
+        + "  tpch.lineitem l\n"
+        + "where\n"
+        + "  c.c_mktsegment = 'HOUSEHOLD'\n"
+        + "  and c.c_custkey = o.o_custkey\n"
+        + "  and l.l_orderkey = o.o_orderkey\n"
+        + "group by\n"
+        + "  l.l_orderkey,\n"
+        + "  o.o_orderdate,\n"
+        + "  o.o_shippriority\n"
+        + "order by\n"
+        + "  revenue desc,\n"
+        + "  o.o_orderdate\n"
+        + "limit 10"),
+
+    TPCH_05("select\n"
+        + "  n.n_name,\n"
+        + "  sum(l.l_extendedprice * (1 - l.l_discount)) as revenue\n"
+        + "from\n"
+        + "  tpch.customer c,\n"
+        + "  tpch.orders o,\n"
+        + "  tpch.lineitem l,\n"
+        + "  tpch.supplier s,\n"
+        + "  tpch.nation n,\n"
+        + "  tpch.region r\n"
+        + "where\n"
+        + "  c.c_custkey = o.o_custkey\n"
+        + "  and l.l_orderkey = o.o_orderkey\n"
+        + "  and l.l_suppkey = s.s_suppkey\n"
+        + "  and c.c_nationkey = s.s_nationkey\n"
+        + "  and s.s_nationkey = n.n_nationkey\n"
+        + "  and n.n_regionkey = r.r_regionkey\n"
+        + "  and r.r_name = 'EUROPE'\n"
+        + "group by\n"
+        + "  n.n_name\n"
+        + "order by\n"
+        + "  revenue desc"),
+
+    TPCH_08("select\n"
+        + "  o_year,\n"
+        + "  sum(case\n"
+        + "    when nation = 'EGYPT' then volume\n"
+        + "    else 0\n"
+        + "  end) / sum(volume) as mkt_share\n"
+        + "from\n"
+        + "  (\n"
+        + "    select\n"
+        + "      extract(year from o.o_orderdate) as o_year,\n"
+        + "      l.l_extendedprice * (1 - l.l_discount) as volume,\n"
+        + "      n2.n_name as nation\n"
+        + "    from\n"
+        + "      tpch.part p,\n"
+        + "      tpch.supplier s,\n"
+        + "      tpch.lineitem l,\n"
+        + "      tpch.orders o,\n"
+        + "      tpch.customer c,\n"
+        + "      tpch.nation n1,\n"
+        + "      tpch.nation n2,\n"
+        + "      tpch.region r\n"
+        + "    where\n"
+        + "      p.p_partkey = l.l_partkey\n"
+        + "      and s.s_suppkey = l.l_suppkey\n"
+        + "      and l.l_orderkey = o.o_orderkey\n"
+        + "      and o.o_custkey = c.c_custkey\n"
+        + "      and c.c_nationkey = n1.n_nationkey\n"
+        + "      and n1.n_regionkey = r.r_regionkey\n"
+        + "      and r.r_name = 'MIDDLE EAST'\n"
+        + "      and s.s_nationkey = n2.n_nationkey\n"
+        + "      and o.o_orderdate between date '1995-01-01'"
+        + " and date '1996-12-31'\n"
+        + "      and p.p_type = 'PROMO BRUSHED COPPER'\n"
+        + "  ) as all_nations\n"
+        + "group by\n"
+        + "  o_year\n"
+        + "order by\n"
+        + "  o_year"),
+
+    TPCH_09("select\n"
+        + "  nation,\n"
+        + "  o_year,\n"
+        + "  sum(amount) as sum_profit\n"
+        + "from\n"
+        + "  (\n"
+        + "    select\n"
+        + "      n_name as nation,\n"
+        + "      extract(year from o_orderdate) as o_year,\n"
+        + "      l.l_extendedprice * (1 - l.l_discount)"
+        + " - ps.ps_supplycost * l.l_quantity as amount\n"
+        + "    from\n"
+        + "      tpch.part p,\n"
+        + "      tpch.supplier s,\n"
+        + "      tpch.lineitem l,\n"
+        + "      tpch.partsupp ps,\n"
+        + "      tpch.orders o,\n"
+        + "      tpch.nation n\n"
+        + "    where\n"
+        + "      s.s_suppkey = l.l_suppkey\n"
+        + "      and ps.ps_suppkey = l.l_suppkey\n"
+        + "      and ps.ps_partkey = l.l_partkey\n"
+        + "      and p.p_partkey = l.l_partkey\n"
+        + "      and o.o_orderkey = l.l_orderkey\n"
+        + "      and s.s_nationkey = n.n_nationkey\n"
+        + "      and p.p_name like '%yellow%'\n"
+        + "  ) as profit\n"
+        + "group by\n"
+        + "  nation,\n"
+        + "  o_year\n"
+        + "order by\n"
+        + "  nation,\n"
+        + "  o_year desc"),
+
+    TPCH_10("select\n"
+        + "  c.c_custkey,\n"
+        + "  c.c_name,\n"
+        + "  sum(l.l_extendedprice * (1 - l.l_discount)) as revenue,\n"
+        + "  c.c_acctbal,\n"
+        + "  n.n_name,\n"
+        + "  c.c_address,\n"
+        + "  c.c_phone,\n"
+        + "  c.c_comment\n"
+        + "from\n"
+        + "  tpch.customer c,\n"
+        + "  tpch.orders o,\n"
+        + "  tpch.lineitem l,\n"
+        + "  tpch.nation n\n"
+        + "where\n"
+        + "  c.c_custkey = o.o_custkey\n"
+        + "  and l.l_orderkey = o.o_orderkey\n"
+        + "  and o.o_orderdate >= date '1994-03-01'\n"
+        + "  and o.o_orderdate < date '1994-03-01' + interval '3' month\n"
+        + "  and l.l_returnflag = 'R'\n"
+        + "  and c.c_nationkey = n.n_nationkey\n"
+        + "group by\n"
+        + "  c.c_custkey,\n"
+        + "  c.c_name,\n"
+        + "  c.c_acctbal,\n"
+        + "  c.c_phone,\n"
+        + "  n.n_name,\n"
+        + "  c.c_address,\n"
+        + "  c.c_comment\n"
+        + "order by\n"
+        + "  revenue desc\n"
+        + "limit 20"),
+
+    TPCDS_01(Query.of(1).sql(new Random(0))),
+    TPCDS_17(Query.of(17).sql(new Random(0))),
+    TPCDS_27(Query.of(27).sql(new Random(0)));
+
+    final String sql;
+
+    TpcQuery(String sql) {
+      this.sql = sql;
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(TpcPlannerBenchmark.class.getSimpleName())
+        .addProfiler(GCProfiler.class)
+        .detectJvmArgs()
+        .build();
+
+    new Runner(opt).run();
+  }
+}